@@ -24,6 +24,42 @@ public final class Util
         return array;
     }
 
+    /**
+     * shuffle long array contents
+     * @param array
+     * @param rnd
+     * @return
+     */
+    public static long[] shuffle(final long[] array, final Random rnd)
+    {
+        for (int i = array.length - 1; i > 0; i--)
+        {
+            final int pos = rnd.nextInt(i + 1);
+            final long t = array[pos];
+            array[pos] = array[i];
+            array[i] = t;
+        }
+        return array;
+    }
+
+    /**
+     * shuffle float array contents
+     * @param array
+     * @param rnd
+     * @return
+     */
+    public static float[] shuffle(final float[] array, final Random rnd)
+    {
+        for (int i = array.length - 1; i > 0; i--)
+        {
+            final int pos = rnd.nextInt(i + 1);
+            final float t = array[pos];
+            array[pos] = array[i];
+            array[i] = t;
+        }
+        return array;
+    }
+
     /**
      * shuffle object array contents
      * @param array
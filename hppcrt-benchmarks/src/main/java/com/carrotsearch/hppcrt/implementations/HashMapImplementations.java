@@ -14,6 +14,60 @@ public enum HashMapImplementations
         }
     },
 
+    HPPCRT_ROBIN_HOOD_INT_INT
+    {
+        @Override
+        public MapImplementation<?> getInstance(final int size, final float loadFactor)
+        {
+            return new HppcrtIntIntRobinHoodMap(size, loadFactor);
+        }
+    },
+
+    HPPCRT_INTERLEAVED_INT_INT
+    {
+        @Override
+        public MapImplementation<?> getInstance(final int size, final float loadFactor)
+        {
+            return new HppcrtIntIntInterleavedMap(size, loadFactor);
+        }
+    },
+
+    HPPCRT_INT_FLOAT
+    {
+        @Override
+        public MapImplementation<?> getInstance(final int size, final float loadFactor)
+        {
+            return new HppcrtIntFloatMap(size, loadFactor);
+        }
+    },
+
+    HPPCRT_INTERLEAVED_INT_FLOAT
+    {
+        @Override
+        public MapImplementation<?> getInstance(final int size, final float loadFactor)
+        {
+            return new HppcrtIntFloatInterleavedMap(size, loadFactor);
+        }
+    },
+
+    HPPCRT_LONG_LONG
+    {
+        @Override
+        public MapImplementation<?> getInstance(final int size, final float loadFactor)
+        {
+            return new HppcrtLongLongMap(size, loadFactor);
+        }
+    },
+
+    HPPCRT_INTERLEAVED_LONG_LONG
+    {
+        @Override
+        public MapImplementation<?> getInstance(final int size, final float loadFactor)
+        {
+            return new HppcrtLongLongInterleavedMap(size, loadFactor);
+        }
+    },
+
     HPPC_INT_INT {
         @Override
         public MapImplementation<?> getInstance(final int size, final float loadFactor) {
@@ -77,6 +131,21 @@ public enum HashMapImplementations
         }
     },
 
+    HPPCRT_SWISS_OBJ_INT
+    {
+        @Override
+        public MapImplementation<?> getInstance(final int size, final float loadFactor)
+        {
+            return new HppcrtObjectIntSwissMap(size, loadFactor);
+        }
+
+        @Override
+        public boolean isHashQualityApplicable() {
+
+            return true;
+        }
+    },
+
 
     HPPC_OBJ_INT {
         @Override
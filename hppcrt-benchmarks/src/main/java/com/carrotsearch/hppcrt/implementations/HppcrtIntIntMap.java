@@ -86,6 +86,23 @@ public class HppcrtIntIntMap extends MapImplementation<IntIntHashMap>
         return count;
     }
 
+    @Override
+    public int benchGetKeys()
+    {
+        final IntIntHashMap instance = this.instance;
+
+        int count = 0;
+
+        final int[] keys = this.insertKeys;
+
+        for (int i = 0; i < keys.length; i++) {
+
+            count += instance.get(keys[i]);
+        }
+
+        return count;
+    }
+
     @Override
     public int benchRemoveKeys() {
 
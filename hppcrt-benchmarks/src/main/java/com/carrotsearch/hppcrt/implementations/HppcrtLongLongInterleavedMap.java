@@ -0,0 +1,140 @@
+package com.carrotsearch.hppcrt.implementations;
+
+import java.util.Random;
+
+import com.carrotsearch.hppcrt.Util;
+import com.carrotsearch.hppcrt.XorShift128P;
+import com.carrotsearch.hppcrt.maps.LongLongInterleavedHashMap;
+
+public class HppcrtLongLongInterleavedMap extends MapImplementation<LongLongInterleavedHashMap>
+{
+    private long[] insertKeys;
+    private long[] containsKeys;
+    private long[] removedKeys;
+    private long[] insertValues;
+
+    protected HppcrtLongLongInterleavedMap(final int size, final float loadFactor)
+    {
+        super(new LongLongInterleavedHashMap(size, loadFactor));
+    }
+
+    /**
+     * Setup
+     */
+    @Override
+    public void setup(final int[] keysToInsert, final MapImplementation.HASH_QUALITY hashQ, final int[] keysForContainsQuery, final int[] keysForRemovalQuery) {
+
+        final Random prng = new XorShift128P(0x122335577L);
+
+        //make a full copy, spreading the keys over the upper bits as well
+        this.insertKeys = HppcrtLongLongMap.toLongKeys(keysToInsert);
+        this.containsKeys = HppcrtLongLongMap.toLongKeys(keysForContainsQuery);
+        this.removedKeys = HppcrtLongLongMap.toLongKeys(keysForRemovalQuery);
+
+        this.insertValues = new long[keysToInsert.length];
+
+        for (int i = 0; i < this.insertValues.length; i++) {
+
+            this.insertValues[i] = prng.nextLong();
+        }
+    }
+
+    @Override
+    public void clear() {
+        this.instance.clear();
+    }
+
+    @Override
+    public int size() {
+
+        return this.instance.size();
+    }
+
+    @Override
+    public int benchPutAll() {
+
+        final LongLongInterleavedHashMap instance = this.instance;
+        final long[] values = this.insertValues;
+
+        int count = 0;
+
+        final long[] keys = this.insertKeys;
+
+        for (int i = 0; i < keys.length; i++) {
+
+            count += (int) instance.put(keys[i], values[i]);
+        }
+
+        return count;
+    }
+
+    @Override
+    public int benchContainKeys()
+    {
+        final LongLongInterleavedHashMap instance = this.instance;
+
+        int count = 0;
+
+        final long[] keys = this.containsKeys;
+
+        for (int i = 0; i < keys.length; i++) {
+
+            count += instance.containsKey(keys[i]) ? 1 : 0;
+        }
+
+        return count;
+    }
+
+    @Override
+    public int benchGetKeys()
+    {
+        final LongLongInterleavedHashMap instance = this.instance;
+
+        int count = 0;
+
+        final long[] keys = this.insertKeys;
+
+        for (int i = 0; i < keys.length; i++) {
+
+            count += (int) instance.get(keys[i]);
+        }
+
+        return count;
+    }
+
+    @Override
+    public int benchRemoveKeys() {
+
+        final LongLongInterleavedHashMap instance = this.instance;
+
+        int count = 0;
+
+        final long[] keys = this.removedKeys;
+
+        for (int i = 0; i < keys.length; i++) {
+
+            count += (int) instance.remove(keys[i]);
+        }
+
+        return count;
+    }
+
+    @Override
+    public void setCopyOfInstance(final MapImplementation<?> toCloneFrom) {
+
+        this.instance = ((LongLongInterleavedHashMap) toCloneFrom.instance).clone();
+
+    }
+
+    @Override
+    public void reshuffleInsertedKeys(final Random rand) {
+        Util.shuffle(this.insertKeys, rand);
+
+    }
+
+    @Override
+    public void reshuffleInsertedValues(final Random rand) {
+        Util.shuffle(this.insertValues, rand);
+
+    }
+}
\ No newline at end of file
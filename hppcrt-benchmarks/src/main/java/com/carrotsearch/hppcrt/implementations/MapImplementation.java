@@ -95,6 +95,15 @@ public abstract class MapImplementation<IMPLEM>
      */
     public abstract int benchContainKeys();
 
+    /**
+     * get bench of the inserted keys, i.e successful lookups reading the values,
+     * setup() must prepare the K,V set before. Not supported by default, override if needed.
+     */
+    public int benchGetKeys() {
+
+        throw new UnsupportedOperationException("get() bench not implemented for " + getClass().getSimpleName());
+    }
+
     /**
      * removed bench to run, setup() must prepare the K,V set before
      */
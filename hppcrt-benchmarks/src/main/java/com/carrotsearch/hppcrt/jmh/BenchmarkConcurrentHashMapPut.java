@@ -0,0 +1,246 @@
+package com.carrotsearch.hppcrt.jmh;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.runner.RunnerException;
+
+import com.carrotsearch.hppcrt.BenchmarkSuiteRunner;
+import com.carrotsearch.hppcrt.HashContainers;
+import com.carrotsearch.hppcrt.XorShift128P;
+import com.carrotsearch.hppcrt.maps.IntIntConcurrentHashMap;
+import com.carrotsearch.hppcrt.maps.IntIntHashMap;
+import com.carrotsearch.hppcrt.maps.IntIntLockFreeHashMap;
+
+/**
+ * Benchmark putting a given number of integers into a map shared by nbThreads threads,
+ * each thread putting its own slice of the keys.
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+public class BenchmarkConcurrentHashMapPut
+{
+    public enum ConcurrentMapImplementation
+    {
+        /**
+         * A single IntIntHashMap, locked as a whole
+         */
+        HPPCRT_SYNCHRONIZED,
+        /**
+         * IntIntConcurrentHashMap, with the default concurrency level
+         */
+        HPPCRT_STRIPED,
+        /**
+         * IntIntLockFreeHashMap, in insertion-only mode
+         */
+        HPPCRT_LOCK_FREE,
+        /**
+         * java.util.concurrent.ConcurrentHashMap<Integer, Integer>
+         */
+        JAVA_CONCURRENT;
+    }
+
+    @Param({
+        "3000000"
+    })
+    public int targetSize;
+
+    @Param({
+        "1", "2", "4", "8", "16", "32", "64"
+    })
+    public int nbThreads;
+
+    @Param
+    public ConcurrentMapImplementation implementation;
+
+    private int[] keys;
+    private int[] values;
+
+    private Integer[] boxedKeys;
+    private Integer[] boxedValues;
+
+    private IntIntHashMap synchronizedMap;
+    private IntIntConcurrentHashMap stripedMap;
+    private IntIntLockFreeHashMap lockFreeMap;
+    private ConcurrentHashMap<Integer, Integer> javaMap;
+
+    private ExecutorService executor;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        final XorShift128P prng = new XorShift128P(0x11223344);
+
+        this.keys = new int[this.targetSize];
+        this.values = new int[this.targetSize];
+
+        this.boxedKeys = new Integer[this.targetSize];
+        this.boxedValues = new Integer[this.targetSize];
+
+        for (int i = 0; i < this.targetSize; i++) {
+
+            this.keys[i] = prng.nextInt();
+            this.values[i] = prng.nextInt();
+
+            this.boxedKeys[i] = Integer.valueOf(this.keys[i]);
+            this.boxedValues[i] = Integer.valueOf(this.values[i]);
+        }
+
+        //all maps are preallocated
+        switch (this.implementation)
+        {
+        case HPPCRT_SYNCHRONIZED:
+            this.synchronizedMap = new IntIntHashMap(this.targetSize);
+            break;
+        case HPPCRT_STRIPED:
+            this.stripedMap = new IntIntConcurrentHashMap(this.targetSize);
+            break;
+        case HPPCRT_LOCK_FREE:
+            this.lockFreeMap = new IntIntLockFreeHashMap(this.targetSize, HashContainers.DEFAULT_LOAD_FACTOR, false);
+            break;
+        case JAVA_CONCURRENT:
+            this.javaMap = new ConcurrentHashMap<Integer, Integer>(this.targetSize, 0.75f, this.nbThreads);
+            break;
+        default:
+            throw new RuntimeException();
+        }
+
+        this.executor = Executors.newFixedThreadPool(this.nbThreads);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception
+    {
+        this.executor.shutdownNow();
+        this.executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Time the concurrent 'put' operation.
+     */
+    @Benchmark
+    public int timePut() throws Exception
+    {
+        clear();
+
+        final List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>(this.nbThreads);
+
+        for (int t = 0; t < this.nbThreads; t++) {
+
+            final int from = (int) ((long) this.targetSize * t / this.nbThreads);
+            final int to = (int) ((long) this.targetSize * (t + 1) / this.nbThreads);
+
+            tasks.add(new Callable<Integer>() {
+
+                @Override
+                public Integer call() throws Exception {
+
+                    return putRange(from, to);
+                }
+            });
+        }
+
+        int count = 0;
+
+        for (final Future<Integer> result : this.executor.invokeAll(tasks)) {
+
+            count += result.get();
+        }
+
+        return count;
+    }
+
+    private void clear() {
+
+        switch (this.implementation)
+        {
+        case HPPCRT_SYNCHRONIZED:
+            this.synchronizedMap.clear();
+            break;
+        case HPPCRT_STRIPED:
+            this.stripedMap.clear();
+            break;
+        case HPPCRT_LOCK_FREE:
+            this.lockFreeMap.clear();
+            break;
+        case JAVA_CONCURRENT:
+            this.javaMap.clear();
+            break;
+        default:
+            throw new RuntimeException();
+        }
+    }
+
+    private int putRange(final int from, final int to) {
+
+        int count = 0;
+
+        switch (this.implementation)
+        {
+        case HPPCRT_SYNCHRONIZED:
+        {
+            final IntIntHashMap instance = this.synchronizedMap;
+
+            for (int i = from; i < to; i++) {
+
+                synchronized (instance) {
+                    count += instance.put(this.keys[i], this.values[i]);
+                }
+            }
+            break;
+        }
+        case HPPCRT_STRIPED:
+        {
+            final IntIntConcurrentHashMap instance = this.stripedMap;
+
+            for (int i = from; i < to; i++) {
+
+                count += instance.put(this.keys[i], this.values[i]);
+            }
+            break;
+        }
+        case HPPCRT_LOCK_FREE:
+        {
+            final IntIntLockFreeHashMap instance = this.lockFreeMap;
+
+            for (int i = from; i < to; i++) {
+
+                count += instance.put(this.keys[i], this.values[i]);
+            }
+            break;
+        }
+        case JAVA_CONCURRENT:
+        {
+            final ConcurrentHashMap<Integer, Integer> instance = this.javaMap;
+
+            for (int i = from; i < to; i++) {
+
+                count += (instance.put(this.boxedKeys[i], this.boxedValues[i]) != null) ? 1 : 0;
+            }
+            break;
+        }
+        default:
+            throw new RuntimeException();
+        }
+
+        return count;
+    }
+
+    public static void main(final String[] args) throws RunnerException
+    {
+        BenchmarkSuiteRunner.runJmhBasicBenchmarkWithCommandLine(BenchmarkConcurrentHashMapPut.class, args, 2000, 3000);
+    }
+}
@@ -2,6 +2,7 @@ package com.carrotsearch.hppcrt.jmh;
 
 import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
 
+import java.util.Arrays;
 import java.util.concurrent.TimeUnit;
 
 import org.openjdk.jmh.annotations.Benchmark;
@@ -15,8 +16,11 @@ import org.openjdk.jmh.annotations.Timeout;
 import org.openjdk.jmh.runner.RunnerException;
 
 import com.carrotsearch.hppcrt.BenchmarkSuiteRunner;
+import com.carrotsearch.hppcrt.Containers;
 import com.carrotsearch.hppcrt.DistributionGenerator;
 import com.carrotsearch.hppcrt.XorShift128P;
+import com.carrotsearch.hppcrt.maps.IntIntHashMap;
+import com.carrotsearch.hppcrt.maps.IntIntRobinHoodHashMap;
 import com.carrotsearch.hppcrt.procedures.IntProcedure;
 import com.carrotsearch.hppcrt.sets.IntHashSet;
 
@@ -31,6 +35,23 @@ public class BenchmarkHashCollisions
 
     public IntHashSet currentUnderTestSet2;
 
+    /**
+     * The same keys in maps with linear probing and Robin Hood probing,
+     * and in the maps under test of the puts.
+     */
+    public IntIntHashMap testMap;
+
+    public IntIntRobinHoodHashMap testRobinHoodMap;
+
+    public IntIntHashMap currentUnderTestMap;
+
+    public IntIntRobinHoodHashMap currentUnderTestRobinHoodMap;
+
+    /**
+     * Keys absent from testSet, for the unsuccessful lookups.
+     */
+    public int[] absentKeys;
+
     /**
      * Consider that @Benchmark executing in more than TIMEOUT_EXEC_IN_S s
      * must be aborted. Convenient way to test hanging benchmarks.
@@ -51,7 +72,8 @@ public class BenchmarkHashCollisions
     public enum TestAllocationSizes
     {
         HANGING(6000000),
-        OK(6291424); //close to 0.75 load factor
+        OK(6291424), //close to 0.75 load factor
+        HIGH_LOAD(7549700); //close to 0.9 load factor
 
         public final int testSize;
 
@@ -73,7 +95,7 @@ public class BenchmarkHashCollisions
     public Distribution distribution;
 
     @Param({
-        "0.75"
+        "0.75", "0.9"
     })
     public float loadFactor;
 
@@ -122,11 +144,35 @@ public class BenchmarkHashCollisions
             count++;
         }
 
+        //the maps grow up to the load factor, as with DEFAULT_SIZE
+        this.testMap = IntIntHashMap.newInstance(Containers.DEFAULT_EXPECTED_ELEMENTS, this.loadFactor);
+        this.testRobinHoodMap = IntIntRobinHoodHashMap.newInstance(Containers.DEFAULT_EXPECTED_ELEMENTS, this.loadFactor);
+
+        putAll(this.testMap);
+        putAll(this.testRobinHoodMap);
+
+        //same low bits as the keys, but the sign bit
+        this.absentKeys = new int[nbElementsToPush];
+
+        count = 0;
+
+        for (final int key : this.testSet.keys) {
+
+            if (key != 0 && !this.testSet.contains(key ^ Integer.MIN_VALUE)) {
+
+                this.absentKeys[count++] = key ^ Integer.MIN_VALUE;
+            }
+        }
+
+        this.absentKeys = Arrays.copyOf(this.absentKeys, count);
+
         //In PREALLOCATED we only need to create once, and clear the containers under test before each test.
         if (this.allocation == Allocation.PREALLOCATED) {
 
             this.currentUnderTestSet = IntHashSet.newInstance(nbElementsToPush, this.loadFactor);
             this.currentUnderTestSet2 = IntHashSet.newInstance(nbElementsToPush, this.loadFactor);
+            this.currentUnderTestMap = IntIntHashMap.newInstance(nbElementsToPush, this.loadFactor);
+            this.currentUnderTestRobinHoodMap = IntIntRobinHoodHashMap.newInstance(nbElementsToPush, this.loadFactor);
         }
 
         System.out.println("Initialized to test size = " + nbElementsToPush);
@@ -144,6 +190,9 @@ public class BenchmarkHashCollisions
 
             this.currentUnderTestSet = IntHashSet.newInstance();
             this.currentUnderTestSet2 = IntHashSet.newInstance();
+            this.currentUnderTestMap = IntIntHashMap.newInstance(Containers.DEFAULT_EXPECTED_ELEMENTS, this.loadFactor);
+            this.currentUnderTestRobinHoodMap = IntIntRobinHoodHashMap.newInstance(Containers.DEFAULT_EXPECTED_ELEMENTS,
+                    this.loadFactor);
         }
 
         // PREALLOCATED is created once and simply cleared. Since the clear
@@ -247,6 +296,100 @@ public class BenchmarkHashCollisions
         return count;
     }
 
+    /**
+     * Time the puts of the keys of testSet in a linear probing map.
+     */
+    @Timeout(time = BenchmarkHashCollisions.TIMEOUT_EXEC_IN_S, timeUnit = TimeUnit.SECONDS)
+    @Benchmark
+    public int timeMap_PutAll()
+    {
+        this.currentUnderTestMap.clear();
+
+        putAll(this.currentUnderTestMap);
+
+        return this.currentUnderTestMap.size();
+    }
+
+    /**
+     * Time the puts of the keys of testSet in a Robin Hood map.
+     */
+    @Timeout(time = BenchmarkHashCollisions.TIMEOUT_EXEC_IN_S, timeUnit = TimeUnit.SECONDS)
+    @Benchmark
+    public int timeRobinHoodMap_PutAll()
+    {
+        this.currentUnderTestRobinHoodMap.clear();
+
+        putAll(this.currentUnderTestRobinHoodMap);
+
+        return this.currentUnderTestRobinHoodMap.size();
+    }
+
+    /**
+     * Time the unsuccessful lookups in a linear probing map.
+     */
+    @Timeout(time = BenchmarkHashCollisions.TIMEOUT_EXEC_IN_S, timeUnit = TimeUnit.SECONDS)
+    @Benchmark
+    public int timeMap_ContainsAbsent()
+    {
+        final IntIntHashMap map = this.testMap;
+        final int[] keys = this.absentKeys;
+
+        int count = 0;
+
+        for (int i = 0; i < keys.length; i++) {
+
+            count += map.containsKey(keys[i]) ? 1 : 0;
+        }
+
+        return count;
+    }
+
+    /**
+     * Time the unsuccessful lookups in a Robin Hood map.
+     */
+    @Timeout(time = BenchmarkHashCollisions.TIMEOUT_EXEC_IN_S, timeUnit = TimeUnit.SECONDS)
+    @Benchmark
+    public int timeRobinHoodMap_ContainsAbsent()
+    {
+        final IntIntRobinHoodHashMap map = this.testRobinHoodMap;
+        final int[] keys = this.absentKeys;
+
+        int count = 0;
+
+        for (int i = 0; i < keys.length; i++) {
+
+            count += map.containsKey(keys[i]) ? 1 : 0;
+        }
+
+        return count;
+    }
+
+    private void putAll(final IntIntHashMap map) {
+
+        final int[] testSetKeys = this.testSet.keys;
+
+        for (int j = 0; j < testSetKeys.length; j++) {
+
+            if (testSetKeys[j] != 0) {
+
+                map.put(testSetKeys[j], j);
+            }
+        }
+    }
+
+    private void putAll(final IntIntRobinHoodHashMap map) {
+
+        final int[] testSetKeys = this.testSet.keys;
+
+        for (int j = 0; j < testSetKeys.length; j++) {
+
+            if (testSetKeys[j] != 0) {
+
+                map.put(testSetKeys[j], j);
+            }
+        }
+    }
+
     /**
      * Running main
      * @param args
@@ -0,0 +1,145 @@
+package com.carrotsearch.hppcrt.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.RunnerException;
+
+import com.carrotsearch.hppcrt.BenchmarkSuiteRunner;
+import com.carrotsearch.hppcrt.XorShift128P;
+import com.carrotsearch.hppcrt.maps.IntIntHashMap;
+
+/**
+ * Benchmark looking up random keys, half of them being present, one by one
+ * or by batches through getAll() / containsAll(). The big sizes are meant to exceed the CPU caches,
+ * where batching the lookups pays off.
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+public class BenchmarkHashMapGetAll
+{
+    public enum Lookup
+    {
+        GET,
+        GET_ALL,
+        CONTAINS_KEY,
+        CONTAINS_ALL
+    }
+
+    /**
+     * Number of keys looked up by one getAll() / containsAll() call.
+     */
+    private static final int BATCH = 1024;
+
+    @Param({
+        "100000", "10000000"
+    })
+    public int targetSize;
+
+    @Param
+    public Lookup lookup;
+
+    private int[] keys;
+
+    private int[] values;
+
+    private boolean[] present;
+
+    private IntIntHashMap map;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        final XorShift128P prng = new XorShift128P(0x11223344);
+
+        this.keys = new int[this.targetSize];
+
+        for (int i = 0; i < this.targetSize; i++) {
+
+            this.keys[i] = prng.nextInt();
+        }
+
+        this.map = new IntIntHashMap(this.targetSize);
+
+        //fill the map with one key out of two
+        for (int i = 0; i < this.targetSize; i += 2) {
+
+            this.map.put(this.keys[i], i);
+        }
+
+        //look up the keys in a different order than inserted
+        for (int i = this.targetSize - 1; i > 0; i--) {
+
+            final int j = prng.nextInt(i + 1);
+            final int tmp = this.keys[i];
+            this.keys[i] = this.keys[j];
+            this.keys[j] = tmp;
+        }
+
+        //getAll() and containsAll() store their results at the same indices as the keys
+        this.values = new int[this.targetSize];
+        this.present = new boolean[this.targetSize];
+    }
+
+    /**
+     * Time the lookup of all the keys.
+     */
+    @Benchmark
+    public int timeLookup()
+    {
+        final IntIntHashMap instance = this.map;
+        final int[] keys = this.keys;
+        final int size = this.targetSize;
+
+        int count = 0;
+
+        switch (this.lookup)
+        {
+        case GET:
+            for (int i = 0; i < size; i++) {
+
+                count += instance.get(keys[i]);
+            }
+            break;
+        case GET_ALL:
+            for (int i = 0; i < size; i += BenchmarkHashMapGetAll.BATCH) {
+
+                instance.getAll(keys, i, Math.min(BenchmarkHashMapGetAll.BATCH, size - i), this.values);
+            }
+
+            for (int i = 0; i < size; i++) {
+
+                count += this.values[i];
+            }
+            break;
+        case CONTAINS_KEY:
+            for (int i = 0; i < size; i++) {
+
+                if (instance.containsKey(keys[i])) {
+                    count++;
+                }
+            }
+            break;
+        case CONTAINS_ALL:
+            for (int i = 0; i < size; i += BenchmarkHashMapGetAll.BATCH) {
+
+                count += instance.containsAll(keys, i, Math.min(BenchmarkHashMapGetAll.BATCH, size - i), this.present);
+            }
+            break;
+        default:
+            throw new RuntimeException();
+        }
+
+        return count;
+    }
+
+    public static void main(final String[] args) throws RunnerException
+    {
+        BenchmarkSuiteRunner.runJmhBasicBenchmarkWithCommandLine(BenchmarkHashMapGetAll.class, args, 2000, 3000);
+    }
+}
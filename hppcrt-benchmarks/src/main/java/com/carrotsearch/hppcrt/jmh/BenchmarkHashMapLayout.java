@@ -0,0 +1,108 @@
+package com.carrotsearch.hppcrt.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.RunnerException;
+
+import com.carrotsearch.hppcrt.BenchmarkSuiteRunner;
+import com.carrotsearch.hppcrt.XorShift128P;
+import com.carrotsearch.hppcrt.implementations.HashMapImplementations;
+import com.carrotsearch.hppcrt.implementations.MapImplementation;
+import com.carrotsearch.hppcrt.implementations.MapImplementation.HASH_QUALITY;
+
+/**
+ * Benchmark comparing the separate keys / values arrays layout of the hash maps
+ * to the interleaved one of the KTypeVTypeInterleavedHashMap, from a map fitting in L1 up to
+ * a map 10 times bigger than the last level cache.
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+public class BenchmarkHashMapLayout
+{
+    /**
+     * Number of keys, with a 0.75 load factor : the int-int buffers are
+     * 32KB (L1), 512KB (L2), 16MB (LLC), 256MB (10 x LLC), twice that for long-long.
+     */
+    @Param({
+        "2000", "50000", "1500000", "15000000"
+    })
+    public int targetSize;
+
+    @Param({
+        "HPPCRT_INT_INT", "HPPCRT_INTERLEAVED_INT_INT",
+        "HPPCRT_INT_FLOAT", "HPPCRT_INTERLEAVED_INT_FLOAT",
+        "HPPCRT_LONG_LONG", "HPPCRT_INTERLEAVED_LONG_LONG"
+    })
+    public HashMapImplementations implementation;
+
+    private MapImplementation<?> impl;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        final XorShift128P prng = new XorShift128P(0x11223344);
+
+        final int[] keys = new int[this.targetSize];
+
+        for (int i = 0; i < this.targetSize; i++) {
+
+            keys[i] = prng.nextInt();
+        }
+
+        //one key out of two is present
+        final int[] containsKeys = new int[this.targetSize];
+
+        for (int i = 0; i < this.targetSize; i++) {
+
+            containsKeys[i] = (i & 1) == 0 ? keys[i] : prng.nextInt();
+        }
+
+        this.impl = this.implementation.getInstance(this.targetSize, 0.75f);
+
+        this.impl.setup(keys, HASH_QUALITY.NORMAL, containsKeys, keys);
+
+        //Fill it using an initial PutAll
+        this.impl.benchPutAll();
+
+        //then look up the keys in a different order than inserted
+        this.impl.reshuffleInsertedKeys(prng);
+    }
+
+    /**
+     * Time the 'put' operation of existing keys, i.e a lookup reading and replacing the value.
+     */
+    @Benchmark
+    public int timeExistingKeysPut() {
+
+        return this.impl.benchPutAll();
+    }
+
+    /**
+     * Time the 'get' operation of existing keys, i.e a successful lookup reading the value.
+     */
+    @Benchmark
+    public int timeExistingKeysGet() {
+
+        return this.impl.benchGetKeys();
+    }
+
+    /**
+     * Time the 'contains' operation, which does not read the values.
+     */
+    @Benchmark
+    public int timeContains() {
+
+        return this.impl.benchContainKeys();
+    }
+
+    public static void main(final String[] args) throws RunnerException
+    {
+        BenchmarkSuiteRunner.runJmhBasicBenchmarkWithCommandLine(BenchmarkHashMapLayout.class, args, 2000, 3000);
+    }
+}
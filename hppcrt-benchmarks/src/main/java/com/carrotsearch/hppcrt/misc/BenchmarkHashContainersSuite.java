@@ -3,8 +3,11 @@ package com.carrotsearch.hppcrt.misc;
 import java.util.Arrays;
 
 import com.carrotsearch.hppcrt.BenchmarkSuiteRunner;
+import com.carrotsearch.hppcrt.jmh.BenchmarkConcurrentHashMapGet;
+import com.carrotsearch.hppcrt.jmh.BenchmarkConcurrentHashMapPut;
 import com.carrotsearch.hppcrt.jmh.BenchmarkHashCollisions;
 import com.carrotsearch.hppcrt.jmh.BenchmarkHashMapContains;
+import com.carrotsearch.hppcrt.jmh.BenchmarkHashMapGetAll;
 import com.carrotsearch.hppcrt.jmh.BenchmarkHashMapPut;
 import com.carrotsearch.hppcrt.jmh.BenchmarkHashMapRemove;
 
@@ -18,7 +21,10 @@ public class BenchmarkHashContainersSuite
             BenchmarkHashCollisions.class,
             BenchmarkHashMapPut.class,
         BenchmarkHashMapContains.class,
+        BenchmarkHashMapGetAll.class,
         BenchmarkHashMapRemove.class,
+        BenchmarkConcurrentHashMapPut.class,
+        BenchmarkConcurrentHashMapGet.class,
 
     };
 
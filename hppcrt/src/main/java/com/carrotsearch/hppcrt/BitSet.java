@@ -0,0 +1,938 @@
+package com.carrotsearch.hppcrt;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import com.carrotsearch.hppcrt.cursors.IntCursor;
+import com.carrotsearch.hppcrt.cursors.LongCursor;
+import com.carrotsearch.hppcrt.predicates.IntPredicate;
+import com.carrotsearch.hppcrt.predicates.LongPredicate;
+import com.carrotsearch.hppcrt.procedures.IntProcedure;
+import com.carrotsearch.hppcrt.procedures.LongProcedure;
+
+/**
+ * A dense set of non-negative integers, stored as bits in a <code>long[]</code>.
+ *
+ * <p>For a set of values in <code>[0, n)</code> with a good fill ratio (doc ids filters, marks, ...)
+ * the memory footprint is <code>n / 8</code> bytes, i.e 1/32 of the footprint of an <code>IntHashSet</code>
+ * holding all the values, and the set operations run word by word, 64 values at a time,
+ * with the popcount kernels of {@link BitUtil}.</p>
+ *
+ * <p>Indexes are <code>long</code>, so the set can also be used as a <code>long</code> bitset of up to
+ * <code>64 * Integer.MAX_VALUE</code> bits. The <code>int</code> overloads are provided for convenience
+ * and do not need any cast.</p>
+ *
+ * <p>The set grows automatically on {@link #set(long)}, {@link #flip(long)}, {@link #union(BitSet)} and {@link #xor(BitSet)},
+ * while {@link #get(long)} and {@link #clear(long)} accept any index beyond the current capacity.</p>
+ *
+ * <p>Use {@link #asIntLookupContainer()} or {@link #asLongLookupContainer()} to pass a bitset where a container
+ * of <code>int</code>s or <code>long</code>s is expected.</p>
+ */
+public class BitSet implements Cloneable
+{
+    /**
+     * Internal representation of bits in this bit set: bit <code>i</code> is
+     * bit <code>(i &amp; 63)</code> of <code>bits[i &gt;&gt;&gt; 6]</code>.
+     */
+    public long[] bits;
+
+    /**
+     * The number of words (elements) used in the {@link #bits} array. Words
+     * at or beyond this index are always zero.
+     */
+    public int wlen;
+
+    /**
+     * Constructs a bit set with a default capacity.
+     */
+    public BitSet() {
+        this(64);
+    }
+
+    /**
+     * Constructs a bit set that is able to hold <code>numBits</code> bits without reallocating.
+     */
+    public BitSet(final long numBits) {
+        this(new long[BitSet.bits2words(numBits)], 0);
+    }
+
+    /**
+     * Constructs a bit set from an existing <code>long[]</code>, without copying. The first
+     * <code>numWords</code> words are in use. Words at or beyond <code>numWords</code> must be zero.
+     */
+    public BitSet(final long[] bits, final int numWords) {
+
+        if (numWords > bits.length) {
+            throw new IllegalArgumentException("numWords = " + numWords + " is bigger than bits.length = " + bits.length);
+        }
+
+        this.bits = bits;
+        this.wlen = numWords;
+    }
+
+    /**
+     * Returns the number of 64 bit words it would take to hold <code>numBits</code>.
+     */
+    public static int bits2words(final long numBits) {
+
+        return (int) (((numBits - 1) >>> 6) + 1);
+    }
+
+    /**
+     * Returns the current capacity in bits (1 greater than the index of the last bit).
+     */
+    public long capacity() {
+
+        return ((long) this.bits.length) << 6;
+    }
+
+    /**
+     * Returns the "logical size" of this bit set: the index of the highest set bit plus one,
+     * zero if the bit set is empty.
+     */
+    public long length() {
+
+        trimTrailingZeros();
+
+        if (this.wlen == 0) {
+            return 0;
+        }
+
+        return (((long) this.wlen - 1) << 6) + (64 - Long.numberOfLeadingZeros(this.bits[this.wlen - 1]));
+    }
+
+    /**
+     * Returns true if no bit is set.
+     */
+    public boolean isEmpty() {
+
+        for (int i = 0; i < this.wlen; i++) {
+
+            if (this.bits[i] != 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return the number of set bits.
+     */
+    public long cardinality() {
+
+        return BitUtil.pop_array(this.bits, 0, this.wlen);
+    }
+
+    /**
+     * Returns true or false for the specified bit <code>index</code>, false for any index beyond the capacity.
+     */
+    public boolean get(final int index) {
+
+        final int i = index >> 6; // div 64
+
+        if (i >= this.bits.length) {
+            return false;
+        }
+
+        return (this.bits[i] & (1L << index)) != 0; //shift is mod 64
+    }
+
+    /**
+     * Returns true or false for the specified bit <code>index</code>, false for any index beyond the capacity.
+     */
+    public boolean get(final long index) {
+
+        final long i = index >> 6;
+
+        if (i >= this.bits.length) {
+            return false;
+        }
+
+        return (this.bits[(int) i] & (1L << index)) != 0;
+    }
+
+    /**
+     * Sets the bit at the specified index, expanding the set if needed.
+     */
+    public void set(final long index) {
+
+        final int wordNum = expandingWordNum(index);
+
+        this.bits[wordNum] |= 1L << index;
+    }
+
+    /**
+     * Sets a range of bits, expanding the set if needed.
+     *
+     * @param startIndex lower index
+     * @param endIndex one-past the last bit to set
+     */
+    public void set(final long startIndex, final long endIndex) {
+
+        if (endIndex <= startIndex) {
+            return;
+        }
+
+        final int startWord = (int) (startIndex >> 6);
+
+        // since endIndex is one past the end, this is index of the last
+        // word to be changed.
+        final int endWord = expandingWordNum(endIndex - 1);
+
+        final long startmask = -1L << startIndex;
+        final long endmask = -1L >>> -endIndex; // 64-(endIndex&0x3f) is the same as -endIndex due to wrap
+
+        if (startWord == endWord) {
+            this.bits[startWord] |= (startmask & endmask);
+            return;
+        }
+
+        this.bits[startWord] |= startmask;
+        Arrays.fill(this.bits, startWord + 1, endWord, -1L);
+        this.bits[endWord] |= endmask;
+    }
+
+    /**
+     * Clears a bit, allowing access beyond the capacity.
+     */
+    public void clear(final long index) {
+
+        final long wordNum = index >> 6;
+
+        if (wordNum >= this.wlen) {
+            return;
+        }
+
+        this.bits[(int) wordNum] &= ~(1L << index);
+    }
+
+    /**
+     * Clears all the bits, keeping the capacity.
+     */
+    public void clear() {
+
+        Arrays.fill(this.bits, 0, this.wlen, 0L);
+        this.wlen = 0;
+    }
+
+    /**
+     * Sets a bit and returns its previous value, expanding the set if needed.
+     */
+    public boolean getAndSet(final long index) {
+
+        final int wordNum = expandingWordNum(index);
+
+        final long bitmask = 1L << index;
+        final boolean val = (this.bits[wordNum] & bitmask) != 0;
+
+        this.bits[wordNum] |= bitmask;
+
+        return val;
+    }
+
+    /**
+     * Flips a bit, expanding the set if needed.
+     */
+    public void flip(final long index) {
+
+        final int wordNum = expandingWordNum(index);
+
+        this.bits[wordNum] ^= 1L << index;
+    }
+
+    /**
+     * Returns the index of the first set bit starting at the <code>index</code> specified,
+     * -1 if there is no such bit.
+     */
+    public int nextSetBit(final int index) {
+
+        int i = index >>> 6;
+
+        if (i >= this.wlen) {
+            return -1;
+        }
+
+        final long word = this.bits[i] >>> index; // skip all the bits to the right of index
+
+        if (word != 0) {
+            return index + Long.numberOfTrailingZeros(word);
+        }
+
+        while (++i < this.wlen) {
+
+            final long w = this.bits[i];
+
+            if (w != 0) {
+                return (i << 6) + Long.numberOfTrailingZeros(w);
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the index of the first set bit starting at the <code>index</code> specified,
+     * -1 if there is no such bit.
+     */
+    public long nextSetBit(final long index) {
+
+        if ((index >>> 6) >= this.wlen) {
+            return -1;
+        }
+
+        int i = (int) (index >>> 6);
+
+        final long word = this.bits[i] >>> index;
+
+        if (word != 0) {
+            return index + Long.numberOfTrailingZeros(word);
+        }
+
+        while (++i < this.wlen) {
+
+            final long w = this.bits[i];
+
+            if (w != 0) {
+                return (((long) i) << 6) + Long.numberOfTrailingZeros(w);
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the index of the last set bit at or before the <code>index</code> specified,
+     * -1 if there is no such bit.
+     */
+    public int prevSetBit(final int index) {
+
+        if (index < 0) {
+            return -1;
+        }
+
+        int i = index >> 6;
+
+        if (i >= this.wlen) {
+
+            i = this.wlen - 1;
+        } else {
+
+            // skip all the bits to the left of index
+            final long word = this.bits[i] << (63 - index);
+
+            if (word != 0) {
+                return index - Long.numberOfLeadingZeros(word);
+            }
+
+            i--;
+        }
+
+        for (; i >= 0; i--) {
+
+            final long word = this.bits[i];
+
+            if (word != 0) {
+                return (i << 6) + 63 - Long.numberOfLeadingZeros(word);
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the index of the last set bit at or before the <code>index</code> specified,
+     * -1 if there is no such bit.
+     */
+    public long prevSetBit(final long index) {
+
+        if (index < 0) {
+            return -1;
+        }
+
+        int i;
+
+        if ((index >> 6) >= this.wlen) {
+
+            i = this.wlen - 1;
+        } else {
+
+            i = (int) (index >> 6);
+
+            final long word = this.bits[i] << (63 - index);
+
+            if (word != 0) {
+                return index - Long.numberOfLeadingZeros(word);
+            }
+
+            i--;
+        }
+
+        for (; i >= 0; i--) {
+
+            final long word = this.bits[i];
+
+            if (word != 0) {
+                return (((long) i) << 6) + 63 - Long.numberOfLeadingZeros(word);
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * <code>this = this AND other</code>, in place.
+     */
+    public void intersect(final BitSet other) {
+
+        final int newLen = Math.min(this.wlen, other.wlen);
+
+        final long[] thisArr = this.bits;
+        final long[] otherArr = other.bits;
+
+        for (int pos = 0; pos < newLen; pos++) {
+            thisArr[pos] &= otherArr[pos];
+        }
+
+        if (this.wlen > newLen) {
+            // fill zeros from the new shorter length to the old length
+            Arrays.fill(thisArr, newLen, this.wlen, 0L);
+        }
+
+        this.wlen = newLen;
+    }
+
+    /**
+     * <code>this = this OR other</code>, in place, expanding the set if needed.
+     */
+    public void union(final BitSet other) {
+
+        final int newLen = Math.max(this.wlen, other.wlen);
+
+        ensureCapacityWords(newLen);
+
+        final long[] thisArr = this.bits;
+        final long[] otherArr = other.bits;
+
+        final int pos = Math.min(this.wlen, other.wlen);
+
+        for (int i = 0; i < pos; i++) {
+            thisArr[i] |= otherArr[i];
+        }
+
+        if (this.wlen < newLen) {
+            System.arraycopy(otherArr, this.wlen, thisArr, this.wlen, newLen - this.wlen);
+        }
+
+        this.wlen = newLen;
+    }
+
+    /**
+     * <code>this = this AND NOT other</code>, in place.
+     */
+    public void andNot(final BitSet other) {
+
+        final int len = Math.min(this.wlen, other.wlen);
+
+        final long[] thisArr = this.bits;
+        final long[] otherArr = other.bits;
+
+        for (int pos = 0; pos < len; pos++) {
+            thisArr[pos] &= ~otherArr[pos];
+        }
+    }
+
+    /**
+     * <code>this = this XOR other</code>, in place, expanding the set if needed.
+     */
+    public void xor(final BitSet other) {
+
+        final int newLen = Math.max(this.wlen, other.wlen);
+
+        ensureCapacityWords(newLen);
+
+        final long[] thisArr = this.bits;
+        final long[] otherArr = other.bits;
+
+        final int pos = Math.min(this.wlen, other.wlen);
+
+        for (int i = 0; i < pos; i++) {
+            thisArr[i] ^= otherArr[i];
+        }
+
+        if (this.wlen < newLen) {
+            System.arraycopy(otherArr, this.wlen, thisArr, this.wlen, newLen - this.wlen);
+        }
+
+        this.wlen = newLen;
+    }
+
+    /**
+     * Returns true if the sets have any element in common.
+     */
+    public boolean intersects(final BitSet other) {
+
+        int pos = Math.min(this.wlen, other.wlen);
+
+        final long[] thisArr = this.bits;
+        final long[] otherArr = other.bits;
+
+        while (--pos >= 0) {
+
+            if ((thisArr[pos] & otherArr[pos]) != 0) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns the popcount or cardinality of the intersection of the two sets,
+     * without materializing it. Neither set is modified.
+     */
+    public static long intersectionCount(final BitSet a, final BitSet b) {
+
+        return BitUtil.pop_intersect(a.bits, b.bits, 0, Math.min(a.wlen, b.wlen));
+    }
+
+    /**
+     * Returns the popcount or cardinality of the union of the two sets,
+     * without materializing it. Neither set is modified.
+     */
+    public static long unionCount(final BitSet a, final BitSet b) {
+
+        long tot = BitUtil.pop_union(a.bits, b.bits, 0, Math.min(a.wlen, b.wlen));
+
+        if (a.wlen < b.wlen) {
+            tot += BitUtil.pop_array(b.bits, a.wlen, b.wlen - a.wlen);
+        } else if (a.wlen > b.wlen) {
+            tot += BitUtil.pop_array(a.bits, b.wlen, a.wlen - b.wlen);
+        }
+
+        return tot;
+    }
+
+    /**
+     * Returns the popcount or cardinality of "a and not b", or "intersection(a, not(b))",
+     * without materializing it. Neither set is modified.
+     */
+    public static long andNotCount(final BitSet a, final BitSet b) {
+
+        long tot = BitUtil.pop_andnot(a.bits, b.bits, 0, Math.min(a.wlen, b.wlen));
+
+        if (a.wlen > b.wlen) {
+            tot += BitUtil.pop_array(a.bits, b.wlen, a.wlen - b.wlen);
+        }
+
+        return tot;
+    }
+
+    /**
+     * Returns the popcount or cardinality of the exclusive-or of the two sets,
+     * without materializing it. Neither set is modified.
+     */
+    public static long xorCount(final BitSet a, final BitSet b) {
+
+        long tot = BitUtil.pop_xor(a.bits, b.bits, 0, Math.min(a.wlen, b.wlen));
+
+        if (a.wlen < b.wlen) {
+            tot += BitUtil.pop_array(b.bits, a.wlen, b.wlen - a.wlen);
+        } else if (a.wlen > b.wlen) {
+            tot += BitUtil.pop_array(a.bits, b.wlen, a.wlen - b.wlen);
+        }
+
+        return tot;
+    }
+
+    /**
+     * Ensure that the set can hold at least <code>numBits</code> bits without reallocating.
+     */
+    public void ensureCapacity(final long numBits) {
+
+        ensureCapacityWords(BitSet.bits2words(numBits));
+    }
+
+    /**
+     * Ensure that the <code>long[]</code> is big enough to hold <code>numWords</code> words.
+     */
+    public void ensureCapacityWords(final int numWords) {
+
+        if (this.bits.length < numWords) {
+
+            try {
+                //grow by at least 1/8th, as for the lists.
+                final long[] newBits = new long[Math.max(numWords, this.bits.length + (this.bits.length >>> 3))];
+
+                System.arraycopy(this.bits, 0, newBits, 0, this.bits.length);
+                this.bits = newBits;
+
+            } catch (final OutOfMemoryError e) {
+
+                throw new BufferAllocationException(
+                        "Not enough memory to allocate a bitset of %d words.",
+                        e,
+                        numWords);
+            }
+        }
+    }
+
+    /**
+     * Lowers {@link #wlen}, the number of words in use, by checking for trailing zero words.
+     */
+    public void trimTrailingZeros() {
+
+        int idx = this.wlen - 1;
+
+        while (idx >= 0 && this.bits[idx] == 0) {
+            idx--;
+        }
+
+        this.wlen = idx + 1;
+    }
+
+    /**
+     * Returns the word index of <code>index</code>, growing the storage and {@link #wlen} to
+     * include it if needed.
+     */
+    private int expandingWordNum(final long index) {
+
+        final int wordNum = (int) (index >> 6);
+
+        if (wordNum >= this.wlen) {
+
+            ensureCapacityWords(wordNum + 1);
+            this.wlen = wordNum + 1;
+        }
+
+        return wordNum;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BitSet clone() {
+
+        try {
+            final BitSet obj = (BitSet) super.clone();
+            obj.bits = this.bits.clone();
+            return obj;
+
+        } catch (final CloneNotSupportedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Two bitsets are equal if they have the same bits set, whatever their capacities.
+     */
+    @Override
+    public boolean equals(final Object o) {
+
+        if (this == o) {
+            return true;
+        }
+
+        if (!(o instanceof BitSet)) {
+            return false;
+        }
+
+        BitSet a;
+        BitSet b = (BitSet) o;
+
+        // make a the larger set.
+        if (b.wlen > this.wlen) {
+            a = b;
+            b = this;
+        } else {
+            a = this;
+        }
+
+        // check for any set bits out of the range of b
+        for (int i = a.wlen - 1; i >= b.wlen; i--) {
+
+            if (a.bits[i] != 0) {
+                return false;
+            }
+        }
+
+        for (int i = b.wlen - 1; i >= 0; i--) {
+
+            if (a.bits[i] != b.bits[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+
+        // Start with a zero hash and use a mix that results in zero if the input is zero.
+        // This effectively truncates trailing zeros without an explicit check.
+        long h = 0;
+
+        for (int i = this.wlen; --i >= 0;) {
+            h ^= this.bits[i];
+            h = (h << 1) | (h >>> 63); // rotate left
+        }
+
+        // fold leftmost bits into right and add a constant to prevent
+        // empty sets from returning 0, which is too common.
+        return (int) ((h >> 32) ^ h) + 0x98761234;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+
+        final StringBuilder b = new StringBuilder();
+        b.append('[');
+
+        for (long i = nextSetBit(0L); i >= 0; i = nextSetBit(i + 1)) {
+
+            if (b.length() > 1) {
+                b.append(", ");
+            }
+
+            b.append(i);
+        }
+
+        b.append(']');
+
+        return b.toString();
+    }
+
+    /**
+     * Returns a view over the set bits of this bitset as an {@link IntLookupContainer}.
+     * The view is backed by the bitset: it reflects later changes.
+     * No bit index must be bigger than {@link Integer#MAX_VALUE}.
+     */
+    public IntLookupContainer asIntLookupContainer() {
+
+        return new IntView();
+    }
+
+    /**
+     * Returns a view over the set bits of this bitset as a {@link LongLookupContainer}.
+     * The view is backed by the bitset: it reflects later changes.
+     */
+    public LongLookupContainer asLongLookupContainer() {
+
+        return new LongView();
+    }
+
+    /**
+     * An {@link IntLookupContainer} view of the set bits.
+     */
+    private final class IntView implements IntLookupContainer
+    {
+        @Override
+        public int size() {
+
+            return (int) BitSet.this.cardinality();
+        }
+
+        @Override
+        public int capacity() {
+
+            return (int) Math.min(Integer.MAX_VALUE, BitSet.this.capacity());
+        }
+
+        @Override
+        public boolean isEmpty() {
+
+            return BitSet.this.isEmpty();
+        }
+
+        @Override
+        public boolean contains(final int index) {
+
+            return index >= 0 && BitSet.this.get(index);
+        }
+
+        @Override
+        public Iterator<IntCursor> iterator() {
+
+            return new AbstractIterator<IntCursor>() {
+
+                private final IntCursor cursor = new IntCursor();
+
+                private int next = BitSet.this.nextSetBit(0);
+
+                @Override
+                protected IntCursor fetch() {
+
+                    if (this.next < 0) {
+                        return done();
+                    }
+
+                    this.cursor.index = this.next;
+                    this.cursor.value = this.next;
+
+                    this.next = BitSet.this.nextSetBit(this.next + 1);
+
+                    return this.cursor;
+                }
+            };
+        }
+
+        @Override
+        public <T extends IntProcedure> T forEach(final T procedure) {
+
+            for (int i = BitSet.this.nextSetBit(0); i >= 0; i = BitSet.this.nextSetBit(i + 1)) {
+                procedure.apply(i);
+            }
+
+            return procedure;
+        }
+
+        @Override
+        public <T extends IntPredicate> T forEach(final T predicate) {
+
+            for (int i = BitSet.this.nextSetBit(0); i >= 0; i = BitSet.this.nextSetBit(i + 1)) {
+
+                if (!predicate.apply(i)) {
+                    break;
+                }
+            }
+
+            return predicate;
+        }
+
+        @Override
+        public int[] toArray() {
+
+            return toArray(new int[size()]);
+        }
+
+        @Override
+        public int[] toArray(final int[] target) {
+
+            int count = 0;
+
+            for (int i = BitSet.this.nextSetBit(0); i >= 0; i = BitSet.this.nextSetBit(i + 1)) {
+                target[count++] = i;
+            }
+
+            return target;
+        }
+
+        @Override
+        public String toString() {
+
+            return BitSet.this.toString();
+        }
+    }
+
+    /**
+     * A {@link LongLookupContainer} view of the set bits.
+     */
+    private final class LongView implements LongLookupContainer
+    {
+        @Override
+        public int size() {
+
+            return (int) BitSet.this.cardinality();
+        }
+
+        @Override
+        public int capacity() {
+
+            return (int) Math.min(Integer.MAX_VALUE, BitSet.this.capacity());
+        }
+
+        @Override
+        public boolean isEmpty() {
+
+            return BitSet.this.isEmpty();
+        }
+
+        @Override
+        public boolean contains(final long index) {
+
+            return index >= 0 && BitSet.this.get(index);
+        }
+
+        @Override
+        public Iterator<LongCursor> iterator() {
+
+            return new AbstractIterator<LongCursor>() {
+
+                private final LongCursor cursor = new LongCursor();
+
+                private long next = BitSet.this.nextSetBit(0L);
+
+                @Override
+                protected LongCursor fetch() {
+
+                    if (this.next < 0) {
+                        return done();
+                    }
+
+                    //the index is the word holding the bit
+                    this.cursor.index = (int) (this.next >>> 6);
+                    this.cursor.value = this.next;
+
+                    this.next = BitSet.this.nextSetBit(this.next + 1);
+
+                    return this.cursor;
+                }
+            };
+        }
+
+        @Override
+        public <T extends LongProcedure> T forEach(final T procedure) {
+
+            for (long i = BitSet.this.nextSetBit(0L); i >= 0; i = BitSet.this.nextSetBit(i + 1)) {
+                procedure.apply(i);
+            }
+
+            return procedure;
+        }
+
+        @Override
+        public <T extends LongPredicate> T forEach(final T predicate) {
+
+            for (long i = BitSet.this.nextSetBit(0L); i >= 0; i = BitSet.this.nextSetBit(i + 1)) {
+
+                if (!predicate.apply(i)) {
+                    break;
+                }
+            }
+
+            return predicate;
+        }
+
+        @Override
+        public long[] toArray() {
+
+            return toArray(new long[size()]);
+        }
+
+        @Override
+        public long[] toArray(final long[] target) {
+
+            int count = 0;
+
+            for (long i = BitSet.this.nextSetBit(0L); i >= 0; i = BitSet.this.nextSetBit(i + 1)) {
+                target[count++] = i;
+            }
+
+            return target;
+        }
+
+        @Override
+        public String toString() {
+
+            return BitSet.this.toString();
+        }
+    }
+}
@@ -28,7 +28,6 @@ package com.carrotsearch.hppcrt;
  * <li>some of the Lk and Hk constants that are used by the above:
  * L8 {@link #L8_L}, H8 {@link #H8_L}, L9 {@link #L9_L}, L16 {@link #L16_L}and H16 {@link #H8_L}.
  * </ul>
- * @lucene.internal
  */
 public final class BroadWord {
 
@@ -0,0 +1,127 @@
+package com.carrotsearch.hppcrt;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Utilities to allocate, map, clear and release the direct {@link ByteBuffer}s
+ * backing off-heap containers.
+ */
+public final class DirectBuffers
+{
+    /**
+     * No instances.
+     */
+    private DirectBuffers() {
+        //nothing
+    }
+
+    /**
+     * Allocate a zero-filled direct buffer of <code>capacity</code> bytes, in the native byte order.
+     * @throws OutOfMemoryError if the direct memory is exhausted.
+     */
+    public static ByteBuffer allocate(final int capacity) {
+
+        return ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Map a region of a file holding <code>slots</code> slots of 2^<code>slotShift</code> bytes each,
+     * as pages of at most 2^<code>pageShift</code> slots, in little-endian order so that the file layout does not depend on the platform.
+     * <code>slots</code> must be a power of two.
+     */
+    public static ByteBuffer[] map(final FileChannel channel, final FileChannel.MapMode mode, final long position,
+            final long slots, final int slotShift, final int pageShift) throws IOException {
+
+        final long pageSlots = Math.min(slots, 1L << pageShift);
+        final int pageCount = (int) (slots / pageSlots);
+
+        final ByteBuffer[] pages = new ByteBuffer[pageCount];
+
+        try {
+            for (int i = 0; i < pageCount; i++) {
+
+                pages[i] = channel.map(mode, position + ((i * pageSlots) << slotShift), pageSlots << slotShift).order(ByteOrder.LITTLE_ENDIAN);
+            }
+        } catch (final IOException e) {
+
+            for (int i = 0; i < pageCount; i++) {
+                DirectBuffers.release(pages[i]);
+            }
+
+            throw e;
+        }
+
+        return pages;
+    }
+
+    /**
+     * Zero-fill the whole capacity of a buffer, regardless of its position and limit.
+     */
+    public static void zero(final ByteBuffer buffer) {
+
+        final int capacity = buffer.capacity();
+
+        int i = 0;
+
+        for (; i + 8 <= capacity; i += 8) {
+            buffer.putLong(i, 0L);
+        }
+
+        for (; i < capacity; i++) {
+            buffer.put(i, (byte) 0);
+        }
+    }
+
+    /**
+     * Release the native memory of a direct or mapped buffer right away, instead of waiting
+     * for the buffer to be garbage collected. This is a best effort only, relying on JDK internals through reflection:
+     * if they are not available, the memory is reclaimed by the GC as usual.
+     * <p>
+     * The buffer, and all the buffers sharing its content, must never be accessed afterwards.
+     * </p>
+     */
+    public static void release(final ByteBuffer buffer) {
+
+        if (buffer == null || !buffer.isDirect()) {
+            return;
+        }
+
+        try {
+            //Java 9+ : sun.misc.Unsafe.invokeCleaner(ByteBuffer)
+            final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            final Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+
+            final Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+
+            invokeCleaner.invoke(theUnsafe.get(null), buffer);
+            return;
+
+        } catch (final Exception e) {
+            //not available, try the next way
+        }
+
+        try {
+            //Java 5 - 8 : ((sun.nio.ch.DirectBuffer) buffer).cleaner().clean()
+            final Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+
+            final Object cleaner = cleanerMethod.invoke(buffer);
+
+            if (cleaner != null) {
+
+                final Method cleanMethod = cleaner.getClass().getMethod("clean");
+                cleanMethod.setAccessible(true);
+
+                cleanMethod.invoke(cleaner);
+            }
+        } catch (final Exception e) {
+            //not available either, let the GC do the job.
+        }
+    }
+}
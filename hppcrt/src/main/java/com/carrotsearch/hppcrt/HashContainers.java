@@ -113,6 +113,20 @@ public final class HashContainers
         return Math.min(arraySize - 1, (int) Math.ceil(arraySize * loadFactor));
     }
 
+    /**
+     * Default probe length of a newly inserted key above which a hash container
+     * rehashes its keys with a new perturbation, given loadFactor. Random keys have
+     * longer probe chains as the load factor grows, so the threshold grows with 1 / (1 - loadFactor)^2:
+     * 1024 for the default load factor, several times the longest chains of random keys.
+     * @param loadFactor
+     */
+    public static int defaultReseedThreshold(final double loadFactor) {
+
+        final double emptyRatio = 1.0 - loadFactor;
+
+        return (int) (64.0 / (emptyRatio * emptyRatio));
+    }
+
     /** */
     @SuppressWarnings("boxing")
     private static void checkLoadFactor(final double loadFactor, final double minAllowedInclusive,
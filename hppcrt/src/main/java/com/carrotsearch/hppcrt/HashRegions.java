@@ -0,0 +1,190 @@
+package com.carrotsearch.hppcrt;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Utilities to build hash containers in parallel: the hash buffer is split into
+ * a power-of-two number of regions of contiguous slots, i.e. the keys are partitioned by the high bits
+ * of their home slot, so that each region can be filled by its own task without any synchronization.
+ */
+public final class HashRegions
+{
+    /**
+     * Minimum number of slots of a region, below which partitioning
+     * costs more than it saves.
+     */
+    public final static int MIN_REGION_LENGTH = 1 << 10;
+
+    /**
+     * Number of regions per task, so that the tasks stay balanced
+     * despite the regions being unevenly filled.
+     */
+    private final static int REGIONS_PER_TASK = 4;
+
+    /**
+     * No instances.
+     */
+    private HashRegions() {
+        //nothing
+    }
+
+    /**
+     * Number of regions (a power of two) to split a hash buffer of <code>bufferLength</code> slots into,
+     * for <code>parallelism</code> concurrent tasks. 1 means that a parallel build is not worth it.
+     */
+    public static int regionCount(final int bufferLength, final int parallelism) {
+
+        if (parallelism <= 1) {
+            return 1;
+        }
+
+        int count = BitUtil.nextHighestPowerOfTwo(parallelism) * HashRegions.REGIONS_PER_TASK;
+
+        while (count > 1 && bufferLength / count < HashRegions.MIN_REGION_LENGTH) {
+            count >>= 1;
+        }
+
+        return count;
+    }
+
+    /**
+     * Counting-sort the indices of <code>hashes</code> by region, where the region of index i is
+     * <code>(hashes[i] &amp; mask) >>> regionShift</code>. The sort is stable, so the indices of a
+     * region keep their original order.
+     * @param regionStarts (output) of length (number of regions + 1), region r occupies <code>[regionStarts[r]; regionStarts[r + 1][</code>
+     *  of the returned array.
+     * @return the sorted indices.
+     */
+    public static int[] sortByRegion(final int[] hashes, final int mask, final int regionShift, final int[] regionStarts,
+            final ExecutorService executor, final int parallelism) {
+
+        final int nbRegions = regionStarts.length - 1;
+        final int nbTasks = Math.max(1, Math.min(parallelism, hashes.length));
+
+        //1) count the keys of each region, per chunk of hashes
+        final int[][] counts = new int[nbTasks][nbRegions];
+
+        final List<Callable<Object>> countTasks = new ArrayList<Callable<Object>>(nbTasks);
+
+        for (int t = 0; t < nbTasks; t++) {
+
+            final int from = HashRegions.chunkStart(hashes.length, nbTasks, t);
+            final int to = HashRegions.chunkStart(hashes.length, nbTasks, t + 1);
+            final int[] count = counts[t];
+
+            countTasks.add(new Callable<Object>() {
+
+                @Override
+                public Object call() {
+
+                    for (int i = from; i < to; i++) {
+
+                        count[(hashes[i] & mask) >>> regionShift]++;
+                    }
+
+                    return null;
+                }
+            });
+        }
+
+        HashRegions.invokeAll(executor, countTasks);
+
+        //2) turn the counts into the start position of each (region, chunk)
+        int next = 0;
+
+        for (int r = 0; r < nbRegions; r++) {
+
+            regionStarts[r] = next;
+
+            for (int t = 0; t < nbTasks; t++) {
+
+                final int count = counts[t][r];
+                counts[t][r] = next;
+                next += count;
+            }
+        }
+
+        regionStarts[nbRegions] = next;
+
+        //3) scatter the indices
+        final int[] sorted = new int[next];
+
+        final List<Callable<Object>> scatterTasks = new ArrayList<Callable<Object>>(nbTasks);
+
+        for (int t = 0; t < nbTasks; t++) {
+
+            final int from = HashRegions.chunkStart(hashes.length, nbTasks, t);
+            final int to = HashRegions.chunkStart(hashes.length, nbTasks, t + 1);
+            final int[] position = counts[t];
+
+            scatterTasks.add(new Callable<Object>() {
+
+                @Override
+                public Object call() {
+
+                    for (int i = from; i < to; i++) {
+
+                        sorted[position[(hashes[i] & mask) >>> regionShift]++] = i;
+                    }
+
+                    return null;
+                }
+            });
+        }
+
+        HashRegions.invokeAll(executor, scatterTasks);
+
+        return sorted;
+    }
+
+    /**
+     * Start of the chunk <code>chunk</code> when splitting <code>length</code> elements into <code>nbChunks</code> contiguous chunks.
+     */
+    public static int chunkStart(final int length, final int nbChunks, final int chunk) {
+
+        return (int) ((long) length * chunk / nbChunks);
+    }
+
+    /**
+     * Run all the tasks on executor, wait for their completion and return their results in order.
+     * A failure of a task is rethrown as is if unchecked, else wrapped in a {@link RuntimeException}.
+     */
+    public static <T> List<T> invokeAll(final ExecutorService executor, final List<Callable<T>> tasks) {
+
+        try {
+
+            final List<T> results = new ArrayList<T>(tasks.size());
+
+            for (final Future<T> future : executor.invokeAll(tasks)) {
+
+                results.add(future.get());
+            }
+
+            return results;
+
+        } catch (final InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+
+        } catch (final ExecutionException e) {
+
+            final Throwable cause = e.getCause();
+
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+
+            throw new RuntimeException(cause);
+        }
+    }
+}
@@ -8,7 +8,8 @@ package com.carrotsearch.hppcrt;
  * <pre>
  * - Initial size is given either by global {@link #configureInitialPoolSize(int)} call,
  *   by system property "HPPC_ITERATOR_POOLSIZE",
- *   or by default, the number of processors.
+ *   or by default, the number of processors. The initial iterators are allocated by the first borrow(),
+ *   not by the constructor.
  * - Grows by chunks of initial size,
  * - When its size gets bigger than MAX_SIZE_GROWTH_FACTOR * initial size,
  *   capacity remains constant while 'initial size'  old objects are disposed of.
@@ -47,24 +48,33 @@ public class IteratorPool<OBJECT_TYPE, ITERATOR_TYPE extends AbstractIterator<OB
     private static int MAX_SIZE = IteratorPool.MAX_SIZE_GROWTH_FACTOR * IteratorPool.LINEAR_GROWTH_SIZE;
     private static int DISCARDING_SIZE = IteratorPool.LINEAR_GROWTH_SIZE;
 
-    public IteratorPool(final ObjectFactory<ITERATOR_TYPE> objFactory) {
-        super(objFactory, IteratorPool.INITIAL_SIZE, new ArraySizingStrategy() {
-
-            @Override
-            public int grow(final int currentBufferLength, final int elementsCount, final int expectedAdditions) {
+    /**
+     * The growth policy of all iterator pools, which only depends on the static sizes.
+     */
+    private static final ArraySizingStrategy GROWTH_POLICY = new ArraySizingStrategy() {
 
-                // Add at most Internals.NB_OF_PROCESSORS + expected new iterator instances
-                int newSize = Math.max(elementsCount, currentBufferLength) + IteratorPool.LINEAR_GROWTH_SIZE
-                        + expectedAdditions;
+        @Override
+        public int grow(final int currentBufferLength, final int elementsCount, final int expectedAdditions) {
 
-                if (newSize > IteratorPool.MAX_SIZE) {
-                    //discard NB_OF_PROCESSORS objects
-                    newSize = -1 * IteratorPool.DISCARDING_SIZE;
-                }
+            // Add at most Internals.NB_OF_PROCESSORS + expected new iterator instances
+            int newSize = Math.max(elementsCount, currentBufferLength) + IteratorPool.LINEAR_GROWTH_SIZE
+                    + expectedAdditions;
 
-                return newSize;
+            if (newSize > IteratorPool.MAX_SIZE) {
+                //discard NB_OF_PROCESSORS objects
+                newSize = -1 * IteratorPool.DISCARDING_SIZE;
             }
-        });
+
+            return newSize;
+        }
+    };
+
+    /**
+     * The iterators are only allocated by the first {@link #borrow()}, i.e. the first iterator() call
+     * of the owning container, so that containers never iterated with an iterator do not pay for them.
+     */
+    public IteratorPool(final ObjectFactory<ITERATOR_TYPE> objFactory) {
+        super(objFactory, IteratorPool.INITIAL_SIZE, IteratorPool.GROWTH_POLICY);
     }
 
     /**
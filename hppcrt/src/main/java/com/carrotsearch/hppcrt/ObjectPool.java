@@ -4,6 +4,11 @@ package com.carrotsearch.hppcrt;
  * An Object pool of configurable and extensible size, from which
  * pre-allocated objects can be borrowed, and released after use
  * by returning them to the pool.
+ * <p>
+ * The objects of the initial size are only allocated by the first {@link #borrow()}, so that
+ * a pool which is never used costs a few fields only. {@link #size()} and {@link #capacity()} already
+ * account for them before.
+ * </p>
  *
  * @param <E>
  */
@@ -41,18 +46,17 @@ public class ObjectPool<E>
     protected ArraySizingStrategy growthPolicy;
 
     /**
-     * The low-level array holding the object instances.
+     * The low-level array holding the object instances, <code>null</code> until the first {@link #borrow()}.
      */
     protected E[] arrayPool;
 
     /**
      * Create a new pool of Objects E, constructed with objFactory, of size  initialSize
-     * at startup, with growthStrategy as a policy when new objects need to be allocated.
+     * at first use, with growthStrategy as a policy when new objects need to be allocated.
      * @param objFactory
      * @param initialSize
      * @param growthPolicy
      */
-    @SuppressWarnings("unchecked")
     public ObjectPool(final ObjectFactory<E> objFactory, final int initialSize, final ArraySizingStrategy growthPolicy) {
 
         //set basic fields
@@ -65,11 +69,18 @@ public class ObjectPool<E>
         assert this.growthPolicy != null;
 
         this.capacity = this.currentSize;
+    }
+
+    /**
+     * Allocate {@link #arrayPool} and its initial objects, i.e. the currentSize first slots.
+     */
+    @SuppressWarnings("unchecked")
+    private void allocateArrayPool() {
 
         //Construct
         this.arrayPool = (E[]) new Object[this.capacity];
         //allocate
-        for (int i = 0; i < this.arrayPool.length; i++) {
+        for (int i = 0; i < this.currentSize; i++) {
 
             this.arrayPool[i] = this.factory.create();
         }
@@ -85,6 +96,11 @@ public class ObjectPool<E>
 
         E borrowedObject = null;
 
+        if (this.arrayPool == null) {
+
+            allocateArrayPool();
+        }
+
         //A) Check that there are enough objects, else allocate new ones following the policy
         if (this.currentSize <= 0) {
 
@@ -155,6 +171,11 @@ public class ObjectPool<E>
         //apply reset in all cases
         this.factory.reset(releasedObject);
 
+        if (this.arrayPool == null) {
+            //not borrowed from this pool, but accept it anyway.
+            allocateArrayPool();
+        }
+
         //only authorize if size < capacity.
         //this could happen if by mistake several instances of the same object has been
         //put back to the pool. It is a logical error, but we cannot check that anyway.
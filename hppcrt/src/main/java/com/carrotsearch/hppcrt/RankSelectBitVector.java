@@ -0,0 +1,294 @@
+package com.carrotsearch.hppcrt;
+
+/**
+ * An immutable bit vector answering rank and select queries in constant time,
+ * with the <i>rank9</i> layout of "Broadword Implementation of Rank/Select Queries" (Sebastiano Vigna, 2012):
+ * <ul>
+ * <li>{@link #rank(long)}: the number of set bits before a position, O(1): one lookup in the counts index, one {@link Long#bitCount},</li>
+ * <li>{@link #select(long)}: the position of the set bit of a given rank, near O(1): one lookup in a sampled index,
+ * a short scan of the counts index, then {@link BroadWord#select9(long, int)} in the selected word,</li>
+ * <li>{@link #select0(long)}: the same for the clear bits.</li>
+ * </ul>
+ *
+ * <p>The counts index takes 2 <code>long</code>s per block of 8 words, i.e 25% of the bits, and the select indexes sample one <code>int</code>
+ * per {@link #SELECT_SAMPLING} set bits, and per {@link #SELECT_SAMPLING} clear bits.</p>
+ *
+ * <p>The bits are not copied, so they must not be modified once the vector is built.</p>
+ */
+public final class RankSelectBitVector
+{
+    /**
+     * Number of set bits between two samples of the select index.
+     */
+    public static final int SELECT_SAMPLING = 512;
+
+    /**
+     * The bits, bit <code>i</code> being bit <code>(i &amp; 63)</code> of <code>bits[i &gt;&gt;&gt; 6]</code>.
+     */
+    public final long[] bits;
+
+    /**
+     * Number of bits of the vector.
+     */
+    public final long numBits;
+
+    /**
+     * Number of set bits of the vector.
+     */
+    private final long ones;
+
+    /**
+     * For each block of 8 words <code>b</code>: <code>counts[2 * b]</code> is the number of set bits before the block,
+     * and <code>counts[2 * b + 1]</code> packs the number of set bits of the block before the words 1 to 7,
+     * 9 bits each. The last pair is a sentinel, with the total number of set bits.
+     */
+    private final long[] counts;
+
+    /**
+     * <code>selectSamples[j]</code> is the block holding the set bit of rank <code>j * SELECT_SAMPLING</code>.
+     */
+    private final int[] selectSamples;
+
+    /**
+     * <code>select0Samples[j]</code> is the block holding the clear bit of rank <code>j * SELECT_SAMPLING</code>.
+     */
+    private final int[] select0Samples;
+
+    /**
+     * Build the rank / select indexes over the first <code>numBits</code> bits of <code>bits</code>.
+     */
+    public RankSelectBitVector(final long[] bits, final long numBits) {
+
+        if (numBits < 0 || BitSet.bits2words(numBits) > bits.length) {
+
+            throw new IllegalArgumentException("numBits = " + numBits + " does not fit in " + bits.length + " words");
+        }
+
+        this.bits = bits;
+        this.numBits = numBits;
+
+        final int words = BitSet.bits2words(numBits);
+        final int blocks = (words + 7) >>> 3;
+
+        this.counts = new long[2 * blocks + 2];
+
+        long total = 0;
+
+        for (int block = 0; block < blocks; block++) {
+
+            this.counts[2 * block] = total;
+
+            long packed = 0;
+            int inBlock = 0;
+
+            for (int k = 0; k < 8; k++) {
+
+                if (k > 0) {
+                    packed |= ((long) inBlock) << (9 * (k - 1));
+                }
+
+                final int word = (block << 3) + k;
+
+                if (word < words) {
+                    inBlock += Long.bitCount(wordAt(word));
+                }
+            }
+
+            this.counts[2 * block + 1] = packed;
+            total += inBlock;
+        }
+
+        this.counts[2 * blocks] = total;
+        this.ones = total;
+
+        //sample every SELECT_SAMPLING set bits
+        this.selectSamples = new int[(int) ((total + RankSelectBitVector.SELECT_SAMPLING - 1) / RankSelectBitVector.SELECT_SAMPLING)];
+
+        final long zeros = numBits - total;
+
+        this.select0Samples = new int[(int) ((zeros + RankSelectBitVector.SELECT_SAMPLING - 1) / RankSelectBitVector.SELECT_SAMPLING)];
+
+        int sample = 0;
+        int sample0 = 0;
+
+        for (int block = 0; block < blocks; block++) {
+
+            while (sample < this.selectSamples.length && ((long) sample) * RankSelectBitVector.SELECT_SAMPLING < this.counts[2 * block + 2]) {
+
+                this.selectSamples[sample++] = block;
+            }
+
+            while (sample0 < this.select0Samples.length && ((long) sample0) * RankSelectBitVector.SELECT_SAMPLING < zerosBefore(block + 1)) {
+
+                this.select0Samples[sample0++] = block;
+            }
+        }
+    }
+
+    /**
+     * Build the rank / select indexes over the words in use of <code>bitSet</code>.
+     */
+    public RankSelectBitVector(final BitSet bitSet) {
+
+        this(bitSet.bits, ((long) bitSet.wlen) << 6);
+    }
+
+    /**
+     * Number of clear bits before <code>block</code>, counting the bits beyond {@link #numBits} as clear.
+     */
+    private long zerosBefore(final int block) {
+
+        return (((long) block) << 9) - this.counts[2 * block];
+    }
+
+    /**
+     * Word <code>i</code>, with the bits beyond {@link #numBits} cleared.
+     */
+    private long wordAt(final int i) {
+
+        final long word = this.bits[i];
+
+        if (((long) i + 1) << 6 > this.numBits) {
+
+            return word & (-1L >>> -this.numBits);
+        }
+
+        return word;
+    }
+
+    /**
+     * @return the number of set bits.
+     */
+    public long cardinality() {
+
+        return this.ones;
+    }
+
+    /**
+     * Returns the number of bits used by the rank and select indexes.
+     */
+    public long indexBits() {
+
+        return this.counts.length * 64L + (this.selectSamples.length + this.select0Samples.length) * 32L;
+    }
+
+    /**
+     * Returns the bit at <code>index</code>.
+     */
+    public boolean get(final long index) {
+
+        assert index >= 0 && index < this.numBits;
+
+        return (this.bits[(int) (index >>> 6)] & (1L << index)) != 0;
+    }
+
+    /**
+     * Returns the number of set bits in <code>[0; index[</code>, i.e the rank of the bit at <code>index</code> if it is set.
+     * Any index at or beyond {@link #numBits} returns {@link #cardinality()}.
+     */
+    public long rank(final long index) {
+
+        if (index >= this.numBits) {
+            return this.ones;
+        }
+
+        if (index <= 0) {
+            return 0;
+        }
+
+        final int word = (int) (index >>> 6);
+        final int block = word >>> 3;
+        final int k = word & 7;
+
+        long rank = this.counts[2 * block];
+
+        if (k > 0) {
+            rank += (this.counts[2 * block + 1] >>> (9 * (k - 1))) & 0x1FF;
+        }
+
+        return rank + Long.bitCount(this.bits[word] & ((1L << index) - 1));
+    }
+
+    /**
+     * Returns the number of clear bits in <code>[0; index[</code>.
+     */
+    public long rank0(final long index) {
+
+        final long end = Math.max(0, Math.min(index, this.numBits));
+
+        return end - rank(end);
+    }
+
+    /**
+     * Returns the position of the set bit of rank <code>rank</code> (i.e. the <code>rank + 1</code>-th set bit),
+     * or -1 if <code>rank</code> is not in <code>[0; cardinality()[</code>.
+     */
+    public long select(final long rank) {
+
+        if (rank < 0 || rank >= this.ones) {
+            return -1;
+        }
+
+        //start from the sampled block, then move forward to the block holding the bit
+        int block = this.selectSamples[(int) (rank / RankSelectBitVector.SELECT_SAMPLING)];
+
+        while (this.counts[2 * block + 2] <= rank) {
+            block++;
+        }
+
+        int remaining = (int) (rank - this.counts[2 * block]);
+
+        //find the word in the block
+        final long packed = this.counts[2 * block + 1];
+
+        int k = 7;
+
+        while (k > 0 && ((packed >>> (9 * (k - 1))) & 0x1FF) > remaining) {
+            k--;
+        }
+
+        if (k > 0) {
+            remaining -= (packed >>> (9 * (k - 1))) & 0x1FF;
+        }
+
+        final int word = (block << 3) + k;
+
+        return (((long) word) << 6) + BroadWord.select9(this.bits[word], remaining + 1);
+    }
+
+    /**
+     * Returns the position of the clear bit of rank <code>rank</code> (i.e. the <code>rank + 1</code>-th clear bit),
+     * or -1 if <code>rank</code> is not in <code>[0; numBits - cardinality()[</code>.
+     */
+    public long select0(final long rank) {
+
+        if (rank < 0 || rank >= this.numBits - this.ones) {
+            return -1;
+        }
+
+        int block = this.select0Samples[(int) (rank / RankSelectBitVector.SELECT_SAMPLING)];
+
+        while (zerosBefore(block + 1) <= rank) {
+            block++;
+        }
+
+        int remaining = (int) (rank - zerosBefore(block));
+
+        //find the word in the block, from the clear bits before each word
+        final long packed = this.counts[2 * block + 1];
+
+        int k = 7;
+
+        while (k > 0 && (k << 6) - ((packed >>> (9 * (k - 1))) & 0x1FF) > remaining) {
+            k--;
+        }
+
+        if (k > 0) {
+            remaining -= (k << 6) - ((packed >>> (9 * (k - 1))) & 0x1FF);
+        }
+
+        final int word = (block << 3) + k;
+
+        return (((long) word) << 6) + BroadWord.select9(~this.bits[word], remaining + 1);
+    }
+}
@@ -0,0 +1,1564 @@
+package com.carrotsearch.hppcrt.sets;
+
+import java.util.Arrays;
+
+import com.carrotsearch.hppcrt.AbstractIntCollection;
+import com.carrotsearch.hppcrt.AbstractIterator;
+import com.carrotsearch.hppcrt.BitUtil;
+import com.carrotsearch.hppcrt.BufferAllocationException;
+import com.carrotsearch.hppcrt.IntContainer;
+import com.carrotsearch.hppcrt.IntLookupContainer;
+import com.carrotsearch.hppcrt.IntSet;
+import com.carrotsearch.hppcrt.IteratorPool;
+import com.carrotsearch.hppcrt.ObjectFactory;
+import com.carrotsearch.hppcrt.cursors.IntCursor;
+import com.carrotsearch.hppcrt.hash.BitMixer;
+import com.carrotsearch.hppcrt.predicates.IntPredicate;
+import com.carrotsearch.hppcrt.procedures.IntProcedure;
+
+/**
+ * A compressed set of <code>int</code>s, in the manner of Roaring bitmaps: the 32 bits space is split
+ * into chunks of 2^16 values sharing the same high 16 bits, and each non-empty chunk stores its low 16 bits
+ * either in a sorted <code>char[]</code> (up to {@link #ARRAY_MAX_SIZE} values, 2 bytes per value)
+ * or in a 8KB bitmap (for denser chunks, 1 bit per possible value).
+ *
+ * <p>For sets of medium density this is far more compact than an {@link IntHashSet} (4 bytes per slot plus the free slots)
+ * while still much smaller than a dense bitset for sparse sets, and the set operations run chunk by chunk:
+ * {@link #addAll(IntContainer)}, {@link #retainAll(IntLookupContainer)}, {@link #removeAll(IntLookupContainer)}
+ * and {@link #intersectionSize(IntLookupContainer)} are specialized when the other container is also an {@link IntRoaringSet},
+ * and fall back to element-wise lookups for any other container, for instance an {@link IntHashSet}.</p>
+ *
+ * <p>Iteration is in increasing order of the values taken as <b>unsigned</b> integers, i.e. negative values come last.
+ * Iterators are pooled, as for the hash containers.</p>
+ */
+public class IntRoaringSet extends AbstractIntCollection implements IntLookupContainer, IntSet, Cloneable
+{
+    /**
+     * Max number of values of a chunk stored as a sorted array, denser chunks are bitmaps.
+     * (at this size, both take 8KB)
+     */
+    public static final int ARRAY_MAX_SIZE = 4096;
+
+    /**
+     * Number of <code>long</code> words of a bitmap chunk.
+     */
+    static final int BITMAP_WORDS = 1 << 10;
+
+    /**
+     * Sorted high 16 bits of the chunks in use, in <code>[0; chunks[</code>.
+     */
+    char[] highs;
+
+    /**
+     * The containers of the low 16 bits, <code>containers[i]</code> being the chunk of <code>highs[i]</code>.
+     */
+    Container[] containers;
+
+    /**
+     * Number of chunks in use.
+     */
+    int chunks;
+
+    /**
+     * Number of values in the set.
+     */
+    int size;
+
+    /**
+     * Creates an empty set.
+     */
+    public IntRoaringSet() {
+
+        this.highs = new char[4];
+        this.containers = new Container[4];
+    }
+
+    /**
+     * Creates a set from elements of another container.
+     */
+    public IntRoaringSet(final IntContainer container) {
+        this();
+        addAll(container);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean add(final int key) {
+
+        final char high = (char) (key >>> 16);
+
+        int i = IntRoaringSet.binarySearch(this.highs, 0, this.chunks, high);
+
+        if (i >= 0) {
+
+            final Container c = this.containers[i];
+            final int before = c.cardinality;
+
+            this.containers[i] = c.add((char) key);
+
+            if (this.containers[i].cardinality > before) {
+
+                this.size++;
+                return true;
+            }
+
+            return false;
+        }
+
+        i = -i - 1;
+
+        final ArrayContainer c = new ArrayContainer(4);
+        c.content[0] = (char) key;
+        c.cardinality = 1;
+
+        insertChunk(i, high, c);
+        this.size++;
+
+        return true;
+    }
+
+    /**
+     * Adds all elements from a given container to this set.
+     *
+     * @return Returns the number of elements actually added as a result of this call.
+     */
+    public int add(final int... elements) {
+
+        int count = 0;
+
+        for (final int e : elements) {
+
+            if (add(e)) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>If <code>container</code> is an {@link IntRoaringSet}, the union is computed chunk by chunk.</p>
+     */
+    @Override
+    public int addAll(final IntContainer container) {
+
+        if (container instanceof IntRoaringSet) {
+
+            return union((IntRoaringSet) container);
+        }
+
+        return addAll((Iterable<? extends IntCursor>) container);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int addAll(final Iterable<? extends IntCursor> iterable) {
+
+        int count = 0;
+
+        for (final IntCursor cursor : iterable) {
+
+            if (add(cursor.value)) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean remove(final int key) {
+
+        final int i = IntRoaringSet.binarySearch(this.highs, 0, this.chunks, (char) (key >>> 16));
+
+        if (i < 0) {
+            return false;
+        }
+
+        final Container c = this.containers[i];
+        final int before = c.cardinality;
+
+        this.containers[i] = c.remove((char) key);
+
+        if (this.containers[i].cardinality == before) {
+            return false;
+        }
+
+        this.size--;
+
+        if (this.containers[i].cardinality == 0) {
+            removeChunk(i);
+        }
+
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int removeAll(final int key) {
+
+        return remove(key) ? 1 : 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int removeAll(final IntPredicate predicate) {
+
+        final int before = this.size;
+
+        int target = 0;
+
+        for (int i = 0; i < this.chunks; i++) {
+
+            final Container c = this.containers[i].removeAll(this.highs[i] << 16, predicate);
+
+            if (c.cardinality > 0) {
+
+                this.highs[target] = this.highs[i];
+                this.containers[target] = c;
+                target++;
+            }
+        }
+
+        truncateChunks(target);
+
+        return before - this.size;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>If <code>c</code> is an {@link IntRoaringSet}, the difference is computed chunk by chunk.</p>
+     */
+    @Override
+    public int removeAll(final IntLookupContainer c) {
+
+        if (c instanceof IntRoaringSet) {
+
+            return difference((IntRoaringSet) c);
+        }
+
+        return super.removeAll(c);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>If <code>c</code> is an {@link IntRoaringSet}, the intersection is computed chunk by chunk.</p>
+     */
+    @Override
+    public int retainAll(final IntLookupContainer c) {
+
+        if (c instanceof IntRoaringSet) {
+
+            return intersection((IntRoaringSet) c);
+        }
+
+        return super.retainAll(c);
+    }
+
+    /**
+     * Returns the number of elements of this set also present in <code>other</code>, without
+     * materializing the intersection. When <code>other</code> is an {@link IntRoaringSet}
+     * the chunks are intersected pairwise, else the smaller of the two containers is iterated
+     * and looked up in the other one.
+     */
+    public int intersectionSize(final IntLookupContainer other) {
+
+        int count = 0;
+
+        if (other instanceof IntRoaringSet) {
+
+            final IntRoaringSet set = (IntRoaringSet) other;
+
+            int i = 0;
+            int j = 0;
+
+            while (i < this.chunks && j < set.chunks) {
+
+                final char hi = this.highs[i];
+                final char hj = set.highs[j];
+
+                if (hi < hj) {
+                    i++;
+                } else if (hi > hj) {
+                    j++;
+                } else {
+                    count += IntRoaringSet.intersectionCount(this.containers[i], set.containers[j]);
+                    i++;
+                    j++;
+                }
+            }
+        } else if (other.size() < this.size) {
+
+            for (final IntCursor c : other) {
+
+                if (contains(c.value)) {
+                    count++;
+                }
+            }
+        } else {
+
+            for (final IntCursor c : this) {
+
+                if (other.contains(c.value)) {
+                    count++;
+                }
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean contains(final int key) {
+
+        final int i = IntRoaringSet.binarySearch(this.highs, 0, this.chunks, (char) (key >>> 16));
+
+        return i >= 0 && this.containers[i].contains((char) key);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear() {
+
+        Arrays.fill(this.containers, 0, this.chunks, null);
+        this.chunks = 0;
+        this.size = 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size() {
+
+        return this.size;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int capacity() {
+
+        long capacity = 0;
+
+        for (int i = 0; i < this.chunks; i++) {
+
+            capacity += this.containers[i].capacity();
+        }
+
+        return (int) Math.min(Integer.MAX_VALUE, capacity);
+    }
+
+    /**
+     * Returns the number of chunks currently stored as bitmaps.
+     */
+    public int bitmapChunks() {
+
+        int count = 0;
+
+        for (int i = 0; i < this.chunks; i++) {
+
+            if (this.containers[i] instanceof BitmapContainer) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Returns the number of chunks currently stored as sorted arrays.
+     */
+    public int arrayChunks() {
+
+        return this.chunks - bitmapChunks();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends IntProcedure> T forEach(final T procedure) {
+
+        for (int i = 0; i < this.chunks; i++) {
+
+            this.containers[i].forEach(this.highs[i] << 16, procedure);
+        }
+
+        return procedure;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends IntPredicate> T forEach(final T predicate) {
+
+        for (int i = 0; i < this.chunks; i++) {
+
+            if (!this.containers[i].forEach(this.highs[i] << 16, predicate)) {
+                break;
+            }
+        }
+
+        return predicate;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int[] toArray(final int[] target) {
+
+        int count = 0;
+
+        for (int i = 0; i < this.chunks; i++) {
+
+            count = this.containers[i].toArray(this.highs[i] << 16, target, count);
+        }
+
+        assert count == this.size;
+
+        return target;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+
+        int h = 0;
+
+        for (int i = 0; i < this.chunks; i++) {
+
+            h += this.containers[i].hashCode(this.highs[i] << 16);
+        }
+
+        return h;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(final Object obj) {
+
+        if (obj != null) {
+
+            if (obj == this) {
+                return true;
+            }
+
+            //must be of the same class, subclasses are not comparable
+            if (obj.getClass() != this.getClass()) {
+
+                return false;
+            }
+
+            final IntRoaringSet other = (IntRoaringSet) obj;
+
+            if (other.size != this.size || other.chunks != this.chunks) {
+                return false;
+            }
+
+            for (int i = 0; i < this.chunks; i++) {
+
+                if (this.highs[i] != other.highs[i]) {
+                    return false;
+                }
+
+                final Container c = this.containers[i];
+
+                //same cardinality and all in common
+                if (c.cardinality != other.containers[i].cardinality
+                        || IntRoaringSet.intersectionCount(c, other.containers[i]) != c.cardinality) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public IntRoaringSet clone() {
+
+        final IntRoaringSet cloned = new IntRoaringSet();
+
+        cloned.highs = new char[Math.max(4, this.chunks)];
+        cloned.containers = new Container[cloned.highs.length];
+
+        System.arraycopy(this.highs, 0, cloned.highs, 0, this.chunks);
+
+        for (int i = 0; i < this.chunks; i++) {
+
+            cloned.containers[i] = this.containers[i].copy();
+        }
+
+        cloned.chunks = this.chunks;
+        cloned.size = this.size;
+
+        return cloned;
+    }
+
+    /**
+     * An iterator implementation for {@link #iterator}.
+     * Holds a IntCursor returning (value, index) = (int value, rank of the value in iteration order).
+     */
+    public final class EntryIterator extends AbstractIterator<IntCursor>
+    {
+        public final IntCursor cursor;
+
+        /**
+         * Current chunk
+         */
+        int chunk;
+
+        /**
+         * Next position in the current chunk: array index for an array chunk,
+         * bit index for a bitmap chunk.
+         */
+        int position;
+
+        public EntryIterator() {
+            this.cursor = new IntCursor();
+            this.cursor.index = -1;
+        }
+
+        @Override
+        protected IntCursor fetch() {
+
+            while (this.chunk < IntRoaringSet.this.chunks) {
+
+                final Container c = IntRoaringSet.this.containers[this.chunk];
+                final int high = IntRoaringSet.this.highs[this.chunk] << 16;
+
+                if (c instanceof ArrayContainer) {
+
+                    if (this.position < c.cardinality) {
+
+                        this.cursor.value = high | ((ArrayContainer) c).content[this.position];
+                        this.position++;
+                        this.cursor.index++;
+
+                        return this.cursor;
+                    }
+                } else {
+
+                    final int next = ((BitmapContainer) c).nextSetBit(this.position);
+
+                    if (next >= 0) {
+
+                        this.cursor.value = high | next;
+                        this.position = next + 1;
+                        this.cursor.index++;
+
+                        return this.cursor;
+                    }
+                }
+
+                this.chunk++;
+                this.position = 0;
+            }
+
+            return done();
+        }
+    }
+
+    /**
+     * internal pool of EntryIterator
+     */
+    protected final IteratorPool<IntCursor, EntryIterator> entryIteratorPool = new IteratorPool<IntCursor, EntryIterator>(
+            new ObjectFactory<EntryIterator>() {
+
+                @Override
+                public EntryIterator create() {
+
+                    return new EntryIterator();
+                }
+
+                @Override
+                public void initialize(final EntryIterator obj) {
+                    obj.cursor.index = -1;
+                    obj.chunk = 0;
+                    obj.position = 0;
+                }
+
+                @Override
+                public void reset(final EntryIterator obj) {
+                    //nothing
+                }
+            });
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public EntryIterator iterator() {
+
+        return this.entryIteratorPool.borrow();
+    }
+
+    /**
+     * Create a set from a variable number of arguments or an array of <code>int</code>.
+     */
+    public static IntRoaringSet from(final int... elements) {
+
+        final IntRoaringSet set = new IntRoaringSet();
+        set.add(elements);
+        return set;
+    }
+
+    /**
+     * Create a set from elements of another container.
+     */
+    public static IntRoaringSet from(final IntContainer container) {
+
+        return new IntRoaringSet(container);
+    }
+
+    /**
+     * Create a new set (shortcut instead of using a constructor).
+     */
+    public static IntRoaringSet newInstance() {
+
+        return new IntRoaringSet();
+    }
+
+    ////////////////////////////
+    // chunk-wise set operations
+    ////////////////////////////
+
+    /**
+     * <code>this = this OR other</code>
+     */
+    private int union(final IntRoaringSet other) {
+
+        if (other == this) {
+            return 0;
+        }
+
+        final int before = this.size;
+
+        final int maxChunks = this.chunks + other.chunks;
+
+        final char[] newHighs = new char[Math.max(4, maxChunks)];
+        final Container[] newContainers = new Container[newHighs.length];
+
+        int i = 0;
+        int j = 0;
+        int target = 0;
+
+        while (i < this.chunks || j < other.chunks) {
+
+            if (j == other.chunks || (i < this.chunks && this.highs[i] < other.highs[j])) {
+
+                newHighs[target] = this.highs[i];
+                newContainers[target] = this.containers[i];
+                i++;
+
+            } else if (i == this.chunks || this.highs[i] > other.highs[j]) {
+
+                newHighs[target] = other.highs[j];
+                newContainers[target] = other.containers[j].copy();
+                j++;
+
+            } else {
+
+                newHighs[target] = this.highs[i];
+                newContainers[target] = IntRoaringSet.union(this.containers[i], other.containers[j]);
+                i++;
+                j++;
+            }
+
+            target++;
+        }
+
+        this.highs = newHighs;
+        this.containers = newContainers;
+        this.chunks = target;
+        this.size = computeSize();
+
+        return this.size - before;
+    }
+
+    /**
+     * <code>this = this AND other</code>
+     */
+    private int intersection(final IntRoaringSet other) {
+
+        if (other == this) {
+            return 0;
+        }
+
+        final int before = this.size;
+
+        int i = 0;
+        int j = 0;
+        int target = 0;
+
+        while (i < this.chunks && j < other.chunks) {
+
+            final char hi = this.highs[i];
+            final char hj = other.highs[j];
+
+            if (hi < hj) {
+                i++;
+            } else if (hi > hj) {
+                j++;
+            } else {
+
+                final Container c = IntRoaringSet.intersection(this.containers[i], other.containers[j]);
+
+                if (c.cardinality > 0) {
+
+                    this.highs[target] = hi;
+                    this.containers[target] = c;
+                    target++;
+                }
+
+                i++;
+                j++;
+            }
+        }
+
+        truncateChunks(target);
+
+        return before - this.size;
+    }
+
+    /**
+     * <code>this = this AND NOT other</code>
+     */
+    private int difference(final IntRoaringSet other) {
+
+        if (other == this) {
+
+            final int before = this.size;
+            clear();
+            return before;
+        }
+
+        final int before = this.size;
+
+        int j = 0;
+        int target = 0;
+
+        for (int i = 0; i < this.chunks; i++) {
+
+            final char hi = this.highs[i];
+
+            while (j < other.chunks && other.highs[j] < hi) {
+                j++;
+            }
+
+            Container c = this.containers[i];
+
+            if (j < other.chunks && other.highs[j] == hi) {
+
+                c = IntRoaringSet.difference(c, other.containers[j]);
+            }
+
+            if (c.cardinality > 0) {
+
+                this.highs[target] = hi;
+                this.containers[target] = c;
+                target++;
+            }
+        }
+
+        truncateChunks(target);
+
+        return before - this.size;
+    }
+
+    /**
+     * Keep the first <code>newChunks</code> chunks, and recompute the size.
+     */
+    private void truncateChunks(final int newChunks) {
+
+        Arrays.fill(this.containers, newChunks, this.chunks, null);
+        this.chunks = newChunks;
+        this.size = computeSize();
+    }
+
+    private int computeSize() {
+
+        int size = 0;
+
+        for (int i = 0; i < this.chunks; i++) {
+
+            size += this.containers[i].cardinality;
+        }
+
+        return size;
+    }
+
+    private void insertChunk(final int index, final char high, final Container c) {
+
+        if (this.chunks == this.highs.length) {
+
+            try {
+                final int newLength = this.highs.length * 2;
+
+                final char[] newHighs = new char[newLength];
+                final Container[] newContainers = new Container[newLength];
+
+                System.arraycopy(this.highs, 0, newHighs, 0, this.chunks);
+                System.arraycopy(this.containers, 0, newContainers, 0, this.chunks);
+
+                this.highs = newHighs;
+                this.containers = newContainers;
+
+            } catch (final OutOfMemoryError e) {
+
+                throw new BufferAllocationException(
+                        "Not enough memory to allocate %d chunks.",
+                        e,
+                        this.highs.length * 2);
+            }
+        }
+
+        System.arraycopy(this.highs, index, this.highs, index + 1, this.chunks - index);
+        System.arraycopy(this.containers, index, this.containers, index + 1, this.chunks - index);
+
+        this.highs[index] = high;
+        this.containers[index] = c;
+        this.chunks++;
+    }
+
+    private void removeChunk(final int index) {
+
+        System.arraycopy(this.highs, index + 1, this.highs, index, this.chunks - index - 1);
+        System.arraycopy(this.containers, index + 1, this.containers, index, this.chunks - index - 1);
+
+        this.chunks--;
+        this.containers[this.chunks] = null;
+    }
+
+    /**
+     * Union of 2 containers, as a new container.
+     */
+    static Container union(final Container a, final Container b) {
+
+        if (a instanceof BitmapContainer) {
+
+            final BitmapContainer result = ((BitmapContainer) a).copy();
+
+            if (b instanceof BitmapContainer) {
+
+                final long[] bits = result.bits;
+                final long[] otherBits = ((BitmapContainer) b).bits;
+
+                for (int i = 0; i < IntRoaringSet.BITMAP_WORDS; i++) {
+                    bits[i] |= otherBits[i];
+                }
+
+                result.cardinality = (int) BitUtil.pop_array(bits, 0, IntRoaringSet.BITMAP_WORDS);
+
+                return result;
+            }
+
+            result.addAll((ArrayContainer) b);
+
+            return result;
+        }
+
+        if (b instanceof BitmapContainer) {
+
+            return IntRoaringSet.union(b, a);
+        }
+
+        final ArrayContainer x = (ArrayContainer) a;
+        final ArrayContainer y = (ArrayContainer) b;
+
+        if (x.cardinality + y.cardinality > IntRoaringSet.ARRAY_MAX_SIZE) {
+
+            final BitmapContainer result = x.toBitmap();
+            result.addAll(y);
+
+            return result.normalize();
+        }
+
+        //merge the sorted arrays
+        final char[] content = new char[x.cardinality + y.cardinality];
+
+        int i = 0;
+        int j = 0;
+        int k = 0;
+
+        while (i < x.cardinality && j < y.cardinality) {
+
+            final char vi = x.content[i];
+            final char vj = y.content[j];
+
+            if (vi < vj) {
+                content[k++] = vi;
+                i++;
+            } else if (vi > vj) {
+                content[k++] = vj;
+                j++;
+            } else {
+                content[k++] = vi;
+                i++;
+                j++;
+            }
+        }
+
+        while (i < x.cardinality) {
+            content[k++] = x.content[i++];
+        }
+
+        while (j < y.cardinality) {
+            content[k++] = y.content[j++];
+        }
+
+        return new ArrayContainer(content, k);
+    }
+
+    /**
+     * Intersection of 2 containers, as a new container.
+     */
+    static Container intersection(final Container a, final Container b) {
+
+        if (a instanceof BitmapContainer && b instanceof BitmapContainer) {
+
+            final BitmapContainer result = new BitmapContainer();
+
+            final long[] bits = result.bits;
+            final long[] aBits = ((BitmapContainer) a).bits;
+            final long[] bBits = ((BitmapContainer) b).bits;
+
+            for (int i = 0; i < IntRoaringSet.BITMAP_WORDS; i++) {
+                bits[i] = aBits[i] & bBits[i];
+            }
+
+            result.cardinality = (int) BitUtil.pop_array(bits, 0, IntRoaringSet.BITMAP_WORDS);
+
+            return result.normalize();
+        }
+
+        if (a instanceof BitmapContainer) {
+
+            return IntRoaringSet.intersection(b, a);
+        }
+
+        final ArrayContainer x = (ArrayContainer) a;
+
+        final char[] content = new char[Math.min(x.cardinality, b.cardinality)];
+        int k = 0;
+
+        if (b instanceof BitmapContainer) {
+
+            for (int i = 0; i < x.cardinality; i++) {
+
+                if (b.contains(x.content[i])) {
+                    content[k++] = x.content[i];
+                }
+            }
+        } else {
+
+            final ArrayContainer y = (ArrayContainer) b;
+
+            int i = 0;
+            int j = 0;
+
+            while (i < x.cardinality && j < y.cardinality) {
+
+                final char vi = x.content[i];
+                final char vj = y.content[j];
+
+                if (vi < vj) {
+                    i++;
+                } else if (vi > vj) {
+                    j++;
+                } else {
+                    content[k++] = vi;
+                    i++;
+                    j++;
+                }
+            }
+        }
+
+        return new ArrayContainer(content, k);
+    }
+
+    /**
+     * Difference <code>a AND NOT b</code> of 2 containers, as a new container.
+     */
+    static Container difference(final Container a, final Container b) {
+
+        if (a instanceof BitmapContainer) {
+
+            final BitmapContainer result = ((BitmapContainer) a).copy();
+
+            if (b instanceof BitmapContainer) {
+
+                final long[] bits = result.bits;
+                final long[] otherBits = ((BitmapContainer) b).bits;
+
+                for (int i = 0; i < IntRoaringSet.BITMAP_WORDS; i++) {
+                    bits[i] &= ~otherBits[i];
+                }
+
+                result.cardinality = (int) BitUtil.pop_array(bits, 0, IntRoaringSet.BITMAP_WORDS);
+
+            } else {
+
+                final ArrayContainer y = (ArrayContainer) b;
+
+                for (int j = 0; j < y.cardinality; j++) {
+                    result.clear(y.content[j]);
+                }
+            }
+
+            return result.normalize();
+        }
+
+        final ArrayContainer x = (ArrayContainer) a;
+
+        final char[] content = new char[x.cardinality];
+        int k = 0;
+
+        for (int i = 0; i < x.cardinality; i++) {
+
+            if (!b.contains(x.content[i])) {
+                content[k++] = x.content[i];
+            }
+        }
+
+        return new ArrayContainer(content, k);
+    }
+
+    /**
+     * Cardinality of the intersection of 2 containers.
+     */
+    static int intersectionCount(final Container a, final Container b) {
+
+        if (a instanceof BitmapContainer && b instanceof BitmapContainer) {
+
+            return (int) BitUtil.pop_intersect(((BitmapContainer) a).bits, ((BitmapContainer) b).bits, 0, IntRoaringSet.BITMAP_WORDS);
+        }
+
+        if (a instanceof BitmapContainer) {
+
+            return IntRoaringSet.intersectionCount(b, a);
+        }
+
+        final ArrayContainer x = (ArrayContainer) a;
+
+        int count = 0;
+
+        if (b instanceof BitmapContainer) {
+
+            for (int i = 0; i < x.cardinality; i++) {
+
+                if (b.contains(x.content[i])) {
+                    count++;
+                }
+            }
+        } else {
+
+            final ArrayContainer y = (ArrayContainer) b;
+
+            int i = 0;
+            int j = 0;
+
+            while (i < x.cardinality && j < y.cardinality) {
+
+                final char vi = x.content[i];
+                final char vj = y.content[j];
+
+                if (vi < vj) {
+                    i++;
+                } else if (vi > vj) {
+                    j++;
+                } else {
+                    count++;
+                    i++;
+                    j++;
+                }
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Binary search of <code>key</code> in the sorted <code>a[fromIndex; toIndex[</code>, with the same
+     * result as {@link Arrays#binarySearch(char[], char)}.
+     */
+    static int binarySearch(final char[] a, final int fromIndex, final int toIndex, final char key) {
+
+        int low = fromIndex;
+        int high = toIndex - 1;
+
+        while (low <= high) {
+
+            final int mid = (low + high) >>> 1;
+            final char midVal = a[mid];
+
+            if (midVal < key) {
+                low = mid + 1;
+            } else if (midVal > key) {
+                high = mid - 1;
+            } else {
+                return mid; // key found
+            }
+        }
+
+        return -(low + 1); // key not found.
+    }
+
+    /**
+     * The low 16 bits of the values of a chunk.
+     */
+    abstract static class Container
+    {
+        /**
+         * Number of values in the container.
+         */
+        int cardinality;
+
+        abstract boolean contains(char low);
+
+        /**
+         * Add <code>low</code>, returning the container to use from now on.
+         */
+        abstract Container add(char low);
+
+        /**
+         * Remove <code>low</code>, returning the container to use from now on.
+         */
+        abstract Container remove(char low);
+
+        /**
+         * Remove the values <code>high | low</code> satisfying the <code>predicate</code>,
+         * returning the container to use from now on.
+         */
+        abstract Container removeAll(int high, IntPredicate predicate);
+
+        abstract void forEach(int high, IntProcedure procedure);
+
+        /**
+         * @return false if the predicate stopped the iteration.
+         */
+        abstract boolean forEach(int high, IntPredicate predicate);
+
+        /**
+         * Copy the values to <code>target</code> from <code>offset</code>, returning the new offset.
+         */
+        abstract int toArray(int high, int[] target, int offset);
+
+        abstract int hashCode(int high);
+
+        abstract int capacity();
+
+        /**
+         * A deep copy of the container.
+         */
+        abstract Container copy();
+    }
+
+    /**
+     * A sorted array of the low 16 bits.
+     */
+    static final class ArrayContainer extends Container
+    {
+        char[] content;
+
+        ArrayContainer(final int capacity) {
+
+            this.content = new char[capacity];
+        }
+
+        ArrayContainer(final char[] content, final int cardinality) {
+
+            this.content = content;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        boolean contains(final char low) {
+
+            return IntRoaringSet.binarySearch(this.content, 0, this.cardinality, low) >= 0;
+        }
+
+        @Override
+        Container add(final char low) {
+
+            int i = IntRoaringSet.binarySearch(this.content, 0, this.cardinality, low);
+
+            if (i >= 0) {
+                return this;
+            }
+
+            if (this.cardinality == IntRoaringSet.ARRAY_MAX_SIZE) {
+
+                return toBitmap().add(low);
+            }
+
+            i = -i - 1;
+
+            if (this.cardinality == this.content.length) {
+
+                final char[] newContent = new char[Math.min(IntRoaringSet.ARRAY_MAX_SIZE, Math.max(4, this.cardinality * 2))];
+
+                System.arraycopy(this.content, 0, newContent, 0, this.cardinality);
+                this.content = newContent;
+            }
+
+            System.arraycopy(this.content, i, this.content, i + 1, this.cardinality - i);
+            this.content[i] = low;
+            this.cardinality++;
+
+            return this;
+        }
+
+        @Override
+        Container remove(final char low) {
+
+            final int i = IntRoaringSet.binarySearch(this.content, 0, this.cardinality, low);
+
+            if (i >= 0) {
+
+                System.arraycopy(this.content, i + 1, this.content, i, this.cardinality - i - 1);
+                this.cardinality--;
+            }
+
+            return this;
+        }
+
+        @Override
+        Container removeAll(final int high, final IntPredicate predicate) {
+
+            int k = 0;
+
+            for (int i = 0; i < this.cardinality; i++) {
+
+                final char low = this.content[i];
+
+                if (!predicate.apply(high | low)) {
+                    this.content[k++] = low;
+                }
+            }
+
+            this.cardinality = k;
+
+            return this;
+        }
+
+        @Override
+        void forEach(final int high, final IntProcedure procedure) {
+
+            for (int i = 0; i < this.cardinality; i++) {
+
+                procedure.apply(high | this.content[i]);
+            }
+        }
+
+        @Override
+        boolean forEach(final int high, final IntPredicate predicate) {
+
+            for (int i = 0; i < this.cardinality; i++) {
+
+                if (!predicate.apply(high | this.content[i])) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        @Override
+        int toArray(final int high, final int[] target, int offset) {
+
+            for (int i = 0; i < this.cardinality; i++) {
+
+                target[offset++] = high | this.content[i];
+            }
+
+            return offset;
+        }
+
+        @Override
+        int hashCode(final int high) {
+
+            int h = 0;
+
+            for (int i = 0; i < this.cardinality; i++) {
+
+                h += BitMixer.mix(high | this.content[i]);
+            }
+
+            return h;
+        }
+
+        @Override
+        int capacity() {
+
+            return this.content.length;
+        }
+
+        BitmapContainer toBitmap() {
+
+            final BitmapContainer bitmap = new BitmapContainer();
+
+            bitmap.addAll(this);
+
+            return bitmap;
+        }
+
+        @Override
+        ArrayContainer copy() {
+
+            final char[] content = new char[Math.max(this.cardinality, 1)];
+
+            System.arraycopy(this.content, 0, content, 0, this.cardinality);
+
+            return new ArrayContainer(content, this.cardinality);
+        }
+    }
+
+    /**
+     * A bitmap of the 2^16 possible low 16 bits.
+     */
+    static final class BitmapContainer extends Container
+    {
+        final long[] bits;
+
+        BitmapContainer() {
+
+            this.bits = new long[IntRoaringSet.BITMAP_WORDS];
+        }
+
+        private BitmapContainer(final long[] bits, final int cardinality) {
+
+            this.bits = bits;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        boolean contains(final char low) {
+
+            return (this.bits[low >>> 6] & (1L << low)) != 0;
+        }
+
+        @Override
+        Container add(final char low) {
+
+            final int word = low >>> 6;
+            final long before = this.bits[word];
+
+            this.bits[word] |= 1L << low;
+
+            if (this.bits[word] != before) {
+                this.cardinality++;
+            }
+
+            return this;
+        }
+
+        void addAll(final ArrayContainer array) {
+
+            for (int i = 0; i < array.cardinality; i++) {
+
+                add(array.content[i]);
+            }
+        }
+
+        void clear(final char low) {
+
+            final int word = low >>> 6;
+            final long before = this.bits[word];
+
+            this.bits[word] &= ~(1L << low);
+
+            if (this.bits[word] != before) {
+                this.cardinality--;
+            }
+        }
+
+        @Override
+        Container remove(final char low) {
+
+            clear(low);
+
+            return normalize();
+        }
+
+        @Override
+        Container removeAll(final int high, final IntPredicate predicate) {
+
+            for (int i = nextSetBit(0); i >= 0; i = nextSetBit(i + 1)) {
+
+                if (predicate.apply(high | i)) {
+                    clear((char) i);
+                }
+            }
+
+            return normalize();
+        }
+
+        /**
+         * Index of the next set bit at or after <code>from</code>, or -1.
+         */
+        int nextSetBit(final int from) {
+
+            int i = from >>> 6;
+
+            if (i >= IntRoaringSet.BITMAP_WORDS) {
+                return -1;
+            }
+
+            long word = this.bits[i] & (-1L << from);
+
+            while (true) {
+
+                if (word != 0) {
+                    return (i << 6) + Long.numberOfTrailingZeros(word);
+                }
+
+                if (++i == IntRoaringSet.BITMAP_WORDS) {
+                    return -1;
+                }
+
+                word = this.bits[i];
+            }
+        }
+
+        @Override
+        void forEach(final int high, final IntProcedure procedure) {
+
+            for (int i = 0; i < IntRoaringSet.BITMAP_WORDS; i++) {
+
+                long word = this.bits[i];
+
+                while (word != 0) {
+
+                    procedure.apply(high | (i << 6) + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        @Override
+        boolean forEach(final int high, final IntPredicate predicate) {
+
+            for (int i = 0; i < IntRoaringSet.BITMAP_WORDS; i++) {
+
+                long word = this.bits[i];
+
+                while (word != 0) {
+
+                    if (!predicate.apply(high | (i << 6) + Long.numberOfTrailingZeros(word))) {
+                        return false;
+                    }
+
+                    word &= word - 1;
+                }
+            }
+
+            return true;
+        }
+
+        @Override
+        int toArray(final int high, final int[] target, int offset) {
+
+            for (int i = 0; i < IntRoaringSet.BITMAP_WORDS; i++) {
+
+                long word = this.bits[i];
+
+                while (word != 0) {
+
+                    target[offset++] = high | (i << 6) + Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                }
+            }
+
+            return offset;
+        }
+
+        @Override
+        int hashCode(final int high) {
+
+            int h = 0;
+
+            for (int i = 0; i < IntRoaringSet.BITMAP_WORDS; i++) {
+
+                long word = this.bits[i];
+
+                while (word != 0) {
+
+                    h += BitMixer.mix(high | (i << 6) + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+
+            return h;
+        }
+
+        @Override
+        int capacity() {
+
+            return IntRoaringSet.BITMAP_WORDS << 6;
+        }
+
+        /**
+         * Returns this container, or an equivalent array container if it is sparse enough.
+         */
+        Container normalize() {
+
+            if (this.cardinality > IntRoaringSet.ARRAY_MAX_SIZE) {
+                return this;
+            }
+
+            final char[] content = new char[Math.max(this.cardinality, 1)];
+
+            int k = 0;
+
+            for (int i = 0; i < IntRoaringSet.BITMAP_WORDS; i++) {
+
+                long word = this.bits[i];
+
+                while (word != 0) {
+
+                    content[k++] = (char) ((i << 6) + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+
+            return new ArrayContainer(content, this.cardinality);
+        }
+
+        @Override
+        BitmapContainer copy() {
+
+            return new BitmapContainer(this.bits.clone(), this.cardinality);
+        }
+    }
+}
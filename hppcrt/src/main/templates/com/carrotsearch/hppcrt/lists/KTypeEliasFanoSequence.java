@@ -0,0 +1,542 @@
+package com.carrotsearch.hppcrt.lists;
+
+import java.util.Arrays;
+
+import com.carrotsearch.hppcrt.*;
+import com.carrotsearch.hppcrt.cursors.*;
+import com.carrotsearch.hppcrt.predicates.*;
+import com.carrotsearch.hppcrt.procedures.*;
+
+/*! #import("com/carrotsearch/hppcrt/Intrinsics.java") !*/
+/*! ${TemplateOptions.doNotGenerateKType("BYTE", "CHAR", "SHORT", "FLOAT", "DOUBLE", "OBJECT")} !*/
+/**
+ * An immutable sequence of sorted <code>KType</code>s, compressed with the Elias-Fano encoding:
+ * each value, minus the first one, is split in a fixed number <code>l</code> of low bits, stored packed in {@link #lowBits},
+ * and the remaining high bits, stored in unary in {@link #highBits}: the <code>i</code>-th value sets the bit <code>(value &gt;&gt;&gt; l) + i</code>.
+ *
+ * <p>
+ * With <code>l = floor(log2(range / size))</code> the sequence takes less than <code>2 + l</code> bits per value
+ * (plus the rank / select indexes of {@link RankSelectBitVector}, see {@link #bitsPerValue()}) instead of the
+ * 32 or 64 bits per value of a {@link KTypeArrayList}, while keeping:
+ * </p>
+ * <ul>
+ * <li>random access: {@link #get(int)} is a select in the high bits and a read of the low bits,</li>
+ * <li>successor search: {@link #nextGEQ(KType)} jumps to the values sharing the high bits of the searched value by a select of the clear bits,</li>
+ * <li>fast sequential decoding: iteration, {@link #forEach(KTypeProcedure)} and {@link #toArray()} scan the high bits word by word.</li>
+ * </ul>
+ *
+ * <p>
+ * The values must be sorted in increasing order, duplicates allowed. Since the sequence never changes after construction, and its iterators are not pooled
+ * but allocated by each call, it can be shared by any number of concurrent reader threads.
+ * </p>
+ */
+/*! ${TemplateOptions.generatedAnnotation} !*/
+public class KTypeEliasFanoSequence<KType> implements KTypeLookupContainer<KType>
+{
+    /**
+     * The low bits of the values, <code>lowBitsCount</code> bits per value, packed.
+     */
+    public final long[] lowBits;
+
+    /**
+     * The high bits of the values, in unary.
+     */
+    public final long[] highBits;
+
+    /**
+     * Number of low bits per value.
+     */
+    public final int lowBitsCount;
+
+    /**
+     * Rank / select index over {@link #highBits}.
+     */
+    protected final RankSelectBitVector highIndex;
+
+    /**
+     * First value, all values are stored as an offset from it.
+     */
+    protected final long first;
+
+    /**
+     * Last value.
+     */
+    protected final long last;
+
+    /**
+     * Number of values.
+     */
+    protected final int size;
+
+    /**
+     * Encode <code>values[offset; offset + length[</code>, which must be sorted in increasing order.
+     * @throws IllegalArgumentException if the values are not sorted.
+     */
+    public KTypeEliasFanoSequence(final KType[] values, final int offset, final int length) {
+
+        assert offset >= 0 && length >= 0 && offset + length <= values.length;
+
+        this.size = length;
+
+        if (length == 0) {
+
+            this.first = 0;
+            this.last = 0;
+            this.lowBitsCount = 0;
+            this.lowBits = new long[0];
+            this.highBits = new long[0];
+            this.highIndex = new RankSelectBitVector(this.highBits, 0);
+
+            return;
+        }
+
+        this.first = toLong(values[offset]);
+        this.last = toLong(values[offset + length - 1]);
+
+        for (int i = offset + 1; i < offset + length; i++) {
+
+            if (toLong(values[i - 1]) > toLong(values[i])) {
+
+                throw new IllegalArgumentException("Values are not sorted: values[" + (i - 1) + "] = " + values[i - 1] +
+                        " > values[" + i + "] = " + values[i]);
+            }
+        }
+
+        final long range = this.last - this.first;
+
+        if (range < 0) {
+
+            throw new IllegalArgumentException("The range of the values [" + this.first + ", " + this.last + "] is too wide");
+        }
+
+        this.lowBitsCount = range / length > 0 ? 63 - Long.numberOfLeadingZeros(range / length) : 0;
+
+        final long lowMask = (1L << this.lowBitsCount) - 1;
+
+        try {
+            this.lowBits = new long[BitSet.bits2words((long) length * this.lowBitsCount)];
+            this.highBits = new long[BitSet.bits2words(length + (range >>> this.lowBitsCount) + 1)];
+
+        } catch (final OutOfMemoryError e) {
+
+            throw new BufferAllocationException(
+                    "Not enough memory to encode %d values of range %d",
+                    e,
+                    length,
+                    range);
+        }
+
+        for (int i = 0; i < length; i++) {
+
+            final long value = toLong(values[offset + i]) - this.first;
+
+            final long highPosition = (value >>> this.lowBitsCount) + i;
+            this.highBits[(int) (highPosition >>> 6)] |= 1L << highPosition;
+
+            writeLow(i, value & lowMask);
+        }
+
+        this.highIndex = new RankSelectBitVector(this.highBits, length + (range >>> this.lowBitsCount) + 1);
+    }
+
+    /**
+     * Encode all the values of <code>values</code>, which must be sorted in increasing order.
+     * @throws IllegalArgumentException if the values are not sorted.
+     */
+    public KTypeEliasFanoSequence(final KType[] values) {
+
+        this(values, 0, values.length);
+    }
+
+    /**
+     * Encode the values of <code>list</code>, which must be sorted in increasing order (for instance with {@link KTypeArrayList#sort()}).
+     * @throws IllegalArgumentException if the values are not sorted.
+     */
+    public KTypeEliasFanoSequence(final KTypeArrayList<KType> list) {
+
+        this(Intrinsics.<KType[]> cast(list.buffer), 0, list.size());
+    }
+
+    /**
+     * Returns the value at <code>index</code>.
+     */
+    public KType get(final int index) {
+
+        assert (index >= 0 && index < this.size) : "Index " + index + " out of bounds [" + 0 + ", " + this.size + "[.";
+
+        final long high = this.highIndex.select(index) - index;
+
+        return fromLong(this.first + ((high << this.lowBitsCount) | readLow(index)));
+    }
+
+    /**
+     * Returns the index of the first value greater than or equal to <code>value</code>, i.e. its successor in the sequence,
+     * or -1 if all the values are smaller.
+     */
+    public int nextGEQ(final KType value) {
+
+        final long v = toLong(value);
+
+        if (this.size == 0 || v > this.last) {
+            return -1;
+        }
+
+        if (v <= this.first) {
+            return 0;
+        }
+
+        final long target = v - this.first;
+        final long high = target >>> this.lowBitsCount;
+
+        //the values having at least these high bits follow the high-th clear bit
+        long position = high == 0 ? 0 : this.highIndex.select0(high - 1) + 1;
+
+        //the number of set bits before, i.e values with smaller high bits
+        int index = (int) (position - high);
+
+        final long lowMask = (1L << this.lowBitsCount) - 1;
+
+        while (index < this.size) {
+
+            position = KTypeEliasFanoSequence.nextSetBit(this.highBits, position);
+
+            final long current = ((position - index) << this.lowBitsCount) | readLow(index);
+
+            if (current >= target) {
+                return index;
+            }
+
+            assert (current & ~lowMask) == (target & ~lowMask);
+
+            position++;
+            index++;
+        }
+
+        return -1;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean contains(final KType e) {
+
+        final int index = nextGEQ(e);
+
+        return index >= 0 && toLong(get(index)) == toLong(e);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size() {
+
+        return this.size;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int capacity() {
+
+        return this.size;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEmpty() {
+
+        return this.size == 0;
+    }
+
+    /**
+     * An iterator implementation for {@link #iterator}, in increasing order of values.
+     * Holds a KTypeCursor returning (value, index) = (KType value, index of the value in the sequence)
+     */
+    public final class ValueIterator extends AbstractIterator<KTypeCursor<KType>>
+    {
+        public final KTypeCursor<KType> cursor;
+
+        /**
+         * Position in {@link KTypeEliasFanoSequence#highBits} of the current value.
+         */
+        private long position;
+
+        public ValueIterator() {
+            this.cursor = new KTypeCursor<KType>();
+            this.cursor.index = -1;
+            this.position = -1;
+        }
+
+        @Override
+        protected KTypeCursor<KType> fetch() {
+
+            final int index = this.cursor.index + 1;
+
+            if (index >= KTypeEliasFanoSequence.this.size) {
+                return done();
+            }
+
+            this.position = KTypeEliasFanoSequence.nextSetBit(KTypeEliasFanoSequence.this.highBits, this.position + 1);
+
+            this.cursor.index = index;
+            this.cursor.value = fromLong(KTypeEliasFanoSequence.this.first +
+                    (((this.position - index) << KTypeEliasFanoSequence.this.lowBitsCount) | readLow(index)));
+
+            return this.cursor;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * @return a new iterator, not pooled, so that concurrent readers need no synchronization.
+     */
+    @Override
+    public ValueIterator iterator() {
+
+        return new ValueIterator();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends KTypeProcedure<? super KType>> T forEach(final T procedure) {
+
+        final long[] highBits = this.highBits;
+        final int lowBitsCount = this.lowBitsCount;
+        final long first = this.first;
+
+        int index = 0;
+
+        for (int i = 0; index < this.size; i++) {
+
+            long word = highBits[i];
+
+            while (word != 0) {
+
+                final long position = (((long) i) << 6) + Long.numberOfTrailingZeros(word);
+
+                procedure.apply(fromLong(first + (((position - index) << lowBitsCount) | readLow(index))));
+
+                index++;
+                word &= word - 1;
+            }
+        }
+
+        return procedure;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends KTypePredicate<? super KType>> T forEach(final T predicate) {
+
+        final long[] highBits = this.highBits;
+        final int lowBitsCount = this.lowBitsCount;
+        final long first = this.first;
+
+        int index = 0;
+
+        for (int i = 0; index < this.size; i++) {
+
+            long word = highBits[i];
+
+            while (word != 0) {
+
+                final long position = (((long) i) << 6) + Long.numberOfTrailingZeros(word);
+
+                if (!predicate.apply(fromLong(first + (((position - index) << lowBitsCount) | readLow(index))))) {
+                    return predicate;
+                }
+
+                index++;
+                word &= word - 1;
+            }
+        }
+
+        return predicate;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public KType[] toArray(final KType[] target) {
+
+        final long[] highBits = this.highBits;
+        final int lowBitsCount = this.lowBitsCount;
+        final long first = this.first;
+
+        int index = 0;
+
+        for (int i = 0; index < this.size; i++) {
+
+            long word = highBits[i];
+
+            while (word != 0) {
+
+                final long position = (((long) i) << 6) + Long.numberOfTrailingZeros(word);
+
+                target[index] = fromLong(first + (((position - index) << lowBitsCount) | readLow(index)));
+
+                index++;
+                word &= word - 1;
+            }
+        }
+
+        return target;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    /*! #if ($TemplateOptions.KTypePrimitive)
+    public KType [] toArray()
+    #else !*/
+    public Object[] toArray()
+    /*! #end !*/
+    {
+        return toArray(Intrinsics.<KType> newArray(this.size));
+    }
+
+    /*! #if ($TemplateOptions.KTypeGeneric) !*/
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T[] toArray(final Class<T> componentClass) {
+
+        final T[] array = (T[]) java.lang.reflect.Array.newInstance(componentClass, this.size);
+
+        for (int i = 0; i < this.size; i++) {
+            array[i] = (T) get(i);
+        }
+
+        return array;
+    }
+
+    /*! #end !*/
+
+    /**
+     * Convert the contents of this container to a human-friendly string.
+     */
+    @Override
+    public String toString() {
+
+        return Arrays.toString(this.toArray());
+    }
+
+    /**
+     * Returns the number of bits used by the encoded values and their index, per value.
+     */
+    public double bitsPerValue() {
+
+        if (this.size == 0) {
+            return 0;
+        }
+
+        return ((this.lowBits.length + this.highBits.length) * 64.0 + this.highIndex.indexBits()) / this.size;
+    }
+
+    /**
+     * Create a sequence from a variable number of arguments or an array of <code>KType</code>,
+     * which must be sorted in increasing order.
+     */
+    public static/* #if ($TemplateOptions.KTypeGeneric) */<KType> /* #end */
+    KTypeEliasFanoSequence<KType> from(final KType... values) {
+
+        return new KTypeEliasFanoSequence<KType>(values);
+    }
+
+    /**
+     * Create a sequence from a {@link KTypeArrayList}, which must be sorted in increasing order.
+     */
+    public static/* #if ($TemplateOptions.KTypeGeneric) */<KType> /* #end */
+    KTypeEliasFanoSequence<KType> from(final KTypeArrayList<KType> list) {
+
+        return new KTypeEliasFanoSequence<KType>(list);
+    }
+
+    /**
+     * The low bits of the value at <code>index</code>.
+     */
+    private long readLow(final int index) {
+
+        if (this.lowBitsCount == 0) {
+            return 0;
+        }
+
+        final long bitPosition = (long) index * this.lowBitsCount;
+        final int word = (int) (bitPosition >>> 6);
+        final int shift = (int) (bitPosition & 63);
+
+        long low = this.lowBits[word] >>> shift;
+
+        if (shift + this.lowBitsCount > 64) {
+            low |= this.lowBits[word + 1] << (64 - shift);
+        }
+
+        return low & ((1L << this.lowBitsCount) - 1);
+    }
+
+    private void writeLow(final int index, final long low) {
+
+        if (this.lowBitsCount == 0) {
+            return;
+        }
+
+        final long bitPosition = (long) index * this.lowBitsCount;
+        final int word = (int) (bitPosition >>> 6);
+        final int shift = (int) (bitPosition & 63);
+
+        this.lowBits[word] |= low << shift;
+
+        if (shift + this.lowBitsCount > 64) {
+            this.lowBits[word + 1] |= low >>> (64 - shift);
+        }
+    }
+
+    /**
+     * Position of the first set bit of <code>bits</code> at or after <code>from</code>, which must exist.
+     */
+    private static long nextSetBit(final long[] bits, final long from) {
+
+        int i = (int) (from >>> 6);
+
+        long word = bits[i] & (-1L << from);
+
+        while (word == 0) {
+            word = bits[++i];
+        }
+
+        return (((long) i) << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    private KType fromLong(final long value) {
+
+        /*! #if ($TemplateOptions.isKType("INT"))
+        return (int) value;
+        #elseif ($TemplateOptions.isKType("LONG"))
+        return value;
+        #else !*/
+        return Intrinsics.<KType> cast(value);
+        /*! #end !*/
+    }
+
+    private long toLong(final KType value) {
+
+        /*! #if ($TemplateOptions.KTypePrimitive)
+        return value;
+        #else !*/
+        return ((Number) value).longValue();
+        /*! #end !*/
+    }
+}
@@ -0,0 +1,760 @@
+package com.carrotsearch.hppcrt.maps;
+
+import com.carrotsearch.hppcrt.*;
+import com.carrotsearch.hppcrt.procedures.*;
+import com.carrotsearch.hppcrt.hash.*;
+
+/*! #import("com/carrotsearch/hppcrt/Intrinsics.java") !*/
+/**
+ * A bounded cache of <code>KType</code> to <code>VType</code>, implemented as a
+ * fixed-size open addressing hash table with linear probing, using the CLOCK eviction policy.
+ *
+#if ($TemplateOptions.KTypeGeneric)
+ * <p> In addition, the hashing strategy can be changed
+ * by overriding ({@link #equalKeys(Object, Object)} and {@link #hashKey(Object)}) together,
+ * which then replaces the usual ({@link #equals(Object)} and {@link #hashCode()}) from the keys themselves.
+ * This is useful to define the equivalence of keys when the user has no control over the keys implementation.
+ * </p>
+#end
+ * <p>
+ * The internal buffers ({@link #keys}, {@link #values}, {@link #referenced}) are allocated once and
+ * for all at construction to hold {@link #capacity()} entries, and are never reallocated:
+ * inserting a new key into a full cache first evicts an entry.
+ * </p>
+ * <p>
+ * Each entry has a reference bit, next to its key and value, which is set when the entry is hit by {@link #get(Object)}
+ * or updated by {@link #put(Object, Object)}. To make room, a clock hand sweeps the slots of the table,
+ * clearing the reference bits it meets, until it finds an entry whose bit is already cleared, which is evicted.
+ * So contrary to an access-ordered {@link KTypeVTypeLinkedHashMap}, a hit only sets a bit.
+ * Since new entries start unreferenced, the entries of a scan, that are never accessed again, are evicted at the first
+ * pass of the hand while the entries accessed since the last pass get a second chance.
+ * </p>
+ * <p>
+ * The hits, misses and evictions are counted, and the evicted entries can be
+ * observed through {@link #setEvictionListener(KTypeVTypeProcedure)}.
+ * </p>
+ *
+ * <p><b>Important note.</b> The implementation uses power-of-two tables and linear
+ * probing, which may cause poor performance (many collisions) if hash values are
+ * not properly distributed.
+ *
+#if ($TemplateOptions.KTypeGeneric)
+ * <p>This implementation supports <code>null</code> keys. </p>
+#end
+#if ($TemplateOptions.VTypeGeneric)
+ * <p>This implementation supports <code>null</code> values.</p>
+#end
+ *
+ */
+/*! ${TemplateOptions.generatedAnnotation} !*/
+public class KTypeVTypeCache<KType, VType>
+{
+    protected VType defaultValue = Intrinsics.<VType> empty();
+
+    /**
+     * Hash-indexed array holding all keys.
+     * <p>
+     * Direct iteration: iterate  {keys[i], values[i]} for i in [0; keys.length[ where keys[i] != 0/null, then also
+     * {0/null, {@link #allocatedDefaultKeyValue} } is in the cache if {@link #allocatedDefaultKey} = true.
+     * </p>
+     */
+    public/*! #if ($TemplateOptions.KTypePrimitive)
+          KType []
+          #else !*/
+    Object[]
+            /*! #end !*/
+            keys;
+
+    /**
+     * Hash-indexed array holding all values associated to the keys.
+     * stored in {@link #keys}.
+     */
+    public/*! #if ($TemplateOptions.VTypePrimitive)
+          VType []
+          #else !*/
+    Object[]
+            /*! #end !*/
+            values;
+
+    /**
+     * Reference bits of the entries, bit i being the one of slot i,
+     * bit keys.length being the one of the key 0/null.
+     */
+    public long[] referenced;
+
+    /**
+     * True if key = 0/null is in the cache.
+     */
+    public boolean allocatedDefaultKey = false;
+
+    /**
+     * if allocatedDefaultKey = true, contains the associated V to the key = 0/null
+     */
+    public VType allocatedDefaultKeyValue;
+
+    /**
+     * Cached number of assigned slots in {@link #keys}.
+     */
+    protected int assigned;
+
+    /**
+     * Maximum number of entries of the cache.
+     */
+    protected final int capacity;
+
+    /**
+     * Next position examined by the clock hand, in [0; keys.length], keys.length
+     * standing for the key 0/null.
+     */
+    protected int clockHand;
+
+    protected long hitCount;
+
+    protected long missCount;
+
+    protected long evictionCount;
+
+    /**
+     * Called with each evicted entry, or null.
+     */
+    protected KTypeVTypeProcedure<? super KType, ? super VType> evictionListener;
+
+    /**
+     * Per-instance size perturbation
+     * introduced in rehashing to create a unique key distribution.
+     */
+    private final int perturbation = Containers.randomSeed32();
+
+    /*! #if ($TemplateOptions.KTypeGeneric) !*/
+
+    /**
+     * Override this method, together with {@link #equalKeys(Object, Object)}
+     * to customize the hashing strategy. Note that this method is guaranteed
+     * to be called with a non-null key argument.
+     * By default, this method calls key.{@link #hashCode()}.
+     * @param key KType to be hashed.
+     * @return the hashed value of key, following the same semantic
+     * as {@link #hashCode()};
+     * @see #hashCode()
+     * @see #equalKeys(Object, Object)
+     */
+    protected int hashKey(final KType key) {
+
+        //default maps on Object.hashCode()
+        return key.hashCode();
+    }
+
+    /**
+     * Override this method together with {@link #hashKey(Object)}
+     * to customize the hashing strategy. Note that this method is guaranteed
+     * to be called with both non-null arguments.
+     * By default, this method calls a.{@link #equals(b)}.
+     * @param a not-null KType to be compared
+     * @param b not-null KType to be compared
+     * @return true if a and b are considered equal, following the same
+     * semantic as {@link #equals(Object)}.
+     * @see #equals(Object)
+     * @see #hashKey(Object)
+     */
+    protected boolean equalKeys(final KType a, final KType b) {
+
+        //default maps on Object.equals()
+        return Intrinsics.<KType> equalsNotNull(a, b);
+    }
+
+    /*! #end !*/
+
+    /**
+     * Creates a cache holding at most capacity entries, with
+     * the default load factor of {@link HashContainers#DEFAULT_LOAD_FACTOR}.
+     *
+     * <p>See class notes about hash distribution importance.</p>
+     *
+     * @param capacity Maximum number of entries (greater than zero).
+     */
+    public KTypeVTypeCache(final int capacity) {
+        this(capacity, HashContainers.DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Creates a cache holding at most capacity entries,
+     * with the given load factor.
+     *
+     * @param capacity Maximum number of entries (greater than zero).
+     * @param loadFactor The load factor (greater than zero and smaller than 1).
+     */
+    public KTypeVTypeCache(final int capacity, final double loadFactor) {
+
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be greater than zero: " + capacity);
+        }
+
+        this.capacity = capacity;
+
+        //sized so that capacity keys never fill the table.
+        final int bufferSize = HashContainers.minBufferSize(capacity, loadFactor);
+
+        try {
+
+            this.keys = Intrinsics.<KType> newArray(bufferSize);
+            this.values = Intrinsics.<VType> newArray(bufferSize);
+            this.referenced = new long[(bufferSize >>> 6) + 1];
+
+        } catch (final OutOfMemoryError e) {
+
+            throw new BufferAllocationException(
+                    "Not enough memory to allocate buffers for %d elements",
+                    e,
+                    capacity);
+        }
+    }
+
+    /**
+     * Return the value associated with key, or the default value if the key is absent,
+     * counting a hit or a miss. A hit sets the reference bit of the entry.
+     */
+    public VType get(final KType key) {
+
+        if (Intrinsics.<KType> isEmpty(key)) {
+
+            if (this.allocatedDefaultKey) {
+
+                this.hitCount++;
+                this.referenced[this.keys.length >>> 6] |= 1L << this.keys.length;
+
+                return this.allocatedDefaultKeyValue;
+            }
+
+            this.missCount++;
+
+            return this.defaultValue;
+        }
+
+        final int mask = this.keys.length - 1;
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+
+        int slot = REHASH(key) & mask;
+        KType existing;
+
+        while (!Intrinsics.<KType> isEmpty(existing = keys[slot])) {
+
+            if (KEYEQUALS(key, existing)) {
+
+                this.hitCount++;
+                this.referenced[slot >>> 6] |= 1L << slot;
+
+                return Intrinsics.<VType> cast(this.values[slot]);
+            }
+            slot = (slot + 1) & mask;
+        } //end while true
+
+        this.missCount++;
+
+        return this.defaultValue;
+    }
+
+    /**
+     * True if key is in the cache. Neither the statistics nor the reference bits are changed.
+     */
+    public boolean containsKey(final KType key) {
+
+        if (Intrinsics.<KType> isEmpty(key)) {
+
+            return this.allocatedDefaultKey;
+        }
+
+        final int mask = this.keys.length - 1;
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+
+        int slot = REHASH(key) & mask;
+        KType existing;
+
+        while (!Intrinsics.<KType> isEmpty(existing = keys[slot])) {
+
+            if (KEYEQUALS(key, existing)) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        } //end while true
+
+        return false;
+    }
+
+    /**
+     * Place a given key and value in the cache. If the key is already present,
+     * its value is replaced and its reference bit set. Else, if the cache is full, an entry is evicted first,
+     * and the new entry starts with its reference bit cleared.
+     *
+     * @return The value previously stored under the given key in the cache, or the default value
+     * if the key was absent.
+     */
+    public VType put(final KType key, final VType value) {
+
+        if (Intrinsics.<KType> isEmpty(key)) {
+
+            if (this.allocatedDefaultKey) {
+
+                final VType previousValue = this.allocatedDefaultKeyValue;
+                this.allocatedDefaultKeyValue = value;
+                this.referenced[this.keys.length >>> 6] |= 1L << this.keys.length;
+
+                return previousValue;
+            }
+
+            if (size() == this.capacity) {
+                evictOne();
+            }
+
+            this.allocatedDefaultKeyValue = value;
+            this.allocatedDefaultKey = true;
+            this.referenced[this.keys.length >>> 6] &= ~(1L << this.keys.length);
+
+            return this.defaultValue;
+        }
+
+        final int mask = this.keys.length - 1;
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+
+        int slot = REHASH(key) & mask;
+        KType existing;
+
+        while (!Intrinsics.<KType> isEmpty(existing = keys[slot])) {
+
+            if (KEYEQUALS(key, existing)) {
+
+                final VType oldValue = Intrinsics.<VType> cast(this.values[slot]);
+                this.values[slot] = value;
+                this.referenced[slot >>> 6] |= 1L << slot;
+
+                return oldValue;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        if (size() == this.capacity) {
+
+            evictOne();
+
+            //the eviction may have shifted the keys of the probing sequence,
+            //so look for the free slot again.
+            slot = REHASH(key) & mask;
+
+            while (is_allocated(slot, keys)) {
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        this.assigned++;
+
+        keys[slot] = key;
+        this.values[slot] = value;
+        this.referenced[slot >>> 6] &= ~(1L << slot);
+
+        return this.defaultValue;
+    }
+
+    /**
+     * Remove the entry associated with key, if any. This is not counted as an eviction.
+     * @return the previously associated value, or the default value if the key was absent.
+     */
+    public VType remove(final KType key) {
+
+        if (Intrinsics.<KType> isEmpty(key)) {
+
+            if (this.allocatedDefaultKey) {
+
+                final VType previousValue = this.allocatedDefaultKeyValue;
+
+                this.allocatedDefaultKey = false;
+
+                /*! #if ($TemplateOptions.VTypeGeneric) !*/
+                //help the GC
+                this.allocatedDefaultKeyValue = Intrinsics.<VType> empty();
+                /*! #end !*/
+
+                return previousValue;
+            }
+
+            return this.defaultValue;
+        }
+
+        final int mask = this.keys.length - 1;
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+
+        int slot = REHASH(key) & mask;
+        KType existing;
+
+        while (!Intrinsics.<KType> isEmpty(existing = keys[slot])) {
+
+            if (KEYEQUALS(key, existing)) {
+
+                final VType value = Intrinsics.<VType> cast(this.values[slot]);
+
+                shiftConflictingKeys(slot);
+
+                return value;
+            }
+            slot = (slot + 1) & mask;
+        } //end while true
+
+        return this.defaultValue;
+    }
+
+    /**
+     * Advance the clock hand up to an unreferenced entry, clearing the reference bits on its way,
+     * and evict it. The cache must not be empty.
+     */
+    private void evictOne() {
+
+        assert size() > 0;
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+        final long[] referenced = this.referenced;
+
+        //at most two sweeps, since the first one clears all the bits.
+        while (true) {
+
+            final int hand = this.clockHand;
+
+            if (hand == keys.length) {
+
+                this.clockHand = 0;
+
+                if (!this.allocatedDefaultKey) {
+                    continue;
+                }
+            } else {
+
+                this.clockHand = hand + 1;
+
+                if (!is_allocated(hand, keys)) {
+                    continue;
+                }
+            }
+
+            final long bit = 1L << hand;
+
+            if ((referenced[hand >>> 6] & bit) != 0) {
+
+                //second chance
+                referenced[hand >>> 6] &= ~bit;
+                continue;
+            }
+
+            this.evictionCount++;
+
+            if (hand == keys.length) {
+
+                final VType value = this.allocatedDefaultKeyValue;
+
+                this.allocatedDefaultKey = false;
+
+                /*! #if ($TemplateOptions.VTypeGeneric) !*/
+                //help the GC
+                this.allocatedDefaultKeyValue = Intrinsics.<VType> empty();
+                /*! #end !*/
+
+                if (this.evictionListener != null) {
+                    this.evictionListener.apply(Intrinsics.<KType> empty(), value);
+                }
+            } else {
+
+                final KType key = keys[hand];
+                final VType value = Intrinsics.<VType> cast(this.values[hand]);
+
+                shiftConflictingKeys(hand);
+
+                //an entry may have been shifted in the slot, examine it next.
+                this.clockHand = hand;
+
+                if (this.evictionListener != null) {
+                    this.evictionListener.apply(key, value);
+                }
+            }
+
+            return;
+        } //end while
+    }
+
+    /**
+     * Shift all the slot-conflicting keys allocated to (and including) <code>slot</code>,
+     * along with their reference bits.
+     */
+    private void shiftConflictingKeys(int gapSlot) {
+        final int mask = this.keys.length - 1;
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+        final VType[] values = Intrinsics.<VType[]> cast(this.values);
+        final long[] referenced = this.referenced;
+
+        final int perturb = this.perturbation;
+
+        // Perform shifts of conflicting keys to fill in the gap.
+        int distance = 0;
+        while (true) {
+
+            final int slot = (gapSlot + (++distance)) & mask;
+
+            final KType existing = keys[slot];
+            final VType existingValue = values[slot];
+
+            if (Intrinsics.<KType> isEmpty(existing)) {
+                break;
+            }
+
+            final int idealSlotModMask = REHASH2(existing, perturb) & mask;
+
+            //original HPPC code: shift = (slot - idealSlot) & mask;
+            //equivalent to shift = (slot & mask - idealSlot & mask) & mask;
+            //since slot and idealSlotModMask are already folded, we have :
+            final int shift = (slot - idealSlotModMask) & mask;
+
+            if (shift >= distance) {
+                // Entry at this position was originally at or before the gap slot.
+                // Move the conflict-shifted entry to the gap's position and repeat the procedure
+                // for any entries to the right of the current position, treating it
+                // as the new gap.
+                keys[gapSlot] = existing;
+                values[gapSlot] = existingValue;
+
+                if ((referenced[slot >>> 6] & (1L << slot)) != 0) {
+                    referenced[gapSlot >>> 6] |= 1L << gapSlot;
+                } else {
+                    referenced[gapSlot >>> 6] &= ~(1L << gapSlot);
+                }
+
+                gapSlot = slot;
+                distance = 0;
+            }
+        } //end while
+
+        // Mark the last found gap slot without a conflict as empty.
+        keys[gapSlot] = Intrinsics.<KType> empty();
+
+        /* #if ($TemplateOptions.VTypeGeneric) */
+        values[gapSlot] = Intrinsics.<VType> empty();
+        /* #end */
+
+        this.assigned--;
+    }
+
+    /**
+     * Remove all the entries, which are not counted as evictions. The statistics are kept.
+     */
+    public void clear() {
+        this.assigned = 0;
+        this.clockHand = 0;
+
+        // States are always cleared.
+        this.allocatedDefaultKey = false;
+
+        /*! #if ($TemplateOptions.VTypeGeneric) !*/
+        //help the GC
+        this.allocatedDefaultKeyValue = Intrinsics.<VType> empty();
+        /*! #end !*/
+
+        //Faster than Arrays.fill(keys, null); // Help the GC.
+        KTypeArrays.blankArray(this.keys, 0, this.keys.length);
+
+        /*! #if ($TemplateOptions.VTypeGeneric) !*/
+        //Faster than Arrays.fill(values, null); // Help the GC.
+        VTypeArrays.<VType> blankArray(Intrinsics.<VType[]> cast(this.values), 0, this.values.length);
+        /*! #end !*/
+    }
+
+    /**
+     * @return the current number of entries of the cache.
+     */
+    public int size() {
+        return this.assigned + (this.allocatedDefaultKey ? 1 : 0);
+    }
+
+    /**
+     * @return the maximum number of entries of the cache.
+     */
+    public int capacity() {
+
+        return this.capacity;
+    }
+
+    /**
+     * @return true if the cache has no entry.
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Applies a given procedure to all entries of the cache, in no particular order.
+     * Neither the statistics nor the reference bits are changed.
+     */
+    public <T extends KTypeVTypeProcedure<? super KType, ? super VType>> T forEach(final T procedure) {
+
+        if (this.allocatedDefaultKey) {
+
+            procedure.apply(Intrinsics.<KType> empty(), this.allocatedDefaultKeyValue);
+        }
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+        final VType[] values = Intrinsics.<VType[]> cast(this.values);
+
+        for (int i = keys.length - 1; i >= 0; i--) {
+            KType existing;
+            if (!Intrinsics.<KType> isEmpty(existing = keys[i])) {
+                procedure.apply(existing, values[i]);
+            }
+        }
+
+        return procedure;
+    }
+
+    /**
+     * @return the number of get() calls which found their key.
+     */
+    public long getHitCount() {
+        return this.hitCount;
+    }
+
+    /**
+     * @return the number of get() calls which did not find their key.
+     */
+    public long getMissCount() {
+        return this.missCount;
+    }
+
+    /**
+     * @return the number of entries evicted to make room for new keys.
+     */
+    public long getEvictionCount() {
+        return this.evictionCount;
+    }
+
+    /**
+     * Reset the hit, miss and eviction counts to zero.
+     */
+    public void resetStatistics() {
+        this.hitCount = 0;
+        this.missCount = 0;
+        this.evictionCount = 0;
+    }
+
+    /**
+     * Set the procedure called with the key and value of each evicted entry, right after its eviction.
+     * The listener must not modify the cache.
+     * @param evictionListener the listener, or null to remove it.
+     */
+    public void setEvictionListener(final KTypeVTypeProcedure<? super KType, ? super VType> evictionListener) {
+        this.evictionListener = evictionListener;
+    }
+
+    /**
+     * @return the current eviction listener, or null.
+     */
+    public KTypeVTypeProcedure<? super KType, ? super VType> getEvictionListener() {
+        return this.evictionListener;
+    }
+
+    /**
+     * Convert the contents of this cache to a human-friendly string.
+     */
+    @Override
+    public String toString() {
+        final StringBuilder buffer = new StringBuilder();
+        buffer.append("[");
+
+        forEach(new KTypeVTypeProcedure<KType, VType>() {
+
+            boolean first = true;
+
+            @Override
+            public void apply(final KType key, final VType value) {
+                if (!this.first) {
+                    buffer.append(", ");
+                }
+                buffer.append(key);
+                buffer.append("=>");
+                buffer.append(value);
+                this.first = false;
+            }
+        });
+
+        buffer.append("]");
+        return buffer.toString();
+    }
+
+    /**
+     * Returns the "default value" value used in methods returning
+     * "default value"
+     */
+    public VType getDefaultValue() {
+        return this.defaultValue;
+    }
+
+    /**
+     * Set the "default value" value to be used in methods returning
+     * "default value"
+     */
+    public void setDefaultValue(final VType defaultValue) {
+        this.defaultValue = defaultValue;
+    }
+
+    //Test for existence in template
+    /*! #if ($TemplateOptions.declareInline("is_allocated(slot, keys)",
+        "<*,*>==>!Intrinsics.<KType>isEmpty(keys[slot])")) !*/
+    /**
+     *  template version
+     * (actual method is inlined in generated code)
+     */
+    private boolean is_allocated(final int slot, final KType[] keys) {
+
+        return !Intrinsics.<KType> isEmpty(keys[slot]);
+    }
+
+    /*! #end !*/
+
+    /*! #if ($TemplateOptions.declareInline("REHASH(value)",
+    "<Object,*>==>BitMixer.mix(hashKey(value) , this.perturbation)",
+    "<*,*>==>BitMixer.mix(value , this.perturbation)")) !*/
+    /**
+     * REHASH method for rehashing the keys.
+     * (inlined in generated code)
+     * Thanks to single array mode, no need to check for null/0 or booleans.
+     */
+    private int REHASH(final KType value) {
+
+        return BitMixer.mix(hashKey(value), this.perturbation);
+    }
+
+    /*! #end !*/
+
+    /*! #if ($TemplateOptions.declareInline("REHASH2(value, perturb)",
+    "<Object,*>==>BitMixer.mix(hashKey(value) , perturb)",
+    "<*,*>==>BitMixer.mix(value , perturb)")) !*/
+    /**
+     * REHASH2 method for rehashing the keys with perturbation seed as parameter
+     * (inlined in generated code)
+     * Thanks to single array mode, no need to check for null/0 or booleans.
+     */
+    private int REHASH2(final KType value, final int perturb) {
+
+        return BitMixer.mix(hashKey(value), perturb);
+    }
+    /*! #end !*/
+
+    /*! #if ($TemplateOptions.declareInline("KEYEQUALS(key1, key2)",
+    "<Object,*>==>equalKeys(key1, key2)",
+    "<*,*>==>Intrinsics.<KType> equalsNotNull(key1, key2)")) !*/
+    /**
+     * macro which hides the applied equality criteria
+     */
+    private boolean KEYEQUALS(final KType key1, final KType key2) {
+
+        return equalKeys(key1, key2);
+    }
+    /*! #end !*/
+}
@@ -0,0 +1,412 @@
+package com.carrotsearch.hppcrt.maps;
+
+import com.carrotsearch.hppcrt.*;
+import com.carrotsearch.hppcrt.procedures.*;
+import com.carrotsearch.hppcrt.hash.*;
+
+/*! #import("com/carrotsearch/hppcrt/Intrinsics.java") !*/
+/**
+ * A thread-safe hash map of <code>KType</code> to <code>VType</code>, using lock striping:
+ * the key space is partitioned into a power-of-two number of segments, each of them
+ * being an independently locked {@link KTypeVTypeHashMap}.
+ *
+ * <p>
+ * The segment of a key is selected by the high bits of its mixed hash ({@link BitMixer}), with a per-instance seed,
+ * while each segment uses the low bits of its own perturbed hash to select slots,
+ * so the keys remain well distributed inside the segments.
+ * </p>
+ *
+ * <p>
+ * Single key operations (put(), get(), containsKey(), remove(), putIfAbsent()
+#if ($TemplateOptions.VTypePrimitive)
+ * , addTo(), putOrAdd()
+#end
+ * ) are atomic and allocation-free, exactly as the ones of {@link KTypeVTypeHashMap},
+ * except when a segment needs to be expanded.
+ * Operations spanning the whole map ({@link #size()}, {@link #clear()}, forEach()...) lock
+ * the segments one at a time, so they are not atomic with respect to concurrent modifications.
+ * </p>
+ *
+ * <p>This implementation does not implement {@link KTypeVTypeMap}, because it does not provide
+ * iterators nor collection views, which cannot be both thread-safe and allocation-free.</p>
+ *
+#if ($TemplateOptions.KTypeGeneric)
+ * <p>This implementation supports <code>null</code> keys. </p>
+#end
+#if ($TemplateOptions.VTypeGeneric)
+ * <p>This implementation supports <code>null</code> values.</p>
+#end
+ */
+/*! ${TemplateOptions.generatedAnnotation} !*/
+public class KTypeVTypeConcurrentHashMap<KType, VType>
+{
+    /**
+     * Default number of segments, for about 4 segments per available processor.
+     */
+    public final static int DEFAULT_CONCURRENCY_LEVEL = BitUtil.nextHighestPowerOfTwo(4 * Containers.NB_OF_PROCESSORS);
+
+    /**
+     * The independently locked segments, each segment is its own lock.
+     */
+    protected final KTypeVTypeHashMap<KType, VType>[] segments;
+
+    /**
+     * Shift applied to the mixed hash of a key to get its segment index.
+     */
+    private final int segmentShift;
+
+    /**
+     * Mask of the segment index (= segments.length - 1)
+     */
+    private final int segmentMask;
+
+    /**
+     * Per-instance seed used for selecting the segments.
+     */
+    private final int seed = Containers.randomSeed32();
+
+    /**
+     * Default constructor: Creates a concurrent hash map with the default capacity of {@link Containers#DEFAULT_EXPECTED_ELEMENTS},
+     * load factor of {@link HashContainers#DEFAULT_LOAD_FACTOR} and {@link #DEFAULT_CONCURRENCY_LEVEL} segments.
+     */
+    public KTypeVTypeConcurrentHashMap() {
+        this(Containers.DEFAULT_EXPECTED_ELEMENTS);
+    }
+
+    /**
+     * Creates a concurrent hash map with the given initial capacity, default load factor of
+     * {@link HashContainers#DEFAULT_LOAD_FACTOR} and {@link #DEFAULT_CONCURRENCY_LEVEL} segments.
+     *
+     * @param initialCapacity Initial capacity (greater than zero), shared among the segments.
+     */
+    public KTypeVTypeConcurrentHashMap(final int initialCapacity) {
+        this(initialCapacity, HashContainers.DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Creates a concurrent hash map with the given initial capacity,
+     * load factor and {@link #DEFAULT_CONCURRENCY_LEVEL} segments.
+     *
+     * @param loadFactor The load factor (greater than zero and smaller than 1).
+     */
+    public KTypeVTypeConcurrentHashMap(final int initialCapacity, final double loadFactor) {
+        this(initialCapacity, loadFactor, KTypeVTypeConcurrentHashMap.DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    /**
+     * Creates a concurrent hash map with the given initial capacity,
+     * load factor and number of segments.
+     *
+     * @param initialCapacity Initial capacity (greater than zero), shared among the segments.
+     * @param loadFactor The load factor (greater than zero and smaller than 1).
+     * @param concurrencyLevel The number of segments, rounded to the next power of two.
+     */
+    @SuppressWarnings("unchecked")
+    public KTypeVTypeConcurrentHashMap(final int initialCapacity, final double loadFactor, final int concurrencyLevel) {
+
+        if (concurrencyLevel < 1 || concurrencyLevel > (1 << 16)) {
+            throw new IllegalArgumentException("concurrencyLevel must be in [1, 65536]: " + concurrencyLevel);
+        }
+
+        final int nbSegments = BitUtil.nextHighestPowerOfTwo(concurrencyLevel);
+
+        this.segments = new KTypeVTypeHashMap[nbSegments];
+
+        //each segment gets its share of the initial capacity
+        final int segmentCapacity = (initialCapacity + nbSegments - 1) / nbSegments;
+
+        for (int i = 0; i < nbSegments; i++) {
+
+            this.segments[i] = new KTypeVTypeHashMap<KType, VType>(segmentCapacity, loadFactor);
+        }
+
+        this.segmentMask = nbSegments - 1;
+        this.segmentShift = 32 - Integer.numberOfTrailingZeros(nbSegments);
+    }
+
+    /**
+     * @see KTypeVTypeHashMap#put
+     */
+    public VType put(final KType key, final VType value) {
+
+        final KTypeVTypeHashMap<KType, VType> segment = segmentFor(key);
+
+        synchronized (segment) {
+
+            return segment.put(key, value);
+        }
+    }
+
+    /**
+     * Puts all keys from an associative container into this map, each segment being locked in turn.
+     * @return Returns the number of keys added to the map as a result of this call (not previously present in the map).
+     */
+    public int putAll(final KTypeVTypeAssociativeContainer<? extends KType, ? extends VType> container) {
+
+        //iterate the container with the current thread, and not under any segment lock
+        final int[] count = new int[1];
+
+        container.forEach(new KTypeVTypeProcedure<KType, VType>() {
+
+            @Override
+            public void apply(final KType key, final VType value) {
+
+                if (putIfAbsent(key, value)) {
+                    count[0]++;
+                } else {
+                    put(key, value);
+                }
+            }
+        });
+
+        return count[0];
+    }
+
+    /**
+     * Atomically puts <code>key</code> with <code>value</code> if <code>key</code> is not already in the map.
+     * @return <code>true</code> if <code>key</code> did not exist and <code>value</code>
+     * was placed in the map.
+     */
+    public boolean putIfAbsent(final KType key, final VType value) {
+
+        final KTypeVTypeHashMap<KType, VType> segment = segmentFor(key);
+
+        synchronized (segment) {
+
+            return segment.putIfAbsent(key, value);
+        }
+    }
+
+    /*! #if ($TemplateOptions.VTypePrimitive) !*/
+    /**
+     * Atomically, if <code>key</code> exists, <code>putValue</code> is inserted into the map,
+     * otherwise any existing value is incremented by <code>additionValue</code>.
+     * @see KTypeVTypeHashMap#putOrAdd
+     */
+    public VType putOrAdd(final KType key, final VType putValue, final VType incrementValue) {
+
+        final KTypeVTypeHashMap<KType, VType> segment = segmentFor(key);
+
+        synchronized (segment) {
+
+            return segment.putOrAdd(key, putValue, incrementValue);
+        }
+    }
+
+    /*! #end !*/
+
+    /*! #if ($TemplateOptions.VTypePrimitive) !*/
+    /**
+     * Atomically adds <code>incrementValue</code> to any existing value for the given <code>key</code>
+     * or inserts <code>incrementValue</code> if <code>key</code> did not previously exist.
+     * @see KTypeVTypeHashMap#addTo
+     */
+    public VType addTo(final KType key, final VType incrementValue) {
+
+        final KTypeVTypeHashMap<KType, VType> segment = segmentFor(key);
+
+        synchronized (segment) {
+
+            return segment.addTo(key, incrementValue);
+        }
+    }
+
+    /*! #end !*/
+
+    /**
+     * @see KTypeVTypeHashMap#get
+     */
+    public VType get(final KType key) {
+
+        final KTypeVTypeHashMap<KType, VType> segment = segmentFor(key);
+
+        synchronized (segment) {
+
+            return segment.get(key);
+        }
+    }
+
+    /**
+     * @see KTypeVTypeHashMap#containsKey
+     */
+    public boolean containsKey(final KType key) {
+
+        final KTypeVTypeHashMap<KType, VType> segment = segmentFor(key);
+
+        synchronized (segment) {
+
+            return segment.containsKey(key);
+        }
+    }
+
+    /**
+     * @see KTypeVTypeHashMap#remove
+     */
+    public VType remove(final KType key) {
+
+        final KTypeVTypeHashMap<KType, VType> segment = segmentFor(key);
+
+        synchronized (segment) {
+
+            return segment.remove(key);
+        }
+    }
+
+    /**
+     * Applies a given procedure to all keys-value pairs of this map, locking
+     * each segment in turn while its pairs are processed.
+     * The procedure must not access this map, otherwise deadlocks may occur.
+     */
+    public <T extends KTypeVTypeProcedure<? super KType, ? super VType>> T forEach(final T procedure) {
+
+        for (final KTypeVTypeHashMap<KType, VType> segment : this.segments) {
+
+            synchronized (segment) {
+
+                segment.forEach(procedure);
+            }
+        }
+
+        return procedure;
+    }
+
+    /**
+     * Remove all keys-value pairs, locking each segment in turn.
+     */
+    public void clear() {
+
+        for (final KTypeVTypeHashMap<KType, VType> segment : this.segments) {
+
+            synchronized (segment) {
+
+                segment.clear();
+            }
+        }
+    }
+
+    /**
+     * @return the current number of keys-value pairs. The segments are locked in turn, so
+     * the result is only an estimate in presence of concurrent modifications.
+     */
+    public int size() {
+
+        int size = 0;
+
+        for (final KTypeVTypeHashMap<KType, VType> segment : this.segments) {
+
+            synchronized (segment) {
+
+                size += segment.size();
+            }
+        }
+
+        return size;
+    }
+
+    /**
+     * True if there is no keys-value pairs in the map, see {@link #size()}.
+     */
+    public boolean isEmpty() {
+
+        return size() == 0;
+    }
+
+    /**
+     * @return the sum of the capacities of the segments.
+     */
+    public int capacity() {
+
+        int capacity = 0;
+
+        for (final KTypeVTypeHashMap<KType, VType> segment : this.segments) {
+
+            synchronized (segment) {
+
+                capacity += segment.capacity();
+            }
+        }
+
+        return capacity;
+    }
+
+    /**
+     * @return the number of segments.
+     */
+    public int concurrencyLevel() {
+
+        return this.segments.length;
+    }
+
+    /**
+     * Returns the "default value" value used in methods returning
+     * "default value"
+     */
+    public VType getDefaultValue() {
+
+        final KTypeVTypeHashMap<KType, VType> segment = this.segments[0];
+
+        synchronized (segment) {
+
+            return segment.getDefaultValue();
+        }
+    }
+
+    /**
+     * Set the "default value" value to be used in methods returning
+     * "default value"
+     */
+    public void setDefaultValue(final VType defaultValue) {
+
+        for (final KTypeVTypeHashMap<KType, VType> segment : this.segments) {
+
+            synchronized (segment) {
+
+                segment.setDefaultValue(defaultValue);
+            }
+        }
+    }
+
+    /**
+     * Convert the contents of this map to a human-friendly string.
+     */
+    @Override
+    public String toString() {
+        final StringBuilder buffer = new StringBuilder();
+        buffer.append("[");
+
+        forEach(new KTypeVTypeProcedure<KType, VType>() {
+
+            boolean first = true;
+
+            @Override
+            public void apply(final KType key, final VType value) {
+
+                if (!this.first) {
+                    buffer.append(", ");
+                }
+                buffer.append(key);
+                buffer.append("=>");
+                buffer.append(value);
+                this.first = false;
+            }
+        });
+
+        buffer.append("]");
+        return buffer.toString();
+    }
+
+    /**
+     * @return the segment holding key.
+     */
+    private KTypeVTypeHashMap<KType, VType> segmentFor(final KType key) {
+
+        /*! #if ($TemplateOptions.KTypeGeneric) !*/
+        final int hash = (key == null) ? 0 : BitMixer.mix(key.hashCode(), this.seed);
+        /*! #else
+        final int hash = BitMixer.mix(key, this.seed);
+        #end !*/
+
+        //use the high bits, since each segment is indexed by the low bits
+        return this.segments[(hash >>> this.segmentShift) & this.segmentMask];
+    }
+}
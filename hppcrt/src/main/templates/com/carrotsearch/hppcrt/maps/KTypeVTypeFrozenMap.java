@@ -0,0 +1,1273 @@
+package com.carrotsearch.hppcrt.maps;
+
+import com.carrotsearch.hppcrt.*;
+import com.carrotsearch.hppcrt.cursors.*;
+import com.carrotsearch.hppcrt.predicates.*;
+import com.carrotsearch.hppcrt.procedures.*;
+import com.carrotsearch.hppcrt.hash.*;
+
+/*! #import("com/carrotsearch/hppcrt/Intrinsics.java") !*/
+/**
+ * An immutable hash map of <code>KType</code> to <code>VType</code>, built once from another container
+ * (see {@link #from(KTypeVTypeAssociativeContainer)} or {@link KTypeVTypeHashMap#freeze()}), using bucketized cuckoo hashing.
+ *
+ * <p>
+ * The keys are stored in buckets of {@link #BUCKET_SIZE} contiguous slots, and each key can only be in one of two buckets, chosen by two independent hashes of the key:
+ * a lookup reads at most these two buckets, whatever the keys. The buckets are filled up to {@link #LOAD_FACTOR} by moving
+ * keys to their other bucket (cuckoo insertion) while building the map, so that the buffers hold little more slots than keys,
+ * without any cached hash.
+ * </p>
+ *
+ * <p>
+ * The two buckets of a key always differ. If a key cannot be placed, the map is rebuilt with new seeds, then with more buckets.
+ * Only if it still fails after a few attempts, i.e. for more than <code>2 * BUCKET_SIZE</code> keys
+ * of identical <code>hashCode()</code>, are the keys which could not be placed kept in a small stash, read after the two buckets.
+ * </p>
+ *
+ * <p>
+ * All the modifying methods, including those of the {@link #keys()} and {@link #values()} views and {@link #setDefaultValue(Object)}, throw
+ * {@link UnsupportedOperationException}. Since the map never changes after construction, and its iterators are not pooled
+ * but allocated by each call, it can be shared by any number of concurrent reader threads.
+ * </p>
+#if ($TemplateOptions.KTypeGeneric)
+ * <p>This implementation supports <code>null</code> keys. </p>
+#end
+#if ($TemplateOptions.VTypeGeneric)
+ * <p>This implementation supports <code>null</code> values.</p>
+#end
+ */
+/*! ${TemplateOptions.generatedAnnotation} !*/
+public class KTypeVTypeFrozenMap<KType, VType>
+implements KTypeVTypeMap<KType, VType>
+{
+    /**
+     * log2 of {@link #BUCKET_SIZE}.
+     */
+    private static final int BUCKET_SHIFT = 2;
+
+    /**
+     * Number of slots of a bucket.
+     */
+    public static final int BUCKET_SIZE = 1 << KTypeVTypeFrozenMap.BUCKET_SHIFT;
+
+    /**
+     * Fraction of the slots filled by the keys.
+     */
+    public static final double LOAD_FACTOR = 0.9;
+
+    /**
+     * Maximum number of keys moved to insert a key, before rebuilding the map.
+     */
+    private static final int MAX_MOVES = 500;
+
+    /**
+     * Maximum number of attempts to build the map, the last one stashing the keys it cannot place.
+     */
+    private static final int MAX_BUILDS = 16;
+
+    /**
+     * Number of failed attempts with the same number of buckets, before growing it.
+     */
+    private static final int REBUILDS_PER_GROWTH = 4;
+
+    /**
+     * Bucket-indexed array holding all keys, the keys of a bucket being packed at its beginning.
+     * <p>
+     * Direct map iteration: iterate  {keys[i], values[i]} for i in [0; keys.length[ where keys[i] != 0/null, then also
+     * {stashKeys[i], stashValues[i]} for i in [0; stashKeys.length[, then also
+     * {0/null, {@link #allocatedDefaultKeyValue} } is in the map if {@link #allocatedDefaultKey} = true.
+     * </p>
+     */
+    public final/*! #if ($TemplateOptions.KTypePrimitive)
+          KType []
+          #else !*/
+    Object[]
+            /*! #end !*/
+            keys;
+
+    /**
+     * Array holding all values associated to the keys stored in {@link #keys}.
+     */
+    public final/*! #if ($TemplateOptions.VTypePrimitive)
+          VType []
+          #else !*/
+    Object[]
+            /*! #end !*/
+            values;
+
+    /**
+     * Keys which could not be placed in their two buckets, empty unless many keys have identical <code>hashCode()</code>.
+     */
+    public final/*! #if ($TemplateOptions.KTypePrimitive)
+          KType []
+          #else !*/
+    Object[]
+            /*! #end !*/
+            stashKeys;
+
+    /**
+     * Values associated to the keys stored in {@link #stashKeys}.
+     */
+    public final/*! #if ($TemplateOptions.VTypePrimitive)
+          VType []
+          #else !*/
+    Object[]
+            /*! #end !*/
+            stashValues;
+
+    /**
+     * True if key = 0/null is in the map.
+     */
+    public final boolean allocatedDefaultKey;
+
+    /**
+     * if allocatedDefaultKey = true, contains the associated V to the key = 0/null
+     */
+    public final VType allocatedDefaultKeyValue;
+
+    /**
+     * Number of keys in {@link #keys} and {@link #stashKeys}.
+     */
+    protected final int assigned;
+
+    /**
+     * Number of buckets.
+     */
+    private final int bucketCount;
+
+    protected final VType defaultValue;
+
+    /**
+     * Seeds of the hashes choosing the two buckets of a key.
+     */
+    private final int seed;
+
+    private final int alternateSeed;
+
+    /**
+     * Build the map from the distinct non-empty keys <code>sourceKeys[0; count[</code>, in <code>bucketCount</code> buckets.
+     * If the insertion walk of a key fails, the construction is abandoned, leaving {@link #stashKeys} null,
+     * unless <code>useStash</code> is true, in which case the key is stashed.
+     */
+    private KTypeVTypeFrozenMap(final KType[] sourceKeys, final VType[] sourceValues, final int count,
+            final boolean allocatedDefaultKey, final VType allocatedDefaultKeyValue, final VType defaultValue,
+            final int bucketCount, final boolean useStash) {
+
+        this.allocatedDefaultKey = allocatedDefaultKey;
+        this.allocatedDefaultKeyValue = allocatedDefaultKeyValue;
+        this.defaultValue = defaultValue;
+        this.assigned = count;
+        this.bucketCount = bucketCount;
+
+        final int slots = bucketCount << KTypeVTypeFrozenMap.BUCKET_SHIFT;
+
+        try {
+            this.keys = Intrinsics.<KType> newArray(slots);
+            this.values = Intrinsics.<VType> newArray(slots);
+        } catch (final OutOfMemoryError e) {
+
+            throw new BufferAllocationException(
+                    "Not enough memory to allocate buffers for %d elements",
+                    e, count);
+        }
+
+        this.seed = Containers.randomSeed32();
+        this.alternateSeed = Containers.randomSeed32();
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+        final VType[] values = Intrinsics.<VType[]> cast(this.values);
+
+        //the walk is deterministic for given seeds
+        final XorShift128P random = new XorShift128P(this.seed);
+
+        KType[] stashKeys = Intrinsics.<KType> newArray(0);
+        VType[] stashValues = Intrinsics.<VType> newArray(0);
+        int stashed = 0;
+
+        for (int i = 0; i < count; i++) {
+
+            KType key = sourceKeys[i];
+            VType value = sourceValues[i];
+
+            assert !Intrinsics.<KType> isEmpty(key);
+
+            int moves = 0;
+
+            while (true) {
+
+                final int hash = REHASH(key);
+                final int firstBucket = firstBucket(hash);
+                final int secondBucket = secondBucket(hash, firstBucket);
+
+                //the key goes to its second bucket only if the first is full, which lookups rely on.
+                int slot = freeSlot(keys, firstBucket);
+
+                if (slot == -1) {
+                    slot = freeSlot(keys, secondBucket);
+                }
+
+                if (slot != -1) {
+
+                    keys[slot] = key;
+                    values[slot] = value;
+                    break;
+                }
+
+                if (moves++ == KTypeVTypeFrozenMap.MAX_MOVES) {
+
+                    if (!useStash) {
+
+                        //give up, to be rebuilt with other seeds
+                        this.stashKeys = null;
+                        this.stashValues = null;
+                        return;
+                    }
+
+                    //both buckets are full for good: grow the stash by doubling.
+                    if (stashed == stashKeys.length) {
+
+                        final KType[] grownKeys = Intrinsics.<KType> newArray(Math.max(4, stashed << 1));
+                        final VType[] grownValues = Intrinsics.<VType> newArray(Math.max(4, stashed << 1));
+
+                        System.arraycopy(stashKeys, 0, grownKeys, 0, stashed);
+                        System.arraycopy(stashValues, 0, grownValues, 0, stashed);
+
+                        stashKeys = grownKeys;
+                        stashValues = grownValues;
+                    }
+
+                    stashKeys[stashed] = key;
+                    stashValues[stashed] = value;
+                    stashed++;
+                    break;
+                }
+
+                //kick out a random key of the two full buckets, which goes on to its other bucket
+                slot = ((random.nextInt(2) == 0 ? firstBucket : secondBucket) << KTypeVTypeFrozenMap.BUCKET_SHIFT)
+                        + random.nextInt(KTypeVTypeFrozenMap.BUCKET_SIZE);
+
+                final KType kickedKey = keys[slot];
+                final VType kickedValue = values[slot];
+
+                keys[slot] = key;
+                values[slot] = value;
+
+                key = kickedKey;
+                value = kickedValue;
+            } //end while
+        }
+
+        //trim the stash, so that its length is the number of stashed keys
+        if (stashed < stashKeys.length) {
+
+            final KType[] trimmedKeys = Intrinsics.<KType> newArray(stashed);
+            final VType[] trimmedValues = Intrinsics.<VType> newArray(stashed);
+
+            System.arraycopy(stashKeys, 0, trimmedKeys, 0, stashed);
+            System.arraycopy(stashValues, 0, trimmedValues, 0, stashed);
+
+            stashKeys = trimmedKeys;
+            stashValues = trimmedValues;
+        }
+
+        this.stashKeys = stashKeys;
+        this.stashValues = stashValues;
+    }
+
+    /**
+     * Build the map from the distinct non-empty keys <code>sourceKeys[0; count[</code>: when an insertion walk fails,
+     * the map is rebuilt with new seeds, and with more buckets every {@link #REBUILDS_PER_GROWTH} failures.
+     * Only the last of the {@link #MAX_BUILDS} attempts stashes the keys it cannot place.
+     */
+    private static <KType, VType> KTypeVTypeFrozenMap<KType, VType> build(final KType[] sourceKeys, final VType[] sourceValues, final int count,
+            final boolean allocatedDefaultKey, final VType allocatedDefaultKeyValue, final VType defaultValue) {
+
+        long buckets = Math.max(1L, (long) Math.ceil(count / (KTypeVTypeFrozenMap.BUCKET_SIZE * KTypeVTypeFrozenMap.LOAD_FACTOR)));
+
+        for (int attempt = 1;; attempt++) {
+
+            if ((buckets << KTypeVTypeFrozenMap.BUCKET_SHIFT) > HashContainers.MAX_HASH_ARRAY_LENGTH) {
+
+                throw new BufferAllocationException("Maximum array size exceeded for this load factor (elements: %d, load factor: %f)",
+                        count, KTypeVTypeFrozenMap.LOAD_FACTOR);
+            }
+
+            final KTypeVTypeFrozenMap<KType, VType> map = new KTypeVTypeFrozenMap<KType, VType>(sourceKeys, sourceValues, count,
+                    allocatedDefaultKey, allocatedDefaultKeyValue, defaultValue, (int) buckets, attempt == KTypeVTypeFrozenMap.MAX_BUILDS);
+
+            if (map.stashKeys != null) {
+                return map;
+            }
+
+            if (attempt % KTypeVTypeFrozenMap.REBUILDS_PER_GROWTH == 0) {
+                buckets += Math.max(1L, buckets >>> 4);
+            }
+        }
+    }
+
+    /**
+     * First empty slot of <code>bucket</code>, or -1 if full.
+     */
+    private static <KType> int freeSlot(final KType[] keys, final int bucket) {
+
+        final int start = bucket << KTypeVTypeFrozenMap.BUCKET_SHIFT;
+
+        for (int slot = start; slot < start + KTypeVTypeFrozenMap.BUCKET_SIZE; slot++) {
+
+            if (Intrinsics.<KType> isEmpty(keys[slot])) {
+                return slot;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Bucket of the hash, in [0; {@link #bucketCount}[.
+     */
+    private int firstBucket(final int hash) {
+
+        return (int) (((hash & 0xFFFFFFFFL) * this.bucketCount) >>> 32);
+    }
+
+    /**
+     * The other bucket, at a non-zero offset from <code>firstBucket</code> drawn from an independent rehash of the hash,
+     * so that it always differs from the first one, unless there is a single bucket.
+     */
+    private int secondBucket(final int hash, final int firstBucket) {
+
+        final int bucket = firstBucket + 1 + (int) (((BitMixer.mix(hash, this.alternateSeed) & 0xFFFFFFFFL) * (this.bucketCount - 1)) >>> 32);
+
+        return bucket >= this.bucketCount ? bucket - this.bucketCount : bucket;
+    }
+
+    /**
+     * Index of the non-empty <code>key</code>: its slot in {@link #keys}, or keys.length + its position in {@link #stashKeys};
+     * -1 if absent.
+     */
+    private int indexOf(final KType key) {
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+
+        final int hash = REHASH(key);
+
+        final int firstBucket = firstBucket(hash);
+
+        int slot = firstBucket << KTypeVTypeFrozenMap.BUCKET_SHIFT;
+        KType existing;
+
+        for (final int end = slot + KTypeVTypeFrozenMap.BUCKET_SIZE; slot < end; slot++) {
+
+            if (Intrinsics.<KType> isEmpty(existing = keys[slot])) {
+                //the first bucket has room, so the key was not placed further
+                return -1;
+            }
+
+            if (KEYEQUALS(key, existing)) {
+                return slot;
+            }
+        }
+
+        slot = secondBucket(hash, firstBucket) << KTypeVTypeFrozenMap.BUCKET_SHIFT;
+
+        for (final int end = slot + KTypeVTypeFrozenMap.BUCKET_SIZE; slot < end; slot++) {
+
+            if (Intrinsics.<KType> isEmpty(existing = keys[slot])) {
+                return -1;
+            }
+
+            if (KEYEQUALS(key, existing)) {
+                return slot;
+            }
+        }
+
+        final KType[] stashKeys = Intrinsics.<KType[]> cast(this.stashKeys);
+
+        for (int i = 0; i < stashKeys.length; i++) {
+
+            if (KEYEQUALS(key, stashKeys[i])) {
+                return keys.length + i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public VType get(final KType key) {
+
+        if (Intrinsics.<KType> isEmpty(key)) {
+
+            if (this.allocatedDefaultKey) {
+
+                return this.allocatedDefaultKeyValue;
+            }
+
+            return this.defaultValue;
+        }
+
+        final int index = indexOf(key);
+
+        if (index == -1) {
+
+            return this.defaultValue;
+        }
+
+        return valueAt(index);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean containsKey(final KType key) {
+
+        if (Intrinsics.<KType> isEmpty(key)) {
+
+            return this.allocatedDefaultKey;
+        }
+
+        return indexOf(key) != -1;
+    }
+
+    /**
+     * Key at <code>index</code>, in {@link #keys} then {@link #stashKeys}.
+     */
+    private KType keyAt(final int index) {
+
+        if (index < this.keys.length) {
+
+            return Intrinsics.<KType> cast(this.keys[index]);
+        }
+
+        return Intrinsics.<KType> cast(this.stashKeys[index - this.keys.length]);
+    }
+
+    /**
+     * Value at <code>index</code>, in {@link #values} then {@link #stashValues}.
+     */
+    private VType valueAt(final int index) {
+
+        if (index < this.values.length) {
+
+            return Intrinsics.<VType> cast(this.values[index]);
+        }
+
+        return Intrinsics.<VType> cast(this.stashValues[index - this.values.length]);
+    }
+
+    /**
+     * Number of indices of the entries in {@link #keys} then {@link #stashKeys}.
+     */
+    private int indexCount() {
+
+        return this.keys.length + this.stashKeys.length;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws UnsupportedOperationException always.
+     */
+    @Override
+    public VType put(final KType key, final VType value) {
+        throw new UnsupportedOperationException("Frozen map");
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws UnsupportedOperationException always.
+     */
+    @Override
+    public boolean putIfAbsent(final KType key, final VType value) {
+        throw new UnsupportedOperationException("Frozen map");
+    }
+
+    /*! #if ($TemplateOptions.VTypePrimitive) !*/
+    /**
+     * {@inheritDoc}
+     * @throws UnsupportedOperationException always.
+     */
+    @Override
+    public VType putOrAdd(final KType key, final VType putValue, final VType incrementValue) {
+        throw new UnsupportedOperationException("Frozen map");
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws UnsupportedOperationException always.
+     */
+    @Override
+    public VType addTo(final KType key, final VType incrementValue) {
+        throw new UnsupportedOperationException("Frozen map");
+    }
+
+    /*! #end !*/
+
+    /**
+     * {@inheritDoc}
+     * @throws UnsupportedOperationException always.
+     */
+    @Override
+    public int putAll(final KTypeVTypeAssociativeContainer<? extends KType, ? extends VType> container) {
+        throw new UnsupportedOperationException("Frozen map");
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws UnsupportedOperationException always.
+     */
+    @Override
+    public int putAll(final Iterable<? extends KTypeVTypeCursor<? extends KType, ? extends VType>> iterable) {
+        throw new UnsupportedOperationException("Frozen map");
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws UnsupportedOperationException always.
+     */
+    @Override
+    public VType remove(final KType key) {
+        throw new UnsupportedOperationException("Frozen map");
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws UnsupportedOperationException always.
+     */
+    @Override
+    public int removeAll(final KTypeContainer<? super KType> other) {
+        throw new UnsupportedOperationException("Frozen map");
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws UnsupportedOperationException always.
+     */
+    @Override
+    public int removeAll(final KTypePredicate<? super KType> predicate) {
+        throw new UnsupportedOperationException("Frozen map");
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws UnsupportedOperationException always.
+     */
+    @Override
+    public int removeAll(final KTypeVTypePredicate<? super KType, ? super VType> predicate) {
+        throw new UnsupportedOperationException("Frozen map");
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws UnsupportedOperationException always.
+     */
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("Frozen map");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size() {
+        return this.assigned + (this.allocatedDefaultKey ? 1 : 0);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>The number of slots of the buckets.</p>
+     */
+    @Override
+    public int capacity() {
+
+        return this.keys.length;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+        int h = 0;
+
+        if (this.allocatedDefaultKey) {
+            h += BitMixer.mix(this.allocatedDefaultKeyValue);
+        }
+
+        for (int i = indexCount(); --i >= 0;) {
+            KType existing;
+            if (!Intrinsics.<KType> isEmpty(existing = keyAt(i))) {
+
+                h += BitMixer.mix(existing) ^ BitMixer.mix(valueAt(i));
+            }
+        }
+
+        return h;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(final Object obj) {
+        if (obj != null) {
+            if (obj == this) {
+                return true;
+            }
+
+            //must be of the same class, subclasses are not comparable
+            if (obj.getClass() != this.getClass()) {
+                return false;
+            }
+
+            /* #if ($TemplateOptions.AnyGeneric) */
+            @SuppressWarnings("unchecked")
+            final/* #end */
+            KTypeVTypeFrozenMap<KType, VType> other = (KTypeVTypeFrozenMap<KType, VType>) obj;
+
+            //must be of the same size
+            if (other.size() != this.size()) {
+                return false;
+            }
+
+            if (this.allocatedDefaultKey
+                    && !(other.allocatedDefaultKey && Intrinsics.<VType> equals(this.allocatedDefaultKeyValue, other.allocatedDefaultKeyValue))) {
+                return false;
+            }
+
+            for (int i = indexCount(); --i >= 0;) {
+                KType existing;
+                if (!Intrinsics.<KType> isEmpty(existing = keyAt(i))) {
+
+                    final int otherIndex = other.indexOf(existing);
+
+                    if (otherIndex == -1 || !Intrinsics.<VType> equals(valueAt(i), other.valueAt(otherIndex))) {
+                        return false;
+                    }
+                }
+            }
+
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * An iterator implementation for {@link #iterator}.
+     * Holds a KTypeVTypeCursor returning
+     * (key, value, index) = (KType key, VType value, index the position in keys {@link KTypeVTypeFrozenMap#keys}, or keys.length + position in
+     * {@link KTypeVTypeFrozenMap#stashKeys}, or keys.length + stashKeys.length for key = 0/null)
+     */
+    public final class EntryIterator extends AbstractIterator<KTypeVTypeCursor<KType, VType>>
+    {
+        public final KTypeVTypeCursor<KType, VType> cursor;
+
+        public EntryIterator() {
+            this.cursor = new KTypeVTypeCursor<KType, VType>();
+            this.cursor.index = indexCount() + 1;
+        }
+
+        /**
+         * Iterate backwards w.r.t the buffer, to
+         * minimize collision chains when filling another hash container (ex. with putAll())
+         */
+        @Override
+        protected KTypeVTypeCursor<KType, VType> fetch() {
+            if (this.cursor.index == indexCount() + 1) {
+
+                if (KTypeVTypeFrozenMap.this.allocatedDefaultKey) {
+
+                    this.cursor.index = indexCount();
+                    this.cursor.key = Intrinsics.<KType> empty();
+                    this.cursor.value = KTypeVTypeFrozenMap.this.allocatedDefaultKeyValue;
+
+                    return this.cursor;
+
+                }
+                //no value associated with the default key, continue iteration...
+                this.cursor.index = indexCount();
+            }
+
+            int i = this.cursor.index - 1;
+
+            while (i >= 0 && Intrinsics.<KType> isEmpty(keyAt(i))) {
+                i--;
+            }
+
+            if (i == -1) {
+                return done();
+            }
+
+            this.cursor.index = i;
+            this.cursor.key = keyAt(i);
+            this.cursor.value = valueAt(i);
+
+            return this.cursor;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * @return a new iterator, not pooled, so that concurrent readers need no synchronization.
+     */
+    @Override
+    public EntryIterator iterator() {
+        return new EntryIterator();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends KTypeVTypeProcedure<? super KType, ? super VType>> T forEach(final T procedure) {
+
+        if (this.allocatedDefaultKey) {
+
+            procedure.apply(Intrinsics.<KType> empty(), this.allocatedDefaultKeyValue);
+        }
+
+        //Iterate in reverse for side-stepping the longest conflict chain
+        //in another hash, in case apply() is actually used to fill another hash container.
+        for (int i = indexCount(); --i >= 0;) {
+            KType existing;
+            if (!Intrinsics.<KType> isEmpty(existing = keyAt(i))) {
+                procedure.apply(existing, valueAt(i));
+            }
+        }
+
+        return procedure;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends KTypeVTypePredicate<? super KType, ? super VType>> T forEach(final T predicate) {
+
+        if (this.allocatedDefaultKey) {
+
+            if (!predicate.apply(Intrinsics.<KType> empty(), this.allocatedDefaultKeyValue)) {
+
+                return predicate;
+            }
+        }
+
+        //Iterate in reverse for side-stepping the longest conflict chain
+        //in another hash, in case apply() is actually used to fill another hash container.
+        for (int i = indexCount(); --i >= 0;) {
+            KType existing;
+            if (!Intrinsics.<KType> isEmpty(existing = keyAt(i))) {
+                if (!predicate.apply(existing, valueAt(i))) {
+                    break;
+                }
+            }
+        } //end for
+
+        return predicate;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @return a new KeysCollection view of the keys of this map.
+     */
+    @Override
+    public KeysCollection keys() {
+        return new KeysCollection();
+    }
+
+    /**
+     * A read-only view of the keys inside this map.
+     */
+    public final class KeysCollection extends AbstractKTypeCollection<KType> implements KTypeLookupContainer<KType>
+    {
+        private final KTypeVTypeFrozenMap<KType, VType> owner = KTypeVTypeFrozenMap.this;
+
+        @Override
+        public boolean contains(final KType e) {
+            return this.owner.containsKey(e);
+        }
+
+        @Override
+        public <T extends KTypeProcedure<? super KType>> T forEach(final T procedure) {
+
+            if (this.owner.allocatedDefaultKey) {
+
+                procedure.apply(Intrinsics.<KType> empty());
+            }
+
+            for (int i = this.owner.indexCount(); --i >= 0;) {
+                KType existing;
+                if (!Intrinsics.<KType> isEmpty(existing = this.owner.keyAt(i))) {
+                    procedure.apply(existing);
+                }
+            }
+
+            return procedure;
+        }
+
+        @Override
+        public <T extends KTypePredicate<? super KType>> T forEach(final T predicate) {
+
+            if (this.owner.allocatedDefaultKey) {
+
+                if (!predicate.apply(Intrinsics.<KType> empty())) {
+
+                    return predicate;
+                }
+            }
+
+            for (int i = this.owner.indexCount(); --i >= 0;) {
+                KType existing;
+                if (!Intrinsics.<KType> isEmpty(existing = this.owner.keyAt(i))) {
+                    if (!predicate.apply(existing)) {
+                        break;
+                    }
+                }
+            }
+
+            return predicate;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public KeysIterator iterator() {
+            return new KeysIterator();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int size() {
+            return this.owner.size();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int capacity() {
+
+            return this.owner.capacity();
+        }
+
+        @Override
+        public void clear() {
+            this.owner.clear();
+        }
+
+        @Override
+        public int removeAll(final KTypePredicate<? super KType> predicate) {
+            return this.owner.removeAll(predicate);
+        }
+
+        @Override
+        public int removeAll(final KType e) {
+            throw new UnsupportedOperationException("Frozen map");
+        }
+
+        @Override
+        public KType[] toArray(final KType[] target) {
+
+            int count = 0;
+
+            if (this.owner.allocatedDefaultKey) {
+
+                target[count++] = Intrinsics.<KType> empty();
+            }
+
+            final int indexCount = this.owner.indexCount();
+
+            for (int i = 0; i < indexCount; i++) {
+                KType existing;
+                if (!Intrinsics.<KType> isEmpty(existing = this.owner.keyAt(i))) {
+                    target[count++] = existing;
+                }
+            }
+
+            assert count == this.owner.size();
+            return target;
+        }
+    };
+
+    /**
+     * An iterator over the set of keys.
+     * Holds a KTypeCursor returning (value, index) = (KType key, index the position in keys {@link KTypeVTypeFrozenMap#keys}, or keys.length + position in
+     * {@link KTypeVTypeFrozenMap#stashKeys}, or keys.length + stashKeys.length for key = 0/null)
+     */
+    public final class KeysIterator extends AbstractIterator<KTypeCursor<KType>>
+    {
+        public final KTypeCursor<KType> cursor;
+
+        public KeysIterator() {
+            this.cursor = new KTypeCursor<KType>();
+            this.cursor.index = indexCount() + 1;
+        }
+
+        /**
+         * Iterate backwards w.r.t the buffer, to
+         * minimize collision chains when filling another hash container (ex. with putAll())
+         */
+        @Override
+        protected KTypeCursor<KType> fetch() {
+            if (this.cursor.index == indexCount() + 1) {
+
+                if (KTypeVTypeFrozenMap.this.allocatedDefaultKey) {
+
+                    this.cursor.index = indexCount();
+                    this.cursor.value = Intrinsics.<KType> empty();
+
+                    return this.cursor;
+
+                }
+                //no value associated with the default key, continue iteration...
+                this.cursor.index = indexCount();
+            }
+
+            int i = this.cursor.index - 1;
+
+            while (i >= 0 && Intrinsics.<KType> isEmpty(keyAt(i))) {
+                i--;
+            }
+
+            if (i == -1) {
+                return done();
+            }
+
+            this.cursor.index = i;
+            this.cursor.value = keyAt(i);
+
+            return this.cursor;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * @return a new ValuesCollection view of the values of this map.
+     */
+    @Override
+    public ValuesCollection values() {
+        return new ValuesCollection();
+    }
+
+    /**
+     * A read-only view over the set of values of this map.
+     */
+    public final class ValuesCollection extends AbstractKTypeCollection<VType>
+    {
+        private final KTypeVTypeFrozenMap<KType, VType> owner = KTypeVTypeFrozenMap.this;
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int size() {
+            return this.owner.size();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int capacity() {
+
+            return this.owner.capacity();
+        }
+
+        @Override
+        public boolean contains(final VType value) {
+
+            if (this.owner.allocatedDefaultKey && Intrinsics.<VType> equals(value, this.owner.allocatedDefaultKeyValue)) {
+
+                return true;
+            }
+
+            // This is a linear scan over the values, but it's in the contract, so be it.
+            final int indexCount = this.owner.indexCount();
+
+            for (int i = 0; i < indexCount; i++) {
+                if (!Intrinsics.<KType> isEmpty(this.owner.keyAt(i)) && Intrinsics.<VType> equals(value, this.owner.valueAt(i))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public <T extends KTypeProcedure<? super VType>> T forEach(final T procedure) {
+
+            if (this.owner.allocatedDefaultKey) {
+
+                procedure.apply(this.owner.allocatedDefaultKeyValue);
+            }
+
+            //Iterate in reverse, as the iterators
+            for (int i = this.owner.indexCount(); --i >= 0;) {
+                if (!Intrinsics.<KType> isEmpty(this.owner.keyAt(i))) {
+                    procedure.apply(this.owner.valueAt(i));
+                }
+            }
+
+            return procedure;
+        }
+
+        @Override
+        public <T extends KTypePredicate<? super VType>> T forEach(final T predicate) {
+
+            if (this.owner.allocatedDefaultKey) {
+
+                if (!predicate.apply(this.owner.allocatedDefaultKeyValue)) {
+                    return predicate;
+                }
+            }
+
+            //Iterate in reverse, as the iterators
+            for (int i = this.owner.indexCount(); --i >= 0;) {
+                if (!Intrinsics.<KType> isEmpty(this.owner.keyAt(i))) {
+                    if (!predicate.apply(this.owner.valueAt(i))) {
+                        break;
+                    }
+                }
+            }
+
+            return predicate;
+        }
+
+        @Override
+        public ValuesIterator iterator() {
+            return new ValuesIterator();
+        }
+
+        /**
+         * {@inheritDoc}
+         * @throws UnsupportedOperationException always.
+         */
+        @Override
+        public int removeAll(final VType e) {
+            throw new UnsupportedOperationException("Frozen map");
+        }
+
+        /**
+         * {@inheritDoc}
+         * @throws UnsupportedOperationException always.
+         */
+        @Override
+        public int removeAll(final KTypePredicate<? super VType> predicate) {
+            throw new UnsupportedOperationException("Frozen map");
+        }
+
+        /**
+         * {@inheritDoc}
+         * @throws UnsupportedOperationException always.
+         */
+        @Override
+        public void clear() {
+            this.owner.clear();
+        }
+
+        @Override
+        public VType[] toArray(final VType[] target) {
+
+            int count = 0;
+
+            if (this.owner.allocatedDefaultKey) {
+
+                target[count++] = this.owner.allocatedDefaultKeyValue;
+            }
+
+            final int indexCount = this.owner.indexCount();
+
+            for (int i = 0; i < indexCount; i++) {
+                if (!Intrinsics.<KType> isEmpty(this.owner.keyAt(i))) {
+                    target[count++] = this.owner.valueAt(i);
+                }
+            }
+
+            assert count == this.owner.size();
+            return target;
+        }
+    }
+
+    /**
+     * An iterator over the set of values.
+     * Holds a KTypeCursor returning (value, index) = (VType value, index the position in {@link KTypeVTypeFrozenMap#values},
+     * or values.length + position in {@link KTypeVTypeFrozenMap#stashValues},
+     * or values.length + stashValues.length for value = {@link KTypeVTypeFrozenMap#allocatedDefaultKeyValue}).
+     */
+    public final class ValuesIterator extends AbstractIterator<KTypeCursor<VType>>
+    {
+        public final KTypeCursor<VType> cursor;
+
+        public ValuesIterator() {
+            this.cursor = new KTypeCursor<VType>();
+            this.cursor.index = indexCount() + 1;
+        }
+
+        /**
+         * Iterate backwards w.r.t the buffer, to
+         * minimize collision chains when filling another hash container (ex. with putAll())
+         */
+        @Override
+        protected KTypeCursor<VType> fetch() {
+            if (this.cursor.index == indexCount() + 1) {
+
+                if (KTypeVTypeFrozenMap.this.allocatedDefaultKey) {
+
+                    this.cursor.index = indexCount();
+                    this.cursor.value = KTypeVTypeFrozenMap.this.allocatedDefaultKeyValue;
+
+                    return this.cursor;
+
+                }
+                //no value associated with the default key, continue iteration...
+                this.cursor.index = indexCount();
+            }
+
+            int i = this.cursor.index - 1;
+
+            while (i >= 0 && Intrinsics.<KType> isEmpty(keyAt(i))) {
+                i--;
+            }
+
+            if (i == -1) {
+                return done();
+            }
+
+            this.cursor.index = i;
+            this.cursor.value = valueAt(i);
+
+            return this.cursor;
+        }
+    }
+
+    /**
+     * Convert the contents of this map to a human-friendly string.
+     */
+    @Override
+    public String toString() {
+        final StringBuilder buffer = new StringBuilder();
+        buffer.append("[");
+
+        boolean first = true;
+        for (final KTypeVTypeCursor<KType, VType> cursor : this) {
+            if (!first) {
+                buffer.append(", ");
+            }
+            buffer.append(cursor.key);
+            buffer.append("=>");
+            buffer.append(cursor.value);
+            first = false;
+        }
+        buffer.append("]");
+        return buffer.toString();
+    }
+
+    /**
+     * Creates a frozen map from two index-aligned arrays of key-value pairs, the last value of a key
+     * being kept, like successive put().
+     */
+    public static <KType, VType> KTypeVTypeFrozenMap<KType, VType> from(final KType[] keys, final VType[] values) {
+        if (keys.length != values.length) {
+            throw new IllegalArgumentException("Arrays of keys and values must have an identical length.");
+        }
+
+        return KTypeVTypeFrozenMap.from(KTypeVTypeHashMap.from(keys, values));
+    }
+
+    /**
+     * Creates a frozen map holding all the key-value pairs of <code>container</code>, whose default value is kept
+     * if it is a {@link KTypeVTypeMap}.
+     */
+    public static <KType, VType> KTypeVTypeFrozenMap<KType, VType> from(final KTypeVTypeAssociativeContainer<KType, VType> container) {
+
+        final int size = container.size();
+
+        final KType[] keys = Intrinsics.<KType> newArray(size);
+        final VType[] values = Intrinsics.<VType> newArray(size);
+
+        int count = 0;
+        boolean allocatedDefaultKey = false;
+        VType allocatedDefaultKeyValue = Intrinsics.<VType> empty();
+
+        for (final KTypeVTypeCursor<KType, VType> c : container) {
+
+            if (Intrinsics.<KType> isEmpty(c.key)) {
+
+                allocatedDefaultKey = true;
+                allocatedDefaultKeyValue = c.value;
+            } else {
+
+                keys[count] = c.key;
+                values[count] = c.value;
+                count++;
+            }
+        }
+
+        final VType defaultValue = (container instanceof KTypeVTypeMap<?, ?>) ?
+                ((KTypeVTypeMap<KType, VType>) container).getDefaultValue() : Intrinsics.<VType> empty();
+
+        return KTypeVTypeFrozenMap.build(keys, values, count, allocatedDefaultKey, allocatedDefaultKeyValue, defaultValue);
+    }
+
+    /**
+     * Returns the "default value" value used in containers methods returning
+     * "default value"
+     */
+    @Override
+    public VType getDefaultValue() {
+        return this.defaultValue;
+    }
+
+    /**
+     * The default value is the one of the source map, and cannot be changed.
+     * @throws UnsupportedOperationException always.
+     */
+    @Override
+    public void setDefaultValue(final VType defaultValue) {
+        throw new UnsupportedOperationException("Frozen map");
+    }
+
+    /*! #if ($TemplateOptions.declareInline("REHASH(value)",
+    "<Object,*>==>BitMixer.mix(value.hashCode() , this.seed)",
+    "<byte,*>==>BitMixer.mix((int) value , this.seed)",
+    "<char,*>==>BitMixer.mix((int) value , this.seed)",
+    "<short,*>==>BitMixer.mix((int) value , this.seed)",
+    "<*,*>==>BitMixer.mix(value , this.seed)")) !*/
+    /**
+     * REHASH method for rehashing the keys.
+     * (inlined in generated code)
+     * The keys narrower than int go through the int mix: with the lighter mix of narrow keys,
+     * the cuckoo walks fail to fill the buckets up to {@link #LOAD_FACTOR}.
+     */
+    private int REHASH(final KType value) {
+
+        return BitMixer.mix(value.hashCode(), this.seed);
+    }
+
+    /*! #end !*/
+
+    /*! #if ($TemplateOptions.declareInline("KEYEQUALS(key1, key2)",
+    "<*,*>==>Intrinsics.<KType> equalsNotNull(key1, key2)")) !*/
+    /**
+     * macro which hides the applied equality criteria
+     */
+    private boolean KEYEQUALS(final KType key1, final KType key2) {
+
+        return Intrinsics.<KType> equalsNotNull(key1, key2);
+    }
+    /*! #end !*/
+}
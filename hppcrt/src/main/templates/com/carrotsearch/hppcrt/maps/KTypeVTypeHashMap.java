@@ -1,5 +1,10 @@
 package com.carrotsearch.hppcrt.maps;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
 import com.carrotsearch.hppcrt.*;
 import com.carrotsearch.hppcrt.cursors.*;
 import com.carrotsearch.hppcrt.predicates.*;
@@ -28,6 +33,10 @@ import com.carrotsearch.hppcrt.hash.*;
  * are always allocated to the nearest size that is a power of two. When
  * the capacity exceeds the given load factor, the buffer size is doubled.
  * </p>
+ * <p>
+ * To bound the latency of the operations triggering such a doubling, an
+ * incremental resize mode is also available, see {@link #setIncrementalResize(boolean)}.
+ * </p>
  *
  * <p><b>Important note.</b> The implementation uses power-of-two tables and linear
  * probing, which may cause poor performance (many collisions) if hash values are
@@ -86,8 +95,10 @@ implements KTypeVTypeMap<KType, VType>, Cloneable
     /*! #if ($RH) !*/
     /**
      * #if ($RH)
-     * Caches the hash value = hash(keys[i]) & mask, if keys[i] != 0/null,
-     * for every index i.
+     * Caches the full hash value = hash(keys[i]), if keys[i] != 0/null,
+     * for every index i. The slot keys[i] was initially hashed to is hash_cache[i] & mask.
+     * Comparing the cached hashes first spares most of the calls to equals() when probing,
+     * and the buffers are expanded without calling hashCode() again.
      * #end
      * @see #assigned
      */
@@ -125,8 +136,79 @@ implements KTypeVTypeMap<KType, VType>, Cloneable
     /**
      * Per-instance size perturbation
      * introduced in rehashing to create a unique key distribution.
+     * A new one is drawn when the keys are reseeded, see {@link #setReseedThreshold(int)}.
+     */
+    private int perturbation = Containers.randomSeed32();
+
+    /**
+     * Number of slots of the old buffers migrated per operation
+     * while an incremental resize is in progress.
+     */
+    private static final int INCREMENTAL_RESIZE_STEP = 16;
+
+    /**
+     * Number of keys looked up together by the batched lookups, see {@link #getAll}.
+     */
+    public static final int BATCH_SIZE = 16;
+
+    /**
+     * True if the buffers are expanded incrementally, see {@link #setIncrementalResize(boolean)}.
+     */
+    private boolean incrementalResize = false;
+
+    /**
+     * Buffers being migrated by an incremental resize, or null
+     * if no incremental resize is in progress.
+     */
+    private/*! #if ($TemplateOptions.KTypePrimitive)
+          KType []
+          #else !*/
+    Object[]
+            /*! #end !*/
+            oldKeys;
+
+    private/*! #if ($TemplateOptions.VTypePrimitive)
+          VType []
+          #else !*/
+    Object[]
+            /*! #end !*/
+            oldValues;
+
+    /*! #if ($RH) !*/
+    private int[] oldHashCache;
+    /*! #end !*/
+
+    /**
+     * Next slot of {@link #oldKeys} to migrate is (migrationSlot - 1),
+     * the migration is complete when reaching {@link #migrationStop}.
+     */
+    private int migrationSlot;
+
+    private int migrationStop;
+
+    /**
+     * Probe length of a newly inserted key above which all the keys are rehashed
+     * with a new perturbation, see {@link #setReseedThreshold(int)}.
+     */
+    private int reseedThreshold;
+
+    /**
+     * Probe lengths of the keys inserted in the current buffers,
+     * see {@link #getMaxProbeLength()} and {@link #getAverageProbeLength()}.
+     */
+    private int maxProbeLength;
+
+    private long probeLengthSum;
+
+    private int probedKeys;
+
+    /**
+     * Number of reseeds so far, and length of the last reseeded buffers :
+     * buffers of a given length are reseeded at most once.
      */
-    private final int perturbation = Containers.randomSeed32();
+    private int reseedCount;
+
+    private int reseededLength;
 
     /*! #if ($TemplateOptions.KTypeGeneric) !*/
 
@@ -198,6 +280,7 @@ implements KTypeVTypeMap<KType, VType>, Cloneable
      */
     public KTypeVTypeHashMap(final int initialCapacity, final double loadFactor) {
         this.loadFactor = loadFactor;
+        this.reseedThreshold = HashContainers.defaultReseedThreshold(loadFactor);
         //take into account of the load factor to guarantee no reallocations before reaching  initialCapacity.
         allocateBuffers(HashContainers.minBufferSize(initialCapacity, loadFactor));
     }
@@ -232,11 +315,37 @@ implements KTypeVTypeMap<KType, VType>, Cloneable
             return this.defaultValue;
         }
 
+        int hash = REHASH(key);
+
+        if (this.oldKeys != null) {
+
+            migrateSlots();
+
+            if (this.oldKeys != null) {
+
+                //the key may still be in the old buffers, update it in place.
+                final int oldSlot = oldSlotOf(key, hash);
+
+                if (oldSlot >= 0) {
+
+                    final VType oldValue = Intrinsics.<VType> cast(this.oldValues[oldSlot]);
+                    this.oldValues[oldSlot] = value;
+
+                    return oldValue;
+                }
+
+                //never expand again while still migrating
+                if (this.assigned >= this.resizeAt) {
+                    completeResize();
+                }
+            }
+        }
+
         final int mask = this.keys.length - 1;
 
         final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
 
-        int slot = REHASH(key) & mask;
+        int slot = hash & mask;
         KType existing;
 
         /*! #if ($RH) !*/
@@ -247,7 +356,6 @@ implements KTypeVTypeMap<KType, VType>, Cloneable
         KType tmpKey;
         VType tmpValue;
         int tmpAllocated;
-        int initial_slot = slot;
         int dist = 0;
         int existing_distance = 0;
 
@@ -289,7 +397,8 @@ implements KTypeVTypeMap<KType, VType>, Cloneable
             //also see containsKey(), get() and remove() for the same trick.
             /*! #end !*/
 
-            if (/*! #if ($RH) !*/dist <= existing_distance && /*! #end !*/ KEYEQUALS(key, existing)) {
+            //the cached hashes differ for most of the distinct keys, sparing the call to equals().
+            if (/*! #if ($RH) !*/dist <= existing_distance && cached[slot] == hash && /*! #end !*/ KEYEQUALS(key, existing)) {
 
                 final VType oldValue = Intrinsics.<VType> cast(this.values[slot]);
                 this.values[slot] = value;
@@ -302,14 +411,14 @@ implements KTypeVTypeMap<KType, VType>, Cloneable
             //we actually enter here only if the key to add is NOT in the map.
             if (dist > existing_distance) {
 
-                //swap current (key, value, initial_slot) with slot places
+                //swap current (key, value, hash) with slot places
                 tmpKey = keys[slot];
                 keys[slot] = key;
                 key = tmpKey;
 
                 tmpAllocated = cached[slot];
-                cached[slot] = initial_slot;
-                initial_slot = tmpAllocated;
+                cached[slot] = hash;
+                hash = tmpAllocated;
 
                 tmpValue = values[slot];
                 values[slot] = value;
@@ -317,8 +426,8 @@ implements KTypeVTypeMap<KType, VType>, Cloneable
 
                 /*! #if($DEBUG) !*/
                 //Check invariants
-                assert cached[slot] == (REHASH(keys[slot]) & mask);
-                assert initial_slot == (REHASH(key) & mask);
+                assert cached[slot] == REHASH(keys[slot]);
+                assert hash == REHASH(key);
                 /*! #end !*/
 
                 dist = existing_distance;
@@ -335,11 +444,16 @@ implements KTypeVTypeMap<KType, VType>, Cloneable
         // Check if we need to grow. If so, reallocate new data, fill in the last element
         // and rehash.
         if (this.assigned == this.resizeAt) {
-            expandAndPut(key, value, slot);
+
+            if (this.incrementalResize) {
+                startIncrementalResize(key, value, hash);
+            } else {
+                expandAndPut(key, value, slot, hash);
+            }
         } else {
             this.assigned++;
             /*! #if ($RH) !*/
-            cached[slot] = initial_slot;
+            cached[slot] = hash;
             /*! #end !*/
 
             keys[slot] = key;
@@ -348,10 +462,19 @@ implements KTypeVTypeMap<KType, VType>, Cloneable
             /*! #if ($RH) !*/
             /*! #if($DEBUG) !*/
             //Check invariants
-            assert cached[slot] == (REHASH(keys[slot]) & mask);
+            assert cached[slot] == REHASH(keys[slot]);
 
             /*! #end !*/
             /*! #end !*/
+
+            //distance of the last placed key from its ideal slot
+            final int probes = (slot - hash) & mask;
+
+            recordProbeLength(probes);
+
+            if (probes > this.reseedThreshold) {
+                reseed();
+            }
         }
 
         return this.defaultValue;
@@ -438,8 +561,9 @@ implements KTypeVTypeMap<KType, VType>, Cloneable
 
     /**
      * Expand the internal storage buffers (capacity) and rehash.
+     * @param pendingHash REHASH(pendingKey)
      */
-    private void expandAndPut(final KType pendingKey, final VType pendingValue, final int freeSlot) {
+    private void expandAndPut(final KType pendingKey, final VType pendingValue, final int freeSlot, final int pendingHash) {
         assert this.assigned == this.resizeAt;
 
         //default sentinel value is never in the keys[] array, so never trigger reallocs
@@ -450,6 +574,10 @@ implements KTypeVTypeMap<KType, VType>, Cloneable
         final KType[] oldKeys = Intrinsics.<KType[]> cast(this.keys);
         final VType[] oldValues = Intrinsics.<VType[]> cast(this.values);
 
+        /*! #if ($RH) !*/
+        final int[] oldCached = this.hash_cache;
+        /*! #end !*/
+
         allocateBuffers(HashContainers.nextBufferSize(this.keys.length, this.assigned, this.loadFactor));
 
         // We have succeeded at allocating new data so insert the pending key/value at
@@ -459,6 +587,10 @@ implements KTypeVTypeMap<KType, VType>, Cloneable
         oldKeys[freeSlot] = pendingKey;
         oldValues[freeSlot] = pendingValue;
 
+        /*! #if ($RH) !*/
+        oldCached[freeSlot] = pendingHash;
+        /*! #end !*/
+
         //for inserts
         final int mask = this.keys.length - 1;
 
@@ -466,6 +598,7 @@ implements KTypeVTypeMap<KType, VType>, Cloneable
         VType value = Intrinsics.<VType> empty();
 
         int slot = -1;
+        int hash = -1;
 
         final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
         final VType[] values = Intrinsics.<VType[]> cast(this.values);
@@ -478,15 +611,14 @@ implements KTypeVTypeMap<KType, VType>, Cloneable
         KType tmpKey = Intrinsics.<KType> empty();
         VType tmpValue = Intrinsics.<VType> empty();
         int tmpAllocated = -1;
-        int initial_slot = -1;
         int dist = -1;
         int existing_distance = -1;
-        /*! #end !*/
+        /*! #else
+        final int perturb = this.perturbation;
+        #end !*/
 
         //iterate all the old arrays to add in the newly allocated buffers
         //It is important to iterate backwards to minimize the conflict chain length !
-        final int perturb = this.perturbation;
-
         for (int i = oldKeys.length; --i >= 0;) {
 
             //only consider non-empty slots, of course
@@ -494,12 +626,15 @@ implements KTypeVTypeMap<KType, VType>, Cloneable
 
                 value = oldValues[i];
 
-                slot = REHASH2(key, perturb) & mask;
-
                 /*! #if ($RH) !*/
-                initial_slot = slot;
+                //the new slot derives from the cached hash, sparing a call to hashCode()
+                hash = oldCached[i];
                 dist = 0;
-                /*! #end !*/
+                /*! #else
+                hash = REHASH2(key, perturb);
+                #end !*/
+
+                slot = hash & mask;
 
                 //similar to put(), except all inserted keys are known to be unique.
                 while (is_allocated(slot, keys)) {
@@ -508,14 +643,14 @@ implements KTypeVTypeMap<KType, VType>, Cloneable
                     existing_distance = probe_distance(slot, cached);
 
                     if (dist > existing_distance) {
-                        //swap current (key, value, initial_slot) with slot places
+                        //swap current (key, value, hash) with slot places
                         tmpKey = keys[slot];
                         keys[slot] = key;
                         key = tmpKey;
 
                         tmpAllocated = cached[slot];
-                        cached[slot] = initial_slot;
-                        initial_slot = tmpAllocated;
+                        cached[slot] = hash;
+                        hash = tmpAllocated;
 
                         tmpValue = values[slot];
                         values[slot] = value;
@@ -523,8 +658,8 @@ implements KTypeVTypeMap<KType, VType>, Cloneable
 
                         /*! #if($DEBUG) !*/
                         //Check invariants
-                        assert cached[slot] == (REHASH(keys[slot]) & mask);
-                        assert initial_slot == (REHASH(key) & mask);
+                        assert cached[slot] == REHASH(keys[slot]);
+                        assert hash == REHASH(key);
                         /*! #end !*/
 
                         dist = existing_distance;
@@ -539,7 +674,7 @@ implements KTypeVTypeMap<KType, VType>, Cloneable
                 } //end while
 
                 /*! #if ($RH) !*/
-                cached[slot] = initial_slot;
+                cached[slot] = hash;
                 /*! #end !*/
 
                 keys[slot] = key;
@@ -548,9 +683,11 @@ implements KTypeVTypeMap<KType, VType>, Cloneable
                 /*! #if ($RH) !*/
                 /*! #if($DEBUG) !*/
                 //Check invariants
-                assert cached[slot] == (REHASH(keys[slot]) & mask);
+                assert cached[slot] == REHASH(keys[slot]);
                 /*! #end !*/
                 /*! #end !*/
+
+                recordProbeLength((slot - hash) & mask);
             }
         }
     }
@@ -581,6 +718,11 @@ implements KTypeVTypeMap<KType, VType>, Cloneable
             //allocate so that there is at least one slot that remains allocated = false
             //this is compulsory to guarantee proper stop in searching loops
             this.resizeAt = HashContainers.expandAtCount(capacity, this.loadFactor);
+
+            //the keys are (re)inserted in the new buffers
+            this.maxProbeLength = 0;
+            this.probeLengthSum = 0;
+            this.probedKeys = 0;
         } catch (final OutOfMemoryError e) {
 
             throw new BufferAllocationException(
@@ -592,338 +734,1201 @@ implements KTypeVTypeMap<KType, VType>, Cloneable
     }
 
     /**
-     * {@inheritDoc}
+     * Enable or disable incremental resizing. When enabled, expanding the buffers no longer rehashes
+     * all the keys in a single call: the previous buffers are kept aside and their entries
+     * are migrated a bounded number of slots at a time by the next put(), get(), containsKey() and remove() calls,
+     * so that no single operation pays for the full rehash.
+     * <p>Note that while such a resize is in progress, {@link #keys} and {@link #values} only
+     * hold part of the entries, and the lookup methods are no longer read-only. Operations
+     * over the whole map (iteration, forEach(), removeAll()...) complete any pending resize first.
+     * Disabling incremental resizing completes any pending resize.</p>
+     * @see #completeResize()
      */
-    @Override
-    public VType remove(final KType key) {
-
-        if (Intrinsics.<KType> isEmpty(key)) {
-
-            if (this.allocatedDefaultKey) {
-
-                final VType previousValue = this.allocatedDefaultKeyValue;
-
-                /*! #if ($TemplateOptions.VTypeGeneric) !*/
-                //help the GC
-                this.allocatedDefaultKeyValue = Intrinsics.<VType> empty();
-                /*! #end !*/
+    public void setIncrementalResize(final boolean incrementalResize) {
 
-                this.allocatedDefaultKey = false;
-                return previousValue;
-            }
+        this.incrementalResize = incrementalResize;
 
-            return this.defaultValue;
+        if (!incrementalResize) {
+            completeResize();
         }
+    }
 
-        final int mask = this.keys.length - 1;
-
-        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+    /**
+     * @return true if the buffers are expanded incrementally.
+     * @see #setIncrementalResize(boolean)
+     */
+    public boolean isIncrementalResize() {
+        return this.incrementalResize;
+    }
 
-        int slot = REHASH(key) & mask;
-        KType existing;
+    /**
+     * Migrate immediately all the remaining entries of a pending incremental resize, if any,
+     * so that {@link #keys} and {@link #values} hold all the entries of the map.
+     */
+    public void completeResize() {
 
-        /*! #if ($RH) !*/
-        int dist = 0;
-        final int[] cached = this.hash_cache;
-        /*!  #end !*/
+        while (this.oldKeys != null) {
+            migrateSlots();
+        }
+    }
 
-        while (!Intrinsics.<KType> isEmpty(existing = keys[slot])
-                /*! #if ($RH) !*/&& dist <= probe_distance(slot, cached) /*! #end !*/) {
+    /**
+     * Set the probe length of a newly inserted key above which all the keys are rehashed in place
+     * with a new perturbation, defending against keys colliding in the current buffers (hash flooding).
+     * Buffers of a given size are reseeded at most once, so keys of identical hashes never trigger
+     * repeated rehashes. The default is {@link HashContainers#defaultReseedThreshold(double)}, use {@link Integer#MAX_VALUE}
+     * to disable reseeding.
+     * @see #getMaxProbeLength()
+     * @see #getReseedCount()
+     */
+    public void setReseedThreshold(final int reseedThreshold) {
 
-            if (KEYEQUALS(key, existing)) {
+        this.reseedThreshold = reseedThreshold;
+    }
 
-                final VType value = Intrinsics.<VType> cast(this.values[slot]);
+    /**
+     * @return the probe length above which the keys are reseeded.
+     * @see #setReseedThreshold(int)
+     */
+    public int getReseedThreshold() {
+        return this.reseedThreshold;
+    }
 
-                shiftConflictingKeys(slot);
+    /**
+     * @return the maximum distance between the slot of a key and its ideal slot, for the keys
+     * inserted since the buffers were last allocated, expanded or reseeded. Removals are not accounted for.
+     */
+    public int getMaxProbeLength() {
+        return this.maxProbeLength;
+    }
 
-                return value;
-            }
-            slot = (slot + 1) & mask;
+    /**
+     * @return the average distance between the slot of a key and its ideal slot, for the keys
+     * inserted since the buffers were last allocated, expanded or reseeded. Removals are not accounted for.
+     */
+    public double getAverageProbeLength() {
 
-            /*! #if ($RH) !*/
-            dist++;
-            /*! #end !*/
-        } //end while true
+        return this.probedKeys == 0 ? 0.0 : this.probeLengthSum / (double) this.probedKeys;
+    }
 
-        return this.defaultValue;
+    /**
+     * @return the number of times the keys were rehashed with a new perturbation.
+     * @see #setReseedThreshold(int)
+     */
+    public int getReseedCount() {
+        return this.reseedCount;
     }
 
     /**
-     * Shift all the slot-conflicting keys allocated to (and including) <code>slot</code>.
+     * Allocate the expanded buffers and start an incremental resize,
+     * inserting the pending key in the new buffers.
+     * @param pendingHash REHASH(pendingKey)
      */
-    private void shiftConflictingKeys(int gapSlot) {
-        final int mask = this.keys.length - 1;
+    private void startIncrementalResize(final KType pendingKey, final VType pendingValue, final int pendingHash) {
+        assert this.assigned == this.resizeAt;
+        assert this.oldKeys == null;
 
-        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
-        final VType[] values = Intrinsics.<VType[]> cast(this.values);
+        final KType[] oldKeys = Intrinsics.<KType[]> cast(this.keys);
+        final VType[] oldValues = Intrinsics.<VType[]> cast(this.values);
 
         /*! #if ($RH) !*/
-        final int[] cached = this.hash_cache;
-        /*!  #else
-         final int perturb = this.perturbation;
-         #end !*/
-
-        // Perform shifts of conflicting keys to fill in the gap.
-        int distance = 0;
-        while (true) {
-
-            final int slot = (gapSlot + (++distance)) & mask;
-
-            final KType existing = keys[slot];
-            final VType existingValue = values[slot];
-
-            if (Intrinsics.<KType> isEmpty(existing)) {
-                break;
-            }
+        final int[] oldCached = this.hash_cache;
+        /*! #end !*/
 
-            /*! #if ($RH) !*/
-            //use the cached value, no need to recompute
-            final int idealSlotModMask = cached[slot];
-            /*! #if($DEBUG) !*/
-            //Check invariants
-            assert idealSlotModMask == (REHASH(existing) & mask);
-            /*! #end !*/
-            /*! #else
-            final int idealSlotModMask = REHASH2(existing, perturb) & mask;
-            #end !*/
+        allocateBuffers(HashContainers.nextBufferSize(this.keys.length, this.assigned, this.loadFactor));
 
-            //original HPPC code: shift = (slot - idealSlot) & mask;
-            //equivalent to shift = (slot & mask - idealSlot & mask) & mask;
-            //since slot and idealSlotModMask are already folded, we have :
-            final int shift = (slot - idealSlotModMask) & mask;
+        this.oldKeys = oldKeys;
+        this.oldValues = oldValues;
 
-            if (shift >= distance) {
-                // Entry at this position was originally at or before the gap slot.
-                // Move the conflict-shifted entry to the gap's position and repeat the procedure
-                // for any entries to the right of the current position, treating it
-                // as the new gap.
-                keys[gapSlot] = existing;
-                values[gapSlot] = existingValue;
+        /*! #if ($RH) !*/
+        this.oldHashCache = oldCached;
+        /*! #end !*/
 
-                /*! #if ($RH) !*/
-                cached[gapSlot] = idealSlotModMask;
-                /*! #if($DEBUG) !*/
-                assert cached[gapSlot] == (REHASH(existing) & mask);
-                /*! #end !*/
-                /*! #end !*/
+        this.assigned++;
+        insertMigrated(pendingKey, pendingValue, pendingHash);
 
-                gapSlot = slot;
-                distance = 0;
-            }
-        } //end while
+        //The old buffers always have at least one empty slot. Migrate backwards starting from it,
+        //so that the probing chains of the remaining old keys never cross an already migrated (emptied) slot.
+        int stop = 0;
 
-        // Mark the last found gap slot without a conflict as empty.
-        keys[gapSlot] = Intrinsics.<KType> empty();
+        while (is_allocated(stop, oldKeys)) {
+            stop++;
+        }
 
-        /* #if ($TemplateOptions.VTypeGeneric) */
-        values[gapSlot] = Intrinsics.<VType> empty();
-        /* #end */
+        this.migrationStop = stop;
+        this.migrationSlot = stop;
 
-        this.assigned--;
+        migrateSlots();
     }
 
     /**
-     * {@inheritDoc}
+     * Migrate at most {@link #INCREMENTAL_RESIZE_STEP} slots of the old buffers into the new ones,
+     * releasing the old buffers when done.
      */
-    @SuppressWarnings("unchecked")
-    @Override
-    public int removeAll(final KTypeContainer<? super KType> other) {
-        final int before = this.size();
+    private void migrateSlots() {
 
-        //1) other is a KTypeLookupContainer, so with fast lookup guarantees
-        //and is bigger than this, so take advantage of both and iterate over this
-        //and test other elements by their contains().
-        if (other.size() >= before && other instanceof KTypeLookupContainer<?>) {
+        final KType[] oldKeys = Intrinsics.<KType[]> cast(this.oldKeys);
+        final VType[] oldValues = Intrinsics.<VType[]> cast(this.oldValues);
 
-            if (this.allocatedDefaultKey) {
+        /*! #if ($RH) !*/
+        final int[] oldCached = this.oldHashCache;
+        /*! #end !*/
 
-                if (other.contains(Intrinsics.<KType> empty())) {
-                    this.allocatedDefaultKey = false;
+        final int oldMask = oldKeys.length - 1;
+        final int stop = this.migrationStop;
 
-                    /*! #if ($TemplateOptions.VTypeGeneric) !*/
-                    //help the GC
-                    this.allocatedDefaultKeyValue = Intrinsics.<VType> empty();
-                    /*! #end !*/
-                }
-            }
+        int slot = this.migrationSlot;
 
-            final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+        for (int i = 0; i < KTypeVTypeHashMap.INCREMENTAL_RESIZE_STEP; i++) {
 
-            for (int i = 0; i < keys.length;) {
-                KType existing;
-                if (!Intrinsics.<KType> isEmpty(existing = keys[i]) && other.contains(existing)) {
+            slot = (slot - 1) & oldMask;
 
-                    shiftConflictingKeys(i);
-                    // Shift, do not increment slot.
-                } else {
-                    i++;
-                }
-            }
-        } else {
-            //2) Do not use contains() from container, which may lead to O(n**2) execution times,
-            //so it iterate linearly and call remove() from map which is O(1).
-            for (final KTypeCursor<? super KType> c : other) {
+            if (slot == stop) {
 
-                remove(Intrinsics.<KType> cast(c.value));
+                //migration complete
+                this.oldKeys = null;
+                this.oldValues = null;
+
+                /*! #if ($RH) !*/
+                this.oldHashCache = null;
+                /*! #end !*/
+                return;
             }
-        }
 
-        return before - this.size();
-    }
+            KType key;
 
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public int removeAll(final KTypePredicate<? super KType> predicate) {
-        final int before = this.size();
+            if (!Intrinsics.<KType> isEmpty(key = oldKeys[slot])) {
 
-        if (this.allocatedDefaultKey) {
+                /*! #if ($RH) !*/
+                insertMigrated(key, oldValues[slot], oldCached[slot]);
+                /*! #else
+                insertMigrated(key, oldValues[slot], REHASH(key));
+                #end !*/
 
-            if (predicate.apply(Intrinsics.<KType> empty())) {
-                this.allocatedDefaultKey = false;
+                oldKeys[slot] = Intrinsics.<KType> empty();
 
                 /*! #if ($TemplateOptions.VTypeGeneric) !*/
                 //help the GC
-                this.allocatedDefaultKeyValue = Intrinsics.<VType> empty();
+                oldValues[slot] = Intrinsics.<VType> empty();
                 /*! #end !*/
             }
         }
 
-        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+        this.migrationSlot = slot;
+    }
 
-        for (int i = 0; i < keys.length;) {
-            KType existing;
-            if (!Intrinsics.<KType> isEmpty(existing = keys[i]) && predicate.apply(existing)) {
+    /**
+     * Insert a key known to be absent from the current buffers, without
+     * changing {@link #assigned}.
+     * @param hash REHASH(key)
+     */
+    private void insertMigrated(KType key, VType value, int hash) {
 
-                shiftConflictingKeys(i);
-                // Shift, do not increment slot.
-            } else {
-                i++;
+        final int mask = this.keys.length - 1;
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+        final VType[] values = Intrinsics.<VType[]> cast(this.values);
+
+        int slot = hash & mask;
+
+        /*! #if ($RH) !*/
+        final int[] cached = this.hash_cache;
+
+        KType tmpKey;
+        VType tmpValue;
+        int tmpAllocated;
+        int dist = 0;
+        int existing_distance = 0;
+        /*! #end !*/
+
+        //similar to put(), except the inserted key is known to be absent.
+        while (is_allocated(slot, keys)) {
+            /*! #if ($RH) !*/
+            //re-shuffle keys to minimize variance
+            existing_distance = probe_distance(slot, cached);
+
+            if (dist > existing_distance) {
+                //swap current (key, value, hash) with slot places
+                tmpKey = keys[slot];
+                keys[slot] = key;
+                key = tmpKey;
+
+                tmpAllocated = cached[slot];
+                cached[slot] = hash;
+                hash = tmpAllocated;
+
+                tmpValue = values[slot];
+                values[slot] = value;
+                value = tmpValue;
+
+                dist = existing_distance;
             }
+            /*! #end !*/
+
+            slot = (slot + 1) & mask;
+
+            /*! #if ($RH) !*/
+            dist++;
+            /*! #end !*/
+        } //end while
+
+        /*! #if ($RH) !*/
+        cached[slot] = hash;
+        /*! #end !*/
+
+        keys[slot] = key;
+        values[slot] = value;
+
+        recordProbeLength((slot - hash) & mask);
+    }
+
+    /**
+     * Account for a key placed probes slots away from its ideal slot.
+     */
+    private void recordProbeLength(final int probes) {
+
+        this.probeLengthSum += probes;
+        this.probedKeys++;
+
+        if (probes > this.maxProbeLength) {
+            this.maxProbeLength = probes;
         }
+    }
 
-        return before - this.size();
+    /**
+     * Rehash all the keys in buffers of the same size, with a new perturbation.
+     * Does nothing while an incremental resize is in progress, or if the buffers
+     * of this size were already reseeded, as keys of identical hashes would collide anyway.
+     */
+    private void reseed() {
+
+        if (this.oldKeys != null || this.reseededLength == this.keys.length) {
+            return;
+        }
+
+        final KType[] oldKeys = Intrinsics.<KType[]> cast(this.keys);
+        final VType[] oldValues = Intrinsics.<VType[]> cast(this.values);
+
+        allocateBuffers(oldKeys.length);
+
+        this.perturbation = Containers.randomSeed32();
+        this.reseedCount++;
+        this.reseededLength = oldKeys.length;
+
+        KType key;
+
+        //It is important to iterate backwards to minimize the conflict chain length !
+        for (int i = oldKeys.length; --i >= 0;) {
+
+            if (!Intrinsics.<KType> isEmpty(key = oldKeys[i])) {
+
+                insertMigrated(key, oldValues[i], REHASH(key));
+            }
+        }
+    }
+
+    /**
+     * @param hash REHASH(key)
+     * @return the slot of key in the old buffers of a pending incremental resize, or -1 if not found.
+     */
+    private int oldSlotOf(final KType key, final int hash) {
+
+        final KType[] oldKeys = Intrinsics.<KType[]> cast(this.oldKeys);
+
+        final int mask = oldKeys.length - 1;
+
+        int slot = hash & mask;
+        KType existing;
+
+        /*! #if ($RH) !*/
+        int dist = 0;
+        final int[] cached = this.oldHashCache;
+        /*! #end !*/
+
+        while (!Intrinsics.<KType> isEmpty(existing = oldKeys[slot])
+                /*! #if ($RH) !*/&& dist <= probe_distance(slot, cached) /*! #end !*/) {
+
+            if (/*! #if ($RH) !*/cached[slot] == hash && /*! #end !*/KEYEQUALS(key, existing)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+
+            /*! #if ($RH) !*/
+            dist++;
+            /*! #end !*/
+        } //end while true
+
+        return -1;
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public int removeAll(final KTypeVTypePredicate<? super KType, ? super VType> predicate) {
+    public VType remove(final KType key) {
 
-        final int before = this.size();
+        if (Intrinsics.<KType> isEmpty(key)) {
 
-        if (this.allocatedDefaultKey) {
+            if (this.allocatedDefaultKey) {
 
-            if (predicate.apply(Intrinsics.<KType> empty(), this.allocatedDefaultKeyValue)) {
-                this.allocatedDefaultKey = false;
+                final VType previousValue = this.allocatedDefaultKeyValue;
 
                 /*! #if ($TemplateOptions.VTypeGeneric) !*/
                 //help the GC
                 this.allocatedDefaultKeyValue = Intrinsics.<VType> empty();
                 /*! #end !*/
+
+                this.allocatedDefaultKey = false;
+                return previousValue;
             }
+
+            return this.defaultValue;
+        }
+
+        if (this.oldKeys != null) {
+            migrateSlots();
         }
 
+        final int mask = this.keys.length - 1;
+
         final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
-        final VType[] values = Intrinsics.<VType[]> cast(this.values);
 
-        for (int i = 0; i < keys.length;) {
-            KType existing;
-            if (!Intrinsics.<KType> isEmpty(existing = keys[i]) && predicate.apply(existing, values[i])) {
+        final int hash = REHASH(key);
+        int slot = hash & mask;
+        KType existing;
 
-                shiftConflictingKeys(i);
-                // Shift, do not increment slot.
-            } else {
-                i++;
+        /*! #if ($RH) !*/
+        int dist = 0;
+        final int[] cached = this.hash_cache;
+        /*!  #end !*/
+
+        while (!Intrinsics.<KType> isEmpty(existing = keys[slot])
+                /*! #if ($RH) !*/&& dist <= probe_distance(slot, cached) /*! #end !*/) {
+
+            if (/*! #if ($RH) !*/cached[slot] == hash && /*! #end !*/KEYEQUALS(key, existing)) {
+
+                final VType value = Intrinsics.<VType> cast(this.values[slot]);
+
+                shiftConflictingKeys(slot);
+
+                return value;
+            }
+            slot = (slot + 1) & mask;
+
+            /*! #if ($RH) !*/
+            dist++;
+            /*! #end !*/
+        } //end while true
+
+        if (this.oldKeys != null) {
+
+            final int oldSlot = oldSlotOf(key, hash);
+
+            if (oldSlot >= 0) {
+
+                final VType value = Intrinsics.<VType> cast(this.oldValues[oldSlot]);
+
+                shiftOldConflictingKeys(oldSlot);
+
+                return value;
             }
         }
 
-        return before - this.size();
+        return this.defaultValue;
     }
 
     /**
-     * {@inheritDoc}
+     * Shift all the slot-conflicting keys allocated to (and including) <code>slot</code>.
      */
-    @Override
-    public VType get(final KType key) {
-        if (Intrinsics.<KType> isEmpty(key)) {
+    private void shiftConflictingKeys(int gapSlot) {
+        final int mask = this.keys.length - 1;
 
-            if (this.allocatedDefaultKey) {
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+        final VType[] values = Intrinsics.<VType[]> cast(this.values);
 
-                return this.allocatedDefaultKeyValue;
+        /*! #if ($RH) !*/
+        final int[] cached = this.hash_cache;
+        /*!  #else
+         final int perturb = this.perturbation;
+         #end !*/
+
+        // Perform shifts of conflicting keys to fill in the gap.
+        int distance = 0;
+        while (true) {
+
+            final int slot = (gapSlot + (++distance)) & mask;
+
+            final KType existing = keys[slot];
+            final VType existingValue = values[slot];
+
+            if (Intrinsics.<KType> isEmpty(existing)) {
+                break;
             }
 
-            return this.defaultValue;
-        }
+            /*! #if ($RH) !*/
+            //use the cached value, no need to recompute
+            final int hash = cached[slot];
+            /*! #if($DEBUG) !*/
+            //Check invariants
+            assert hash == REHASH(existing);
+            /*! #end !*/
+            final int idealSlotModMask = hash & mask;
+            /*! #else
+            final int idealSlotModMask = REHASH2(existing, perturb) & mask;
+            #end !*/
+
+            //original HPPC code: shift = (slot - idealSlot) & mask;
+            //equivalent to shift = (slot & mask - idealSlot & mask) & mask;
+            //since slot and idealSlotModMask are already folded, we have :
+            final int shift = (slot - idealSlotModMask) & mask;
+
+            if (shift >= distance) {
+                // Entry at this position was originally at or before the gap slot.
+                // Move the conflict-shifted entry to the gap's position and repeat the procedure
+                // for any entries to the right of the current position, treating it
+                // as the new gap.
+                keys[gapSlot] = existing;
+                values[gapSlot] = existingValue;
+
+                /*! #if ($RH) !*/
+                cached[gapSlot] = hash;
+                /*! #if($DEBUG) !*/
+                assert cached[gapSlot] == REHASH(existing);
+                /*! #end !*/
+                /*! #end !*/
+
+                gapSlot = slot;
+                distance = 0;
+            }
+        } //end while
+
+        // Mark the last found gap slot without a conflict as empty.
+        keys[gapSlot] = Intrinsics.<KType> empty();
+
+        /* #if ($TemplateOptions.VTypeGeneric) */
+        values[gapSlot] = Intrinsics.<VType> empty();
+        /* #end */
+
+        this.assigned--;
+    }
+
+    /**
+     * Same as {@link #shiftConflictingKeys(int)}, applied to the old buffers of
+     * a pending incremental resize. Shifted keys never leave the not-yet-migrated slots
+     * because the migrated ones are empty.
+     */
+    private void shiftOldConflictingKeys(int gapSlot) {
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.oldKeys);
+        final VType[] values = Intrinsics.<VType[]> cast(this.oldValues);
+
+        final int mask = keys.length - 1;
+
+        /*! #if ($RH) !*/
+        final int[] cached = this.oldHashCache;
+        /*!  #else
+         final int perturb = this.perturbation;
+         #end !*/
+
+        int distance = 0;
+        while (true) {
+
+            final int slot = (gapSlot + (++distance)) & mask;
+
+            final KType existing = keys[slot];
+            final VType existingValue = values[slot];
+
+            if (Intrinsics.<KType> isEmpty(existing)) {
+                break;
+            }
+
+            /*! #if ($RH) !*/
+            final int hash = cached[slot];
+            final int idealSlotModMask = hash & mask;
+            /*! #else
+            final int idealSlotModMask = REHASH2(existing, perturb) & mask;
+            #end !*/
+
+            final int shift = (slot - idealSlotModMask) & mask;
+
+            if (shift >= distance) {
+
+                keys[gapSlot] = existing;
+                values[gapSlot] = existingValue;
+
+                /*! #if ($RH) !*/
+                cached[gapSlot] = hash;
+                /*! #end !*/
+
+                gapSlot = slot;
+                distance = 0;
+            }
+        } //end while
+
+        keys[gapSlot] = Intrinsics.<KType> empty();
+
+        /*! #if ($TemplateOptions.VTypeGeneric) !*/
+        values[gapSlot] = Intrinsics.<VType> empty();
+        /*! #end !*/
+
+        this.assigned--;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public int removeAll(final KTypeContainer<? super KType> other) {
+        completeResize();
+
+        final int before = this.size();
+
+        //1) other is a KTypeLookupContainer, so with fast lookup guarantees
+        //and is bigger than this, so take advantage of both and iterate over this
+        //and test other elements by their contains().
+        if (other.size() >= before && other instanceof KTypeLookupContainer<?>) {
+
+            if (this.allocatedDefaultKey) {
+
+                if (other.contains(Intrinsics.<KType> empty())) {
+                    this.allocatedDefaultKey = false;
+
+                    /*! #if ($TemplateOptions.VTypeGeneric) !*/
+                    //help the GC
+                    this.allocatedDefaultKeyValue = Intrinsics.<VType> empty();
+                    /*! #end !*/
+                }
+            }
+
+            final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+
+            for (int i = 0; i < keys.length;) {
+                KType existing;
+                if (!Intrinsics.<KType> isEmpty(existing = keys[i]) && other.contains(existing)) {
+
+                    shiftConflictingKeys(i);
+                    // Shift, do not increment slot.
+                } else {
+                    i++;
+                }
+            }
+        } else {
+            //2) Do not use contains() from container, which may lead to O(n**2) execution times,
+            //so it iterate linearly and call remove() from map which is O(1).
+            for (final KTypeCursor<? super KType> c : other) {
+
+                remove(Intrinsics.<KType> cast(c.value));
+            }
+        }
+
+        return before - this.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int removeAll(final KTypePredicate<? super KType> predicate) {
+        completeResize();
+
+        final int before = this.size();
+
+        if (this.allocatedDefaultKey) {
+
+            if (predicate.apply(Intrinsics.<KType> empty())) {
+                this.allocatedDefaultKey = false;
+
+                /*! #if ($TemplateOptions.VTypeGeneric) !*/
+                //help the GC
+                this.allocatedDefaultKeyValue = Intrinsics.<VType> empty();
+                /*! #end !*/
+            }
+        }
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+
+        for (int i = 0; i < keys.length;) {
+            KType existing;
+            if (!Intrinsics.<KType> isEmpty(existing = keys[i]) && predicate.apply(existing)) {
+
+                shiftConflictingKeys(i);
+                // Shift, do not increment slot.
+            } else {
+                i++;
+            }
+        }
+
+        return before - this.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int removeAll(final KTypeVTypePredicate<? super KType, ? super VType> predicate) {
+        completeResize();
+
+
+        final int before = this.size();
+
+        if (this.allocatedDefaultKey) {
+
+            if (predicate.apply(Intrinsics.<KType> empty(), this.allocatedDefaultKeyValue)) {
+                this.allocatedDefaultKey = false;
+
+                /*! #if ($TemplateOptions.VTypeGeneric) !*/
+                //help the GC
+                this.allocatedDefaultKeyValue = Intrinsics.<VType> empty();
+                /*! #end !*/
+            }
+        }
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+        final VType[] values = Intrinsics.<VType[]> cast(this.values);
+
+        for (int i = 0; i < keys.length;) {
+            KType existing;
+            if (!Intrinsics.<KType> isEmpty(existing = keys[i]) && predicate.apply(existing, values[i])) {
+
+                shiftConflictingKeys(i);
+                // Shift, do not increment slot.
+            } else {
+                i++;
+            }
+        }
+
+        return before - this.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public VType get(final KType key) {
+        if (Intrinsics.<KType> isEmpty(key)) {
+
+            if (this.allocatedDefaultKey) {
+
+                return this.allocatedDefaultKeyValue;
+            }
+
+            return this.defaultValue;
+        }
+
+        if (this.oldKeys != null) {
+            migrateSlots();
+        }
+
+        final int mask = this.keys.length - 1;
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+
+        final int hash = REHASH(key);
+        int slot = hash & mask;
+        KType existing;
+
+        /*! #if ($RH) !*/
+        int dist = 0;
+        final int[] cached = this.hash_cache;
+        /*! #end !*/
+
+        while (!Intrinsics.<KType> isEmpty(existing = keys[slot])
+                /*! #if ($RH) !*/ && dist <= probe_distance(slot, cached) /*! #end !*/) {
+
+            if (/*! #if ($RH) !*/cached[slot] == hash && /*! #end !*/KEYEQUALS(key, existing)) {
+
+                return Intrinsics.<VType> cast(this.values[slot]);
+            }
+            slot = (slot + 1) & mask;
+
+            /*! #if ($RH) !*/
+            dist++;
+            /*! #end !*/
+        } //end while true
+
+        if (this.oldKeys != null) {
+
+            final int oldSlot = oldSlotOf(key, hash);
+
+            if (oldSlot >= 0) {
+
+                return Intrinsics.<VType> cast(this.oldValues[oldSlot]);
+            }
+        }
+
+        return this.defaultValue;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean containsKey(final KType key) {
+
+        if (Intrinsics.<KType> isEmpty(key)) {
+
+            return this.allocatedDefaultKey;
+        }
+
+        if (this.oldKeys != null) {
+            migrateSlots();
+        }
+
+        final int mask = this.keys.length - 1;
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+
+        final int hash = REHASH(key);
+        int slot = hash & mask;
+        KType existing;
+
+        /*! #if ($RH) !*/
+        int dist = 0;
+        final int[] cached = this.hash_cache;
+        /*! #end !*/
+
+        while (!Intrinsics.<KType> isEmpty(existing = keys[slot])
+                /*! #if ($RH) !*/&& dist <= probe_distance(slot, cached) /*! #end !*/) {
+
+            if (/*! #if ($RH) !*/cached[slot] == hash && /*! #end !*/KEYEQUALS(key, existing)) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+
+            /*! #if ($RH) !*/
+            dist++;
+            /*! #end !*/
+        } //end while true
+
+        if (this.oldKeys != null) {
+
+            return oldSlotOf(key, hash) >= 0;
+        }
+
+        return false;
+    }
+
+    /**
+     * Batched {@link #get}: looks up the keys <code>lookupKeys[offset]</code> to <code>lookupKeys[offset + length - 1]</code>
+     * and stores their values, or {@link #getDefaultValue()} for the absent ones, at the same indices of <code>target</code>.
+     * <p>The keys are processed by groups of {@link #BATCH_SIZE}: all the keys of a group are hashed and their first slots loaded,
+     * then the probes are completed, then the values are loaded, so that the cache misses of a group overlap
+     * instead of being paid one after the other, which matters for maps bigger than the CPU caches.
+     * Any pending incremental resize is completed first, migrating all the remaining keys at once: with
+     * {@link #setIncrementalResize(boolean)} on, the first batched lookup after a resize is an O(n) pause.</p>
+     * @return the number of keys found.
+     */
+    public int getAll(final KType[] lookupKeys, final int offset, final int length, final VType[] target) {
+
+        assert length >= 0 : "Length must be >= 0";
+        assert offset >= 0 && offset + length <= lookupKeys.length && offset + length <= target.length : "Range out of bounds";
+
+        completeResize();
+
+        final int[] slots = new int[KTypeVTypeHashMap.BATCH_SIZE];
+        final int[] hashes = new int[KTypeVTypeHashMap.BATCH_SIZE];
+
+        final int mask = this.keys.length - 1;
+        final VType[] values = Intrinsics.<VType[]> cast(this.values);
+
+        final int end = offset + length;
+        int found = 0;
+
+        for (int from = offset; from < end; from += KTypeVTypeHashMap.BATCH_SIZE) {
+
+            final int count = Math.min(KTypeVTypeHashMap.BATCH_SIZE, end - from);
+
+            found += findSlots(lookupKeys, from, count, slots, hashes);
+
+            for (int i = 0; i < count; i++) {
+
+                final int slot = slots[i];
+
+                if (slot < 0) {
+
+                    target[from + i] = this.defaultValue;
+                } else if (slot > mask) {
+
+                    target[from + i] = this.allocatedDefaultKeyValue;
+                } else {
+
+                    target[from + i] = values[slot];
+                }
+            }
+        }
+
+        return found;
+    }
+
+    /**
+     * Batched {@link #containsKey}: looks up the keys <code>lookupKeys[offset]</code> to <code>lookupKeys[offset + length - 1]</code>
+     * and sets the bits of the same indices of the <code>bits</code> bitmask (bit <code>i</code> is <code>bits[i >>> 6] & (1L << i)</code>)
+     * for the keys present, clearing the others. The keys are processed by groups, see {@link #getAll}.
+     * <p>Any pending incremental resize is completed first, an O(n) pause, see {@link #getAll}.</p>
+     * @return the number of keys found.
+     */
+    public int containsAll(final KType[] lookupKeys, final int offset, final int length, final long[] bits) {
+
+        assert length >= 0 : "Length must be >= 0";
+        assert offset >= 0 && offset + length <= lookupKeys.length && offset + length <= (bits.length << 6) : "Range out of bounds";
+
+        completeResize();
+
+        final int[] slots = new int[KTypeVTypeHashMap.BATCH_SIZE];
+        final int[] hashes = new int[KTypeVTypeHashMap.BATCH_SIZE];
+
+        final int end = offset + length;
+        int found = 0;
+
+        for (int from = offset; from < end; from += KTypeVTypeHashMap.BATCH_SIZE) {
+
+            final int count = Math.min(KTypeVTypeHashMap.BATCH_SIZE, end - from);
+
+            found += findSlots(lookupKeys, from, count, slots, hashes);
+
+            for (int i = 0; i < count; i++) {
+
+                final int index = from + i;
+
+                if (slots[i] >= 0) {
+
+                    bits[index >>> 6] |= 1L << index;
+                } else {
+
+                    bits[index >>> 6] &= ~(1L << index);
+                }
+            }
+        }
+
+        return found;
+    }
+
+    /**
+     * Batched {@link #containsKey}, setting <code>target[i]</code> to true for the keys present,
+     * false otherwise, see {@link #containsAll}.
+     * <p>Any pending incremental resize is completed first, an O(n) pause, see {@link #getAll}.</p>
+     * @return the number of keys found.
+     */
+    public int containsAll(final KType[] lookupKeys, final int offset, final int length, final boolean[] target) {
+
+        assert length >= 0 : "Length must be >= 0";
+        assert offset >= 0 && offset + length <= lookupKeys.length && offset + length <= target.length : "Range out of bounds";
+
+        completeResize();
+
+        final int[] slots = new int[KTypeVTypeHashMap.BATCH_SIZE];
+        final int[] hashes = new int[KTypeVTypeHashMap.BATCH_SIZE];
+
+        final int end = offset + length;
+        int found = 0;
+
+        for (int from = offset; from < end; from += KTypeVTypeHashMap.BATCH_SIZE) {
+
+            final int count = Math.min(KTypeVTypeHashMap.BATCH_SIZE, end - from);
+
+            found += findSlots(lookupKeys, from, count, slots, hashes);
+
+            for (int i = 0; i < count; i++) {
+
+                target[from + i] = slots[i] >= 0;
+            }
+        }
+
+        return found;
+    }
+
+    /**
+     * Look up a group of <code>count</code> keys from <code>lookupKeys[from]</code>, setting
+     * <code>slots[i]</code> to the slot of the key <code>lookupKeys[from + i]</code>, <code>keys.length</code> for the key 0/null,
+     * or -1 if the key is absent. No incremental resize must be pending.
+     * @param hashes scratch array of the same length as slots.
+     * @return the number of keys found.
+     */
+    private int findSlots(final KType[] lookupKeys, final int from, final int count, final int[] slots, final int[] hashes) {
+
+        final int mask = this.keys.length - 1;
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+
+        /*! #if ($RH) !*/
+        final int[] cached = this.hash_cache;
+        /*! #end !*/
+
+        //1) hash all the keys and load their first slot, these loads being independent of each other.
+        for (int i = 0; i < count; i++) {
+
+            final KType key = lookupKeys[from + i];
+
+            if (Intrinsics.<KType> isEmpty(key)) {
+
+                slots[i] = this.allocatedDefaultKey ? mask + 1 : -1;
+            } else {
+
+                final int hash = REHASH(key);
+                final int slot = hash & mask;
+
+                hashes[i] = hash;
+                slots[i] = Intrinsics.<KType> isEmpty(keys[slot]) ? -1 : slot;
+            }
+        }
+
+        //2) complete the probes, starting from the already loaded slots.
+        int found = 0;
+
+        for (int i = 0; i < count; i++) {
+
+            int slot = slots[i];
+
+            if (slot > mask) {
+
+                found++;
+            } else if (slot >= 0) {
+
+                final KType key = lookupKeys[from + i];
+                final int hash = hashes[i];
+                KType existing;
+
+                /*! #if ($RH) !*/
+                int dist = 0;
+                /*! #end !*/
+
+                slots[i] = -1;
+
+                while (!Intrinsics.<KType> isEmpty(existing = keys[slot])
+                        /*! #if ($RH) !*/&& dist <= probe_distance(slot, cached) /*! #end !*/) {
+
+                    if (/*! #if ($RH) !*/cached[slot] == hash && /*! #end !*/KEYEQUALS(key, existing)) {
+
+                        slots[i] = slot;
+                        found++;
+                        break;
+                    }
+                    slot = (slot + 1) & mask;
+
+                    /*! #if ($RH) !*/
+                    dist++;
+                    /*! #end !*/
+                } //end while true
+            }
+        }
+
+        return found;
+    }
+
+    /**
+     * Looks up the slot of <code>key</code>, so that its value can then be read, replaced
+     * or inserted without probing again, typically:
+     * <pre>
+     * int index = map.indexOf(key);
+     *
+     * if (map.indexExists(index)) {
+     *     map.indexReplace(index, map.indexGet(index) + delta);
+     * } else {
+     *     map.indexInsert(index, key, delta);
+     * }
+     * </pre>
+     * <p>Any pending incremental resize is completed first. The returned index is only
+     * valid until the next modification of the map, apart from {@link #indexReplace}.</p>
+     *
+     * @return the index (&gt;= 0) of the slot of <code>key</code> if it is in the map, or else the bitwise complement (&lt; 0) of the
+     *         index of the slot where {@link #indexInsert} will put it. The index of the key 0/null is <code>keys.length</code>.
+     * @see #indexExists(int)
+     */
+    public int indexOf(final KType key) {
+
+        if (Intrinsics.<KType> isEmpty(key)) {
+
+            return this.allocatedDefaultKey ? this.keys.length : ~this.keys.length;
+        }
+
+        completeResize();
+
+        final int mask = this.keys.length - 1;
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+
+        final int hash = REHASH(key);
+        int slot = hash & mask;
+        KType existing;
+
+        /*! #if ($RH) !*/
+        int dist = 0;
+        final int[] cached = this.hash_cache;
+        /*! #end !*/
+
+        while (!Intrinsics.<KType> isEmpty(existing = keys[slot])) {
+
+            /*! #if ($RH) !*/
+            //Robin-hood: the key is not in the map past this slot, which is where put() would insert it.
+            if (dist > probe_distance(slot, cached)) {
+
+                return ~slot;
+            }
+            /*! #end !*/
+
+            if (/*! #if ($RH) !*/cached[slot] == hash && /*! #end !*/KEYEQUALS(key, existing)) {
+
+                return slot;
+            }
+
+            slot = (slot + 1) & mask;
+
+            /*! #if ($RH) !*/
+            dist++;
+            /*! #end !*/
+        } //end while true
+
+        return ~slot;
+    }
+
+    /**
+     * @return true if <code>index</code>, as returned by {@link #indexOf}, is the one of an existing key.
+     */
+    public boolean indexExists(final int index) {
+
+        assert index < 0 || index <= this.keys.length : "The index is out of range.";
+
+        return index >= 0;
+    }
+
+    /**
+     * @return the value of the key at an existing <code>index</code>, as returned by {@link #indexOf}.
+     */
+    public VType indexGet(final int index) {
+
+        assert index >= 0 : "The index must point at an existing key.";
+        assert index <= this.keys.length : "The index is out of range.";
+
+        if (index == this.keys.length) {
+
+            assert this.allocatedDefaultKey;
+
+            return this.allocatedDefaultKeyValue;
+        }
+
+        assert is_allocated(index, Intrinsics.<KType[]> cast(this.keys));
+
+        return Intrinsics.<VType> cast(this.values[index]);
+    }
+
+    /**
+     * Replace the value of the key at an existing <code>index</code>, as returned by {@link #indexOf}.
+     * @return the previous value.
+     */
+    public VType indexReplace(final int index, final VType newValue) {
+
+        assert index >= 0 : "The index must point at an existing key.";
+        assert index <= this.keys.length : "The index is out of range.";
+
+        if (index == this.keys.length) {
+
+            assert this.allocatedDefaultKey;
+
+            final VType previousValue = this.allocatedDefaultKeyValue;
+            this.allocatedDefaultKeyValue = newValue;
+
+            return previousValue;
+        }
+
+        assert is_allocated(index, Intrinsics.<KType[]> cast(this.keys));
+
+        final VType previousValue = Intrinsics.<VType> cast(this.values[index]);
+        this.values[index] = newValue;
+
+        return previousValue;
+    }
+
+    /**
+     * Insert a key absent from the map, at the <code>index</code> returned by {@link #indexOf} for this key.
+     */
+    public void indexInsert(final int index, KType key, VType value) {
+
+        assert index < 0 : "The index must not point at an existing key.";
+        assert this.oldKeys == null : "The map has been modified since indexOf().";
+
+        int slot = ~index;
+
+        if (Intrinsics.<KType> isEmpty(key)) {
+
+            assert slot == this.keys.length;
+
+            this.allocatedDefaultKeyValue = value;
+            this.allocatedDefaultKey = true;
+
+            return;
+        }
+
+        if (this.assigned == this.resizeAt) {
+
+            //the buffers are expanded, so the slot is meaningless
+            put(key, value);
 
-        final int mask = this.keys.length - 1;
+            return;
+        }
 
         final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
-
-        int slot = REHASH(key) & mask;
-        KType existing;
+        final VType[] values = Intrinsics.<VType[]> cast(this.values);
 
         /*! #if ($RH) !*/
-        int dist = 0;
+        final int mask = keys.length - 1;
         final int[] cached = this.hash_cache;
-        /*! #end !*/
 
-        while (!Intrinsics.<KType> isEmpty(existing = keys[slot])
-                /*! #if ($RH) !*/ && dist <= probe_distance(slot, cached) /*! #end !*/) {
+        KType tmpKey;
+        VType tmpValue;
+        int tmpAllocated;
+        int hash = REHASH(key);
+        int dist = (slot - hash) & mask;
+        int existing_distance;
 
-            if (KEYEQUALS(key, existing)) {
+        //Robin-hood: the key takes the slot from a richer key, which is in turn pushed forward, as in put().
+        while (is_allocated(slot, keys)) {
 
-                return Intrinsics.<VType> cast(this.values[slot]);
-            }
-            slot = (slot + 1) & mask;
+            existing_distance = probe_distance(slot, cached);
 
-            /*! #if ($RH) !*/
-            dist++;
-            /*! #end !*/
-        } //end while true
+            if (dist > existing_distance) {
 
-        return this.defaultValue;
-    }
+                //swap current (key, value, hash) with slot places
+                tmpKey = keys[slot];
+                keys[slot] = key;
+                key = tmpKey;
 
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public boolean containsKey(final KType key) {
+                tmpAllocated = cached[slot];
+                cached[slot] = hash;
+                hash = tmpAllocated;
 
-        if (Intrinsics.<KType> isEmpty(key)) {
+                tmpValue = values[slot];
+                values[slot] = value;
+                value = tmpValue;
 
-            return this.allocatedDefaultKey;
-        }
+                dist = existing_distance;
+            }
 
-        final int mask = this.keys.length - 1;
+            slot = (slot + 1) & mask;
+            dist++;
+        } //end while
 
-        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+        cached[slot] = hash;
+        /*! #else
+        assert !is_allocated(slot, keys);
 
-        int slot = REHASH(key) & mask;
-        KType existing;
+        final int mask = keys.length - 1;
+        final int hash = REHASH(key);
+        #end !*/
 
-        /*! #if ($RH) !*/
-        int dist = 0;
-        final int[] cached = this.hash_cache;
-        /*! #end !*/
+        this.assigned++;
 
-        while (!Intrinsics.<KType> isEmpty(existing = keys[slot])
-                /*! #if ($RH) !*/&& dist <= probe_distance(slot, cached) /*! #end !*/) {
+        keys[slot] = key;
+        values[slot] = value;
 
-            if (KEYEQUALS(key, existing)) {
-                return true;
-            }
-            slot = (slot + 1) & mask;
+        //distance of the last placed key from its ideal slot
+        final int probes = (slot - hash) & mask;
 
-            /*! #if ($RH) !*/
-            dist++;
-            /*! #end !*/
-        } //end while true
+        recordProbeLength(probes);
 
-        return false;
+        if (probes > this.reseedThreshold) {
+            reseed();
+        }
     }
 
     /**
@@ -933,6 +1938,14 @@ implements KTypeVTypeMap<KType, VType>, Cloneable
     public void clear() {
         this.assigned = 0;
 
+        //drop any pending incremental resize
+        this.oldKeys = null;
+        this.oldValues = null;
+
+        /*! #if ($RH) !*/
+        this.oldHashCache = null;
+        /*! #end !*/
+
         // States are always cleared.
         this.allocatedDefaultKey = false;
 
@@ -941,6 +1954,10 @@ implements KTypeVTypeMap<KType, VType>, Cloneable
         this.allocatedDefaultKeyValue = Intrinsics.<VType> empty();
         /*! #end !*/
 
+        this.maxProbeLength = 0;
+        this.probeLengthSum = 0;
+        this.probedKeys = 0;
+
         //Faster than Arrays.fill(keys, null); // Help the GC.
         KTypeArrays.blankArray(this.keys, 0, this.keys.length);
 
@@ -983,6 +2000,8 @@ implements KTypeVTypeMap<KType, VType>, Cloneable
      */
     @Override
     public int hashCode() {
+        completeResize();
+
         int h = 0;
 
         if (this.allocatedDefaultKey) {
@@ -1139,6 +2158,8 @@ implements KTypeVTypeMap<KType, VType>, Cloneable
      */
     @Override
     public EntryIterator iterator() {
+        completeResize();
+
         //return new EntryIterator();
         return this.entryIteratorPool.borrow();
     }
@@ -1148,6 +2169,7 @@ implements KTypeVTypeMap<KType, VType>, Cloneable
      */
     @Override
     public <T extends KTypeVTypeProcedure<? super KType, ? super VType>> T forEach(final T procedure) {
+        completeResize();
 
         if (this.allocatedDefaultKey) {
 
@@ -1174,6 +2196,8 @@ implements KTypeVTypeMap<KType, VType>, Cloneable
      */
     @Override
     public <T extends KTypeVTypePredicate<? super KType, ? super VType>> T forEach(final T predicate) {
+        completeResize();
+
         if (this.allocatedDefaultKey) {
 
             if (!predicate.apply(Intrinsics.<KType> empty(), this.allocatedDefaultKeyValue)) {
@@ -1222,6 +2246,8 @@ implements KTypeVTypeMap<KType, VType>, Cloneable
 
         @Override
         public <T extends KTypeProcedure<? super KType>> T forEach(final T procedure) {
+            this.owner.completeResize();
+
             if (this.owner.allocatedDefaultKey) {
 
                 procedure.apply(Intrinsics.<KType> empty());
@@ -1244,6 +2270,8 @@ implements KTypeVTypeMap<KType, VType>, Cloneable
 
         @Override
         public <T extends KTypePredicate<? super KType>> T forEach(final T predicate) {
+            this.owner.completeResize();
+
             if (this.owner.allocatedDefaultKey) {
 
                 if (!predicate.apply(Intrinsics.<KType> empty())) {
@@ -1273,6 +2301,8 @@ implements KTypeVTypeMap<KType, VType>, Cloneable
          */
         @Override
         public KeysIterator iterator() {
+            this.owner.completeResize();
+
             //return new KeysIterator();
             return this.keyIteratorPool.borrow();
         }
@@ -1342,6 +2372,8 @@ implements KTypeVTypeMap<KType, VType>, Cloneable
 
         @Override
         public KType[] toArray(final KType[] target) {
+            this.owner.completeResize();
+
             int count = 0;
 
             if (this.owner.allocatedDefaultKey) {
@@ -1450,6 +2482,8 @@ implements KTypeVTypeMap<KType, VType>, Cloneable
 
         @Override
         public boolean contains(final VType value) {
+            this.owner.completeResize();
+
             if (this.owner.allocatedDefaultKey && Intrinsics.<VType> equals(value, this.owner.allocatedDefaultKeyValue)) {
 
                 return true;
@@ -1470,6 +2504,8 @@ implements KTypeVTypeMap<KType, VType>, Cloneable
 
         @Override
         public <T extends KTypeProcedure<? super VType>> T forEach(final T procedure) {
+            this.owner.completeResize();
+
             if (this.owner.allocatedDefaultKey) {
 
                 procedure.apply(this.owner.allocatedDefaultKeyValue);
@@ -1490,6 +2526,8 @@ implements KTypeVTypeMap<KType, VType>, Cloneable
 
         @Override
         public <T extends KTypePredicate<? super VType>> T forEach(final T predicate) {
+            this.owner.completeResize();
+
             if (this.owner.allocatedDefaultKey) {
 
                 if (!predicate.apply(this.owner.allocatedDefaultKeyValue)) {
@@ -1513,6 +2551,8 @@ implements KTypeVTypeMap<KType, VType>, Cloneable
 
         @Override
         public ValuesIterator iterator() {
+            this.owner.completeResize();
+
             // return new ValuesIterator();
             return this.valuesIteratorPool.borrow();
         }
@@ -1524,6 +2564,8 @@ implements KTypeVTypeMap<KType, VType>, Cloneable
          */
         @Override
         public int removeAll(final VType e) {
+            this.owner.completeResize();
+
             final int before = this.owner.size();
 
             if (this.owner.allocatedDefaultKey) {
@@ -1561,6 +2603,8 @@ implements KTypeVTypeMap<KType, VType>, Cloneable
          */
         @Override
         public int removeAll(final KTypePredicate<? super VType> predicate) {
+            this.owner.completeResize();
+
             final int before = this.owner.size();
 
             if (this.owner.allocatedDefaultKey) {
@@ -1627,6 +2671,8 @@ implements KTypeVTypeMap<KType, VType>, Cloneable
 
         @Override
         public VType[] toArray(final VType[] target) {
+            this.owner.completeResize();
+
             int count = 0;
 
             if (this.owner.allocatedDefaultKey) {
@@ -1709,12 +2755,25 @@ implements KTypeVTypeMap<KType, VType>, Cloneable
         //clone to size() to prevent some cases of exponential sizes,
         final KTypeVTypeHashMap<KType, VType> cloned = new KTypeVTypeHashMap<KType, VType>(this.size(), this.loadFactor);
 
+        cloned.incrementalResize = this.incrementalResize;
+        cloned.reseedThreshold = this.reseedThreshold;
+
         //We must NOT clone because of independent perturbations seeds
         cloned.putAll(this);
-        
+
         return cloned;
     }
 
+    /**
+     * Returns an immutable copy of this map, with the same default value, for lookups by any number of
+     * concurrent threads.
+     * @see KTypeVTypeFrozenMap
+     */
+    public KTypeVTypeFrozenMap<KType, VType> freeze() {
+
+        return KTypeVTypeFrozenMap.from(this);
+    }
+
     /**
      * Convert the contents of this map to a human-friendly string.
      */
@@ -1753,6 +2812,315 @@ implements KTypeVTypeMap<KType, VType>, Cloneable
         return map;
     }
 
+    /**
+     * Creates a hash map from two index-aligned arrays of key-value pairs like {@link #from}, building it
+     * with up to <code>parallelism</code> tasks run by <code>executor</code>: the buffers are allocated once,
+     * then split into regions of contiguous slots (the keys being partitioned by the high bits of their home slot)
+     * filled concurrently. Default load factor is used.
+     * <p>As with sequential insertion, the last value of a duplicated key wins. Small inputs are
+     * inserted sequentially.</p>
+     */
+    public static <KType, VType> KTypeVTypeHashMap<KType, VType> parallelFrom(final KType[] keys, final VType[] values,
+            final ExecutorService executor, final int parallelism) {
+        if (keys.length != values.length) {
+            throw new IllegalArgumentException("Arrays of keys and values must have an identical length.");
+        }
+
+        final KTypeVTypeHashMap<KType, VType> map = new KTypeVTypeHashMap<KType, VType>(keys.length);
+
+        final int nbRegions = HashRegions.regionCount(map.keys.length, parallelism);
+
+        if (nbRegions == 1) {
+
+            for (int i = 0; i < keys.length; i++) {
+                map.put(keys[i], values[i]);
+            }
+        } else {
+
+            map.fillParallel(keys, values, executor, parallelism, nbRegions);
+        }
+
+        return map;
+    }
+
+    /**
+     * Fill this empty map, whose buffers must already be big enough for all the keys, with the index-aligned keys and values,
+     * splitting the buffers into nbRegions (a power of two) regions filled concurrently.
+     */
+    void fillParallel(final KType[] keys, final VType[] values, final ExecutorService executor, final int parallelism,
+            final int nbRegions) {
+
+        assert this.assigned == 0 && !this.allocatedDefaultKey && this.oldKeys == null : "Map must be empty";
+        assert keys.length < this.resizeAt || keys.length == 0 : "Buffers must be big enough";
+
+        final int mask = this.keys.length - 1;
+        final int regionShift = Integer.numberOfTrailingZeros(this.keys.length / nbRegions);
+        final int nbTasks = Math.max(1, Math.min(parallelism, keys.length));
+
+        //1) compute the hashes
+        final int[] hashes = new int[keys.length];
+
+        final List<Callable<Integer>> homeTasks = new ArrayList<Callable<Integer>>(nbTasks);
+
+        for (int t = 0; t < nbTasks; t++) {
+
+            final int from = HashRegions.chunkStart(keys.length, nbTasks, t);
+            final int to = HashRegions.chunkStart(keys.length, nbTasks, t + 1);
+
+            homeTasks.add(new Callable<Integer>() {
+
+                @Override
+                public Integer call() {
+
+                    return hashKeys(keys, hashes, from, to);
+                }
+            });
+        }
+
+        int lastDefaultKey = -1;
+
+        for (final Integer last : HashRegions.invokeAll(executor, homeTasks)) {
+
+            lastDefaultKey = Math.max(lastDefaultKey, last);
+        }
+
+        //2) group the keys by region, in their original order
+        final int[] regionStarts = new int[nbRegions + 1];
+        final int[] sorted = HashRegions.sortByRegion(hashes, mask, regionShift, regionStarts, executor, parallelism);
+
+        //3) fill each region independently, setting aside the entries which would overflow it
+        final List<RegionOverflow> overflows = new ArrayList<RegionOverflow>(nbRegions);
+        final List<Callable<Integer>> regionTasks = new ArrayList<Callable<Integer>>(nbRegions);
+
+        for (int r = 0; r < nbRegions; r++) {
+
+            final int from = regionStarts[r];
+            final int to = regionStarts[r + 1];
+            final int regionEnd = (r + 1) << regionShift;
+            final RegionOverflow overflow = new RegionOverflow();
+
+            overflows.add(overflow);
+
+            regionTasks.add(new Callable<Integer>() {
+
+                @Override
+                public Integer call() {
+
+                    return fillRegion(keys, values, hashes, sorted, from, to, regionEnd, overflow);
+                }
+            });
+        }
+
+        for (final Integer regionAssigned : HashRegions.invokeAll(executor, regionTasks)) {
+
+            this.assigned += regionAssigned;
+        }
+
+        //account for the probe lengths of the regions, as put() would have, then reseed if needed
+        for (final RegionOverflow overflow : overflows) {
+
+            this.probeLengthSum += overflow.probeLengthSum;
+            this.probedKeys += overflow.probedKeys;
+
+            if (overflow.maxProbeLength > this.maxProbeLength) {
+                this.maxProbeLength = overflow.maxProbeLength;
+            }
+        }
+
+        if (this.maxProbeLength > this.reseedThreshold) {
+            reseed();
+        }
+
+        //4) put the overflowing entries, the most recent first: a key present in the map at this point
+        //is more recent than all its overflowing occurrences.
+        for (final RegionOverflow overflow : overflows) {
+
+            for (int i = overflow.size - 1; i >= 0; i--) {
+
+                putIfAbsent(overflow.keys[i], overflow.values[i]);
+            }
+        }
+
+        if (lastDefaultKey >= 0) {
+
+            put(keys[lastDefaultKey], values[lastDefaultKey]);
+        }
+    }
+
+    /**
+     * Compute the hashes of keys[from] to keys[to - 1] into hashes, 0 for the key 0/null.
+     * @return the index of the last key 0/null, or -1 if none.
+     */
+    private int hashKeys(final KType[] keys, final int[] hashes, final int from, final int to) {
+
+        int lastDefaultKey = -1;
+
+        for (int i = from; i < to; i++) {
+
+            if (Intrinsics.<KType> isEmpty(keys[i])) {
+
+                hashes[i] = 0;
+                lastDefaultKey = i;
+            } else {
+
+                hashes[i] = REHASH(keys[i]);
+            }
+        }
+
+        return lastDefaultKey;
+    }
+
+    /**
+     * Put the entries of indices sorted[from] to sorted[to - 1], all having their home slot in the same region ending at regionEnd,
+     * probing only up to regionEnd: an entry which would be placed beyond is added to overflow instead. The keys 0/null are skipped.
+     * Regions being disjoint, several regions can be filled concurrently.
+     * @return the number of slots newly assigned.
+     */
+    private int fillRegion(final KType[] inputKeys, final VType[] inputValues, final int[] hashes, final int[] sorted,
+            final int from, final int to, final int regionEnd, final RegionOverflow overflow) {
+
+        final int mask = this.keys.length - 1;
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+        final VType[] values = Intrinsics.<VType[]> cast(this.values);
+
+        /*! #if ($RH) !*/
+        final int[] cached = this.hash_cache;
+
+        KType tmpKey;
+        VType tmpValue;
+        int tmpAllocated;
+        int existing_distance;
+        /*! #end !*/
+
+        int regionAssigned = 0;
+
+        nextEntry: for (int n = from; n < to; n++) {
+
+            final int index = sorted[n];
+
+            KType key = inputKeys[index];
+
+            if (Intrinsics.<KType> isEmpty(key)) {
+                continue;
+            }
+
+            VType value = inputValues[index];
+            int hash = hashes[index];
+            int slot = hash & mask;
+            KType existing;
+
+            /*! #if ($RH) !*/
+            int dist = 0;
+            /*! #end !*/
+
+            while (!Intrinsics.<KType> isEmpty(existing = keys[slot])) {
+
+                /*! #if ($RH) !*/
+                existing_distance = probe_distance(slot, cached);
+                /*! #end !*/
+
+                if (/*! #if ($RH) !*/dist <= existing_distance && cached[slot] == hash && /*! #end !*/KEYEQUALS(key, existing)) {
+
+                    values[slot] = value;
+                    continue nextEntry;
+                }
+
+                /*! #if ($RH) !*/
+                //same Robin-hood swap as in put()
+                if (dist > existing_distance) {
+
+                    tmpKey = keys[slot];
+                    keys[slot] = key;
+                    key = tmpKey;
+
+                    tmpAllocated = cached[slot];
+                    cached[slot] = hash;
+                    hash = tmpAllocated;
+
+                    tmpValue = values[slot];
+                    values[slot] = value;
+                    value = tmpValue;
+
+                    dist = existing_distance;
+                }
+                /*! #end !*/
+
+                slot++;
+
+                /*! #if ($RH) !*/
+                dist++;
+                /*! #end !*/
+
+                if (slot == regionEnd) {
+
+                    overflow.add(key, value);
+                    continue nextEntry;
+                }
+            } //end while
+
+            keys[slot] = key;
+            values[slot] = value;
+
+            /*! #if ($RH) !*/
+            cached[slot] = hash;
+            /*! #end !*/
+
+            regionAssigned++;
+
+            overflow.recordProbeLength((slot - hash) & mask);
+        }
+
+        return regionAssigned;
+    }
+
+    /**
+     * Entries set aside by {@link #fillRegion}, in insertion order, and probe lengths of the entries it placed.
+     */
+    private final class RegionOverflow
+    {
+        KType[] keys = Intrinsics.<KType> newArray(Containers.DEFAULT_EXPECTED_ELEMENTS);
+
+        VType[] values = Intrinsics.<VType> newArray(Containers.DEFAULT_EXPECTED_ELEMENTS);
+
+        int size;
+
+        int maxProbeLength;
+
+        long probeLengthSum;
+
+        int probedKeys;
+
+        void recordProbeLength(final int probes) {
+
+            this.probeLengthSum += probes;
+            this.probedKeys++;
+
+            if (probes > this.maxProbeLength) {
+                this.maxProbeLength = probes;
+            }
+        }
+
+        void add(final KType key, final VType value) {
+
+            if (this.size == this.keys.length) {
+
+                final KType[] newKeys = Intrinsics.<KType> newArray(this.size << 1);
+                final VType[] newValues = Intrinsics.<VType> newArray(this.size << 1);
+
+                System.arraycopy(this.keys, 0, newKeys, 0, this.size);
+                System.arraycopy(this.values, 0, newValues, 0, this.size);
+
+                this.keys = newKeys;
+                this.values = newValues;
+            }
+
+            this.keys[this.size] = key;
+            this.values[this.size] = value;
+            this.size++;
+        }
+    }
+
     /**
      * Create a hash map from another associative container. (constructor shortcut) Default load factor is used.
      */
@@ -1813,12 +3181,13 @@ implements KTypeVTypeMap<KType, VType>, Cloneable
     /*! #if ($RH) !*/
     private int probe_distance(final int slot, final int[] cache) {
 
-        final int rh = cache[slot];
+        final int rh = cache[slot] & (cache.length - 1);
 
         /*! #if($DEBUG) !*/
-        //Check : cached hashed slot is == computed value
-        final int mask = cache.length - 1;
-        assert rh == (REHASH(Intrinsics.<KType> cast(this.keys[slot])) & mask);
+        //Check : cached hash is == computed value
+        //(the cache may be the one of the old buffers during an incremental resize)
+        final Object[] cachedKeys = (cache == this.hash_cache) ? this.keys : this.oldKeys;
+        assert cache[slot] == REHASH(Intrinsics.<KType> cast(cachedKeys[slot]));
         /*! #end !*/
 
         if (slot < rh) {
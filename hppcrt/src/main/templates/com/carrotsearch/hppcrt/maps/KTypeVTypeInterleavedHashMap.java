@@ -0,0 +1,1509 @@
+package com.carrotsearch.hppcrt.maps;
+
+import com.carrotsearch.hppcrt.*;
+import com.carrotsearch.hppcrt.cursors.*;
+import com.carrotsearch.hppcrt.predicates.*;
+import com.carrotsearch.hppcrt.procedures.*;
+import com.carrotsearch.hppcrt.hash.*;
+
+/*! #import("com/carrotsearch/hppcrt/Intrinsics.java") !*/
+/*! ${TemplateOptions.doNotGenerateKType("OBJECT")} !*/
+/*! #if (!($TemplateOptions.KType == $TemplateOptions.VType
+  || ($TemplateOptions.isKType("INT") && $TemplateOptions.isVType("FLOAT"))
+  || ($TemplateOptions.isKType("LONG") && $TemplateOptions.isVType("DOUBLE"))))
+  $TemplateOptions.doNotGenerate()
+#end !*/
+/**
+ * A hash map of <code>KType</code> to <code>VType</code>, implemented using open
+ * addressing with linear probing for collision resolution, like {@link KTypeVTypeHashMap}, but storing each key
+ * and its value next to each other in a single {@link #pairs} array.
+ *
+ * <p>
+ * A successful lookup in a table bigger than the CPU caches then reads the value from the same cache line as the key,
+ * instead of one cache miss for the key and another one for the value in separate arrays.
+ * </p>
+ *
+ * <p>
+ * This map is only generated for keys and values of the same type, or of the same width.
+#if ($TemplateOptions.isVType("FLOAT", "DOUBLE") && !$TemplateOptions.isKType("FLOAT", "DOUBLE"))
+ * Here the values are stored as their raw bits, see {@link Float#floatToRawIntBits(float)} and {@link Double#doubleToRawLongBits(double)}.
+#end
+ * </p>
+ *
+ * <p>
+ * The internal buffer of this implementation ({@link #pairs}),
+ * is always allocated to the nearest size that is a power of two. When
+ * the capacity exceeds the given load factor, the buffer size is doubled.
+ * </p>
+ */
+/*! ${TemplateOptions.generatedAnnotation} !*/
+public class KTypeVTypeInterleavedHashMap<KType, VType>
+implements KTypeVTypeMap<KType, VType>, Cloneable
+{
+    protected VType defaultValue = Intrinsics.<VType> empty();
+
+    /**
+     * Hash-indexed array holding all keys and values: the key of slot i is pairs[2 * i], and its value pairs[2 * i + 1].
+     * <p>
+     * Direct map iteration: iterate  {pairs[2 * i], pairs[2 * i + 1]} for i in [0; pairs.length / 2[ where pairs[2 * i] != 0, then also
+     * {0, {@link #allocatedDefaultKeyValue} } is in the map if {@link #allocatedDefaultKey} = true.
+     * </p>
+     */
+    public KType[] pairs;
+
+    /**
+     * True if key = 0 is in the map.
+     */
+    public boolean allocatedDefaultKey = false;
+
+    /**
+     * if allocatedDefaultKey = true, contains the associated V to the key = 0
+     */
+    public VType allocatedDefaultKeyValue;
+
+    /**
+     * Cached number of assigned slots in {@link #pairs}.
+     */
+    protected int assigned;
+
+    /**
+     * The load factor for this map (fraction of allocated slots
+     * before the buffers must be rehashed or reallocated).
+     */
+    protected final double loadFactor;
+
+    /**
+     * Resize buffers when {@link #pairs} hits this value.
+     */
+    private int resizeAt;
+
+    /**
+     * Per-instance size perturbation
+     * introduced in rehashing to create a unique key distribution.
+     */
+    private final int perturbation = Containers.randomSeed32();
+
+    /**
+     * Default constructor: Creates a hash map with the default capacity of {@link Containers#DEFAULT_EXPECTED_ELEMENTS},
+     * load factor of {@link HashContainers#DEFAULT_LOAD_FACTOR}.
+     *
+     * <p>See class notes about hash distribution importance.</p>
+     */
+    public KTypeVTypeInterleavedHashMap() {
+        this(Containers.DEFAULT_EXPECTED_ELEMENTS);
+    }
+
+    /**
+     * Creates a hash map with the given initial capacity, default load factor of
+     * {@link HashContainers#DEFAULT_LOAD_FACTOR}.
+     *
+     * <p>See class notes about hash distribution importance.</p>
+     *
+     * @param initialCapacity Initial capacity (greater than zero and automatically
+     *            rounded to the next power of two).
+     */
+    public KTypeVTypeInterleavedHashMap(final int initialCapacity) {
+        this(initialCapacity, HashContainers.DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Creates a hash map with the given initial capacity,
+     * load factor.
+     *
+     * @param loadFactor The load factor (greater than zero and smaller than 1).
+     */
+    public KTypeVTypeInterleavedHashMap(final int initialCapacity, final double loadFactor) {
+        this.loadFactor = loadFactor;
+        //take into account of the load factor to guarantee no reallocations before reaching  initialCapacity.
+        allocateBuffers(HashContainers.minBufferSize(initialCapacity, loadFactor));
+    }
+
+    /**
+     * Create a hash map from all key-value pairs of another container.
+     */
+    public KTypeVTypeInterleavedHashMap(final KTypeVTypeAssociativeContainer<KType, VType> container) {
+        this(container.size());
+        putAll(container);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public VType put(final KType key, final VType value) {
+
+        if (Intrinsics.<KType> isEmpty(key)) {
+
+            if (this.allocatedDefaultKey) {
+
+                final VType previousValue = this.allocatedDefaultKeyValue;
+                this.allocatedDefaultKeyValue = value;
+
+                return previousValue;
+            }
+
+            this.allocatedDefaultKeyValue = value;
+            this.allocatedDefaultKey = true;
+
+            return this.defaultValue;
+        }
+
+        final KType[] pairs = this.pairs;
+        final int mask = (pairs.length >> 1) - 1;
+
+        int slot = REHASH(key) & mask;
+        KType existing;
+
+        while (!Intrinsics.<KType> isEmpty(existing = pairs[slot << 1])) {
+
+            if (KEYEQUALS(key, existing)) {
+
+                final VType oldValue = fromBits(pairs[(slot << 1) + 1]);
+                pairs[(slot << 1) + 1] = toBits(value);
+
+                return oldValue;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        // Check if we need to grow. If so, reallocate new data, fill in the last element
+        // and rehash.
+        if (this.assigned == this.resizeAt) {
+
+            expandAndPut(key, value, slot);
+        } else {
+            this.assigned++;
+
+            pairs[slot << 1] = key;
+            pairs[(slot << 1) + 1] = toBits(value);
+        }
+
+        return this.defaultValue;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int putAll(final KTypeVTypeAssociativeContainer<? extends KType, ? extends VType> container) {
+        return putAll((Iterable<? extends KTypeVTypeCursor<? extends KType, ? extends VType>>) container);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int putAll(final Iterable<? extends KTypeVTypeCursor<? extends KType, ? extends VType>> iterable) {
+        final int count = this.size();
+        for (final KTypeVTypeCursor<? extends KType, ? extends VType> c : iterable) {
+            put(c.key, c.value);
+        }
+        return this.size() - count;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean putIfAbsent(final KType key, final VType value) {
+        if (!containsKey(key)) {
+            put(key, value);
+            return true;
+        }
+        return false;
+    }
+
+    /*! #if ($TemplateOptions.VTypePrimitive) !*/
+    /**
+     * If <code>key</code> exists, <code>putValue</code> is inserted into the map,
+     * otherwise any existing value is incremented by <code>additionValue</code>.
+     *
+     * @param key
+     *          The key of the value to adjust.
+     * @param putValue
+     *          The value to put if <code>key</code> does not exist.
+     * @param incrementValue
+     *          The value to add to the existing value if <code>key</code> exists.
+     * @return Returns the current value associated with <code>key</code> (after
+     *         changes).
+     */
+    @SuppressWarnings("cast")
+    @Override
+    public VType putOrAdd(final KType key, VType putValue, final VType incrementValue) {
+
+        if (containsKey(key)) {
+            putValue = get(key);
+
+            putValue = (VType) (Intrinsics.<VType> add(putValue, incrementValue));
+        }
+
+        put(key, putValue);
+        return putValue;
+    }
+
+    /*! #end !*/
+
+    /*! #if ($TemplateOptions.VTypePrimitive) !*/
+    /**
+     * Adds <code>incrementValue</code> to any existing value for the given <code>key</code>
+     * or inserts <code>incrementValue</code> if <code>key</code> did not previously exist.
+     *
+     * @param key The key of the value to adjust.
+     * @param incrementValue The value to put or add to the existing value if <code>key</code> exists.
+     * @return Returns the current value associated with <code>key</code> (after changes).
+     */
+    @Override
+    public VType addTo(final KType key, final VType incrementValue)
+    {
+        return putOrAdd(key, incrementValue, incrementValue);
+    }
+
+    /*! #end !*/
+
+    /**
+     * Expand the internal storage buffers (capacity) and rehash.
+     */
+    private void expandAndPut(final KType pendingKey, final VType pendingValue, final int freeSlot) {
+        assert this.assigned == this.resizeAt;
+
+        //default sentinel value is never in the pairs[] array, so never trigger reallocs
+        assert !Intrinsics.<KType> isEmpty(pendingKey);
+
+        // Try to allocate new buffers first. If we OOM, it'll be now without
+        // leaving the data structure in an inconsistent state.
+        final KType[] oldPairs = this.pairs;
+
+        allocateBuffers(HashContainers.nextBufferSize(oldPairs.length >> 1, this.assigned, this.loadFactor));
+
+        // We have succeeded at allocating new data so insert the pending key/value at
+        // the free slot in the old arrays before rehashing.
+        this.assigned++;
+
+        oldPairs[freeSlot << 1] = pendingKey;
+        oldPairs[(freeSlot << 1) + 1] = toBits(pendingValue);
+
+        //for inserts
+        final KType[] pairs = this.pairs;
+        final int mask = (pairs.length >> 1) - 1;
+
+        KType key;
+        int slot;
+
+        //iterate all the old arrays to add in the newly allocated buffers
+        //It is important to iterate backwards to minimize the conflict chain length !
+        final int perturb = this.perturbation;
+
+        for (int i = (oldPairs.length >> 1); --i >= 0;) {
+
+            //only consider non-empty slots, of course
+            if (!Intrinsics.<KType> isEmpty(key = oldPairs[i << 1])) {
+
+                slot = REHASH2(key, perturb) & mask;
+
+                //similar to put(), except all inserted keys are known to be unique.
+                while (!Intrinsics.<KType> isEmpty(pairs[slot << 1])) {
+
+                    slot = (slot + 1) & mask;
+                }
+
+                pairs[slot << 1] = key;
+                pairs[(slot << 1) + 1] = oldPairs[(i << 1) + 1];
+            }
+        }
+    }
+
+    /**
+     * Allocate internal buffers for a given capacity.
+     *
+     * @param capacity New capacity (must be a power of two).
+     */
+    @SuppressWarnings("boxing")
+    private void allocateBuffers(final int capacity) {
+
+        //each slot takes two array elements
+        if (capacity > HashContainers.MAX_HASH_ARRAY_LENGTH >> 1) {
+
+            throw new BufferAllocationException(
+                    "Maximum array size exceeded for key-value pairs (capacity: %d)",
+                    capacity);
+        }
+
+        try {
+
+            final KType[] pairs = Intrinsics.<KType> newArray(capacity << 1);
+
+            this.pairs = pairs;
+
+            //allocate so that there is at least one slot that remains allocated = false
+            //this is compulsory to guarantee proper stop in searching loops
+            this.resizeAt = HashContainers.expandAtCount(capacity, this.loadFactor);
+        } catch (final OutOfMemoryError e) {
+
+            throw new BufferAllocationException(
+                    "Not enough memory to allocate buffers to grow from %d -> %d elements",
+                    e,
+                    (this.pairs == null) ? 0 : this.pairs.length >> 1,
+                            capacity);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public VType remove(final KType key) {
+
+        if (Intrinsics.<KType> isEmpty(key)) {
+
+            if (this.allocatedDefaultKey) {
+
+                final VType previousValue = this.allocatedDefaultKeyValue;
+
+                this.allocatedDefaultKey = false;
+                return previousValue;
+            }
+
+            return this.defaultValue;
+        }
+
+        final KType[] pairs = this.pairs;
+        final int mask = (pairs.length >> 1) - 1;
+
+        int slot = REHASH(key) & mask;
+        KType existing;
+
+        while (!Intrinsics.<KType> isEmpty(existing = pairs[slot << 1])) {
+
+            if (KEYEQUALS(key, existing)) {
+
+                final VType value = fromBits(pairs[(slot << 1) + 1]);
+
+                shiftConflictingKeys(slot);
+
+                return value;
+            }
+            slot = (slot + 1) & mask;
+        } //end while true
+
+        return this.defaultValue;
+    }
+
+    /**
+     * Shift all the slot-conflicting keys allocated to (and including) <code>slot</code>.
+     */
+    private void shiftConflictingKeys(int gapSlot) {
+
+        final KType[] pairs = this.pairs;
+        final int mask = (pairs.length >> 1) - 1;
+
+        final int perturb = this.perturbation;
+
+        // Perform shifts of conflicting keys to fill in the gap.
+        int distance = 0;
+        while (true) {
+
+            final int slot = (gapSlot + (++distance)) & mask;
+
+            final KType existing = pairs[slot << 1];
+
+            if (Intrinsics.<KType> isEmpty(existing)) {
+                break;
+            }
+
+            final int idealSlotModMask = REHASH2(existing, perturb) & mask;
+
+            //original HPPC code: shift = (slot - idealSlot) & mask;
+            //equivalent to shift = (slot & mask - idealSlot & mask) & mask;
+            //since slot and idealSlotModMask are already folded, we have :
+            final int shift = (slot - idealSlotModMask) & mask;
+
+            if (shift >= distance) {
+                // Entry at this position was originally at or before the gap slot.
+                // Move the conflict-shifted entry to the gap's position and repeat the procedure
+                // for any entries to the right of the current position, treating it
+                // as the new gap.
+                pairs[gapSlot << 1] = existing;
+                pairs[(gapSlot << 1) + 1] = pairs[(slot << 1) + 1];
+
+                gapSlot = slot;
+                distance = 0;
+            }
+        } //end while
+
+        // Mark the last found gap slot without a conflict as empty.
+        pairs[gapSlot << 1] = Intrinsics.<KType> empty();
+
+        this.assigned--;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int removeAll(final KTypeContainer<? super KType> other) {
+        final int before = this.size();
+
+        //1) other is a KTypeLookupContainer, so with fast lookup guarantees
+        //and is bigger than this, so take advantage of both and iterate over this
+        //and test other elements by their contains().
+        if (other.size() >= before && other instanceof KTypeLookupContainer<?>) {
+
+            if (this.allocatedDefaultKey) {
+
+                if (other.contains(Intrinsics.<KType> empty())) {
+                    this.allocatedDefaultKey = false;
+                }
+            }
+
+            final KType[] pairs = this.pairs;
+
+            for (int slot = 0; slot < (pairs.length >> 1);) {
+                KType existing;
+                if (!Intrinsics.<KType> isEmpty(existing = pairs[slot << 1]) && other.contains(existing)) {
+
+                    shiftConflictingKeys(slot);
+                    // Shift, do not increment slot.
+                } else {
+                    slot++;
+                }
+            }
+        } else {
+            //2) Do not use contains() from container, which may lead to O(n**2) execution times,
+            //so it iterate linearly and call remove() from map which is O(1).
+            for (final KTypeCursor<? super KType> c : other) {
+
+                remove(Intrinsics.<KType> cast(c.value));
+            }
+        }
+
+        return before - this.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int removeAll(final KTypePredicate<? super KType> predicate) {
+        final int before = this.size();
+
+        if (this.allocatedDefaultKey) {
+
+            if (predicate.apply(Intrinsics.<KType> empty())) {
+                this.allocatedDefaultKey = false;
+            }
+        }
+
+        final KType[] pairs = this.pairs;
+
+        for (int slot = 0; slot < (pairs.length >> 1);) {
+            KType existing;
+            if (!Intrinsics.<KType> isEmpty(existing = pairs[slot << 1]) && predicate.apply(existing)) {
+
+                shiftConflictingKeys(slot);
+                // Shift, do not increment slot.
+            } else {
+                slot++;
+            }
+        }
+
+        return before - this.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int removeAll(final KTypeVTypePredicate<? super KType, ? super VType> predicate) {
+        final int before = this.size();
+
+        if (this.allocatedDefaultKey) {
+
+            if (predicate.apply(Intrinsics.<KType> empty(), this.allocatedDefaultKeyValue)) {
+                this.allocatedDefaultKey = false;
+            }
+        }
+
+        final KType[] pairs = this.pairs;
+
+        for (int slot = 0; slot < (pairs.length >> 1);) {
+            KType existing;
+            if (!Intrinsics.<KType> isEmpty(existing = pairs[slot << 1])
+                    && predicate.apply(existing, fromBits(pairs[(slot << 1) + 1]))) {
+
+                shiftConflictingKeys(slot);
+                // Shift, do not increment slot.
+            } else {
+                slot++;
+            }
+        }
+
+        return before - this.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public VType get(final KType key) {
+
+        if (Intrinsics.<KType> isEmpty(key)) {
+
+            if (this.allocatedDefaultKey) {
+
+                return this.allocatedDefaultKeyValue;
+            }
+
+            return this.defaultValue;
+        }
+
+        final KType[] pairs = this.pairs;
+        final int mask = (pairs.length >> 1) - 1;
+
+        int slot = REHASH(key) & mask;
+        KType existing;
+
+        while (!Intrinsics.<KType> isEmpty(existing = pairs[slot << 1])) {
+
+            if (KEYEQUALS(key, existing)) {
+
+                //on the same cache line as the key, most of the time
+                return fromBits(pairs[(slot << 1) + 1]);
+            }
+            slot = (slot + 1) & mask;
+        } //end while true
+
+        return this.defaultValue;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean containsKey(final KType key) {
+
+        if (Intrinsics.<KType> isEmpty(key)) {
+
+            return this.allocatedDefaultKey;
+        }
+
+        final KType[] pairs = this.pairs;
+        final int mask = (pairs.length >> 1) - 1;
+
+        int slot = REHASH(key) & mask;
+        KType existing;
+
+        while (!Intrinsics.<KType> isEmpty(existing = pairs[slot << 1])) {
+
+            if (KEYEQUALS(key, existing)) {
+
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        } //end while true
+
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Does not release internal buffers.</p>
+     */
+    @Override
+    public void clear() {
+        this.assigned = 0;
+
+        // States are always cleared.
+        this.allocatedDefaultKey = false;
+
+        //Faster than Arrays.fill(pairs, 0);
+        KTypeArrays.blankArray(this.pairs, 0, this.pairs.length);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size() {
+        return this.assigned + (this.allocatedDefaultKey ? 1 : 0);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int capacity() {
+
+        return this.resizeAt;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+        int h = 0;
+
+        if (this.allocatedDefaultKey) {
+            h += BitMixer.mix(this.allocatedDefaultKeyValue);
+        }
+
+        final KType[] pairs = this.pairs;
+
+        for (int slot = (pairs.length >> 1); --slot >= 0;) {
+            KType existing;
+            if (!Intrinsics.<KType> isEmpty(existing = pairs[slot << 1])) {
+
+                h += BitMixer.mix(existing) ^ BitMixer.mix(fromBits(pairs[(slot << 1) + 1]));
+            }
+        }
+
+        return h;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(final Object obj) {
+        if (obj != null) {
+            if (obj == this) {
+                return true;
+            }
+
+            //must be of the same class, subclasses are not comparable
+            if (obj.getClass() != this.getClass()) {
+                return false;
+            }
+
+            /* #if ($TemplateOptions.AnyGeneric) */
+            @SuppressWarnings("unchecked")
+            final/* #end */
+            KTypeVTypeInterleavedHashMap<KType, VType> other = (KTypeVTypeInterleavedHashMap<KType, VType>) obj;
+
+            //must be of the same size
+            if (other.size() != this.size()) {
+                return false;
+            }
+
+            final EntryIterator it = this.iterator();
+
+            while (it.hasNext()) {
+                final KTypeVTypeCursor<KType, VType> c = it.next();
+
+                if (!other.containsKey(c.key)) {
+                    //recycle
+                    it.release();
+                    return false;
+                }
+
+                final VType otherValue = other.get(c.key);
+
+                if (!Intrinsics.<VType> equals(c.value, otherValue)) {
+                    //recycle
+                    it.release();
+                    return false;
+                }
+            } //end while
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * An iterator implementation for {@link #iterator}.
+     * Holds a KTypeVTypeCursor returning
+     * (key, value, index) = (KType key, VType value, index the slot of the pair in {@link KTypeVTypeInterleavedHashMap#pairs},
+     * or pairs.length / 2 for key = 0)
+     */
+    public final class EntryIterator extends AbstractIterator<KTypeVTypeCursor<KType, VType>>
+    {
+        public final KTypeVTypeCursor<KType, VType> cursor;
+
+        public EntryIterator() {
+            this.cursor = new KTypeVTypeCursor<KType, VType>();
+            this.cursor.index = -2;
+        }
+
+        /**
+         * Iterate backwards w.r.t the buffer, to
+         * minimize collision chains when filling another hash container (ex. with putAll())
+         */
+        @Override
+        protected KTypeVTypeCursor<KType, VType> fetch() {
+
+            final KType[] pairs = KTypeVTypeInterleavedHashMap.this.pairs;
+
+            if (this.cursor.index == (pairs.length >> 1) + 1) {
+
+                if (KTypeVTypeInterleavedHashMap.this.allocatedDefaultKey) {
+
+                    this.cursor.index = pairs.length >> 1;
+                    this.cursor.key = Intrinsics.<KType> empty();
+                    this.cursor.value = KTypeVTypeInterleavedHashMap.this.allocatedDefaultKeyValue;
+
+                    return this.cursor;
+
+                }
+                //no value associated with the default key, continue iteration...
+                this.cursor.index = pairs.length >> 1;
+            }
+
+            int i = this.cursor.index - 1;
+
+            while (i >= 0 && Intrinsics.<KType> isEmpty(pairs[i << 1])) {
+                i--;
+            }
+
+            if (i == -1) {
+                return done();
+            }
+
+            this.cursor.index = i;
+            this.cursor.key = pairs[i << 1];
+            this.cursor.value = fromBits(pairs[(i << 1) + 1]);
+
+            return this.cursor;
+        }
+    }
+
+    /**
+     * internal pool of EntryIterator
+     */
+    protected final IteratorPool<KTypeVTypeCursor<KType, VType>, EntryIterator> entryIteratorPool = new IteratorPool<KTypeVTypeCursor<KType, VType>, EntryIterator>(
+            new ObjectFactory<EntryIterator>() {
+
+                @Override
+                public EntryIterator create() {
+                    return new EntryIterator();
+                }
+
+                @Override
+                public void initialize(final EntryIterator obj) {
+                    obj.cursor.index = (KTypeVTypeInterleavedHashMap.this.pairs.length >> 1) + 1;
+                }
+
+                @Override
+                public void reset(final EntryIterator obj) {
+                    //nothing
+                }
+            });
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public EntryIterator iterator() {
+        //return new EntryIterator();
+        return this.entryIteratorPool.borrow();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends KTypeVTypeProcedure<? super KType, ? super VType>> T forEach(final T procedure) {
+
+        if (this.allocatedDefaultKey) {
+
+            procedure.apply(Intrinsics.<KType> empty(), this.allocatedDefaultKeyValue);
+        }
+
+        final KType[] pairs = this.pairs;
+
+        //Iterate in reverse for side-stepping the longest conflict chain
+        //in another hash, in case apply() is actually used to fill another hash container.
+        for (int slot = (pairs.length >> 1) - 1; slot >= 0; slot--) {
+            KType existing;
+            if (!Intrinsics.<KType> isEmpty(existing = pairs[slot << 1])) {
+                procedure.apply(existing, fromBits(pairs[(slot << 1) + 1]));
+            }
+        }
+
+        return procedure;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends KTypeVTypePredicate<? super KType, ? super VType>> T forEach(final T predicate) {
+        if (this.allocatedDefaultKey) {
+
+            if (!predicate.apply(Intrinsics.<KType> empty(), this.allocatedDefaultKeyValue)) {
+
+                return predicate;
+            }
+        }
+
+        final KType[] pairs = this.pairs;
+
+        //Iterate in reverse for side-stepping the longest conflict chain
+        //in another hash, in case apply() is actually used to fill another hash container.
+        for (int slot = (pairs.length >> 1) - 1; slot >= 0; slot--) {
+            KType existing;
+            if (!Intrinsics.<KType> isEmpty(existing = pairs[slot << 1])) {
+                if (!predicate.apply(existing, fromBits(pairs[(slot << 1) + 1]))) {
+                    break;
+                }
+            }
+        } //end for
+
+        return predicate;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @return a new KeysCollection view of the keys of this map.
+     */
+    @Override
+    public KeysCollection keys() {
+        return new KeysCollection();
+    }
+
+    /**
+     * A view of the keys inside this map.
+     */
+    public final class KeysCollection extends AbstractKTypeCollection<KType> implements KTypeLookupContainer<KType>
+    {
+        private final KTypeVTypeInterleavedHashMap<KType, VType> owner = KTypeVTypeInterleavedHashMap.this;
+
+        @Override
+        public boolean contains(final KType e) {
+            return containsKey(e);
+        }
+
+        @Override
+        public <T extends KTypeProcedure<? super KType>> T forEach(final T procedure) {
+            if (this.owner.allocatedDefaultKey) {
+
+                procedure.apply(Intrinsics.<KType> empty());
+            }
+
+            final KType[] pairs = this.owner.pairs;
+
+            //Iterate in reverse for side-stepping the longest conflict chain
+            //in another hash, in case apply() is actually used to fill another hash container.
+            for (int slot = (pairs.length >> 1) - 1; slot >= 0; slot--) {
+
+                KType existing;
+                if (!Intrinsics.<KType> isEmpty(existing = pairs[slot << 1])) {
+                    procedure.apply(existing);
+                }
+            }
+
+            return procedure;
+        }
+
+        @Override
+        public <T extends KTypePredicate<? super KType>> T forEach(final T predicate) {
+            if (this.owner.allocatedDefaultKey) {
+
+                if (!predicate.apply(Intrinsics.<KType> empty())) {
+
+                    return predicate;
+                }
+            }
+
+            final KType[] pairs = this.owner.pairs;
+
+            //Iterate in reverse for side-stepping the longest conflict chain
+            //in another hash, in case apply() is actually used to fill another hash container.
+            for (int slot = (pairs.length >> 1) - 1; slot >= 0; slot--) {
+                KType existing;
+                if (!Intrinsics.<KType> isEmpty(existing = pairs[slot << 1])) {
+                    if (!predicate.apply(existing)) {
+                        break;
+                    }
+                }
+            }
+
+            return predicate;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public KeysIterator iterator() {
+            //return new KeysIterator();
+            return this.keyIteratorPool.borrow();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int size() {
+            return this.owner.size();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int capacity() {
+
+            return this.owner.capacity();
+        }
+
+        @Override
+        public void clear() {
+            this.owner.clear();
+        }
+
+        @Override
+        public int removeAll(final KTypePredicate<? super KType> predicate) {
+            return this.owner.removeAll(predicate);
+        }
+
+        @Override
+        public int removeAll(final KType e) {
+            final boolean hasKey = this.owner.containsKey(e);
+            int result = 0;
+            if (hasKey) {
+                this.owner.remove(e);
+                result = 1;
+            }
+            return result;
+        }
+
+        /**
+         * internal pool of KeysIterator
+         */
+        protected final IteratorPool<KTypeCursor<KType>, KeysIterator> keyIteratorPool = new IteratorPool<KTypeCursor<KType>, KeysIterator>(
+                new ObjectFactory<KeysIterator>() {
+
+                    @Override
+                    public KeysIterator create() {
+                        return new KeysIterator();
+                    }
+
+                    @Override
+                    public void initialize(final KeysIterator obj) {
+                        obj.cursor.index = (KTypeVTypeInterleavedHashMap.this.pairs.length >> 1) + 1;
+                    }
+
+                    @Override
+                    public void reset(final KeysIterator obj) {
+                        //nothing
+                    }
+                });
+
+        @Override
+        public KType[] toArray(final KType[] target) {
+            int count = 0;
+
+            if (this.owner.allocatedDefaultKey) {
+
+                target[count++] = Intrinsics.<KType> empty();
+            }
+
+            final KType[] pairs = this.owner.pairs;
+
+            for (int slot = 0; slot < (pairs.length >> 1); slot++) {
+                KType existing;
+                if (!Intrinsics.<KType> isEmpty(existing = pairs[slot << 1])) {
+                    target[count++] = existing;
+                }
+            }
+
+            assert count == this.owner.size();
+            return target;
+        }
+    };
+
+    /**
+     * An iterator over the set of keys.
+     * Holds a KTypeCursor returning (value, index) = (KType key, index the slot of the pair in {@link KTypeVTypeInterleavedHashMap#pairs},
+     * or pairs.length / 2 for key = 0.)
+     */
+    public final class KeysIterator extends AbstractIterator<KTypeCursor<KType>>
+    {
+        public final KTypeCursor<KType> cursor;
+
+        public KeysIterator() {
+            this.cursor = new KTypeCursor<KType>();
+            this.cursor.index = -2;
+        }
+
+        /**
+         * Iterate backwards w.r.t the buffer, to
+         * minimize collision chains when filling another hash container (ex. with putAll())
+         */
+        @Override
+        protected KTypeCursor<KType> fetch() {
+
+            final KType[] pairs = KTypeVTypeInterleavedHashMap.this.pairs;
+
+            if (this.cursor.index == (pairs.length >> 1) + 1) {
+
+                if (KTypeVTypeInterleavedHashMap.this.allocatedDefaultKey) {
+
+                    this.cursor.index = pairs.length >> 1;
+                    this.cursor.value = Intrinsics.<KType> empty();
+
+                    return this.cursor;
+
+                }
+                //no value associated with the default key, continue iteration...
+                this.cursor.index = pairs.length >> 1;
+            }
+
+            int i = this.cursor.index - 1;
+
+            while (i >= 0 && Intrinsics.<KType> isEmpty(pairs[i << 1])) {
+                i--;
+            }
+
+            if (i == -1) {
+                return done();
+            }
+
+            this.cursor.index = i;
+            this.cursor.value = pairs[i << 1];
+
+            return this.cursor;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * @return a new ValuesCollection view of the values of this map.
+     */
+    @Override
+    public ValuesCollection values() {
+        return new ValuesCollection();
+    }
+
+    /**
+     * A view over the set of values of this map.
+     */
+    public final class ValuesCollection extends AbstractKTypeCollection<VType>
+    {
+        private final KTypeVTypeInterleavedHashMap<KType, VType> owner = KTypeVTypeInterleavedHashMap.this;
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int size() {
+            return this.owner.size();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int capacity() {
+
+            return this.owner.capacity();
+        }
+
+        @Override
+        public boolean contains(final VType value) {
+            if (this.owner.allocatedDefaultKey && Intrinsics.<VType> equals(value, this.owner.allocatedDefaultKeyValue)) {
+
+                return true;
+            }
+
+            // This is a linear scan over the values, but it's in the contract, so be it.
+            final KType[] pairs = this.owner.pairs;
+
+            for (int slot = 0; slot < (pairs.length >> 1); slot++) {
+                if (!Intrinsics.<KType> isEmpty(pairs[slot << 1])
+                        && Intrinsics.<VType> equals(value, fromBits(pairs[(slot << 1) + 1]))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public <T extends KTypeProcedure<? super VType>> T forEach(final T procedure) {
+            if (this.owner.allocatedDefaultKey) {
+
+                procedure.apply(this.owner.allocatedDefaultKeyValue);
+            }
+
+            final KType[] pairs = this.owner.pairs;
+
+            for (int slot = 0; slot < (pairs.length >> 1); slot++) {
+                if (!Intrinsics.<KType> isEmpty(pairs[slot << 1])) {
+
+                    procedure.apply(fromBits(pairs[(slot << 1) + 1]));
+                }
+            }
+
+            return procedure;
+        }
+
+        @Override
+        public <T extends KTypePredicate<? super VType>> T forEach(final T predicate) {
+            if (this.owner.allocatedDefaultKey) {
+
+                if (!predicate.apply(this.owner.allocatedDefaultKeyValue)) {
+                    return predicate;
+                }
+            }
+
+            final KType[] pairs = this.owner.pairs;
+
+            for (int slot = 0; slot < (pairs.length >> 1); slot++) {
+                if (!Intrinsics.<KType> isEmpty(pairs[slot << 1])) {
+                    if (!predicate.apply(fromBits(pairs[(slot << 1) + 1]))) {
+                        break;
+                    }
+                }
+            }
+
+            return predicate;
+        }
+
+        @Override
+        public ValuesIterator iterator() {
+            // return new ValuesIterator();
+            return this.valuesIteratorPool.borrow();
+        }
+
+        /**
+         * {@inheritDoc}
+         * Indeed removes all the (key,value) pairs matching
+         * (key ? ,  e) with the  same  e,  from  the map.
+         */
+        @Override
+        public int removeAll(final VType e) {
+            final int before = this.owner.size();
+
+            if (this.owner.allocatedDefaultKey) {
+
+                if (Intrinsics.<VType> equals(e, this.owner.allocatedDefaultKeyValue)) {
+
+                    this.owner.allocatedDefaultKey = false;
+                }
+            }
+
+            final KType[] pairs = this.owner.pairs;
+
+            for (int slot = 0; slot < (pairs.length >> 1);) {
+                if (!Intrinsics.<KType> isEmpty(pairs[slot << 1])
+                        && Intrinsics.<VType> equals(e, fromBits(pairs[(slot << 1) + 1]))) {
+
+                    shiftConflictingKeys(slot);
+                    // Shift, do not increment slot.
+                } else {
+                    slot++;
+                }
+            }
+            return before - this.owner.size();
+        }
+
+        /**
+         * {@inheritDoc}
+         * Indeed removes all the (key,value) pairs matching
+         * the predicate for the values, from  the map.
+         */
+        @Override
+        public int removeAll(final KTypePredicate<? super VType> predicate) {
+            final int before = this.owner.size();
+
+            if (this.owner.allocatedDefaultKey) {
+
+                if (predicate.apply(this.owner.allocatedDefaultKeyValue)) {
+
+                    this.owner.allocatedDefaultKey = false;
+                }
+            }
+
+            final KType[] pairs = this.owner.pairs;
+
+            for (int slot = 0; slot < (pairs.length >> 1);) {
+                if (!Intrinsics.<KType> isEmpty(pairs[slot << 1])
+                        && predicate.apply(fromBits(pairs[(slot << 1) + 1]))) {
+
+                    shiftConflictingKeys(slot);
+                    // Shift, do not increment slot.
+                } else {
+                    slot++;
+                }
+            }
+            return before - this.owner.size();
+        }
+
+        /**
+         * {@inheritDoc}
+         *  Alias for clear() the whole map.
+         */
+        @Override
+        public void clear() {
+            this.owner.clear();
+        }
+
+        /**
+         * internal pool of ValuesIterator
+         */
+        protected final IteratorPool<KTypeCursor<VType>, ValuesIterator> valuesIteratorPool = new IteratorPool<KTypeCursor<VType>, ValuesIterator>(
+                new ObjectFactory<ValuesIterator>() {
+
+                    @Override
+                    public ValuesIterator create() {
+                        return new ValuesIterator();
+                    }
+
+                    @Override
+                    public void initialize(final ValuesIterator obj) {
+                        obj.cursor.index = (KTypeVTypeInterleavedHashMap.this.pairs.length >> 1) + 1;
+                    }
+
+                    @Override
+                    public void reset(final ValuesIterator obj) {
+                        //nothing
+                    }
+                });
+
+        @Override
+        public VType[] toArray(final VType[] target) {
+            int count = 0;
+
+            if (this.owner.allocatedDefaultKey) {
+
+                target[count++] = this.owner.allocatedDefaultKeyValue;
+            }
+
+            final KType[] pairs = this.owner.pairs;
+
+            for (int slot = 0; slot < (pairs.length >> 1); slot++) {
+                if (!Intrinsics.<KType> isEmpty(pairs[slot << 1])) {
+                    target[count++] = fromBits(pairs[(slot << 1) + 1]);
+                }
+            }
+
+            assert count == this.owner.size();
+            return target;
+        }
+    }
+
+    /**
+     * An iterator over the set of values.
+     * Holds a KTypeCursor returning (value, index) = (VType value, index the slot of the pair in {@link KTypeVTypeInterleavedHashMap#pairs},
+     * or pairs.length / 2 for value = {@link KTypeVTypeInterleavedHashMap#allocatedDefaultKeyValue}).
+     */
+    public final class ValuesIterator extends AbstractIterator<KTypeCursor<VType>>
+    {
+        public final KTypeCursor<VType> cursor;
+
+        public ValuesIterator() {
+            this.cursor = new KTypeCursor<VType>();
+            this.cursor.index = -2;
+        }
+
+        /**
+         * Iterate backwards w.r.t the buffer, to
+         * minimize collision chains when filling another hash container (ex. with putAll())
+         */
+        @Override
+        protected KTypeCursor<VType> fetch() {
+
+            final KType[] pairs = KTypeVTypeInterleavedHashMap.this.pairs;
+
+            if (this.cursor.index == (pairs.length >> 1) + 1) {
+
+                if (KTypeVTypeInterleavedHashMap.this.allocatedDefaultKey) {
+
+                    this.cursor.index = pairs.length >> 1;
+                    this.cursor.value = KTypeVTypeInterleavedHashMap.this.allocatedDefaultKeyValue;
+
+                    return this.cursor;
+
+                }
+                //no value associated with the default key, continue iteration...
+                this.cursor.index = pairs.length >> 1;
+            }
+
+            int i = this.cursor.index - 1;
+
+            while (i >= 0 && Intrinsics.<KType> isEmpty(pairs[i << 1])) {
+                i--;
+            }
+
+            if (i == -1) {
+                return done();
+            }
+
+            this.cursor.index = i;
+            this.cursor.value = fromBits(pairs[(i << 1) + 1]);
+
+            return this.cursor;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public KTypeVTypeInterleavedHashMap<KType, VType> clone() {
+        //clone to size() to prevent some cases of exponential sizes,
+        final KTypeVTypeInterleavedHashMap<KType, VType> cloned = new KTypeVTypeInterleavedHashMap<KType, VType>(this.size(), this.loadFactor);
+
+        //We must NOT clone because of independent perturbations seeds
+        cloned.putAll(this);
+
+        return cloned;
+    }
+
+    /**
+     * Convert the contents of this map to a human-friendly string.
+     */
+    @Override
+    public String toString() {
+        final StringBuilder buffer = new StringBuilder();
+        buffer.append("[");
+
+        boolean first = true;
+        for (final KTypeVTypeCursor<KType, VType> cursor : this) {
+            if (!first) {
+                buffer.append(", ");
+            }
+            buffer.append(cursor.key);
+            buffer.append("=>");
+            buffer.append(cursor.value);
+            first = false;
+        }
+        buffer.append("]");
+        return buffer.toString();
+    }
+
+    /**
+     * Creates a hash map from two index-aligned arrays of key-value pairs. Default load factor is used.
+     */
+    public static <KType, VType> KTypeVTypeInterleavedHashMap<KType, VType> from(final KType[] keys, final VType[] values) {
+        if (keys.length != values.length) {
+            throw new IllegalArgumentException("Arrays of keys and values must have an identical length.");
+        }
+
+        final KTypeVTypeInterleavedHashMap<KType, VType> map = new KTypeVTypeInterleavedHashMap<KType, VType>(keys.length);
+
+        for (int i = 0; i < keys.length; i++) {
+            map.put(keys[i], values[i]);
+        }
+        return map;
+    }
+
+    /**
+     * Create a hash map from another associative container. (constructor shortcut) Default load factor is used.
+     */
+    public static <KType, VType> KTypeVTypeInterleavedHashMap<KType, VType> from(
+            final KTypeVTypeAssociativeContainer<KType, VType> container) {
+        return new KTypeVTypeInterleavedHashMap<KType, VType>(container);
+    }
+
+    /**
+     * Create a new hash map without providing the full generic signature
+     * (constructor shortcut).
+     */
+    public static <KType, VType> KTypeVTypeInterleavedHashMap<KType, VType> newInstance() {
+        return new KTypeVTypeInterleavedHashMap<KType, VType>();
+    }
+
+    /**
+     * Create a new hash map with initial capacity and load factor control.
+     * (constructor shortcut).
+     */
+    public static <KType, VType> KTypeVTypeInterleavedHashMap<KType, VType> newInstance(final int initialCapacity,
+            final double loadFactor) {
+        return new KTypeVTypeInterleavedHashMap<KType, VType>(initialCapacity, loadFactor);
+    }
+
+    /**
+     * Returns the "default value" value used in containers methods returning
+     * "default value"
+     */
+    @Override
+    public VType getDefaultValue() {
+        return this.defaultValue;
+    }
+
+    /**
+     * Set the "default value" value to be used in containers methods returning
+     * "default value"
+     */
+    @Override
+    public void setDefaultValue(final VType defaultValue) {
+        this.defaultValue = defaultValue;
+    }
+
+    /**
+     * The value as stored in {@link #pairs}.
+     */
+    private KType toBits(final VType value) {
+
+        /*! #if ($TemplateOptions.isKType("INT") && $TemplateOptions.isVType("FLOAT"))
+        return Float.floatToRawIntBits(value);
+        #elseif ($TemplateOptions.isKType("LONG") && $TemplateOptions.isVType("DOUBLE"))
+        return Double.doubleToRawLongBits(value);
+        #else !*/
+        return Intrinsics.<KType> cast(value);
+        /*! #end !*/
+    }
+
+    /**
+     * The value stored as <code>bits</code> in {@link #pairs}.
+     */
+    private VType fromBits(final KType bits) {
+
+        /*! #if ($TemplateOptions.isKType("INT") && $TemplateOptions.isVType("FLOAT"))
+        return Float.intBitsToFloat(bits);
+        #elseif ($TemplateOptions.isKType("LONG") && $TemplateOptions.isVType("DOUBLE"))
+        return Double.longBitsToDouble(bits);
+        #else !*/
+        return Intrinsics.<VType> cast(bits);
+        /*! #end !*/
+    }
+
+    /*! #if ($TemplateOptions.declareInline("REHASH(value)",
+    "<*,*>==>BitMixer.mix(value , this.perturbation)")) !*/
+    /**
+     * REHASH method for rehashing the keys.
+     * (inlined in generated code)
+     * Thanks to single array mode, no need to check for null/0 or booleans.
+     */
+    private int REHASH(final KType value) {
+
+        return BitMixer.mix(value.hashCode(), this.perturbation);
+    }
+
+    /*! #end !*/
+
+    /*! #if ($TemplateOptions.declareInline("REHASH2(value, perturb)",
+    "<*,*>==>BitMixer.mix(value , perturb)")) !*/
+    /**
+     * REHASH2 method for rehashing the keys with perturbation seed as parameter
+     * (inlined in generated code)
+     * Thanks to single array mode, no need to check for null/0 or booleans.
+     */
+    private int REHASH2(final KType value, final int perturb) {
+
+        return BitMixer.mix(value.hashCode(), perturb);
+    }
+    /*! #end !*/
+
+    /*! #if ($TemplateOptions.declareInline("KEYEQUALS(key1, key2)",
+    "<*,*>==>Intrinsics.<KType> equalsNotNull(key1, key2)")) !*/
+    /**
+     * macro which hides the applied equality criteria
+     */
+    private boolean KEYEQUALS(final KType key1, final KType key2) {
+
+        return Intrinsics.<KType> equalsNotNull(key1, key2);
+    }
+    /*! #end !*/
+}
@@ -0,0 +1,1888 @@
+package com.carrotsearch.hppcrt.maps;
+
+import com.carrotsearch.hppcrt.*;
+import com.carrotsearch.hppcrt.cursors.*;
+import com.carrotsearch.hppcrt.predicates.*;
+import com.carrotsearch.hppcrt.procedures.*;
+import com.carrotsearch.hppcrt.hash.*;
+
+/*! #import("com/carrotsearch/hppcrt/Intrinsics.java") !*/
+/**
+ * A hash map of <code>KType</code> to <code>VType</code>, implemented using open
+ * addressing with linear probing for collision resolution, which in addition
+ * maintains a predictable iteration order, like <code>java.util.LinkedHashMap</code>.
+ *
+#if ($TemplateOptions.KTypeGeneric)
+ * <p> In addition, the hashing strategy can be changed
+ * by overriding ({@link #equalKeys(Object, Object)} and {@link #hashKey(Object)}) together,
+ * which then replaces the usual ({@link #equals(Object)} and {@link #hashCode()}) from the keys themselves.
+ * This is useful to define the equivalence of keys when the user has no control over the keys implementation.
+ * </p>
+#end
+ * <p>
+ * The entries are chained in a doubly-linked list, whose links are stored in a
+ * parallel <code>long</code> array ({@link #beforeAfterPointers}) in the same fashion as
+ * {@link KTypeLinkedList}, so that no per-entry object is ever allocated.
+ * The iteration order is either the insertion order (the default), or the access order
+ * (see {@link #KTypeVTypeLinkedHashMap(int, double, boolean)}), from the eldest to the youngest
+ * entry. Re-inserting an already present key does not change the insertion order.
+ * </p>
+ * <p>
+ * In access order, put(), get(), putOrAdd() and addTo() on a present key make it the youngest entry,
+ * while containsKey() and putIfAbsent() leave the order unchanged.
+ * The map can then be used as a LRU cache, by either setting a maximum size ({@link #setMaxSize(int)})
+ * or overriding {@link #removeEldestEntry(Object, Object)}.
+ * </p>
+ * <p>
+ * The internal buffers of this implementation ({@link #keys}, {@link #values}, {@link #beforeAfterPointers}),
+ * are always allocated to the nearest size that is a power of two. When
+ * the capacity exceeds the given load factor, the buffer size is doubled.
+ * </p>
+ *
+ * <p><b>Important note.</b> The implementation uses power-of-two tables and linear
+ * probing, which may cause poor performance (many collisions) if hash values are
+ * not properly distributed.
+ *
+ *
+#if ($TemplateOptions.KTypeGeneric)
+ * <p>This implementation supports <code>null</code> keys. </p>
+#end
+#if ($TemplateOptions.VTypeGeneric)
+ * <p>This implementation supports <code>null</code> values.</p>
+#end
+ *
+ */
+/*! ${TemplateOptions.generatedAnnotation} !*/
+public class KTypeVTypeLinkedHashMap<KType, VType>
+implements KTypeVTypeMap<KType, VType>, Cloneable
+{
+    protected VType defaultValue = Intrinsics.<VType> empty();
+
+    /**
+     * Hash-indexed array holding all keys.
+     * <p>
+     * Direct map iteration: iterate  {keys[i], values[i]} for i in [0; keys.length[ where keys[i] != 0/null, then also
+     * {0/null, {@link #allocatedDefaultKeyValue} } is in the map if {@link #allocatedDefaultKey} = true.
+     * </p>
+     */
+    public/*! #if ($TemplateOptions.KTypePrimitive)
+          KType []
+          #else !*/
+    Object[]
+            /*! #end !*/
+            keys;
+
+    /**
+     * Hash-indexed array holding all values associated to the keys.
+     * stored in {@link #keys}.
+     */
+    public/*! #if ($TemplateOptions.VTypePrimitive)
+          VType []
+          #else !*/
+    Object[]
+            /*! #end !*/
+            values;
+
+    /**
+     * Links of the ordered list of entries, of size keys.length + 2:
+     * beforeAfterPointers[i] holds the (before, after) node indices of the entry at slot i,
+     * packed as a long, node keys.length being the entry of the key 0/null, and
+     * node keys.length + 1 the head of the circular list, whose 'after' is the eldest entry
+     * and whose 'before' is the youngest one.
+     */
+    public long[] beforeAfterPointers;
+
+    /**
+     * True if key = 0/null is in the map.
+     */
+    public boolean allocatedDefaultKey = false;
+
+    /**
+     * if allocatedDefaultKey = true, contains the associated V to the key = 0/null
+     */
+    public VType allocatedDefaultKeyValue;
+
+    /**
+     * Cached number of assigned slots in {@link #keys}.
+     */
+    protected int assigned;
+
+    /**
+     * The load factor for this map (fraction of allocated slots
+     * before the buffers must be rehashed or reallocated).
+     */
+    protected final double loadFactor;
+
+    /**
+     * True if the entries are ordered by access, false if ordered by insertion.
+     */
+    protected final boolean accessOrder;
+
+    /**
+     * Maximum number of entries before the eldest ones are evicted, see {@link #setMaxSize(int)}.
+     */
+    protected int maxSize = Integer.MAX_VALUE;
+
+    /**
+     * Resize buffers when {@link #keys} hits this value.
+     */
+    private int resizeAt;
+
+    /**
+     * Per-instance size perturbation
+     * introduced in rehashing to create a unique key distribution.
+     */
+    private final int perturbation = Containers.randomSeed32();
+
+    /*! #if ($TemplateOptions.KTypeGeneric) !*/
+
+    /**
+     * Override this method, together with {@link #equalKeys(Object, Object)}
+     * to customize the hashing strategy. Note that this method is guaranteed
+     * to be called with a non-null key argument.
+     * By default, this method calls key.{@link #hashCode()}.
+     * @param key KType to be hashed.
+     * @return the hashed value of key, following the same semantic
+     * as {@link #hashCode()};
+     * @see #hashCode()
+     * @see #equalKeys(Object, Object)
+     */
+    protected int hashKey(final KType key) {
+
+        //default maps on Object.hashCode()
+        return key.hashCode();
+    }
+
+    /**
+     * Override this method together with {@link #hashKey(Object)}
+     * to customize the hashing strategy. Note that this method is guaranteed
+     * to be called with both non-null arguments.
+     * By default, this method calls a.{@link #equals(b)}.
+     * @param a not-null KType to be compared
+     * @param b not-null KType to be compared
+     * @return true if a and b are considered equal, following the same
+     * semantic as {@link #equals(Object)}.
+     * @see #equals(Object)
+     * @see #hashKey(Object)
+     */
+    protected boolean equalKeys(final KType a, final KType b) {
+
+        //default maps on Object.equals()
+        return Intrinsics.<KType> equalsNotNull(a, b);
+    }
+
+    /*! #end !*/
+
+    /**
+     * Default constructor: Creates an insertion-ordered hash map with the default capacity of {@link Containers#DEFAULT_EXPECTED_ELEMENTS},
+     * load factor of {@link HashContainers#DEFAULT_LOAD_FACTOR}.
+     *
+     * <p>See class notes about hash distribution importance.</p>
+     */
+    public KTypeVTypeLinkedHashMap() {
+        this(Containers.DEFAULT_EXPECTED_ELEMENTS);
+    }
+
+    /**
+     * Creates an insertion-ordered hash map with the given initial capacity, default load factor of
+     * {@link HashContainers#DEFAULT_LOAD_FACTOR}.
+     *
+     * <p>See class notes about hash distribution importance.</p>
+     *
+     * @param initialCapacity Initial capacity (greater than zero and automatically
+     *            rounded to the next power of two).
+     */
+    public KTypeVTypeLinkedHashMap(final int initialCapacity) {
+        this(initialCapacity, HashContainers.DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Creates an insertion-ordered hash map with the given initial capacity,
+     * load factor.
+     *
+     * @param loadFactor The load factor (greater than zero and smaller than 1).
+     */
+    public KTypeVTypeLinkedHashMap(final int initialCapacity, final double loadFactor) {
+        this(initialCapacity, loadFactor, false);
+    }
+
+    /**
+     * Creates a hash map with the given initial capacity,
+     * load factor, and ordering mode.
+     *
+     * @param loadFactor The load factor (greater than zero and smaller than 1).
+     * @param accessOrder true to iterate in access order, from the least recently accessed entry to the most recently accessed one,
+     * false to iterate in insertion order.
+     */
+    public KTypeVTypeLinkedHashMap(final int initialCapacity, final double loadFactor, final boolean accessOrder) {
+        this.loadFactor = loadFactor;
+        this.accessOrder = accessOrder;
+        //take into account of the load factor to guarantee no reallocations before reaching  initialCapacity.
+        allocateBuffers(HashContainers.minBufferSize(initialCapacity, loadFactor));
+    }
+
+    /**
+     * Create an insertion-ordered hash map from all key-value pairs of another container,
+     * in the iteration order of the container.
+     */
+    public KTypeVTypeLinkedHashMap(final KTypeVTypeAssociativeContainer<KType, VType> container) {
+        this(container.size());
+        putAll(container);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>A new key becomes the youngest entry. In access order, so does an already present key.</p>
+     */
+    @Override
+    public VType put(KType key, VType value) {
+
+        if (Intrinsics.<KType> isEmpty(key)) {
+
+            if (this.allocatedDefaultKey) {
+
+                final VType previousValue = this.allocatedDefaultKeyValue;
+                this.allocatedDefaultKeyValue = value;
+
+                if (this.accessOrder) {
+                    moveToLast(this.keys.length);
+                }
+
+                return previousValue;
+            }
+
+            this.allocatedDefaultKeyValue = value;
+            this.allocatedDefaultKey = true;
+
+            linkLast(this.beforeAfterPointers, this.keys.length);
+            afterInsertion();
+
+            return this.defaultValue;
+        }
+
+        final int mask = this.keys.length - 1;
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+
+        int slot = REHASH(key) & mask;
+        KType existing;
+
+        while (!Intrinsics.<KType> isEmpty(existing = keys[slot])) {
+
+            if (KEYEQUALS(key, existing)) {
+
+                final VType oldValue = Intrinsics.<VType> cast(this.values[slot]);
+                this.values[slot] = value;
+
+                if (this.accessOrder) {
+                    moveToLast(slot);
+                }
+
+                return oldValue;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        // Check if we need to grow. If so, reallocate new data, fill in the last element
+        // and rehash.
+        if (this.assigned == this.resizeAt) {
+
+            expandAndPut(key, value, slot);
+        } else {
+            this.assigned++;
+
+            keys[slot] = key;
+            this.values[slot] = value;
+
+            linkLast(this.beforeAfterPointers, slot);
+        }
+
+        afterInsertion();
+
+        return this.defaultValue;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int putAll(final KTypeVTypeAssociativeContainer<? extends KType, ? extends VType> container) {
+        return putAll((Iterable<? extends KTypeVTypeCursor<? extends KType, ? extends VType>>) container);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int putAll(final Iterable<? extends KTypeVTypeCursor<? extends KType, ? extends VType>> iterable) {
+        final int count = this.size();
+        for (final KTypeVTypeCursor<? extends KType, ? extends VType> c : iterable) {
+            put(c.key, c.value);
+        }
+        return this.size() - count;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>The order of an already present key is never changed.</p>
+     */
+    @Override
+    public boolean putIfAbsent(final KType key, final VType value) {
+        if (!containsKey(key)) {
+            put(key, value);
+            return true;
+        }
+        return false;
+    }
+
+    /*! #if ($TemplateOptions.VTypePrimitive) !*/
+    /**
+     * If <code>key</code> exists, <code>putValue</code> is inserted into the map,
+     * otherwise any existing value is incremented by <code>additionValue</code>.
+     *
+     * @param key
+     *          The key of the value to adjust.
+     * @param putValue
+     *          The value to put if <code>key</code> does not exist.
+     * @param incrementValue
+     *          The value to add to the existing value if <code>key</code> exists.
+     * @return Returns the current value associated with <code>key</code> (after
+     *         changes).
+     */
+    @SuppressWarnings("cast")
+    @Override
+    public VType putOrAdd(final KType key, VType putValue, final VType incrementValue) {
+
+        if (containsKey(key)) {
+            putValue = get(key);
+
+            putValue = (VType) (Intrinsics.<VType> add(putValue, incrementValue));
+        }
+
+        put(key, putValue);
+        return putValue;
+    }
+
+    /*! #end !*/
+
+    /*! #if ($TemplateOptions.VTypePrimitive) !*/
+    /**
+     * Adds <code>incrementValue</code> to any existing value for the given <code>key</code>
+     * or inserts <code>incrementValue</code> if <code>key</code> did not previously exist.
+     *
+     * @param key The key of the value to adjust.
+     * @param incrementValue The value to put or add to the existing value if <code>key</code> exists.
+     * @return Returns the current value associated with <code>key</code> (after changes).
+     */
+    @Override
+    public VType addTo(final KType key, final VType incrementValue)
+    {
+        return putOrAdd(key, incrementValue, incrementValue);
+    }
+
+    /*! #end !*/
+
+    /**
+     * Expand the internal storage buffers (capacity) and rehash,
+     * in the order of the entries.
+     */
+    private void expandAndPut(final KType pendingKey, final VType pendingValue, final int freeSlot) {
+        assert this.assigned == this.resizeAt;
+
+        //default sentinel value is never in the keys[] array, so never trigger reallocs
+        assert !Intrinsics.<KType> isEmpty(pendingKey);
+
+        // Try to allocate new buffers first. If we OOM, it'll be now without
+        // leaving the data structure in an inconsistent state.
+        final KType[] oldKeys = Intrinsics.<KType[]> cast(this.keys);
+        final VType[] oldValues = Intrinsics.<VType[]> cast(this.values);
+        final long[] oldLinks = this.beforeAfterPointers;
+
+        allocateBuffers(HashContainers.nextBufferSize(this.keys.length, this.assigned, this.loadFactor));
+
+        // We have succeeded at allocating new data so insert the pending key/value at
+        // the free slot in the old arrays before rehashing.
+        this.assigned++;
+
+        oldKeys[freeSlot] = pendingKey;
+        oldValues[freeSlot] = pendingValue;
+        linkLast(oldLinks, freeSlot);
+
+        //Variables for adding
+        final int mask = this.keys.length - 1;
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+        final VType[] values = Intrinsics.<VType[]> cast(this.values);
+        final long[] links = this.beforeAfterPointers;
+
+        final int perturb = this.perturbation;
+
+        final int oldSentinel = oldLinks.length - 1;
+
+        //Rehash all stored keys into the new buffers, following the list order
+        //so that the new list is built by appending only.
+        for (int node = getLinkAfter(oldLinks[oldSentinel]); node != oldSentinel; node = getLinkAfter(oldLinks[node])) {
+
+            int slot;
+
+            if (node == oldKeys.length) {
+                //the key 0/null, which moves to the new default node
+                slot = keys.length;
+            } else {
+                final KType key = oldKeys[node];
+
+                slot = REHASH2(key, perturb) & mask;
+
+                //similar to put(), except all inserted keys are known to be unique.
+                while (is_allocated(slot, keys)) {
+                    slot = (slot + 1) & mask;
+                } //end while
+
+                keys[slot] = key;
+                values[slot] = oldValues[node];
+            }
+
+            linkLast(links, slot);
+        }
+    }
+
+    /**
+     * Allocate internal buffers for a given capacity.
+     *
+     * @param capacity New capacity (must be a power of two).
+     */
+    @SuppressWarnings("boxing")
+    private void allocateBuffers(final int capacity) {
+        try {
+
+            final KType[] keys = Intrinsics.<KType> newArray(capacity);
+            final VType[] values = Intrinsics.<VType> newArray(capacity);
+            final long[] links = new long[capacity + 2];
+
+            //empty list : the head points to itself
+            links[capacity + 1] = getLinkNodeValue(capacity + 1, capacity + 1);
+
+            this.keys = keys;
+            this.values = values;
+            this.beforeAfterPointers = links;
+
+            //allocate so that there is at least one slot that remains allocated = false
+            //this is compulsory to guarantee proper stop in searching loops
+            this.resizeAt = HashContainers.expandAtCount(capacity, this.loadFactor);
+        } catch (final OutOfMemoryError e) {
+
+            throw new BufferAllocationException(
+                    "Not enough memory to allocate buffers to grow from %d -> %d elements",
+                    e,
+                    (this.keys == null) ? 0 : this.keys.length,
+                            capacity);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public VType remove(final KType key) {
+
+        if (Intrinsics.<KType> isEmpty(key)) {
+
+            if (this.allocatedDefaultKey) {
+
+                final VType previousValue = this.allocatedDefaultKeyValue;
+
+                removeDefaultKey();
+
+                return previousValue;
+            }
+
+            return this.defaultValue;
+        }
+
+        final int mask = this.keys.length - 1;
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+
+        int slot = REHASH(key) & mask;
+        KType existing;
+
+        while (!Intrinsics.<KType> isEmpty(existing = keys[slot])) {
+
+            if (KEYEQUALS(key, existing)) {
+
+                final VType value = Intrinsics.<VType> cast(this.values[slot]);
+
+                shiftConflictingKeys(slot);
+
+                return value;
+            }
+            slot = (slot + 1) & mask;
+        } //end while true
+
+        return this.defaultValue;
+    }
+
+    /**
+     * Unlink the entry at <code>gapSlot</code>, then shift all the slot-conflicting keys
+     * allocated to (and including) <code>gapSlot</code>, moving their links along.
+     */
+    private void shiftConflictingKeys(int gapSlot) {
+        final int mask = this.keys.length - 1;
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+        final VType[] values = Intrinsics.<VType[]> cast(this.values);
+        final long[] links = this.beforeAfterPointers;
+
+        final int perturb = this.perturbation;
+
+        unlink(links, gapSlot);
+
+        // Perform shifts of conflicting keys to fill in the gap.
+        int distance = 0;
+        while (true) {
+
+            final int slot = (gapSlot + (++distance)) & mask;
+
+            final KType existing = keys[slot];
+            final VType existingValue = values[slot];
+
+            if (Intrinsics.<KType> isEmpty(existing)) {
+                break;
+            }
+
+            final int idealSlotModMask = REHASH2(existing, perturb) & mask;
+
+            //original HPPC code: shift = (slot - idealSlot) & mask;
+            //equivalent to shift = (slot & mask - idealSlot & mask) & mask;
+            //since slot and idealSlotModMask are already folded, we have :
+            final int shift = (slot - idealSlotModMask) & mask;
+
+            if (shift >= distance) {
+                // Entry at this position was originally at or before the gap slot.
+                // Move the conflict-shifted entry to the gap's position and repeat the procedure
+                // for any entries to the right of the current position, treating it
+                // as the new gap.
+                keys[gapSlot] = existing;
+                values[gapSlot] = existingValue;
+
+                //the list neighbours now point to the new position
+                moveNode(links, slot, gapSlot);
+
+                gapSlot = slot;
+                distance = 0;
+            }
+        } //end while
+
+        // Mark the last found gap slot without a conflict as empty.
+        keys[gapSlot] = Intrinsics.<KType> empty();
+
+        /* #if ($TemplateOptions.VTypeGeneric) */
+        values[gapSlot] = Intrinsics.<VType> empty();
+        /* #end */
+
+        this.assigned--;
+    }
+
+    /**
+     * Remove the key 0/null, which must be in the map.
+     */
+    private void removeDefaultKey() {
+
+        assert this.allocatedDefaultKey;
+
+        unlink(this.beforeAfterPointers, this.keys.length);
+
+        this.allocatedDefaultKey = false;
+
+        /*! #if ($TemplateOptions.VTypeGeneric) !*/
+        //help the GC
+        this.allocatedDefaultKeyValue = Intrinsics.<VType> empty();
+        /*! #end !*/
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public int removeAll(final KTypeContainer<? super KType> other) {
+        final int before = this.size();
+
+        //1) other is a KTypeLookupContainer, so with fast lookup guarantees
+        //and is bigger than this, so take advantage of both and iterate over this
+        //and test other elements by their contains().
+        if (other.size() >= before && other instanceof KTypeLookupContainer<?>) {
+
+            if (this.allocatedDefaultKey) {
+
+                if (other.contains(Intrinsics.<KType> empty())) {
+
+                    removeDefaultKey();
+                }
+            }
+
+            final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+
+            for (int i = 0; i < keys.length;) {
+                KType existing;
+                if (!Intrinsics.<KType> isEmpty(existing = keys[i]) && other.contains(existing)) {
+
+                    shiftConflictingKeys(i);
+                    // Shift, do not increment slot.
+                } else {
+                    i++;
+                }
+            }
+        } else {
+            //2) Do not use contains() from container, which may lead to O(n**2) execution times,
+            //so it iterate linearly and call remove() from map which is O(1).
+            for (final KTypeCursor<? super KType> c : other) {
+
+                remove(Intrinsics.<KType> cast(c.value));
+            }
+        }
+
+        return before - this.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int removeAll(final KTypePredicate<? super KType> predicate) {
+        final int before = this.size();
+
+        if (this.allocatedDefaultKey) {
+
+            if (predicate.apply(Intrinsics.<KType> empty())) {
+
+                removeDefaultKey();
+            }
+        }
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+
+        for (int i = 0; i < keys.length;) {
+            KType existing;
+            if (!Intrinsics.<KType> isEmpty(existing = keys[i]) && predicate.apply(existing)) {
+
+                shiftConflictingKeys(i);
+                // Shift, do not increment slot.
+            } else {
+                i++;
+            }
+        }
+
+        return before - this.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int removeAll(final KTypeVTypePredicate<? super KType, ? super VType> predicate) {
+        final int before = this.size();
+
+        if (this.allocatedDefaultKey) {
+
+            if (predicate.apply(Intrinsics.<KType> empty(), this.allocatedDefaultKeyValue)) {
+
+                removeDefaultKey();
+            }
+        }
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+        final VType[] values = Intrinsics.<VType[]> cast(this.values);
+
+        for (int i = 0; i < keys.length;) {
+            KType existing;
+            if (!Intrinsics.<KType> isEmpty(existing = keys[i]) && predicate.apply(existing, values[i])) {
+
+                shiftConflictingKeys(i);
+                // Shift, do not increment slot.
+            } else {
+                i++;
+            }
+        }
+
+        return before - this.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>In access order, a found key becomes the youngest entry.</p>
+     */
+    @Override
+    public VType get(final KType key) {
+        if (Intrinsics.<KType> isEmpty(key)) {
+
+            if (this.allocatedDefaultKey) {
+
+                if (this.accessOrder) {
+                    moveToLast(this.keys.length);
+                }
+
+                return this.allocatedDefaultKeyValue;
+            }
+
+            return this.defaultValue;
+        }
+
+        final int mask = this.keys.length - 1;
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+
+        int slot = REHASH(key) & mask;
+        KType existing;
+
+        while (!Intrinsics.<KType> isEmpty(existing = keys[slot])) {
+
+            if (KEYEQUALS(key, existing)) {
+
+                if (this.accessOrder) {
+                    moveToLast(slot);
+                }
+
+                return Intrinsics.<VType> cast(this.values[slot]);
+            }
+            slot = (slot + 1) & mask;
+        } //end while true
+
+        return this.defaultValue;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>The order of the entries is never changed.</p>
+     */
+    @Override
+    public boolean containsKey(final KType key) {
+
+        return slotOf(key) >= 0;
+    }
+
+    /**
+     * Return the node of <code>key</code>, i.e. its slot, or keys.length for the key 0/null,
+     * or -1 if the key is not in the map. The order of the entries is not changed.
+     */
+    private int slotOf(final KType key) {
+
+        if (Intrinsics.<KType> isEmpty(key)) {
+
+            return this.allocatedDefaultKey ? this.keys.length : -1;
+        }
+
+        final int mask = this.keys.length - 1;
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+
+        int slot = REHASH(key) & mask;
+        KType existing;
+
+        while (!Intrinsics.<KType> isEmpty(existing = keys[slot])) {
+
+            if (KEYEQUALS(key, existing)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        } //end while true
+
+        return -1;
+    }
+
+    /**
+     * Return the eldest key of the map, i.e the first one to be iterated.
+     * Precondition : the map must not be empty.
+     */
+    public KType eldestKey() {
+
+        assert size() > 0;
+
+        final int node = getLinkAfter(this.beforeAfterPointers[this.keys.length + 1]);
+
+        if (node == this.keys.length) {
+
+            return Intrinsics.<KType> empty();
+        }
+
+        return Intrinsics.<KType> cast(this.keys[node]);
+    }
+
+    /**
+     * Return the value associated to {@link #eldestKey()}.
+     * Precondition : the map must not be empty.
+     */
+    public VType eldestValue() {
+
+        assert size() > 0;
+
+        final int node = getLinkAfter(this.beforeAfterPointers[this.keys.length + 1]);
+
+        if (node == this.keys.length) {
+
+            return this.allocatedDefaultKeyValue;
+        }
+
+        return Intrinsics.<VType> cast(this.values[node]);
+    }
+
+    /**
+     * Remove the eldest entry of the map, i.e the first one to be iterated.
+     * Precondition : the map must not be empty.
+     * @return the value of the removed entry.
+     */
+    public VType removeEldest() {
+
+        assert size() > 0;
+
+        final int node = getLinkAfter(this.beforeAfterPointers[this.keys.length + 1]);
+
+        if (node == this.keys.length) {
+
+            final VType previousValue = this.allocatedDefaultKeyValue;
+
+            removeDefaultKey();
+
+            return previousValue;
+        }
+
+        final VType value = Intrinsics.<VType> cast(this.values[node]);
+
+        shiftConflictingKeys(node);
+
+        return value;
+    }
+
+    /**
+     * Set the maximum number of entries of the map : once a new key is inserted
+     * over this size, the eldest entry is evicted. The eldest entries are immediately evicted
+     * if the map is already bigger.
+     * <p>Note that eviction takes place after insertion, so the map must be sized
+     * to maxSize + 1 to never reallocate.</p>
+     * @param maxSize maximum number of entries, greater than zero.
+     * @see #removeEldestEntry(Object, Object)
+     */
+    public void setMaxSize(final int maxSize) {
+
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be greater than zero: " + maxSize);
+        }
+
+        this.maxSize = maxSize;
+
+        while (size() > maxSize) {
+            removeEldest();
+        }
+    }
+
+    /**
+     * Return the maximum number of entries of the map, Integer.MAX_VALUE if not bounded.
+     * @see #setMaxSize(int)
+     */
+    public int getMaxSize() {
+        return this.maxSize;
+    }
+
+    /**
+     * Called after each insertion of a new key, to decide whether the eldest entry
+     * must be removed. Override this method to implement an eviction policy, or to be notified of
+     * the evicted entries. The map must not be modified by this method.
+     * By default, returns true if the size of the map exceeds {@link #getMaxSize()}.
+     * @param eldestKey the eldest key of the map, which may be the just inserted one.
+     * @param eldestValue the value associated to eldestKey.
+     * @return true to remove the eldest entry from the map.
+     */
+    protected boolean removeEldestEntry(final KType eldestKey, final VType eldestValue) {
+
+        return size() > this.maxSize;
+    }
+
+    /**
+     * Apply the eviction policy after the insertion of a new key.
+     */
+    private void afterInsertion() {
+
+        if (removeEldestEntry(eldestKey(), eldestValue())) {
+
+            removeEldest();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear() {
+        this.assigned = 0;
+
+        // States are always cleared.
+        this.allocatedDefaultKey = false;
+
+        /*! #if ($TemplateOptions.VTypeGeneric) !*/
+        //help the GC
+        this.allocatedDefaultKeyValue = Intrinsics.<VType> empty();
+        /*! #end !*/
+
+        //Faster than Arrays.fill(keys, null); // Help the GC.
+        KTypeArrays.blankArray(this.keys, 0, this.keys.length);
+
+        /*! #if ($TemplateOptions.VTypeGeneric) !*/
+        //Faster than Arrays.fill(values, null); // Help the GC.
+        VTypeArrays.<VType> blankArray(Intrinsics.<VType[]> cast(this.values), 0, this.values.length);
+        /*! #end !*/
+
+        //empty the list, the links of the other nodes are not significant.
+        final int head = this.keys.length + 1;
+        this.beforeAfterPointers[head] = getLinkNodeValue(head, head);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size() {
+        return this.assigned + (this.allocatedDefaultKey ? 1 : 0);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int capacity() {
+
+        return this.resizeAt;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Note that an empty container may still contain many deleted keys (that occupy buffer
+     * space). Adding even a single element to such a container may cause rehashing.</p>
+     */
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * True if the entries are iterated in access order, false if in insertion order.
+     */
+    public boolean isAccessOrder() {
+        return this.accessOrder;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+        int h = 0;
+
+        if (this.allocatedDefaultKey) {
+            h += BitMixer.mix(this.allocatedDefaultKeyValue);
+        }
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+        final VType[] values = Intrinsics.<VType[]> cast(this.values);
+
+        for (int i = keys.length; --i >= 0;) {
+            KType existing;
+            if (!Intrinsics.<KType> isEmpty(existing = keys[i])) {
+
+                h += BitMixer.mix(existing) ^ BitMixer.mix(values[i]);
+            }
+        }
+
+        return h;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>Like <code>java.util.LinkedHashMap</code>, the order of the entries
+     * is not taken into account, nor changed.</p>
+     */
+    @Override
+    public boolean equals(final Object obj) {
+        if (obj != null) {
+            if (obj == this) {
+                return true;
+            }
+
+            //must be of the same class, subclasses are not comparable
+            if (obj.getClass() != this.getClass()) {
+                return false;
+            }
+
+            /* #if ($TemplateOptions.AnyGeneric) */
+            @SuppressWarnings("unchecked")
+            final/* #end */
+            KTypeVTypeLinkedHashMap<KType, VType> other = (KTypeVTypeLinkedHashMap<KType, VType>) obj;
+
+            //must be of the same size
+            if (other.size() != this.size()) {
+                return false;
+            }
+
+            final EntryIterator it = this.iterator();
+
+            while (it.hasNext()) {
+                final KTypeVTypeCursor<KType, VType> c = it.next();
+
+                //do not use other.get(), which may change the order of other.
+                final int otherNode = other.slotOf(c.key);
+
+                if (otherNode < 0) {
+                    //recycle
+                    it.release();
+                    return false;
+                }
+
+                final VType otherValue = (otherNode == other.keys.length) ? other.allocatedDefaultKeyValue : Intrinsics
+                        .<VType> cast(other.values[otherNode]);
+
+                if (!Intrinsics.<VType> equals(c.value, otherValue)) {
+                    //recycle
+                    it.release();
+                    return false;
+                }
+            } //end while
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * An iterator implementation for {@link #iterator}, from the eldest to the youngest entry.
+     * Holds a KTypeVTypeCursor returning
+     * (key, value, index) = (KType key, VType value, index the position in keys {@link KTypeVTypeLinkedHashMap#keys}, or keys.length for key = 0/null)
+     */
+    public final class EntryIterator extends AbstractIterator<KTypeVTypeCursor<KType, VType>>
+    {
+        public final KTypeVTypeCursor<KType, VType> cursor;
+
+        public EntryIterator() {
+            this.cursor = new KTypeVTypeCursor<KType, VType>();
+            this.cursor.index = -2;
+        }
+
+        @Override
+        protected KTypeVTypeCursor<KType, VType> fetch() {
+
+            final long[] links = KTypeVTypeLinkedHashMap.this.beforeAfterPointers;
+
+            //the iteration starts at the head of the list, at keys.length + 1
+            final int node = getLinkAfter(links[this.cursor.index]);
+
+            if (node == links.length - 1) {
+                return done();
+            }
+
+            this.cursor.index = node;
+
+            if (node == KTypeVTypeLinkedHashMap.this.keys.length) {
+
+                this.cursor.key = Intrinsics.<KType> empty();
+                this.cursor.value = KTypeVTypeLinkedHashMap.this.allocatedDefaultKeyValue;
+            } else {
+
+                this.cursor.key = Intrinsics.<KType> cast(KTypeVTypeLinkedHashMap.this.keys[node]);
+                this.cursor.value = Intrinsics.<VType> cast(KTypeVTypeLinkedHashMap.this.values[node]);
+            }
+
+            return this.cursor;
+        }
+    }
+
+    /**
+     * internal pool of EntryIterator
+     */
+    protected final IteratorPool<KTypeVTypeCursor<KType, VType>, EntryIterator> entryIteratorPool = new IteratorPool<KTypeVTypeCursor<KType, VType>, EntryIterator>(
+            new ObjectFactory<EntryIterator>() {
+
+                @Override
+                public EntryIterator create() {
+                    return new EntryIterator();
+                }
+
+                @Override
+                public void initialize(final EntryIterator obj) {
+                    obj.cursor.index = KTypeVTypeLinkedHashMap.this.keys.length + 1;
+                }
+
+                @Override
+                public void reset(final EntryIterator obj) {
+                    /*! #if ($TemplateOptions.KTypeGeneric) !*/
+                    obj.cursor.key = null;
+                    /*! #end !*/
+
+                    /*! #if ($TemplateOptions.VTypeGeneric) !*/
+                    obj.cursor.value = null;
+                    /*! #end !*/
+                }
+            });
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public EntryIterator iterator() {
+        //return new EntryIterator();
+        return this.entryIteratorPool.borrow();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>The entries are visited from the eldest to the youngest.</p>
+     */
+    @Override
+    public <T extends KTypeVTypeProcedure<? super KType, ? super VType>> T forEach(final T procedure) {
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+        final VType[] values = Intrinsics.<VType[]> cast(this.values);
+        final long[] links = this.beforeAfterPointers;
+
+        final int head = links.length - 1;
+
+        for (int node = getLinkAfter(links[head]); node != head; node = getLinkAfter(links[node])) {
+
+            if (node == keys.length) {
+                procedure.apply(Intrinsics.<KType> empty(), this.allocatedDefaultKeyValue);
+            } else {
+                procedure.apply(keys[node], values[node]);
+            }
+        }
+
+        return procedure;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>The entries are visited from the eldest to the youngest.</p>
+     */
+    @Override
+    public <T extends KTypeVTypePredicate<? super KType, ? super VType>> T forEach(final T predicate) {
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+        final VType[] values = Intrinsics.<VType[]> cast(this.values);
+        final long[] links = this.beforeAfterPointers;
+
+        final int head = links.length - 1;
+
+        for (int node = getLinkAfter(links[head]); node != head; node = getLinkAfter(links[node])) {
+
+            if (node == keys.length) {
+
+                if (!predicate.apply(Intrinsics.<KType> empty(), this.allocatedDefaultKeyValue)) {
+                    break;
+                }
+            } else if (!predicate.apply(keys[node], values[node])) {
+                break;
+            }
+        } //end for
+
+        return predicate;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @return a new KeysCollection view of the keys of this map.
+     */
+    @Override
+    public KeysCollection keys() {
+        return new KeysCollection();
+    }
+
+    /**
+     * A view of the keys inside this map, in the order of the map.
+     */
+    public final class KeysCollection extends AbstractKTypeCollection<KType> implements KTypeLookupContainer<KType>
+    {
+        private final KTypeVTypeLinkedHashMap<KType, VType> owner = KTypeVTypeLinkedHashMap.this;
+
+        @Override
+        public boolean contains(final KType e) {
+            return containsKey(e);
+        }
+
+        @Override
+        public <T extends KTypeProcedure<? super KType>> T forEach(final T procedure) {
+
+            final KType[] keys = Intrinsics.<KType[]> cast(this.owner.keys);
+            final long[] links = this.owner.beforeAfterPointers;
+
+            final int head = links.length - 1;
+
+            for (int node = getLinkAfter(links[head]); node != head; node = getLinkAfter(links[node])) {
+
+                if (node == keys.length) {
+                    procedure.apply(Intrinsics.<KType> empty());
+                } else {
+                    procedure.apply(keys[node]);
+                }
+            }
+
+            return procedure;
+        }
+
+        @Override
+        public <T extends KTypePredicate<? super KType>> T forEach(final T predicate) {
+
+            final KType[] keys = Intrinsics.<KType[]> cast(this.owner.keys);
+            final long[] links = this.owner.beforeAfterPointers;
+
+            final int head = links.length - 1;
+
+            for (int node = getLinkAfter(links[head]); node != head; node = getLinkAfter(links[node])) {
+
+                if (!predicate.apply((node == keys.length) ? Intrinsics.<KType> empty() : keys[node])) {
+                    break;
+                }
+            }
+
+            return predicate;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public KeysIterator iterator() {
+            //return new KeysIterator();
+            return this.keyIteratorPool.borrow();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int size() {
+            return this.owner.size();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int capacity() {
+
+            return this.owner.capacity();
+        }
+
+        @Override
+        public void clear() {
+            this.owner.clear();
+        }
+
+        @Override
+        public int removeAll(final KTypePredicate<? super KType> predicate) {
+            return this.owner.removeAll(predicate);
+        }
+
+        @Override
+        public int removeAll(final KType e) {
+            final boolean hasKey = this.owner.containsKey(e);
+            int result = 0;
+            if (hasKey) {
+                this.owner.remove(e);
+                result = 1;
+            }
+            return result;
+        }
+
+        /**
+         * internal pool of KeysIterator
+         */
+        protected final IteratorPool<KTypeCursor<KType>, KeysIterator> keyIteratorPool = new IteratorPool<KTypeCursor<KType>, KeysIterator>(
+                new ObjectFactory<KeysIterator>() {
+
+                    @Override
+                    public KeysIterator create() {
+                        return new KeysIterator();
+                    }
+
+                    @Override
+                    public void initialize(final KeysIterator obj) {
+                        obj.cursor.index = KTypeVTypeLinkedHashMap.this.keys.length + 1;
+                    }
+
+                    @Override
+                    public void reset(final KeysIterator obj) {
+                        /*! #if ($TemplateOptions.KTypeGeneric) !*/
+                        obj.cursor.value = null;
+                        /*! #end !*/
+
+                    }
+                });
+
+        @Override
+        public KType[] toArray(final KType[] target) {
+
+            final KType[] keys = Intrinsics.<KType[]> cast(this.owner.keys);
+            final long[] links = this.owner.beforeAfterPointers;
+
+            final int head = links.length - 1;
+
+            int count = 0;
+
+            for (int node = getLinkAfter(links[head]); node != head; node = getLinkAfter(links[node])) {
+
+                target[count++] = (node == keys.length) ? Intrinsics.<KType> empty() : keys[node];
+            }
+
+            assert count == this.owner.size();
+            return target;
+        }
+    };
+
+    /**
+     * An iterator over the set of keys, from the eldest to the youngest.
+     * Holds a KTypeCursor returning (value, index) = (KType key, index the position in buffer {@link KTypeVTypeLinkedHashMap#keys}, or keys.length for key = 0/null.)
+     */
+    public final class KeysIterator extends AbstractIterator<KTypeCursor<KType>>
+    {
+        public final KTypeCursor<KType> cursor;
+
+        public KeysIterator() {
+            this.cursor = new KTypeCursor<KType>();
+            this.cursor.index = -2;
+        }
+
+        @Override
+        protected KTypeCursor<KType> fetch() {
+
+            final long[] links = KTypeVTypeLinkedHashMap.this.beforeAfterPointers;
+
+            //the iteration starts at the head of the list, at keys.length + 1
+            final int node = getLinkAfter(links[this.cursor.index]);
+
+            if (node == links.length - 1) {
+                return done();
+            }
+
+            this.cursor.index = node;
+
+            if (node == KTypeVTypeLinkedHashMap.this.keys.length) {
+
+                this.cursor.value = Intrinsics.<KType> empty();
+            } else {
+
+                this.cursor.value = Intrinsics.<KType> cast(KTypeVTypeLinkedHashMap.this.keys[node]);
+            }
+
+            return this.cursor;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * @return a new ValuesCollection view of the values of this map.
+     */
+    @Override
+    public ValuesCollection values() {
+        return new ValuesCollection();
+    }
+
+    /**
+     * A view over the set of values of this map, in the order of the map.
+     */
+    public final class ValuesCollection extends AbstractKTypeCollection<VType>
+    {
+        private final KTypeVTypeLinkedHashMap<KType, VType> owner = KTypeVTypeLinkedHashMap.this;
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int size() {
+            return this.owner.size();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int capacity() {
+
+            return this.owner.capacity();
+        }
+
+        @Override
+        public boolean contains(final VType value) {
+
+            if (this.owner.allocatedDefaultKey && Intrinsics.<VType> equals(value, this.owner.allocatedDefaultKeyValue)) {
+
+                return true;
+            }
+
+            // This is a linear scan over the values, but it's in the contract, so be it.
+
+            final KType[] keys = Intrinsics.<KType[]> cast(this.owner.keys);
+            final VType[] values = Intrinsics.<VType[]> cast(this.owner.values);
+
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (is_allocated(slot, keys) && Intrinsics.<VType> equals(value, values[slot])) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public <T extends KTypeProcedure<? super VType>> T forEach(final T procedure) {
+
+            final VType[] values = Intrinsics.<VType[]> cast(this.owner.values);
+            final long[] links = this.owner.beforeAfterPointers;
+
+            final int head = links.length - 1;
+
+            for (int node = getLinkAfter(links[head]); node != head; node = getLinkAfter(links[node])) {
+
+                if (node == values.length) {
+                    procedure.apply(this.owner.allocatedDefaultKeyValue);
+                } else {
+                    procedure.apply(values[node]);
+                }
+            }
+
+            return procedure;
+        }
+
+        @Override
+        public <T extends KTypePredicate<? super VType>> T forEach(final T predicate) {
+
+            final VType[] values = Intrinsics.<VType[]> cast(this.owner.values);
+            final long[] links = this.owner.beforeAfterPointers;
+
+            final int head = links.length - 1;
+
+            for (int node = getLinkAfter(links[head]); node != head; node = getLinkAfter(links[node])) {
+
+                if (!predicate.apply((node == values.length) ? this.owner.allocatedDefaultKeyValue : values[node])) {
+                    break;
+                }
+            }
+
+            return predicate;
+        }
+
+        @Override
+        public ValuesIterator iterator() {
+            // return new ValuesIterator();
+            return this.valuesIteratorPool.borrow();
+        }
+
+        /**
+         * {@inheritDoc}
+         * Indeed removes all the (key,value) pairs matching
+         * (key ? ,  e) with the  same  e,  from  the map.
+         */
+        @Override
+        public int removeAll(final VType e) {
+            final int before = this.owner.size();
+
+            if (this.owner.allocatedDefaultKey) {
+
+                if (Intrinsics.<VType> equals(e, this.owner.allocatedDefaultKeyValue)) {
+
+                    this.owner.removeDefaultKey();
+                }
+            }
+
+            final KType[] keys = Intrinsics.<KType[]> cast(this.owner.keys);
+            final VType[] values = Intrinsics.<VType[]> cast(this.owner.values);
+
+            for (int slot = 0; slot < keys.length;) {
+                if (is_allocated(slot, keys) && Intrinsics.<VType> equals(e, values[slot])) {
+
+                    shiftConflictingKeys(slot);
+                    // Shift, do not increment slot.
+                } else {
+                    slot++;
+                }
+            }
+            return before - this.owner.size();
+        }
+
+        /**
+         * {@inheritDoc}
+         * Indeed removes all the (key,value) pairs matching
+         * the predicate for the values, from  the map.
+         */
+        @Override
+        public int removeAll(final KTypePredicate<? super VType> predicate) {
+            final int before = this.owner.size();
+
+            if (this.owner.allocatedDefaultKey) {
+
+                if (predicate.apply(this.owner.allocatedDefaultKeyValue)) {
+
+                    this.owner.removeDefaultKey();
+                }
+            }
+
+            final KType[] keys = Intrinsics.<KType[]> cast(this.owner.keys);
+            final VType[] values = Intrinsics.<VType[]> cast(this.owner.values);
+
+            for (int slot = 0; slot < keys.length;) {
+                if (is_allocated(slot, keys) && predicate.apply(values[slot])) {
+
+                    shiftConflictingKeys(slot);
+                    // Shift, do not increment slot.
+                } else {
+                    slot++;
+                }
+            }
+            return before - this.owner.size();
+        }
+
+        /**
+         * {@inheritDoc}
+         *  Alias for clear() the whole map.
+         */
+        @Override
+        public void clear() {
+            this.owner.clear();
+        }
+
+        /**
+         * internal pool of ValuesIterator
+         */
+        protected final IteratorPool<KTypeCursor<VType>, ValuesIterator> valuesIteratorPool = new IteratorPool<KTypeCursor<VType>, ValuesIterator>(
+                new ObjectFactory<ValuesIterator>() {
+
+                    @Override
+                    public ValuesIterator create() {
+                        return new ValuesIterator();
+                    }
+
+                    @Override
+                    public void initialize(final ValuesIterator obj) {
+                        obj.cursor.index = KTypeVTypeLinkedHashMap.this.keys.length + 1;
+                    }
+
+                    @Override
+                    public void reset(final ValuesIterator obj) {
+
+                        /*! #if ($TemplateOptions.VTypeGeneric) !*/
+                        obj.cursor.value = null;
+                        /*! #end !*/
+                    }
+                });
+
+        @Override
+        public VType[] toArray(final VType[] target) {
+
+            final VType[] values = Intrinsics.<VType[]> cast(this.owner.values);
+            final long[] links = this.owner.beforeAfterPointers;
+
+            final int head = links.length - 1;
+
+            int count = 0;
+
+            for (int node = getLinkAfter(links[head]); node != head; node = getLinkAfter(links[node])) {
+
+                target[count++] = (node == values.length) ? this.owner.allocatedDefaultKeyValue : values[node];
+            }
+
+            assert count == this.owner.size();
+            return target;
+        }
+    }
+
+    /**
+     * An iterator over the set of values, from the eldest to the youngest entry.
+     * Holds a KTypeCursor returning (value, index) = (VType value, index the position in buffer {@link KTypeVTypeLinkedHashMap#values},
+     * or values.length for value = {@link KTypeVTypeLinkedHashMap#allocatedDefaultKeyValue}).
+     */
+    public final class ValuesIterator extends AbstractIterator<KTypeCursor<VType>>
+    {
+        public final KTypeCursor<VType> cursor;
+
+        public ValuesIterator() {
+            this.cursor = new KTypeCursor<VType>();
+            this.cursor.index = -2;
+        }
+
+        @Override
+        protected KTypeCursor<VType> fetch() {
+
+            final long[] links = KTypeVTypeLinkedHashMap.this.beforeAfterPointers;
+
+            //the iteration starts at the head of the list, at values.length + 1
+            final int node = getLinkAfter(links[this.cursor.index]);
+
+            if (node == links.length - 1) {
+                return done();
+            }
+
+            this.cursor.index = node;
+
+            if (node == KTypeVTypeLinkedHashMap.this.values.length) {
+
+                this.cursor.value = KTypeVTypeLinkedHashMap.this.allocatedDefaultKeyValue;
+            } else {
+
+                this.cursor.value = Intrinsics.<VType> cast(KTypeVTypeLinkedHashMap.this.values[node]);
+            }
+
+            return this.cursor;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>The clone has the same order, ordering mode and maximum size.</p>
+     */
+    @Override
+    public KTypeVTypeLinkedHashMap<KType, VType> clone() {
+        //clone to size() to prevent some cases of exponential sizes,
+        final KTypeVTypeLinkedHashMap<KType, VType> cloned = new KTypeVTypeLinkedHashMap<KType, VType>(this.size(),
+                this.loadFactor, this.accessOrder);
+
+        cloned.maxSize = this.maxSize;
+
+        //We must NOT clone because of independent perturbations seeds
+        cloned.putAll(this);
+
+        cloned.defaultValue = this.defaultValue;
+
+        return cloned;
+    }
+
+    /**
+     * Convert the contents of this map to a human-friendly string.
+     */
+    @Override
+    public String toString() {
+        final StringBuilder buffer = new StringBuilder();
+        buffer.append("[");
+
+        boolean first = true;
+        for (final KTypeVTypeCursor<KType, VType> cursor : this) {
+            if (!first) {
+                buffer.append(", ");
+            }
+            buffer.append(cursor.key);
+            buffer.append("=>");
+            buffer.append(cursor.value);
+            first = false;
+        }
+        buffer.append("]");
+        return buffer.toString();
+    }
+
+    /**
+     * Creates an insertion-ordered hash map from two index-aligned arrays of key-value pairs. Default load factor is used.
+     */
+    public static <KType, VType> KTypeVTypeLinkedHashMap<KType, VType> from(final KType[] keys, final VType[] values) {
+        if (keys.length != values.length) {
+            throw new IllegalArgumentException("Arrays of keys and values must have an identical length.");
+        }
+
+        final KTypeVTypeLinkedHashMap<KType, VType> map = new KTypeVTypeLinkedHashMap<KType, VType>(keys.length);
+
+        for (int i = 0; i < keys.length; i++) {
+            map.put(keys[i], values[i]);
+        }
+        return map;
+    }
+
+    /**
+     * Create an insertion-ordered hash map from another associative container. (constructor shortcut) Default load factor is used.
+     */
+    public static <KType, VType> KTypeVTypeLinkedHashMap<KType, VType> from(
+            final KTypeVTypeAssociativeContainer<KType, VType> container) {
+        return new KTypeVTypeLinkedHashMap<KType, VType>(container);
+    }
+
+    /**
+     * Create a new insertion-ordered hash map without providing the full generic signature
+     * (constructor shortcut).
+     */
+    public static <KType, VType> KTypeVTypeLinkedHashMap<KType, VType> newInstance() {
+        return new KTypeVTypeLinkedHashMap<KType, VType>();
+    }
+
+    /**
+     * Create a new hash map with initial capacity, load factor and ordering mode control.
+     * (constructor shortcut).
+     */
+    public static <KType, VType> KTypeVTypeLinkedHashMap<KType, VType> newInstance(final int initialCapacity,
+            final double loadFactor, final boolean accessOrder) {
+        return new KTypeVTypeLinkedHashMap<KType, VType>(initialCapacity, loadFactor, accessOrder);
+    }
+
+    /**
+     * Returns the "default value" value used in containers methods returning
+     * "default value"
+     */
+    @Override
+    public VType getDefaultValue() {
+        return this.defaultValue;
+    }
+
+    /**
+     * Set the "default value" value to be used in containers methods returning
+     * "default value"
+     */
+    @Override
+    public void setDefaultValue(final VType defaultValue) {
+        this.defaultValue = defaultValue;
+    }
+
+    /**
+     * Append node at the end of the list of links, i.e. as the youngest entry.
+     */
+    private void linkLast(final long[] links, final int node) {
+
+        final int head = links.length - 1;
+        final int last = getLinkBefore(links[head]);
+
+        links[node] = getLinkNodeValue(last, head);
+        links[last] = setLinkAfterNodeValue(links[last], node);
+        links[head] = setLinkBeforeNodeValue(links[head], node);
+    }
+
+    /**
+     * Remove node from the list of links.
+     */
+    private void unlink(final long[] links, final int node) {
+
+        final long nodeValue = links[node];
+
+        final int before = getLinkBefore(nodeValue);
+        final int after = getLinkAfter(nodeValue);
+
+        links[before] = setLinkAfterNodeValue(links[before], after);
+        links[after] = setLinkBeforeNodeValue(links[after], before);
+    }
+
+    /**
+     * Move the links of node <code>from</code> to node <code>to</code>,
+     * keeping the same position in the list.
+     */
+    private void moveNode(final long[] links, final int from, final int to) {
+
+        final long nodeValue = links[from];
+
+        final int before = getLinkBefore(nodeValue);
+        final int after = getLinkAfter(nodeValue);
+
+        links[to] = nodeValue;
+        links[before] = setLinkAfterNodeValue(links[before], to);
+        links[after] = setLinkBeforeNodeValue(links[after], to);
+    }
+
+    /**
+     * Make node the youngest entry.
+     */
+    private void moveToLast(final int node) {
+
+        final long[] links = this.beforeAfterPointers;
+
+        if (getLinkBefore(links[links.length - 1]) != node) {
+
+            unlink(links, node);
+            linkLast(links, node);
+        }
+    }
+
+    //Test for existence in template
+    /*! #if ($TemplateOptions.declareInline("is_allocated(slot, keys)",
+        "<*,*>==>!Intrinsics.<KType>isEmpty(keys[slot])")) !*/
+    /**
+     *  template version
+     * (actual method is inlined in generated code)
+     */
+    private boolean is_allocated(final int slot, final KType[] keys) {
+
+        return !Intrinsics.<KType> isEmpty(keys[slot]);
+    }
+
+    /*! #end !*/
+
+    /*! #if ($TemplateOptions.declareInline("getLinkNodeValue(beforeIndex, afterIndex)",
+     "<*,*>==>((long) beforeIndex << 32) | afterIndex")) !*/
+    /**
+     * Builds a node value from its before an after links.
+     * (actual method is inlined in generated code)
+     */
+    private long getLinkNodeValue(final int beforeIndex, final int afterIndex) {
+        return ((long) beforeIndex << 32) | afterIndex;
+    }
+
+    /*! #end !*/
+
+    /*! #if ($TemplateOptions.declareInline("getLinkBefore(nodeValue)", "<*,*>==>(int) (nodeValue >> 32)")) !*/
+    private int getLinkBefore(final long nodeValue) {
+        return (int) (nodeValue >> 32);
+    }
+
+    /*! #end !*/
+
+    /*! #if ($TemplateOptions.declareInline("getLinkAfter(nodeValue)",
+       "<*,*>==>(int) (nodeValue & 0x00000000FFFFFFFFL)")) !*/
+    private int getLinkAfter(final long nodeValue) {
+        return (int) (nodeValue & 0x00000000FFFFFFFFL);
+    }
+
+    /*! #end !*/
+
+    /*! #if ($TemplateOptions.declareInline("setLinkBeforeNodeValue(nodeValue, newBefore)",
+     "<*,*>==>((long) newBefore << 32) | (nodeValue & 0x00000000FFFFFFFFL)")) !*/
+    private long setLinkBeforeNodeValue(final long nodeValue, final int newBefore) {
+        return ((long) newBefore << 32) | (nodeValue & 0x00000000FFFFFFFFL);
+    }
+
+    /*! #end !*/
+
+    /*! #if ($TemplateOptions.declareInline("setLinkAfterNodeValue(nodeValue, newAfter)",
+      "<*,*>==> newAfter | (nodeValue & 0xFFFFFFFF00000000L)")) !*/
+    private long setLinkAfterNodeValue(final long nodeValue, final int newAfter) {
+        return newAfter | (nodeValue & 0xFFFFFFFF00000000L);
+    }
+
+    /*! #end !*/
+
+    /*! #if ($TemplateOptions.declareInline("REHASH(value)",
+    "<Object,*>==>BitMixer.mix(hashKey(value) , this.perturbation)",
+    "<*,*>==>BitMixer.mix(value , this.perturbation)")) !*/
+    /**
+     * REHASH method for rehashing the keys.
+     * (inlined in generated code)
+     * Thanks to single array mode, no need to check for null/0 or booleans.
+     */
+    private int REHASH(final KType value) {
+
+        return BitMixer.mix(hashKey(value), this.perturbation);
+    }
+
+    /*! #end !*/
+
+    /*! #if ($TemplateOptions.declareInline("REHASH2(value, perturb)",
+    "<Object,*>==>BitMixer.mix(hashKey(value) , perturb)",
+    "<*,*>==>BitMixer.mix(value , perturb)")) !*/
+    /**
+     * REHASH2 method for rehashing the keys with perturbation seed as parameter
+     * (inlined in generated code)
+     * Thanks to single array mode, no need to check for null/0 or booleans.
+     */
+    private int REHASH2(final KType value, final int perturb) {
+
+        return BitMixer.mix(hashKey(value), perturb);
+    }
+    /*! #end !*/
+
+    /*! #if ($TemplateOptions.declareInline("KEYEQUALS(key1, key2)",
+    "<Object,*>==>equalKeys(key1, key2)",
+    "<*,*>==>Intrinsics.<KType> equalsNotNull(key1, key2)")) !*/
+    /**
+     * macro which hides the applied equality criteria
+     */
+    private boolean KEYEQUALS(final KType key1, final KType key2) {
+
+        return equalKeys(key1, key2);
+    }
+    /*! #end !*/
+}
@@ -0,0 +1,1278 @@
+package com.carrotsearch.hppcrt.maps;
+
+import java.util.concurrent.atomic.*;
+
+import com.carrotsearch.hppcrt.*;
+import com.carrotsearch.hppcrt.cursors.*;
+import com.carrotsearch.hppcrt.predicates.*;
+import com.carrotsearch.hppcrt.procedures.*;
+import com.carrotsearch.hppcrt.hash.*;
+
+/*! #import("com/carrotsearch/hppcrt/Intrinsics.java") !*/
+/*! ${TemplateOptions.doNotGenerateKType("BYTE", "CHAR", "SHORT", "FLOAT", "DOUBLE", "OBJECT")} !*/
+/*! ${TemplateOptions.doNotGenerateVType("BYTE", "CHAR", "SHORT", "FLOAT", "DOUBLE", "OBJECT")} !*/
+/**
+ * A thread-safe hash map of <code>KType</code> to <code>VType</code>, implemented using open
+ * addressing with linear probing, where readers never block nor allocate.
+ *
+ * <p>
+ * The buffers are allocated once and for all at construction, sized by {@link HashContainers#minBufferSize(int, double)}
+ * for the expected number of keys. They are never resized: putting new keys
+ * beyond {@link #capacity()} degrades performance, and a {@link BufferAllocationException}
+ * is thrown when no free slot remains.
+ * </p>
+ *
+ * <p>
+ * A key is inserted by a CAS of an empty slot of {@link #keys} to the key, after which the slot
+ * is never reassigned to another key, until {@link #clear()}. The presence and the value of the key
+ * are then governed by a packed state word per slot ({@link #states}) holding a version, a 'live' flag and a 'write' flag:
+ * <ul>
+ * <li>Writers (put(), remove()...) CAS the 'write' flag of the slot, update the value, then publish the new state
+ * with an incremented version. Only writers of the very same key may wait on each other.</li>
+ * <li>Readers (get(), containsKey(), iteration...) never wait: they read the state word, the value, and in removal mode
+ * read the state word again to validate that the value was not concurrently removed.</li>
+ * </ul>
+ * </p>
+ *
+ * <p>
+ * Two modes are available at construction:
+ * <ul>
+ * <li>the insertion-only mode, where keys can never be removed (remove() and removeAll() throw {@link UnsupportedOperationException}),
+ * so that a live key stays live and readers never need to validate what they read;</li>
+ * <li>the removal mode, where removed keys leave a tombstone slot which only the same key can reuse. Therefore in this mode the capacity
+ * bounds the number of distinct keys ever put in the map since the last {@link #clear()}.</li>
+ * </ul>
+ * </p>
+ *
+ * <p>
+ * Iterations, views and bulk operations are weakly consistent: they reflect some state of each key
+ * at some point during the iteration, and never throw {@link java.util.ConcurrentModificationException}.
+ * For the same reason, iterators are not pooled and are allocated on each call.
+ * {@link #size()} and {@link #isEmpty()} scan the whole buffer.
+ * {@link #clear()} is the only operation which must not be called concurrently with any other.
+ * </p>
+ *
+#if ($TemplateOptions.KTypeGeneric)
+ * <p>This implementation supports <code>null</code> keys. </p>
+#end
+#if ($TemplateOptions.VTypeGeneric)
+ * <p>This implementation supports <code>null</code> values.</p>
+#end
+ */
+/*! ${TemplateOptions.generatedAnnotation} !*/
+public class KTypeVTypeLockFreeHashMap<KType, VType>
+        implements KTypeVTypeMap<KType, VType>
+{
+    /**
+     * State flag: a writer currently owns the slot.
+     */
+    private static final int WRITE_FLAG = 0x1;
+
+    /**
+     * State flag: the slot holds a live key-value pair.
+     */
+    private static final int LIVE_FLAG = 0x2;
+
+    /**
+     * Mask of all the state flags, the remaining upper bits are the version.
+     */
+    private static final int FLAGS_MASK = KTypeVTypeLockFreeHashMap.WRITE_FLAG | KTypeVTypeLockFreeHashMap.LIVE_FLAG;
+
+    /**
+     * Version increment of the state, on each write.
+     */
+    private static final int VERSION_INCREMENT = KTypeVTypeLockFreeHashMap.FLAGS_MASK + 1;
+
+    /**
+     * Hash-indexed array holding all keys, which are claimed by CAS from the empty key.
+     * The empty key itself is not stored here, but handled by the
+     * extra slot at index <code>keys.length()</code> of {@link #values} and {@link #states}.
+     */
+    /*! #if ($TemplateOptions.isKType("INT"))
+    public final AtomicIntegerArray keys;
+    #elseif ($TemplateOptions.isKType("LONG"))
+    public final AtomicLongArray keys;
+    #else !*/
+    public final AtomicReferenceArray<KType> keys;
+    /*! #end !*/
+
+    /**
+     * Values of the slots, of length <code>keys.length() + 1</code>, the last
+     * slot being dedicated to the empty key.
+     */
+    /*! #if ($TemplateOptions.isVType("INT"))
+    public final AtomicIntegerArray values;
+    #elseif ($TemplateOptions.isVType("LONG"))
+    public final AtomicLongArray values;
+    #else !*/
+    public final AtomicReferenceArray<VType> values;
+    /*! #end !*/
+
+    /**
+     * Packed states (version | {@link #LIVE_FLAG} | {@link #WRITE_FLAG}) of the slots,
+     * of length <code>keys.length() + 1</code>, the last slot being dedicated to the empty key.
+     */
+    protected final AtomicIntegerArray states;
+
+    /**
+     * The load factor for this map (fraction of allocated slots
+     * before the performance of the map degrades).
+     */
+    protected final double loadFactor;
+
+    /**
+     * True if keys can be removed from this map, see class notes.
+     */
+    protected final boolean removalMode;
+
+    /**
+     * Per-instance perturbation.
+     */
+    private final int perturbation = Containers.randomSeed32();
+
+    protected volatile VType defaultValue = Intrinsics.<VType> empty();
+
+    /**
+     * Default constructor: Creates a map in removal mode for {@link Containers#DEFAULT_EXPECTED_ELEMENTS} keys,
+     * with a load factor of {@link HashContainers#DEFAULT_LOAD_FACTOR}.
+     */
+    public KTypeVTypeLockFreeHashMap() {
+        this(Containers.DEFAULT_EXPECTED_ELEMENTS);
+    }
+
+    /**
+     * Creates a map in removal mode for the given number of keys, with a load factor of
+     * {@link HashContainers#DEFAULT_LOAD_FACTOR}.
+     *
+     * @param initialCapacity Expected number of keys (greater than zero).
+     */
+    public KTypeVTypeLockFreeHashMap(final int initialCapacity) {
+        this(initialCapacity, HashContainers.DEFAULT_LOAD_FACTOR, true);
+    }
+
+    /**
+     * Creates a map for the given number of keys, load factor and mode.
+     *
+     * @param initialCapacity Expected number of keys (greater than zero).
+     * @param loadFactor The load factor (greater than zero and smaller than 1).
+     * @param removalMode if false, the map is in insertion-only mode, see class notes.
+     */
+    public KTypeVTypeLockFreeHashMap(final int initialCapacity, final double loadFactor, final boolean removalMode) {
+
+        this.loadFactor = loadFactor;
+        this.removalMode = removalMode;
+
+        final int arraySize = HashContainers.minBufferSize(initialCapacity, loadFactor);
+
+        try {
+            /*! #if ($TemplateOptions.isKType("INT"))
+            this.keys = new AtomicIntegerArray(arraySize);
+            #elseif ($TemplateOptions.isKType("LONG"))
+            this.keys = new AtomicLongArray(arraySize);
+            #else !*/
+            this.keys = new AtomicReferenceArray<KType>(arraySize);
+            /*! #end !*/
+
+            /*! #if ($TemplateOptions.isVType("INT"))
+            this.values = new AtomicIntegerArray(arraySize + 1);
+            #elseif ($TemplateOptions.isVType("LONG"))
+            this.values = new AtomicLongArray(arraySize + 1);
+            #else !*/
+            this.values = new AtomicReferenceArray<VType>(arraySize + 1);
+            /*! #end !*/
+
+            this.states = new AtomicIntegerArray(arraySize + 1);
+
+        } catch (final OutOfMemoryError e) {
+
+            throw new BufferAllocationException(
+                    "Not enough memory to allocate buffers for rehashing: %,d -> %,d",
+                    e,
+                    0,
+                    arraySize);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public VType put(final KType key, final VType value) {
+
+        final int slot = claimSlot(key);
+        final int state = acquireSlot(slot);
+
+        final VType previous = ((state & KTypeVTypeLockFreeHashMap.LIVE_FLAG) != 0) ? this.values.get(slot) : this.defaultValue;
+
+        this.values.set(slot, value);
+        releaseSlot(slot, state, true);
+
+        return previous;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int putAll(final KTypeVTypeAssociativeContainer<? extends KType, ? extends VType> container) {
+        return putAll((Iterable<? extends KTypeVTypeCursor<? extends KType, ? extends VType>>) container);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int putAll(final Iterable<? extends KTypeVTypeCursor<? extends KType, ? extends VType>> iterable) {
+
+        int count = 0;
+
+        for (final KTypeVTypeCursor<? extends KType, ? extends VType> c : iterable) {
+
+            final int slot = claimSlot(c.key);
+            final int state = acquireSlot(slot);
+
+            this.values.set(slot, c.value);
+            releaseSlot(slot, state, true);
+
+            if ((state & KTypeVTypeLockFreeHashMap.LIVE_FLAG) == 0) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean putIfAbsent(final KType key, final VType value) {
+
+        final int slot = claimSlot(key);
+        final int state = acquireSlot(slot);
+
+        if ((state & KTypeVTypeLockFreeHashMap.LIVE_FLAG) != 0) {
+
+            releaseSlot(slot, state, true);
+            return false;
+        }
+
+        this.values.set(slot, value);
+        releaseSlot(slot, state, true);
+
+        return true;
+    }
+
+    /*! #if ($TemplateOptions.VTypePrimitive) !*/
+    /**
+     * {@inheritDoc}
+     */
+    @SuppressWarnings("cast")
+    @Override
+    public VType putOrAdd(final KType key, final VType putValue, final VType incrementValue) {
+
+        final int slot = claimSlot(key);
+        final int state = acquireSlot(slot);
+
+        VType newValue = putValue;
+
+        if ((state & KTypeVTypeLockFreeHashMap.LIVE_FLAG) != 0) {
+
+            newValue = (VType) (Intrinsics.<VType> add(this.values.get(slot), incrementValue));
+        }
+
+        this.values.set(slot, newValue);
+        releaseSlot(slot, state, true);
+
+        return newValue;
+    }
+
+    /*! #end !*/
+
+    /*! #if ($TemplateOptions.VTypePrimitive) !*/
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public VType addTo(final KType key, final VType incrementValue) {
+
+        return putOrAdd(key, incrementValue, incrementValue);
+    }
+
+    /*! #end !*/
+
+    /**
+     * {@inheritDoc}
+     * @throws UnsupportedOperationException in insertion-only mode.
+     */
+    @Override
+    public VType remove(final KType key) {
+
+        checkRemovalMode();
+
+        final int slot = slotOf(key);
+
+        if (slot == -1) {
+
+            return this.defaultValue;
+        }
+
+        final int state = acquireSlot(slot);
+
+        final VType previous = ((state & KTypeVTypeLockFreeHashMap.LIVE_FLAG) != 0) ? this.values.get(slot) : this.defaultValue;
+
+        releaseSlot(slot, state, false);
+
+        return previous;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws UnsupportedOperationException in insertion-only mode.
+     */
+    @Override
+    public int removeAll(final KTypeContainer<? super KType> other) {
+
+        checkRemovalMode();
+
+        int count = 0;
+
+        //Iterate over this if other has fast lookups, else
+        //call remove() with each element of other.
+        if (other instanceof KTypeLookupContainer<?>) {
+
+            for (int slot = this.keys.length(); slot >= 0; slot--) {
+
+                if (isLive(slot) && other.contains(keyAt(slot)) && removeSlot(slot)) {
+                    count++;
+                }
+            }
+        } else {
+
+            for (final KTypeCursor<? super KType> c : other) {
+
+                final int slot = slotOf(Intrinsics.<KType> cast(c.value));
+
+                if (slot != -1 && removeSlot(slot)) {
+                    count++;
+                }
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws UnsupportedOperationException in insertion-only mode.
+     */
+    @Override
+    public int removeAll(final KTypePredicate<? super KType> predicate) {
+
+        checkRemovalMode();
+
+        int count = 0;
+
+        for (int slot = this.keys.length(); slot >= 0; slot--) {
+
+            if (isLive(slot) && predicate.apply(keyAt(slot)) && removeSlot(slot)) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws UnsupportedOperationException in insertion-only mode.
+     */
+    @Override
+    public int removeAll(final KTypeVTypePredicate<? super KType, ? super VType> predicate) {
+
+        checkRemovalMode();
+
+        final AtomicIntegerArray states = this.states;
+
+        int count = 0;
+
+        for (int slot = this.keys.length(); slot >= 0; slot--) {
+
+            int state;
+            VType value;
+
+            do {
+                state = states.get(slot);
+                value = this.values.get(slot);
+            } while (states.get(slot) != state);
+
+            if ((state & KTypeVTypeLockFreeHashMap.LIVE_FLAG) != 0 && predicate.apply(keyAt(slot), value) && removeSlot(slot)) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public VType get(final KType key) {
+
+        final int slot = slotOf(key);
+
+        if (slot == -1) {
+
+            return this.defaultValue;
+        }
+
+        final AtomicIntegerArray states = this.states;
+
+        int state;
+        VType value;
+
+        //In removal mode, validate that the value was not concurrently removed or re-inserted.
+        do {
+            state = states.get(slot);
+            value = this.values.get(slot);
+        } while (this.removalMode && states.get(slot) != state);
+
+        return ((state & KTypeVTypeLockFreeHashMap.LIVE_FLAG) != 0) ? value : this.defaultValue;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean containsKey(final KType key) {
+
+        final int slot = slotOf(key);
+
+        return slot != -1 && isLive(slot);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This method must not be called concurrently with any other method of this map.
+     * It is the only way to reclaim the slots of removed keys.</p>
+     */
+    @Override
+    public void clear() {
+
+        final int length = this.keys.length();
+
+        for (int i = 0; i < length; i++) {
+
+            this.keys.set(i, Intrinsics.<KType> empty());
+        }
+
+        for (int i = 0; i <= length; i++) {
+
+            /*! #if ($TemplateOptions.VTypeGeneric) !*/
+            //help the GC
+            this.values.set(i, Intrinsics.<VType> empty());
+            /*! #end !*/
+
+            this.states.set(i, 0);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This scans the whole buffer, and is only an estimate in presence of concurrent modifications.</p>
+     */
+    @Override
+    public int size() {
+
+        int size = 0;
+
+        for (int slot = this.keys.length(); slot >= 0; slot--) {
+
+            if (isLive(slot)) {
+                size++;
+            }
+        }
+
+        return size;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The number of keys this map was sized for.</p>
+     */
+    @Override
+    public int capacity() {
+
+        return HashContainers.expandAtCount(this.keys.length(), this.loadFactor);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEmpty() {
+
+        for (int slot = this.keys.length(); slot >= 0; slot--) {
+
+            if (isLive(slot)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return true if this map is in removal mode, false if it is in insertion-only mode.
+     */
+    public boolean isRemovalMode() {
+
+        return this.removalMode;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+
+        int h = 0;
+
+        for (int slot = this.keys.length(); slot >= 0; slot--) {
+
+            final int state = this.states.get(slot);
+
+            if ((state & KTypeVTypeLockFreeHashMap.LIVE_FLAG) != 0) {
+
+                h += BitMixer.mix(keyAt(slot)) ^ BitMixer.mix(this.values.get(slot));
+            }
+        }
+
+        return h;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(final Object obj) {
+        if (obj != null) {
+            if (obj == this) {
+                return true;
+            }
+
+            //must be of the same class, subclasses are not comparable
+            if (obj.getClass() != this.getClass()) {
+                return false;
+            }
+
+            /* #if ($TemplateOptions.AnyGeneric) */
+            @SuppressWarnings("unchecked")
+            final/* #end */
+            KTypeVTypeLockFreeHashMap<KType, VType> other = (KTypeVTypeLockFreeHashMap<KType, VType>) obj;
+
+            //must be of the same size
+            if (other.size() != this.size()) {
+                return false;
+            }
+
+            for (final KTypeVTypeCursor<KType, VType> c : this) {
+
+                if (!other.containsKey(c.key) || !Intrinsics.<VType> equals(c.value, other.get(c.key))) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * A weakly consistent iterator implementation for {@link #iterator}.
+     * Holds a KTypeVTypeCursor returning
+     * (key, value, index) = (KType key, VType value, index the position in keys {@link KTypeVTypeLockFreeHashMap#keys}, or keys.length() for key = 0/null)
+     */
+    public final class EntryIterator extends AbstractIterator<KTypeVTypeCursor<KType, VType>>
+    {
+        public final KTypeVTypeCursor<KType, VType> cursor;
+
+        public EntryIterator() {
+            this.cursor = new KTypeVTypeCursor<KType, VType>();
+            this.cursor.index = KTypeVTypeLockFreeHashMap.this.keys.length() + 1;
+        }
+
+        @Override
+        protected KTypeVTypeCursor<KType, VType> fetch() {
+
+            final AtomicIntegerArray states = KTypeVTypeLockFreeHashMap.this.states;
+
+            for (int slot = this.cursor.index - 1; slot >= 0; slot--) {
+
+                int state;
+                VType value;
+
+                do {
+                    state = states.get(slot);
+                    value = KTypeVTypeLockFreeHashMap.this.values.get(slot);
+                } while (KTypeVTypeLockFreeHashMap.this.removalMode && states.get(slot) != state);
+
+                if ((state & KTypeVTypeLockFreeHashMap.LIVE_FLAG) != 0) {
+
+                    this.cursor.index = slot;
+                    this.cursor.key = keyAt(slot);
+                    this.cursor.value = value;
+
+                    return this.cursor;
+                }
+            }
+
+            return done();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * @return a new weakly consistent EntryIterator.
+     */
+    @Override
+    public EntryIterator iterator() {
+
+        return new EntryIterator();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends KTypeVTypeProcedure<? super KType, ? super VType>> T forEach(final T procedure) {
+
+        final AtomicIntegerArray states = this.states;
+
+        for (int slot = this.keys.length(); slot >= 0; slot--) {
+
+            int state;
+            VType value;
+
+            do {
+                state = states.get(slot);
+                value = this.values.get(slot);
+            } while (this.removalMode && states.get(slot) != state);
+
+            if ((state & KTypeVTypeLockFreeHashMap.LIVE_FLAG) != 0) {
+
+                procedure.apply(keyAt(slot), value);
+            }
+        }
+
+        return procedure;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends KTypeVTypePredicate<? super KType, ? super VType>> T forEach(final T predicate) {
+
+        final AtomicIntegerArray states = this.states;
+
+        for (int slot = this.keys.length(); slot >= 0; slot--) {
+
+            int state;
+            VType value;
+
+            do {
+                state = states.get(slot);
+                value = this.values.get(slot);
+            } while (this.removalMode && states.get(slot) != state);
+
+            if ((state & KTypeVTypeLockFreeHashMap.LIVE_FLAG) != 0) {
+
+                if (!predicate.apply(keyAt(slot), value)) {
+                    break;
+                }
+            }
+        }
+
+        return predicate;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @return a new KeysCollection view of the keys of this map.
+     */
+    @Override
+    public KeysCollection keys() {
+        return new KeysCollection();
+    }
+
+    /**
+     * A weakly consistent view of the keys inside this map.
+     */
+    public final class KeysCollection extends AbstractKTypeCollection<KType> implements KTypeLookupContainer<KType>
+    {
+        private final KTypeVTypeLockFreeHashMap<KType, VType> owner = KTypeVTypeLockFreeHashMap.this;
+
+        @Override
+        public boolean contains(final KType e) {
+            return this.owner.containsKey(e);
+        }
+
+        @Override
+        public <T extends KTypeProcedure<? super KType>> T forEach(final T procedure) {
+
+            for (int slot = this.owner.keys.length(); slot >= 0; slot--) {
+
+                if (this.owner.isLive(slot)) {
+                    procedure.apply(this.owner.keyAt(slot));
+                }
+            }
+
+            return procedure;
+        }
+
+        @Override
+        public <T extends KTypePredicate<? super KType>> T forEach(final T predicate) {
+
+            for (int slot = this.owner.keys.length(); slot >= 0; slot--) {
+
+                if (this.owner.isLive(slot)) {
+
+                    if (!predicate.apply(this.owner.keyAt(slot))) {
+                        break;
+                    }
+                }
+            }
+
+            return predicate;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public KeysIterator iterator() {
+
+            return new KeysIterator();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int size() {
+            return this.owner.size();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int capacity() {
+
+            return this.owner.capacity();
+        }
+
+        @Override
+        public void clear() {
+            this.owner.clear();
+        }
+
+        @Override
+        public int removeAll(final KTypePredicate<? super KType> predicate) {
+            return this.owner.removeAll(predicate);
+        }
+
+        @Override
+        public int removeAll(final KType e) {
+
+            this.owner.checkRemovalMode();
+
+            final int slot = this.owner.slotOf(e);
+
+            return (slot != -1 && this.owner.removeSlot(slot)) ? 1 : 0;
+        }
+
+        @Override
+        public KType[] toArray(final KType[] target) {
+
+            int count = 0;
+
+            for (int slot = this.owner.keys.length(); slot >= 0 && count < target.length; slot--) {
+
+                if (this.owner.isLive(slot)) {
+                    target[count++] = this.owner.keyAt(slot);
+                }
+            }
+
+            return target;
+        }
+    };
+
+    /**
+     * A weakly consistent iterator over the set of keys.
+     * Holds a KTypeCursor returning (value, index) = (KType key, index the position in buffer {@link KTypeVTypeLockFreeHashMap#keys}, or keys.length() for key = 0/null.)
+     */
+    public final class KeysIterator extends AbstractIterator<KTypeCursor<KType>>
+    {
+        public final KTypeCursor<KType> cursor;
+
+        public KeysIterator() {
+            this.cursor = new KTypeCursor<KType>();
+            this.cursor.index = KTypeVTypeLockFreeHashMap.this.keys.length() + 1;
+        }
+
+        @Override
+        protected KTypeCursor<KType> fetch() {
+
+            for (int slot = this.cursor.index - 1; slot >= 0; slot--) {
+
+                if (isLive(slot)) {
+
+                    this.cursor.index = slot;
+                    this.cursor.value = keyAt(slot);
+
+                    return this.cursor;
+                }
+            }
+
+            return done();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * @return a new ValuesCollection view of the values of this map.
+     */
+    @Override
+    public ValuesCollection values() {
+        return new ValuesCollection();
+    }
+
+    /**
+     * A weakly consistent view over the set of values of this map.
+     */
+    public final class ValuesCollection extends AbstractKTypeCollection<VType>
+    {
+        private final KTypeVTypeLockFreeHashMap<KType, VType> owner = KTypeVTypeLockFreeHashMap.this;
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int size() {
+            return this.owner.size();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int capacity() {
+
+            return this.owner.capacity();
+        }
+
+        @Override
+        public boolean contains(final VType value) {
+
+            final AtomicIntegerArray states = this.owner.states;
+
+            // This is a linear scan over the values, but it's in the contract, so be it.
+            for (int slot = this.owner.keys.length(); slot >= 0; slot--) {
+
+                int state;
+                VType existing;
+
+                do {
+                    state = states.get(slot);
+                    existing = this.owner.values.get(slot);
+                } while (this.owner.removalMode && states.get(slot) != state);
+
+                if ((state & KTypeVTypeLockFreeHashMap.LIVE_FLAG) != 0 && Intrinsics.<VType> equals(value, existing)) {
+
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        @Override
+        public <T extends KTypeProcedure<? super VType>> T forEach(final T procedure) {
+
+            final AtomicIntegerArray states = this.owner.states;
+
+            for (int slot = this.owner.keys.length(); slot >= 0; slot--) {
+
+                int state;
+                VType value;
+
+                do {
+                    state = states.get(slot);
+                    value = this.owner.values.get(slot);
+                } while (this.owner.removalMode && states.get(slot) != state);
+
+                if ((state & KTypeVTypeLockFreeHashMap.LIVE_FLAG) != 0) {
+
+                    procedure.apply(value);
+                }
+            }
+
+            return procedure;
+        }
+
+        @Override
+        public <T extends KTypePredicate<? super VType>> T forEach(final T predicate) {
+
+            final AtomicIntegerArray states = this.owner.states;
+
+            for (int slot = this.owner.keys.length(); slot >= 0; slot--) {
+
+                int state;
+                VType value;
+
+                do {
+                    state = states.get(slot);
+                    value = this.owner.values.get(slot);
+                } while (this.owner.removalMode && states.get(slot) != state);
+
+                if ((state & KTypeVTypeLockFreeHashMap.LIVE_FLAG) != 0) {
+
+                    if (!predicate.apply(value)) {
+                        break;
+                    }
+                }
+            }
+
+            return predicate;
+        }
+
+        @Override
+        public ValuesIterator iterator() {
+
+            return new ValuesIterator();
+        }
+
+        /**
+         * {@inheritDoc}
+         * Indeed removes all the (key,value) pairs matching
+         * (key ? ,  e) with the  same  e,  from  the map.
+         */
+        @Override
+        public int removeAll(final VType e) {
+
+            return this.owner.removeAll(new KTypeVTypePredicate<KType, VType>() {
+
+                @Override
+                public boolean apply(final KType key, final VType value) {
+
+                    return Intrinsics.<VType> equals(e, value);
+                }
+            });
+        }
+
+        /**
+         * {@inheritDoc}
+         * Indeed removes all the (key,value) pairs matching
+         * the predicate for the values, from  the map.
+         */
+        @Override
+        public int removeAll(final KTypePredicate<? super VType> predicate) {
+
+            return this.owner.removeAll(new KTypeVTypePredicate<KType, VType>() {
+
+                @Override
+                public boolean apply(final KType key, final VType value) {
+
+                    return predicate.apply(value);
+                }
+            });
+        }
+
+        /**
+         * {@inheritDoc}
+         *  Alias for clear() the whole map.
+         */
+        @Override
+        public void clear() {
+            this.owner.clear();
+        }
+
+        @Override
+        public VType[] toArray(final VType[] target) {
+
+            int count = 0;
+
+            final AtomicIntegerArray states = this.owner.states;
+
+            for (int slot = this.owner.keys.length(); slot >= 0 && count < target.length; slot--) {
+
+                int state;
+                VType value;
+
+                do {
+                    state = states.get(slot);
+                    value = this.owner.values.get(slot);
+                } while (this.owner.removalMode && states.get(slot) != state);
+
+                if ((state & KTypeVTypeLockFreeHashMap.LIVE_FLAG) != 0) {
+
+                    target[count++] = value;
+                }
+            }
+
+            return target;
+        }
+    }
+
+    /**
+     * A weakly consistent iterator over the set of values.
+     * Holds a KTypeCursor returning (value, index) = (VType value, index the position in buffer {@link KTypeVTypeLockFreeHashMap#values}).
+     */
+    public final class ValuesIterator extends AbstractIterator<KTypeCursor<VType>>
+    {
+        public final KTypeCursor<VType> cursor;
+
+        public ValuesIterator() {
+            this.cursor = new KTypeCursor<VType>();
+            this.cursor.index = KTypeVTypeLockFreeHashMap.this.keys.length() + 1;
+        }
+
+        @Override
+        protected KTypeCursor<VType> fetch() {
+
+            final AtomicIntegerArray states = KTypeVTypeLockFreeHashMap.this.states;
+
+            for (int slot = this.cursor.index - 1; slot >= 0; slot--) {
+
+                int state;
+                VType value;
+
+                do {
+                    state = states.get(slot);
+                    value = KTypeVTypeLockFreeHashMap.this.values.get(slot);
+                } while (KTypeVTypeLockFreeHashMap.this.removalMode && states.get(slot) != state);
+
+                if ((state & KTypeVTypeLockFreeHashMap.LIVE_FLAG) != 0) {
+
+                    this.cursor.index = slot;
+                    this.cursor.value = value;
+
+                    return this.cursor;
+                }
+            }
+
+            return done();
+        }
+    }
+
+    /**
+     * Convert the contents of this map to a human-friendly string.
+     */
+    @Override
+    public String toString() {
+        final StringBuilder buffer = new StringBuilder();
+        buffer.append("[");
+
+        boolean first = true;
+        for (final KTypeVTypeCursor<KType, VType> cursor : this) {
+            if (!first) {
+                buffer.append(", ");
+            }
+            buffer.append(cursor.key);
+            buffer.append("=>");
+            buffer.append(cursor.value);
+            first = false;
+        }
+        buffer.append("]");
+        return buffer.toString();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public VType getDefaultValue() {
+        return this.defaultValue;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setDefaultValue(final VType defaultValue) {
+        this.defaultValue = defaultValue;
+    }
+
+    /**
+     * @return the slot of key, claiming an empty slot for it by CAS if key is not
+     * in {@link #keys} yet.
+     * @throws BufferAllocationException if there is no empty slot left.
+     */
+    private int claimSlot(final KType key) {
+
+        final int length = this.keys.length();
+
+        if (Intrinsics.<KType> isEmpty(key)) {
+
+            return length;
+        }
+
+        final int mask = length - 1;
+
+        int slot = REHASH(key) & mask;
+
+        for (int probes = 0; probes < length; probes++) {
+
+            KType existing = this.keys.get(slot);
+
+            if (Intrinsics.<KType> isEmpty(existing)) {
+
+                if (this.keys.compareAndSet(slot, Intrinsics.<KType> empty(), key)) {
+
+                    return slot;
+                }
+
+                //lost the race against another writer, which may have put the same key.
+                existing = this.keys.get(slot);
+            }
+
+            if (Intrinsics.<KType> equalsNotNull(key, existing)) {
+
+                return slot;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        throw new BufferAllocationException("No empty slot left for a new key in the %,d slots of this map.", length);
+    }
+
+    /**
+     * @return the slot of key, or -1 if key has never been claimed a slot.
+     * The key may be present or not in the map, see {@link #isLive(int)}.
+     */
+    private int slotOf(final KType key) {
+
+        final int length = this.keys.length();
+
+        if (Intrinsics.<KType> isEmpty(key)) {
+
+            return length;
+        }
+
+        final int mask = length - 1;
+
+        int slot = REHASH(key) & mask;
+
+        for (int probes = 0; probes < length; probes++) {
+
+            final KType existing = this.keys.get(slot);
+
+            if (Intrinsics.<KType> isEmpty(existing)) {
+
+                return -1;
+            }
+
+            if (Intrinsics.<KType> equalsNotNull(key, existing)) {
+
+                return slot;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        return -1;
+    }
+
+    /**
+     * @return the key of slot, where slot == keys.length() is the empty key slot.
+     */
+    private KType keyAt(final int slot) {
+
+        return (slot == this.keys.length()) ? Intrinsics.<KType> empty() : this.keys.get(slot);
+    }
+
+    /**
+     * @return true if the slot currently holds a live key-value pair.
+     */
+    private boolean isLive(final int slot) {
+
+        return (this.states.get(slot) & KTypeVTypeLockFreeHashMap.LIVE_FLAG) != 0;
+    }
+
+    /**
+     * Acquire the write flag of slot, waiting for a concurrent writer of the same slot if any.
+     * @return the state of the slot before it was acquired.
+     */
+    private int acquireSlot(final int slot) {
+
+        final AtomicIntegerArray states = this.states;
+
+        while (true) {
+
+            final int state = states.get(slot);
+
+            if ((state & KTypeVTypeLockFreeHashMap.WRITE_FLAG) == 0) {
+
+                if (states.compareAndSet(slot, state, state | KTypeVTypeLockFreeHashMap.WRITE_FLAG)) {
+
+                    return state;
+                }
+            } else {
+
+                Thread.yield();
+            }
+        }
+    }
+
+    /**
+     * Release the write flag of slot acquired by {@link #acquireSlot(int)},
+     * publishing the new version of the slot and its liveness.
+     */
+    private void releaseSlot(final int slot, final int previousState, final boolean live) {
+
+        this.states.set(slot, ((previousState & ~KTypeVTypeLockFreeHashMap.FLAGS_MASK) + KTypeVTypeLockFreeHashMap.VERSION_INCREMENT)
+                | (live ? KTypeVTypeLockFreeHashMap.LIVE_FLAG : 0));
+    }
+
+    /**
+     * Remove the pair of slot, if live.
+     * @return true if the pair was live and has been removed by this call.
+     */
+    private boolean removeSlot(final int slot) {
+
+        final int state = acquireSlot(slot);
+
+        releaseSlot(slot, state, false);
+
+        return (state & KTypeVTypeLockFreeHashMap.LIVE_FLAG) != 0;
+    }
+
+    private void checkRemovalMode() {
+
+        if (!this.removalMode) {
+
+            throw new UnsupportedOperationException("Removals are not supported in insertion-only mode.");
+        }
+    }
+
+    /*! #if ($TemplateOptions.declareInline("REHASH(value)",
+    "<Object,*>==>BitMixer.mix(value.hashCode() , this.perturbation)",
+    "<*,*>==>BitMixer.mix(value , this.perturbation)")) !*/
+    /**
+     * REHASH method for rehashing the keys.
+     * (inlined in generated code)
+     */
+    private int REHASH(final KType value) {
+
+        return BitMixer.mix(value.hashCode(), this.perturbation);
+    }
+
+    /*! #end !*/
+}
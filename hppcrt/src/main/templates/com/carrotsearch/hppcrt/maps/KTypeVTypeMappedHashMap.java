@@ -0,0 +1,353 @@
+package com.carrotsearch.hppcrt.maps;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import com.carrotsearch.hppcrt.*;
+
+/*! #import("com/carrotsearch/hppcrt/Intrinsics.java") !*/
+/*! ${TemplateOptions.doNotGenerateKType("OBJECT")} !*/
+/*! ${TemplateOptions.doNotGenerateVType("OBJECT")} !*/
+/**
+ * A read-only hash map of <code>KType</code> to <code>VType</code>, memory-mapped from a file
+ * written by {@link #freeze(KTypeVTypeAssociativeContainer, File)}.
+ *
+ * <p>
+ * The file holds the hash table itself, in the layout of {@link KTypeVTypeOffHeapHashMap}, so that
+ * {@link #open(File)} only maps it and lookups are done directly against the mapped pages: opening is O(1) whatever the size of the map,
+ * the pages are only loaded on access, and the OS page cache is shared by all the processes mapping the same file.
+ * </p>
+ *
+ * <p>
+ * The file layout is stable across platforms and JVMs: a header of {@link #HEADER_SIZE} bytes (magic, version, key and value types,
+ * number of slots and of entries, hashing seed, key 0 entry), then the buffer of keys, then the buffer of values aligned on 8 bytes,
+ * all in little-endian order.
+ * </p>
+ *
+ * <p>
+ * All the modifying methods, including those of the {@link #keys()} and {@link #values()} views, throw {@link UnsupportedOperationException}.
+ * {@link #clone()} returns a modifiable {@link KTypeVTypeOffHeapHashMap} copy. {@link #release()} unmaps the file right away, instead of
+ * waiting for the map to be garbage collected, after which the map must not be used anymore.
+ * </p>
+ */
+/*! ${TemplateOptions.generatedAnnotation} !*/
+public class KTypeVTypeMappedHashMap<KType, VType> extends KTypeVTypeOffHeapHashMap<KType, VType>
+{
+    /**
+     * First bytes of a frozen file, "HPRT".
+     */
+    static final int MAGIC = 0x48505254;
+
+    /**
+     * Version of the file layout.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * Size of the file header, in bytes.
+     */
+    public static final int HEADER_SIZE = 64;
+
+    /**
+     * Type of the keys, as a JVM type descriptor.
+     */
+    private static final char KEY_TYPE =
+            /*! #if ($TemplateOptions.isKType("BYTE"))
+            'B'
+            #elseif ($TemplateOptions.isKType("CHAR"))
+            'C'
+            #elseif ($TemplateOptions.isKType("SHORT"))
+            'S'
+            #elseif ($TemplateOptions.isKType("INT"))
+            'I'
+            #elseif ($TemplateOptions.isKType("LONG"))
+            'J'
+            #elseif ($TemplateOptions.isKType("FLOAT"))
+            'F'
+            #elseif ($TemplateOptions.isKType("DOUBLE"))
+            'D'
+            #else !*/
+            'L'
+            /*! #end !*/;
+
+    /**
+     * Type of the values, as a JVM type descriptor.
+     */
+    private static final char VALUE_TYPE =
+            /*! #if ($TemplateOptions.isVType("BYTE"))
+            'B'
+            #elseif ($TemplateOptions.isVType("CHAR"))
+            'C'
+            #elseif ($TemplateOptions.isVType("SHORT"))
+            'S'
+            #elseif ($TemplateOptions.isVType("INT"))
+            'I'
+            #elseif ($TemplateOptions.isVType("LONG"))
+            'J'
+            #elseif ($TemplateOptions.isVType("FLOAT"))
+            'F'
+            #elseif ($TemplateOptions.isVType("DOUBLE"))
+            'D'
+            #else !*/
+            'L'
+            /*! #end !*/;
+
+    /**
+     * Wraps mapped pages.
+     */
+    private KTypeVTypeMappedHashMap(final ByteBuffer[] keyPages, final ByteBuffer[] valuePages, final long slots,
+            final long assigned, final int pageShift, final int perturbation) {
+
+        super(keyPages, valuePages, slots, assigned, HashContainers.DEFAULT_LOAD_FACTOR, pageShift, perturbation);
+    }
+
+    /**
+     * Write all the key-value pairs of a container into <code>file</code>, overwritten if it exists,
+     * as a hash table that {@link #open(File)} maps as is.
+     */
+    public static <KType, VType> void freeze(final KTypeVTypeAssociativeContainer<KType, VType> container, final File file)
+            throws IOException {
+
+        KTypeVTypeMappedHashMap.freeze(container, file, KTypeVTypeOffHeapHashMap.DEFAULT_PAGE_SHIFT);
+    }
+
+    /**
+     * {@link #freeze(KTypeVTypeAssociativeContainer, File)} with pages of 2^pageShift slots (for tests).
+     */
+    static <KType, VType> void freeze(final KTypeVTypeAssociativeContainer<KType, VType> container, final File file,
+            final int pageShift) throws IOException {
+
+        final long slots = KTypeVTypeOffHeapHashMap.minBufferSize(container.size(), HashContainers.DEFAULT_LOAD_FACTOR);
+        final long valuesPosition = KTypeVTypeMappedHashMap.valuesPosition(slots);
+        final int perturbation = Containers.randomSeed32();
+
+        final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+
+        ByteBuffer[] keyPages = null;
+        ByteBuffer[] valuePages = null;
+
+        try {
+            //start from a zero-filled file, i.e. all slots empty
+            raf.setLength(0);
+            raf.setLength(valuesPosition + (slots << KTypeVTypeOffHeapHashMap.VALUE_SHIFT));
+
+            final FileChannel channel = raf.getChannel();
+
+            keyPages = DirectBuffers.map(channel, FileChannel.MapMode.READ_WRITE, KTypeVTypeMappedHashMap.HEADER_SIZE, slots,
+                    KTypeVTypeOffHeapHashMap.KEY_SHIFT, pageShift);
+            valuePages = DirectBuffers.map(channel, FileChannel.MapMode.READ_WRITE, valuesPosition, slots,
+                    KTypeVTypeOffHeapHashMap.VALUE_SHIFT, pageShift);
+
+            //fill the table in place, sized so that it never grows
+            final KTypeVTypeOffHeapHashMap<KType, VType> table = new KTypeVTypeOffHeapHashMap<KType, VType>(keyPages, valuePages,
+                    slots, 0, HashContainers.DEFAULT_LOAD_FACTOR, pageShift, perturbation);
+
+            table.putAll(container);
+
+            KTypeVTypeMappedHashMap.force(keyPages);
+            KTypeVTypeMappedHashMap.force(valuePages);
+
+            //the header is written last, so that an interrupted freeze() never leaves a valid file.
+            final ByteBuffer header = ByteBuffer.allocate(KTypeVTypeMappedHashMap.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+            header.putInt(0, KTypeVTypeMappedHashMap.MAGIC);
+            header.putInt(4, KTypeVTypeMappedHashMap.VERSION);
+            header.putChar(8, KTypeVTypeMappedHashMap.KEY_TYPE);
+            header.putChar(10, KTypeVTypeMappedHashMap.VALUE_TYPE);
+            header.putInt(12, pageShift);
+            header.putInt(16, perturbation);
+            header.put(20, (byte) (table.allocatedDefaultKey ? 1 : 0));
+            header.putLong(24, slots);
+            header.putLong(32, table.assigned);
+
+            if (table.allocatedDefaultKey) {
+                KTypeVTypeMappedHashMap.putValue(header, 40, table.allocatedDefaultKeyValue);
+            }
+
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+
+            channel.force(true);
+
+        } finally {
+
+            KTypeVTypeMappedHashMap.unmap(keyPages);
+            KTypeVTypeMappedHashMap.unmap(valuePages);
+
+            raf.close();
+        }
+    }
+
+    /**
+     * Map a file written by {@link #freeze(KTypeVTypeAssociativeContainer, File)}, read-only.
+     * @throws IOException if the file cannot be read, or is not a frozen map of the same key and value types.
+     */
+    @SuppressWarnings("boxing")
+    public static <KType, VType> KTypeVTypeMappedHashMap<KType, VType> open(final File file) throws IOException {
+
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+
+        ByteBuffer[] keyPages = null;
+
+        try {
+            final FileChannel channel = raf.getChannel();
+
+            final ByteBuffer header = ByteBuffer.allocate(KTypeVTypeMappedHashMap.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+            while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+                //read the whole header
+            }
+
+            if (header.hasRemaining() || header.getInt(0) != KTypeVTypeMappedHashMap.MAGIC) {
+
+                throw new IOException("Not a frozen hash map file: " + file);
+            }
+
+            if (header.getInt(4) != KTypeVTypeMappedHashMap.VERSION) {
+
+                throw new IOException(String.format("Unsupported frozen hash map version %d (expected %d): %s",
+                        header.getInt(4), KTypeVTypeMappedHashMap.VERSION, file));
+            }
+
+            if (header.getChar(8) != KTypeVTypeMappedHashMap.KEY_TYPE || header.getChar(10) != KTypeVTypeMappedHashMap.VALUE_TYPE) {
+
+                throw new IOException(String.format("Frozen hash map of '%c' keys and '%c' values, expected '%c' keys and '%c' values: %s",
+                        header.getChar(8), header.getChar(10),
+                        KTypeVTypeMappedHashMap.KEY_TYPE, KTypeVTypeMappedHashMap.VALUE_TYPE, file));
+            }
+
+            final int pageShift = header.getInt(12);
+            final long slots = header.getLong(24);
+            final long assigned = header.getLong(32);
+
+            if (pageShift < 0 || pageShift > KTypeVTypeOffHeapHashMap.DEFAULT_PAGE_SHIFT
+                    || slots < HashContainers.MIN_HASH_ARRAY_LENGTH || slots > KTypeVTypeOffHeapHashMap.MAX_SLOTS
+                    || Long.bitCount(slots) != 1 || assigned < 0 || assigned >= slots
+                    || raf.length() < KTypeVTypeMappedHashMap.valuesPosition(slots) + (slots << KTypeVTypeOffHeapHashMap.VALUE_SHIFT)) {
+
+                throw new IOException("Corrupted frozen hash map file: " + file);
+            }
+
+            keyPages = DirectBuffers.map(channel, FileChannel.MapMode.READ_ONLY, KTypeVTypeMappedHashMap.HEADER_SIZE, slots,
+                    KTypeVTypeOffHeapHashMap.KEY_SHIFT, pageShift);
+
+            final ByteBuffer[] valuePages = DirectBuffers.map(channel, FileChannel.MapMode.READ_ONLY,
+                    KTypeVTypeMappedHashMap.valuesPosition(slots), slots, KTypeVTypeOffHeapHashMap.VALUE_SHIFT, pageShift);
+
+            final KTypeVTypeMappedHashMap<KType, VType> map = new KTypeVTypeMappedHashMap<KType, VType>(keyPages, valuePages,
+                    slots, assigned, pageShift, header.getInt(16));
+
+            if (header.get(20) != 0) {
+
+                map.allocatedDefaultKey = true;
+                map.allocatedDefaultKeyValue = KTypeVTypeMappedHashMap.getValue(header, 40);
+            }
+
+            //the mapping outlives the channel
+            keyPages = null;
+
+            return map;
+
+        } finally {
+
+            KTypeVTypeMappedHashMap.unmap(keyPages);
+
+            raf.close();
+        }
+    }
+
+    /**
+     * The map is read-only.
+     * @throws UnsupportedOperationException always.
+     */
+    @Override
+    protected void checkWritable() {
+
+        throw new UnsupportedOperationException("Read-only map");
+    }
+
+    /**
+     * Position of the values in the file, after the keys and aligned on 8 bytes.
+     */
+    private static long valuesPosition(final long slots) {
+
+        return (KTypeVTypeMappedHashMap.HEADER_SIZE + (slots << KTypeVTypeOffHeapHashMap.KEY_SHIFT) + 7) & ~7L;
+    }
+
+    /**
+     * Write mapped pages to the storage device.
+     */
+    private static void force(final ByteBuffer[] pages) {
+
+        for (final ByteBuffer page : pages) {
+            ((MappedByteBuffer) page).force();
+        }
+    }
+
+    /**
+     * Unmap pages, if any.
+     */
+    private static void unmap(final ByteBuffer[] pages) {
+
+        if (pages != null) {
+
+            for (final ByteBuffer page : pages) {
+                DirectBuffers.release(page);
+            }
+        }
+    }
+
+    /**
+     * Write a value at a byte offset of a buffer.
+     */
+    private static <VType> void putValue(final ByteBuffer buffer, final int offset, final VType value) {
+
+        /*! #if ($TemplateOptions.isVType("BYTE"))
+        buffer.put(offset, value);
+        #elseif ($TemplateOptions.isVType("CHAR"))
+        buffer.putChar(offset, value);
+        #elseif ($TemplateOptions.isVType("SHORT"))
+        buffer.putShort(offset, value);
+        #elseif ($TemplateOptions.isVType("INT"))
+        buffer.putInt(offset, value);
+        #elseif ($TemplateOptions.isVType("LONG"))
+        buffer.putLong(offset, value);
+        #elseif ($TemplateOptions.isVType("FLOAT"))
+        buffer.putFloat(offset, value);
+        #elseif ($TemplateOptions.isVType("DOUBLE"))
+        buffer.putDouble(offset, value);
+        #else !*/
+        throw new UnsupportedOperationException("Off-heap storage is for primitive values only");
+        /*! #end !*/
+    }
+
+    /**
+     * Read a value at a byte offset of a buffer.
+     */
+    private static <VType> VType getValue(final ByteBuffer buffer, final int offset) {
+
+        /*! #if ($TemplateOptions.isVType("BYTE"))
+        return buffer.get(offset);
+        #elseif ($TemplateOptions.isVType("CHAR"))
+        return buffer.getChar(offset);
+        #elseif ($TemplateOptions.isVType("SHORT"))
+        return buffer.getShort(offset);
+        #elseif ($TemplateOptions.isVType("INT"))
+        return buffer.getInt(offset);
+        #elseif ($TemplateOptions.isVType("LONG"))
+        return buffer.getLong(offset);
+        #elseif ($TemplateOptions.isVType("FLOAT"))
+        return buffer.getFloat(offset);
+        #elseif ($TemplateOptions.isVType("DOUBLE"))
+        return buffer.getDouble(offset);
+        #else !*/
+        throw new UnsupportedOperationException("Off-heap storage is for primitive values only");
+        /*! #end !*/
+    }
+}
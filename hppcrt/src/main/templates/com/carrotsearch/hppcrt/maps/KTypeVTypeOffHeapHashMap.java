@@ -0,0 +1,1845 @@
+package com.carrotsearch.hppcrt.maps;
+
+import java.nio.ByteBuffer;
+
+import com.carrotsearch.hppcrt.*;
+import com.carrotsearch.hppcrt.cursors.*;
+import com.carrotsearch.hppcrt.predicates.*;
+import com.carrotsearch.hppcrt.procedures.*;
+import com.carrotsearch.hppcrt.hash.*;
+
+/*! #import("com/carrotsearch/hppcrt/Intrinsics.java") !*/
+/*! ${TemplateOptions.doNotGenerateKType("OBJECT")} !*/
+/*! ${TemplateOptions.doNotGenerateVType("OBJECT")} !*/
+/**
+ * A hash map of <code>KType</code> to <code>VType</code>, implemented using open
+ * addressing with linear probing for collision resolution, whose keys and values are stored off-heap,
+ * in direct {@link ByteBuffer}s.
+ *
+ * <p>
+ * The layout and the algorithms are the ones of {@link KTypeVTypeHashMap}: the keys and the values are
+ * stored in two hash-indexed buffers of power-of-two number of slots, the key 0 being kept aside ({@link #allocatedDefaultKey}), and
+ * removals shifting back the conflicting keys. The buffers are split into pages of at most 2^27 slots (so that a page
+ * is at most 1GB), so that the number of slots can go up to 2^32, way beyond {@link HashContainers#MAX_HASH_ARRAY_LENGTH}.
+ * As a consequence, {@link #size()} and {@link #capacity()} saturate to {@link Integer#MAX_VALUE}, see {@link #longSize()} and {@link #longCapacity()}.
+ * </p>
+ *
+ * <p>
+ * Storing the entries off-heap keeps huge maps away from the garbage collector: the heap only holds the few page
+ * objects, whatever the number of entries. The direct memory of the pages is released as soon as the buffers are reallocated, or
+ * on {@link #release()}, after which the map must not be used anymore. Otherwise, it is reclaimed when the map is garbage collected.
+ * Note that the direct memory available to the JVM is limited by <code>-XX:MaxDirectMemorySize</code>.
+ * </p>
+ *
+ * <p>
+ * The iteration cursors return the slot of the entry as index, or the number of slots for the key 0, as long as it fits in an int,
+ * -1 otherwise.
+ * </p>
+ *
+ * <p><b>Important note.</b> The implementation uses power-of-two tables and linear
+ * probing, which may cause poor performance (many collisions) if hash values are
+ * not properly distributed.
+ * </p>
+ */
+/*! ${TemplateOptions.generatedAnnotation} !*/
+public class KTypeVTypeOffHeapHashMap<KType, VType>
+implements KTypeVTypeMap<KType, VType>, Cloneable
+{
+    /**
+     * Maximum number of slots of the buffers.
+     */
+    public static final long MAX_SLOTS = 1L << 32;
+
+    /**
+     * Default page size, in number of slots.
+     */
+    static final int DEFAULT_PAGE_SHIFT = 27;
+
+    /**
+     * Size of a key in bytes, as a power of two.
+     */
+    static final int KEY_SHIFT =
+            /*! #if ($TemplateOptions.isKType("BYTE"))
+            0
+            #elseif ($TemplateOptions.isKType("CHAR", "SHORT"))
+            1
+            #elseif ($TemplateOptions.isKType("INT", "FLOAT"))
+            2
+            #else !*/
+            3
+            /*! #end !*/;
+
+    /**
+     * Size of a value in bytes, as a power of two.
+     */
+    static final int VALUE_SHIFT =
+            /*! #if ($TemplateOptions.isVType("BYTE"))
+            0
+            #elseif ($TemplateOptions.isVType("CHAR", "SHORT"))
+            1
+            #elseif ($TemplateOptions.isVType("INT", "FLOAT"))
+            2
+            #else !*/
+            3
+            /*! #end !*/;
+
+    protected VType defaultValue = Intrinsics.<VType> empty();
+
+    /**
+     * Pages of the hash-indexed buffer holding all keys, the key of slot <code>s</code>
+     * being in page <code>s >>> pageShift</code>. null once released.
+     */
+    protected ByteBuffer[] keyPages;
+
+    /**
+     * Pages of the hash-indexed buffer holding all values associated to the keys
+     * stored in {@link #keyPages}. null once released.
+     */
+    protected ByteBuffer[] valuePages;
+
+    /**
+     * Number of slots - 1 of the buffers.
+     */
+    protected long mask;
+
+    /**
+     * Number of slots of a page, as a power of two.
+     */
+    protected final int pageShift;
+
+    /**
+     * True if key = 0 is in the map.
+     */
+    public boolean allocatedDefaultKey = false;
+
+    /**
+     * if allocatedDefaultKey = true, contains the associated V to the key = 0
+     */
+    public VType allocatedDefaultKeyValue;
+
+    /**
+     * Cached number of assigned slots in {@link #keyPages}.
+     */
+    protected long assigned;
+
+    /**
+     * The load factor for this map (fraction of allocated slots
+     * before the buffers must be rehashed or reallocated).
+     */
+    protected final double loadFactor;
+
+    /**
+     * Resize buffers when {@link #assigned} hits this value.
+     */
+    private long resizeAt;
+
+    /**
+     * Per-instance size perturbation
+     * introduced in rehashing to create a unique key distribution.
+     */
+    private final int perturbation;
+
+    /**
+     * Default constructor: Creates a hash map with the default capacity of {@link Containers#DEFAULT_EXPECTED_ELEMENTS},
+     * load factor of {@link HashContainers#DEFAULT_LOAD_FACTOR}.
+     *
+     * <p>See class notes about hash distribution importance.</p>
+     */
+    public KTypeVTypeOffHeapHashMap() {
+        this(Containers.DEFAULT_EXPECTED_ELEMENTS);
+    }
+
+    /**
+     * Creates a hash map with the given initial capacity, default load factor of
+     * {@link HashContainers#DEFAULT_LOAD_FACTOR}.
+     *
+     * <p>See class notes about hash distribution importance.</p>
+     *
+     * @param initialCapacity Initial capacity (greater than zero and automatically
+     *            rounded to the next power of two).
+     */
+    public KTypeVTypeOffHeapHashMap(final long initialCapacity) {
+        this(initialCapacity, HashContainers.DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Creates a hash map with the given initial capacity,
+     * load factor.
+     *
+     * @param loadFactor The load factor (greater than zero and smaller than 1).
+     */
+    public KTypeVTypeOffHeapHashMap(final long initialCapacity, final double loadFactor) {
+        this(initialCapacity, loadFactor, KTypeVTypeOffHeapHashMap.DEFAULT_PAGE_SHIFT);
+    }
+
+    /**
+     * Creates a hash map with the given initial capacity,
+     * load factor, and pages of 2^pageShift slots (for tests).
+     */
+    KTypeVTypeOffHeapHashMap(final long initialCapacity, final double loadFactor, final int pageShift) {
+        assert pageShift >= 0 && pageShift <= KTypeVTypeOffHeapHashMap.DEFAULT_PAGE_SHIFT;
+
+        this.loadFactor = loadFactor;
+        this.pageShift = pageShift;
+        this.perturbation = Containers.randomSeed32();
+        //take into account of the load factor to guarantee no reallocations before reaching  initialCapacity.
+        allocateBuffers(KTypeVTypeOffHeapHashMap.minBufferSize(initialCapacity, loadFactor));
+    }
+
+    /**
+     * Creates a hash map over existing pages of <code>slots</code> slots in total (a power of two), holding
+     * <code>assigned</code> keys placed using the <code>perturbation</code> seed, see {@link KTypeVTypeMappedHashMap}.
+     */
+    KTypeVTypeOffHeapHashMap(final ByteBuffer[] keyPages, final ByteBuffer[] valuePages, final long slots, final long assigned,
+            final double loadFactor, final int pageShift, final int perturbation) {
+
+        this.keyPages = keyPages;
+        this.valuePages = valuePages;
+        this.mask = slots - 1;
+        this.assigned = assigned;
+        this.loadFactor = loadFactor;
+        this.pageShift = pageShift;
+        this.perturbation = perturbation;
+        this.resizeAt = Math.min(slots - 1, (long) Math.ceil(slots * loadFactor));
+    }
+
+    /**
+     * Create a hash map from all key-value pairs of another container.
+     */
+    public KTypeVTypeOffHeapHashMap(final KTypeVTypeAssociativeContainer<KType, VType> container) {
+        this(container.size());
+        putAll(container);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public VType put(final KType key, final VType value) {
+
+        checkWritable();
+
+        if (Intrinsics.<KType> isEmpty(key)) {
+
+            if (this.allocatedDefaultKey) {
+
+                final VType previousValue = this.allocatedDefaultKeyValue;
+                this.allocatedDefaultKeyValue = value;
+
+                return previousValue;
+            }
+
+            this.allocatedDefaultKeyValue = value;
+            this.allocatedDefaultKey = true;
+
+            return this.defaultValue;
+        }
+
+        final long mask = this.mask;
+
+        final ByteBuffer[] keyPages = this.keyPages;
+
+        long slot = REHASH(key) & mask;
+        KType existing;
+
+        while (!Intrinsics.<KType> isEmpty(existing = keyAt(keyPages, slot))) {
+
+            if (Intrinsics.<KType> equalsNotNull(key, existing)) {
+
+                final VType oldValue = valueAt(this.valuePages, slot);
+                setValueAt(this.valuePages, slot, value);
+
+                return oldValue;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        // Check if we need to grow. If so, reallocate new data, fill in the last element
+        // and rehash.
+        if (this.assigned == this.resizeAt) {
+
+            expandAndPut(key, value, slot);
+        } else {
+            this.assigned++;
+
+            setKeyAt(keyPages, slot, key);
+            setValueAt(this.valuePages, slot, value);
+        }
+
+        return this.defaultValue;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int putAll(final KTypeVTypeAssociativeContainer<? extends KType, ? extends VType> container) {
+        return putAll((Iterable<? extends KTypeVTypeCursor<? extends KType, ? extends VType>>) container);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int putAll(final Iterable<? extends KTypeVTypeCursor<? extends KType, ? extends VType>> iterable) {
+        final long count = this.longSize();
+        for (final KTypeVTypeCursor<? extends KType, ? extends VType> c : iterable) {
+            put(c.key, c.value);
+        }
+        return (int) (this.longSize() - count);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean putIfAbsent(final KType key, final VType value) {
+        if (!containsKey(key)) {
+            put(key, value);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * If <code>key</code> exists, <code>putValue</code> is inserted into the map,
+     * otherwise any existing value is incremented by <code>additionValue</code>.
+     *
+     * @param key
+     *          The key of the value to adjust.
+     * @param putValue
+     *          The value to put if <code>key</code> does not exist.
+     * @param incrementValue
+     *          The value to add to the existing value if <code>key</code> exists.
+     * @return Returns the current value associated with <code>key</code> (after
+     *         changes).
+     */
+    @SuppressWarnings("cast")
+    @Override
+    public VType putOrAdd(final KType key, VType putValue, final VType incrementValue) {
+
+        if (containsKey(key)) {
+            putValue = get(key);
+
+            putValue = (VType) (Intrinsics.<VType> add(putValue, incrementValue));
+        }
+
+        put(key, putValue);
+        return putValue;
+    }
+
+    /**
+     * Adds <code>incrementValue</code> to any existing value for the given <code>key</code>
+     * or inserts <code>incrementValue</code> if <code>key</code> did not previously exist.
+     *
+     * @param key The key of the value to adjust.
+     * @param incrementValue The value to put or add to the existing value if <code>key</code> exists.
+     * @return Returns the current value associated with <code>key</code> (after changes).
+     */
+    @Override
+    public VType addTo(final KType key, final VType incrementValue)
+    {
+        return putOrAdd(key, incrementValue, incrementValue);
+    }
+
+    /**
+     * Expand the internal storage buffers (capacity) and rehash, then
+     * release the old buffers.
+     */
+    private void expandAndPut(final KType pendingKey, final VType pendingValue, final long freeSlot) {
+        assert this.assigned == this.resizeAt;
+
+        //default sentinel value is never in the keys buffer, so never trigger reallocs
+        assert !Intrinsics.<KType> isEmpty(pendingKey);
+
+        // Try to allocate new buffers first. If we OOM, it'll be now without
+        // leaving the data structure in an inconsistent state.
+        final ByteBuffer[] oldKeyPages = this.keyPages;
+        final ByteBuffer[] oldValuePages = this.valuePages;
+        final long oldMask = this.mask;
+
+        allocateBuffers(KTypeVTypeOffHeapHashMap.nextBufferSize(oldMask + 1, this.assigned, this.loadFactor));
+
+        // We have succeeded at allocating new data so insert the pending key/value at
+        // the free slot in the old buffers before rehashing.
+        this.assigned++;
+
+        setKeyAt(oldKeyPages, freeSlot, pendingKey);
+        setValueAt(oldValuePages, freeSlot, pendingValue);
+
+        //Variables for adding
+        final long mask = this.mask;
+
+        final ByteBuffer[] keyPages = this.keyPages;
+        final ByteBuffer[] valuePages = this.valuePages;
+
+        final int perturb = this.perturbation;
+
+        //Rehash all stored keys into the new buffers.
+        for (long i = oldMask; i >= 0; i--) {
+
+            final KType key = keyAt(oldKeyPages, i);
+
+            if (!Intrinsics.<KType> isEmpty(key)) {
+
+                long slot = REHASH2(key, perturb) & mask;
+
+                //similar to put(), except all inserted keys are known to be unique.
+                while (!Intrinsics.<KType> isEmpty(keyAt(keyPages, slot))) {
+                    slot = (slot + 1) & mask;
+                } //end while
+
+                setKeyAt(keyPages, slot, key);
+                setValueAt(valuePages, slot, valueAt(oldValuePages, i));
+            }
+        }
+
+        //the old direct memory can go now.
+        KTypeVTypeOffHeapHashMap.releasePages(oldKeyPages);
+        KTypeVTypeOffHeapHashMap.releasePages(oldValuePages);
+    }
+
+    /**
+     * Allocate internal buffers for a given number of slots.
+     *
+     * @param slots New number of slots (must be a power of two).
+     */
+    @SuppressWarnings("boxing")
+    private void allocateBuffers(final long slots) {
+
+        final long pageSlots = Math.min(slots, 1L << this.pageShift);
+        final int pageCount = (int) (slots / pageSlots);
+
+        final ByteBuffer[] keyPages = new ByteBuffer[pageCount];
+        final ByteBuffer[] valuePages = new ByteBuffer[pageCount];
+
+        try {
+            for (int i = 0; i < pageCount; i++) {
+
+                keyPages[i] = DirectBuffers.allocate((int) (pageSlots << KTypeVTypeOffHeapHashMap.KEY_SHIFT));
+                valuePages[i] = DirectBuffers.allocate((int) (pageSlots << KTypeVTypeOffHeapHashMap.VALUE_SHIFT));
+            }
+        } catch (final OutOfMemoryError e) {
+
+            //do not wait for the GC to give back what was already allocated
+            KTypeVTypeOffHeapHashMap.releasePages(keyPages);
+            KTypeVTypeOffHeapHashMap.releasePages(valuePages);
+
+            throw new BufferAllocationException(
+                    "Not enough memory to allocate buffers to grow from %d -> %d elements",
+                    e,
+                    (this.keyPages == null) ? 0 : this.mask + 1,
+                            slots);
+        }
+
+        this.keyPages = keyPages;
+        this.valuePages = valuePages;
+        this.mask = slots - 1;
+
+        //allocate so that there is at least one slot that remains allocated = false
+        //this is compulsory to guarantee proper stop in searching loops
+        this.resizeAt = Math.min(slots - 1, (long) Math.ceil(slots * this.loadFactor));
+    }
+
+    /**
+     * Gives the minimum number of slots able to accommodate elements,
+     * given loadFactor.
+     */
+    @SuppressWarnings("boxing")
+    static long minBufferSize(final long elements, final double loadFactor) {
+
+        if (loadFactor < HashContainers.MIN_LOAD_FACTOR || loadFactor > HashContainers.MAX_LOAD_FACTOR) {
+
+            throw new BufferAllocationException(
+                    "The load factor should be in range [%.2f, %.2f]: %f",
+                    HashContainers.MIN_LOAD_FACTOR,
+                    HashContainers.MAX_LOAD_FACTOR,
+                    loadFactor);
+        }
+
+        //Assure room for one additional slot (marking the not-allocated) + one more as safety margin.
+        long length = (long) (elements / loadFactor) + 2;
+
+        //Then, round it to the next power of 2.
+        length = Math.max(HashContainers.MIN_HASH_ARRAY_LENGTH, BitUtil.nextHighestPowerOfTwo(length));
+
+        if (length > KTypeVTypeOffHeapHashMap.MAX_SLOTS) {
+
+            throw new BufferAllocationException(
+                    "Maximum number of slots exceeded for this load factor (elements: %d, load factor: %f)",
+                    elements,
+                    loadFactor);
+        }
+
+        return length;
+    }
+
+    /**
+     * Gives the next (bigger) number of slots authorized for the buffers.
+     */
+    @SuppressWarnings("boxing")
+    private static long nextBufferSize(final long slots, final long elements, final double loadFactor) {
+
+        if (slots == KTypeVTypeOffHeapHashMap.MAX_SLOTS) {
+
+            throw new BufferAllocationException(
+                    "Maximum number of slots exceeded for this load factor (elements: %d, load factor: %f)",
+                    elements,
+                    loadFactor);
+        }
+
+        return slots << 1;
+    }
+
+    /**
+     * Release the direct memory of pages, some of which may be null.
+     */
+    private static void releasePages(final ByteBuffer[] pages) {
+
+        for (int i = 0; i < pages.length; i++) {
+
+            DirectBuffers.release(pages[i]);
+            pages[i] = null;
+        }
+    }
+
+    /**
+     * Release the off-heap memory of this map right away, instead of waiting for
+     * the map to be garbage collected. The map is then empty and must not be used anymore, apart
+     * from {@link #isReleased()} and {@link #release()} which does nothing once released.
+     */
+    public void release() {
+
+        if (this.keyPages != null) {
+
+            KTypeVTypeOffHeapHashMap.releasePages(this.keyPages);
+            KTypeVTypeOffHeapHashMap.releasePages(this.valuePages);
+
+            this.keyPages = null;
+            this.valuePages = null;
+            this.assigned = 0;
+            this.allocatedDefaultKey = false;
+        }
+    }
+
+    /**
+     * @return true if {@link #release()} has been called.
+     */
+    public boolean isReleased() {
+
+        return this.keyPages == null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public VType remove(final KType key) {
+
+        checkWritable();
+
+        if (Intrinsics.<KType> isEmpty(key)) {
+
+            if (this.allocatedDefaultKey) {
+
+                final VType previousValue = this.allocatedDefaultKeyValue;
+
+                this.allocatedDefaultKey = false;
+
+                return previousValue;
+            }
+
+            return this.defaultValue;
+        }
+
+        final long mask = this.mask;
+
+        final ByteBuffer[] keyPages = this.keyPages;
+
+        long slot = REHASH(key) & mask;
+        KType existing;
+
+        while (!Intrinsics.<KType> isEmpty(existing = keyAt(keyPages, slot))) {
+
+            if (Intrinsics.<KType> equalsNotNull(key, existing)) {
+
+                final VType value = valueAt(this.valuePages, slot);
+
+                shiftConflictingKeys(slot);
+
+                return value;
+            }
+            slot = (slot + 1) & mask;
+        } //end while true
+
+        return this.defaultValue;
+    }
+
+    /**
+     * Shift all the slot-conflicting keys allocated to (and including) <code>slot</code>.
+     */
+    private void shiftConflictingKeys(long gapSlot) {
+        final long mask = this.mask;
+
+        final ByteBuffer[] keyPages = this.keyPages;
+        final ByteBuffer[] valuePages = this.valuePages;
+
+        final int perturb = this.perturbation;
+
+        // Perform shifts of conflicting keys to fill in the gap.
+        long distance = 0;
+        while (true) {
+
+            final long slot = (gapSlot + (++distance)) & mask;
+
+            final KType existing = keyAt(keyPages, slot);
+
+            if (Intrinsics.<KType> isEmpty(existing)) {
+                break;
+            }
+
+            final long idealSlotModMask = REHASH2(existing, perturb) & mask;
+
+            //original HPPC code: shift = (slot - idealSlot) & mask;
+            //equivalent to shift = (slot & mask - idealSlot & mask) & mask;
+            //since slot and idealSlotModMask are already folded, we have :
+            final long shift = (slot - idealSlotModMask) & mask;
+
+            if (shift >= distance) {
+                // Entry at this position was originally at or before the gap slot.
+                // Move the conflict-shifted entry to the gap's position and repeat the procedure
+                // for any entries to the right of the current position, treating it
+                // as the new gap.
+                setKeyAt(keyPages, gapSlot, existing);
+                setValueAt(valuePages, gapSlot, valueAt(valuePages, slot));
+
+                gapSlot = slot;
+                distance = 0;
+            }
+        } //end while
+
+        // Mark the last found gap slot without a conflict as empty.
+        setKeyAt(keyPages, gapSlot, Intrinsics.<KType> empty());
+
+        this.assigned--;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public int removeAll(final KTypeContainer<? super KType> other) {
+        checkWritable();
+
+        final long before = this.longSize();
+
+        //1) other is a KTypeLookupContainer, so with fast lookup guarantees
+        //and is bigger than this, so take advantage of both and iterate over this
+        //and test other elements by their contains().
+        if (other.size() >= before && other instanceof KTypeLookupContainer<?>) {
+
+            if (this.allocatedDefaultKey) {
+
+                if (other.contains(Intrinsics.<KType> empty())) {
+                    this.allocatedDefaultKey = false;
+                }
+            }
+
+            final ByteBuffer[] keyPages = this.keyPages;
+            final long slots = this.mask + 1;
+
+            for (long i = 0; i < slots;) {
+                KType existing;
+                if (!Intrinsics.<KType> isEmpty(existing = keyAt(keyPages, i)) && other.contains(existing)) {
+
+                    shiftConflictingKeys(i);
+                    // Shift, do not increment slot.
+                } else {
+                    i++;
+                }
+            }
+        } else {
+            //2) Do not use contains() from container, which may lead to O(n**2) execution times,
+            //so it iterate linearly and call remove() from map which is O(1).
+            for (final KTypeCursor<? super KType> c : other) {
+
+                remove(Intrinsics.<KType> cast(c.value));
+            }
+        }
+
+        return (int) (before - this.longSize());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int removeAll(final KTypePredicate<? super KType> predicate) {
+        checkWritable();
+
+        final long before = this.longSize();
+
+        if (this.allocatedDefaultKey) {
+
+            if (predicate.apply(Intrinsics.<KType> empty())) {
+                this.allocatedDefaultKey = false;
+            }
+        }
+
+        final ByteBuffer[] keyPages = this.keyPages;
+        final long slots = this.mask + 1;
+
+        for (long i = 0; i < slots;) {
+            KType existing;
+            if (!Intrinsics.<KType> isEmpty(existing = keyAt(keyPages, i)) && predicate.apply(existing)) {
+
+                shiftConflictingKeys(i);
+                // Shift, do not increment slot.
+            } else {
+                i++;
+            }
+        }
+
+        return (int) (before - this.longSize());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int removeAll(final KTypeVTypePredicate<? super KType, ? super VType> predicate) {
+        checkWritable();
+
+        final long before = this.longSize();
+
+        if (this.allocatedDefaultKey) {
+
+            if (predicate.apply(Intrinsics.<KType> empty(), this.allocatedDefaultKeyValue)) {
+                this.allocatedDefaultKey = false;
+            }
+        }
+
+        final ByteBuffer[] keyPages = this.keyPages;
+        final ByteBuffer[] valuePages = this.valuePages;
+        final long slots = this.mask + 1;
+
+        for (long i = 0; i < slots;) {
+            KType existing;
+            if (!Intrinsics.<KType> isEmpty(existing = keyAt(keyPages, i)) && predicate.apply(existing, valueAt(valuePages, i))) {
+
+                shiftConflictingKeys(i);
+                // Shift, do not increment slot.
+            } else {
+                i++;
+            }
+        }
+
+        return (int) (before - this.longSize());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public VType get(final KType key) {
+        if (Intrinsics.<KType> isEmpty(key)) {
+
+            if (this.allocatedDefaultKey) {
+
+                return this.allocatedDefaultKeyValue;
+            }
+
+            return this.defaultValue;
+        }
+
+        final long mask = this.mask;
+
+        final ByteBuffer[] keyPages = this.keyPages;
+
+        long slot = REHASH(key) & mask;
+        KType existing;
+
+        while (!Intrinsics.<KType> isEmpty(existing = keyAt(keyPages, slot))) {
+
+            if (Intrinsics.<KType> equalsNotNull(key, existing)) {
+
+                return valueAt(this.valuePages, slot);
+            }
+            slot = (slot + 1) & mask;
+        } //end while true
+
+        return this.defaultValue;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean containsKey(final KType key) {
+
+        if (Intrinsics.<KType> isEmpty(key)) {
+
+            return this.allocatedDefaultKey;
+        }
+
+        final long mask = this.mask;
+
+        final ByteBuffer[] keyPages = this.keyPages;
+
+        long slot = REHASH(key) & mask;
+        KType existing;
+
+        while (!Intrinsics.<KType> isEmpty(existing = keyAt(keyPages, slot))) {
+
+            if (Intrinsics.<KType> equalsNotNull(key, existing)) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        } //end while true
+
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear() {
+        checkWritable();
+
+        this.assigned = 0;
+
+        // States are always cleared.
+        this.allocatedDefaultKey = false;
+
+        //Only the keys need to be blanked.
+        for (final ByteBuffer page : this.keyPages) {
+            DirectBuffers.zero(page);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>Saturates to {@link Integer#MAX_VALUE}, see {@link #longSize()}.</p>
+     */
+    @Override
+    public int size() {
+        return (int) Math.min(longSize(), Integer.MAX_VALUE);
+    }
+
+    /**
+     * @return the number of entries of the map.
+     */
+    public long longSize() {
+        return this.assigned + (this.allocatedDefaultKey ? 1 : 0);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>Saturates to {@link Integer#MAX_VALUE}, see {@link #longCapacity()}.</p>
+     */
+    @Override
+    public int capacity() {
+
+        return (int) Math.min(this.resizeAt, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @return the number of entries the map can hold before its buffers are reallocated.
+     */
+    public long longCapacity() {
+
+        return this.resizeAt;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEmpty() {
+        return longSize() == 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+        int h = 0;
+
+        if (this.allocatedDefaultKey) {
+            h += BitMixer.mix(this.allocatedDefaultKeyValue);
+        }
+
+        final ByteBuffer[] keyPages = this.keyPages;
+        final ByteBuffer[] valuePages = this.valuePages;
+
+        for (long i = this.mask; i >= 0; i--) {
+            KType existing;
+            if (!Intrinsics.<KType> isEmpty(existing = keyAt(keyPages, i))) {
+
+                h += BitMixer.mix(existing) ^ BitMixer.mix(valueAt(valuePages, i));
+            }
+        }
+
+        return h;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(final Object obj) {
+        if (obj != null) {
+            if (obj == this) {
+                return true;
+            }
+
+            //must be of the same class, subclasses are not comparable
+            if (obj.getClass() != this.getClass()) {
+                return false;
+            }
+
+            /* #if ($TemplateOptions.AnyGeneric) */
+            @SuppressWarnings("unchecked")
+            final/* #end */
+            KTypeVTypeOffHeapHashMap<KType, VType> other = (KTypeVTypeOffHeapHashMap<KType, VType>) obj;
+
+            //must be of the same size
+            if (other.longSize() != this.longSize()) {
+                return false;
+            }
+
+            final EntryIterator it = this.iterator();
+
+            while (it.hasNext()) {
+                final KTypeVTypeCursor<KType, VType> c = it.next();
+
+                if (!other.containsKey(c.key)) {
+                    //recycle
+                    it.release();
+                    return false;
+                }
+
+                final VType otherValue = other.get(c.key);
+
+                if (!Intrinsics.<VType> equals(c.value, otherValue)) {
+                    //recycle
+                    it.release();
+                    return false;
+                }
+            } //end while
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * An iterator implementation for {@link #iterator}.
+     * Holds a KTypeVTypeCursor returning
+     * (key, value, index) = (KType key, VType value, index the slot of the entry, or the number of slots for key = 0)
+     */
+    public final class EntryIterator extends AbstractIterator<KTypeVTypeCursor<KType, VType>>
+    {
+        public final KTypeVTypeCursor<KType, VType> cursor;
+
+        private long slot;
+
+        public EntryIterator() {
+            this.cursor = new KTypeVTypeCursor<KType, VType>();
+            this.cursor.index = -2;
+        }
+
+        /**
+         * Iterate backwards w.r.t the buffer, to
+         * minimize collision chains when filling another hash container (ex. with putAll())
+         */
+        @Override
+        protected KTypeVTypeCursor<KType, VType> fetch() {
+
+            final long slots = KTypeVTypeOffHeapHashMap.this.mask + 1;
+
+            if (this.slot == slots + 1) {
+
+                this.slot = slots;
+
+                if (KTypeVTypeOffHeapHashMap.this.allocatedDefaultKey) {
+
+                    this.cursor.index = KTypeVTypeOffHeapHashMap.cursorIndex(slots);
+                    this.cursor.key = Intrinsics.<KType> empty();
+                    this.cursor.value = KTypeVTypeOffHeapHashMap.this.allocatedDefaultKeyValue;
+
+                    return this.cursor;
+                }
+                //no value associated with the default key, continue iteration...
+            }
+
+            final ByteBuffer[] keyPages = KTypeVTypeOffHeapHashMap.this.keyPages;
+
+            long i = this.slot - 1;
+
+            while (i >= 0 && Intrinsics.<KType> isEmpty(keyAt(keyPages, i))) {
+                i--;
+            }
+
+            if (i == -1) {
+                return done();
+            }
+
+            this.slot = i;
+            this.cursor.index = KTypeVTypeOffHeapHashMap.cursorIndex(i);
+            this.cursor.key = keyAt(keyPages, i);
+            this.cursor.value = valueAt(KTypeVTypeOffHeapHashMap.this.valuePages, i);
+
+            return this.cursor;
+        }
+    }
+
+    /**
+     * internal pool of EntryIterator
+     */
+    protected final IteratorPool<KTypeVTypeCursor<KType, VType>, EntryIterator> entryIteratorPool = new IteratorPool<KTypeVTypeCursor<KType, VType>, EntryIterator>(
+            new ObjectFactory<EntryIterator>() {
+
+                @Override
+                public EntryIterator create() {
+                    return new EntryIterator();
+                }
+
+                @Override
+                public void initialize(final EntryIterator obj) {
+                    obj.slot = KTypeVTypeOffHeapHashMap.this.mask + 2;
+                }
+
+                @Override
+                public void reset(final EntryIterator obj) {
+                    //nothing to reset, all primitives
+                }
+            });
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public EntryIterator iterator() {
+        //return new EntryIterator();
+        return this.entryIteratorPool.borrow();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends KTypeVTypeProcedure<? super KType, ? super VType>> T forEach(final T procedure) {
+
+        if (this.allocatedDefaultKey) {
+
+            procedure.apply(Intrinsics.<KType> empty(), this.allocatedDefaultKeyValue);
+        }
+
+        final ByteBuffer[] keyPages = this.keyPages;
+        final ByteBuffer[] valuePages = this.valuePages;
+
+        //Iterate in reverse for side-stepping the longest conflict chain
+        //in another hash, in case apply() is actually used to fill another hash container.
+        for (long i = this.mask; i >= 0; i--) {
+            KType existing;
+            if (!Intrinsics.<KType> isEmpty(existing = keyAt(keyPages, i))) {
+                procedure.apply(existing, valueAt(valuePages, i));
+            }
+        }
+
+        return procedure;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends KTypeVTypePredicate<? super KType, ? super VType>> T forEach(final T predicate) {
+
+        if (this.allocatedDefaultKey) {
+
+            if (!predicate.apply(Intrinsics.<KType> empty(), this.allocatedDefaultKeyValue)) {
+
+                return predicate;
+            }
+        }
+
+        final ByteBuffer[] keyPages = this.keyPages;
+        final ByteBuffer[] valuePages = this.valuePages;
+
+        //Iterate in reverse for side-stepping the longest conflict chain
+        //in another hash, in case apply() is actually used to fill another hash container.
+        for (long i = this.mask; i >= 0; i--) {
+            KType existing;
+            if (!Intrinsics.<KType> isEmpty(existing = keyAt(keyPages, i))) {
+                if (!predicate.apply(existing, valueAt(valuePages, i))) {
+                    break;
+                }
+            }
+        } //end for
+
+        return predicate;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @return a new KeysCollection view of the keys of this map.
+     */
+    @Override
+    public KeysCollection keys() {
+        return new KeysCollection();
+    }
+
+    /**
+     * A view of the keys inside this map.
+     */
+    public final class KeysCollection extends AbstractKTypeCollection<KType> implements KTypeLookupContainer<KType>
+    {
+        private final KTypeVTypeOffHeapHashMap<KType, VType> owner = KTypeVTypeOffHeapHashMap.this;
+
+        @Override
+        public boolean contains(final KType e) {
+            return containsKey(e);
+        }
+
+        @Override
+        public <T extends KTypeProcedure<? super KType>> T forEach(final T procedure) {
+
+            if (this.owner.allocatedDefaultKey) {
+
+                procedure.apply(Intrinsics.<KType> empty());
+            }
+
+            final ByteBuffer[] keyPages = this.owner.keyPages;
+
+            //Iterate in reverse for side-stepping the longest conflict chain
+            //in another hash, in case apply() is actually used to fill another hash container.
+            for (long i = this.owner.mask; i >= 0; i--) {
+
+                KType existing;
+                if (!Intrinsics.<KType> isEmpty(existing = keyAt(keyPages, i))) {
+                    procedure.apply(existing);
+                }
+            }
+
+            return procedure;
+        }
+
+        @Override
+        public <T extends KTypePredicate<? super KType>> T forEach(final T predicate) {
+
+            if (this.owner.allocatedDefaultKey) {
+
+                if (!predicate.apply(Intrinsics.<KType> empty())) {
+
+                    return predicate;
+                }
+            }
+
+            final ByteBuffer[] keyPages = this.owner.keyPages;
+
+            //Iterate in reverse for side-stepping the longest conflict chain
+            //in another hash, in case apply() is actually used to fill another hash container.
+            for (long i = this.owner.mask; i >= 0; i--) {
+                KType existing;
+                if (!Intrinsics.<KType> isEmpty(existing = keyAt(keyPages, i))) {
+                    if (!predicate.apply(existing)) {
+                        break;
+                    }
+                }
+            }
+
+            return predicate;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public KeysIterator iterator() {
+            //return new KeysIterator();
+            return this.keyIteratorPool.borrow();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int size() {
+            return this.owner.size();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int capacity() {
+
+            return this.owner.capacity();
+        }
+
+        @Override
+        public void clear() {
+            this.owner.clear();
+        }
+
+        @Override
+        public int removeAll(final KTypePredicate<? super KType> predicate) {
+            return this.owner.removeAll(predicate);
+        }
+
+        @Override
+        public int removeAll(final KType e) {
+            final boolean hasKey = this.owner.containsKey(e);
+            int result = 0;
+            if (hasKey) {
+                this.owner.remove(e);
+                result = 1;
+            }
+            return result;
+        }
+
+        /**
+         * internal pool of KeysIterator
+         */
+        protected final IteratorPool<KTypeCursor<KType>, KeysIterator> keyIteratorPool = new IteratorPool<KTypeCursor<KType>, KeysIterator>(
+                new ObjectFactory<KeysIterator>() {
+
+                    @Override
+                    public KeysIterator create() {
+                        return new KeysIterator();
+                    }
+
+                    @Override
+                    public void initialize(final KeysIterator obj) {
+                        obj.slot = KTypeVTypeOffHeapHashMap.this.mask + 2;
+                    }
+
+                    @Override
+                    public void reset(final KeysIterator obj) {
+                        //nothing to reset, all primitives
+                    }
+                });
+
+        @Override
+        public KType[] toArray(final KType[] target) {
+
+            int count = 0;
+
+            if (this.owner.allocatedDefaultKey) {
+
+                target[count++] = Intrinsics.<KType> empty();
+            }
+
+            final ByteBuffer[] keyPages = this.owner.keyPages;
+
+            for (long i = 0; i <= this.owner.mask; i++) {
+                KType existing;
+                if (!Intrinsics.<KType> isEmpty(existing = keyAt(keyPages, i))) {
+                    target[count++] = existing;
+                }
+            }
+
+            assert count == this.owner.size();
+            return target;
+        }
+    };
+
+    /**
+     * An iterator over the set of keys.
+     * Holds a KTypeCursor returning (value, index) = (KType key, index the slot of the key, or the number of slots for key = 0.)
+     */
+    public final class KeysIterator extends AbstractIterator<KTypeCursor<KType>>
+    {
+        public final KTypeCursor<KType> cursor;
+
+        private long slot;
+
+        public KeysIterator() {
+            this.cursor = new KTypeCursor<KType>();
+            this.cursor.index = -2;
+        }
+
+        /**
+         * Iterate backwards w.r.t the buffer, to
+         * minimize collision chains when filling another hash container (ex. with putAll())
+         */
+        @Override
+        protected KTypeCursor<KType> fetch() {
+
+            final long slots = KTypeVTypeOffHeapHashMap.this.mask + 1;
+
+            if (this.slot == slots + 1) {
+
+                this.slot = slots;
+
+                if (KTypeVTypeOffHeapHashMap.this.allocatedDefaultKey) {
+
+                    this.cursor.index = KTypeVTypeOffHeapHashMap.cursorIndex(slots);
+                    this.cursor.value = Intrinsics.<KType> empty();
+
+                    return this.cursor;
+                }
+                //no value associated with the default key, continue iteration...
+            }
+
+            final ByteBuffer[] keyPages = KTypeVTypeOffHeapHashMap.this.keyPages;
+
+            long i = this.slot - 1;
+
+            while (i >= 0 && Intrinsics.<KType> isEmpty(keyAt(keyPages, i))) {
+                i--;
+            }
+
+            if (i == -1) {
+                return done();
+            }
+
+            this.slot = i;
+            this.cursor.index = KTypeVTypeOffHeapHashMap.cursorIndex(i);
+            this.cursor.value = keyAt(keyPages, i);
+
+            return this.cursor;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * @return a new ValuesCollection view of the values of this map.
+     */
+    @Override
+    public ValuesCollection values() {
+        return new ValuesCollection();
+    }
+
+    /**
+     * A view over the set of values of this map.
+     */
+    public final class ValuesCollection extends AbstractKTypeCollection<VType>
+    {
+        private final KTypeVTypeOffHeapHashMap<KType, VType> owner = KTypeVTypeOffHeapHashMap.this;
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int size() {
+            return this.owner.size();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int capacity() {
+
+            return this.owner.capacity();
+        }
+
+        @Override
+        public boolean contains(final VType value) {
+
+            if (this.owner.allocatedDefaultKey && Intrinsics.<VType> equals(value, this.owner.allocatedDefaultKeyValue)) {
+
+                return true;
+            }
+
+            // This is a linear scan over the values, but it's in the contract, so be it.
+
+            final ByteBuffer[] keyPages = this.owner.keyPages;
+            final ByteBuffer[] valuePages = this.owner.valuePages;
+
+            for (long slot = 0; slot <= this.owner.mask; slot++) {
+                if (!Intrinsics.<KType> isEmpty(keyAt(keyPages, slot)) && Intrinsics.<VType> equals(value, valueAt(valuePages, slot))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public <T extends KTypeProcedure<? super VType>> T forEach(final T procedure) {
+
+            if (this.owner.allocatedDefaultKey) {
+
+                procedure.apply(this.owner.allocatedDefaultKeyValue);
+            }
+
+            final ByteBuffer[] keyPages = this.owner.keyPages;
+            final ByteBuffer[] valuePages = this.owner.valuePages;
+
+            //Iterate in reverse, as the iterators
+            for (long slot = this.owner.mask; slot >= 0; slot--) {
+                if (!Intrinsics.<KType> isEmpty(keyAt(keyPages, slot))) {
+
+                    procedure.apply(valueAt(valuePages, slot));
+                }
+            }
+
+            return procedure;
+        }
+
+        @Override
+        public <T extends KTypePredicate<? super VType>> T forEach(final T predicate) {
+
+            if (this.owner.allocatedDefaultKey) {
+
+                if (!predicate.apply(this.owner.allocatedDefaultKeyValue)) {
+                    return predicate;
+                }
+            }
+
+            final ByteBuffer[] keyPages = this.owner.keyPages;
+            final ByteBuffer[] valuePages = this.owner.valuePages;
+
+            //Iterate in reverse, as the iterators
+            for (long slot = this.owner.mask; slot >= 0; slot--) {
+                if (!Intrinsics.<KType> isEmpty(keyAt(keyPages, slot))) {
+                    if (!predicate.apply(valueAt(valuePages, slot))) {
+                        break;
+                    }
+                }
+            }
+
+            return predicate;
+        }
+
+        @Override
+        public ValuesIterator iterator() {
+            // return new ValuesIterator();
+            return this.valuesIteratorPool.borrow();
+        }
+
+        /**
+         * {@inheritDoc}
+         * Indeed removes all the (key,value) pairs matching
+         * (key ? ,  e) with the  same  e,  from  the map.
+         */
+        @Override
+        public int removeAll(final VType e) {
+            this.owner.checkWritable();
+
+            final long before = this.owner.longSize();
+
+            if (this.owner.allocatedDefaultKey) {
+
+                if (Intrinsics.<VType> equals(e, this.owner.allocatedDefaultKeyValue)) {
+
+                    this.owner.allocatedDefaultKey = false;
+                }
+            }
+
+            final ByteBuffer[] keyPages = this.owner.keyPages;
+            final ByteBuffer[] valuePages = this.owner.valuePages;
+
+            for (long slot = 0; slot <= this.owner.mask;) {
+                if (!Intrinsics.<KType> isEmpty(keyAt(keyPages, slot)) && Intrinsics.<VType> equals(e, valueAt(valuePages, slot))) {
+
+                    shiftConflictingKeys(slot);
+                    // Shift, do not increment slot.
+                } else {
+                    slot++;
+                }
+            }
+            return (int) (before - this.owner.longSize());
+        }
+
+        /**
+         * {@inheritDoc}
+         * Indeed removes all the (key,value) pairs matching
+         * the predicate for the values, from  the map.
+         */
+        @Override
+        public int removeAll(final KTypePredicate<? super VType> predicate) {
+            this.owner.checkWritable();
+
+            final long before = this.owner.longSize();
+
+            if (this.owner.allocatedDefaultKey) {
+
+                if (predicate.apply(this.owner.allocatedDefaultKeyValue)) {
+
+                    this.owner.allocatedDefaultKey = false;
+                }
+            }
+
+            final ByteBuffer[] keyPages = this.owner.keyPages;
+            final ByteBuffer[] valuePages = this.owner.valuePages;
+
+            for (long slot = 0; slot <= this.owner.mask;) {
+                if (!Intrinsics.<KType> isEmpty(keyAt(keyPages, slot)) && predicate.apply(valueAt(valuePages, slot))) {
+
+                    shiftConflictingKeys(slot);
+                    // Shift, do not increment slot.
+                } else {
+                    slot++;
+                }
+            }
+            return (int) (before - this.owner.longSize());
+        }
+
+        /**
+         * {@inheritDoc}
+         *  Alias for clear() the whole map.
+         */
+        @Override
+        public void clear() {
+            this.owner.clear();
+        }
+
+        /**
+         * internal pool of ValuesIterator
+         */
+        protected final IteratorPool<KTypeCursor<VType>, ValuesIterator> valuesIteratorPool = new IteratorPool<KTypeCursor<VType>, ValuesIterator>(
+                new ObjectFactory<ValuesIterator>() {
+
+                    @Override
+                    public ValuesIterator create() {
+                        return new ValuesIterator();
+                    }
+
+                    @Override
+                    public void initialize(final ValuesIterator obj) {
+                        obj.slot = KTypeVTypeOffHeapHashMap.this.mask + 2;
+                    }
+
+                    @Override
+                    public void reset(final ValuesIterator obj) {
+                        //nothing to reset, all primitives
+                    }
+                });
+
+        @Override
+        public VType[] toArray(final VType[] target) {
+
+            int count = 0;
+
+            if (this.owner.allocatedDefaultKey) {
+
+                target[count++] = this.owner.allocatedDefaultKeyValue;
+            }
+
+            final ByteBuffer[] keyPages = this.owner.keyPages;
+            final ByteBuffer[] valuePages = this.owner.valuePages;
+
+            for (long i = 0; i <= this.owner.mask; i++) {
+                if (!Intrinsics.<KType> isEmpty(keyAt(keyPages, i))) {
+                    target[count++] = valueAt(valuePages, i);
+                }
+            }
+
+            assert count == this.owner.size();
+            return target;
+        }
+    }
+
+    /**
+     * An iterator over the set of values.
+     * Holds a KTypeCursor returning (value, index) = (VType value, index the slot of the value,
+     * or the number of slots for value = {@link KTypeVTypeOffHeapHashMap#allocatedDefaultKeyValue}).
+     */
+    public final class ValuesIterator extends AbstractIterator<KTypeCursor<VType>>
+    {
+        public final KTypeCursor<VType> cursor;
+
+        private long slot;
+
+        public ValuesIterator() {
+            this.cursor = new KTypeCursor<VType>();
+            this.cursor.index = -2;
+        }
+
+        /**
+         * Iterate backwards w.r.t the buffer, to
+         * minimize collision chains when filling another hash container (ex. with putAll())
+         */
+        @Override
+        protected KTypeCursor<VType> fetch() {
+
+            final long slots = KTypeVTypeOffHeapHashMap.this.mask + 1;
+
+            if (this.slot == slots + 1) {
+
+                this.slot = slots;
+
+                if (KTypeVTypeOffHeapHashMap.this.allocatedDefaultKey) {
+
+                    this.cursor.index = KTypeVTypeOffHeapHashMap.cursorIndex(slots);
+                    this.cursor.value = KTypeVTypeOffHeapHashMap.this.allocatedDefaultKeyValue;
+
+                    return this.cursor;
+                }
+                //no value associated with the default key, continue iteration...
+            }
+
+            final ByteBuffer[] keyPages = KTypeVTypeOffHeapHashMap.this.keyPages;
+
+            long i = this.slot - 1;
+
+            while (i >= 0 && Intrinsics.<KType> isEmpty(keyAt(keyPages, i))) {
+                i--;
+            }
+
+            if (i == -1) {
+                return done();
+            }
+
+            this.slot = i;
+            this.cursor.index = KTypeVTypeOffHeapHashMap.cursorIndex(i);
+            this.cursor.value = valueAt(KTypeVTypeOffHeapHashMap.this.valuePages, i);
+
+            return this.cursor;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public KTypeVTypeOffHeapHashMap<KType, VType> clone() {
+        //clone to size() to prevent some cases of exponential sizes,
+        final KTypeVTypeOffHeapHashMap<KType, VType> cloned = new KTypeVTypeOffHeapHashMap<KType, VType>(this.longSize(),
+                this.loadFactor, this.pageShift);
+
+        //We must NOT clone because of independent perturbations seeds
+        cloned.putAll(this);
+
+        cloned.defaultValue = this.defaultValue;
+
+        return cloned;
+    }
+
+    /**
+     * Convert the contents of this map to a human-friendly string.
+     */
+    @Override
+    public String toString() {
+        final StringBuilder buffer = new StringBuilder();
+        buffer.append("[");
+
+        boolean first = true;
+        for (final KTypeVTypeCursor<KType, VType> cursor : this) {
+            if (!first) {
+                buffer.append(", ");
+            }
+            buffer.append(cursor.key);
+            buffer.append("=>");
+            buffer.append(cursor.value);
+            first = false;
+        }
+        buffer.append("]");
+        return buffer.toString();
+    }
+
+    /**
+     * Creates a hash map from two index-aligned arrays of key-value pairs. Default load factor is used.
+     */
+    public static <KType, VType> KTypeVTypeOffHeapHashMap<KType, VType> from(final KType[] keys, final VType[] values) {
+        if (keys.length != values.length) {
+            throw new IllegalArgumentException("Arrays of keys and values must have an identical length.");
+        }
+
+        final KTypeVTypeOffHeapHashMap<KType, VType> map = new KTypeVTypeOffHeapHashMap<KType, VType>(keys.length);
+
+        for (int i = 0; i < keys.length; i++) {
+            map.put(keys[i], values[i]);
+        }
+        return map;
+    }
+
+    /**
+     * Create a hash map from another associative container. (constructor shortcut) Default load factor is used.
+     */
+    public static <KType, VType> KTypeVTypeOffHeapHashMap<KType, VType> from(
+            final KTypeVTypeAssociativeContainer<KType, VType> container) {
+        return new KTypeVTypeOffHeapHashMap<KType, VType>(container);
+    }
+
+    /**
+     * Create a new hash map without providing the full generic signature
+     * (constructor shortcut).
+     */
+    public static <KType, VType> KTypeVTypeOffHeapHashMap<KType, VType> newInstance() {
+        return new KTypeVTypeOffHeapHashMap<KType, VType>();
+    }
+
+    /**
+     * Create a new hash map with initial capacity and load factor control.
+     * (constructor shortcut).
+     */
+    public static <KType, VType> KTypeVTypeOffHeapHashMap<KType, VType> newInstance(final long initialCapacity,
+            final double loadFactor) {
+        return new KTypeVTypeOffHeapHashMap<KType, VType>(initialCapacity, loadFactor);
+    }
+
+    /**
+     * Returns the "default value" value used in containers methods returning
+     * "default value"
+     */
+    @Override
+    public VType getDefaultValue() {
+        return this.defaultValue;
+    }
+
+    /**
+     * Set the "default value" value to be used in containers methods returning
+     * "default value"
+     */
+    @Override
+    public void setDefaultValue(final VType defaultValue) {
+        this.defaultValue = defaultValue;
+    }
+
+    /**
+     * Called before any modification of the map, the map being always writable.
+     * @throws UnsupportedOperationException in read-only subclasses.
+     */
+    protected void checkWritable() {
+        //nothing
+    }
+
+    /**
+     * The cursor index of a slot, -1 if it does not fit in an int.
+     */
+    private static int cursorIndex(final long slot) {
+
+        return (slot <= Integer.MAX_VALUE) ? (int) slot : -1;
+    }
+
+    /**
+     * Read the key of a slot of the key pages.
+     */
+    protected final KType keyAt(final ByteBuffer[] pages, final long slot) {
+
+        final ByteBuffer page = pages[(int) (slot >>> this.pageShift)];
+        final int offset = (int) (slot & ((1L << this.pageShift) - 1)) << KTypeVTypeOffHeapHashMap.KEY_SHIFT;
+
+        /*! #if ($TemplateOptions.isKType("BYTE"))
+        return page.get(offset);
+        #elseif ($TemplateOptions.isKType("CHAR"))
+        return page.getChar(offset);
+        #elseif ($TemplateOptions.isKType("SHORT"))
+        return page.getShort(offset);
+        #elseif ($TemplateOptions.isKType("INT"))
+        return page.getInt(offset);
+        #elseif ($TemplateOptions.isKType("LONG"))
+        return page.getLong(offset);
+        #elseif ($TemplateOptions.isKType("FLOAT"))
+        return page.getFloat(offset);
+        #elseif ($TemplateOptions.isKType("DOUBLE"))
+        return page.getDouble(offset);
+        #else !*/
+        throw new UnsupportedOperationException("Off-heap storage is for primitive keys only");
+        /*! #end !*/
+    }
+
+    /**
+     * Write the key of a slot of the key pages.
+     */
+    private void setKeyAt(final ByteBuffer[] pages, final long slot, final KType key) {
+
+        final ByteBuffer page = pages[(int) (slot >>> this.pageShift)];
+        final int offset = (int) (slot & ((1L << this.pageShift) - 1)) << KTypeVTypeOffHeapHashMap.KEY_SHIFT;
+
+        /*! #if ($TemplateOptions.isKType("BYTE"))
+        page.put(offset, key);
+        #elseif ($TemplateOptions.isKType("CHAR"))
+        page.putChar(offset, key);
+        #elseif ($TemplateOptions.isKType("SHORT"))
+        page.putShort(offset, key);
+        #elseif ($TemplateOptions.isKType("INT"))
+        page.putInt(offset, key);
+        #elseif ($TemplateOptions.isKType("LONG"))
+        page.putLong(offset, key);
+        #elseif ($TemplateOptions.isKType("FLOAT"))
+        page.putFloat(offset, key);
+        #elseif ($TemplateOptions.isKType("DOUBLE"))
+        page.putDouble(offset, key);
+        #else !*/
+        throw new UnsupportedOperationException("Off-heap storage is for primitive keys only");
+        /*! #end !*/
+    }
+
+    /**
+     * Read the value of a slot of the value pages.
+     */
+    protected final VType valueAt(final ByteBuffer[] pages, final long slot) {
+
+        final ByteBuffer page = pages[(int) (slot >>> this.pageShift)];
+        final int offset = (int) (slot & ((1L << this.pageShift) - 1)) << KTypeVTypeOffHeapHashMap.VALUE_SHIFT;
+
+        /*! #if ($TemplateOptions.isVType("BYTE"))
+        return page.get(offset);
+        #elseif ($TemplateOptions.isVType("CHAR"))
+        return page.getChar(offset);
+        #elseif ($TemplateOptions.isVType("SHORT"))
+        return page.getShort(offset);
+        #elseif ($TemplateOptions.isVType("INT"))
+        return page.getInt(offset);
+        #elseif ($TemplateOptions.isVType("LONG"))
+        return page.getLong(offset);
+        #elseif ($TemplateOptions.isVType("FLOAT"))
+        return page.getFloat(offset);
+        #elseif ($TemplateOptions.isVType("DOUBLE"))
+        return page.getDouble(offset);
+        #else !*/
+        throw new UnsupportedOperationException("Off-heap storage is for primitive values only");
+        /*! #end !*/
+    }
+
+    /**
+     * Write the value of a slot of the value pages.
+     */
+    private void setValueAt(final ByteBuffer[] pages, final long slot, final VType value) {
+
+        final ByteBuffer page = pages[(int) (slot >>> this.pageShift)];
+        final int offset = (int) (slot & ((1L << this.pageShift) - 1)) << KTypeVTypeOffHeapHashMap.VALUE_SHIFT;
+
+        /*! #if ($TemplateOptions.isVType("BYTE"))
+        page.put(offset, value);
+        #elseif ($TemplateOptions.isVType("CHAR"))
+        page.putChar(offset, value);
+        #elseif ($TemplateOptions.isVType("SHORT"))
+        page.putShort(offset, value);
+        #elseif ($TemplateOptions.isVType("INT"))
+        page.putInt(offset, value);
+        #elseif ($TemplateOptions.isVType("LONG"))
+        page.putLong(offset, value);
+        #elseif ($TemplateOptions.isVType("FLOAT"))
+        page.putFloat(offset, value);
+        #elseif ($TemplateOptions.isVType("DOUBLE"))
+        page.putDouble(offset, value);
+        #else !*/
+        throw new UnsupportedOperationException("Off-heap storage is for primitive values only");
+        /*! #end !*/
+    }
+
+    /*! #if ($TemplateOptions.declareInline("REHASH(value)",
+    "<*,*>==>(BitMixer.mix(value , this.perturbation) & 0xFFFFFFFFL)")) !*/
+    /**
+     * REHASH method for rehashing the keys, as an unsigned 32 bits hash.
+     * (inlined in generated code)
+     */
+    private long REHASH(final KType value) {
+
+        return BitMixer.mix(value.hashCode(), this.perturbation) & 0xFFFFFFFFL;
+    }
+
+    /*! #end !*/
+
+    /*! #if ($TemplateOptions.declareInline("REHASH2(value, perturb)",
+    "<*,*>==>(BitMixer.mix(value , perturb) & 0xFFFFFFFFL)")) !*/
+    /**
+     * REHASH2 method for rehashing the keys with perturbation seed as parameter, as an unsigned 32 bits hash.
+     * (inlined in generated code)
+     */
+    private long REHASH2(final KType value, final int perturb) {
+
+        return BitMixer.mix(value.hashCode(), perturb) & 0xFFFFFFFFL;
+    }
+    /*! #end !*/
+}
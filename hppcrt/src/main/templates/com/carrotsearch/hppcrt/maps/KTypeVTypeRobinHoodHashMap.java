@@ -0,0 +1,1745 @@
+package com.carrotsearch.hppcrt.maps;
+
+import com.carrotsearch.hppcrt.*;
+import com.carrotsearch.hppcrt.cursors.*;
+import com.carrotsearch.hppcrt.predicates.*;
+import com.carrotsearch.hppcrt.procedures.*;
+import com.carrotsearch.hppcrt.hash.*;
+
+/*! #import("com/carrotsearch/hppcrt/Intrinsics.java") !*/
+/**
+ * A hash map of <code>KType</code> to <code>VType</code>, implemented using open
+ * addressing with linear probing for collision resolution, ordered by Robin-Hood hashing.
+ *
+ * <p>
+ * Same as {@link KTypeVTypeHashMap}, except that the keys of a probing chain are kept sorted by
+ * their distance to their initial slot: inserting a key displaces any key closer to its own initial slot ("richer"),
+ * which goes on further. Lookups can then stop as soon as they meet a key closer to its initial slot than the searched key would be,
+ * which bounds the cost of unsuccessful lookups, and removals move back the keys following the removed one by one slot
+ * (backward-shift deletion). This keeps the probing chains short at high load factors (up to {@link HashContainers#MAX_LOAD_FACTOR}),
+ * at the cost of slower insertions.
+ * </p>
+ *
+#if ($TemplateOptions.KTypeGeneric)
+ * <p>
+ * Unlike the Robin-Hood mode of {@link KTypeVTypeHashMap}, which caches the full <code>int</code> hash of each key,
+ * this map keeps a <code>short</code> per slot in {@link #fingerprints}: the distance of the key to its initial slot,
+ * and 8 bits of its hash, compared before calling equals(). This halves the memory overhead per slot, at the cost of calling
+ * hashCode() on all the keys when the buffers are expanded. A distance too big for its byte is saturated, and then recomputed from the key.
+ * </p>
+#else
+ * <p>
+ * Unlike the Robin-Hood mode of {@link KTypeVTypeHashMap} for Object keys, no hash cache is kept: the distance of a key
+ * to its initial slot is recomputed from the key itself, which is cheap for primitives.
+ * </p>
+#end
+ *
+ * <p>
+ * The internal buffers of this implementation ({@link #keys}, {@link #values}#if ($TemplateOptions.KTypeGeneric), {@link #fingerprints}#end),
+ * are always allocated to the nearest size that is a power of two. When
+ * the capacity exceeds the given load factor, the buffer size is doubled.
+ * </p>
+ *
+ * <p><b>Important note.</b> The implementation uses power-of-two tables and linear
+ * probing, which may cause poor performance (many collisions) if hash values are
+ * not properly distributed.
+ * </p>
+#if ($TemplateOptions.KTypeGeneric)
+ * <p>This implementation supports <code>null</code> keys. </p>
+#end
+#if ($TemplateOptions.VTypeGeneric)
+ * <p>This implementation supports <code>null</code> values.</p>
+#end
+ */
+/*! ${TemplateOptions.generatedAnnotation} !*/
+public class KTypeVTypeRobinHoodHashMap<KType, VType>
+implements KTypeVTypeMap<KType, VType>, Cloneable
+{
+    protected VType defaultValue = Intrinsics.<VType> empty();
+
+    /**
+     * Hash-indexed array holding all keys.
+     * <p>
+     * Direct map iteration: iterate  {keys[i], values[i]} for i in [0; keys.length[ where keys[i] != 0/null, then also
+     * {0/null, {@link #allocatedDefaultKeyValue} } is in the map if {@link #allocatedDefaultKey} = true.
+     * </p>
+     */
+    public/*! #if ($TemplateOptions.KTypePrimitive)
+          KType []
+          #else !*/
+    Object[]
+            /*! #end !*/
+            keys;
+
+    /**
+     * Hash-indexed array holding all values associated to the keys.
+     * stored in {@link #keys}.
+     */
+    public/*! #if ($TemplateOptions.VTypePrimitive)
+          VType []
+          #else !*/
+    Object[]
+            /*! #end !*/
+            values;
+
+    /*! #if ($TemplateOptions.KTypeGeneric) !*/
+    /**
+     * For every assigned slot i, the distance of keys[i] to its initial slot in the lowest 8 bits,
+     * saturated to {@link #SATURATED_DISTANCE}, and the 8 highest bits of its hash in the highest 8 bits.
+     */
+    protected short[] fingerprints;
+
+    /**
+     * Stored distance of the keys at this distance or further from their initial slot,
+     * whose actual distance must be recomputed from the key.
+     */
+    protected static final int SATURATED_DISTANCE = 0xFF;
+    /*! #end !*/
+
+    /**
+     * True if key = 0/null is in the map.
+     */
+    public boolean allocatedDefaultKey = false;
+
+    /**
+     * if allocatedDefaultKey = true, contains the associated V to the key = 0/null
+     */
+    public VType allocatedDefaultKeyValue;
+
+    /**
+     * Cached number of assigned slots in {@link #keys}.
+     */
+    protected int assigned;
+
+    /**
+     * The load factor for this map (fraction of allocated slots
+     * before the buffers must be rehashed or reallocated).
+     */
+    protected final double loadFactor;
+
+    /**
+     * Resize buffers when {@link #keys} hits this value.
+     */
+    private int resizeAt;
+
+    /**
+     * Per-instance size perturbation
+     * introduced in rehashing to create a unique key distribution.
+     */
+    private final int perturbation = Containers.randomSeed32();
+
+    /**
+     * Default constructor: Creates a hash map with the default capacity of {@link Containers#DEFAULT_EXPECTED_ELEMENTS},
+     * load factor of {@link HashContainers#DEFAULT_LOAD_FACTOR}.
+     *
+     * <p>See class notes about hash distribution importance.</p>
+     */
+    public KTypeVTypeRobinHoodHashMap() {
+        this(Containers.DEFAULT_EXPECTED_ELEMENTS);
+    }
+
+    /**
+     * Creates a hash map with the given initial capacity, default load factor of
+     * {@link HashContainers#DEFAULT_LOAD_FACTOR}.
+     *
+     * <p>See class notes about hash distribution importance.</p>
+     *
+     * @param initialCapacity Initial capacity (greater than zero and automatically
+     *            rounded to the next power of two).
+     */
+    public KTypeVTypeRobinHoodHashMap(final int initialCapacity) {
+        this(initialCapacity, HashContainers.DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Creates a hash map with the given initial capacity,
+     * load factor.
+     *
+     * @param loadFactor The load factor (greater than zero and smaller than 1).
+     */
+    public KTypeVTypeRobinHoodHashMap(final int initialCapacity, final double loadFactor) {
+        this.loadFactor = loadFactor;
+        //take into account of the load factor to guarantee no reallocations before reaching  initialCapacity.
+        allocateBuffers(HashContainers.minBufferSize(initialCapacity, loadFactor));
+    }
+
+    /**
+     * Create a hash map from all key-value pairs of another container.
+     */
+    public KTypeVTypeRobinHoodHashMap(final KTypeVTypeAssociativeContainer<KType, VType> container) {
+        this(container.size());
+        putAll(container);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public VType put(KType key, VType value) {
+
+        if (Intrinsics.<KType> isEmpty(key)) {
+
+            if (this.allocatedDefaultKey) {
+
+                final VType previousValue = this.allocatedDefaultKeyValue;
+                this.allocatedDefaultKeyValue = value;
+
+                return previousValue;
+            }
+
+            this.allocatedDefaultKeyValue = value;
+            this.allocatedDefaultKey = true;
+
+            return this.defaultValue;
+        }
+
+        final int mask = this.keys.length - 1;
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+        final VType[] values = Intrinsics.<VType[]> cast(this.values);
+
+        final int hash = REHASH(key);
+        int slot = hash & mask;
+        KType existing;
+
+        /*! #if ($TemplateOptions.KTypeGeneric) !*/
+        final short[] fingerprints = this.fingerprints;
+        //hash bits of the key to place, in the highest byte of its fingerprint
+        int fragment = (hash >>> 16) & 0xFF00;
+        int tmpFragment;
+        /*! #end !*/
+
+        KType tmpKey;
+        VType tmpValue;
+        int dist = 0;
+        int existing_distance = 0;
+
+        while (!Intrinsics.<KType> isEmpty(existing = keys[slot])) {
+
+            existing_distance = probe_distance(slot, keys);
+
+            //the key can only be found as long as dist <= existing_distance, see containsKey().
+            if (dist <= existing_distance /*! #if ($TemplateOptions.KTypeGeneric) !*/&& (fingerprints[slot] & 0xFF00) == fragment /*! #end !*/&& KEYEQUALS(key, existing)) {
+
+                final VType oldValue = values[slot];
+                values[slot] = value;
+
+                return oldValue;
+            }
+
+            //the key is absent: take the place of the richer existing key, which goes on
+            //to find a place further.
+            if (dist > existing_distance) {
+
+                tmpKey = keys[slot];
+                keys[slot] = key;
+                key = tmpKey;
+
+                tmpValue = values[slot];
+                values[slot] = value;
+                value = tmpValue;
+
+                /*! #if ($TemplateOptions.KTypeGeneric) !*/
+                tmpFragment = fingerprints[slot] & 0xFF00;
+                fingerprints[slot] = KTypeVTypeRobinHoodHashMap.fingerprint(fragment, dist);
+                fragment = tmpFragment;
+                /*! #end !*/
+
+                dist = existing_distance;
+            }
+
+            slot = (slot + 1) & mask;
+            dist++;
+        } //end while
+
+        // Check if we need to grow. If so, reallocate new data, fill in the last element
+        // and rehash.
+        if (this.assigned == this.resizeAt) {
+
+            expandAndPut(key, value, slot);
+        } else {
+            this.assigned++;
+
+            keys[slot] = key;
+            values[slot] = value;
+
+            /*! #if ($TemplateOptions.KTypeGeneric) !*/
+            fingerprints[slot] = KTypeVTypeRobinHoodHashMap.fingerprint(fragment, dist);
+            /*! #end !*/
+        }
+
+        return this.defaultValue;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int putAll(final KTypeVTypeAssociativeContainer<? extends KType, ? extends VType> container) {
+        return putAll((Iterable<? extends KTypeVTypeCursor<? extends KType, ? extends VType>>) container);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int putAll(final Iterable<? extends KTypeVTypeCursor<? extends KType, ? extends VType>> iterable) {
+        final int count = this.size();
+        for (final KTypeVTypeCursor<? extends KType, ? extends VType> c : iterable) {
+            put(c.key, c.value);
+        }
+        return this.size() - count;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean putIfAbsent(final KType key, final VType value) {
+        if (!containsKey(key)) {
+            put(key, value);
+            return true;
+        }
+        return false;
+    }
+
+    /*! #if ($TemplateOptions.VTypePrimitive) !*/
+    /**
+     * If <code>key</code> exists, <code>putValue</code> is inserted into the map,
+     * otherwise any existing value is incremented by <code>additionValue</code>.
+     *
+     * @param key
+     *          The key of the value to adjust.
+     * @param putValue
+     *          The value to put if <code>key</code> does not exist.
+     * @param incrementValue
+     *          The value to add to the existing value if <code>key</code> exists.
+     * @return Returns the current value associated with <code>key</code> (after
+     *         changes).
+     */
+    @SuppressWarnings("cast")
+    @Override
+    public VType putOrAdd(final KType key, VType putValue, final VType incrementValue) {
+
+        if (containsKey(key)) {
+            putValue = get(key);
+
+            putValue = (VType) (Intrinsics.<VType> add(putValue, incrementValue));
+        }
+
+        put(key, putValue);
+        return putValue;
+    }
+
+    /*! #end !*/
+
+    /*! #if ($TemplateOptions.VTypePrimitive) !*/
+    /**
+     * Adds <code>incrementValue</code> to any existing value for the given <code>key</code>
+     * or inserts <code>incrementValue</code> if <code>key</code> did not previously exist.
+     *
+     * @param key The key of the value to adjust.
+     * @param incrementValue The value to put or add to the existing value if <code>key</code> exists.
+     * @return Returns the current value associated with <code>key</code> (after changes).
+     */
+    @Override
+    public VType addTo(final KType key, final VType incrementValue)
+    {
+        return putOrAdd(key, incrementValue, incrementValue);
+    }
+
+    /*! #end !*/
+
+    /**
+     * Expand the internal storage buffers (capacity) and rehash.
+     */
+    private void expandAndPut(final KType pendingKey, final VType pendingValue, final int freeSlot) {
+        assert this.assigned == this.resizeAt;
+
+        //default sentinel value is never in the keys[] array, so never trigger reallocs
+        assert !Intrinsics.<KType> isEmpty(pendingKey);
+
+        // Try to allocate new buffers first. If we OOM, it'll be now without
+        // leaving the data structure in an inconsistent state.
+        final KType[] oldKeys = Intrinsics.<KType[]> cast(this.keys);
+        final VType[] oldValues = Intrinsics.<VType[]> cast(this.values);
+
+        allocateBuffers(HashContainers.nextBufferSize(this.keys.length, this.assigned, this.loadFactor));
+
+        // We have succeeded at allocating new data so insert the pending key/value at
+        // the free slot in the old arrays before rehashing.
+        this.assigned++;
+
+        oldKeys[freeSlot] = pendingKey;
+        oldValues[freeSlot] = pendingValue;
+
+        //for inserts
+        final int mask = this.keys.length - 1;
+
+        KType key = Intrinsics.<KType> empty();
+        VType value = Intrinsics.<VType> empty();
+
+        int slot = -1;
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+        final VType[] values = Intrinsics.<VType[]> cast(this.values);
+
+        /*! #if ($TemplateOptions.KTypeGeneric) !*/
+        //the old fingerprints do not hold enough bits of the hashes to relocate the keys,
+        //which are rehashed.
+        final short[] fingerprints = this.fingerprints;
+        int hash = 0;
+        int fragment = 0;
+        int tmpFragment = 0;
+        /*! #end !*/
+
+        KType tmpKey = Intrinsics.<KType> empty();
+        VType tmpValue = Intrinsics.<VType> empty();
+        int dist = -1;
+        int existing_distance = -1;
+
+        //iterate all the old arrays to add in the newly allocated buffers
+        //It is important to iterate backwards to minimize the conflict chain length !
+        final int perturb = this.perturbation;
+
+        for (int i = oldKeys.length; --i >= 0;) {
+
+            //only consider non-empty slots, of course
+            if (!Intrinsics.<KType> isEmpty(key = oldKeys[i])) {
+
+                value = oldValues[i];
+
+                /*! #if ($TemplateOptions.KTypeGeneric) !*/
+                hash = REHASH2(key, perturb);
+                slot = hash & mask;
+                fragment = (hash >>> 16) & 0xFF00;
+                /*! #else
+                slot = REHASH2(key, perturb) & mask;
+                #end !*/
+                dist = 0;
+
+                //similar to put(), except all inserted keys are known to be unique.
+                while (is_allocated(slot, keys)) {
+
+                    existing_distance = probe_distance(slot, keys);
+
+                    if (dist > existing_distance) {
+
+                        tmpKey = keys[slot];
+                        keys[slot] = key;
+                        key = tmpKey;
+
+                        tmpValue = values[slot];
+                        values[slot] = value;
+                        value = tmpValue;
+
+                        /*! #if ($TemplateOptions.KTypeGeneric) !*/
+                        tmpFragment = fingerprints[slot] & 0xFF00;
+                        fingerprints[slot] = KTypeVTypeRobinHoodHashMap.fingerprint(fragment, dist);
+                        fragment = tmpFragment;
+                        /*! #end !*/
+
+                        dist = existing_distance;
+                    }
+
+                    slot = (slot + 1) & mask;
+                    dist++;
+                } //end while
+
+                keys[slot] = key;
+                values[slot] = value;
+
+                /*! #if ($TemplateOptions.KTypeGeneric) !*/
+                fingerprints[slot] = KTypeVTypeRobinHoodHashMap.fingerprint(fragment, dist);
+                /*! #end !*/
+            }
+        }
+    }
+
+    /**
+     * Allocate internal buffers for a given capacity.
+     *
+     * @param capacity New capacity (must be a power of two).
+     */
+    @SuppressWarnings("boxing")
+    private void allocateBuffers(final int capacity) {
+        try {
+
+            final KType[] keys = Intrinsics.<KType> newArray(capacity);
+            final VType[] values = Intrinsics.<VType> newArray(capacity);
+
+            /*! #if ($TemplateOptions.KTypeGeneric) !*/
+            final short[] fingerprints = new short[capacity];
+            /*! #end !*/
+
+            this.keys = keys;
+            this.values = values;
+
+            /*! #if ($TemplateOptions.KTypeGeneric) !*/
+            this.fingerprints = fingerprints;
+            /*! #end !*/
+
+            //allocate so that there is at least one slot that remains allocated = false
+            //this is compulsory to guarantee proper stop in searching loops
+            this.resizeAt = HashContainers.expandAtCount(capacity, this.loadFactor);
+        } catch (final OutOfMemoryError e) {
+
+            throw new BufferAllocationException(
+                    "Not enough memory to allocate buffers to grow from %d -> %d elements",
+                    e,
+                    (this.keys == null) ? 0 : this.keys.length,
+                            capacity);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public VType remove(final KType key) {
+
+        if (Intrinsics.<KType> isEmpty(key)) {
+
+            if (this.allocatedDefaultKey) {
+
+                final VType previousValue = this.allocatedDefaultKeyValue;
+
+                /*! #if ($TemplateOptions.VTypeGeneric) !*/
+                //help the GC
+                this.allocatedDefaultKeyValue = Intrinsics.<VType> empty();
+                /*! #end !*/
+
+                this.allocatedDefaultKey = false;
+                return previousValue;
+            }
+
+            return this.defaultValue;
+        }
+
+        final int mask = this.keys.length - 1;
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+
+        final int hash = REHASH(key);
+        int slot = hash & mask;
+        int dist = 0;
+        KType existing;
+
+        /*! #if ($TemplateOptions.KTypeGeneric) !*/
+        final short[] fingerprints = this.fingerprints;
+        final int fragment = (hash >>> 16) & 0xFF00;
+        /*! #end !*/
+
+        while (!Intrinsics.<KType> isEmpty(existing = keys[slot]) && dist <= probe_distance(slot, keys)) {
+
+            if (/*! #if ($TemplateOptions.KTypeGeneric) !*/(fingerprints[slot] & 0xFF00) == fragment && /*! #end !*/KEYEQUALS(key, existing)) {
+
+                final VType value = Intrinsics.<VType> cast(this.values[slot]);
+
+                shiftConflictingKeys(slot);
+
+                return value;
+            }
+            slot = (slot + 1) & mask;
+            dist++;
+        } //end while true
+
+        return this.defaultValue;
+    }
+
+    /**
+     * Backward-shift deletion: empty <code>gapSlot</code>, moving back by one slot the following keys
+     * up to the first empty slot or key in its initial slot. The probing chains then stay as short as possible,
+     * without any tombstone.
+     */
+    private void shiftConflictingKeys(int gapSlot) {
+
+        final int mask = this.keys.length - 1;
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+        final VType[] values = Intrinsics.<VType[]> cast(this.values);
+
+        /*! #if ($TemplateOptions.KTypeGeneric) !*/
+        final short[] fingerprints = this.fingerprints;
+        /*! #end !*/
+
+        int slot = (gapSlot + 1) & mask;
+        KType existing;
+        int distance;
+
+        while (!Intrinsics.<KType> isEmpty(existing = keys[slot]) && (distance = probe_distance(slot, keys)) > 0) {
+
+            keys[gapSlot] = existing;
+            values[gapSlot] = values[slot];
+
+            /*! #if ($TemplateOptions.KTypeGeneric) !*/
+            //the key moves one slot closer to its initial slot
+            fingerprints[gapSlot] = KTypeVTypeRobinHoodHashMap.fingerprint(fingerprints[slot] & 0xFF00, distance - 1);
+            /*! #end !*/
+
+            gapSlot = slot;
+            slot = (slot + 1) & mask;
+        } //end while
+
+        keys[gapSlot] = Intrinsics.<KType> empty();
+
+        /*! #if ($TemplateOptions.VTypeGeneric) !*/
+        values[gapSlot] = Intrinsics.<VType> empty();
+        /*! #end !*/
+
+        this.assigned--;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public int removeAll(final KTypeContainer<? super KType> other) {
+        final int before = this.size();
+
+        //1) other is a KTypeLookupContainer, so with fast lookup guarantees
+        //and is bigger than this, so take advantage of both and iterate over this
+        //and test other elements by their contains().
+        if (other.size() >= before && other instanceof KTypeLookupContainer<?>) {
+
+            if (this.allocatedDefaultKey) {
+
+                if (other.contains(Intrinsics.<KType> empty())) {
+                    this.allocatedDefaultKey = false;
+
+                    /*! #if ($TemplateOptions.VTypeGeneric) !*/
+                    //help the GC
+                    this.allocatedDefaultKeyValue = Intrinsics.<VType> empty();
+                    /*! #end !*/
+                }
+            }
+
+            final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+
+            for (int i = 0; i < keys.length;) {
+                KType existing;
+                if (!Intrinsics.<KType> isEmpty(existing = keys[i]) && other.contains(existing)) {
+
+                    shiftConflictingKeys(i);
+                    // Shift, do not increment slot.
+                } else {
+                    i++;
+                }
+            }
+        } else {
+            //2) Do not use contains() from container, which may lead to O(n**2) execution times,
+            //so it iterate linearly and call remove() from map which is O(1).
+            for (final KTypeCursor<? super KType> c : other) {
+
+                remove(Intrinsics.<KType> cast(c.value));
+            }
+        }
+
+        return before - this.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int removeAll(final KTypePredicate<? super KType> predicate) {
+        final int before = this.size();
+
+        if (this.allocatedDefaultKey) {
+
+            if (predicate.apply(Intrinsics.<KType> empty())) {
+                this.allocatedDefaultKey = false;
+
+                /*! #if ($TemplateOptions.VTypeGeneric) !*/
+                //help the GC
+                this.allocatedDefaultKeyValue = Intrinsics.<VType> empty();
+                /*! #end !*/
+            }
+        }
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+
+        for (int i = 0; i < keys.length;) {
+            KType existing;
+            if (!Intrinsics.<KType> isEmpty(existing = keys[i]) && predicate.apply(existing)) {
+
+                shiftConflictingKeys(i);
+                // Shift, do not increment slot.
+            } else {
+                i++;
+            }
+        }
+
+        return before - this.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int removeAll(final KTypeVTypePredicate<? super KType, ? super VType> predicate) {
+
+        final int before = this.size();
+
+        if (this.allocatedDefaultKey) {
+
+            if (predicate.apply(Intrinsics.<KType> empty(), this.allocatedDefaultKeyValue)) {
+                this.allocatedDefaultKey = false;
+
+                /*! #if ($TemplateOptions.VTypeGeneric) !*/
+                //help the GC
+                this.allocatedDefaultKeyValue = Intrinsics.<VType> empty();
+                /*! #end !*/
+            }
+        }
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+        final VType[] values = Intrinsics.<VType[]> cast(this.values);
+
+        for (int i = 0; i < keys.length;) {
+            KType existing;
+            if (!Intrinsics.<KType> isEmpty(existing = keys[i]) && predicate.apply(existing, values[i])) {
+
+                shiftConflictingKeys(i);
+                // Shift, do not increment slot.
+            } else {
+                i++;
+            }
+        }
+
+        return before - this.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public VType get(final KType key) {
+        if (Intrinsics.<KType> isEmpty(key)) {
+
+            if (this.allocatedDefaultKey) {
+
+                return this.allocatedDefaultKeyValue;
+            }
+
+            return this.defaultValue;
+        }
+
+        final int mask = this.keys.length - 1;
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+
+        final int hash = REHASH(key);
+        int slot = hash & mask;
+        int dist = 0;
+        KType existing;
+
+        /*! #if ($TemplateOptions.KTypeGeneric) !*/
+        final short[] fingerprints = this.fingerprints;
+        final int fragment = (hash >>> 16) & 0xFF00;
+        /*! #end !*/
+
+        //Robin-hood: the key is not in the map past a key closer to its initial slot.
+        while (!Intrinsics.<KType> isEmpty(existing = keys[slot]) && dist <= probe_distance(slot, keys)) {
+
+            if (/*! #if ($TemplateOptions.KTypeGeneric) !*/(fingerprints[slot] & 0xFF00) == fragment && /*! #end !*/KEYEQUALS(key, existing)) {
+
+                return Intrinsics.<VType> cast(this.values[slot]);
+            }
+            slot = (slot + 1) & mask;
+            dist++;
+        } //end while true
+
+        return this.defaultValue;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean containsKey(final KType key) {
+
+        if (Intrinsics.<KType> isEmpty(key)) {
+
+            return this.allocatedDefaultKey;
+        }
+
+        final int mask = this.keys.length - 1;
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+
+        final int hash = REHASH(key);
+        int slot = hash & mask;
+        int dist = 0;
+        KType existing;
+
+        /*! #if ($TemplateOptions.KTypeGeneric) !*/
+        final short[] fingerprints = this.fingerprints;
+        final int fragment = (hash >>> 16) & 0xFF00;
+        /*! #end !*/
+
+        //Robin-hood: the key is not in the map past a key closer to its initial slot.
+        while (!Intrinsics.<KType> isEmpty(existing = keys[slot]) && dist <= probe_distance(slot, keys)) {
+
+            if (/*! #if ($TemplateOptions.KTypeGeneric) !*/(fingerprints[slot] & 0xFF00) == fragment && /*! #end !*/KEYEQUALS(key, existing)) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+            dist++;
+        } //end while true
+
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear() {
+        this.assigned = 0;
+
+        // States are always cleared.
+        this.allocatedDefaultKey = false;
+
+        /*! #if ($TemplateOptions.VTypeGeneric) !*/
+        //help the GC
+        this.allocatedDefaultKeyValue = Intrinsics.<VType> empty();
+        /*! #end !*/
+
+        //Faster than Arrays.fill(keys, null); // Help the GC.
+        KTypeArrays.blankArray(this.keys, 0, this.keys.length);
+
+        /*! #if ($TemplateOptions.VTypeGeneric) !*/
+        //Faster than Arrays.fill(values, null); // Help the GC.
+        VTypeArrays.<VType> blankArray(Intrinsics.<VType[]> cast(this.values), 0, this.values.length);
+        /*! #end !*/
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size() {
+        return this.assigned + (this.allocatedDefaultKey ? 1 : 0);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int capacity() {
+
+        return this.resizeAt;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Note that an empty container may still contain many deleted keys (that occupy buffer
+     * space). Adding even a single element to such a container may cause rehashing.</p>
+     */
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+        int h = 0;
+
+        if (this.allocatedDefaultKey) {
+            h += BitMixer.mix(this.allocatedDefaultKeyValue);
+        }
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+        final VType[] values = Intrinsics.<VType[]> cast(this.values);
+
+        for (int i = keys.length; --i >= 0;) {
+            KType existing;
+            if (!Intrinsics.<KType> isEmpty(existing = keys[i])) {
+
+                h += BitMixer.mix(existing) ^ BitMixer.mix(values[i]);
+            }
+        }
+
+        return h;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(final Object obj) {
+        if (obj != null) {
+            if (obj == this) {
+                return true;
+            }
+
+            //must be of the same class, subclasses are not comparable
+            if (obj.getClass() != this.getClass()) {
+                return false;
+            }
+
+            /* #if ($TemplateOptions.AnyGeneric) */
+            @SuppressWarnings("unchecked")
+            final/* #end */
+            KTypeVTypeRobinHoodHashMap<KType, VType> other = (KTypeVTypeRobinHoodHashMap<KType, VType>) obj;
+
+            //must be of the same size
+            if (other.size() != this.size()) {
+                return false;
+            }
+
+            final EntryIterator it = this.iterator();
+
+            while (it.hasNext()) {
+                final KTypeVTypeCursor<KType, VType> c = it.next();
+
+                if (!other.containsKey(c.key)) {
+                    //recycle
+                    it.release();
+                    return false;
+                }
+
+                final VType otherValue = other.get(c.key);
+
+                if (!Intrinsics.<VType> equals(c.value, otherValue)) {
+                    //recycle
+                    it.release();
+                    return false;
+                }
+            } //end while
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * An iterator implementation for {@link #iterator}.
+     * Holds a KTypeVTypeCursor returning
+     * (key, value, index) = (KType key, VType value, index the position in keys {@link KTypeVTypeRobinHoodHashMap#keys}, or keys.length for key = 0/null)
+     */
+    public final class EntryIterator extends AbstractIterator<KTypeVTypeCursor<KType, VType>>
+    {
+        public final KTypeVTypeCursor<KType, VType> cursor;
+
+        public EntryIterator() {
+            this.cursor = new KTypeVTypeCursor<KType, VType>();
+            this.cursor.index = -2;
+        }
+
+        /**
+         * Iterate backwards w.r.t the buffer, to
+         * minimize collision chains when filling another hash container (ex. with putAll())
+         */
+        @Override
+        protected KTypeVTypeCursor<KType, VType> fetch() {
+            if (this.cursor.index == KTypeVTypeRobinHoodHashMap.this.keys.length + 1) {
+
+                if (KTypeVTypeRobinHoodHashMap.this.allocatedDefaultKey) {
+
+                    this.cursor.index = KTypeVTypeRobinHoodHashMap.this.keys.length;
+                    this.cursor.key = Intrinsics.<KType> empty();
+                    this.cursor.value = KTypeVTypeRobinHoodHashMap.this.allocatedDefaultKeyValue;
+
+                    return this.cursor;
+
+                }
+                //no value associated with the default key, continue iteration...
+                this.cursor.index = KTypeVTypeRobinHoodHashMap.this.keys.length;
+
+            }
+
+            int i = this.cursor.index - 1;
+
+            while (i >= 0 && !is_allocated(i, Intrinsics.<KType[]> cast(KTypeVTypeRobinHoodHashMap.this.keys))) {
+                i--;
+            }
+
+            if (i == -1) {
+                return done();
+            }
+
+            this.cursor.index = i;
+            this.cursor.key = Intrinsics.<KType> cast(KTypeVTypeRobinHoodHashMap.this.keys[i]);
+            this.cursor.value = Intrinsics.<VType> cast(KTypeVTypeRobinHoodHashMap.this.values[i]);
+
+            return this.cursor;
+        }
+    }
+
+    /**
+     * internal pool of EntryIterator
+     */
+    protected final IteratorPool<KTypeVTypeCursor<KType, VType>, EntryIterator> entryIteratorPool = new IteratorPool<KTypeVTypeCursor<KType, VType>, EntryIterator>(
+            new ObjectFactory<EntryIterator>() {
+
+                @Override
+                public EntryIterator create() {
+                    return new EntryIterator();
+                }
+
+                @Override
+                public void initialize(final EntryIterator obj) {
+                    obj.cursor.index = KTypeVTypeRobinHoodHashMap.this.keys.length + 1;
+                }
+
+                @Override
+                public void reset(final EntryIterator obj) {
+                    /*! #if ($TemplateOptions.KTypeGeneric) !*/
+                    obj.cursor.key = null;
+                    /*! #end !*/
+
+                    /*! #if ($TemplateOptions.VTypeGeneric) !*/
+                    obj.cursor.value = null;
+                    /*! #end !*/
+                }
+            });
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public EntryIterator iterator() {
+        //return new EntryIterator();
+        return this.entryIteratorPool.borrow();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends KTypeVTypeProcedure<? super KType, ? super VType>> T forEach(final T procedure) {
+
+        if (this.allocatedDefaultKey) {
+
+            procedure.apply(Intrinsics.<KType> empty(), this.allocatedDefaultKeyValue);
+        }
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+        final VType[] values = Intrinsics.<VType[]> cast(this.values);
+
+        //Iterate in reverse for side-stepping the longest conflict chain
+        //in another hash, in case apply() is actually used to fill another hash container.
+        for (int i = keys.length - 1; i >= 0; i--) {
+            KType existing;
+            if (!Intrinsics.<KType> isEmpty(existing = keys[i])) {
+                procedure.apply(existing, values[i]);
+            }
+        }
+
+        return procedure;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends KTypeVTypePredicate<? super KType, ? super VType>> T forEach(final T predicate) {
+        if (this.allocatedDefaultKey) {
+
+            if (!predicate.apply(Intrinsics.<KType> empty(), this.allocatedDefaultKeyValue)) {
+
+                return predicate;
+            }
+        }
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+        final VType[] values = Intrinsics.<VType[]> cast(this.values);
+
+        //Iterate in reverse for side-stepping the longest conflict chain
+        //in another hash, in case apply() is actually used to fill another hash container.
+        for (int i = keys.length - 1; i >= 0; i--) {
+            KType existing;
+            if (!Intrinsics.<KType> isEmpty(existing = keys[i])) {
+                if (!predicate.apply(existing, values[i])) {
+                    break;
+                }
+            }
+        } //end for
+
+        return predicate;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @return a new KeysCollection view of the keys of this map.
+     */
+    @Override
+    public KeysCollection keys() {
+        return new KeysCollection();
+    }
+
+    /**
+     * A view of the keys inside this map.
+     */
+    public final class KeysCollection extends AbstractKTypeCollection<KType> implements KTypeLookupContainer<KType>
+    {
+        private final KTypeVTypeRobinHoodHashMap<KType, VType> owner = KTypeVTypeRobinHoodHashMap.this;
+
+        @Override
+        public boolean contains(final KType e) {
+            return containsKey(e);
+        }
+
+        @Override
+        public <T extends KTypeProcedure<? super KType>> T forEach(final T procedure) {
+            if (this.owner.allocatedDefaultKey) {
+
+                procedure.apply(Intrinsics.<KType> empty());
+            }
+
+            final KType[] keys = Intrinsics.<KType[]> cast(this.owner.keys);
+
+            //Iterate in reverse for side-stepping the longest conflict chain
+            //in another hash, in case apply() is actually used to fill another hash container.
+            for (int i = keys.length - 1; i >= 0; i--) {
+
+                KType existing;
+                if (!Intrinsics.<KType> isEmpty(existing = keys[i])) {
+                    procedure.apply(existing);
+                }
+            }
+
+            return procedure;
+        }
+
+        @Override
+        public <T extends KTypePredicate<? super KType>> T forEach(final T predicate) {
+            if (this.owner.allocatedDefaultKey) {
+
+                if (!predicate.apply(Intrinsics.<KType> empty())) {
+
+                    return predicate;
+                }
+            }
+
+            final KType[] keys = Intrinsics.<KType[]> cast(this.owner.keys);
+
+            //Iterate in reverse for side-stepping the longest conflict chain
+            //in another hash, in case apply() is actually used to fill another hash container.
+            for (int i = keys.length - 1; i >= 0; i--) {
+                KType existing;
+                if (!Intrinsics.<KType> isEmpty(existing = keys[i])) {
+                    if (!predicate.apply(existing)) {
+                        break;
+                    }
+                }
+            }
+
+            return predicate;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public KeysIterator iterator() {
+            //return new KeysIterator();
+            return this.keyIteratorPool.borrow();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int size() {
+            return this.owner.size();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int capacity() {
+
+            return this.owner.capacity();
+        }
+
+        @Override
+        public void clear() {
+            this.owner.clear();
+        }
+
+        @Override
+        public int removeAll(final KTypePredicate<? super KType> predicate) {
+            return this.owner.removeAll(predicate);
+        }
+
+        @Override
+        public int removeAll(final KType e) {
+            final boolean hasKey = this.owner.containsKey(e);
+            int result = 0;
+            if (hasKey) {
+                this.owner.remove(e);
+                result = 1;
+            }
+            return result;
+        }
+
+        /**
+         * internal pool of KeysIterator
+         */
+        protected final IteratorPool<KTypeCursor<KType>, KeysIterator> keyIteratorPool = new IteratorPool<KTypeCursor<KType>, KeysIterator>(
+                new ObjectFactory<KeysIterator>() {
+
+                    @Override
+                    public KeysIterator create() {
+                        return new KeysIterator();
+                    }
+
+                    @Override
+                    public void initialize(final KeysIterator obj) {
+                        obj.cursor.index = KTypeVTypeRobinHoodHashMap.this.keys.length + 1;
+                    }
+
+                    @Override
+                    public void reset(final KeysIterator obj) {
+                        /*! #if ($TemplateOptions.KTypeGeneric) !*/
+                        obj.cursor.value = null;
+                        /*! #end !*/
+
+                    }
+                });
+
+        @Override
+        public KType[] toArray(final KType[] target) {
+            int count = 0;
+
+            if (this.owner.allocatedDefaultKey) {
+
+                target[count++] = Intrinsics.<KType> empty();
+            }
+
+            final KType[] keys = Intrinsics.<KType[]> cast(this.owner.keys);
+
+            for (int i = 0; i < keys.length; i++) {
+                KType existing;
+                if (!Intrinsics.<KType> isEmpty(existing = keys[i])) {
+                    target[count++] = existing;
+                }
+            }
+
+            assert count == this.owner.size();
+            return target;
+        }
+    };
+
+    /**
+     * An iterator over the set of keys.
+     * Holds a KTypeCursor returning (value, index) = (KType key, index the position in buffer {@link KTypeVTypeRobinHoodHashMap#keys}, or keys.length for key = 0/null.)
+     */
+    public final class KeysIterator extends AbstractIterator<KTypeCursor<KType>>
+    {
+        public final KTypeCursor<KType> cursor;
+
+        public KeysIterator() {
+            this.cursor = new KTypeCursor<KType>();
+            this.cursor.index = -2;
+        }
+
+        /**
+         * Iterate backwards w.r.t the buffer, to
+         * minimize collision chains when filling another hash container (ex. with putAll())
+         */
+        @Override
+        protected KTypeCursor<KType> fetch() {
+
+            if (this.cursor.index == KTypeVTypeRobinHoodHashMap.this.keys.length + 1) {
+
+                if (KTypeVTypeRobinHoodHashMap.this.allocatedDefaultKey) {
+
+                    this.cursor.index = KTypeVTypeRobinHoodHashMap.this.keys.length;
+                    this.cursor.value = Intrinsics.<KType> empty();
+
+                    return this.cursor;
+
+                }
+                //no value associated with the default key, continue iteration...
+                this.cursor.index = KTypeVTypeRobinHoodHashMap.this.keys.length;
+
+            }
+
+            int i = this.cursor.index - 1;
+
+            while (i >= 0 && !is_allocated(i, Intrinsics.<KType[]> cast(KTypeVTypeRobinHoodHashMap.this.keys))) {
+                i--;
+            }
+
+            if (i == -1) {
+                return done();
+            }
+
+            this.cursor.index = i;
+            this.cursor.value = Intrinsics.<KType> cast(KTypeVTypeRobinHoodHashMap.this.keys[i]);
+
+            return this.cursor;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * @return a new ValuesCollection view of the values of this map.
+     */
+    @Override
+    public ValuesCollection values() {
+        return new ValuesCollection();
+    }
+
+    /**
+     * A view over the set of values of this map.
+     */
+    public final class ValuesCollection extends AbstractKTypeCollection<VType>
+    {
+        private final KTypeVTypeRobinHoodHashMap<KType, VType> owner = KTypeVTypeRobinHoodHashMap.this;
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int size() {
+            return this.owner.size();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int capacity() {
+
+            return this.owner.capacity();
+        }
+
+        @Override
+        public boolean contains(final VType value) {
+            if (this.owner.allocatedDefaultKey && Intrinsics.<VType> equals(value, this.owner.allocatedDefaultKeyValue)) {
+
+                return true;
+            }
+
+            // This is a linear scan over the values, but it's in the contract, so be it.
+
+            final KType[] keys = Intrinsics.<KType[]> cast(this.owner.keys);
+            final VType[] values = Intrinsics.<VType[]> cast(this.owner.values);
+
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (is_allocated(slot, keys) && Intrinsics.<VType> equals(value, values[slot])) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public <T extends KTypeProcedure<? super VType>> T forEach(final T procedure) {
+            if (this.owner.allocatedDefaultKey) {
+
+                procedure.apply(this.owner.allocatedDefaultKeyValue);
+            }
+
+            final KType[] keys = Intrinsics.<KType[]> cast(this.owner.keys);
+            final VType[] values = Intrinsics.<VType[]> cast(this.owner.values);
+
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (is_allocated(slot, keys)) {
+
+                    procedure.apply(values[slot]);
+                }
+            }
+
+            return procedure;
+        }
+
+        @Override
+        public <T extends KTypePredicate<? super VType>> T forEach(final T predicate) {
+            if (this.owner.allocatedDefaultKey) {
+
+                if (!predicate.apply(this.owner.allocatedDefaultKeyValue)) {
+                    return predicate;
+                }
+            }
+
+            final KType[] keys = Intrinsics.<KType[]> cast(this.owner.keys);
+            final VType[] values = Intrinsics.<VType[]> cast(this.owner.values);
+
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (is_allocated(slot, keys)) {
+                    if (!predicate.apply(values[slot])) {
+                        break;
+                    }
+                }
+            }
+
+            return predicate;
+        }
+
+        @Override
+        public ValuesIterator iterator() {
+            // return new ValuesIterator();
+            return this.valuesIteratorPool.borrow();
+        }
+
+        /**
+         * {@inheritDoc}
+         * Indeed removes all the (key,value) pairs matching
+         * (key ? ,  e) with the  same  e,  from  the map.
+         */
+        @Override
+        public int removeAll(final VType e) {
+            final int before = this.owner.size();
+
+            if (this.owner.allocatedDefaultKey) {
+
+                if (Intrinsics.<VType> equals(e, this.owner.allocatedDefaultKeyValue)) {
+
+                    this.owner.allocatedDefaultKey = false;
+
+                    /*! #if ($TemplateOptions.VTypeGeneric) !*/
+                    //help the GC
+                    this.owner.allocatedDefaultKeyValue = Intrinsics.<VType> empty();
+                    /*! #end !*/
+                }
+            }
+
+            final KType[] keys = Intrinsics.<KType[]> cast(this.owner.keys);
+            final VType[] values = Intrinsics.<VType[]> cast(this.owner.values);
+
+            for (int slot = 0; slot < keys.length;) {
+                if (is_allocated(slot, keys) && Intrinsics.<VType> equals(e, values[slot])) {
+
+                    shiftConflictingKeys(slot);
+                    // Shift, do not increment slot.
+                } else {
+                    slot++;
+                }
+            }
+            return before - this.owner.size();
+        }
+
+        /**
+         * {@inheritDoc}
+         * Indeed removes all the (key,value) pairs matching
+         * the predicate for the values, from  the map.
+         */
+        @Override
+        public int removeAll(final KTypePredicate<? super VType> predicate) {
+            final int before = this.owner.size();
+
+            if (this.owner.allocatedDefaultKey) {
+
+                if (predicate.apply(this.owner.allocatedDefaultKeyValue)) {
+
+                    this.owner.allocatedDefaultKey = false;
+
+                    /*! #if ($TemplateOptions.VTypeGeneric) !*/
+                    //help the GC
+                    this.owner.allocatedDefaultKeyValue = Intrinsics.<VType> empty();
+                    /*! #end !*/
+                }
+            }
+
+            final KType[] keys = Intrinsics.<KType[]> cast(this.owner.keys);
+            final VType[] values = Intrinsics.<VType[]> cast(this.owner.values);
+
+            for (int slot = 0; slot < keys.length;) {
+                if (is_allocated(slot, keys) && predicate.apply(values[slot])) {
+
+                    shiftConflictingKeys(slot);
+                    // Shift, do not increment slot.
+                } else {
+                    slot++;
+                }
+            }
+            return before - this.owner.size();
+        }
+
+        /**
+         * {@inheritDoc}
+         *  Alias for clear() the whole map.
+         */
+        @Override
+        public void clear() {
+            this.owner.clear();
+        }
+
+        /**
+         * internal pool of ValuesIterator
+         */
+        protected final IteratorPool<KTypeCursor<VType>, ValuesIterator> valuesIteratorPool = new IteratorPool<KTypeCursor<VType>, ValuesIterator>(
+                new ObjectFactory<ValuesIterator>() {
+
+                    @Override
+                    public ValuesIterator create() {
+                        return new ValuesIterator();
+                    }
+
+                    @Override
+                    public void initialize(final ValuesIterator obj) {
+                        obj.cursor.index = KTypeVTypeRobinHoodHashMap.this.keys.length + 1;
+                    }
+
+                    @Override
+                    public void reset(final ValuesIterator obj) {
+
+                        /*! #if ($TemplateOptions.VTypeGeneric) !*/
+                        obj.cursor.value = null;
+                        /*! #end !*/
+                    }
+                });
+
+        @Override
+        public VType[] toArray(final VType[] target) {
+            int count = 0;
+
+            if (this.owner.allocatedDefaultKey) {
+
+                target[count++] = this.owner.allocatedDefaultKeyValue;
+            }
+
+            final KType[] keys = Intrinsics.<KType[]> cast(this.owner.keys);
+
+            final VType[] values = Intrinsics.<VType[]> cast(this.owner.values);
+
+            for (int i = 0; i < values.length; i++) {
+                if (is_allocated(i, keys)) {
+                    target[count++] = values[i];
+                }
+            }
+
+            assert count == this.owner.size();
+            return target;
+        }
+    }
+
+    /**
+     * An iterator over the set of values.
+     * Holds a KTypeCursor returning (value, index) = (VType value, index the position in buffer {@link KTypeVTypeRobinHoodHashMap#values},
+     * or values.length for value = {@link KTypeVTypeRobinHoodHashMap#allocatedDefaultKeyValue}).
+     */
+    public final class ValuesIterator extends AbstractIterator<KTypeCursor<VType>>
+    {
+        public final KTypeCursor<VType> cursor;
+
+        public ValuesIterator() {
+            this.cursor = new KTypeCursor<VType>();
+            this.cursor.index = -2;
+        }
+
+        /**
+         * Iterate backwards w.r.t the buffer, to
+         * minimize collision chains when filling another hash container (ex. with putAll())
+         */
+        @Override
+        protected KTypeCursor<VType> fetch() {
+            if (this.cursor.index == KTypeVTypeRobinHoodHashMap.this.values.length + 1) {
+
+                if (KTypeVTypeRobinHoodHashMap.this.allocatedDefaultKey) {
+
+                    this.cursor.index = KTypeVTypeRobinHoodHashMap.this.values.length;
+                    this.cursor.value = KTypeVTypeRobinHoodHashMap.this.allocatedDefaultKeyValue;
+
+                    return this.cursor;
+
+                }
+                //no value associated with the default key, continue iteration...
+                this.cursor.index = KTypeVTypeRobinHoodHashMap.this.keys.length;
+
+            }
+
+            int i = this.cursor.index - 1;
+
+            while (i >= 0 && !is_allocated(i, Intrinsics.<KType[]> cast(KTypeVTypeRobinHoodHashMap.this.keys))) {
+                i--;
+            }
+
+            if (i == -1) {
+                return done();
+            }
+
+            this.cursor.index = i;
+            this.cursor.value = Intrinsics.<VType> cast(KTypeVTypeRobinHoodHashMap.this.values[i]);
+
+            return this.cursor;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public KTypeVTypeRobinHoodHashMap<KType, VType> clone() {
+        //clone to size() to prevent some cases of exponential sizes,
+        final KTypeVTypeRobinHoodHashMap<KType, VType> cloned = new KTypeVTypeRobinHoodHashMap<KType, VType>(this.size(), this.loadFactor);
+
+        //We must NOT clone because of independent perturbations seeds
+        cloned.putAll(this);
+        
+        return cloned;
+    }
+
+    /**
+     * Convert the contents of this map to a human-friendly string.
+     */
+    @Override
+    public String toString() {
+        final StringBuilder buffer = new StringBuilder();
+        buffer.append("[");
+
+        boolean first = true;
+        for (final KTypeVTypeCursor<KType, VType> cursor : this) {
+            if (!first) {
+                buffer.append(", ");
+            }
+            buffer.append(cursor.key);
+            buffer.append("=>");
+            buffer.append(cursor.value);
+            first = false;
+        }
+        buffer.append("]");
+        return buffer.toString();
+    }
+
+    /**
+     * Creates a hash map from two index-aligned arrays of key-value pairs. Default load factor is used.
+     */
+    public static <KType, VType> KTypeVTypeRobinHoodHashMap<KType, VType> from(final KType[] keys, final VType[] values) {
+        if (keys.length != values.length) {
+            throw new IllegalArgumentException("Arrays of keys and values must have an identical length.");
+        }
+
+        final KTypeVTypeRobinHoodHashMap<KType, VType> map = new KTypeVTypeRobinHoodHashMap<KType, VType>(keys.length);
+
+        for (int i = 0; i < keys.length; i++) {
+            map.put(keys[i], values[i]);
+        }
+        return map;
+    }
+
+    /**
+     * Create a hash map from another associative container. (constructor shortcut) Default load factor is used.
+     */
+    public static <KType, VType> KTypeVTypeRobinHoodHashMap<KType, VType> from(
+            final KTypeVTypeAssociativeContainer<KType, VType> container) {
+        return new KTypeVTypeRobinHoodHashMap<KType, VType>(container);
+    }
+
+    /**
+     * Create a new hash map without providing the full generic signature
+     * (constructor shortcut).
+     */
+    public static <KType, VType> KTypeVTypeRobinHoodHashMap<KType, VType> newInstance() {
+        return new KTypeVTypeRobinHoodHashMap<KType, VType>();
+    }
+
+    /**
+     * Create a new hash map with initial capacity and load factor control.
+     * (constructor shortcut).
+     */
+    public static <KType, VType> KTypeVTypeRobinHoodHashMap<KType, VType> newInstance(final int initialCapacity,
+            final double loadFactor) {
+        return new KTypeVTypeRobinHoodHashMap<KType, VType>(initialCapacity, loadFactor);
+    }
+
+    /**
+     * Returns the "default value" value used in containers methods returning
+     * "default value"
+     */
+    @Override
+    public VType getDefaultValue() {
+        return this.defaultValue;
+    }
+
+    /**
+     * Set the "default value" value to be used in containers methods returning
+     * "default value"
+     */
+    @Override
+    public void setDefaultValue(final VType defaultValue) {
+        this.defaultValue = defaultValue;
+    }
+
+    //Test for existence in template
+    /*! #if ($TemplateOptions.declareInline("is_allocated(slot, keys)",
+        "<*,*>==>!Intrinsics.<KType>isEmpty(keys[slot])")) !*/
+    /**
+     *  template version
+     * (actual method is inlined in generated code)
+     */
+    private boolean is_allocated(final int slot, final KType[] keys) {
+
+        return !Intrinsics.<KType> isEmpty(keys[slot]);
+    }
+
+    /*! #end !*/
+    
+    /**
+     * @return the distance of the key in <code>slot</code> to its initial slot.
+     */
+    private int probe_distance(final int slot, final KType[] keys) {
+
+        /*! #if ($TemplateOptions.KTypeGeneric) !*/
+        final int distance = this.fingerprints[slot] & 0xFF;
+
+        if (distance < KTypeVTypeRobinHoodHashMap.SATURATED_DISTANCE) {
+
+            return distance;
+        }
+        /*! #end !*/
+
+        return (slot - REHASH(keys[slot])) & (keys.length - 1);
+    }
+
+    /*! #if ($TemplateOptions.KTypeGeneric) !*/
+    /**
+     * Fingerprint of a key of hash bits <code>fragment</code>, at <code>distance</code> from its initial slot.
+     */
+    private static short fingerprint(final int fragment, final int distance) {
+
+        return (short) (fragment | Math.min(distance, KTypeVTypeRobinHoodHashMap.SATURATED_DISTANCE));
+    }
+    /*! #end !*/
+
+    /*! #if ($TemplateOptions.declareInline("REHASH(value)",
+    "<Object,*>==>BitMixer.mix(value.hashCode() , this.perturbation)",
+    "<*,*>==>BitMixer.mix(value , this.perturbation)")) !*/
+    /**
+     * REHASH method for rehashing the keys.
+     * (inlined in generated code)
+     * Thanks to single array mode, no need to check for null/0 or booleans.
+     */
+    private int REHASH(final KType value) {
+
+        return BitMixer.mix(value.hashCode(), this.perturbation);
+    }
+
+    /*! #end !*/
+
+    /*! #if ($TemplateOptions.declareInline("REHASH2(value, perturb)",
+    "<Object,*>==>BitMixer.mix(value.hashCode() , perturb)",
+    "<*,*>==>BitMixer.mix(value , perturb)")) !*/
+    /**
+     * REHASH2 method for rehashing the keys with perturbation seed as parameter
+     * (inlined in generated code)
+     * Thanks to single array mode, no need to check for null/0 or booleans.
+     */
+    private int REHASH2(final KType value, final int perturb) {
+
+        return BitMixer.mix(value.hashCode(), perturb);
+    }
+    /*! #end !*/
+
+    /*! #if ($TemplateOptions.declareInline("KEYEQUALS(key1, key2)",
+    "<*,*>==>Intrinsics.<KType> equalsNotNull(key1, key2)")) !*/
+    /**
+     * macro which hides the applied equality criteria
+     */
+    private boolean KEYEQUALS(final KType key1, final KType key2) {
+
+        return Intrinsics.<KType> equalsNotNull(key1, key2);
+    }
+    /*! #end !*/
+}
@@ -0,0 +1,1144 @@
+package com.carrotsearch.hppcrt.maps;
+
+import java.util.Iterator;
+
+import com.carrotsearch.hppcrt.*;
+import com.carrotsearch.hppcrt.cursors.*;
+import com.carrotsearch.hppcrt.predicates.*;
+import com.carrotsearch.hppcrt.procedures.*;
+import com.carrotsearch.hppcrt.hash.*;
+
+/*! #import("com/carrotsearch/hppcrt/Intrinsics.java") !*/
+/**
+ * A map of <code>KType</code> to <code>VType</code> for many tiny maps: up to {@link #INLINE_SIZE} pairs are stored
+ * packed at the beginning of two arrays and looked up by a linear scan, then the map
+ * transparently migrates to a {@link KTypeVTypeHashMap} holding all the pairs when it grows bigger.
+ *
+ * <p>
+ * While small, the map has no hash buffer at its minimal size, no perturbation, no hash cache and no iterator pool: its footprint
+ * is its pairs and a few fields, and the arrays are only allocated by the first insertion.
+ * The iterators are allocated by each call.
+ * Once migrated, the map stays a hash map, even if keys are removed.
+ * </p>
+ *
+ * <p>
+ * The iteration order of a small map is its insertion order, except that removing a pair moves the last pair in its place.
+ * </p>
+#if ($TemplateOptions.KTypeGeneric)
+ * <p>This implementation supports <code>null</code> keys. </p>
+#end
+#if ($TemplateOptions.VTypeGeneric)
+ * <p>This implementation supports <code>null</code> values.</p>
+#end
+ */
+/*! ${TemplateOptions.generatedAnnotation} !*/
+public class KTypeVTypeSmallHashMap<KType, VType>
+implements KTypeVTypeMap<KType, VType>, Cloneable
+{
+    /**
+     * Maximum number of pairs stored inline, before migrating to a {@link KTypeVTypeHashMap}.
+     */
+    public static final int INLINE_SIZE = 8;
+
+    /**
+     * Inline keys, packed in [0; {@link #assigned}[, <code>null</code> until the first insertion and after the migration.
+     */
+    public/*! #if ($TemplateOptions.KTypePrimitive)
+          KType []
+          #else !*/
+    Object[]
+            /*! #end !*/
+            keys;
+
+    /**
+     * Inline values, at the same indices as their keys in {@link #keys}.
+     */
+    public/*! #if ($TemplateOptions.VTypePrimitive)
+          VType []
+          #else !*/
+    Object[]
+            /*! #end !*/
+            values;
+
+    /**
+     * Number of inline pairs.
+     */
+    protected int assigned;
+
+    /**
+     * The map holding all the pairs once more than {@link #INLINE_SIZE} were put, else <code>null</code>.
+     */
+    protected KTypeVTypeHashMap<KType, VType> hashed;
+
+    protected VType defaultValue;
+
+    /**
+     * Default constructor: a small map, whose arrays will be allocated by the first insertion.
+     */
+    public KTypeVTypeSmallHashMap() {
+        this(0);
+    }
+
+    /**
+     * Creates a map able to store <code>initialCapacity</code> pairs without any allocation, which is a hash map
+     * if <code>initialCapacity</code> &gt; {@link #INLINE_SIZE}.
+     */
+    public KTypeVTypeSmallHashMap(final int initialCapacity) {
+
+        if (initialCapacity > KTypeVTypeSmallHashMap.INLINE_SIZE) {
+
+            this.hashed = new KTypeVTypeHashMap<KType, VType>(initialCapacity);
+
+        } else if (initialCapacity > 0) {
+
+            allocateBuffers(initialCapacity);
+        }
+
+        this.defaultValue = Intrinsics.<VType> empty();
+    }
+
+    /**
+     * Create a map from another associative container.
+     */
+    public KTypeVTypeSmallHashMap(final KTypeVTypeAssociativeContainer<? extends KType, ? extends VType> container) {
+        this(container.size());
+        putAll(container);
+    }
+
+    /**
+     * True if the pairs were migrated to a {@link KTypeVTypeHashMap}.
+     */
+    public boolean isHashed() {
+        return this.hashed != null;
+    }
+
+    private void allocateBuffers(final int capacity) {
+
+        try {
+            final KType[] keys = Intrinsics.<KType> newArray(capacity);
+            final VType[] values = Intrinsics.<VType> newArray(capacity);
+
+            if (this.keys != null) {
+
+                System.arraycopy(this.keys, 0, keys, 0, this.assigned);
+                System.arraycopy(this.values, 0, values, 0, this.assigned);
+            }
+
+            this.keys = keys;
+            this.values = values;
+
+        } catch (final OutOfMemoryError e) {
+
+            throw new BufferAllocationException(
+                    "Not enough memory to allocate buffers for %d elements",
+                    e, capacity);
+        }
+    }
+
+    /**
+     * Index of <code>key</code> in the inline pairs, or -1.
+     */
+    private int indexOf(final KType key) {
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+
+        for (int i = 0; i < this.assigned; i++) {
+
+            if (Intrinsics.<KType> equals(key, keys[i])) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public VType put(final KType key, final VType value) {
+
+        if (this.hashed != null) {
+
+            return this.hashed.put(key, value);
+        }
+
+        final int index = indexOf(key);
+
+        if (index != -1) {
+
+            final VType[] values = Intrinsics.<VType[]> cast(this.values);
+
+            final VType previousValue = values[index];
+            values[index] = value;
+
+            return previousValue;
+        }
+
+        final int size = this.assigned;
+
+        if (this.keys == null || size == this.keys.length) {
+
+            if (size == KTypeVTypeSmallHashMap.INLINE_SIZE) {
+
+                migrate();
+                return this.hashed.put(key, value);
+            }
+
+            allocateBuffers(Math.min(KTypeVTypeSmallHashMap.INLINE_SIZE, Math.max(2, 2 * size)));
+        }
+
+        Intrinsics.<KType[]> cast(this.keys)[size] = key;
+        Intrinsics.<VType[]> cast(this.values)[size] = value;
+        this.assigned++;
+
+        return this.defaultValue;
+    }
+
+    /**
+     * Move all the pairs to a new {@link KTypeVTypeHashMap}, sized for one more pair.
+     */
+    private void migrate() {
+
+        final KTypeVTypeHashMap<KType, VType> hashed = new KTypeVTypeHashMap<KType, VType>(this.assigned + 1);
+        hashed.setDefaultValue(this.defaultValue);
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+        final VType[] values = Intrinsics.<VType[]> cast(this.values);
+
+        for (int i = 0; i < this.assigned; i++) {
+
+            hashed.put(keys[i], values[i]);
+        }
+
+        this.hashed = hashed;
+        this.keys = null;
+        this.values = null;
+        this.assigned = 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int putAll(final KTypeVTypeAssociativeContainer<? extends KType, ? extends VType> container) {
+        return putAll((Iterable<? extends KTypeVTypeCursor<? extends KType, ? extends VType>>) container);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int putAll(final Iterable<? extends KTypeVTypeCursor<? extends KType, ? extends VType>> iterable) {
+        final int count = this.size();
+        for (final KTypeVTypeCursor<? extends KType, ? extends VType> c : iterable) {
+            put(c.key, c.value);
+        }
+        return this.size() - count;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean putIfAbsent(final KType key, final VType value) {
+        if (!containsKey(key)) {
+            put(key, value);
+            return true;
+        }
+        return false;
+    }
+
+    /*! #if ($TemplateOptions.VTypePrimitive) !*/
+    /**
+     * If <code>key</code> exists, <code>putValue</code> is inserted into the map,
+     * otherwise any existing value is incremented by <code>additionValue</code>.
+     *
+     * @param key
+     *          The key of the value to adjust.
+     * @param putValue
+     *          The value to put if <code>key</code> does not exist.
+     * @param incrementValue
+     *          The value to add to the existing value if <code>key</code> exists.
+     * @return Returns the current value associated with <code>key</code> (after
+     *         changes).
+     */
+    @SuppressWarnings("cast")
+    @Override
+    public VType putOrAdd(final KType key, VType putValue, final VType incrementValue) {
+
+        if (this.hashed != null) {
+
+            return this.hashed.putOrAdd(key, putValue, incrementValue);
+        }
+
+        final int index = indexOf(key);
+
+        if (index != -1) {
+
+            final VType[] values = Intrinsics.<VType[]> cast(this.values);
+
+            values[index] = (VType) (Intrinsics.<VType> add(values[index], incrementValue));
+
+            return values[index];
+        }
+
+        put(key, putValue);
+        return putValue;
+    }
+
+    /**
+     * Adds <code>incrementValue</code> to any existing value for the given <code>key</code>
+     * or inserts <code>incrementValue</code> if <code>key</code> did not previously exist.
+     *
+     * @param key The key of the value to adjust.
+     * @param incrementValue The value to put or add to the existing value if <code>key</code> exists.
+     * @return Returns the current value associated with <code>key</code> (after changes).
+     */
+    @Override
+    public VType addTo(final KType key, final VType incrementValue)
+    {
+        return putOrAdd(key, incrementValue, incrementValue);
+    }
+
+    /*! #end !*/
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public VType remove(final KType key) {
+
+        if (this.hashed != null) {
+
+            return this.hashed.remove(key);
+        }
+
+        final int index = indexOf(key);
+
+        if (index == -1) {
+
+            return this.defaultValue;
+        }
+
+        final VType previousValue = Intrinsics.<VType> cast(this.values[index]);
+
+        removeAt(index);
+
+        return previousValue;
+    }
+
+    /**
+     * Remove the inline pair at <code>index</code>, moving the last pair in its place.
+     */
+    private void removeAt(final int index) {
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+        final VType[] values = Intrinsics.<VType[]> cast(this.values);
+
+        final int last = --this.assigned;
+
+        keys[index] = keys[last];
+        values[index] = values[last];
+
+        //help the GC
+        keys[last] = Intrinsics.<KType> empty();
+        values[last] = Intrinsics.<VType> empty();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int removeAll(final KTypeContainer<? super KType> other) {
+
+        if (this.hashed != null) {
+
+            return this.hashed.removeAll(other);
+        }
+
+        final int before = this.assigned;
+
+        if (other instanceof KTypeLookupContainer<?>) {
+
+            final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+
+            for (int i = 0; i < this.assigned;) {
+
+                if (other.contains(keys[i])) {
+
+                    removeAt(i);
+                    //the last pair was moved at i, do not increment.
+                } else {
+                    i++;
+                }
+            }
+        } else {
+
+            for (final KTypeCursor<? super KType> c : other) {
+
+                remove(Intrinsics.<KType> cast(c.value));
+            }
+        }
+
+        return before - this.assigned;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int removeAll(final KTypePredicate<? super KType> predicate) {
+
+        if (this.hashed != null) {
+
+            return this.hashed.removeAll(predicate);
+        }
+
+        final int before = this.assigned;
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+
+        for (int i = 0; i < this.assigned;) {
+
+            if (predicate.apply(keys[i])) {
+
+                removeAt(i);
+            } else {
+                i++;
+            }
+        }
+
+        return before - this.assigned;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int removeAll(final KTypeVTypePredicate<? super KType, ? super VType> predicate) {
+
+        if (this.hashed != null) {
+
+            return this.hashed.removeAll(predicate);
+        }
+
+        final int before = this.assigned;
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+        final VType[] values = Intrinsics.<VType[]> cast(this.values);
+
+        for (int i = 0; i < this.assigned;) {
+
+            if (predicate.apply(keys[i], values[i])) {
+
+                removeAt(i);
+            } else {
+                i++;
+            }
+        }
+
+        return before - this.assigned;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public VType get(final KType key) {
+
+        if (this.hashed != null) {
+
+            return this.hashed.get(key);
+        }
+
+        final int index = indexOf(key);
+
+        if (index == -1) {
+
+            return this.defaultValue;
+        }
+
+        return Intrinsics.<VType> cast(this.values[index]);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean containsKey(final KType key) {
+
+        if (this.hashed != null) {
+
+            return this.hashed.containsKey(key);
+        }
+
+        return indexOf(key) != -1;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>Does not release internal buffers.</p>
+     */
+    @Override
+    public void clear() {
+
+        if (this.hashed != null) {
+
+            this.hashed.clear();
+            return;
+        }
+
+        if (this.keys != null) {
+
+            //Faster than Arrays.fill(keys, null); // Help the GC.
+            KTypeArrays.blankArray(this.keys, 0, this.assigned);
+
+            /*! #if ($TemplateOptions.VTypeGeneric) !*/
+            //Faster than Arrays.fill(values, null); // Help the GC.
+            VTypeArrays.<VType> blankArray(Intrinsics.<VType[]> cast(this.values), 0, this.assigned);
+            /*! #end !*/
+        }
+
+        this.assigned = 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size() {
+
+        if (this.hashed != null) {
+
+            return this.hashed.size();
+        }
+
+        return this.assigned;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int capacity() {
+
+        if (this.hashed != null) {
+
+            return this.hashed.capacity();
+        }
+
+        return this.keys == null ? 0 : this.keys.length;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+
+        if (this.hashed != null) {
+
+            return this.hashed.hashCode();
+        }
+
+        int h = 0;
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+        final VType[] values = Intrinsics.<VType[]> cast(this.values);
+
+        //same as KTypeVTypeHashMap, where the key 0/null only hashes its value
+        for (int i = 0; i < this.assigned; i++) {
+
+            if (Intrinsics.<KType> isEmpty(keys[i])) {
+
+                h += BitMixer.mix(values[i]);
+            } else {
+
+                h += BitMixer.mix(keys[i]) ^ BitMixer.mix(values[i]);
+            }
+        }
+
+        return h;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(final Object obj) {
+        if (obj != null) {
+            if (obj == this) {
+                return true;
+            }
+
+            //must be of the same class, subclasses are not comparable
+            if (obj.getClass() != this.getClass()) {
+                return false;
+            }
+
+            /* #if ($TemplateOptions.AnyGeneric) */
+            @SuppressWarnings("unchecked")
+            final/* #end */
+            KTypeVTypeSmallHashMap<KType, VType> other = (KTypeVTypeSmallHashMap<KType, VType>) obj;
+
+            //must be of the same size
+            if (other.size() != this.size()) {
+                return false;
+            }
+
+            return forEach(new KTypeVTypePredicate<KType, VType>() {
+
+                public boolean equal = true;
+
+                @Override
+                public boolean apply(final KType key, final VType value) {
+
+                    this.equal = other.containsKey(key) && Intrinsics.<VType> equals(value, other.get(key));
+
+                    return this.equal;
+                }
+            }).equal;
+        }
+        return false;
+    }
+
+    /**
+     * An iterator over the inline pairs, for {@link #iterator}.
+     * Holds a KTypeVTypeCursor returning
+     * (key, value, index) = (KType key, VType value, index the position in keys {@link KTypeVTypeSmallHashMap#keys})
+     */
+    public final class EntryIterator extends AbstractIterator<KTypeVTypeCursor<KType, VType>>
+    {
+        public final KTypeVTypeCursor<KType, VType> cursor;
+
+        public EntryIterator() {
+            this.cursor = new KTypeVTypeCursor<KType, VType>();
+            this.cursor.index = -1;
+        }
+
+        @Override
+        protected KTypeVTypeCursor<KType, VType> fetch() {
+
+            final int i = this.cursor.index + 1;
+
+            if (i >= KTypeVTypeSmallHashMap.this.assigned) {
+                return done();
+            }
+
+            this.cursor.index = i;
+            this.cursor.key = Intrinsics.<KType> cast(KTypeVTypeSmallHashMap.this.keys[i]);
+            this.cursor.value = Intrinsics.<VType> cast(KTypeVTypeSmallHashMap.this.values[i]);
+
+            return this.cursor;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * @return a new iterator, or the one of the {@link KTypeVTypeHashMap} once migrated.
+     */
+    @Override
+    public Iterator<KTypeVTypeCursor<KType, VType>> iterator() {
+
+        if (this.hashed != null) {
+
+            return this.hashed.iterator();
+        }
+
+        return new EntryIterator();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends KTypeVTypeProcedure<? super KType, ? super VType>> T forEach(final T procedure) {
+
+        if (this.hashed != null) {
+
+            return this.hashed.forEach(procedure);
+        }
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+        final VType[] values = Intrinsics.<VType[]> cast(this.values);
+
+        for (int i = 0; i < this.assigned; i++) {
+
+            procedure.apply(keys[i], values[i]);
+        }
+
+        return procedure;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends KTypeVTypePredicate<? super KType, ? super VType>> T forEach(final T predicate) {
+
+        if (this.hashed != null) {
+
+            return this.hashed.forEach(predicate);
+        }
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+        final VType[] values = Intrinsics.<VType[]> cast(this.values);
+
+        for (int i = 0; i < this.assigned; i++) {
+
+            if (!predicate.apply(keys[i], values[i])) {
+                break;
+            }
+        }
+
+        return predicate;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @return a new KeysCollection view of the keys of this map, which follows the migration.
+     */
+    @Override
+    public KeysCollection keys() {
+        return new KeysCollection();
+    }
+
+    /**
+     * A view of the keys inside this map.
+     */
+    public final class KeysCollection extends AbstractKTypeCollection<KType> implements KTypeLookupContainer<KType>
+    {
+        private final KTypeVTypeSmallHashMap<KType, VType> owner = KTypeVTypeSmallHashMap.this;
+
+        @Override
+        public boolean contains(final KType e) {
+            return this.owner.containsKey(e);
+        }
+
+        @Override
+        public <T extends KTypeProcedure<? super KType>> T forEach(final T procedure) {
+
+            if (this.owner.hashed != null) {
+
+                return this.owner.hashed.keys().forEach(procedure);
+            }
+
+            final KType[] keys = Intrinsics.<KType[]> cast(this.owner.keys);
+
+            for (int i = 0; i < this.owner.assigned; i++) {
+
+                procedure.apply(keys[i]);
+            }
+
+            return procedure;
+        }
+
+        @Override
+        public <T extends KTypePredicate<? super KType>> T forEach(final T predicate) {
+
+            if (this.owner.hashed != null) {
+
+                return this.owner.hashed.keys().forEach(predicate);
+            }
+
+            final KType[] keys = Intrinsics.<KType[]> cast(this.owner.keys);
+
+            for (int i = 0; i < this.owner.assigned; i++) {
+
+                if (!predicate.apply(keys[i])) {
+                    break;
+                }
+            }
+
+            return predicate;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Iterator<KTypeCursor<KType>> iterator() {
+
+            if (this.owner.hashed != null) {
+
+                return this.owner.hashed.keys().iterator();
+            }
+
+            return new KeysIterator();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int size() {
+            return this.owner.size();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int capacity() {
+
+            return this.owner.capacity();
+        }
+
+        @Override
+        public void clear() {
+            this.owner.clear();
+        }
+
+        @Override
+        public int removeAll(final KTypePredicate<? super KType> predicate) {
+            return this.owner.removeAll(predicate);
+        }
+
+        @Override
+        public int removeAll(final KType e) {
+
+            final int before = this.owner.size();
+
+            this.owner.remove(e);
+
+            return before - this.owner.size();
+        }
+    };
+
+    /**
+     * An iterator over the inline keys.
+     * Holds a KTypeCursor returning (value, index) = (KType key, index the position in keys {@link KTypeVTypeSmallHashMap#keys})
+     */
+    public final class KeysIterator extends AbstractIterator<KTypeCursor<KType>>
+    {
+        public final KTypeCursor<KType> cursor;
+
+        public KeysIterator() {
+            this.cursor = new KTypeCursor<KType>();
+            this.cursor.index = -1;
+        }
+
+        @Override
+        protected KTypeCursor<KType> fetch() {
+
+            final int i = this.cursor.index + 1;
+
+            if (i >= KTypeVTypeSmallHashMap.this.assigned) {
+                return done();
+            }
+
+            this.cursor.index = i;
+            this.cursor.value = Intrinsics.<KType> cast(KTypeVTypeSmallHashMap.this.keys[i]);
+
+            return this.cursor;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * @return a new ValuesCollection view of the values of this map, which follows the migration.
+     */
+    @Override
+    public ValuesCollection values() {
+        return new ValuesCollection();
+    }
+
+    /**
+     * A view over the set of values of this map.
+     */
+    public final class ValuesCollection extends AbstractKTypeCollection<VType>
+    {
+        private final KTypeVTypeSmallHashMap<KType, VType> owner = KTypeVTypeSmallHashMap.this;
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int size() {
+            return this.owner.size();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int capacity() {
+
+            return this.owner.capacity();
+        }
+
+        @Override
+        public boolean contains(final VType value) {
+
+            if (this.owner.hashed != null) {
+
+                return this.owner.hashed.values().contains(value);
+            }
+
+            final VType[] values = Intrinsics.<VType[]> cast(this.owner.values);
+
+            for (int i = 0; i < this.owner.assigned; i++) {
+
+                if (Intrinsics.<VType> equals(value, values[i])) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        @Override
+        public <T extends KTypeProcedure<? super VType>> T forEach(final T procedure) {
+
+            if (this.owner.hashed != null) {
+
+                return this.owner.hashed.values().forEach(procedure);
+            }
+
+            final VType[] values = Intrinsics.<VType[]> cast(this.owner.values);
+
+            for (int i = 0; i < this.owner.assigned; i++) {
+
+                procedure.apply(values[i]);
+            }
+
+            return procedure;
+        }
+
+        @Override
+        public <T extends KTypePredicate<? super VType>> T forEach(final T predicate) {
+
+            if (this.owner.hashed != null) {
+
+                return this.owner.hashed.values().forEach(predicate);
+            }
+
+            final VType[] values = Intrinsics.<VType[]> cast(this.owner.values);
+
+            for (int i = 0; i < this.owner.assigned; i++) {
+
+                if (!predicate.apply(values[i])) {
+                    break;
+                }
+            }
+
+            return predicate;
+        }
+
+        @Override
+        public Iterator<KTypeCursor<VType>> iterator() {
+
+            if (this.owner.hashed != null) {
+
+                return this.owner.hashed.values().iterator();
+            }
+
+            return new ValuesIterator();
+        }
+
+        /**
+         * {@inheritDoc}
+         * Indeed removes all the (key,value) pairs matching
+         * (key ? ,  e) with the  same  e,  from  the map.
+         */
+        @Override
+        public int removeAll(final VType e) {
+
+            if (this.owner.hashed != null) {
+
+                return this.owner.hashed.values().removeAll(e);
+            }
+
+            final int before = this.owner.assigned;
+
+            final VType[] values = Intrinsics.<VType[]> cast(this.owner.values);
+
+            for (int i = 0; i < this.owner.assigned;) {
+
+                if (Intrinsics.<VType> equals(e, values[i])) {
+
+                    this.owner.removeAt(i);
+                } else {
+                    i++;
+                }
+            }
+
+            return before - this.owner.assigned;
+        }
+
+        /**
+         * {@inheritDoc}
+         * Indeed removes all the (key,value) pairs matching
+         * the predicate for the values, from  the map.
+         */
+        @Override
+        public int removeAll(final KTypePredicate<? super VType> predicate) {
+
+            if (this.owner.hashed != null) {
+
+                return this.owner.hashed.values().removeAll(predicate);
+            }
+
+            final int before = this.owner.assigned;
+
+            final VType[] values = Intrinsics.<VType[]> cast(this.owner.values);
+
+            for (int i = 0; i < this.owner.assigned;) {
+
+                if (predicate.apply(values[i])) {
+
+                    this.owner.removeAt(i);
+                } else {
+                    i++;
+                }
+            }
+
+            return before - this.owner.assigned;
+        }
+
+        /**
+         * {@inheritDoc}
+         *  Alias for clear() the whole map.
+         */
+        @Override
+        public void clear() {
+            this.owner.clear();
+        }
+    }
+
+    /**
+     * An iterator over the inline values.
+     * Holds a KTypeCursor returning (value, index) = (VType value, index the position in {@link KTypeVTypeSmallHashMap#values})
+     */
+    public final class ValuesIterator extends AbstractIterator<KTypeCursor<VType>>
+    {
+        public final KTypeCursor<VType> cursor;
+
+        public ValuesIterator() {
+            this.cursor = new KTypeCursor<VType>();
+            this.cursor.index = -1;
+        }
+
+        @Override
+        protected KTypeCursor<VType> fetch() {
+
+            final int i = this.cursor.index + 1;
+
+            if (i >= KTypeVTypeSmallHashMap.this.assigned) {
+                return done();
+            }
+
+            this.cursor.index = i;
+            this.cursor.value = Intrinsics.<VType> cast(KTypeVTypeSmallHashMap.this.values[i]);
+
+            return this.cursor;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public KTypeVTypeSmallHashMap<KType, VType> clone() {
+
+        final KTypeVTypeSmallHashMap<KType, VType> cloned = new KTypeVTypeSmallHashMap<KType, VType>(this.size());
+
+        cloned.setDefaultValue(this.defaultValue);
+        cloned.putAll(this);
+
+        return cloned;
+    }
+
+    /**
+     * Convert the contents of this map to a human-friendly string.
+     */
+    @Override
+    public String toString() {
+        final StringBuilder buffer = new StringBuilder();
+        buffer.append("[");
+
+        boolean first = true;
+        for (final KTypeVTypeCursor<KType, VType> cursor : this) {
+            if (!first) {
+                buffer.append(", ");
+            }
+            buffer.append(cursor.key);
+            buffer.append("=>");
+            buffer.append(cursor.value);
+            first = false;
+        }
+        buffer.append("]");
+        return buffer.toString();
+    }
+
+    /**
+     * Creates a map from two index-aligned arrays of key-value pairs.
+     */
+    public static <KType, VType> KTypeVTypeSmallHashMap<KType, VType> from(final KType[] keys, final VType[] values) {
+        if (keys.length != values.length) {
+            throw new IllegalArgumentException("Arrays of keys and values must have an identical length.");
+        }
+
+        final KTypeVTypeSmallHashMap<KType, VType> map = new KTypeVTypeSmallHashMap<KType, VType>(keys.length);
+
+        for (int i = 0; i < keys.length; i++) {
+            map.put(keys[i], values[i]);
+        }
+
+        return map;
+    }
+
+    /**
+     * Create a map from another associative container.
+     */
+    public static <KType, VType> KTypeVTypeSmallHashMap<KType, VType> from(final KTypeVTypeAssociativeContainer<KType, VType> container) {
+        return new KTypeVTypeSmallHashMap<KType, VType>(container);
+    }
+
+    /**
+     * Create a new map without providing the full generic signature (constructor
+     * shortcut).
+     */
+    public static <KType, VType> KTypeVTypeSmallHashMap<KType, VType> newInstance() {
+        return new KTypeVTypeSmallHashMap<KType, VType>();
+    }
+
+    /**
+     * Create a new map with the given initial capacity.
+     */
+    public static <KType, VType> KTypeVTypeSmallHashMap<KType, VType> newInstance(final int initialCapacity) {
+        return new KTypeVTypeSmallHashMap<KType, VType>(initialCapacity);
+    }
+
+    /**
+     * Returns the "default value" value used in containers methods returning
+     * "default value"
+     */
+    @Override
+    public VType getDefaultValue() {
+        return this.defaultValue;
+    }
+
+    /**
+     * Set the "default value" value to be used in containers methods returning
+     * "default value"
+     */
+    @Override
+    public void setDefaultValue(final VType defaultValue) {
+        this.defaultValue = defaultValue;
+
+        if (this.hashed != null) {
+
+            this.hashed.setDefaultValue(defaultValue);
+        }
+    }
+}
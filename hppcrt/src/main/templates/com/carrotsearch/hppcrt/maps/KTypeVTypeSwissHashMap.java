@@ -0,0 +1,1699 @@
+package com.carrotsearch.hppcrt.maps;
+
+import java.util.Arrays;
+
+import com.carrotsearch.hppcrt.*;
+import com.carrotsearch.hppcrt.cursors.*;
+import com.carrotsearch.hppcrt.predicates.*;
+import com.carrotsearch.hppcrt.procedures.*;
+import com.carrotsearch.hppcrt.hash.*;
+
+/*! #import("com/carrotsearch/hppcrt/Intrinsics.java") !*/
+/*! ${TemplateOptions.doNotGenerateKType("BYTE", "CHAR", "SHORT", "INT", "LONG", "FLOAT", "DOUBLE")} !*/
+/**
+ * A hash map of <code>KType</code> to <code>VType</code>, implemented using open
+ * addressing, where each slot has a control byte in the spirit of Google's SwissTable: the control byte
+ * tells if the slot is empty, deleted, or else holds the 7 highest bits of the hash of its key.
+ * <p>
+ * The control bytes are packed by 8 in the <code>long</code>s of {@link #control}, and the probing goes
+ * group by group of 8 slots: the slots of a group whose control byte matches the hash bits of the searched key
+ * are found at once with a few word-wide (SWAR) operations, and only their keys are compared to it by
+ * equals(). So most of the probes of an absent key never read the {@link #keys} array, which avoids
+ * the cache misses of dereferencing the keys.
+ * </p>
+ * <p>
+ * A removed key leaves a deleted marker when its group has no empty slot, because other keys may then
+ * have been probed past it. Deleted slots are reused by insertions, and are purged
+ * when the buffers are rehashed.
+ * </p>
+ * <p> In addition, the hashing strategy can be changed
+ * by overriding ({@link #equalKeys(Object, Object)} and {@link #hashKey(Object)}) together,
+ * which then replaces the usual ({@link #equals(Object)} and {@link #hashCode()}) from the keys themselves.
+ * </p>
+ * <p>
+ * The internal buffers of this implementation ({@link #keys}, {@link #values}, {@link #control}),
+ * are always allocated to the nearest size that is a power of two. When
+ * the capacity exceeds the given load factor, the buffer size is doubled.
+ * </p>
+ *
+ * <p>This implementation supports <code>null</code> keys. </p>
+#if ($TemplateOptions.VTypeGeneric)
+ * <p>This implementation supports <code>null</code> values.</p>
+#end
+ *
+ * @see KTypeVTypeHashMap
+ */
+/*! ${TemplateOptions.generatedAnnotation} !*/
+public class KTypeVTypeSwissHashMap<KType, VType>
+implements KTypeVTypeMap<KType, VType>, Cloneable
+{
+    protected VType defaultValue = Intrinsics.<VType> empty();
+
+    /**
+     * Hash-indexed array holding all keys.
+     * <p>
+     * Direct map iteration: iterate  {keys[i], values[i]} for i in [0; keys.length[ where keys[i] != 0/null, then also
+     * {0/null, {@link #allocatedDefaultKeyValue} } is in the map if {@link #allocatedDefaultKey} = true.
+     * </p>
+     */
+    public/*! #if ($TemplateOptions.KTypePrimitive)
+          KType []
+          #else !*/
+    Object[]
+            /*! #end !*/
+            keys;
+
+    /**
+     * Hash-indexed array holding all values associated to the keys.
+     * stored in {@link #keys}.
+     */
+    public/*! #if ($TemplateOptions.VTypePrimitive)
+          VType []
+          #else !*/
+    Object[]
+            /*! #end !*/
+            values;
+
+    /**
+     * Control bytes of the slots, 8 per <code>long</code>: the slot i is described by the byte
+     * <code>(i &amp; 7)</code> (from the lowest bits) of <code>control[i >>> 3]</code>, which is {@link #EMPTY}, {@link #DELETED},
+     * or the 7 highest bits of the hash of <code>keys[i]</code>.
+     */
+    public long[] control;
+
+    /**
+     * Control byte of a never used slot.
+     */
+    protected static final long EMPTY = 0x80L;
+
+    /**
+     * Control byte of a slot whose key was removed, while its group had no empty slot.
+     */
+    protected static final long DELETED = 0xFEL;
+
+    /**
+     * A group of 8 empty slots.
+     */
+    private static final long EMPTY_GROUP = 0x8080808080808080L;
+
+    /**
+     * Lowest bit of each byte.
+     */
+    private static final long LSBS = 0x0101010101010101L;
+
+    /**
+     * Highest bit of each byte.
+     */
+    private static final long MSBS = 0x8080808080808080L;
+
+    /**
+     * True if key = 0/null is in the map.
+     */
+    public boolean allocatedDefaultKey = false;
+
+    /**
+     * if allocatedDefaultKey = true, contains the associated V to the key = 0/null
+     */
+    public VType allocatedDefaultKeyValue;
+
+    /**
+     * Cached number of assigned slots in {@link #keys}.
+     */
+    protected int assigned;
+
+    /**
+     * Number of slots marked {@link #DELETED} in {@link #control}.
+     */
+    protected int deleted;
+
+    /**
+     * The load factor for this map (fraction of allocated slots
+     * before the buffers must be rehashed or reallocated).
+     */
+    protected final double loadFactor;
+
+    /**
+     * Rehash buffers when the count of assigned and deleted slots hits this value.
+     */
+    private int resizeAt;
+
+    /**
+     * Per-instance size perturbation
+     * introduced in rehashing to create a unique key distribution.
+     */
+    private final int perturbation = Containers.randomSeed32();
+
+    /**
+     * Override this method, together with {@link #equalKeys(Object, Object)}
+     * to customize the hashing strategy. Note that this method is guaranteed
+     * to be called with a non-null key argument.
+     * By default, this method calls key.{@link #hashCode()}.
+     * @param key KType to be hashed.
+     * @return the hashed value of key, following the same semantic
+     * as {@link #hashCode()};
+     * @see #hashCode()
+     * @see #equalKeys(Object, Object)
+     */
+    protected int hashKey(final KType key) {
+
+        //default maps on Object.hashCode()
+        return key.hashCode();
+    }
+
+    /**
+     * Override this method together with {@link #hashKey(Object)}
+     * to customize the hashing strategy. Note that this method is guaranteed
+     * to be called with both non-null arguments.
+     * By default, this method calls a.{@link #equals(b)}.
+     * @param a not-null KType to be compared
+     * @param b not-null KType to be compared
+     * @return true if a and b are considered equal, following the same
+     * semantic as {@link #equals(Object)}.
+     * @see #equals(Object)
+     * @see #hashKey(Object)
+     */
+    protected boolean equalKeys(final KType a, final KType b) {
+
+        //default maps on Object.equals()
+        return Intrinsics.<KType> equalsNotNull(a, b);
+    }
+
+    /**
+     * Default constructor: Creates a hash map with the default capacity of {@link Containers#DEFAULT_EXPECTED_ELEMENTS},
+     * load factor of {@link HashContainers#DEFAULT_LOAD_FACTOR}.
+     *
+     * <p>See class notes about hash distribution importance.</p>
+     */
+    public KTypeVTypeSwissHashMap() {
+        this(Containers.DEFAULT_EXPECTED_ELEMENTS);
+    }
+
+    /**
+     * Creates a hash map with the given initial capacity, default load factor of
+     * {@link HashContainers#DEFAULT_LOAD_FACTOR}.
+     *
+     * <p>See class notes about hash distribution importance.</p>
+     *
+     * @param initialCapacity Initial capacity (greater than zero and automatically
+     *            rounded to the next power of two).
+     */
+    public KTypeVTypeSwissHashMap(final int initialCapacity) {
+        this(initialCapacity, HashContainers.DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Creates a hash map with the given initial capacity,
+     * load factor.
+     *
+     * @param loadFactor The load factor (greater than zero and smaller than 1).
+     */
+    public KTypeVTypeSwissHashMap(final int initialCapacity, final double loadFactor) {
+        this.loadFactor = loadFactor;
+        //take into account of the load factor to guarantee no reallocations before reaching  initialCapacity.
+        allocateBuffers(HashContainers.minBufferSize(initialCapacity, loadFactor));
+    }
+
+    /**
+     * Create a hash map from all key-value pairs of another container.
+     */
+    public KTypeVTypeSwissHashMap(final KTypeVTypeAssociativeContainer<KType, VType> container) {
+        this(container.size());
+        putAll(container);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public VType put(final KType key, final VType value) {
+
+        if (Intrinsics.<KType> isEmpty(key)) {
+
+            if (this.allocatedDefaultKey) {
+
+                final VType previousValue = this.allocatedDefaultKeyValue;
+                this.allocatedDefaultKeyValue = value;
+
+                return previousValue;
+            }
+
+            this.allocatedDefaultKeyValue = value;
+            this.allocatedDefaultKey = true;
+
+            return this.defaultValue;
+        }
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+        final long[] control = this.control;
+        final int groupMask = control.length - 1;
+
+        final int hash = REHASH(key);
+        final long fragments = (hash >>> 25) * KTypeVTypeSwissHashMap.LSBS;
+
+        int group = hash & groupMask;
+        int freeSlot = -1;
+
+        while (true) {
+
+            final long word = control[group];
+
+            //compare the key only to the slots of the group having the same hash fragment
+            for (long matches = KTypeVTypeSwissHashMap.matchFragments(word, fragments); matches != 0; matches &= matches - 1) {
+
+                final int slot = (group << 3) + (Long.numberOfTrailingZeros(matches) >>> 3);
+
+                if (KEYEQUALS(key, keys[slot])) {
+
+                    final VType oldValue = Intrinsics.<VType> cast(this.values[slot]);
+                    this.values[slot] = value;
+
+                    return oldValue;
+                }
+            }
+
+            //remember the first empty or deleted slot, where the key goes if it is not in the map
+            if (freeSlot == -1 && (word & KTypeVTypeSwissHashMap.MSBS) != 0) {
+
+                freeSlot = (group << 3) + (Long.numberOfTrailingZeros(word & KTypeVTypeSwissHashMap.MSBS) >>> 3);
+            }
+
+            //no key was ever probed past a group having an empty slot
+            if (KTypeVTypeSwissHashMap.matchEmpty(word) != 0) {
+                break;
+            }
+
+            group = (group + 1) & groupMask;
+        } //end while
+
+        if (KTypeVTypeSwissHashMap.controlOf(control, freeSlot) == KTypeVTypeSwissHashMap.DELETED) {
+
+            //reusing a deleted slot never requires a rehash
+            this.deleted--;
+
+        } else if (this.assigned + this.deleted == this.resizeAt) {
+
+            rehashAndPut(key, value, hash);
+
+            return this.defaultValue;
+        }
+
+        this.assigned++;
+
+        keys[freeSlot] = key;
+        this.values[freeSlot] = value;
+        KTypeVTypeSwissHashMap.setControl(control, freeSlot, hash >>> 25);
+
+        return this.defaultValue;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int putAll(final KTypeVTypeAssociativeContainer<? extends KType, ? extends VType> container) {
+        return putAll((Iterable<? extends KTypeVTypeCursor<? extends KType, ? extends VType>>) container);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int putAll(final Iterable<? extends KTypeVTypeCursor<? extends KType, ? extends VType>> iterable) {
+        final int count = this.size();
+        for (final KTypeVTypeCursor<? extends KType, ? extends VType> c : iterable) {
+            put(c.key, c.value);
+        }
+        return this.size() - count;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean putIfAbsent(final KType key, final VType value) {
+        if (!containsKey(key)) {
+            put(key, value);
+            return true;
+        }
+        return false;
+    }
+
+    /*! #if ($TemplateOptions.VTypePrimitive) !*/
+    /**
+     * If <code>key</code> exists, <code>putValue</code> is inserted into the map,
+     * otherwise any existing value is incremented by <code>additionValue</code>.
+     *
+     * @param key
+     *          The key of the value to adjust.
+     * @param putValue
+     *          The value to put if <code>key</code> does not exist.
+     * @param incrementValue
+     *          The value to add to the existing value if <code>key</code> exists.
+     * @return Returns the current value associated with <code>key</code> (after
+     *         changes).
+     */
+    @SuppressWarnings("cast")
+    @Override
+    public VType putOrAdd(final KType key, VType putValue, final VType incrementValue) {
+
+        if (containsKey(key)) {
+            putValue = get(key);
+
+            putValue = (VType) (Intrinsics.<VType> add(putValue, incrementValue));
+        }
+
+        put(key, putValue);
+        return putValue;
+    }
+
+    /*! #end !*/
+
+    /*! #if ($TemplateOptions.VTypePrimitive) !*/
+    /**
+     * Adds <code>incrementValue</code> to any existing value for the given <code>key</code>
+     * or inserts <code>incrementValue</code> if <code>key</code> did not previously exist.
+     *
+     * @param key The key of the value to adjust.
+     * @param incrementValue The value to put or add to the existing value if <code>key</code> exists.
+     * @return Returns the current value associated with <code>key</code> (after changes).
+     */
+    @Override
+    public VType addTo(final KType key, final VType incrementValue)
+    {
+        return putOrAdd(key, incrementValue, incrementValue);
+    }
+
+    /*! #end !*/
+
+    /**
+     * Rehash all the keys and the pending one into new buffers: bigger buffers if the keys fill more than half of the resize threshold,
+     * else buffers of the same size, only purged of their deleted slots.
+     */
+    private void rehashAndPut(final KType pendingKey, final VType pendingValue, final int pendingHash) {
+        assert this.assigned + this.deleted == this.resizeAt;
+
+        //default sentinel value is never in the keys[] array, so never trigger reallocs
+        assert !Intrinsics.<KType> isEmpty(pendingKey);
+
+        // Try to allocate new buffers first. If we OOM, it'll be now without
+        // leaving the data structure in an inconsistent state.
+        final KType[] oldKeys = Intrinsics.<KType[]> cast(this.keys);
+        final VType[] oldValues = Intrinsics.<VType[]> cast(this.values);
+
+        if (this.assigned >= (this.resizeAt >>> 1)) {
+
+            allocateBuffers(HashContainers.nextBufferSize(this.keys.length, this.assigned, this.loadFactor));
+        } else {
+
+            allocateBuffers(this.keys.length);
+        }
+
+        this.assigned++;
+
+        //iterate all the old arrays to add in the newly allocated buffers
+        final int perturb = this.perturbation;
+
+        KType key = Intrinsics.<KType> empty();
+
+        for (int i = oldKeys.length; --i >= 0;) {
+
+            //only consider non-empty slots, of course
+            if (!Intrinsics.<KType> isEmpty(key = oldKeys[i])) {
+
+                insertUnique(key, oldValues[i], REHASH2(key, perturb));
+            }
+        }
+
+        insertUnique(pendingKey, pendingValue, pendingHash);
+    }
+
+    /**
+     * Insert a key known to be absent into the first empty slot of its probe sequence.
+     * The buffers must have no deleted slot.
+     */
+    private void insertUnique(final KType key, final VType value, final int hash) {
+
+        final long[] control = this.control;
+        final int groupMask = control.length - 1;
+
+        int group = hash & groupMask;
+        long free;
+
+        while ((free = control[group] & KTypeVTypeSwissHashMap.MSBS) == 0) {
+
+            group = (group + 1) & groupMask;
+        }
+
+        final int slot = (group << 3) + (Long.numberOfTrailingZeros(free) >>> 3);
+
+        this.keys[slot] = key;
+        this.values[slot] = value;
+        KTypeVTypeSwissHashMap.setControl(control, slot, hash >>> 25);
+    }
+
+    /**
+     * Allocate internal buffers for a given capacity.
+     *
+     * @param capacity New capacity (must be a power of two, at least 8).
+     */
+    @SuppressWarnings("boxing")
+    private void allocateBuffers(final int capacity) {
+        try {
+
+            final KType[] keys = Intrinsics.<KType> newArray(capacity);
+            final VType[] values = Intrinsics.<VType> newArray(capacity);
+            final long[] control = new long[capacity >>> 3];
+
+            Arrays.fill(control, KTypeVTypeSwissHashMap.EMPTY_GROUP);
+
+            this.keys = keys;
+            this.values = values;
+            this.control = control;
+            this.deleted = 0;
+
+            //allocate so that there is at least one slot that remains empty
+            //this is compulsory to guarantee proper stop in searching loops
+            this.resizeAt = HashContainers.expandAtCount(capacity, this.loadFactor);
+        } catch (final OutOfMemoryError e) {
+
+            throw new BufferAllocationException(
+                    "Not enough memory to allocate buffers to grow from %d -> %d elements",
+                    e,
+                    (this.keys == null) ? 0 : this.keys.length,
+                            capacity);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public VType remove(final KType key) {
+
+        if (Intrinsics.<KType> isEmpty(key)) {
+
+            if (this.allocatedDefaultKey) {
+
+                final VType previousValue = this.allocatedDefaultKeyValue;
+
+                /*! #if ($TemplateOptions.VTypeGeneric) !*/
+                //help the GC
+                this.allocatedDefaultKeyValue = Intrinsics.<VType> empty();
+                /*! #end !*/
+
+                this.allocatedDefaultKey = false;
+                return previousValue;
+            }
+
+            return this.defaultValue;
+        }
+
+        final int slot = lookupSlot(key);
+
+        if (slot == -1) {
+
+            return this.defaultValue;
+        }
+
+        final VType value = Intrinsics.<VType> cast(this.values[slot]);
+
+        removeSlot(slot);
+
+        return value;
+    }
+
+    /**
+     * Remove the key of the assigned <code>slot</code>: the slot becomes empty if its group
+     * has an empty slot, else deleted.
+     */
+    private void removeSlot(final int slot) {
+
+        this.keys[slot] = Intrinsics.<KType> empty();
+
+        /*! #if ($TemplateOptions.VTypeGeneric) !*/
+        this.values[slot] = Intrinsics.<VType> empty();
+        /*! #end !*/
+
+        this.assigned--;
+
+        //A group with an empty slot has never been full since the last rehash, so no probe ever went past it:
+        //the slot can become empty again.
+        if (KTypeVTypeSwissHashMap.matchEmpty(this.control[slot >>> 3]) != 0) {
+
+            KTypeVTypeSwissHashMap.setControl(this.control, slot, KTypeVTypeSwissHashMap.EMPTY);
+        } else {
+
+            KTypeVTypeSwissHashMap.setControl(this.control, slot, KTypeVTypeSwissHashMap.DELETED);
+            this.deleted++;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public int removeAll(final KTypeContainer<? super KType> other) {
+        final int before = this.size();
+
+        //1) other is a KTypeLookupContainer, so with fast lookup guarantees
+        //and is bigger than this, so take advantage of both and iterate over this
+        //and test other elements by their contains().
+        if (other.size() >= before && other instanceof KTypeLookupContainer<?>) {
+
+            if (this.allocatedDefaultKey) {
+
+                if (other.contains(Intrinsics.<KType> empty())) {
+                    this.allocatedDefaultKey = false;
+
+                    /*! #if ($TemplateOptions.VTypeGeneric) !*/
+                    //help the GC
+                    this.allocatedDefaultKeyValue = Intrinsics.<VType> empty();
+                    /*! #end !*/
+                }
+            }
+
+            final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+
+            for (int i = 0; i < keys.length; i++) {
+                KType existing;
+                if (!Intrinsics.<KType> isEmpty(existing = keys[i]) && other.contains(existing)) {
+
+                    removeSlot(i);
+                }
+            }
+        } else {
+            //2) Do not use contains() from container, which may lead to O(n**2) execution times,
+            //so it iterate linearly and call remove() from map which is O(1).
+            for (final KTypeCursor<? super KType> c : other) {
+
+                remove(Intrinsics.<KType> cast(c.value));
+            }
+        }
+
+        return before - this.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int removeAll(final KTypePredicate<? super KType> predicate) {
+        final int before = this.size();
+
+        if (this.allocatedDefaultKey) {
+
+            if (predicate.apply(Intrinsics.<KType> empty())) {
+                this.allocatedDefaultKey = false;
+
+                /*! #if ($TemplateOptions.VTypeGeneric) !*/
+                //help the GC
+                this.allocatedDefaultKeyValue = Intrinsics.<VType> empty();
+                /*! #end !*/
+            }
+        }
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+
+        for (int i = 0; i < keys.length; i++) {
+            KType existing;
+            if (!Intrinsics.<KType> isEmpty(existing = keys[i]) && predicate.apply(existing)) {
+
+                removeSlot(i);
+            }
+        }
+
+        return before - this.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int removeAll(final KTypeVTypePredicate<? super KType, ? super VType> predicate) {
+
+        final int before = this.size();
+
+        if (this.allocatedDefaultKey) {
+
+            if (predicate.apply(Intrinsics.<KType> empty(), this.allocatedDefaultKeyValue)) {
+                this.allocatedDefaultKey = false;
+
+                /*! #if ($TemplateOptions.VTypeGeneric) !*/
+                //help the GC
+                this.allocatedDefaultKeyValue = Intrinsics.<VType> empty();
+                /*! #end !*/
+            }
+        }
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+        final VType[] values = Intrinsics.<VType[]> cast(this.values);
+
+        for (int i = 0; i < keys.length; i++) {
+            KType existing;
+            if (!Intrinsics.<KType> isEmpty(existing = keys[i]) && predicate.apply(existing, values[i])) {
+
+                removeSlot(i);
+            }
+        }
+
+        return before - this.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public VType get(final KType key) {
+        if (Intrinsics.<KType> isEmpty(key)) {
+
+            if (this.allocatedDefaultKey) {
+
+                return this.allocatedDefaultKeyValue;
+            }
+
+            return this.defaultValue;
+        }
+
+        final int slot = lookupSlot(key);
+
+        if (slot == -1) {
+
+            return this.defaultValue;
+        }
+
+        return Intrinsics.<VType> cast(this.values[slot]);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean containsKey(final KType key) {
+
+        if (Intrinsics.<KType> isEmpty(key)) {
+
+            return this.allocatedDefaultKey;
+        }
+
+        return lookupSlot(key) != -1;
+    }
+
+    /**
+     * Slot of the non-empty <code>key</code>, or -1 if it is not in the map.
+     */
+    private int lookupSlot(final KType key) {
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+        final long[] control = this.control;
+        final int groupMask = control.length - 1;
+
+        final int hash = REHASH(key);
+        final long fragments = (hash >>> 25) * KTypeVTypeSwissHashMap.LSBS;
+
+        int group = hash & groupMask;
+
+        while (true) {
+
+            final long word = control[group];
+
+            for (long matches = KTypeVTypeSwissHashMap.matchFragments(word, fragments); matches != 0; matches &= matches - 1) {
+
+                final int slot = (group << 3) + (Long.numberOfTrailingZeros(matches) >>> 3);
+
+                if (KEYEQUALS(key, keys[slot])) {
+
+                    return slot;
+                }
+            }
+
+            if (KTypeVTypeSwissHashMap.matchEmpty(word) != 0) {
+
+                return -1;
+            }
+
+            group = (group + 1) & groupMask;
+        } //end while
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear() {
+        this.assigned = 0;
+        this.deleted = 0;
+
+        // States are always cleared.
+        this.allocatedDefaultKey = false;
+
+        /*! #if ($TemplateOptions.VTypeGeneric) !*/
+        //help the GC
+        this.allocatedDefaultKeyValue = Intrinsics.<VType> empty();
+        /*! #end !*/
+
+        //Faster than Arrays.fill(keys, null); // Help the GC.
+        KTypeArrays.blankArray(this.keys, 0, this.keys.length);
+
+        Arrays.fill(this.control, KTypeVTypeSwissHashMap.EMPTY_GROUP);
+
+        /*! #if ($TemplateOptions.VTypeGeneric) !*/
+        //Faster than Arrays.fill(values, null); // Help the GC.
+        VTypeArrays.<VType> blankArray(Intrinsics.<VType[]> cast(this.values), 0, this.values.length);
+        /*! #end !*/
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size() {
+        return this.assigned + (this.allocatedDefaultKey ? 1 : 0);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int capacity() {
+
+        return this.resizeAt;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Note that an empty container may still contain many deleted slots (that occupy buffer
+     * space). Adding even a single element to such a container may cause rehashing.</p>
+     */
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+        int h = 0;
+
+        if (this.allocatedDefaultKey) {
+            h += BitMixer.mix(this.allocatedDefaultKeyValue);
+        }
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+        final VType[] values = Intrinsics.<VType[]> cast(this.values);
+
+        for (int i = keys.length; --i >= 0;) {
+            KType existing;
+            if (!Intrinsics.<KType> isEmpty(existing = keys[i])) {
+
+                h += BitMixer.mix(existing) ^ BitMixer.mix(values[i]);
+            }
+        }
+
+        return h;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(final Object obj) {
+        if (obj != null) {
+            if (obj == this) {
+                return true;
+            }
+
+            //must be of the same class, subclasses are not comparable
+            if (obj.getClass() != this.getClass()) {
+                return false;
+            }
+
+            /* #if ($TemplateOptions.AnyGeneric) */
+            @SuppressWarnings("unchecked")
+            final/* #end */
+            KTypeVTypeSwissHashMap<KType, VType> other = (KTypeVTypeSwissHashMap<KType, VType>) obj;
+
+            //must be of the same size
+            if (other.size() != this.size()) {
+                return false;
+            }
+
+            final EntryIterator it = this.iterator();
+
+            while (it.hasNext()) {
+                final KTypeVTypeCursor<KType, VType> c = it.next();
+
+                if (!other.containsKey(c.key)) {
+                    //recycle
+                    it.release();
+                    return false;
+                }
+
+                final VType otherValue = other.get(c.key);
+
+                if (!Intrinsics.<VType> equals(c.value, otherValue)) {
+                    //recycle
+                    it.release();
+                    return false;
+                }
+            } //end while
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * An iterator implementation for {@link #iterator}.
+     * Holds a KTypeVTypeCursor returning
+     * (key, value, index) = (KType key, VType value, index the position in keys {@link KTypeVTypeSwissHashMap#keys}, or keys.length for key = 0/null)
+     */
+    public final class EntryIterator extends AbstractIterator<KTypeVTypeCursor<KType, VType>>
+    {
+        public final KTypeVTypeCursor<KType, VType> cursor;
+
+        public EntryIterator() {
+            this.cursor = new KTypeVTypeCursor<KType, VType>();
+            this.cursor.index = -2;
+        }
+
+        /**
+         * Iterate backwards w.r.t the buffer, to
+         * minimize collision chains when filling another hash container (ex. with putAll())
+         */
+        @Override
+        protected KTypeVTypeCursor<KType, VType> fetch() {
+            if (this.cursor.index == KTypeVTypeSwissHashMap.this.keys.length + 1) {
+
+                if (KTypeVTypeSwissHashMap.this.allocatedDefaultKey) {
+
+                    this.cursor.index = KTypeVTypeSwissHashMap.this.keys.length;
+                    this.cursor.key = Intrinsics.<KType> empty();
+                    this.cursor.value = KTypeVTypeSwissHashMap.this.allocatedDefaultKeyValue;
+
+                    return this.cursor;
+
+                }
+                //no value associated with the default key, continue iteration...
+                this.cursor.index = KTypeVTypeSwissHashMap.this.keys.length;
+
+            }
+
+            int i = this.cursor.index - 1;
+
+            while (i >= 0 && !is_allocated(i, Intrinsics.<KType[]> cast(KTypeVTypeSwissHashMap.this.keys))) {
+                i--;
+            }
+
+            if (i == -1) {
+                return done();
+            }
+
+            this.cursor.index = i;
+            this.cursor.key = Intrinsics.<KType> cast(KTypeVTypeSwissHashMap.this.keys[i]);
+            this.cursor.value = Intrinsics.<VType> cast(KTypeVTypeSwissHashMap.this.values[i]);
+
+            return this.cursor;
+        }
+    }
+
+    /**
+     * internal pool of EntryIterator
+     */
+    protected final IteratorPool<KTypeVTypeCursor<KType, VType>, EntryIterator> entryIteratorPool = new IteratorPool<KTypeVTypeCursor<KType, VType>, EntryIterator>(
+            new ObjectFactory<EntryIterator>() {
+
+                @Override
+                public EntryIterator create() {
+                    return new EntryIterator();
+                }
+
+                @Override
+                public void initialize(final EntryIterator obj) {
+                    obj.cursor.index = KTypeVTypeSwissHashMap.this.keys.length + 1;
+                }
+
+                @Override
+                public void reset(final EntryIterator obj) {
+                    /*! #if ($TemplateOptions.KTypeGeneric) !*/
+                    obj.cursor.key = null;
+                    /*! #end !*/
+
+                    /*! #if ($TemplateOptions.VTypeGeneric) !*/
+                    obj.cursor.value = null;
+                    /*! #end !*/
+                }
+            });
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public EntryIterator iterator() {
+        //return new EntryIterator();
+        return this.entryIteratorPool.borrow();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends KTypeVTypeProcedure<? super KType, ? super VType>> T forEach(final T procedure) {
+
+        if (this.allocatedDefaultKey) {
+
+            procedure.apply(Intrinsics.<KType> empty(), this.allocatedDefaultKeyValue);
+        }
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+        final VType[] values = Intrinsics.<VType[]> cast(this.values);
+
+        //Iterate in reverse for side-stepping the longest conflict chain
+        //in another hash, in case apply() is actually used to fill another hash container.
+        for (int i = keys.length - 1; i >= 0; i--) {
+            KType existing;
+            if (!Intrinsics.<KType> isEmpty(existing = keys[i])) {
+                procedure.apply(existing, values[i]);
+            }
+        }
+
+        return procedure;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends KTypeVTypePredicate<? super KType, ? super VType>> T forEach(final T predicate) {
+        if (this.allocatedDefaultKey) {
+
+            if (!predicate.apply(Intrinsics.<KType> empty(), this.allocatedDefaultKeyValue)) {
+
+                return predicate;
+            }
+        }
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+        final VType[] values = Intrinsics.<VType[]> cast(this.values);
+
+        //Iterate in reverse for side-stepping the longest conflict chain
+        //in another hash, in case apply() is actually used to fill another hash container.
+        for (int i = keys.length - 1; i >= 0; i--) {
+            KType existing;
+            if (!Intrinsics.<KType> isEmpty(existing = keys[i])) {
+                if (!predicate.apply(existing, values[i])) {
+                    break;
+                }
+            }
+        } //end for
+
+        return predicate;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @return a new KeysCollection view of the keys of this map.
+     */
+    @Override
+    public KeysCollection keys() {
+        return new KeysCollection();
+    }
+
+    /**
+     * A view of the keys inside this map.
+     */
+    public final class KeysCollection extends AbstractKTypeCollection<KType> implements KTypeLookupContainer<KType>
+    {
+        private final KTypeVTypeSwissHashMap<KType, VType> owner = KTypeVTypeSwissHashMap.this;
+
+        @Override
+        public boolean contains(final KType e) {
+            return containsKey(e);
+        }
+
+        @Override
+        public <T extends KTypeProcedure<? super KType>> T forEach(final T procedure) {
+            if (this.owner.allocatedDefaultKey) {
+
+                procedure.apply(Intrinsics.<KType> empty());
+            }
+
+            final KType[] keys = Intrinsics.<KType[]> cast(this.owner.keys);
+
+            //Iterate in reverse for side-stepping the longest conflict chain
+            //in another hash, in case apply() is actually used to fill another hash container.
+            for (int i = keys.length - 1; i >= 0; i--) {
+
+                KType existing;
+                if (!Intrinsics.<KType> isEmpty(existing = keys[i])) {
+                    procedure.apply(existing);
+                }
+            }
+
+            return procedure;
+        }
+
+        @Override
+        public <T extends KTypePredicate<? super KType>> T forEach(final T predicate) {
+            if (this.owner.allocatedDefaultKey) {
+
+                if (!predicate.apply(Intrinsics.<KType> empty())) {
+
+                    return predicate;
+                }
+            }
+
+            final KType[] keys = Intrinsics.<KType[]> cast(this.owner.keys);
+
+            //Iterate in reverse for side-stepping the longest conflict chain
+            //in another hash, in case apply() is actually used to fill another hash container.
+            for (int i = keys.length - 1; i >= 0; i--) {
+                KType existing;
+                if (!Intrinsics.<KType> isEmpty(existing = keys[i])) {
+                    if (!predicate.apply(existing)) {
+                        break;
+                    }
+                }
+            }
+
+            return predicate;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public KeysIterator iterator() {
+            //return new KeysIterator();
+            return this.keyIteratorPool.borrow();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int size() {
+            return this.owner.size();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int capacity() {
+
+            return this.owner.capacity();
+        }
+
+        @Override
+        public void clear() {
+            this.owner.clear();
+        }
+
+        @Override
+        public int removeAll(final KTypePredicate<? super KType> predicate) {
+            return this.owner.removeAll(predicate);
+        }
+
+        @Override
+        public int removeAll(final KType e) {
+            final boolean hasKey = this.owner.containsKey(e);
+            int result = 0;
+            if (hasKey) {
+                this.owner.remove(e);
+                result = 1;
+            }
+            return result;
+        }
+
+        /**
+         * internal pool of KeysIterator
+         */
+        protected final IteratorPool<KTypeCursor<KType>, KeysIterator> keyIteratorPool = new IteratorPool<KTypeCursor<KType>, KeysIterator>(
+                new ObjectFactory<KeysIterator>() {
+
+                    @Override
+                    public KeysIterator create() {
+                        return new KeysIterator();
+                    }
+
+                    @Override
+                    public void initialize(final KeysIterator obj) {
+                        obj.cursor.index = KTypeVTypeSwissHashMap.this.keys.length + 1;
+                    }
+
+                    @Override
+                    public void reset(final KeysIterator obj) {
+                        /*! #if ($TemplateOptions.KTypeGeneric) !*/
+                        obj.cursor.value = null;
+                        /*! #end !*/
+
+                    }
+                });
+
+        @Override
+        public KType[] toArray(final KType[] target) {
+            int count = 0;
+
+            if (this.owner.allocatedDefaultKey) {
+
+                target[count++] = Intrinsics.<KType> empty();
+            }
+
+            final KType[] keys = Intrinsics.<KType[]> cast(this.owner.keys);
+
+            for (int i = 0; i < keys.length; i++) {
+                KType existing;
+                if (!Intrinsics.<KType> isEmpty(existing = keys[i])) {
+                    target[count++] = existing;
+                }
+            }
+
+            assert count == this.owner.size();
+            return target;
+        }
+    };
+
+    /**
+     * An iterator over the set of keys.
+     * Holds a KTypeCursor returning (value, index) = (KType key, index the position in buffer {@link KTypeVTypeSwissHashMap#keys}, or keys.length for key = 0/null.)
+     */
+    public final class KeysIterator extends AbstractIterator<KTypeCursor<KType>>
+    {
+        public final KTypeCursor<KType> cursor;
+
+        public KeysIterator() {
+            this.cursor = new KTypeCursor<KType>();
+            this.cursor.index = -2;
+        }
+
+        /**
+         * Iterate backwards w.r.t the buffer, to
+         * minimize collision chains when filling another hash container (ex. with putAll())
+         */
+        @Override
+        protected KTypeCursor<KType> fetch() {
+
+            if (this.cursor.index == KTypeVTypeSwissHashMap.this.keys.length + 1) {
+
+                if (KTypeVTypeSwissHashMap.this.allocatedDefaultKey) {
+
+                    this.cursor.index = KTypeVTypeSwissHashMap.this.keys.length;
+                    this.cursor.value = Intrinsics.<KType> empty();
+
+                    return this.cursor;
+
+                }
+                //no value associated with the default key, continue iteration...
+                this.cursor.index = KTypeVTypeSwissHashMap.this.keys.length;
+
+            }
+
+            int i = this.cursor.index - 1;
+
+            while (i >= 0 && !is_allocated(i, Intrinsics.<KType[]> cast(KTypeVTypeSwissHashMap.this.keys))) {
+                i--;
+            }
+
+            if (i == -1) {
+                return done();
+            }
+
+            this.cursor.index = i;
+            this.cursor.value = Intrinsics.<KType> cast(KTypeVTypeSwissHashMap.this.keys[i]);
+
+            return this.cursor;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * @return a new ValuesCollection view of the values of this map.
+     */
+    @Override
+    public ValuesCollection values() {
+        return new ValuesCollection();
+    }
+
+    /**
+     * A view over the set of values of this map.
+     */
+    public final class ValuesCollection extends AbstractKTypeCollection<VType>
+    {
+        private final KTypeVTypeSwissHashMap<KType, VType> owner = KTypeVTypeSwissHashMap.this;
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int size() {
+            return this.owner.size();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int capacity() {
+
+            return this.owner.capacity();
+        }
+
+        @Override
+        public boolean contains(final VType value) {
+            if (this.owner.allocatedDefaultKey && Intrinsics.<VType> equals(value, this.owner.allocatedDefaultKeyValue)) {
+
+                return true;
+            }
+
+            // This is a linear scan over the values, but it's in the contract, so be it.
+
+            final KType[] keys = Intrinsics.<KType[]> cast(this.owner.keys);
+            final VType[] values = Intrinsics.<VType[]> cast(this.owner.values);
+
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (is_allocated(slot, keys) && Intrinsics.<VType> equals(value, values[slot])) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public <T extends KTypeProcedure<? super VType>> T forEach(final T procedure) {
+            if (this.owner.allocatedDefaultKey) {
+
+                procedure.apply(this.owner.allocatedDefaultKeyValue);
+            }
+
+            final KType[] keys = Intrinsics.<KType[]> cast(this.owner.keys);
+            final VType[] values = Intrinsics.<VType[]> cast(this.owner.values);
+
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (is_allocated(slot, keys)) {
+
+                    procedure.apply(values[slot]);
+                }
+            }
+
+            return procedure;
+        }
+
+        @Override
+        public <T extends KTypePredicate<? super VType>> T forEach(final T predicate) {
+            if (this.owner.allocatedDefaultKey) {
+
+                if (!predicate.apply(this.owner.allocatedDefaultKeyValue)) {
+                    return predicate;
+                }
+            }
+
+            final KType[] keys = Intrinsics.<KType[]> cast(this.owner.keys);
+            final VType[] values = Intrinsics.<VType[]> cast(this.owner.values);
+
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (is_allocated(slot, keys)) {
+                    if (!predicate.apply(values[slot])) {
+                        break;
+                    }
+                }
+            }
+
+            return predicate;
+        }
+
+        @Override
+        public ValuesIterator iterator() {
+            // return new ValuesIterator();
+            return this.valuesIteratorPool.borrow();
+        }
+
+        /**
+         * {@inheritDoc}
+         * Indeed removes all the (key,value) pairs matching
+         * (key ? ,  e) with the  same  e,  from  the map.
+         */
+        @Override
+        public int removeAll(final VType e) {
+            final int before = this.owner.size();
+
+            if (this.owner.allocatedDefaultKey) {
+
+                if (Intrinsics.<VType> equals(e, this.owner.allocatedDefaultKeyValue)) {
+
+                    this.owner.allocatedDefaultKey = false;
+
+                    /*! #if ($TemplateOptions.VTypeGeneric) !*/
+                    //help the GC
+                    this.owner.allocatedDefaultKeyValue = Intrinsics.<VType> empty();
+                    /*! #end !*/
+                }
+            }
+
+            final KType[] keys = Intrinsics.<KType[]> cast(this.owner.keys);
+            final VType[] values = Intrinsics.<VType[]> cast(this.owner.values);
+
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (is_allocated(slot, keys) && Intrinsics.<VType> equals(e, values[slot])) {
+
+                    removeSlot(slot);
+                }
+            }
+            return before - this.owner.size();
+        }
+
+        /**
+         * {@inheritDoc}
+         * Indeed removes all the (key,value) pairs matching
+         * the predicate for the values, from  the map.
+         */
+        @Override
+        public int removeAll(final KTypePredicate<? super VType> predicate) {
+            final int before = this.owner.size();
+
+            if (this.owner.allocatedDefaultKey) {
+
+                if (predicate.apply(this.owner.allocatedDefaultKeyValue)) {
+
+                    this.owner.allocatedDefaultKey = false;
+
+                    /*! #if ($TemplateOptions.VTypeGeneric) !*/
+                    //help the GC
+                    this.owner.allocatedDefaultKeyValue = Intrinsics.<VType> empty();
+                    /*! #end !*/
+                }
+            }
+
+            final KType[] keys = Intrinsics.<KType[]> cast(this.owner.keys);
+            final VType[] values = Intrinsics.<VType[]> cast(this.owner.values);
+
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (is_allocated(slot, keys) && predicate.apply(values[slot])) {
+
+                    removeSlot(slot);
+                }
+            }
+            return before - this.owner.size();
+        }
+
+        /**
+         * {@inheritDoc}
+         *  Alias for clear() the whole map.
+         */
+        @Override
+        public void clear() {
+            this.owner.clear();
+        }
+
+        /**
+         * internal pool of ValuesIterator
+         */
+        protected final IteratorPool<KTypeCursor<VType>, ValuesIterator> valuesIteratorPool = new IteratorPool<KTypeCursor<VType>, ValuesIterator>(
+                new ObjectFactory<ValuesIterator>() {
+
+                    @Override
+                    public ValuesIterator create() {
+                        return new ValuesIterator();
+                    }
+
+                    @Override
+                    public void initialize(final ValuesIterator obj) {
+                        obj.cursor.index = KTypeVTypeSwissHashMap.this.keys.length + 1;
+                    }
+
+                    @Override
+                    public void reset(final ValuesIterator obj) {
+
+                        /*! #if ($TemplateOptions.VTypeGeneric) !*/
+                        obj.cursor.value = null;
+                        /*! #end !*/
+                    }
+                });
+
+        @Override
+        public VType[] toArray(final VType[] target) {
+            int count = 0;
+
+            if (this.owner.allocatedDefaultKey) {
+
+                target[count++] = this.owner.allocatedDefaultKeyValue;
+            }
+
+            final KType[] keys = Intrinsics.<KType[]> cast(this.owner.keys);
+
+            final VType[] values = Intrinsics.<VType[]> cast(this.owner.values);
+
+            for (int i = 0; i < values.length; i++) {
+                if (is_allocated(i, keys)) {
+                    target[count++] = values[i];
+                }
+            }
+
+            assert count == this.owner.size();
+            return target;
+        }
+    }
+
+    /**
+     * An iterator over the set of values.
+     * Holds a KTypeCursor returning (value, index) = (VType value, index the position in buffer {@link KTypeVTypeSwissHashMap#values},
+     * or values.length for value = {@link KTypeVTypeSwissHashMap#allocatedDefaultKeyValue}).
+     */
+    public final class ValuesIterator extends AbstractIterator<KTypeCursor<VType>>
+    {
+        public final KTypeCursor<VType> cursor;
+
+        public ValuesIterator() {
+            this.cursor = new KTypeCursor<VType>();
+            this.cursor.index = -2;
+        }
+
+        /**
+         * Iterate backwards w.r.t the buffer, to
+         * minimize collision chains when filling another hash container (ex. with putAll())
+         */
+        @Override
+        protected KTypeCursor<VType> fetch() {
+            if (this.cursor.index == KTypeVTypeSwissHashMap.this.values.length + 1) {
+
+                if (KTypeVTypeSwissHashMap.this.allocatedDefaultKey) {
+
+                    this.cursor.index = KTypeVTypeSwissHashMap.this.values.length;
+                    this.cursor.value = KTypeVTypeSwissHashMap.this.allocatedDefaultKeyValue;
+
+                    return this.cursor;
+
+                }
+                //no value associated with the default key, continue iteration...
+                this.cursor.index = KTypeVTypeSwissHashMap.this.keys.length;
+
+            }
+
+            int i = this.cursor.index - 1;
+
+            while (i >= 0 && !is_allocated(i, Intrinsics.<KType[]> cast(KTypeVTypeSwissHashMap.this.keys))) {
+                i--;
+            }
+
+            if (i == -1) {
+                return done();
+            }
+
+            this.cursor.index = i;
+            this.cursor.value = Intrinsics.<VType> cast(KTypeVTypeSwissHashMap.this.values[i]);
+
+            return this.cursor;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public KTypeVTypeSwissHashMap<KType, VType> clone() {
+        //clone to size() to prevent some cases of exponential sizes,
+        final KTypeVTypeSwissHashMap<KType, VType> cloned = new KTypeVTypeSwissHashMap<KType, VType>(this.size(), this.loadFactor);
+
+        //We must NOT clone because of independent perturbations seeds
+        cloned.putAll(this);
+        
+        return cloned;
+    }
+
+    /**
+     * Convert the contents of this map to a human-friendly string.
+     */
+    @Override
+    public String toString() {
+        final StringBuilder buffer = new StringBuilder();
+        buffer.append("[");
+
+        boolean first = true;
+        for (final KTypeVTypeCursor<KType, VType> cursor : this) {
+            if (!first) {
+                buffer.append(", ");
+            }
+            buffer.append(cursor.key);
+            buffer.append("=>");
+            buffer.append(cursor.value);
+            first = false;
+        }
+        buffer.append("]");
+        return buffer.toString();
+    }
+
+    /**
+     * Creates a hash map from two index-aligned arrays of key-value pairs. Default load factor is used.
+     */
+    public static <KType, VType> KTypeVTypeSwissHashMap<KType, VType> from(final KType[] keys, final VType[] values) {
+        if (keys.length != values.length) {
+            throw new IllegalArgumentException("Arrays of keys and values must have an identical length.");
+        }
+
+        final KTypeVTypeSwissHashMap<KType, VType> map = new KTypeVTypeSwissHashMap<KType, VType>(keys.length);
+
+        for (int i = 0; i < keys.length; i++) {
+            map.put(keys[i], values[i]);
+        }
+        return map;
+    }
+
+    /**
+     * Create a hash map from another associative container. (constructor shortcut) Default load factor is used.
+     */
+    public static <KType, VType> KTypeVTypeSwissHashMap<KType, VType> from(
+            final KTypeVTypeAssociativeContainer<KType, VType> container) {
+        return new KTypeVTypeSwissHashMap<KType, VType>(container);
+    }
+
+    /**
+     * Create a new hash map without providing the full generic signature
+     * (constructor shortcut).
+     */
+    public static <KType, VType> KTypeVTypeSwissHashMap<KType, VType> newInstance() {
+        return new KTypeVTypeSwissHashMap<KType, VType>();
+    }
+
+    /**
+     * Create a new hash map with initial capacity and load factor control.
+     * (constructor shortcut).
+     */
+    public static <KType, VType> KTypeVTypeSwissHashMap<KType, VType> newInstance(final int initialCapacity,
+            final double loadFactor) {
+        return new KTypeVTypeSwissHashMap<KType, VType>(initialCapacity, loadFactor);
+    }
+
+    /**
+     * Returns the "default value" value used in containers methods returning
+     * "default value"
+     */
+    @Override
+    public VType getDefaultValue() {
+        return this.defaultValue;
+    }
+
+    /**
+     * Set the "default value" value to be used in containers methods returning
+     * "default value"
+     */
+    @Override
+    public void setDefaultValue(final VType defaultValue) {
+        this.defaultValue = defaultValue;
+    }
+
+    //Test for existence in template
+    /*! #if ($TemplateOptions.declareInline("is_allocated(slot, keys)",
+        "<*,*>==>!Intrinsics.<KType>isEmpty(keys[slot])")) !*/
+    /**
+     *  template version
+     * (actual method is inlined in generated code)
+     */
+    private boolean is_allocated(final int slot, final KType[] keys) {
+
+        return !Intrinsics.<KType> isEmpty(keys[slot]);
+    }
+
+    /*! #end !*/
+
+    /**
+     * Control byte of <code>slot</code>.
+     */
+    private static long controlOf(final long[] control, final int slot) {
+
+        return (control[slot >>> 3] >>> ((slot & 7) << 3)) & 0xFFL;
+    }
+
+    /**
+     * Set the control byte of <code>slot</code> to <code>value</code>.
+     */
+    private static void setControl(final long[] control, final int slot, final long value) {
+
+        final int shift = (slot & 7) << 3;
+
+        control[slot >>> 3] = (control[slot >>> 3] & ~(0xFFL << shift)) | (value << shift);
+    }
+
+    /**
+     * Highest bit set in each byte of <code>word</code> equal to the corresponding byte of <code>fragments</code>,
+     * which is a 7-bit hash fragment repeated in each byte. Empty and deleted bytes never match,
+     * but a byte just above a matching one may match falsely, so a match must still be confirmed by comparing the keys.
+     */
+    private static long matchFragments(final long word, final long fragments) {
+
+        final long x = word ^ fragments;
+
+        return (x - KTypeVTypeSwissHashMap.LSBS) & ~x & KTypeVTypeSwissHashMap.MSBS;
+    }
+
+    /**
+     * Highest bit set in each byte of <code>word</code> equal to {@link #EMPTY}, i.e. the highest bit set
+     * and the bit 1 cleared, unlike {@link #DELETED} and the hash fragments.
+     */
+    private static long matchEmpty(final long word) {
+
+        return word & (~word << 6) & KTypeVTypeSwissHashMap.MSBS;
+    }
+
+    /*! #if ($TemplateOptions.declareInline("REHASH(value)",
+    "<Object,*>==>BitMixer.mix(hashKey(value) , this.perturbation)",
+    "<*,*>==>BitMixer.mix(value , this.perturbation)")) !*/
+    /**
+     * REHASH method for rehashing the keys.
+     * (inlined in generated code)
+     * Thanks to single array mode, no need to check for null/0 or booleans.
+     */
+    private int REHASH(final KType value) {
+
+        return BitMixer.mix(hashKey(value), this.perturbation);
+    }
+
+    /*! #end !*/
+
+    /*! #if ($TemplateOptions.declareInline("REHASH2(value, perturb)",
+    "<Object,*>==>BitMixer.mix(hashKey(value) , perturb)",
+    "<*,*>==>BitMixer.mix(value , perturb)")) !*/
+    /**
+     * REHASH2 method for rehashing the keys with perturbation seed as parameter
+     * (inlined in generated code)
+     * Thanks to single array mode, no need to check for null/0 or booleans.
+     */
+    private int REHASH2(final KType value, final int perturb) {
+
+        return BitMixer.mix(hashKey(value), perturb);
+    }
+    /*! #end !*/
+
+    /*! #if ($TemplateOptions.declareInline("KEYEQUALS(key1, key2)",
+    "<Object,*>==>equalKeys(key1, key2)",
+    "<*,*>==>Intrinsics.<KType> equalsNotNull(key1, key2)")) !*/
+    /**
+     * macro which hides the applied equality criteria
+     */
+    private boolean KEYEQUALS(final KType key1, final KType key2) {
+
+        return equalKeys(key1, key2);
+    }
+    /*! #end !*/
+}
@@ -1,5 +1,10 @@
 package com.carrotsearch.hppcrt.sets;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
 import com.carrotsearch.hppcrt.*;
 import com.carrotsearch.hppcrt.cursors.*;
 import com.carrotsearch.hppcrt.predicates.*;
@@ -29,6 +34,10 @@ import com.carrotsearch.hppcrt.hash.*;
  * are always allocated to the nearest size that is a power of two. When
  * the capacity exceeds the given load factor, the buffer size is doubled.
  * </p>
+ * <p>
+ * To bound the latency of the operations triggering such a doubling, an
+ * incremental resize mode is also available, see {@link #setIncrementalResize(boolean)}.
+ * </p>
  *
  * <p><b>Important note.</b> The implementation uses power-of-two tables and linear
  * probing, which may cause poor performance (many collisions) if hash values are
@@ -72,8 +81,10 @@ implements KTypeLookupContainer<KType>, KTypeSet<KType>, Cloneable
     /**
 
      * #if ($RH)
-     * Caches the hash value = hash(keys[i]) & mask, if keys[i] != 0/null,
-     * for every index i.
+     * Caches the full hash value = hash(keys[i]), if keys[i] != 0/null,
+     * for every index i. The slot keys[i] was initially hashed to is hash_cache[i] & mask.
+     * Comparing the cached hashes first spares most of the calls to equals() when probing,
+     * and the buffer is expanded without calling hashCode() again.
      * #end
      * @see #assigned
      */
@@ -106,8 +117,67 @@ implements KTypeLookupContainer<KType>, KTypeSet<KType>, Cloneable
     /**
      * Per-instance perturbation
      * introduced in rehashing to create a unique key distribution.
+     * A new one is drawn when the keys are reseeded, see {@link #setReseedThreshold(int)}.
+     */
+    private int perturbation = Containers.randomSeed32();
+
+    /**
+     * Number of slots of the old buffers migrated per operation
+     * while an incremental resize is in progress.
+     */
+    private static final int INCREMENTAL_RESIZE_STEP = 16;
+
+    /**
+     * True if the buffers are expanded incrementally, see {@link #setIncrementalResize(boolean)}.
+     */
+    private boolean incrementalResize = false;
+
+    /**
+     * Buffers being migrated by an incremental resize, or null
+     * if no incremental resize is in progress.
+     */
+    private/*! #if ($TemplateOptions.KTypePrimitive)
+          KType []
+          #else !*/
+    Object[]
+            /*! #end !*/
+            oldKeys;
+
+    /*! #if ($RH) !*/
+    private int[] oldHashCache;
+    /*! #end !*/
+
+    /**
+     * Next slot of {@link #oldKeys} to migrate is (migrationSlot - 1),
+     * the migration is complete when reaching {@link #migrationStop}.
+     */
+    private int migrationSlot;
+
+    private int migrationStop;
+
+    /**
+     * Probe length of a newly inserted key above which all the keys are rehashed
+     * with a new perturbation, see {@link #setReseedThreshold(int)}.
+     */
+    private int reseedThreshold;
+
+    /**
+     * Probe lengths of the keys inserted in the current buffers,
+     * see {@link #getMaxProbeLength()} and {@link #getAverageProbeLength()}.
+     */
+    private int maxProbeLength;
+
+    private long probeLengthSum;
+
+    private int probedKeys;
+
+    /**
+     * Number of reseeds so far, and length of the last reseeded buffers :
+     * buffers of a given length are reseeded at most once.
      */
-    private final int perturbation = Containers.randomSeed32();
+    private int reseedCount;
+
+    private int reseededLength;
 
     /*! #if ($TemplateOptions.KTypeGeneric) !*/
 
@@ -169,6 +239,7 @@ implements KTypeLookupContainer<KType>, KTypeSet<KType>, Cloneable
      */
     public KTypeHashSet(final int initialCapacity, final double loadFactor) {
         this.loadFactor = loadFactor;
+        this.reseedThreshold = HashContainers.defaultReseedThreshold(loadFactor);
         //take into account of the load factor to guarantee no reallocations before reaching  initialCapacity.
         allocateBuffers(HashContainers.minBufferSize(initialCapacity, loadFactor));
     }
@@ -199,18 +270,37 @@ implements KTypeLookupContainer<KType>, KTypeSet<KType>, Cloneable
             return true;
         }
 
+        int hash = REHASH(key);
+
+        if (this.oldKeys != null) {
+
+            migrateSlots();
+
+            if (this.oldKeys != null) {
+
+                //the key may still be in the old buffers
+                if (oldSlotOf(key, hash) >= 0) {
+                    return false;
+                }
+
+                //never expand again while still migrating
+                if (this.assigned >= this.resizeAt) {
+                    completeResize();
+                }
+            }
+        }
+
         final int mask = this.keys.length - 1;
 
         final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
 
-        int slot = REHASH(key) & mask;
+        int slot = hash & mask;
         KType existing;
 
         /*! #if ($RH) !*/
         final int[] cached = this.hash_cache;
         KType tmpKey;
         int tmpAllocated;
-        int initial_slot = slot;
         int dist = 0;
         int existing_distance = 0;
 
@@ -251,7 +341,8 @@ implements KTypeLookupContainer<KType>, KTypeSet<KType>, Cloneable
             //than our current count (dist): if that had happened, there would’ve been a swap during insertion, see below.
             //also see contains() and remove() for the same trick.
             /*! #end !*/
-            if (/*! #if ($RH) !*/ dist <= existing_distance && /*! #end !*/ KEYEQUALS(key, existing)) {
+            //the cached hashes differ for most of the distinct keys, sparing the call to equals().
+            if (/*! #if ($RH) !*/ dist <= existing_distance && cached[slot] == hash && /*! #end !*/ KEYEQUALS(key, existing)) {
                 return false;
             }
 
@@ -261,19 +352,19 @@ implements KTypeLookupContainer<KType>, KTypeSet<KType>, Cloneable
 
                 //we actually enter here only if the key to add is NOT in the set.
 
-                //swap current (key, value, initial_slot) with slot places
+                //swap current (key, hash) with slot places
                 tmpKey = keys[slot];
                 keys[slot] = key;
                 key = tmpKey;
 
                 tmpAllocated = cached[slot];
-                cached[slot] = initial_slot;
-                initial_slot = tmpAllocated;
+                cached[slot] = hash;
+                hash = tmpAllocated;
 
                 /*! #if($DEBUG) !*/
                 //Check invariants
-                assert cached[slot] == (REHASH(keys[slot]) & mask);
-                assert initial_slot == (REHASH(key) & mask);
+                assert cached[slot] == REHASH(keys[slot]);
+                assert hash == REHASH(key);
                 /*! #end !*/
 
                 dist = existing_distance;
@@ -290,11 +381,15 @@ implements KTypeLookupContainer<KType>, KTypeSet<KType>, Cloneable
         // fill in the last element and rehash.
         if (this.assigned == this.resizeAt) {
 
-            expandAndAdd(key, slot);
+            if (this.incrementalResize) {
+                startIncrementalResize(key, hash);
+            } else {
+                expandAndAdd(key, slot, hash);
+            }
         } else {
             this.assigned++;
             /*! #if ($RH) !*/
-            cached[slot] = initial_slot;
+            cached[slot] = hash;
             /*!  #end !*/
 
             keys[slot] = key;
@@ -302,9 +397,18 @@ implements KTypeLookupContainer<KType>, KTypeSet<KType>, Cloneable
             /*! #if ($RH) !*/
             /*! #if($DEBUG) !*/
             //Check invariants
-            assert cached[slot] == (REHASH(keys[slot]) & mask);
+            assert cached[slot] == REHASH(keys[slot]);
             /*! #end !*/
             /*! #end !*/
+
+            //distance of the last placed key from its ideal slot
+            final int probes = (slot - hash) & mask;
+
+            recordProbeLength(probes);
+
+            if (probes > this.reseedThreshold) {
+                reseed();
+            }
         }
         return true;
     }
@@ -343,9 +447,15 @@ implements KTypeLookupContainer<KType>, KTypeSet<KType>, Cloneable
 
     /**
      * {@inheritDoc}
+     *
+     * <p>The buffers are sized once upfront for <code>size() + container.size()</code> elements,
+     * so that the union never expands them more than once.</p>
      */
     @Override
     public int addAll(final KTypeContainer<? extends KType> container) {
+
+        ensureCapacity(size() + container.size());
+
         return addAll((Iterable<? extends KTypeCursor<? extends KType>>) container);
     }
 
@@ -363,11 +473,48 @@ implements KTypeLookupContainer<KType>, KTypeSet<KType>, Cloneable
         return count;
     }
 
+    /**
+     * Ensure this set can hold at least <code>expectedElements</code> elements
+     * without expanding its buffers. If they must grow, the keys are rehashed at once,
+     * even if incremental resizing is enabled.
+     */
+    public void ensureCapacity(final int expectedElements) {
+
+        if (expectedElements > this.resizeAt) {
+
+            completeResize();
+
+            final KType[] oldKeys = Intrinsics.<KType[]> cast(this.keys);
+
+            /*! #if ($RH) !*/
+            final int[] oldCached = this.hash_cache;
+            /*! #end !*/
+
+            allocateBuffers(HashContainers.minBufferSize(expectedElements, this.loadFactor));
+
+            KType key;
+
+            //It is important to iterate backwards to minimize the conflict chain length !
+            for (int i = oldKeys.length; --i >= 0;) {
+
+                if (!Intrinsics.<KType> isEmpty(key = oldKeys[i])) {
+
+                    /*! #if ($RH) !*/
+                    insertMigrated(key, oldCached[i]);
+                    /*! #else
+                    insertMigrated(key, REHASH(key));
+                    #end !*/
+                }
+            }
+        }
+    }
+
     /**
      * Expand the internal storage buffers (capacity) or rehash current
      * keys and values if there are a lot of deleted slots.
+     * @param pendingHash REHASH(pendingKey)
      */
-    private void expandAndAdd(final KType pendingKey, final int freeSlot) {
+    private void expandAndAdd(final KType pendingKey, final int freeSlot, final int pendingHash) {
         assert this.assigned == this.resizeAt;
 
         //default sentinel value is never in the keys[] array, so never trigger reallocs
@@ -377,6 +524,10 @@ implements KTypeLookupContainer<KType>, KTypeSet<KType>, Cloneable
         // leaving the data structure in an inconsistent state.
         final KType[] oldKeys = Intrinsics.<KType[]> cast(this.keys);
 
+        /*! #if ($RH) !*/
+        final int[] oldCached = this.hash_cache;
+        /*! #end !*/
+
         allocateBuffers(HashContainers.nextBufferSize(this.keys.length, this.assigned, this.loadFactor));
 
         // We have succeeded at allocating new data so insert the pending key/value at
@@ -386,12 +537,17 @@ implements KTypeLookupContainer<KType>, KTypeSet<KType>, Cloneable
 
         oldKeys[freeSlot] = pendingKey;
 
+        /*! #if ($RH) !*/
+        oldCached[freeSlot] = pendingHash;
+        /*! #end !*/
+
         //Variables for adding
         final int mask = this.keys.length - 1;
 
         KType key = Intrinsics.<KType> empty();
         //adding phase
         int slot = -1;
+        int hash = -1;
 
         final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
 
@@ -402,26 +558,28 @@ implements KTypeLookupContainer<KType>, KTypeSet<KType>, Cloneable
         /*! #if ($RH) !*/
         KType tmpKey = Intrinsics.<KType> empty();
         int tmpAllocated = -1;
-        int initial_slot = -1;
         int dist = -1;
         int existing_distance = -1;
-        /*! #end !*/
+        /*! #else
+        final int perturb = this.perturbation;
+        #end !*/
 
         //iterate all the old arrays to add in the newly allocated buffers
         //It is important to iterate backwards to minimize the conflict chain length !
-        final int perturb = this.perturbation;
-
         for (int i = oldKeys.length; --i >= 0;) {
 
             //only consider non-empty slots, of course
             if (!Intrinsics.<KType> isEmpty(key = oldKeys[i])) {
 
-                slot = REHASH2(key, perturb) & mask;
-
                 /*! #if ($RH) !*/
-                initial_slot = slot;
+                //the new slot derives from the cached hash, sparing a call to hashCode()
+                hash = oldCached[i];
                 dist = 0;
-                /*! #end !*/
+                /*! #else
+                hash = REHASH2(key, perturb);
+                #end !*/
+
+                slot = hash & mask;
 
                 //similar to add(), except all inserted keys are known to be unique.
                 while (is_allocated(slot, keys)) {
@@ -430,19 +588,19 @@ implements KTypeLookupContainer<KType>, KTypeSet<KType>, Cloneable
                     existing_distance = probe_distance(slot, cached);
 
                     if (dist > existing_distance) {
-                        //swap current (key, value, initial_slot) with slot places
+                        //swap current (key, hash) with slot places
                         tmpKey = keys[slot];
                         keys[slot] = key;
                         key = tmpKey;
 
                         tmpAllocated = cached[slot];
-                        cached[slot] = initial_slot;
-                        initial_slot = tmpAllocated;
+                        cached[slot] = hash;
+                        hash = tmpAllocated;
 
                         /*! #if($DEBUG) !*/
                         //Check invariants
-                        assert cached[slot] == (REHASH(keys[slot]) & mask);
-                        assert initial_slot == (REHASH(key) & mask);
+                        assert cached[slot] == REHASH(keys[slot]);
+                        assert hash == REHASH(key);
                         /*! #end !*/
 
                         dist = existing_distance;
@@ -458,7 +616,7 @@ implements KTypeLookupContainer<KType>, KTypeSet<KType>, Cloneable
 
                 //place it at that position
                 /*! #if ($RH) !*/
-                cached[slot] = initial_slot;
+                cached[slot] = hash;
                 /*! #end !*/
 
                 keys[slot] = key;
@@ -466,9 +624,11 @@ implements KTypeLookupContainer<KType>, KTypeSet<KType>, Cloneable
                 /*! #if ($RH) !*/
                 /*! #if($DEBUG) !*/
                 //Check invariants
-                assert cached[slot] == (REHASH(keys[slot]) & mask);
+                assert cached[slot] == REHASH(keys[slot]);
                 /*! #end !*/
                 /*! #end !*/
+
+                recordProbeLength((slot - hash) & mask);
             }
         }
     }
@@ -497,6 +657,11 @@ implements KTypeLookupContainer<KType>, KTypeSet<KType>, Cloneable
             //allocate so that there is at least one slot that remains allocated = false
             //this is compulsory to guarantee proper stop in searching loops
             this.resizeAt = HashContainers.expandAtCount(capacity, this.loadFactor);
+
+            //the keys are (re)inserted in the new buffers
+            this.maxProbeLength = 0;
+            this.probeLengthSum = 0;
+            this.probedKeys = 0;
         } catch (final OutOfMemoryError e) {
 
             throw new BufferAllocationException(
@@ -508,179 +673,789 @@ implements KTypeLookupContainer<KType>, KTypeSet<KType>, Cloneable
     }
 
     /**
-     * {@inheritDoc}
+     * Enable or disable incremental resizing. When enabled, expanding the buffers no longer rehashes
+     * all the keys in a single call: the previous buffers are kept aside and their keys
+     * are migrated a bounded number of slots at a time by the next add(), contains() and remove() calls,
+     * so that no single operation pays for the full rehash.
+     * <p>Note that while such a resize is in progress, {@link #keys} only
+     * holds part of the keys, and contains() is no longer read-only. Operations
+     * over the whole set (iteration, forEach(), removeAll()...) complete any pending resize first.
+     * Disabling incremental resizing completes any pending resize.</p>
+     * @see #completeResize()
      */
-    @Override
-    public int removeAll(final KType key) {
-        return remove(key) ? 1 : 0;
+    public void setIncrementalResize(final boolean incrementalResize) {
+
+        this.incrementalResize = incrementalResize;
+
+        if (!incrementalResize) {
+            completeResize();
+        }
     }
 
     /**
-     * {@inheritDoc}
+     * @return true if the buffers are expanded incrementally.
+     * @see #setIncrementalResize(boolean)
      */
-    @Override
-    public boolean remove(final KType key) {
+    public boolean isIncrementalResize() {
+        return this.incrementalResize;
+    }
 
-        if (Intrinsics.<KType> isEmpty(key)) {
+    /**
+     * Migrate immediately all the remaining keys of a pending incremental resize, if any,
+     * so that {@link #keys} holds all the keys of the set.
+     */
+    public void completeResize() {
 
-            if (this.allocatedDefaultKey) {
+        while (this.oldKeys != null) {
+            migrateSlots();
+        }
+    }
 
-                this.allocatedDefaultKey = false;
-                return true;
-            }
+    /**
+     * Set the probe length of a newly inserted key above which all the keys are rehashed in place
+     * with a new perturbation, defending against keys colliding in the current buffers (hash flooding).
+     * Buffers of a given size are reseeded at most once, so keys of identical hashes never trigger
+     * repeated rehashes. The default is {@link HashContainers#defaultReseedThreshold(double)}, use {@link Integer#MAX_VALUE}
+     * to disable reseeding.
+     * @see #getMaxProbeLength()
+     * @see #getReseedCount()
+     */
+    public void setReseedThreshold(final int reseedThreshold) {
 
-            return false;
-        }
+        this.reseedThreshold = reseedThreshold;
+    }
 
-        final int mask = this.keys.length - 1;
+    /**
+     * @return the probe length above which the keys are reseeded.
+     * @see #setReseedThreshold(int)
+     */
+    public int getReseedThreshold() {
+        return this.reseedThreshold;
+    }
 
-        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+    /**
+     * @return the maximum distance between the slot of a key and its ideal slot, for the keys
+     * inserted since the buffers were last allocated, expanded or reseeded. Removals are not accounted for.
+     */
+    public int getMaxProbeLength() {
+        return this.maxProbeLength;
+    }
 
-        int slot = REHASH(key) & mask;
-        KType existing;
+    /**
+     * @return the average distance between the slot of a key and its ideal slot, for the keys
+     * inserted since the buffers were last allocated, expanded or reseeded. Removals are not accounted for.
+     */
+    public double getAverageProbeLength() {
+
+        return this.probedKeys == 0 ? 0.0 : this.probeLengthSum / (double) this.probedKeys;
+    }
+
+    /**
+     * @return the number of times the keys were rehashed with a new perturbation.
+     * @see #setReseedThreshold(int)
+     */
+    public int getReseedCount() {
+        return this.reseedCount;
+    }
+
+    /**
+     * Allocate the expanded buffers and start an incremental resize,
+     * inserting the pending key in the new buffers.
+     * @param pendingHash REHASH(pendingKey)
+     */
+    private void startIncrementalResize(final KType pendingKey, final int pendingHash) {
+        assert this.assigned == this.resizeAt;
+        assert this.oldKeys == null;
+
+        final KType[] oldKeys = Intrinsics.<KType[]> cast(this.keys);
 
         /*! #if ($RH) !*/
-        int dist = 0;
-        final int[] cached = this.hash_cache;
+        final int[] oldCached = this.hash_cache;
         /*! #end !*/
 
-        while (!Intrinsics.<KType> isEmpty(existing = keys[slot])
-                /*! #if ($RH) !*/&& dist <= probe_distance(slot, cached) /*! #end !*/) {
-            if (KEYEQUALS(key, existing)) {
+        allocateBuffers(HashContainers.nextBufferSize(this.keys.length, this.assigned, this.loadFactor));
 
-                shiftConflictingKeys(slot);
-                return true;
-            }
-            slot = (slot + 1) & mask;
+        this.oldKeys = oldKeys;
 
-            /*! #if ($RH) !*/
-            dist++;
-            /*! #end !*/
-        } //end while true
+        /*! #if ($RH) !*/
+        this.oldHashCache = oldCached;
+        /*! #end !*/
 
-        return false;
+        this.assigned++;
+        insertMigrated(pendingKey, pendingHash);
+
+        //The old buffers always have at least one empty slot. Migrate backwards starting from it,
+        //so that the probing chains of the remaining old keys never cross an already migrated (emptied) slot.
+        int stop = 0;
+
+        while (is_allocated(stop, oldKeys)) {
+            stop++;
+        }
+
+        this.migrationStop = stop;
+        this.migrationSlot = stop;
+
+        migrateSlots();
     }
 
     /**
-     * Shift all the slot-conflicting keys allocated to (and including) <code>slot</code>.
+     * Migrate at most {@link #INCREMENTAL_RESIZE_STEP} slots of the old buffers into the new ones,
+     * releasing the old buffers when done.
      */
-    private void shiftConflictingKeys(int gapSlot) {
-
-        final int mask = this.keys.length - 1;
+    private void migrateSlots() {
 
-        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+        final KType[] oldKeys = Intrinsics.<KType[]> cast(this.oldKeys);
 
         /*! #if ($RH) !*/
-        final int[] cached = this.hash_cache;
-        /*!  #else
-         final int perturb = this.perturbation;
-         #end !*/
+        final int[] oldCached = this.oldHashCache;
+        /*! #end !*/
 
-        // Perform shifts of conflicting keys to fill in the gap.
-        int distance = 0;
+        final int oldMask = oldKeys.length - 1;
+        final int stop = this.migrationStop;
 
-        while (true) {
+        int slot = this.migrationSlot;
 
-            final int slot = (gapSlot + (++distance)) & mask;
+        for (int i = 0; i < KTypeHashSet.INCREMENTAL_RESIZE_STEP; i++) {
 
-            final KType existing = keys[slot];
+            slot = (slot - 1) & oldMask;
 
-            if (Intrinsics.<KType> isEmpty(existing)) {
-                break;
-            }
+            if (slot == stop) {
 
-            /*! #if ($RH) !*/
-            //use the cached value, no need to recompute
-            final int idealSlotModMask = cached[slot];
-            /*! #if($DEBUG) !*/
-            //Check invariants
-            assert idealSlotModMask == (REHASH(existing) & mask);
-            /*! #end !*/
-            /*! #else
-            final int idealSlotModMask = REHASH2(existing, perturb) & mask;
-            #end !*/
+                //migration complete
+                this.oldKeys = null;
 
-            //original HPPC code: shift = (slot - idealSlot) & mask;
-            //equivalent to shift = (slot & mask - idealSlot & mask) & mask;
-            //since slot and idealSlotModMask are already folded, we have :
-            final int shift = (slot - idealSlotModMask) & mask;
+                /*! #if ($RH) !*/
+                this.oldHashCache = null;
+                /*! #end !*/
+                return;
+            }
 
-            if (shift >= distance) {
-                // Entry at this position was originally at or before the gap slot.
-                // Move the conflict-shifted entry to the gap's position and repeat the procedure
-                // for any entries to the right of the current position, treating it
-                // as the new gap.
-                keys[gapSlot] = existing;
+            KType key;
+
+            if (!Intrinsics.<KType> isEmpty(key = oldKeys[slot])) {
 
                 /*! #if ($RH) !*/
-                cached[gapSlot] = idealSlotModMask;
-                /*! #if($DEBUG) !*/
-                assert cached[gapSlot] == (REHASH(existing) & mask);
-                /*! #end !*/
-                /*! #end !*/
+                insertMigrated(key, oldCached[slot]);
+                /*! #else
+                insertMigrated(key, REHASH(key));
+                #end !*/
 
-                gapSlot = slot;
-                distance = 0;
+                oldKeys[slot] = Intrinsics.<KType> empty();
             }
-        } //end while
-
-        // Mark the last found gap slot without a conflict as empty.
-        keys[gapSlot] = Intrinsics.<KType> empty();
+        }
 
-        this.assigned--;
+        this.migrationSlot = slot;
     }
 
     /**
-     * {@inheritDoc}
+     * Insert a key known to be absent from the current buffers, without
+     * changing {@link #assigned}.
+     * @param hash REHASH(key)
      */
-    @Override
-    public boolean contains(final KType key) {
-
-        if (Intrinsics.<KType> isEmpty(key)) {
-
-            return this.allocatedDefaultKey;
-        }
+    private void insertMigrated(KType key, int hash) {
 
         final int mask = this.keys.length - 1;
 
         final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
 
-        int slot = REHASH(key) & mask;
-        KType existing;
+        int slot = hash & mask;
 
         /*! #if ($RH) !*/
         final int[] cached = this.hash_cache;
+
+        KType tmpKey;
+        int tmpAllocated;
         int dist = 0;
+        int existing_distance = 0;
         /*! #end !*/
 
-        while (!Intrinsics.<KType> isEmpty(existing = keys[slot])
-                /*! #if ($RH) !*/&& dist <= probe_distance(slot, cached) /*! #end !*/) {
-            if (KEYEQUALS(key, existing)) {
-                return true;
+        //similar to add(), except the inserted key is known to be absent.
+        while (is_allocated(slot, keys)) {
+            /*! #if ($RH) !*/
+            //re-shuffle keys to minimize variance
+            existing_distance = probe_distance(slot, cached);
+
+            if (dist > existing_distance) {
+                //swap current (key, hash) with slot places
+                tmpKey = keys[slot];
+                keys[slot] = key;
+                key = tmpKey;
+
+                tmpAllocated = cached[slot];
+                cached[slot] = hash;
+                hash = tmpAllocated;
+
+                dist = existing_distance;
             }
+            /*! #end !*/
+
             slot = (slot + 1) & mask;
 
             /*! #if ($RH) !*/
             dist++;
             /*! #end !*/
-        } //end while true
+        } //end while
 
-        return false;
+        /*! #if ($RH) !*/
+        cached[slot] = hash;
+        /*! #end !*/
+
+        keys[slot] = key;
+
+        recordProbeLength((slot - hash) & mask);
     }
 
     /**
-     * {@inheritDoc}
-     *
-     * <p>Does not release internal buffers.</p>
+     * Account for a key placed probes slots away from its ideal slot.
      */
-    @Override
-    public void clear() {
-        this.assigned = 0;
+    private void recordProbeLength(final int probes) {
 
-        // States are always cleared.
-        this.allocatedDefaultKey = false;
+        this.probeLengthSum += probes;
+        this.probedKeys++;
 
-        //Faster than Arrays.fill(keys, null); // Help the GC.
+        if (probes > this.maxProbeLength) {
+            this.maxProbeLength = probes;
+        }
+    }
+
+    /**
+     * Rehash all the keys in buffers of the same size, with a new perturbation.
+     * Does nothing while an incremental resize is in progress, or if the buffers
+     * of this size were already reseeded, as keys of identical hashes would collide anyway.
+     */
+    private void reseed() {
+
+        if (this.oldKeys != null || this.reseededLength == this.keys.length) {
+            return;
+        }
+
+        final KType[] oldKeys = Intrinsics.<KType[]> cast(this.keys);
+
+        allocateBuffers(oldKeys.length);
+
+        this.perturbation = Containers.randomSeed32();
+        this.reseedCount++;
+        this.reseededLength = oldKeys.length;
+
+        KType key;
+
+        //It is important to iterate backwards to minimize the conflict chain length !
+        for (int i = oldKeys.length; --i >= 0;) {
+
+            if (!Intrinsics.<KType> isEmpty(key = oldKeys[i])) {
+
+                insertMigrated(key, REHASH(key));
+            }
+        }
+    }
+
+    /**
+     * @param hash REHASH(key)
+     * @return the slot of key in the old buffers of a pending incremental resize, or -1 if not found.
+     */
+    private int oldSlotOf(final KType key, final int hash) {
+
+        final KType[] oldKeys = Intrinsics.<KType[]> cast(this.oldKeys);
+
+        final int mask = oldKeys.length - 1;
+
+        int slot = hash & mask;
+        KType existing;
+
+        /*! #if ($RH) !*/
+        int dist = 0;
+        final int[] cached = this.oldHashCache;
+        /*! #end !*/
+
+        while (!Intrinsics.<KType> isEmpty(existing = oldKeys[slot])
+                /*! #if ($RH) !*/&& dist <= probe_distance(slot, cached) /*! #end !*/) {
+
+            if (/*! #if ($RH) !*/cached[slot] == hash && /*! #end !*/KEYEQUALS(key, existing)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+
+            /*! #if ($RH) !*/
+            dist++;
+            /*! #end !*/
+        } //end while true
+
+        return -1;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int removeAll(final KType key) {
+        return remove(key) ? 1 : 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean remove(final KType key) {
+
+        if (Intrinsics.<KType> isEmpty(key)) {
+
+            if (this.allocatedDefaultKey) {
+
+                this.allocatedDefaultKey = false;
+                return true;
+            }
+
+            return false;
+        }
+
+        if (this.oldKeys != null) {
+            migrateSlots();
+        }
+
+        final int mask = this.keys.length - 1;
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+
+        final int hash = REHASH(key);
+        int slot = hash & mask;
+        KType existing;
+
+        /*! #if ($RH) !*/
+        int dist = 0;
+        final int[] cached = this.hash_cache;
+        /*! #end !*/
+
+        while (!Intrinsics.<KType> isEmpty(existing = keys[slot])
+                /*! #if ($RH) !*/&& dist <= probe_distance(slot, cached) /*! #end !*/) {
+            if (/*! #if ($RH) !*/cached[slot] == hash && /*! #end !*/KEYEQUALS(key, existing)) {
+
+                shiftConflictingKeys(slot);
+                return true;
+            }
+            slot = (slot + 1) & mask;
+
+            /*! #if ($RH) !*/
+            dist++;
+            /*! #end !*/
+        } //end while true
+
+        if (this.oldKeys != null) {
+
+            final int oldSlot = oldSlotOf(key, hash);
+
+            if (oldSlot >= 0) {
+
+                shiftOldConflictingKeys(oldSlot);
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Shift all the slot-conflicting keys allocated to (and including) <code>slot</code>.
+     */
+    private void shiftConflictingKeys(int gapSlot) {
+
+        final int mask = this.keys.length - 1;
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+
+        /*! #if ($RH) !*/
+        final int[] cached = this.hash_cache;
+        /*!  #else
+         final int perturb = this.perturbation;
+         #end !*/
+
+        // Perform shifts of conflicting keys to fill in the gap.
+        int distance = 0;
+
+        while (true) {
+
+            final int slot = (gapSlot + (++distance)) & mask;
+
+            final KType existing = keys[slot];
+
+            if (Intrinsics.<KType> isEmpty(existing)) {
+                break;
+            }
+
+            /*! #if ($RH) !*/
+            //use the cached value, no need to recompute
+            final int hash = cached[slot];
+            /*! #if($DEBUG) !*/
+            //Check invariants
+            assert hash == REHASH(existing);
+            /*! #end !*/
+            final int idealSlotModMask = hash & mask;
+            /*! #else
+            final int idealSlotModMask = REHASH2(existing, perturb) & mask;
+            #end !*/
+
+            //original HPPC code: shift = (slot - idealSlot) & mask;
+            //equivalent to shift = (slot & mask - idealSlot & mask) & mask;
+            //since slot and idealSlotModMask are already folded, we have :
+            final int shift = (slot - idealSlotModMask) & mask;
+
+            if (shift >= distance) {
+                // Entry at this position was originally at or before the gap slot.
+                // Move the conflict-shifted entry to the gap's position and repeat the procedure
+                // for any entries to the right of the current position, treating it
+                // as the new gap.
+                keys[gapSlot] = existing;
+
+                /*! #if ($RH) !*/
+                cached[gapSlot] = hash;
+                /*! #if($DEBUG) !*/
+                assert cached[gapSlot] == REHASH(existing);
+                /*! #end !*/
+                /*! #end !*/
+
+                gapSlot = slot;
+                distance = 0;
+            }
+        } //end while
+
+        // Mark the last found gap slot without a conflict as empty.
+        keys[gapSlot] = Intrinsics.<KType> empty();
+
+        this.assigned--;
+    }
+
+    /**
+     * Same as {@link #shiftConflictingKeys(int)}, applied to the old buffers of
+     * a pending incremental resize. Shifted keys never leave the not-yet-migrated slots
+     * because the migrated ones are empty.
+     */
+    private void shiftOldConflictingKeys(int gapSlot) {
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.oldKeys);
+
+        final int mask = keys.length - 1;
+
+        /*! #if ($RH) !*/
+        final int[] cached = this.oldHashCache;
+        /*!  #else
+         final int perturb = this.perturbation;
+         #end !*/
+
+        int distance = 0;
+
+        while (true) {
+
+            final int slot = (gapSlot + (++distance)) & mask;
+
+            final KType existing = keys[slot];
+
+            if (Intrinsics.<KType> isEmpty(existing)) {
+                break;
+            }
+
+            /*! #if ($RH) !*/
+            final int hash = cached[slot];
+            final int idealSlotModMask = hash & mask;
+            /*! #else
+            final int idealSlotModMask = REHASH2(existing, perturb) & mask;
+            #end !*/
+
+            final int shift = (slot - idealSlotModMask) & mask;
+
+            if (shift >= distance) {
+
+                keys[gapSlot] = existing;
+
+                /*! #if ($RH) !*/
+                cached[gapSlot] = hash;
+                /*! #end !*/
+
+                gapSlot = slot;
+                distance = 0;
+            }
+        } //end while
+
+        keys[gapSlot] = Intrinsics.<KType> empty();
+
+        this.assigned--;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean contains(final KType key) {
+
+        if (Intrinsics.<KType> isEmpty(key)) {
+
+            return this.allocatedDefaultKey;
+        }
+
+        if (this.oldKeys != null) {
+            migrateSlots();
+        }
+
+        final int mask = this.keys.length - 1;
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+
+        final int hash = REHASH(key);
+        int slot = hash & mask;
+        KType existing;
+
+        /*! #if ($RH) !*/
+        final int[] cached = this.hash_cache;
+        int dist = 0;
+        /*! #end !*/
+
+        while (!Intrinsics.<KType> isEmpty(existing = keys[slot])
+                /*! #if ($RH) !*/&& dist <= probe_distance(slot, cached) /*! #end !*/) {
+            if (/*! #if ($RH) !*/cached[slot] == hash && /*! #end !*/KEYEQUALS(key, existing)) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+
+            /*! #if ($RH) !*/
+            dist++;
+            /*! #end !*/
+        } //end while true
+
+        if (this.oldKeys != null) {
+
+            return oldSlotOf(key, hash) >= 0;
+        }
+
+        return false;
+    }
+
+    /**
+     * Looks up the slot of <code>key</code>, so that it can then be read, replaced
+     * or inserted without probing again, typically:
+     * <pre>
+     * int index = set.indexOf(key);
+     *
+     * if (!set.indexExists(index)) {
+     *     set.indexInsert(index, key);
+     * }
+     * </pre>
+     * <p>Any pending incremental resize is completed first. The returned index is only
+     * valid until the next modification of the set, apart from {@link #indexReplace}.</p>
+     *
+     * @return the index (&gt;= 0) of the slot of <code>key</code> if it is in the set, or else the bitwise complement (&lt; 0) of the
+     *         index of the slot where {@link #indexInsert} will put it. The index of the key 0/null is <code>keys.length</code>.
+     * @see #indexExists(int)
+     */
+    public int indexOf(final KType key) {
+
+        if (Intrinsics.<KType> isEmpty(key)) {
+
+            return this.allocatedDefaultKey ? this.keys.length : ~this.keys.length;
+        }
+
+        completeResize();
+
+        final int mask = this.keys.length - 1;
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+
+        final int hash = REHASH(key);
+        int slot = hash & mask;
+        KType existing;
+
+        /*! #if ($RH) !*/
+        final int[] cached = this.hash_cache;
+        int dist = 0;
+        /*! #end !*/
+
+        while (!Intrinsics.<KType> isEmpty(existing = keys[slot])) {
+
+            /*! #if ($RH) !*/
+            //Robin-hood: the key is not in the set past this slot, which is where add() would insert it.
+            if (dist > probe_distance(slot, cached)) {
+
+                return ~slot;
+            }
+            /*! #end !*/
+
+            if (/*! #if ($RH) !*/cached[slot] == hash && /*! #end !*/KEYEQUALS(key, existing)) {
+
+                return slot;
+            }
+
+            slot = (slot + 1) & mask;
+
+            /*! #if ($RH) !*/
+            dist++;
+            /*! #end !*/
+        } //end while true
+
+        return ~slot;
+    }
+
+    /**
+     * @return true if <code>index</code>, as returned by {@link #indexOf}, is the one of an existing key.
+     */
+    public boolean indexExists(final int index) {
+
+        assert index < 0 || index <= this.keys.length : "The index is out of range.";
+
+        return index >= 0;
+    }
+
+    /**
+     * @return the key stored at an existing <code>index</code>, as returned by {@link #indexOf}.
+     */
+    public KType indexGet(final int index) {
+
+        assert index >= 0 : "The index must point at an existing key.";
+        assert index <= this.keys.length : "The index is out of range.";
+
+        if (index == this.keys.length) {
+
+            assert this.allocatedDefaultKey;
+
+            return Intrinsics.<KType> empty();
+        }
+
+        assert is_allocated(index, Intrinsics.<KType[]> cast(this.keys));
+
+        return Intrinsics.<KType> cast(this.keys[index]);
+    }
+
+    /**
+     * Replace the key stored at an existing <code>index</code>, as returned by {@link #indexOf},
+     * by an equal key.
+     * @return the previous key.
+     */
+    public KType indexReplace(final int index, final KType equivalentKey) {
+
+        assert index >= 0 : "The index must point at an existing key.";
+        assert index <= this.keys.length : "The index is out of range.";
+
+        if (index == this.keys.length) {
+
+            assert this.allocatedDefaultKey;
+            assert Intrinsics.<KType> isEmpty(equivalentKey);
+
+            return Intrinsics.<KType> empty();
+        }
+
+        assert is_allocated(index, Intrinsics.<KType[]> cast(this.keys));
+        assert KEYEQUALS(equivalentKey, Intrinsics.<KType> cast(this.keys[index]));
+
+        final KType previousKey = Intrinsics.<KType> cast(this.keys[index]);
+        this.keys[index] = equivalentKey;
+
+        return previousKey;
+    }
+
+    /**
+     * Insert a key absent from the set, at the <code>index</code> returned by {@link #indexOf} for this key.
+     */
+    public void indexInsert(final int index, KType key) {
+
+        assert index < 0 : "The index must not point at an existing key.";
+        assert this.oldKeys == null : "The set has been modified since indexOf().";
+
+        int slot = ~index;
+
+        if (Intrinsics.<KType> isEmpty(key)) {
+
+            assert slot == this.keys.length;
+
+            this.allocatedDefaultKey = true;
+
+            return;
+        }
+
+        if (this.assigned == this.resizeAt) {
+
+            //the buffers are expanded, so the slot is meaningless
+            add(key);
+
+            return;
+        }
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+
+        /*! #if ($RH) !*/
+        final int mask = keys.length - 1;
+        final int[] cached = this.hash_cache;
+
+        KType tmpKey;
+        int tmpAllocated;
+        int hash = REHASH(key);
+        int dist = (slot - hash) & mask;
+        int existing_distance;
+
+        //Robin-hood: the key takes the slot from a richer key, which is in turn pushed forward, as in add().
+        while (is_allocated(slot, keys)) {
+
+            existing_distance = probe_distance(slot, cached);
+
+            if (dist > existing_distance) {
+
+                //swap current (key, hash) with slot places
+                tmpKey = keys[slot];
+                keys[slot] = key;
+                key = tmpKey;
+
+                tmpAllocated = cached[slot];
+                cached[slot] = hash;
+                hash = tmpAllocated;
+
+                dist = existing_distance;
+            }
+
+            slot = (slot + 1) & mask;
+            dist++;
+        } //end while
+
+        cached[slot] = hash;
+        /*! #else
+        assert !is_allocated(slot, keys);
+
+        final int mask = keys.length - 1;
+        final int hash = REHASH(key);
+        #end !*/
+
+        this.assigned++;
+
+        keys[slot] = key;
+
+        //distance of the last placed key from its ideal slot
+        final int probes = (slot - hash) & mask;
+
+        recordProbeLength(probes);
+
+        if (probes > this.reseedThreshold) {
+            reseed();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Does not release internal buffers.</p>
+     */
+    @Override
+    public void clear() {
+        this.assigned = 0;
+
+        //drop any pending incremental resize
+        this.oldKeys = null;
+
+        /*! #if ($RH) !*/
+        this.oldHashCache = null;
+        /*! #end !*/
+
+        // States are always cleared.
+        this.allocatedDefaultKey = false;
+
+        this.maxProbeLength = 0;
+        this.probeLengthSum = 0;
+        this.probedKeys = 0;
+
+        //Faster than Arrays.fill(keys, null); // Help the GC.
         KTypeArrays.blankArray(this.keys, 0, this.keys.length);
     }
 
@@ -706,6 +1481,8 @@ implements KTypeLookupContainer<KType>, KTypeSet<KType>, Cloneable
      */
     @Override
     public int hashCode() {
+        completeResize();
+
         int h = 0;
 
         //allocated default key has hash = 0
@@ -842,6 +1619,8 @@ implements KTypeLookupContainer<KType>, KTypeSet<KType>, Cloneable
      */
     @Override
     public EntryIterator iterator() {
+        completeResize();
+
         //return new EntryIterator();
         return this.entryIteratorPool.borrow();
     }
@@ -851,6 +1630,8 @@ implements KTypeLookupContainer<KType>, KTypeSet<KType>, Cloneable
      */
     @Override
     public <T extends KTypeProcedure<? super KType>> T forEach(final T procedure) {
+        completeResize();
+
         if (this.allocatedDefaultKey) {
 
             procedure.apply(Intrinsics.<KType> empty());
@@ -875,6 +1656,8 @@ implements KTypeLookupContainer<KType>, KTypeSet<KType>, Cloneable
      */
     @Override
     public KType[] toArray(final KType[] target) {
+        completeResize();
+
         int count = 0;
 
         if (this.allocatedDefaultKey) {
@@ -904,6 +1687,9 @@ implements KTypeLookupContainer<KType>, KTypeSet<KType>, Cloneable
         //clone to size() to prevent eventual exponential growth
         final KTypeHashSet<KType> cloned = new KTypeHashSet<KType>(this.size(), this.loadFactor);
 
+        cloned.incrementalResize = this.incrementalResize;
+        cloned.reseedThreshold = this.reseedThreshold;
+
         //We must NOT clone, because of the independent perturbation seeds
         cloned.addAll(this);
         
@@ -915,6 +1701,8 @@ implements KTypeLookupContainer<KType>, KTypeSet<KType>, Cloneable
      */
     @Override
     public <T extends KTypePredicate<? super KType>> T forEach(final T predicate) {
+        completeResize();
+
         if (this.allocatedDefaultKey) {
 
             if (!predicate.apply(Intrinsics.<KType> empty())) {
@@ -944,6 +1732,8 @@ implements KTypeLookupContainer<KType>, KTypeSet<KType>, Cloneable
      */
     @Override
     public int removeAll(final KTypePredicate<? super KType> predicate) {
+        completeResize();
+
         final int before = this.size();
 
         if (this.allocatedDefaultKey) {
@@ -969,6 +1759,148 @@ implements KTypeLookupContainer<KType>, KTypeSet<KType>, Cloneable
         return before - this.size();
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>If <code>c</code> is a smaller set of the same class, its keys are removed one by one from this set
+     * instead of testing every key of this set.</p>
+     */
+    @Override
+    public int removeAll(final KTypeLookupContainer<? super KType> c) {
+
+        if (c == this) {
+
+            final int before = this.size();
+            clear();
+            return before;
+        }
+
+        final KTypeHashSet<KType> other = sameClassSet(c);
+
+        if (other == null || other.size() >= this.size()) {
+
+            return super.removeAll(c);
+        }
+
+        other.completeResize();
+
+        int removed = 0;
+
+        if (other.allocatedDefaultKey && this.allocatedDefaultKey) {
+
+            this.allocatedDefaultKey = false;
+            removed++;
+        }
+
+        final KType[] otherKeys = Intrinsics.<KType[]> cast(other.keys);
+
+        for (int i = otherKeys.length - 1; i >= 0; i--) {
+            KType existing;
+            if (!Intrinsics.<KType> isEmpty(existing = otherKeys[i]) && remove(existing)) {
+                removed++;
+            }
+        }
+
+        return removed;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Tests every key of this set against <code>c</code> in place, without going through a predicate.</p>
+     */
+    @Override
+    public int retainAll(final KTypeLookupContainer<? super KType> c) {
+
+        if (c == this) {
+            return 0;
+        }
+
+        completeResize();
+
+        final int before = this.size();
+
+        if (this.allocatedDefaultKey && !c.contains(Intrinsics.<KType> empty())) {
+
+            this.allocatedDefaultKey = false;
+        }
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+
+        for (int i = 0; i < keys.length;) {
+            KType existing;
+            if (!Intrinsics.<KType> isEmpty(existing = keys[i]) && !c.contains(existing)) {
+
+                shiftConflictingKeys(i);
+                // Shift, do not increment slot.
+            } else {
+                i++;
+            }
+        }
+
+        return before - this.size();
+    }
+
+    /**
+     * Returns the number of keys of this set contained in <code>c</code>, i.e the size of their intersection,
+     * without computing it. If <code>c</code> is a smaller set of the same class, its keys are looked up in this set instead.
+     */
+    public int intersectionSize(final KTypeLookupContainer<? super KType> c) {
+
+        if (c == this) {
+            return this.size();
+        }
+
+        final KTypeHashSet<KType> other = sameClassSet(c);
+
+        if (other != null && other.size() < this.size()) {
+
+            return other.countContainedIn(this);
+        }
+
+        return countContainedIn(c);
+    }
+
+    /**
+     * Number of keys of this set contained in <code>c</code>.
+     */
+    private int countContainedIn(final KTypeLookupContainer<? super KType> c) {
+
+        completeResize();
+
+        int count = 0;
+
+        if (this.allocatedDefaultKey && c.contains(Intrinsics.<KType> empty())) {
+            count++;
+        }
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+
+        for (int i = keys.length - 1; i >= 0; i--) {
+            KType existing;
+            if (!Intrinsics.<KType> isEmpty(existing = keys[i]) && c.contains(existing)) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * @return <code>c</code> as a set if it is of the same class as this one, so that its keys
+     * follow the same equivalence, or else null.
+     */
+    @SuppressWarnings("unchecked")
+    private KTypeHashSet<KType> sameClassSet(final KTypeLookupContainer<? super KType> c) {
+
+        if (c != null && c.getClass() == this.getClass()) {
+
+            return (KTypeHashSet<KType>) c;
+        }
+
+        return null;
+    }
+
     /**
      * Create a set from a variable number of arguments or an array of <code>KType</code>.
      */
@@ -978,6 +1910,284 @@ implements KTypeLookupContainer<KType>, KTypeSet<KType>, Cloneable
         return set;
     }
 
+    /**
+     * Create a set from an array of <code>KType</code> like {@link #from}, building it
+     * with up to <code>parallelism</code> tasks run by <code>executor</code>: the buffer is allocated once,
+     * then split into regions of contiguous slots (the keys being partitioned by the high bits of their home slot)
+     * filled concurrently. Small inputs are inserted sequentially.
+     */
+    public static <KType> KTypeHashSet<KType> parallelFrom(final KType[] elements, final ExecutorService executor,
+            final int parallelism) {
+
+        final KTypeHashSet<KType> set = new KTypeHashSet<KType>(elements.length);
+
+        final int nbRegions = HashRegions.regionCount(set.keys.length, parallelism);
+
+        if (nbRegions == 1) {
+
+            set.add(elements);
+        } else {
+
+            set.fillParallel(elements, executor, parallelism, nbRegions);
+        }
+
+        return set;
+    }
+
+    /**
+     * Fill this empty set, whose buffer must already be big enough for all the keys,
+     * splitting the buffer into nbRegions (a power of two) regions filled concurrently.
+     */
+    void fillParallel(final KType[] elements, final ExecutorService executor, final int parallelism, final int nbRegions) {
+
+        assert this.assigned == 0 && !this.allocatedDefaultKey && this.oldKeys == null : "Set must be empty";
+        assert elements.length < this.resizeAt || elements.length == 0 : "Buffer must be big enough";
+
+        final int mask = this.keys.length - 1;
+        final int regionShift = Integer.numberOfTrailingZeros(this.keys.length / nbRegions);
+        final int nbTasks = Math.max(1, Math.min(parallelism, elements.length));
+
+        //1) compute the hashes
+        final int[] hashes = new int[elements.length];
+
+        final List<Callable<Boolean>> homeTasks = new ArrayList<Callable<Boolean>>(nbTasks);
+
+        for (int t = 0; t < nbTasks; t++) {
+
+            final int from = HashRegions.chunkStart(elements.length, nbTasks, t);
+            final int to = HashRegions.chunkStart(elements.length, nbTasks, t + 1);
+
+            homeTasks.add(new Callable<Boolean>() {
+
+                @Override
+                public Boolean call() {
+
+                    return hashKeys(elements, hashes, from, to);
+                }
+            });
+        }
+
+        for (final Boolean hasDefaultKey : HashRegions.invokeAll(executor, homeTasks)) {
+
+            this.allocatedDefaultKey |= hasDefaultKey;
+        }
+
+        //2) group the keys by region
+        final int[] regionStarts = new int[nbRegions + 1];
+        final int[] sorted = HashRegions.sortByRegion(hashes, mask, regionShift, regionStarts, executor, parallelism);
+
+        //3) fill each region independently, setting aside the keys which would overflow it
+        final List<RegionOverflow> overflows = new ArrayList<RegionOverflow>(nbRegions);
+        final List<Callable<Integer>> regionTasks = new ArrayList<Callable<Integer>>(nbRegions);
+
+        for (int r = 0; r < nbRegions; r++) {
+
+            final int from = regionStarts[r];
+            final int to = regionStarts[r + 1];
+            final int regionEnd = (r + 1) << regionShift;
+            final RegionOverflow overflow = new RegionOverflow();
+
+            overflows.add(overflow);
+
+            regionTasks.add(new Callable<Integer>() {
+
+                @Override
+                public Integer call() {
+
+                    return fillRegion(elements, hashes, sorted, from, to, regionEnd, overflow);
+                }
+            });
+        }
+
+        for (final Integer regionAssigned : HashRegions.invokeAll(executor, regionTasks)) {
+
+            this.assigned += regionAssigned;
+        }
+
+        //account for the probe lengths of the regions, as add() would have, then reseed if needed
+        for (final RegionOverflow overflow : overflows) {
+
+            this.probeLengthSum += overflow.probeLengthSum;
+            this.probedKeys += overflow.probedKeys;
+
+            if (overflow.maxProbeLength > this.maxProbeLength) {
+                this.maxProbeLength = overflow.maxProbeLength;
+            }
+        }
+
+        if (this.maxProbeLength > this.reseedThreshold) {
+            reseed();
+        }
+
+        //4) add the overflowing keys
+        for (final RegionOverflow overflow : overflows) {
+
+            for (int i = 0; i < overflow.size; i++) {
+
+                add(overflow.keys[i]);
+            }
+        }
+    }
+
+    /**
+     * Compute the hashes of elements[from] to elements[to - 1] into hashes, 0 for the key 0/null.
+     * @return true if the key 0/null is among them.
+     */
+    private boolean hashKeys(final KType[] elements, final int[] hashes, final int from, final int to) {
+
+        boolean hasDefaultKey = false;
+
+        for (int i = from; i < to; i++) {
+
+            if (Intrinsics.<KType> isEmpty(elements[i])) {
+
+                hashes[i] = 0;
+                hasDefaultKey = true;
+            } else {
+
+                hashes[i] = REHASH(elements[i]);
+            }
+        }
+
+        return hasDefaultKey;
+    }
+
+    /**
+     * Add the keys of indices sorted[from] to sorted[to - 1], all having their home slot in the same region ending at regionEnd,
+     * probing only up to regionEnd: a key which would be placed beyond is added to overflow instead. The keys 0/null are skipped.
+     * Regions being disjoint, several regions can be filled concurrently.
+     * @return the number of slots newly assigned.
+     */
+    private int fillRegion(final KType[] elements, final int[] hashes, final int[] sorted,
+            final int from, final int to, final int regionEnd, final RegionOverflow overflow) {
+
+        final int mask = this.keys.length - 1;
+
+        final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+
+        /*! #if ($RH) !*/
+        final int[] cached = this.hash_cache;
+
+        KType tmpKey;
+        int tmpAllocated;
+        int existing_distance;
+        /*! #end !*/
+
+        int regionAssigned = 0;
+
+        nextKey: for (int n = from; n < to; n++) {
+
+            final int index = sorted[n];
+
+            KType key = elements[index];
+
+            if (Intrinsics.<KType> isEmpty(key)) {
+                continue;
+            }
+
+            int hash = hashes[index];
+            int slot = hash & mask;
+            KType existing;
+
+            /*! #if ($RH) !*/
+            int dist = 0;
+            /*! #end !*/
+
+            while (!Intrinsics.<KType> isEmpty(existing = keys[slot])) {
+
+                /*! #if ($RH) !*/
+                existing_distance = probe_distance(slot, cached);
+                /*! #end !*/
+
+                if (/*! #if ($RH) !*/dist <= existing_distance && cached[slot] == hash && /*! #end !*/KEYEQUALS(key, existing)) {
+
+                    continue nextKey;
+                }
+
+                /*! #if ($RH) !*/
+                //same Robin-hood swap as in add()
+                if (dist > existing_distance) {
+
+                    tmpKey = keys[slot];
+                    keys[slot] = key;
+                    key = tmpKey;
+
+                    tmpAllocated = cached[slot];
+                    cached[slot] = hash;
+                    hash = tmpAllocated;
+
+                    dist = existing_distance;
+                }
+                /*! #end !*/
+
+                slot++;
+
+                /*! #if ($RH) !*/
+                dist++;
+                /*! #end !*/
+
+                if (slot == regionEnd) {
+
+                    overflow.add(key);
+                    continue nextKey;
+                }
+            } //end while
+
+            keys[slot] = key;
+
+            /*! #if ($RH) !*/
+            cached[slot] = hash;
+            /*! #end !*/
+
+            regionAssigned++;
+
+            overflow.recordProbeLength((slot - hash) & mask);
+        }
+
+        return regionAssigned;
+    }
+
+    /**
+     * Keys set aside by {@link #fillRegion}, and probe lengths of the keys it placed.
+     */
+    private final class RegionOverflow
+    {
+        KType[] keys = Intrinsics.<KType> newArray(Containers.DEFAULT_EXPECTED_ELEMENTS);
+
+        int size;
+
+        int maxProbeLength;
+
+        long probeLengthSum;
+
+        int probedKeys;
+
+        void recordProbeLength(final int probes) {
+
+            this.probeLengthSum += probes;
+            this.probedKeys++;
+
+            if (probes > this.maxProbeLength) {
+                this.maxProbeLength = probes;
+            }
+        }
+
+        void add(final KType key) {
+
+            if (this.size == this.keys.length) {
+
+                final KType[] newKeys = Intrinsics.<KType> newArray(this.size << 1);
+
+                System.arraycopy(this.keys, 0, newKeys, 0, this.size);
+
+                this.keys = newKeys;
+            }
+
+            this.keys[this.size] = key;
+            this.size++;
+        }
+    }
+
     /**
      * Create a set from elements of another container.
      */
@@ -1018,12 +2228,13 @@ implements KTypeLookupContainer<KType>, KTypeSet<KType>, Cloneable
     /*! #if ($RH) !*/
     private int probe_distance(final int slot, final int[] cached) {
 
-        final int rh = cached[slot];
+        final int rh = cached[slot] & (cached.length - 1);
 
         /*! #if($DEBUG) !*/
-        //Check : cached hashed slot is == computed value
-        final int mask = cached.length - 1;
-        assert rh == (REHASH(Intrinsics.<KType> cast(this.keys[slot])) & mask);
+        //Check : cached hash is == computed value
+        //(the cache may be the one of the old buffers during an incremental resize)
+        final Object[] cachedKeys = (cached == this.hash_cache) ? this.keys : this.oldKeys;
+        assert cached[slot] == REHASH(Intrinsics.<KType> cast(cachedKeys[slot]));
         /*! #end !*/
 
         if (slot < rh) {
@@ -0,0 +1,740 @@
+package com.carrotsearch.hppcrt.sets;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import com.carrotsearch.hppcrt.*;
+import com.carrotsearch.hppcrt.cursors.*;
+import com.carrotsearch.hppcrt.predicates.*;
+import com.carrotsearch.hppcrt.procedures.*;
+import com.carrotsearch.hppcrt.hash.*;
+
+/*! #import("com/carrotsearch/hppcrt/Intrinsics.java") !*/
+/*! ${TemplateOptions.doNotGenerateKType("OBJECT")} !*/
+/**
+ * A read-only hash set of <code>KType</code>s, memory-mapped from a file
+ * written by {@link #freeze(KTypeContainer, File)}.
+ *
+ * <p>
+ * The file holds the hash table itself: a header of {@link #HEADER_SIZE} bytes then the buffer of keys, in little-endian order,
+ * the same layout as the files of the <code>KTypeVTypeMappedHashMap</code>s without the values. {@link #open(File)} only maps it,
+ * and lookups are done directly against the mapped pages: opening is O(1) whatever the size of the set,
+ * the pages are only loaded on access, and the OS page cache is shared by all the processes mapping the same file.
+ * </p>
+ *
+ * <p>
+ * The number of slots can go up to 2^32, so {@link #size()} and {@link #capacity()} saturate to {@link Integer#MAX_VALUE},
+ * see {@link #longSize()} and {@link #longCapacity()}. The iteration cursors return the slot of the key as index,
+ * or the number of slots for the key 0, as long as it fits in an int, -1 otherwise.
+ * {@link #release()} unmaps the file right away, instead of waiting for the set to be garbage collected,
+ * after which the set must not be used anymore.
+ * </p>
+ */
+/*! ${TemplateOptions.generatedAnnotation} !*/
+public class KTypeMappedHashSet<KType> implements KTypeLookupContainer<KType>
+{
+    /**
+     * First bytes of a frozen file, "HPRT".
+     */
+    static final int MAGIC = 0x48505254;
+
+    /**
+     * Version of the file layout.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * Size of the file header, in bytes.
+     */
+    public static final int HEADER_SIZE = 64;
+
+    /**
+     * Maximum number of slots of the buffer.
+     */
+    public static final long MAX_SLOTS = 1L << 32;
+
+    /**
+     * Default page size, in number of slots.
+     */
+    static final int DEFAULT_PAGE_SHIFT = 27;
+
+    /**
+     * Size of a key in bytes, as a power of two.
+     */
+    private static final int KEY_SHIFT =
+            /*! #if ($TemplateOptions.isKType("BYTE"))
+            0
+            #elseif ($TemplateOptions.isKType("CHAR", "SHORT"))
+            1
+            #elseif ($TemplateOptions.isKType("INT", "FLOAT"))
+            2
+            #else !*/
+            3
+            /*! #end !*/;
+
+    /**
+     * Type of the keys, as a JVM type descriptor.
+     */
+    private static final char KEY_TYPE =
+            /*! #if ($TemplateOptions.isKType("BYTE"))
+            'B'
+            #elseif ($TemplateOptions.isKType("CHAR"))
+            'C'
+            #elseif ($TemplateOptions.isKType("SHORT"))
+            'S'
+            #elseif ($TemplateOptions.isKType("INT"))
+            'I'
+            #elseif ($TemplateOptions.isKType("LONG"))
+            'J'
+            #elseif ($TemplateOptions.isKType("FLOAT"))
+            'F'
+            #elseif ($TemplateOptions.isKType("DOUBLE"))
+            'D'
+            #else !*/
+            'L'
+            /*! #end !*/;
+
+    /**
+     * Type of the values: none.
+     */
+    private static final char VALUE_TYPE = 'V';
+
+    /**
+     * Mapped pages of the hash-indexed buffer holding all keys, the key of slot <code>s</code>
+     * being in page <code>s >>> pageShift</code>. null once released.
+     */
+    protected ByteBuffer[] keyPages;
+
+    /**
+     * Number of slots - 1 of the buffer.
+     */
+    protected final long mask;
+
+    /**
+     * Number of slots of a page, as a power of two.
+     */
+    protected final int pageShift;
+
+    /**
+     * True if key = 0 is in the set.
+     */
+    protected boolean allocatedDefaultKey;
+
+    /**
+     * Number of assigned slots in {@link #keyPages}.
+     */
+    protected long assigned;
+
+    /**
+     * Seed of the hashing of the keys, from the file.
+     */
+    private final int perturbation;
+
+    /**
+     * Wraps mapped pages.
+     */
+    private KTypeMappedHashSet(final ByteBuffer[] keyPages, final long slots, final long assigned,
+            final boolean allocatedDefaultKey, final int pageShift, final int perturbation) {
+
+        this.keyPages = keyPages;
+        this.mask = slots - 1;
+        this.assigned = assigned;
+        this.allocatedDefaultKey = allocatedDefaultKey;
+        this.pageShift = pageShift;
+        this.perturbation = perturbation;
+    }
+
+    /**
+     * Write all the distinct keys of a container into <code>file</code>, overwritten if it exists,
+     * as a hash table that {@link #open(File)} maps as is.
+     */
+    public static <KType> void freeze(final KTypeContainer<KType> container, final File file) throws IOException {
+
+        KTypeMappedHashSet.freeze(container, file, KTypeMappedHashSet.DEFAULT_PAGE_SHIFT);
+    }
+
+    /**
+     * {@link #freeze(KTypeContainer, File)} with pages of 2^pageShift slots (for tests).
+     */
+    @SuppressWarnings("boxing")
+    static <KType> void freeze(final KTypeContainer<KType> container, final File file, final int pageShift) throws IOException {
+
+        final long slots = KTypeMappedHashSet.minBufferSize(container.size());
+        final int perturbation = Containers.randomSeed32();
+
+        final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+
+        ByteBuffer[] keyPages = null;
+
+        try {
+            //start from a zero-filled file, i.e. all slots empty
+            raf.setLength(0);
+            raf.setLength(KTypeMappedHashSet.HEADER_SIZE + (slots << KTypeMappedHashSet.KEY_SHIFT));
+
+            final FileChannel channel = raf.getChannel();
+
+            keyPages = DirectBuffers.map(channel, FileChannel.MapMode.READ_WRITE, KTypeMappedHashSet.HEADER_SIZE, slots,
+                    KTypeMappedHashSet.KEY_SHIFT, pageShift);
+
+            //fill the table in place, sized so that it never grows
+            final KTypeMappedHashSet<KType> table = new KTypeMappedHashSet<KType>(keyPages, slots, 0, false, pageShift, perturbation);
+
+            for (final KTypeCursor<KType> c : container) {
+                table.insert(c.value);
+            }
+
+            for (final ByteBuffer page : keyPages) {
+                ((MappedByteBuffer) page).force();
+            }
+
+            //the header is written last, so that an interrupted freeze() never leaves a valid file.
+            final ByteBuffer header = ByteBuffer.allocate(KTypeMappedHashSet.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+            header.putInt(0, KTypeMappedHashSet.MAGIC);
+            header.putInt(4, KTypeMappedHashSet.VERSION);
+            header.putChar(8, KTypeMappedHashSet.KEY_TYPE);
+            header.putChar(10, KTypeMappedHashSet.VALUE_TYPE);
+            header.putInt(12, pageShift);
+            header.putInt(16, perturbation);
+            header.put(20, (byte) (table.allocatedDefaultKey ? 1 : 0));
+            header.putLong(24, slots);
+            header.putLong(32, table.assigned);
+
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+
+            channel.force(true);
+
+        } finally {
+
+            KTypeMappedHashSet.unmap(keyPages);
+
+            raf.close();
+        }
+    }
+
+    /**
+     * Map a file written by {@link #freeze(KTypeContainer, File)}, read-only.
+     * @throws IOException if the file cannot be read, or is not a frozen set of the same key type.
+     */
+    @SuppressWarnings("boxing")
+    public static <KType> KTypeMappedHashSet<KType> open(final File file) throws IOException {
+
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+
+        try {
+            final FileChannel channel = raf.getChannel();
+
+            final ByteBuffer header = ByteBuffer.allocate(KTypeMappedHashSet.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+            while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+                //read the whole header
+            }
+
+            if (header.hasRemaining() || header.getInt(0) != KTypeMappedHashSet.MAGIC) {
+
+                throw new IOException("Not a frozen hash set file: " + file);
+            }
+
+            if (header.getInt(4) != KTypeMappedHashSet.VERSION) {
+
+                throw new IOException(String.format("Unsupported frozen hash set version %d (expected %d): %s",
+                        header.getInt(4), KTypeMappedHashSet.VERSION, file));
+            }
+
+            if (header.getChar(8) != KTypeMappedHashSet.KEY_TYPE || header.getChar(10) != KTypeMappedHashSet.VALUE_TYPE) {
+
+                throw new IOException(String.format("Frozen hash container of '%c' keys and '%c' values, expected a set of '%c' keys: %s",
+                        header.getChar(8), header.getChar(10), KTypeMappedHashSet.KEY_TYPE, file));
+            }
+
+            final int pageShift = header.getInt(12);
+            final long slots = header.getLong(24);
+            final long assigned = header.getLong(32);
+
+            if (pageShift < 0 || pageShift > KTypeMappedHashSet.DEFAULT_PAGE_SHIFT
+                    || slots < HashContainers.MIN_HASH_ARRAY_LENGTH || slots > KTypeMappedHashSet.MAX_SLOTS
+                    || Long.bitCount(slots) != 1 || assigned < 0 || assigned >= slots
+                    || raf.length() < KTypeMappedHashSet.HEADER_SIZE + (slots << KTypeMappedHashSet.KEY_SHIFT)) {
+
+                throw new IOException("Corrupted frozen hash set file: " + file);
+            }
+
+            final ByteBuffer[] keyPages = DirectBuffers.map(channel, FileChannel.MapMode.READ_ONLY, KTypeMappedHashSet.HEADER_SIZE,
+                    slots, KTypeMappedHashSet.KEY_SHIFT, pageShift);
+
+            //the mapping outlives the channel
+            return new KTypeMappedHashSet<KType>(keyPages, slots, assigned, header.get(20) != 0, pageShift, header.getInt(16));
+
+        } finally {
+
+            raf.close();
+        }
+    }
+
+    /**
+     * Insert a key while freezing, the buffer being large enough.
+     */
+    private void insert(final KType key) {
+
+        if (Intrinsics.<KType> isEmpty(key)) {
+
+            this.allocatedDefaultKey = true;
+            return;
+        }
+
+        final long mask = this.mask;
+        final ByteBuffer[] keyPages = this.keyPages;
+
+        long slot = REHASH(key) & mask;
+        KType existing;
+
+        while (!Intrinsics.<KType> isEmpty(existing = keyAt(keyPages, slot))) {
+
+            if (Intrinsics.<KType> equalsNotNull(key, existing)) {
+                return;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        setKeyAt(keyPages, slot, key);
+        this.assigned++;
+    }
+
+    /**
+     * Gives the number of slots able to accommodate elements with the default load factor,
+     * keeping at least one empty slot.
+     */
+    @SuppressWarnings("boxing")
+    private static long minBufferSize(final long elements) {
+
+        //Assure room for one additional slot (marking the not-allocated) + one more as safety margin.
+        long length = (long) (elements / HashContainers.DEFAULT_LOAD_FACTOR) + 2;
+
+        //Then, round it to the next power of 2.
+        length = Math.max(HashContainers.MIN_HASH_ARRAY_LENGTH, BitUtil.nextHighestPowerOfTwo(length));
+
+        if (length > KTypeMappedHashSet.MAX_SLOTS) {
+
+            throw new BufferAllocationException("Maximum number of slots exceeded (elements: %d)", elements);
+        }
+
+        return length;
+    }
+
+    /**
+     * Unmap pages, if any.
+     */
+    private static void unmap(final ByteBuffer[] pages) {
+
+        if (pages != null) {
+
+            for (final ByteBuffer page : pages) {
+                DirectBuffers.release(page);
+            }
+        }
+    }
+
+    /**
+     * Unmap the file right away, instead of waiting for the set to be garbage collected.
+     * The set is then empty and must not be used anymore, apart
+     * from {@link #isReleased()} and {@link #release()} which does nothing once released.
+     */
+    public void release() {
+
+        if (this.keyPages != null) {
+
+            KTypeMappedHashSet.unmap(this.keyPages);
+
+            this.keyPages = null;
+            this.assigned = 0;
+            this.allocatedDefaultKey = false;
+        }
+    }
+
+    /**
+     * @return true if {@link #release()} has been called.
+     */
+    public boolean isReleased() {
+
+        return this.keyPages == null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean contains(final KType key) {
+
+        if (Intrinsics.<KType> isEmpty(key)) {
+
+            return this.allocatedDefaultKey;
+        }
+
+        final long mask = this.mask;
+        final ByteBuffer[] keyPages = this.keyPages;
+
+        long slot = REHASH(key) & mask;
+        KType existing;
+
+        while (!Intrinsics.<KType> isEmpty(existing = keyAt(keyPages, slot))) {
+
+            if (Intrinsics.<KType> equalsNotNull(key, existing)) {
+                return true;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>Saturates to {@link Integer#MAX_VALUE}, see {@link #longSize()}.</p>
+     */
+    @Override
+    public int size() {
+        return (int) Math.min(longSize(), Integer.MAX_VALUE);
+    }
+
+    /**
+     * The number of keys of the set.
+     */
+    public long longSize() {
+        return this.assigned + (this.allocatedDefaultKey ? 1 : 0);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>Saturates to {@link Integer#MAX_VALUE}, see {@link #longCapacity()}.</p>
+     */
+    @Override
+    public int capacity() {
+        return (int) Math.min(longCapacity(), Integer.MAX_VALUE);
+    }
+
+    /**
+     * The number of keys the buffer can hold, i.e. its number of slots minus the one always empty.
+     */
+    public long longCapacity() {
+        return this.mask;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEmpty() {
+        return longSize() == 0;
+    }
+
+    /**
+     * An iterator implementation for {@link #iterator}.
+     * Holds a KTypeCursor returning (value, index) = (KType value, index the slot of the key, or the number of slots for key = 0)
+     */
+    public final class EntryIterator extends AbstractIterator<KTypeCursor<KType>>
+    {
+        public final KTypeCursor<KType> cursor;
+
+        private long slot;
+
+        public EntryIterator() {
+            this.cursor = new KTypeCursor<KType>();
+            this.cursor.index = -2;
+        }
+
+        /**
+         * Iterate backwards w.r.t the buffer, to
+         * minimize collision chains when filling another hash container (ex. with addAll())
+         */
+        @Override
+        protected KTypeCursor<KType> fetch() {
+
+            final long slots = KTypeMappedHashSet.this.mask + 1;
+
+            if (this.slot == slots + 1) {
+
+                this.slot = slots;
+
+                if (KTypeMappedHashSet.this.allocatedDefaultKey) {
+
+                    this.cursor.index = KTypeMappedHashSet.cursorIndex(slots);
+                    this.cursor.value = Intrinsics.<KType> empty();
+
+                    return this.cursor;
+                }
+                //no default key, continue iteration...
+            }
+
+            final ByteBuffer[] keyPages = KTypeMappedHashSet.this.keyPages;
+
+            long i = this.slot - 1;
+            KType existing = Intrinsics.<KType> empty();
+
+            while (i >= 0 && Intrinsics.<KType> isEmpty(existing = keyAt(keyPages, i))) {
+                i--;
+            }
+
+            if (i == -1) {
+                return done();
+            }
+
+            this.slot = i;
+            this.cursor.index = KTypeMappedHashSet.cursorIndex(i);
+            this.cursor.value = existing;
+
+            return this.cursor;
+        }
+    }
+
+    /**
+     * internal pool of EntryIterator
+     */
+    protected final IteratorPool<KTypeCursor<KType>, EntryIterator> entryIteratorPool = new IteratorPool<KTypeCursor<KType>, EntryIterator>(
+            new ObjectFactory<EntryIterator>() {
+
+                @Override
+                public EntryIterator create() {
+
+                    return new EntryIterator();
+                }
+
+                @Override
+                public void initialize(final EntryIterator obj) {
+                    obj.slot = KTypeMappedHashSet.this.mask + 2;
+                }
+
+                @Override
+                public void reset(final EntryIterator obj) {
+                    //nothing
+                }
+            });
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public EntryIterator iterator() {
+
+        return this.entryIteratorPool.borrow();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends KTypeProcedure<? super KType>> T forEach(final T procedure) {
+
+        if (this.allocatedDefaultKey) {
+
+            procedure.apply(Intrinsics.<KType> empty());
+        }
+
+        final ByteBuffer[] keyPages = this.keyPages;
+
+        //Iterate in reverse for side-stepping the longest conflict chain
+        //in another hash, in case apply() is actually used to fill another hash container.
+        for (long slot = this.mask; slot >= 0; slot--) {
+            KType existing;
+            if (!Intrinsics.<KType> isEmpty(existing = keyAt(keyPages, slot))) {
+                procedure.apply(existing);
+            }
+        }
+
+        return procedure;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends KTypePredicate<? super KType>> T forEach(final T predicate) {
+
+        if (this.allocatedDefaultKey) {
+
+            if (!predicate.apply(Intrinsics.<KType> empty())) {
+
+                return predicate;
+            }
+        }
+
+        final ByteBuffer[] keyPages = this.keyPages;
+
+        //Iterate in reverse for side-stepping the longest conflict chain
+        //in another hash, in case apply() is actually used to fill another hash container.
+        for (long slot = this.mask; slot >= 0; slot--) {
+            KType existing;
+            if (!Intrinsics.<KType> isEmpty(existing = keyAt(keyPages, slot))) {
+
+                if (!predicate.apply(existing)) {
+                    break;
+                }
+            }
+        }
+
+        return predicate;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public KType[] toArray(final KType[] target) {
+
+        int count = 0;
+
+        if (this.allocatedDefaultKey) {
+
+            target[count++] = Intrinsics.<KType> empty();
+        }
+
+        final ByteBuffer[] keyPages = this.keyPages;
+
+        for (long slot = 0; slot <= this.mask; slot++) {
+            KType existing;
+            if (!Intrinsics.<KType> isEmpty(existing = keyAt(keyPages, slot))) {
+                target[count++] = existing;
+            }
+        }
+
+        assert count == this.longSize();
+
+        return target;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @SuppressWarnings("boxing")
+    @Override
+    /*! #if ($TemplateOptions.KTypePrimitive)
+    public KType [] toArray()
+    #else !*/
+    public Object[] toArray()
+    /*! #end !*/
+    {
+        if (longSize() > Integer.MAX_VALUE) {
+
+            throw new BufferAllocationException("Too many elements for a '%s'.toArray(): %d", this.getClass().toString(), longSize());
+        }
+
+        return toArray(Intrinsics.<KType> newArray(size()));
+    }
+
+    /*! #if ($TemplateOptions.KTypeGeneric) !*/
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T[] toArray(final Class<T> componentClass) {
+
+        final T[] array = (T[]) java.lang.reflect.Array.newInstance(componentClass, size());
+
+        return (T[]) toArray((KType[]) array);
+    }
+
+    /*! #end !*/
+
+    /**
+     * Convert the contents of this set to a human-friendly string.
+     */
+    @Override
+    public String toString() {
+        final StringBuilder buffer = new StringBuilder();
+        buffer.append("[");
+
+        boolean first = true;
+        for (final KTypeCursor<KType> cursor : this) {
+            if (!first) {
+                buffer.append(", ");
+            }
+            buffer.append(cursor.value);
+            first = false;
+        }
+        buffer.append("]");
+        return buffer.toString();
+    }
+
+    /**
+     * The cursor index of a slot, -1 if it does not fit in an int.
+     */
+    private static int cursorIndex(final long slot) {
+
+        return (slot <= Integer.MAX_VALUE) ? (int) slot : -1;
+    }
+
+    /**
+     * Read the key of a slot of the key pages.
+     */
+    protected final KType keyAt(final ByteBuffer[] pages, final long slot) {
+
+        final ByteBuffer page = pages[(int) (slot >>> this.pageShift)];
+        final int offset = (int) (slot & ((1L << this.pageShift) - 1)) << KTypeMappedHashSet.KEY_SHIFT;
+
+        /*! #if ($TemplateOptions.isKType("BYTE"))
+        return page.get(offset);
+        #elseif ($TemplateOptions.isKType("CHAR"))
+        return page.getChar(offset);
+        #elseif ($TemplateOptions.isKType("SHORT"))
+        return page.getShort(offset);
+        #elseif ($TemplateOptions.isKType("INT"))
+        return page.getInt(offset);
+        #elseif ($TemplateOptions.isKType("LONG"))
+        return page.getLong(offset);
+        #elseif ($TemplateOptions.isKType("FLOAT"))
+        return page.getFloat(offset);
+        #elseif ($TemplateOptions.isKType("DOUBLE"))
+        return page.getDouble(offset);
+        #else !*/
+        throw new UnsupportedOperationException("Off-heap storage is for primitive keys only");
+        /*! #end !*/
+    }
+
+    /**
+     * Write the key of a slot of the key pages.
+     */
+    private void setKeyAt(final ByteBuffer[] pages, final long slot, final KType key) {
+
+        final ByteBuffer page = pages[(int) (slot >>> this.pageShift)];
+        final int offset = (int) (slot & ((1L << this.pageShift) - 1)) << KTypeMappedHashSet.KEY_SHIFT;
+
+        /*! #if ($TemplateOptions.isKType("BYTE"))
+        page.put(offset, key);
+        #elseif ($TemplateOptions.isKType("CHAR"))
+        page.putChar(offset, key);
+        #elseif ($TemplateOptions.isKType("SHORT"))
+        page.putShort(offset, key);
+        #elseif ($TemplateOptions.isKType("INT"))
+        page.putInt(offset, key);
+        #elseif ($TemplateOptions.isKType("LONG"))
+        page.putLong(offset, key);
+        #elseif ($TemplateOptions.isKType("FLOAT"))
+        page.putFloat(offset, key);
+        #elseif ($TemplateOptions.isKType("DOUBLE"))
+        page.putDouble(offset, key);
+        #else !*/
+        throw new UnsupportedOperationException("Off-heap storage is for primitive keys only");
+        /*! #end !*/
+    }
+
+    /*! #if ($TemplateOptions.declareInline("REHASH(value)",
+    "<*>==>(BitMixer.mix(value , this.perturbation) & 0xFFFFFFFFL)")) !*/
+    /**
+     * REHASH method for rehashing the keys, as an unsigned 32 bits hash.
+     * (inlined in generated code)
+     */
+    private long REHASH(final KType value) {
+
+        return BitMixer.mix(value.hashCode(), this.perturbation) & 0xFFFFFFFFL;
+    }
+    /*! #end !*/
+}
@@ -0,0 +1,27 @@
+package com.carrotsearch.hppcrt.strategies;
+
+/**
+ * Interface to support custom hashing of <code>KType</code>s,
+ * as replacement of either the natural hashing of primitives, or {@link Object#hashCode()} and {@link Object#equals(Object)} for objects.
+ * This is used by the custom hash containers, like <code>KTypeVTypeCustomHashMap</code> and <code>KTypeCustomHashSet</code>.
+ */
+/*! ${TemplateOptions.generatedAnnotation} !*/
+public interface KTypeHashingStrategy<KType>
+{
+    /**
+     * Compute the hash code of object, following the same semantic as {@link Object#hashCode()}:
+     * objects considered equal by {@link #equals} must have the same hash code.
+#if ($TemplateOptions.KTypeGeneric)
+     * <p>object is guaranteed to be non-null.</p>
+#end
+     */
+    int computeHashCode(KType object);
+
+    /**
+     * Compare o1 and o2 for equivalence, following the same semantic as {@link Object#equals(Object)}.
+#if ($TemplateOptions.KTypeGeneric)
+     * <p>o1 and o2 are guaranteed to be non-null.</p>
+#end
+     */
+    boolean equals(KType o1, KType o2);
+}
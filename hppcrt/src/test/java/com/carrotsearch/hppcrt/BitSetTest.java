@@ -0,0 +1,285 @@
+package com.carrotsearch.hppcrt;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.carrotsearch.hppcrt.cursors.IntCursor;
+import com.carrotsearch.hppcrt.cursors.LongCursor;
+import com.carrotsearch.hppcrt.procedures.IntProcedure;
+import com.carrotsearch.hppcrt.sets.IntHashSet;
+import com.carrotsearch.randomizedtesting.RandomizedRunner;
+
+@RunWith(RandomizedRunner.class)
+public class BitSetTest
+{
+    /**
+     * Build a pair of identical random sets, of up to <code>maxBits</code> bits.
+     */
+    private static BitSet randomSet(final Random rnd, final int maxBits, final java.util.BitSet reference) {
+
+        final BitSet bitSet = new BitSet(rnd.nextInt(maxBits + 1));
+
+        final int numBits = rnd.nextInt(maxBits + 1);
+
+        //vary the density
+        final int fill = 1 + rnd.nextInt(8);
+
+        for (int i = 0; i < numBits; i++) {
+
+            if (rnd.nextInt(fill) == 0) {
+
+                bitSet.set(i);
+                reference.set(i);
+            }
+        }
+
+        return bitSet;
+    }
+
+    private static void assertSameSet(final java.util.BitSet reference, final BitSet bitSet) {
+
+        Assert.assertEquals(reference.cardinality(), bitSet.cardinality());
+        Assert.assertEquals(reference.length(), bitSet.length());
+        Assert.assertEquals(reference.isEmpty(), bitSet.isEmpty());
+
+        for (int i = 0; i < reference.length() + 128; i++) {
+
+            Assert.assertEquals(reference.get(i), bitSet.get(i));
+            Assert.assertEquals(reference.get(i), bitSet.get((long) i));
+            Assert.assertEquals(reference.nextSetBit(i), bitSet.nextSetBit(i));
+            Assert.assertEquals(reference.nextSetBit(i), bitSet.nextSetBit((long) i));
+            Assert.assertEquals(reference.previousSetBit(i), bitSet.prevSetBit(i));
+            Assert.assertEquals(reference.previousSetBit(i), bitSet.prevSetBit((long) i));
+        }
+    }
+
+    /* */
+    @Test
+    public void testAgainstJavaBitSet() {
+
+        final Random rnd = new Random(0x11223344);
+
+        for (int round = 0; round < 200; round++) {
+
+            final java.util.BitSet reference = new java.util.BitSet();
+            final BitSet bitSet = randomSet(rnd, 1000, reference);
+
+            assertSameSet(reference, bitSet);
+
+            for (int i = 0; i < 200; i++) {
+
+                final int index = rnd.nextInt(1200);
+
+                switch (rnd.nextInt(4)) {
+
+                    case 0:
+                        bitSet.clear(index);
+                        reference.clear(index);
+                        break;
+                    case 1:
+                        bitSet.flip(index);
+                        reference.flip(index);
+                        break;
+                    case 2:
+                        Assert.assertEquals(reference.get(index), bitSet.getAndSet(index));
+                        reference.set(index);
+                        break;
+                    default:
+                        final int end = index + rnd.nextInt(200);
+                        bitSet.set(index, end);
+                        reference.set(index, end);
+                        break;
+                }
+            }
+
+            assertSameSet(reference, bitSet);
+        }
+    }
+
+    /* */
+    @Test
+    public void testSetOperations() {
+
+        final Random rnd = new Random(0x11223344);
+
+        for (int round = 0; round < 200; round++) {
+
+            final java.util.BitSet refA = new java.util.BitSet();
+            final java.util.BitSet refB = new java.util.BitSet();
+
+            final BitSet a = randomSet(rnd, 1000, refA);
+            final BitSet b = randomSet(rnd, 1000, refB);
+
+            java.util.BitSet expected = (java.util.BitSet) refA.clone();
+            expected.and(refB);
+            Assert.assertEquals(expected.cardinality(), BitSet.intersectionCount(a, b));
+            Assert.assertEquals(!expected.isEmpty(), a.intersects(b));
+
+            BitSet result = a.clone();
+            result.intersect(b);
+            assertSameSet(expected, result);
+
+            expected = (java.util.BitSet) refA.clone();
+            expected.or(refB);
+            Assert.assertEquals(expected.cardinality(), BitSet.unionCount(a, b));
+
+            result = a.clone();
+            result.union(b);
+            assertSameSet(expected, result);
+
+            expected = (java.util.BitSet) refA.clone();
+            expected.andNot(refB);
+            Assert.assertEquals(expected.cardinality(), BitSet.andNotCount(a, b));
+
+            result = a.clone();
+            result.andNot(b);
+            assertSameSet(expected, result);
+
+            expected = (java.util.BitSet) refA.clone();
+            expected.xor(refB);
+            Assert.assertEquals(expected.cardinality(), BitSet.xorCount(a, b));
+
+            result = a.clone();
+            result.xor(b);
+            assertSameSet(expected, result);
+
+            //the operands are left untouched
+            assertSameSet(refA, a);
+            assertSameSet(refB, b);
+        }
+    }
+
+    /* */
+    @Test
+    public void testEqualsIgnoresCapacity() {
+
+        final BitSet small = new BitSet(64);
+        final BitSet large = new BitSet(64 * 100);
+
+        small.set(3);
+        large.set(3);
+        large.set(6000);
+        large.clear(6000);
+
+        Assert.assertEquals(small, large);
+        Assert.assertEquals(large, small);
+        Assert.assertEquals(small.hashCode(), large.hashCode());
+        Assert.assertEquals(large, large.clone());
+
+        large.set(6000);
+        Assert.assertFalse(small.equals(large));
+        Assert.assertFalse(large.equals(small));
+
+        Assert.assertEquals(new BitSet(), new BitSet(1000));
+        Assert.assertEquals(new BitSet(0).hashCode(), new BitSet(1000).hashCode());
+    }
+
+    /* */
+    @Test
+    public void testLongIndexes() {
+
+        final BitSet bitSet = new BitSet(0);
+
+        final long big = 100005L;
+
+        bitSet.set(big);
+
+        Assert.assertTrue(bitSet.get(big));
+        Assert.assertFalse(bitSet.get(big - 1));
+        Assert.assertEquals(big + 1, bitSet.length());
+        Assert.assertEquals(big, bitSet.nextSetBit(0L));
+        Assert.assertEquals(big, bitSet.prevSetBit(Long.MAX_VALUE));
+        Assert.assertEquals(-1, bitSet.nextSetBit(big + 1));
+        Assert.assertEquals(1, bitSet.cardinality());
+
+        final LongLookupContainer view = bitSet.asLongLookupContainer();
+
+        Assert.assertTrue(view.contains(big));
+        Assert.assertArrayEquals(new long[] { big }, view.toArray());
+    }
+
+    /* */
+    @Test
+    public void testIntLookupContainerView() {
+
+        final Random rnd = new Random(0x11223344);
+
+        final BitSet bitSet = new BitSet();
+        final IntHashSet reference = new IntHashSet();
+
+        for (int i = 0; i < 5000; i++) {
+
+            final int value = rnd.nextInt(20000);
+
+            bitSet.set(value);
+            reference.add(value);
+        }
+
+        final IntLookupContainer view = bitSet.asIntLookupContainer();
+
+        Assert.assertEquals(reference.size(), view.size());
+        Assert.assertFalse(view.isEmpty());
+        Assert.assertFalse(view.contains(-1));
+
+        for (int i = 0; i < 20000; i++) {
+            Assert.assertEquals(reference.contains(i), view.contains(i));
+        }
+
+        //iteration in increasing order
+        int previous = -1;
+        int count = 0;
+
+        for (final IntCursor c : view) {
+
+            Assert.assertTrue(c.value > previous);
+            Assert.assertTrue(reference.contains(c.value));
+            previous = c.value;
+            count++;
+        }
+
+        Assert.assertEquals(reference.size(), count);
+
+        final int[] values = view.toArray();
+        Assert.assertEquals(reference.size(), values.length);
+
+        final IntHashSet copy = new IntHashSet();
+        copy.addAll(view);
+        Assert.assertEquals(reference, copy);
+
+        //usable as a lookup container
+        copy.removeAll(view);
+        Assert.assertTrue(copy.isEmpty());
+
+        final long sum = view.forEach(new IntProcedure() {
+
+            long sum;
+
+            @Override
+            public void apply(final int value) {
+                this.sum += value;
+            }
+        }).sum;
+
+        long expectedSum = 0;
+
+        for (final IntCursor c : reference) {
+            expectedSum += c.value;
+        }
+
+        Assert.assertEquals(expectedSum, sum);
+
+        //the view reflects the changes
+        bitSet.clear();
+        Assert.assertTrue(view.isEmpty());
+        Assert.assertFalse(view.iterator().hasNext());
+
+        bitSet.set(7);
+
+        for (final LongCursor c : bitSet.asLongLookupContainer()) {
+            Assert.assertEquals(7, c.value);
+        }
+    }
+}
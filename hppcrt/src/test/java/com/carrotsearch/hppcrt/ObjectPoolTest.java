@@ -0,0 +1,76 @@
+package com.carrotsearch.hppcrt;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.carrotsearch.randomizedtesting.RandomizedRunner;
+
+@RunWith(RandomizedRunner.class)
+public class ObjectPoolTest
+{
+    /**
+     * Counts the created objects.
+     */
+    private static final class CountingFactory implements ObjectFactory<Object>
+    {
+        int created;
+
+        @Override
+        public Object create() {
+            this.created++;
+            return new Object();
+        }
+
+        @Override
+        public void initialize(final Object obj) {
+            //nothing
+        }
+
+        @Override
+        public void reset(final Object obj) {
+            //nothing
+        }
+    }
+
+    /* */
+    @Test
+    public void testObjectsAllocatedByFirstBorrow() {
+
+        final CountingFactory factory = new CountingFactory();
+
+        final ObjectPool<Object> pool = new ObjectPool<Object>(factory, 4, new BoundedProportionalArraySizingStrategy());
+
+        Assert.assertEquals(0, factory.created);
+        Assert.assertNull(pool.arrayPool);
+
+        //already accounted for
+        Assert.assertEquals(4, pool.size());
+        Assert.assertEquals(4, pool.capacity());
+
+        final Object borrowed = pool.borrow();
+
+        Assert.assertEquals(4, factory.created);
+        Assert.assertEquals(3, pool.size());
+
+        pool.release(borrowed);
+
+        Assert.assertEquals(4, pool.size());
+        Assert.assertEquals(4, factory.created);
+    }
+
+    /* */
+    @Test
+    public void testReleaseBeforeBorrow() {
+
+        final CountingFactory factory = new CountingFactory();
+
+        final ObjectPool<Object> pool = new ObjectPool<Object>(factory, 4, new BoundedProportionalArraySizingStrategy());
+
+        //the pool is full, so the object is dropped
+        pool.release(new Object());
+
+        Assert.assertEquals(4, pool.size());
+        Assert.assertNotNull(pool.borrow());
+    }
+}
@@ -0,0 +1,132 @@
+package com.carrotsearch.hppcrt;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.carrotsearch.randomizedtesting.RandomizedRunner;
+
+@RunWith(RandomizedRunner.class)
+public class RankSelectBitVectorTest
+{
+    /**
+     * Check rank() and select() of all positions against a naive count.
+     */
+    private static void assertRankSelect(final long[] bits, final long numBits) {
+
+        final RankSelectBitVector vector = new RankSelectBitVector(bits, numBits);
+
+        long rank = 0;
+
+        for (long i = 0; i < numBits; i++) {
+
+            Assert.assertEquals(rank, vector.rank(i));
+            Assert.assertEquals(i - rank, vector.rank0(i));
+
+            final boolean set = (bits[(int) (i >>> 6)] & (1L << i)) != 0;
+
+            Assert.assertEquals(set, vector.get(i));
+
+            if (set) {
+
+                Assert.assertEquals(i, vector.select(rank));
+                rank++;
+            } else {
+
+                Assert.assertEquals(i, vector.select0(i - rank));
+            }
+        }
+
+        Assert.assertEquals(rank, vector.cardinality());
+        Assert.assertEquals(rank, vector.rank(numBits));
+        Assert.assertEquals(rank, vector.rank(Long.MAX_VALUE));
+        Assert.assertEquals(-1, vector.select(rank));
+        Assert.assertEquals(-1, vector.select(-1));
+        Assert.assertEquals(-1, vector.select0(numBits - rank));
+        Assert.assertEquals(-1, vector.select0(-1));
+    }
+
+    /* */
+    @Test
+    public void testAgainstNaive() {
+
+        final Random rnd = new Random(0x11223344);
+
+        for (int round = 0; round < 100; round++) {
+
+            final long[] bits = new long[rnd.nextInt(200)];
+
+            //from sparse to full
+            final int density = rnd.nextInt(5);
+
+            for (int i = 0; i < bits.length; i++) {
+
+                switch (density) {
+                    case 0:
+                        bits[i] = rnd.nextInt(8) == 0 ? 1L << rnd.nextInt(64) : 0L;
+                        break;
+                    case 1:
+                        bits[i] = rnd.nextLong() & rnd.nextLong() & rnd.nextLong();
+                        break;
+                    case 2:
+                        bits[i] = rnd.nextLong();
+                        break;
+                    case 3:
+                        bits[i] = rnd.nextLong() | rnd.nextLong();
+                        break;
+                    default:
+                        bits[i] = -1L;
+                        break;
+                }
+            }
+
+            //the last word may be partially used, with garbage beyond numBits
+            final long numBits = bits.length == 0 ? 0 : ((long) bits.length << 6) - rnd.nextInt(64);
+
+            assertRankSelect(bits, numBits);
+        }
+    }
+
+    /* */
+    @Test
+    public void testFromBitSet() {
+
+        final BitSet bitSet = new BitSet();
+
+        bitSet.set(3);
+        bitSet.set(1000, 5000);
+        bitSet.set(100000);
+
+        final RankSelectBitVector vector = new RankSelectBitVector(bitSet);
+
+        Assert.assertEquals(bitSet.cardinality(), vector.cardinality());
+        Assert.assertEquals(1, vector.rank(1000));
+        Assert.assertEquals(4001, vector.rank(5000));
+        Assert.assertEquals(3, vector.select(0));
+        Assert.assertEquals(1000, vector.select(1));
+        Assert.assertEquals(100000, vector.select(4001));
+
+        assertRankSelect(bitSet.bits, vector.numBits);
+    }
+
+    /* */
+    @Test
+    public void testSelect9() {
+
+        final Random rnd = new Random(0x11223344);
+
+        for (int i = 0; i < 10000; i++) {
+
+            final long x = rnd.nextLong() & rnd.nextLong();
+            final int count = Long.bitCount(x);
+
+            Assert.assertEquals(count, BroadWord.rank9(x));
+
+            for (int r = 1; r <= count; r++) {
+                Assert.assertEquals(BroadWord.selectNaive(x, r), BroadWord.select9(x, r));
+            }
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package com.carrotsearch.hppcrt.sets;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.carrotsearch.hppcrt.cursors.IntCursor;
+import com.carrotsearch.hppcrt.predicates.IntPredicate;
+import com.carrotsearch.hppcrt.procedures.IntProcedure;
+import com.carrotsearch.randomizedtesting.RandomizedRunner;
+
+@RunWith(RandomizedRunner.class)
+public class IntRoaringSetTest
+{
+    /**
+     * Fill both sets with random values, in a few chunks of random densities.
+     */
+    private static void fill(final Random rnd, final IntRoaringSet set, final IntHashSet reference) {
+
+        final int chunks = 1 + rnd.nextInt(4);
+
+        for (int chunk = 0; chunk < chunks; chunk++) {
+
+            //includes negative values, with high bits >= 0x8000
+            final int high = rnd.nextInt(6) - 3;
+
+            //from sparse to dense
+            final int count = rnd.nextInt(3 * IntRoaringSet.ARRAY_MAX_SIZE);
+
+            //in a sub range, so that it can be dense
+            final int range = 1 + rnd.nextInt(1 << 16);
+
+            for (int i = 0; i < count; i++) {
+
+                final int value = (high << 16) | rnd.nextInt(range);
+
+                Assert.assertEquals(reference.add(value), set.add(value));
+            }
+        }
+    }
+
+    private static void assertSameSet(final IntHashSet reference, final IntRoaringSet set) {
+
+        Assert.assertEquals(reference.size(), set.size());
+
+        for (final IntCursor c : reference) {
+            Assert.assertTrue(set.contains(c.value));
+        }
+
+        //iteration in unsigned order
+        int count = 0;
+        long previous = -1;
+
+        for (final IntCursor c : set) {
+
+            final long unsigned = c.value & 0xFFFFFFFFL;
+
+            Assert.assertTrue(unsigned > previous);
+            Assert.assertTrue(reference.contains(c.value));
+            Assert.assertEquals(count, c.index);
+
+            previous = unsigned;
+            count++;
+        }
+
+        Assert.assertEquals(reference.size(), count);
+
+        final int[] expected = reference.toArray();
+        final int[] actual = set.toArray();
+
+        Arrays.sort(expected);
+        Arrays.sort(actual);
+
+        Assert.assertArrayEquals(expected, actual);
+
+        //chunks are bitmaps if and only if they are dense
+        for (int i = 0; i < set.chunks; i++) {
+
+            final IntRoaringSet.Container c = set.containers[i];
+
+            Assert.assertTrue(c.cardinality > 0);
+            Assert.assertEquals(c.cardinality > IntRoaringSet.ARRAY_MAX_SIZE, c instanceof IntRoaringSet.BitmapContainer);
+        }
+    }
+
+    /* */
+    @Test
+    public void testAgainstHashSet() {
+
+        final Random rnd = new Random(0x11223344);
+
+        for (int round = 0; round < 50; round++) {
+
+            final IntHashSet reference = new IntHashSet();
+            final IntRoaringSet set = new IntRoaringSet();
+
+            fill(rnd, set, reference);
+            assertSameSet(reference, set);
+
+            Assert.assertFalse(set.contains(Integer.MAX_VALUE));
+            Assert.assertFalse(set.contains(1 << 20));
+
+            //remove half of the values, crossing the array / bitmap threshold
+            for (final int value : reference.toArray()) {
+
+                if (rnd.nextBoolean()) {
+
+                    Assert.assertTrue(set.remove(value));
+                    Assert.assertFalse(set.remove(value));
+                    reference.remove(value);
+                }
+            }
+
+            assertSameSet(reference, set);
+
+            final IntPredicate odd = new IntPredicate() {
+
+                @Override
+                public boolean apply(final int value) {
+                    return (value & 1) != 0;
+                }
+            };
+
+            Assert.assertEquals(reference.removeAll(odd), set.removeAll(odd));
+            assertSameSet(reference, set);
+
+            Assert.assertEquals(reference.hashCode(), set.hashCode());
+            Assert.assertEquals(set, set.clone());
+            Assert.assertEquals(set, IntRoaringSet.from(reference));
+
+            set.clear();
+            Assert.assertTrue(set.isEmpty());
+            Assert.assertFalse(set.iterator().hasNext());
+        }
+    }
+
+    /* */
+    @Test
+    public void testSetOperations() {
+
+        final Random rnd = new Random(0x11223344);
+
+        for (int round = 0; round < 50; round++) {
+
+            final IntHashSet refA = new IntHashSet();
+            final IntHashSet refB = new IntHashSet();
+
+            final IntRoaringSet a = new IntRoaringSet();
+            final IntRoaringSet b = new IntRoaringSet();
+
+            fill(rnd, a, refA);
+            fill(rnd, b, refB);
+
+            //against another roaring set, and against a hash set
+            IntHashSet expected = refA.clone();
+            expected.retainAll(refB);
+
+            Assert.assertEquals(expected.size(), a.intersectionSize(b));
+            Assert.assertEquals(expected.size(), a.intersectionSize(refB));
+
+            IntRoaringSet result = a.clone();
+            Assert.assertEquals(refA.size() - expected.size(), result.retainAll(b));
+            assertSameSet(expected, result);
+
+            result = a.clone();
+            result.retainAll(refB);
+            assertSameSet(expected, result);
+
+            expected = refA.clone();
+            expected.addAll(refB);
+
+            result = a.clone();
+            Assert.assertEquals(expected.size() - refA.size(), result.addAll(b));
+            assertSameSet(expected, result);
+
+            result = a.clone();
+            result.addAll(refB);
+            assertSameSet(expected, result);
+
+            expected = refA.clone();
+            expected.removeAll(refB);
+
+            result = a.clone();
+            Assert.assertEquals(refA.size() - expected.size(), result.removeAll(b));
+            assertSameSet(expected, result);
+
+            result = a.clone();
+            result.removeAll(refB);
+            assertSameSet(expected, result);
+
+            //a hash set can use a roaring set as a lookup container
+            expected = refA.clone();
+            expected.retainAll(b);
+            Assert.assertEquals(expected.size(), a.intersectionSize(b));
+
+            //the operands are left untouched
+            assertSameSet(refA, a);
+            assertSameSet(refB, b);
+        }
+    }
+
+    /* */
+    @Test
+    public void testForEach() {
+
+        final IntRoaringSet set = IntRoaringSet.from(-1, 0, 1, 1 << 16, 1 << 20);
+
+        for (int i = 0; i < 2 * IntRoaringSet.ARRAY_MAX_SIZE; i++) {
+            set.add((5 << 16) + 2 * i);
+        }
+
+        Assert.assertEquals(1, set.bitmapChunks());
+        Assert.assertEquals(4, set.arrayChunks());
+
+        final IntHashSet collected = new IntHashSet();
+
+        set.forEach(new IntProcedure() {
+
+            @Override
+            public void apply(final int value) {
+                collected.add(value);
+            }
+        });
+
+        Assert.assertEquals(set.size(), collected.size());
+        Assert.assertEquals(set.size(), set.intersectionSize(collected));
+
+        //stops at the first value refused
+        final int[] seen = new int[1];
+
+        set.forEach(new IntPredicate() {
+
+            @Override
+            public boolean apply(final int value) {
+                seen[0]++;
+                return value != (1 << 16);
+            }
+        });
+
+        Assert.assertEquals(3, seen[0]);
+    }
+}
@@ -0,0 +1,198 @@
+package com.carrotsearch.hppcrt.lists;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.*;
+
+import com.carrotsearch.hppcrt.*;
+import com.carrotsearch.hppcrt.cursors.*;
+import com.carrotsearch.hppcrt.predicates.*;
+import com.carrotsearch.hppcrt.procedures.*;
+
+/*! #import("com/carrotsearch/hppcrt/Intrinsics.java") !*/
+/*! ${TemplateOptions.doNotGenerateKType("BYTE", "CHAR", "SHORT", "FLOAT", "DOUBLE", "OBJECT")} !*/
+/**
+ * Tests for {@link KTypeEliasFanoSequence}.
+ */
+/*! ${TemplateOptions.generatedAnnotation} !*/
+public class KTypeEliasFanoSequenceTest<KType> extends AbstractKTypeTest<KType>
+{
+    /**
+     * Sorted random values, with duplicates.
+     */
+    private static int[] sortedValues(final Random rnd, final int size, final int min, final int range) {
+
+        final int[] values = new int[size];
+
+        for (int i = 0; i < size; i++) {
+            values[i] = min + rnd.nextInt(range);
+        }
+
+        Arrays.sort(values);
+
+        return values;
+    }
+
+    /**
+     * Reference successor search.
+     */
+    private static int nextGEQ(final int[] values, final int value) {
+
+        for (int i = 0; i < values.length; i++) {
+
+            if (values[i] >= value) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /* */
+    @Test
+    public void testAgainstArray() {
+
+        final Random rnd = new Random(0x11223344);
+
+        for (int round = 0; round < 200; round++) {
+
+            final int size = rnd.nextInt(500);
+            final int range = 1 + rnd.nextInt(rnd.nextBoolean() ? 100 : 1000000);
+            final int min = rnd.nextInt(2000) - 1000;
+
+            final int[] values = sortedValues(rnd, size, min, range);
+
+            final KTypeArrayList<KType> list = KTypeArrayList.from(asArray(values));
+
+            final KTypeEliasFanoSequence<KType> sequence = KTypeEliasFanoSequence.from(list);
+
+            Assert.assertEquals(size, sequence.size());
+            Assert.assertEquals(size == 0, sequence.isEmpty());
+
+            for (int i = 0; i < size; i++) {
+                Assert.assertEquals(values[i], castType(sequence.get(i)));
+            }
+
+            int count = 0;
+
+            for (final KTypeCursor<KType> c : sequence) {
+
+                Assert.assertEquals(count, c.index);
+                Assert.assertEquals(values[count], castType(c.value));
+                count++;
+            }
+
+            Assert.assertEquals(size, count);
+
+            final KType[] decoded = Intrinsics.<KType[]> cast(sequence.toArray());
+
+            for (int i = 0; i < size; i++) {
+                Assert.assertEquals(values[i], castType(decoded[i]));
+            }
+
+            //successors and lookups, around and between the values
+            for (int i = 0; i < 100; i++) {
+
+                final int probe = min - 10 + rnd.nextInt(range + 20);
+
+                Assert.assertEquals(nextGEQ(values, probe), sequence.nextGEQ(cast(probe)));
+                Assert.assertEquals(Arrays.binarySearch(values, probe) >= 0, sequence.contains(cast(probe)));
+            }
+
+            for (int i = 0; i < size; i++) {
+
+                Assert.assertEquals(nextGEQ(values, values[i]), sequence.nextGEQ(cast(values[i])));
+                Assert.assertTrue(sequence.contains(cast(values[i])));
+            }
+        }
+    }
+
+    /* */
+    @Test
+    public void testForEach() {
+
+        final int[] values = sortedValues(new Random(0x11223344), 1000, 0, 100000);
+
+        final KTypeEliasFanoSequence<KType> sequence = KTypeEliasFanoSequence.from(asArray(values));
+
+        final KTypeArrayList<KType> collected = new KTypeArrayList<KType>();
+
+        sequence.forEach(new KTypeProcedure<KType>() {
+
+            @Override
+            public void apply(final KType value) {
+                collected.add(value);
+            }
+        });
+
+        Assert.assertEquals(values.length, collected.size());
+
+        for (int i = 0; i < values.length; i++) {
+            Assert.assertEquals(values[i], castType(collected.get(i)));
+        }
+
+        //stops at the first value refused
+        final int[] seen = new int[1];
+
+        sequence.forEach(new KTypePredicate<KType>() {
+
+            @Override
+            public boolean apply(final KType value) {
+                seen[0]++;
+                return seen[0] < 10;
+            }
+        });
+
+        Assert.assertEquals(10, seen[0]);
+    }
+
+    /* */
+    @Test
+    public void testCompression() {
+
+        //on average 100 between values
+        final int[] values = sortedValues(new Random(0x11223344), 100000, 0, 10000000);
+
+        final KTypeEliasFanoSequence<KType> sequence = KTypeEliasFanoSequence.from(asArray(values));
+
+        Assert.assertEquals(6, sequence.lowBitsCount);
+
+        //2 + 6 bits per value, plus the indexes
+        Assert.assertTrue(sequence.bitsPerValue() < 10);
+    }
+
+    /* */
+    @Test
+    public void testEmptyAndSingle() {
+
+        final KTypeEliasFanoSequence<KType> empty = KTypeEliasFanoSequence.from(asArray());
+
+        Assert.assertTrue(empty.isEmpty());
+        Assert.assertEquals(-1, empty.nextGEQ(this.key1));
+        Assert.assertFalse(empty.contains(this.key1));
+        Assert.assertFalse(empty.iterator().hasNext());
+        Assert.assertEquals(0, empty.toArray().length);
+
+        final KTypeEliasFanoSequence<KType> single = KTypeEliasFanoSequence.from(asArray(5, 5, 5));
+
+        Assert.assertEquals(3, single.size());
+        Assert.assertEquals(0, single.nextGEQ(this.key1));
+        Assert.assertEquals(0, single.nextGEQ(this.key5));
+        Assert.assertEquals(-1, single.nextGEQ(this.key6));
+        Assert.assertEquals(5, castType(single.get(2)));
+    }
+
+    /* */
+    @Test
+    public void testUnsorted() {
+
+        try {
+            KTypeEliasFanoSequence.from(asArray(1, 3, 2));
+            Assert.fail();
+
+        } catch (final IllegalArgumentException e) {
+            //expected
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package com.carrotsearch.hppcrt.maps;
+
+import java.util.*;
+
+import org.junit.*;
+
+import com.carrotsearch.hppcrt.*;
+import com.carrotsearch.hppcrt.cursors.*;
+import com.carrotsearch.hppcrt.procedures.*;
+
+/*! #import("com/carrotsearch/hppcrt/Intrinsics.java") !*/
+/**
+ * Tests for {@link KTypeVTypeCache}.
+ */
+/*! ${TemplateOptions.generatedAnnotation} !*/
+public class KTypeVTypeCacheTest<KType, VType> extends AbstractKTypeVTypeTest<KType, VType>
+{
+    /**
+     * Per-test fresh initialized instance.
+     */
+    protected KTypeVTypeCache<KType, VType> cache;
+
+    /**
+     * Evicted entries, collected by the listener.
+     */
+    protected KTypeVTypeHashMap<KType, VType> evicted;
+
+    @Before
+    public void initialize() {
+
+        this.cache = new KTypeVTypeCache<KType, VType>(10);
+        this.evicted = new KTypeVTypeHashMap<KType, VType>();
+
+        this.cache.setEvictionListener(new KTypeVTypeProcedure<KType, VType>() {
+
+            @Override
+            public void apply(final KType key, final VType value) {
+
+                Assert.assertFalse(KTypeVTypeCacheTest.this.evicted.containsKey(key));
+                KTypeVTypeCacheTest.this.evicted.put(key, value);
+            }
+        });
+    }
+
+    /* */
+    @Test
+    public void testPutGetAndStatistics()
+    {
+        TestUtils.assertEquals2(this.cache.getDefaultValue(), this.cache.put(this.key1, this.value1));
+        TestUtils.assertEquals2(this.value1, this.cache.put(this.key1, this.value2));
+        this.cache.put(this.keyE, this.value3);
+
+        Assert.assertEquals(2, this.cache.size());
+
+        TestUtils.assertEquals2(this.value2, this.cache.get(this.key1));
+        TestUtils.assertEquals2(this.value3, this.cache.get(this.keyE));
+        TestUtils.assertEquals2(this.cache.getDefaultValue(), this.cache.get(this.key2));
+
+        //containsKey() does not count
+        Assert.assertTrue(this.cache.containsKey(this.key1));
+        Assert.assertFalse(this.cache.containsKey(this.key2));
+
+        Assert.assertEquals(2, this.cache.getHitCount());
+        Assert.assertEquals(1, this.cache.getMissCount());
+        Assert.assertEquals(0, this.cache.getEvictionCount());
+
+        this.cache.resetStatistics();
+        Assert.assertEquals(0, this.cache.getHitCount());
+        Assert.assertEquals(0, this.cache.getMissCount());
+
+        //removal is not an eviction
+        TestUtils.assertEquals2(this.value2, this.cache.remove(this.key1));
+        TestUtils.assertEquals2(this.value3, this.cache.remove(this.keyE));
+        Assert.assertTrue(this.cache.isEmpty());
+        Assert.assertEquals(0, this.cache.getEvictionCount());
+        Assert.assertTrue(this.evicted.isEmpty());
+    }
+
+    /* */
+    @Test
+    public void testNeverGrows()
+    {
+        final int bufferLength = this.cache.keys.length;
+
+        for (int i = 1; i <= 100; i++) {
+
+            this.cache.put(cast(i), vcast(i));
+
+            Assert.assertEquals(Math.min(i, 10), this.cache.size());
+            Assert.assertEquals(bufferLength, this.cache.keys.length);
+        }
+
+        Assert.assertEquals(10, this.cache.capacity());
+        Assert.assertEquals(90, this.cache.getEvictionCount());
+        Assert.assertEquals(90, this.evicted.size());
+
+        //evicted and cached entries are disjoint, and make up all the inserted ones
+        for (int i = 1; i <= 100; i++) {
+
+            Assert.assertTrue(this.cache.containsKey(cast(i)) ^ this.evicted.containsKey(cast(i)));
+        }
+    }
+
+    /* */
+    @Test
+    public void testSecondChance()
+    {
+        final KTypeVTypeCache<KType, VType> small = new KTypeVTypeCache<KType, VType>(3);
+
+        small.put(this.key1, this.value1);
+        small.put(this.key2, this.value2);
+        small.put(this.key3, this.value3);
+
+        //key1 is the only referenced entry...
+        small.get(this.key1);
+
+        //...so it survives the next eviction.
+        small.put(this.key4, this.value4);
+
+        Assert.assertEquals(3, small.size());
+        Assert.assertEquals(1, small.getEvictionCount());
+        Assert.assertTrue(small.containsKey(this.key1));
+        Assert.assertTrue(small.containsKey(this.key4));
+    }
+
+    /* */
+    @Test
+    public void testScanDoesNotEvictHotEntries()
+    {
+        for (int i = 1; i <= 5; i++) {
+            this.cache.put(cast(i), vcast(i));
+        }
+
+        //a scan of keys used once, while the hot keys keep being accessed
+        for (int i = 20; i < 120; i++) {
+
+            this.cache.put(cast(i), vcast(i));
+
+            for (int j = 1; j <= 5; j++) {
+                TestUtils.assertEquals2(vcast(j), this.cache.get(cast(j)));
+            }
+        }
+
+        Assert.assertEquals(10, this.cache.size());
+        Assert.assertEquals(500, this.cache.getHitCount());
+        Assert.assertEquals(0, this.cache.getMissCount());
+    }
+
+    /* */
+    @Test
+    public void testDefaultKeyEviction()
+    {
+        final KTypeVTypeCache<KType, VType> single = new KTypeVTypeCache<KType, VType>(1);
+
+        final KTypeVTypeHashMap<KType, VType> singleEvicted = new KTypeVTypeHashMap<KType, VType>();
+
+        single.setEvictionListener(new KTypeVTypeProcedure<KType, VType>() {
+
+            @Override
+            public void apply(final KType key, final VType value) {
+                singleEvicted.put(key, value);
+            }
+        });
+
+        single.put(this.keyE, this.value1);
+        single.put(this.key1, this.value2);
+
+        Assert.assertEquals(1, single.size());
+        Assert.assertFalse(single.containsKey(this.keyE));
+        TestUtils.assertEquals2(this.value1, singleEvicted.get(this.keyE));
+
+        single.put(this.keyE, this.value3);
+
+        Assert.assertEquals(1, single.size());
+        Assert.assertTrue(single.containsKey(this.keyE));
+        TestUtils.assertEquals2(this.value2, singleEvicted.get(this.key1));
+    }
+
+    /* */
+    @Test
+    public void testInvalidCapacity()
+    {
+        try {
+            new KTypeVTypeCache<KType, VType>(0);
+            Assert.fail();
+        } catch (final IllegalArgumentException e) {
+            //expected
+        }
+    }
+
+    /**
+     * Run random operations, and check that the cache content is
+     * always a reference map minus the evicted entries.
+     */
+    @Test
+    public void testAgainstHashMap()
+    {
+        final Random rnd = new Random(0xCAFEBABE);
+        final HashMap<Integer, Integer> other = new HashMap<Integer, Integer>();
+
+        long hits = 0;
+        long misses = 0;
+
+        for (int round = 0; round < 20000; round++)
+        {
+            final int k = rnd.nextInt(100);
+            final int v = rnd.nextInt(100);
+
+            final int op = rnd.nextInt(10);
+
+            if (op < 4)
+            {
+                final Integer previous = other.put(k, v);
+
+                Assert.assertEquals(previous == null ? vcastType(this.cache.getDefaultValue()) : previous.intValue(),
+                        vcastType(this.cache.put(cast(k), vcast(v))));
+            }
+            else if (op < 5)
+            {
+                final Integer previous = other.remove(k);
+
+                Assert.assertEquals(previous == null ? vcastType(this.cache.getDefaultValue()) : previous.intValue(),
+                        vcastType(this.cache.remove(cast(k))));
+            }
+            else
+            {
+                final Integer expected = other.get(k);
+
+                if (expected == null) {
+                    misses++;
+                } else {
+                    hits++;
+                }
+
+                Assert.assertEquals(expected != null, this.cache.containsKey(cast(k)));
+                Assert.assertEquals(expected == null ? vcastType(this.cache.getDefaultValue()) : expected.intValue(),
+                        vcastType(this.cache.get(cast(k))));
+            }
+
+            //forget about the evicted entries
+            for (final KTypeVTypeCursor<KType, VType> c : this.evicted) {
+
+                Assert.assertEquals(other.remove(castType(c.key)).intValue(), vcastType(c.value));
+            }
+
+            this.evicted.clear();
+
+            Assert.assertEquals(other.size(), this.cache.size());
+            Assert.assertTrue(this.cache.size() <= this.cache.capacity());
+        }
+
+        Assert.assertEquals(hits, this.cache.getHitCount());
+        Assert.assertEquals(misses, this.cache.getMissCount());
+        Assert.assertTrue(this.cache.getEvictionCount() > 0);
+
+        //forEach sees the same content
+        final int[] count = new int[1];
+
+        this.cache.forEach(new KTypeVTypeProcedure<KType, VType>() {
+
+            @Override
+            public void apply(final KType key, final VType value) {
+
+                Assert.assertEquals(other.get(castType(key)).intValue(), vcastType(value));
+                count[0]++;
+            }
+        });
+
+        Assert.assertEquals(other.size(), count[0]);
+    }
+}
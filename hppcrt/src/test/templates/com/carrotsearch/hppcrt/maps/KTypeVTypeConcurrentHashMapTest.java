@@ -0,0 +1,241 @@
+package com.carrotsearch.hppcrt.maps;
+
+import java.util.*;
+
+import org.junit.*;
+
+import com.carrotsearch.hppcrt.*;
+import com.carrotsearch.hppcrt.procedures.*;
+
+/*! #import("com/carrotsearch/hppcrt/Intrinsics.java") !*/
+/**
+ * Tests for {@link KTypeVTypeConcurrentHashMap}.
+ */
+/*! ${TemplateOptions.generatedAnnotation} !*/
+public class KTypeVTypeConcurrentHashMapTest<KType, VType> extends AbstractKTypeVTypeTest<KType, VType>
+{
+    /**
+     * Per-test fresh initialized instance.
+     */
+    protected KTypeVTypeConcurrentHashMap<KType, VType> map;
+
+    @Before
+    public void initialize() {
+
+        this.map = new KTypeVTypeConcurrentHashMap<KType, VType>();
+    }
+
+    /* */
+    @Test
+    public void testPut()
+    {
+        this.map.put(this.key1, this.value1);
+
+        Assert.assertTrue(this.map.containsKey(this.key1));
+        TestUtils.assertEquals2(this.value1, this.map.get(this.key1));
+        Assert.assertEquals(1, this.map.size());
+    }
+
+    /* */
+    @Test
+    public void testPutOverExistingKey()
+    {
+        this.map.put(this.key1, this.value1);
+        TestUtils.assertEquals2(this.value1, this.map.put(this.key1, this.value3));
+        TestUtils.assertEquals2(this.value3, this.map.get(this.key1));
+        Assert.assertEquals(1, this.map.size());
+    }
+
+    /* */
+    @Test
+    public void testPutIfAbsent()
+    {
+        Assert.assertTrue(this.map.putIfAbsent(this.key1, this.value1));
+        Assert.assertFalse(this.map.putIfAbsent(this.key1, this.value2));
+        TestUtils.assertEquals2(this.value1, this.map.get(this.key1));
+    }
+
+    /*! #if ($TemplateOptions.VTypePrimitive) !*/
+    /* */
+    @Test
+    public void testPutOrAdd()
+    {
+        TestUtils.assertEquals2(this.value1, this.map.putOrAdd(this.key1, this.value1, this.value2));
+        TestUtils.assertEquals2(this.value3, this.map.putOrAdd(this.key1, this.value1, this.value2));
+    }
+
+    /* */
+    @Test
+    public void testAddTo()
+    {
+        TestUtils.assertEquals2(this.value1, this.map.addTo(this.key1, this.value1));
+        TestUtils.assertEquals2(this.value3, this.map.addTo(this.key1, this.value2));
+    }
+
+    /*! #end !*/
+
+    /* */
+    @Test
+    public void testRemove()
+    {
+        this.map.put(this.key1, this.value1);
+        TestUtils.assertEquals2(this.value1, this.map.remove(this.key1));
+        TestUtils.assertEquals2(this.map.getDefaultValue(), this.map.remove(this.key1));
+        Assert.assertEquals(0, this.map.size());
+        Assert.assertTrue(this.map.isEmpty());
+    }
+
+    /* */
+    @Test
+    public void testEmptyKey()
+    {
+        this.map.put(this.keyE, this.value1);
+
+        Assert.assertTrue(this.map.containsKey(this.keyE));
+        TestUtils.assertEquals2(this.value1, this.map.get(this.keyE));
+        Assert.assertEquals(1, this.map.size());
+
+        TestUtils.assertEquals2(this.value1, this.map.remove(this.keyE));
+        Assert.assertFalse(this.map.containsKey(this.keyE));
+    }
+
+    /* */
+    @Test
+    public void testDefaultValue()
+    {
+        this.map.setDefaultValue(this.value5);
+
+        TestUtils.assertEquals2(this.value5, this.map.getDefaultValue());
+        TestUtils.assertEquals2(this.value5, this.map.get(this.key1));
+        TestUtils.assertEquals2(this.value5, this.map.remove(this.key1));
+    }
+
+    /* */
+    @Test
+    public void testConcurrencyLevel()
+    {
+        Assert.assertEquals(1, new KTypeVTypeConcurrentHashMap<KType, VType>(10, HashContainers.DEFAULT_LOAD_FACTOR, 1).concurrencyLevel());
+        Assert.assertEquals(8, new KTypeVTypeConcurrentHashMap<KType, VType>(10, HashContainers.DEFAULT_LOAD_FACTOR, 5).concurrencyLevel());
+
+        try {
+            new KTypeVTypeConcurrentHashMap<KType, VType>(10, HashContainers.DEFAULT_LOAD_FACTOR, 0);
+            Assert.fail();
+        } catch (final IllegalArgumentException e) {
+            //expected
+        }
+    }
+
+    /* */
+    @Test
+    public void testPutAllForEachClear()
+    {
+        final KTypeVTypeHashMap<KType, VType> source = new KTypeVTypeHashMap<KType, VType>();
+
+        for (int i = 0; i < 100; i++) {
+            source.put(cast(i), vcast(i));
+        }
+
+        Assert.assertEquals(source.size(), this.map.putAll(source));
+        Assert.assertEquals(0, this.map.putAll(source));
+        Assert.assertEquals(source.size(), this.map.size());
+
+        final int[] count = new int[1];
+
+        this.map.forEach(new KTypeVTypeProcedure<KType, VType>() {
+
+            @Override
+            public void apply(final KType key, final VType value) {
+
+                Assert.assertTrue(source.containsKey(key));
+                TestUtils.assertEquals2(source.get(key), value);
+                count[0]++;
+            }
+        });
+
+        Assert.assertEquals(source.size(), count[0]);
+
+        this.map.clear();
+        Assert.assertEquals(0, this.map.size());
+    }
+
+    /**
+     * Several threads put and remove disjoint sets of keys, then check
+     * the final content against the expected one.
+     */
+    @Test
+    public void testConcurrentPutRemove() throws Exception
+    {
+        final int nbThreads = 4;
+        final int nbKeysPerThread = 2000;
+
+        //Thread t owns the keys i = t modulo nbThreads, which stay disjoint from the other threads ones
+        //even when wrapped to a byte, since 256 is a multiple of nbThreads.
+        final int nbKeys = nbThreads * nbKeysPerThread;
+
+        final Thread[] threads = new Thread[nbThreads];
+        final Throwable[] errors = new Throwable[nbThreads];
+
+        for (int t = 0; t < nbThreads; t++) {
+
+            final int threadId = t;
+
+            threads[t] = new Thread() {
+
+                @Override
+                public void run() {
+
+                    try {
+                        for (int i = threadId; i < nbKeys; i += nbThreads) {
+
+                            KTypeVTypeConcurrentHashMapTest.this.map.put(cast(i), vcast(i));
+                        }
+
+                        //remove one out of two
+                        for (int i = threadId; i < nbKeys; i += 2 * nbThreads) {
+
+                            KTypeVTypeConcurrentHashMapTest.this.map.remove(cast(i));
+                        }
+                    } catch (final Throwable e) {
+                        errors[threadId] = e;
+                    }
+                }
+            };
+        }
+
+        for (final Thread thread : threads) {
+            thread.start();
+        }
+
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        for (final Throwable error : errors) {
+            Assert.assertNull(error);
+        }
+
+        //compute expected content, using the same conversions as the map keys
+        final Map<Integer, Integer> expected = new HashMap<Integer, Integer>();
+
+        for (int t = 0; t < nbThreads; t++) {
+
+            for (int i = t; i < nbKeys; i += nbThreads) {
+
+                expected.put(castType(cast(i)), vcastType(vcast(i)));
+            }
+
+            for (int i = t; i < nbKeys; i += 2 * nbThreads) {
+
+                expected.remove(castType(cast(i)));
+            }
+        }
+
+        Assert.assertEquals(expected.size(), this.map.size());
+
+        for (final Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+
+            Assert.assertTrue(this.map.containsKey(cast(entry.getKey())));
+            Assert.assertEquals(entry.getValue().intValue(), vcastType(this.map.get(cast(entry.getKey()))));
+        }
+    }
+}
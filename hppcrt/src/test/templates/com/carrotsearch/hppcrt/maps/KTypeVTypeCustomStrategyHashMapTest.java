@@ -0,0 +1,259 @@
+package com.carrotsearch.hppcrt.maps;
+
+import java.util.*;
+
+import org.junit.*;
+
+import com.carrotsearch.hppcrt.*;
+import com.carrotsearch.hppcrt.cursors.*;
+import com.carrotsearch.hppcrt.hash.BitMixer;
+import com.carrotsearch.hppcrt.strategies.*;
+
+/*! #import("com/carrotsearch/hppcrt/Intrinsics.java") !*/
+/**
+ * Tests for {@link KTypeVTypeCustomHashMap}.
+ */
+/*! ${TemplateOptions.generatedAnnotation} !*/
+public class KTypeVTypeCustomStrategyHashMapTest<KType, VType> extends AbstractKTypeVTypeHashMapTest<KType, VType>
+{
+    private static final int STRIDE = 13;
+
+    /**
+     * Same equivalence as the natural one, computed differently.
+     */
+    protected final KTypeHashingStrategy<KType> strideStrategy = new KTypeHashingStrategy<KType>() {
+
+        @Override
+        public int computeHashCode(final KType object) {
+
+            return BitMixer.mix(castType(object) + KTypeVTypeCustomStrategyHashMapTest.STRIDE);
+        }
+
+        @Override
+        public boolean equals(final KType o1, final KType o2) {
+
+            return castType(o1) + KTypeVTypeCustomStrategyHashMapTest.STRIDE == castType(o2) + KTypeVTypeCustomStrategyHashMapTest.STRIDE;
+        }
+    };
+
+    /**
+     * Keys are equivalent if they have the same last decimal digit.
+     */
+    protected final KTypeHashingStrategy<KType> lastDigitStrategy = new KTypeHashingStrategy<KType>() {
+
+        @Override
+        public int computeHashCode(final KType object) {
+
+            return Math.abs(castType(object) % 10);
+        }
+
+        @Override
+        public boolean equals(final KType o1, final KType o2) {
+
+            return Math.abs(castType(o1) % 10) == Math.abs(castType(o2) % 10);
+        }
+    };
+
+    @Override
+    protected KTypeVTypeMap<KType, VType> createNewMapInstance(final int initialCapacity, final double loadFactor) {
+
+        if (initialCapacity == 0 && loadFactor == HashContainers.DEFAULT_LOAD_FACTOR) {
+
+            return new KTypeVTypeCustomHashMap<KType, VType>(this.strideStrategy);
+
+        } else if (loadFactor == HashContainers.DEFAULT_LOAD_FACTOR) {
+
+            return new KTypeVTypeCustomHashMap<KType, VType>(initialCapacity, this.strideStrategy);
+        }
+
+        //generic case
+        return new KTypeVTypeCustomHashMap<KType, VType>(initialCapacity, loadFactor, this.strideStrategy);
+    }
+
+    @Override
+    protected KType[] getKeys(final KTypeVTypeMap<KType, VType> testMap) {
+
+        final KTypeVTypeCustomHashMap<KType, VType> concreteClass = (KTypeVTypeCustomHashMap<KType, VType>) (testMap);
+
+        return Intrinsics.<KType[]> cast(concreteClass.keys);
+    }
+
+    @Override
+    protected VType[] getValues(final KTypeVTypeMap<KType, VType> testMap) {
+        final KTypeVTypeCustomHashMap<KType, VType> concreteClass = (KTypeVTypeCustomHashMap<KType, VType>) (testMap);
+
+        return Intrinsics.<VType[]> cast(concreteClass.values);
+    }
+
+    @Override
+    protected boolean isAllocatedDefaultKey(final KTypeVTypeMap<KType, VType> testMap) {
+        final KTypeVTypeCustomHashMap<KType, VType> concreteClass = (KTypeVTypeCustomHashMap<KType, VType>) (testMap);
+
+        return concreteClass.allocatedDefaultKey;
+
+    }
+
+    @Override
+    protected VType getAllocatedDefaultKeyValue(final KTypeVTypeMap<KType, VType> testMap) {
+        final KTypeVTypeCustomHashMap<KType, VType> concreteClass = (KTypeVTypeCustomHashMap<KType, VType>) (testMap);
+
+        return concreteClass.allocatedDefaultKeyValue;
+    }
+
+    @Override
+    protected KTypeVTypeMap<KType, VType> getClone(final KTypeVTypeMap<KType, VType> testMap) {
+        final KTypeVTypeCustomHashMap<KType, VType> concreteClass = (KTypeVTypeCustomHashMap<KType, VType>) (testMap);
+
+        return concreteClass.clone();
+    }
+
+    @Override
+    protected KTypeVTypeMap<KType, VType> getFrom(final KTypeVTypeMap<KType, VType> testMap) {
+        final KTypeVTypeCustomHashMap<KType, VType> concreteClass = (KTypeVTypeCustomHashMap<KType, VType>) (testMap);
+
+        return KTypeVTypeCustomHashMap.from(concreteClass, this.strideStrategy);
+    }
+
+    @Override
+    protected KTypeVTypeMap<KType, VType> getFromArrays(final KType[] keys, final VType[] values) {
+
+        return KTypeVTypeCustomHashMap.from(Intrinsics.<KType[]> cast(keys),
+                Intrinsics.<VType[]> cast(values), this.strideStrategy);
+    }
+
+    @Override
+    protected KTypeVTypeMap<KType, VType> getCopyConstructor(final KTypeVTypeMap<KType, VType> testMap) {
+        final KTypeVTypeCustomHashMap<KType, VType> concreteClass = (KTypeVTypeCustomHashMap<KType, VType>) (testMap);
+
+        return new KTypeVTypeCustomHashMap<KType, VType>(concreteClass, this.strideStrategy);
+    }
+
+    @Override
+    protected int getEntryPoolSize(final KTypeVTypeMap<KType, VType> testMap) {
+        final KTypeVTypeCustomHashMap<KType, VType> concreteClass = (KTypeVTypeCustomHashMap<KType, VType>) (testMap);
+
+        return concreteClass.entryIteratorPool.size();
+    }
+
+    @Override
+    protected int getKeysPoolSize(final KTypeCollection<KType> keys) {
+
+        final KTypeVTypeCustomHashMap<KType, VType>.KeysCollection concreteClass = (KTypeVTypeCustomHashMap<KType, VType>.KeysCollection) (keys);
+
+        return concreteClass.keyIteratorPool.size();
+    }
+
+    @Override
+    protected int getValuesPoolSize(final KTypeCollection<VType> values) {
+        final KTypeVTypeCustomHashMap<KType, VType>.ValuesCollection concreteClass = (KTypeVTypeCustomHashMap<KType, VType>.ValuesCollection) (values);
+
+        return concreteClass.valuesIteratorPool.size();
+    }
+
+    @Override
+    protected int getEntryPoolCapacity(final KTypeVTypeMap<KType, VType> testMap) {
+        final KTypeVTypeCustomHashMap<KType, VType> concreteClass = (KTypeVTypeCustomHashMap<KType, VType>) (testMap);
+
+        return concreteClass.entryIteratorPool.capacity();
+    }
+
+    @Override
+    protected int getKeysPoolCapacity(final KTypeCollection<KType> keys) {
+        final KTypeVTypeCustomHashMap<KType, VType>.KeysCollection concreteClass = (KTypeVTypeCustomHashMap<KType, VType>.KeysCollection) (keys);
+
+        return concreteClass.keyIteratorPool.capacity();
+    }
+
+    @Override
+    protected int getValuesPoolCapacity(final KTypeCollection<VType> values) {
+        final KTypeVTypeCustomHashMap<KType, VType>.ValuesCollection concreteClass = (KTypeVTypeCustomHashMap<KType, VType>.ValuesCollection) (values);
+
+        return concreteClass.valuesIteratorPool.capacity();
+    }
+
+    //////////////////////////////////////
+    /// Implementation-specific tests
+    /////////////////////////////////////
+
+    /* */
+    @Test
+    public void testStrategyEquivalence()
+    {
+        final KTypeVTypeCustomHashMap<KType, VType> map = new KTypeVTypeCustomHashMap<KType, VType>(this.lastDigitStrategy);
+
+        Assert.assertSame(this.lastDigitStrategy, map.strategy());
+
+        map.put(cast(1), this.value1);
+        TestUtils.assertEquals2(this.value1, map.put(cast(11), this.value2));
+
+        //the first key is kept
+        Assert.assertEquals(1, map.size());
+        TestUtils.assertEquals2(this.value2, map.get(cast(21)));
+        Assert.assertEquals(1, castType(map.keys().toArray(Intrinsics.<KType> newArray(1))[0]));
+
+        //keys equivalent to 0
+        map.put(cast(10), this.value3);
+
+        Assert.assertEquals(2, map.size());
+        Assert.assertTrue(map.containsKey(cast(0)));
+        TestUtils.assertEquals2(this.value3, map.get(cast(20)));
+        TestUtils.assertEquals2(this.value3, map.remove(cast(30)));
+        Assert.assertFalse(map.containsKey(cast(10)));
+
+        Assert.assertEquals(1, map.keys().removeAll(cast(31)));
+        Assert.assertTrue(map.isEmpty());
+    }
+
+    /* */
+    @Test
+    public void testStrategyCloneEquals()
+    {
+        final KTypeVTypeCustomHashMap<KType, VType> map = new KTypeVTypeCustomHashMap<KType, VType>(this.strideStrategy);
+        final KTypeVTypeCustomHashMap<KType, VType> sameStrategy = new KTypeVTypeCustomHashMap<KType, VType>(this.strideStrategy);
+
+        for (int i = 1; i < 100; i++) {
+
+            map.put(cast(i), vcast(i));
+            sameStrategy.put(cast(i), vcast(i));
+        }
+
+        Assert.assertEquals(map, sameStrategy);
+        Assert.assertEquals(map.hashCode(), sameStrategy.hashCode());
+
+        final KTypeVTypeCustomHashMap<KType, VType> cloned = map.clone();
+
+        Assert.assertSame(map.strategy(), cloned.strategy());
+        Assert.assertEquals(map, cloned);
+
+        //same contents, but another strategy
+        final KTypeVTypeCustomHashMap<KType, VType> otherStrategy = KTypeVTypeCustomHashMap.from(map,
+                new KTypeHashingStrategy<KType>() {
+
+                    @Override
+                    public int computeHashCode(final KType object) {
+
+                        return castType(object);
+                    }
+
+                    @Override
+                    public boolean equals(final KType o1, final KType o2) {
+
+                        return castType(o1) == castType(o2);
+                    }
+                });
+
+        Assert.assertEquals(map.size(), otherStrategy.size());
+        Assert.assertFalse(map.equals(otherStrategy));
+        Assert.assertFalse(otherStrategy.equals(map));
+
+        //not comparable to the plain hash map
+        Assert.assertFalse(map.equals(KTypeVTypeHashMap.from(map)));
+    }
+
+    /* */
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullStrategy()
+    {
+        new KTypeVTypeCustomHashMap<KType, VType>(null);
+    }
+}
@@ -0,0 +1,318 @@
+package com.carrotsearch.hppcrt.maps;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.*;
+
+import com.carrotsearch.hppcrt.*;
+import com.carrotsearch.hppcrt.cursors.*;
+import com.carrotsearch.hppcrt.predicates.*;
+
+/*! #import("com/carrotsearch/hppcrt/Intrinsics.java") !*/
+/**
+ * Tests for {@link KTypeVTypeFrozenMap}.
+ */
+/*! ${TemplateOptions.generatedAnnotation} !*/
+public class KTypeVTypeFrozenMapTest<KType, VType> extends AbstractKTypeVTypeTest<KType, VType>
+{
+    /**
+     * A map of keys 1..count (and the key 0/null if withDefaultKey) to their opposite.
+     */
+    private KTypeVTypeHashMap<KType, VType> createSourceMap(final int count, final boolean withDefaultKey) {
+
+        final KTypeVTypeHashMap<KType, VType> source = new KTypeVTypeHashMap<KType, VType>();
+
+        for (int i = 1; i <= count; i++) {
+            source.put(cast(i), vcast(-i));
+        }
+
+        if (withDefaultKey) {
+            source.put(this.keyE, this.value9);
+        }
+
+        return source;
+    }
+
+    /* */
+    @Test
+    public void testFreeze()
+    {
+        final KTypeVTypeHashMap<KType, VType> source = createSourceMap(100, true);
+        source.setDefaultValue(this.value7);
+
+        final KTypeVTypeFrozenMap<KType, VType> frozen = source.freeze();
+
+        Assert.assertEquals(101, frozen.size());
+        Assert.assertTrue(frozen.allocatedDefaultKey);
+        TestUtils.assertEquals2(this.value9, frozen.get(this.keyE));
+
+        assertSameMap(source, frozen);
+        assertSameMap(frozen, source);
+
+        Assert.assertFalse(frozen.containsKey(cast(101)));
+        TestUtils.assertEquals2(this.value7, frozen.getDefaultValue());
+        TestUtils.assertEquals2(this.value7, frozen.get(cast(101)));
+
+        //iteration
+        int count = 0;
+
+        for (final KTypeVTypeCursor<KType, VType> c : frozen) {
+
+            TestUtils.assertEquals2(source.get(c.key), c.value);
+            count++;
+        }
+
+        Assert.assertEquals(101, count);
+        Assert.assertEquals(101, frozen.keys().size());
+        Assert.assertEquals(101, frozen.keys().toArray().length);
+        Assert.assertEquals(101, frozen.values().toArray().length);
+        Assert.assertTrue(frozen.keys().contains(this.keyE));
+        Assert.assertTrue(frozen.values().contains(this.value9));
+        Assert.assertTrue(frozen.values().contains(vcast(-100)));
+        Assert.assertFalse(frozen.values().contains(vcast(-101)));
+
+        Assert.assertEquals(frozen, source.freeze());
+        Assert.assertEquals(frozen.hashCode(), source.freeze().hashCode());
+    }
+
+    /* */
+    @Test
+    public void testFromArrays()
+    {
+        final KTypeVTypeFrozenMap<KType, VType> frozen = KTypeVTypeFrozenMap.from(
+                newArray(this.key1, this.key2, this.key1),
+                newvArray(this.value1, this.value2, this.value3));
+
+        Assert.assertEquals(2, frozen.size());
+        TestUtils.assertEquals2(this.value3, frozen.get(this.key1));
+        TestUtils.assertEquals2(this.value2, frozen.get(this.key2));
+        Assert.assertFalse(frozen.containsKey(this.keyE));
+    }
+
+    /* */
+    @Test
+    public void testEmpty()
+    {
+        final KTypeVTypeFrozenMap<KType, VType> frozen = new KTypeVTypeHashMap<KType, VType>().freeze();
+
+        Assert.assertTrue(frozen.isEmpty());
+        Assert.assertFalse(frozen.containsKey(this.key1));
+        Assert.assertFalse(frozen.containsKey(this.keyE));
+        Assert.assertFalse(frozen.iterator().hasNext());
+        Assert.assertEquals("[]", frozen.toString());
+    }
+
+    /* */
+    @Test
+    public void testAgainstHashMap()
+    {
+        final Random rnd = new Random(0x11223344);
+
+        final KTypeVTypeHashMap<KType, VType> source = new KTypeVTypeHashMap<KType, VType>();
+
+        //various sizes, to have various fill ratios of the last buckets
+        for (int round = 0; round < 20; round++) {
+
+            final int count = 1 + rnd.nextInt(5000);
+
+            source.clear();
+
+            for (int i = 0; i < count; i++) {
+
+                source.put(cast(rnd.nextInt(1 << 30)), vcast(rnd.nextInt()));
+            }
+
+            final KTypeVTypeFrozenMap<KType, VType> frozen = source.freeze();
+
+            assertSameMap(source, frozen);
+            assertSameMap(frozen, source);
+
+            //the buffers are hardly larger than the keys
+            Assert.assertTrue(frozen.capacity() <= source.size() / KTypeVTypeFrozenMap.LOAD_FACTOR + KTypeVTypeFrozenMap.BUCKET_SIZE);
+
+            //distinct hashes are always placed in one of their two buckets
+            Assert.assertEquals(0, frozen.stashKeys.length);
+
+            for (int i = 0; i < count; i++) {
+
+                final KType key = cast(rnd.nextInt(1 << 30));
+
+                Assert.assertEquals(source.containsKey(key), frozen.containsKey(key));
+                TestUtils.assertEquals2(source.get(key), frozen.get(key));
+            }
+        }
+    }
+
+    /* */
+    @Test
+    public void testReadOnly()
+    {
+        final KTypeVTypeFrozenMap<KType, VType> frozen = createSourceMap(10, true).freeze();
+
+        try {
+            frozen.put(this.key1, this.value1);
+            Assert.fail();
+        } catch (final UnsupportedOperationException e) {
+            //expected
+        }
+
+        try {
+            frozen.put(this.keyE, this.value1);
+            Assert.fail();
+        } catch (final UnsupportedOperationException e) {
+            //expected
+        }
+
+        try {
+            frozen.remove(this.key1);
+            Assert.fail();
+        } catch (final UnsupportedOperationException e) {
+            //expected
+        }
+
+        try {
+            frozen.clear();
+            Assert.fail();
+        } catch (final UnsupportedOperationException e) {
+            //expected
+        }
+
+        try {
+            frozen.setDefaultValue(this.value1);
+            Assert.fail();
+        } catch (final UnsupportedOperationException e) {
+            //expected
+        }
+
+        try {
+            frozen.keys().removeAll(this.key2);
+            Assert.fail();
+        } catch (final UnsupportedOperationException e) {
+            //expected
+        }
+
+        try {
+            frozen.values().removeAll(new KTypePredicate<VType>() {
+
+                @Override
+                public boolean apply(final VType value) {
+                    return true;
+                }
+            });
+            Assert.fail();
+        } catch (final UnsupportedOperationException e) {
+            //expected
+        }
+
+        Assert.assertEquals(11, frozen.size());
+        Assert.assertTrue(frozen.containsKey(this.keyE));
+    }
+
+    /* */
+    @Test
+    public void testConcurrentReaders() throws InterruptedException
+    {
+        final int count = 10000;
+
+        final KTypeVTypeHashMap<KType, VType> source = createSourceMap(count, true);
+        final KTypeVTypeFrozenMap<KType, VType> frozen = source.freeze();
+
+        final AtomicInteger failures = new AtomicInteger();
+
+        final Thread[] readers = new Thread[4];
+
+        for (int t = 0; t < readers.length; t++) {
+
+            readers[t] = new Thread() {
+
+                @Override
+                public void run() {
+
+                    for (int i = 1; i <= count; i++) {
+
+                        if (vcastType(frozen.get(cast(i))) != vcastType(source.get(cast(i)))) {
+                            failures.incrementAndGet();
+                        }
+                    }
+
+                    //iterators are not shared between threads
+                    int iterated = 0;
+
+                    for (final KTypeVTypeCursor<KType, VType> c : frozen) {
+                        iterated++;
+                    }
+
+                    if (iterated != source.size()) {
+                        failures.incrementAndGet();
+                    }
+                }
+            };
+        }
+
+        for (final Thread reader : readers) {
+            reader.start();
+        }
+
+        for (final Thread reader : readers) {
+            reader.join();
+        }
+
+        Assert.assertEquals(0, failures.get());
+    }
+
+    /*! #if ($TemplateOptions.KTypeGeneric) !*/
+    private static final class CollidingKey
+    {
+        final int value;
+
+        CollidingKey(final int value) {
+            this.value = value;
+        }
+
+        @Override
+        public int hashCode() {
+            //only a few distinct hashes
+            return this.value & 3;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            return obj instanceof CollidingKey && ((CollidingKey) obj).value == this.value;
+        }
+    }
+
+    /* */
+    @Test
+    public void testCollidingHashesGoToStash()
+    {
+        final int count = 100;
+
+        final KTypeVTypeHashMap<KType, VType> source = new KTypeVTypeHashMap<KType, VType>();
+
+        for (int i = 0; i < count; i++) {
+            source.put(Intrinsics.<KType> cast(new CollidingKey(i)), vcast(i));
+        }
+
+        final KTypeVTypeFrozenMap<KType, VType> frozen = source.freeze();
+
+        //4 hashes fill at most 8 buckets
+        Assert.assertTrue(frozen.stashKeys.length >= count - 8 * KTypeVTypeFrozenMap.BUCKET_SIZE);
+
+        assertSameMap(source, frozen);
+        assertSameMap(frozen, source);
+
+        Assert.assertFalse(frozen.containsKey(Intrinsics.<KType> cast(new CollidingKey(count))));
+
+        int iterated = 0;
+
+        for (final KTypeVTypeCursor<KType, VType> c : frozen) {
+
+            TestUtils.assertEquals2(vcast(((CollidingKey) c.key).value), c.value);
+            iterated++;
+        }
+
+        Assert.assertEquals(count, iterated);
+    }
+    /*! #end !*/
+}
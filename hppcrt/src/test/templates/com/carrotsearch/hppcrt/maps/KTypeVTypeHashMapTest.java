@@ -1,6 +1,14 @@
 package com.carrotsearch.hppcrt.maps;
 
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.junit.*;
+
 import com.carrotsearch.hppcrt.*;
+import com.carrotsearch.hppcrt.cursors.*;
 
 /*! #import("com/carrotsearch/hppcrt/Intrinsics.java") !*/
 /**
@@ -130,6 +138,596 @@ public class KTypeVTypeHashMapTest<KType, VType> extends AbstractKTypeVTypeHashM
     /// Implementation-specific tests
     /////////////////////////////////////
 
-    //none for now
+    /* */
+    @Test
+    public void testIncrementalResizeIsIncremental()
+    {
+        final KTypeVTypeHashMap<KType, VType> incremental = new KTypeVTypeHashMap<KType, VType>(100);
+        incremental.setIncrementalResize(true);
+
+        final int initialLength = incremental.keys.length;
+
+        int i = 1;
+
+        while (incremental.keys.length == initialLength) {
+
+            incremental.put(cast(i), vcast(i));
+            i++;
+        }
+
+        //the buffers have just been expanded: only some of the keys are migrated yet...
+        int migrated = 0;
+
+        for (int slot = 0; slot < incremental.keys.length; slot++) {
+
+            if (!Intrinsics.<KType> isEmpty(Intrinsics.<KType> cast(incremental.keys[slot]))) {
+                migrated++;
+            }
+        }
+
+        Assert.assertTrue(migrated < incremental.size());
+
+        //...but all of them are reachable.
+        for (int j = 1; j < i; j++) {
+
+            Assert.assertTrue(incremental.containsKey(cast(j)));
+            Assert.assertEquals(vcastType(vcast(j)), vcastType(incremental.get(cast(j))));
+        }
+
+        //completing the resize leaves a plain map
+        incremental.completeResize();
+        this.map = incremental;
+    }
+
+    /**
+     * Run some random insertions/ deletions with incremental resizing and compare the results
+     * against <code>java.util.HashMap</code>.
+     */
+    @Test
+    public void testIncrementalResizeAgainstHashMap()
+    {
+        final Random rnd = new Random(0xBADCAFE);
+        final HashMap<Integer, Integer> other = new HashMap<Integer, Integer>();
+
+        final KTypeVTypeHashMap<KType, VType> incremental = new KTypeVTypeHashMap<KType, VType>(0,
+                HashContainers.MAX_LOAD_FACTOR);
+        incremental.setIncrementalResize(true);
+
+        for (int round = 0; round < 100000; round++)
+        {
+            final KType key = cast(rnd.nextInt(20000));
+            final VType value = vcast(rnd.nextInt());
+
+            final int op = rnd.nextInt(10);
+
+            if (op < 6)
+            {
+                final Integer previous = other.put(castType(key), vcastType(value));
+
+                Assert.assertEquals(previous == null ? vcastType(incremental.getDefaultValue()) : previous.intValue(),
+                        vcastType(incremental.put(key, value)));
+            }
+            else if (op < 8)
+            {
+                final Integer previous = other.remove(castType(key));
+
+                Assert.assertEquals(previous == null ? vcastType(incremental.getDefaultValue()) : previous.intValue(),
+                        vcastType(incremental.remove(key)));
+            }
+            else
+            {
+                final Integer expected = other.get(castType(key));
+
+                Assert.assertEquals(expected != null, incremental.containsKey(key));
+                Assert.assertEquals(expected == null ? vcastType(incremental.getDefaultValue()) : expected.intValue(),
+                        vcastType(incremental.get(key)));
+            }
+
+            Assert.assertEquals(other.size(), incremental.size());
+        }
+
+        //iteration sees every entry exactly once
+        int count = 0;
+
+        for (final KTypeVTypeCursor<KType, VType> c : incremental) {
+
+            Assert.assertEquals(other.get(castType(c.key)).intValue(), vcastType(c.value));
+            count++;
+        }
+
+        Assert.assertEquals(other.size(), count);
+        this.map = incremental;
+    }
+
+    /* */
+    @Test
+    public void testIndexMethods()
+    {
+        final KTypeVTypeHashMap<KType, VType> hashMap = new KTypeVTypeHashMap<KType, VType>();
+
+        hashMap.put(this.key1, this.value1);
+
+        final int index1 = hashMap.indexOf(this.key1);
+
+        Assert.assertTrue(hashMap.indexExists(index1));
+        TestUtils.assertEquals2(this.value1, hashMap.indexGet(index1));
+        TestUtils.assertEquals2(this.value1, hashMap.indexReplace(index1, this.value2));
+        TestUtils.assertEquals2(this.value2, hashMap.get(this.key1));
+
+        final int index2 = hashMap.indexOf(this.key2);
+
+        Assert.assertFalse(hashMap.indexExists(index2));
+        hashMap.indexInsert(index2, this.key2, this.value3);
+
+        Assert.assertEquals(2, hashMap.size());
+        TestUtils.assertEquals2(this.value3, hashMap.get(this.key2));
+        Assert.assertTrue(hashMap.indexExists(hashMap.indexOf(this.key2)));
+
+        //the key 0/null has its own index
+        final int indexE = hashMap.indexOf(this.keyE);
+
+        Assert.assertFalse(hashMap.indexExists(indexE));
+        Assert.assertEquals(hashMap.keys.length, ~indexE);
+
+        hashMap.indexInsert(indexE, this.keyE, this.value4);
+
+        Assert.assertEquals(3, hashMap.size());
+        Assert.assertEquals(hashMap.keys.length, hashMap.indexOf(this.keyE));
+        TestUtils.assertEquals2(this.value4, hashMap.indexGet(hashMap.indexOf(this.keyE)));
+        TestUtils.assertEquals2(this.value4, hashMap.indexReplace(hashMap.indexOf(this.keyE), this.value5));
+        TestUtils.assertEquals2(this.value5, hashMap.get(this.keyE));
+
+        this.map = hashMap;
+    }
+
+    /**
+     * Fill a map with the index methods only, (with expansions and incremental resizes) and compare the results
+     * against <code>java.util.HashMap</code>.
+     */
+    @Test
+    public void testIndexMethodsAgainstHashMap()
+    {
+        final Random rnd = new Random(0xDEADBEEF);
+        final HashMap<Integer, Integer> other = new HashMap<Integer, Integer>();
+
+        final KTypeVTypeHashMap<KType, VType> hashMap = new KTypeVTypeHashMap<KType, VType>(0,
+                HashContainers.MAX_LOAD_FACTOR);
+
+        for (int round = 0; round < 50000; round++)
+        {
+            if (round == 25000) {
+                hashMap.setIncrementalResize(true);
+            }
+
+            final KType key = cast(rnd.nextInt(10000));
+            final VType value = vcast(rnd.nextInt());
+
+            final int index = hashMap.indexOf(key);
+            final Integer previous = other.put(castType(key), vcastType(value));
+
+            Assert.assertEquals(previous != null, hashMap.indexExists(index));
+
+            if (previous != null) {
+
+                Assert.assertEquals(previous.intValue(), vcastType(hashMap.indexGet(index)));
+                Assert.assertEquals(previous.intValue(), vcastType(hashMap.indexReplace(index, value)));
+            } else {
+
+                hashMap.indexInsert(index, key, value);
+            }
+
+            //some removals, not to be only adding
+            if (rnd.nextInt(4) == 0) {
+
+                final KType removed = cast(rnd.nextInt(10000));
+                final Integer expected = other.remove(castType(removed));
+
+                Assert.assertEquals(expected == null ? vcastType(hashMap.getDefaultValue()) : expected.intValue(),
+                        vcastType(hashMap.remove(removed)));
+            }
+
+            Assert.assertEquals(other.size(), hashMap.size());
+        }
+
+        for (final Map.Entry<Integer, Integer> entry : other.entrySet()) {
+
+            Assert.assertEquals(entry.getValue().intValue(), vcastType(hashMap.get(cast(entry.getKey()))));
+        }
+
+        hashMap.completeResize();
+        this.map = hashMap;
+    }
+
+    /* */
+    @Test
+    public void testGetAllAndContainsAll()
+    {
+        final KTypeVTypeHashMap<KType, VType> hashMap = new KTypeVTypeHashMap<KType, VType>();
+
+        //one key out of 3, and the key 0/null
+        for (int i = 3; i < 300; i += 3) {
+            hashMap.put(cast(i), vcast(i + 1));
+        }
+
+        hashMap.put(this.keyE, this.value1);
+
+        hashMap.setDefaultValue(this.value9);
+
+        final KType[] lookupKeys = Intrinsics.<KType> newArray(200);
+
+        lookupKeys[0] = this.keyE;
+
+        for (int i = 1; i < lookupKeys.length; i++) {
+            lookupKeys[i] = cast(i);
+        }
+
+        //lookup a range, not aligned on the batches
+        final int offset = 3;
+        final int length = 150;
+
+        final VType[] values = Intrinsics.<VType> newArray(lookupKeys.length);
+        final long[] bits = new long[(lookupKeys.length + 63) >>> 6];
+        final boolean[] found = new boolean[lookupKeys.length];
+
+        //bits out of range are kept
+        Arrays.fill(bits, -1L);
+
+        int expectedFound = 0;
+
+        for (int i = offset; i < offset + length; i++) {
+
+            if (hashMap.containsKey(lookupKeys[i])) {
+                expectedFound++;
+            }
+        }
+
+        Assert.assertEquals(expectedFound, hashMap.getAll(lookupKeys, offset, length, values));
+        Assert.assertEquals(expectedFound, hashMap.containsAll(lookupKeys, offset, length, bits));
+        Assert.assertEquals(expectedFound, hashMap.containsAll(lookupKeys, offset, length, found));
+
+        for (int i = 0; i < lookupKeys.length; i++) {
+
+            final boolean inRange = i >= offset && i < offset + length;
+            final boolean bit = (bits[i >>> 6] & (1L << i)) != 0;
+
+            if (inRange) {
+
+                Assert.assertEquals(vcastType(hashMap.get(lookupKeys[i])), vcastType(values[i]));
+                Assert.assertEquals(hashMap.containsKey(lookupKeys[i]), bit);
+                Assert.assertEquals(hashMap.containsKey(lookupKeys[i]), found[i]);
+            } else {
+
+                TestUtils.assertEquals2(Intrinsics.<VType> empty(), values[i]);
+                Assert.assertTrue(bit);
+                Assert.assertFalse(found[i]);
+            }
+        }
+
+        //the key 0/null
+        Assert.assertEquals(1, hashMap.getAll(lookupKeys, 0, 1, values));
+        TestUtils.assertEquals2(this.value1, values[0]);
+
+        hashMap.remove(this.keyE);
+
+        Assert.assertEquals(0, hashMap.getAll(lookupKeys, 0, 1, values));
+        TestUtils.assertEquals2(this.value9, values[0]);
+        Assert.assertEquals(0, hashMap.containsAll(lookupKeys, 0, 1, bits));
+        Assert.assertEquals(0, bits[0] & 1L);
+
+        this.map = hashMap;
+    }
+
+    /* */
+    @Test
+    public void testParallelFrom() throws InterruptedException
+    {
+        final Random rnd = new Random(0x5EED5EED);
+
+        //with duplicates, and the key 0/null
+        final KType[] keys = Intrinsics.<KType> newArray(20000);
+        final VType[] values = Intrinsics.<VType> newArray(keys.length);
+
+        for (int i = 0; i < keys.length; i++) {
+
+            keys[i] = (rnd.nextInt(100) == 0) ? this.keyE : cast(rnd.nextInt(15000));
+            values[i] = vcast(i);
+        }
+
+        final KTypeVTypeHashMap<KType, VType> expected = KTypeVTypeHashMap.from(keys, values);
+
+        //keep the threads of the pool, to wait for their end
+        final List<Thread> threads = Collections.synchronizedList(new ArrayList<Thread>());
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4, new ThreadFactory() {
+
+            @Override
+            public Thread newThread(final Runnable r) {
+
+                final Thread thread = new Thread(r);
+                threads.add(thread);
+                return thread;
+            }
+        });
 
+        try {
+
+            final KTypeVTypeHashMap<KType, VType> parallel = KTypeVTypeHashMap.parallelFrom(keys, values, executor, 4);
+
+            Assert.assertEquals(expected, parallel);
+
+            //tiny regions, to overflow a lot of them
+            final KTypeVTypeHashMap<KType, VType> tinyRegions = new KTypeVTypeHashMap<KType, VType>(keys.length);
+            tinyRegions.fillParallel(keys, values, executor, 4, tinyRegions.keys.length >> 3);
+
+            Assert.assertEquals(expected, tinyRegions);
+
+            //the maps remain consistent afterwards
+            for (int i = 0; i < keys.length; i += 2) {
+
+                expected.remove(keys[i]);
+                parallel.remove(keys[i]);
+                tinyRegions.remove(keys[i]);
+            }
+
+            for (int i = 0; i < keys.length; i += 3) {
+
+                expected.put(keys[i], this.value1);
+                parallel.put(keys[i], this.value1);
+                tinyRegions.put(keys[i], this.value1);
+            }
+
+            Assert.assertEquals(expected, parallel);
+            Assert.assertEquals(expected, tinyRegions);
+
+            //colliding keys placed in the first of 2 regions are accounted for, and reseeded, as by put()
+            for (final int threshold : new int[] { Integer.MAX_VALUE, 2 }) {
+
+                final KTypeVTypeHashMap<KType, VType> collisions = new KTypeVTypeHashMap<KType, VType>(4);
+                collisions.setReseedThreshold(threshold);
+
+                final KType[] colliding = keysOfIdealSlotZero(collisions, 4);
+                final VType[] collidingValues = Intrinsics.<VType> newArray(colliding.length);
+
+                for (int i = 0; i < colliding.length; i++) {
+                    collidingValues[i] = vcast(i);
+                }
+
+                collisions.fillParallel(colliding, collidingValues, executor, 4, 2);
+
+                Assert.assertEquals(KTypeVTypeHashMap.from(colliding, collidingValues), collisions);
+
+                if (threshold == 2) {
+
+                    Assert.assertEquals(1, collisions.getReseedCount());
+                } else {
+
+                    Assert.assertEquals(0, collisions.getReseedCount());
+                    Assert.assertEquals(3, collisions.getMaxProbeLength());
+                    Assert.assertEquals(1.5, collisions.getAverageProbeLength(), 0.0);
+                }
+            }
+
+            //small inputs are inserted sequentially
+            Assert.assertEquals(KTypeVTypeHashMap.from(newArray(this.k1, this.k2), newvArray(this.value1, this.value2)),
+                    KTypeVTypeHashMap.parallelFrom(newArray(this.k1, this.k2), newvArray(this.value1, this.value2), executor, 4));
+
+        } finally {
+
+            executor.shutdown();
+
+            for (final Thread thread : threads) {
+                thread.join();
+            }
+        }
+    }
+
+    /* */
+    @Test
+    public void testProbeLengthStats()
+    {
+        final KTypeVTypeHashMap<KType, VType> map = new KTypeVTypeHashMap<KType, VType>();
+
+        Assert.assertEquals(HashContainers.defaultReseedThreshold(HashContainers.DEFAULT_LOAD_FACTOR), map.getReseedThreshold());
+        Assert.assertEquals(0, map.getMaxProbeLength());
+        Assert.assertEquals(0.0, map.getAverageProbeLength(), 0.0);
+
+        for (int i = 0; i < 200; i++) {
+            map.put(cast(i), vcast(i));
+        }
+
+        Assert.assertTrue(map.getAverageProbeLength() >= 0.0);
+        Assert.assertTrue(map.getMaxProbeLength() >= map.getAverageProbeLength());
+        Assert.assertTrue(map.getMaxProbeLength() < map.keys.length);
+        Assert.assertEquals(0, map.getReseedCount());
+
+        map.clear();
+
+        Assert.assertEquals(0, map.getMaxProbeLength());
+        Assert.assertEquals(0.0, map.getAverageProbeLength(), 0.0);
+    }
+
+    /* */
+    @Test
+    public void testReseed()
+    {
+        final Random rnd = new Random(0x11223344);
+
+        for (final boolean incremental : new boolean[] { false, true }) {
+
+            final KTypeVTypeHashMap<KType, VType> map = new KTypeVTypeHashMap<KType, VType>();
+            map.setIncrementalResize(incremental);
+
+            //reseed as soon as a key is not in its ideal slot
+            map.setReseedThreshold(0);
+
+            final KTypeVTypeHashMap<KType, VType> reference = new KTypeVTypeHashMap<KType, VType>();
+            reference.setReseedThreshold(Integer.MAX_VALUE);
+
+            for (int i = 0; i < 5000; i++) {
+
+                final KType key = cast(rnd.nextInt(1 << 30));
+                final VType value = vcast(i);
+
+                TestUtils.assertEquals2(reference.put(key, value), map.put(key, value));
+            }
+
+            Assert.assertEquals(0, reference.getReseedCount());
+            Assert.assertTrue(map.getReseedCount() > 0);
+
+            //at most once per buffers size
+            Assert.assertTrue(map.getReseedCount() <= Integer.numberOfTrailingZeros(map.keys.length));
+
+            assertSameMap(reference, map);
+            assertSameMap(map, reference);
+
+            for (int i = 0; i < 5000; i++) {
+
+                final KType key = cast(rnd.nextInt(1 << 30));
+
+                TestUtils.assertEquals2(reference.remove(key), map.remove(key));
+                Assert.assertEquals(reference.containsKey(key), map.containsKey(key));
+            }
+
+            assertSameMap(reference, map);
+
+            Assert.assertEquals(0, map.clone().getReseedThreshold());
+        }
+    }
+
+    /* */
+    @Test
+    public void testIndexInsertReseed()
+    {
+        final KTypeVTypeHashMap<KType, VType> map = new KTypeVTypeHashMap<KType, VType>(4);
+
+        final KType[] colliding = keysOfIdealSlotZero(map, 4);
+
+        //reseed when the last key is put 3 slots away from its ideal slot
+        map.setReseedThreshold(2);
+
+        for (int i = 0; i < colliding.length; i++) {
+
+            final int index = map.indexOf(colliding[i]);
+
+            Assert.assertFalse(map.indexExists(index));
+            map.indexInsert(index, colliding[i], vcast(i));
+
+            if (i < colliding.length - 1) {
+
+                //each key is put right after the previous one
+                Assert.assertEquals(i, map.getMaxProbeLength());
+                Assert.assertEquals(0, map.getReseedCount());
+            }
+        }
+
+        Assert.assertEquals(1, map.getReseedCount());
+        Assert.assertEquals(colliding.length, map.size());
+
+        for (int i = 0; i < colliding.length; i++) {
+            TestUtils.assertEquals2(vcast(i), map.get(colliding[i]));
+        }
+    }
+
+    /**
+     * @return count distinct keys, whose ideal slot in the small empty map is 0.
+     */
+    private KType[] keysOfIdealSlotZero(final KTypeVTypeHashMap<KType, VType> map, final int count) {
+
+        final KType[] keys = Intrinsics.<KType> newArray(count);
+        int found = 0;
+
+        for (int i = 1; i < 256 && found < count; i++) {
+
+            if (map.indexOf(cast(i)) == ~0) {
+                keys[found++] = cast(i);
+            }
+        }
+
+        Assert.assertEquals(count, found);
+
+        return keys;
+    }
+
+    /*! #if ($TemplateOptions.KTypeGeneric) !*/
+    /**
+     * Key counting the calls to its hashCode() and equals().
+     */
+    private static final class CountingKey
+    {
+        static int hashCodeCalls;
+        static int equalsCalls;
+
+        final int value;
+
+        CountingKey(final int value) {
+            this.value = value;
+        }
+
+        @Override
+        public int hashCode() {
+            CountingKey.hashCodeCalls++;
+            return this.value;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            CountingKey.equalsCalls++;
+            return obj instanceof CountingKey && ((CountingKey) obj).value == this.value;
+        }
+    }
+
+    @Test
+    public void testCachedHashes()
+    {
+        final int count = 10000;
+
+        //the raw template runs the debug assertions of the map, which skew the calls
+        //to hashCode() and equals(): only the generated classes have exact counts.
+        final boolean exactCounts = /*! #if (true) true #else !*/false/*! #end !*/;
+
+        for (final boolean incremental : new boolean[] { false, true }) {
+
+            final KTypeVTypeHashMap<KType, VType> map = new KTypeVTypeHashMap<KType, VType>();
+            map.setIncrementalResize(incremental);
+
+            CountingKey.hashCodeCalls = 0;
+            CountingKey.equalsCalls = 0;
+
+            for (int i = 0; i < count; i++) {
+                map.put(Intrinsics.<KType> cast(new CountingKey(i)), vcast(i));
+            }
+
+            //resizes use the cached hashes, and distinct hashes spare equals()
+            if (exactCounts) {
+                Assert.assertEquals(count, CountingKey.hashCodeCalls);
+                Assert.assertEquals(0, CountingKey.equalsCalls);
+            }
+
+            for (int i = 0; i < 2 * count; i++) {
+
+                TestUtils.assertEquals2(i < count ? vcast(i) : map.getDefaultValue(),
+                        map.get(Intrinsics.<KType> cast(new CountingKey(i))));
+            }
+
+            //equals() is only called on the matching keys
+            if (exactCounts) {
+                Assert.assertEquals(3 * count, CountingKey.hashCodeCalls);
+                Assert.assertEquals(count, CountingKey.equalsCalls);
+            }
+
+            for (int i = 0; i < count; i += 2) {
+                TestUtils.assertEquals2(vcast(i), map.remove(Intrinsics.<KType> cast(new CountingKey(i))));
+            }
+
+            Assert.assertEquals(count / 2, map.size());
+            if (exactCounts) {
+                Assert.assertEquals(3 * count + count / 2, CountingKey.hashCodeCalls);
+            }
+
+            for (int i = 0; i < count; i++) {
+                Assert.assertEquals(i % 2 != 0, map.containsKey(Intrinsics.<KType> cast(new CountingKey(i))));
+            }
+        }
+    }
+    /*! #end !*/
 }
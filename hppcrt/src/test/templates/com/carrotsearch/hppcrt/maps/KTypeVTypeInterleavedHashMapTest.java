@@ -0,0 +1,286 @@
+package com.carrotsearch.hppcrt.maps;
+
+import java.util.Random;
+
+import org.junit.*;
+
+import com.carrotsearch.hppcrt.*;
+import com.carrotsearch.hppcrt.cursors.*;
+import com.carrotsearch.hppcrt.predicates.*;
+
+/*! #import("com/carrotsearch/hppcrt/Intrinsics.java") !*/
+/*! ${TemplateOptions.doNotGenerateKType("OBJECT")} !*/
+/*! #if (!($TemplateOptions.KType == $TemplateOptions.VType
+  || ($TemplateOptions.isKType("INT") && $TemplateOptions.isVType("FLOAT"))
+  || ($TemplateOptions.isKType("LONG") && $TemplateOptions.isVType("DOUBLE"))))
+  $TemplateOptions.doNotGenerate()
+#end !*/
+/**
+ * Tests for {@link KTypeVTypeInterleavedHashMap}.
+ */
+/*! ${TemplateOptions.generatedAnnotation} !*/
+public class KTypeVTypeInterleavedHashMapTest<KType, VType> extends AbstractKTypeVTypeTest<KType, VType>
+{
+    /**
+     * The value stored at slot, de-interleaved from the pairs.
+     */
+    private VType valueAt(final KTypeVTypeInterleavedHashMap<KType, VType> map, final int slot) {
+
+        final KType[] pairs = Intrinsics.<KType[]> cast(map.pairs);
+
+        /*! #if ($TemplateOptions.isKType("INT") && $TemplateOptions.isVType("FLOAT"))
+        return Float.intBitsToFloat(pairs[(slot << 1) + 1]);
+        #elseif ($TemplateOptions.isKType("LONG") && $TemplateOptions.isVType("DOUBLE"))
+        return Double.longBitsToDouble(pairs[(slot << 1) + 1]);
+        #else !*/
+        return Intrinsics.<VType> cast(pairs[(slot << 1) + 1]);
+        /*! #end !*/
+    }
+
+    /* */
+    @Test
+    public void testPairsLayout()
+    {
+        final KTypeVTypeInterleavedHashMap<KType, VType> map = new KTypeVTypeInterleavedHashMap<KType, VType>();
+
+        map.put(this.key1, this.value1);
+        map.put(this.key2, this.value2);
+        map.put(this.keyE, this.value3);
+
+        final KType[] pairs = Intrinsics.<KType[]> cast(map.pairs);
+
+        int assigned = 0;
+
+        for (int slot = 0; slot < pairs.length / 2; slot++) {
+
+            final KType key = pairs[2 * slot];
+
+            if (castType(key) == 1) {
+
+                TestUtils.assertEquals2(this.value1, valueAt(map, slot));
+                assigned++;
+            } else if (castType(key) == 2) {
+
+                TestUtils.assertEquals2(this.value2, valueAt(map, slot));
+                assigned++;
+            } else {
+
+                TestUtils.assertEquals2(this.keyE, key);
+                TestUtils.assertEquals2(Intrinsics.<VType> empty(), valueAt(map, slot));
+            }
+        }
+
+        Assert.assertEquals(2, assigned);
+
+        //the default key is not stored in pairs
+        Assert.assertTrue(map.allocatedDefaultKey);
+        TestUtils.assertEquals2(this.value3, map.allocatedDefaultKeyValue);
+
+        //cursors index slots, and pairs.length / 2 for the default key
+        for (final KTypeVTypeCursor<KType, VType> c : map) {
+
+            if (c.index == pairs.length / 2) {
+
+                TestUtils.assertEquals2(this.keyE, c.key);
+            } else {
+
+                TestUtils.assertEquals2(pairs[2 * c.index], c.key);
+                TestUtils.assertEquals2(valueAt(map, c.index), c.value);
+            }
+        }
+    }
+
+    /* */
+    @Test
+    public void testAgainstHashMap()
+    {
+        final Random rnd = new Random(0x11223344);
+
+        for (final double loadFactor : new double[] { HashContainers.DEFAULT_LOAD_FACTOR, 0.9, HashContainers.MAX_LOAD_FACTOR }) {
+
+            final KTypeVTypeInterleavedHashMap<KType, VType> map = new KTypeVTypeInterleavedHashMap<KType, VType>(0, loadFactor);
+            final KTypeVTypeHashMap<KType, VType> reference = new KTypeVTypeHashMap<KType, VType>();
+
+            //a lot of collisions on a small range of keys, with the key 0
+            final int range = 2000;
+
+            for (int round = 0; round < 50000; round++) {
+
+                final KType key = cast(rnd.nextInt(range));
+                final int op = rnd.nextInt(4);
+
+                if (op == 0) {
+
+                    TestUtils.assertEquals2(reference.remove(key), map.remove(key));
+                } else if (op == 1) {
+
+                    TestUtils.assertEquals2(reference.get(key), map.get(key));
+                    Assert.assertEquals(reference.containsKey(key), map.containsKey(key));
+                } else {
+
+                    final VType value = vcast(round);
+                    TestUtils.assertEquals2(reference.put(key, value), map.put(key, value));
+                }
+
+                Assert.assertEquals(reference.size(), map.size());
+            }
+
+            assertSameMap(reference, map);
+            assertSameMap(map, reference);
+
+            Assert.assertEquals(reference.hashCode(), map.hashCode());
+
+            //bulk removals by value
+            Assert.assertEquals(reference.values().removeAll(new KTypePredicate<VType>() {
+
+                @Override
+                public boolean apply(final VType value) {
+                    return vcastType(value) % 3 == 0;
+                }
+            }), map.values().removeAll(new KTypePredicate<VType>() {
+
+                @Override
+                public boolean apply(final VType value) {
+                    return vcastType(value) % 3 == 0;
+                }
+            }));
+
+            //bulk removals by key
+            Assert.assertEquals(reference.removeAll(new KTypePredicate<KType>() {
+
+                @Override
+                public boolean apply(final KType key) {
+                    return castType(key) % 5 == 0;
+                }
+            }), map.removeAll(new KTypePredicate<KType>() {
+
+                @Override
+                public boolean apply(final KType key) {
+                    return castType(key) % 5 == 0;
+                }
+            }));
+
+            assertSameMap(reference, map);
+            assertSameMap(map, reference);
+
+            for (int i = 0; i < range; i++) {
+
+                final KType key = cast(i);
+                Assert.assertEquals(reference.containsKey(key), map.containsKey(key));
+                TestUtils.assertEquals2(reference.get(key), map.get(key));
+            }
+        }
+    }
+
+    /* */
+    @Test
+    public void testIterationAndViews()
+    {
+        final KTypeVTypeInterleavedHashMap<KType, VType> map = new KTypeVTypeInterleavedHashMap<KType, VType>();
+        final KTypeVTypeHashMap<KType, VType> reference = new KTypeVTypeHashMap<KType, VType>();
+
+        for (int i = 0; i < 100; i++) {
+
+            map.put(cast(i), vcast(-i));
+            reference.put(cast(i), vcast(-i));
+        }
+
+        //the key 0/null, which cast(0) is only for primitives
+        map.put(this.keyE, vcast(0));
+        reference.put(this.keyE, vcast(0));
+
+        int count = 0;
+
+        for (final KTypeVTypeCursor<KType, VType> c : map) {
+
+            TestUtils.assertEquals2(reference.get(c.key), c.value);
+            count++;
+        }
+
+        Assert.assertEquals(map.size(), count);
+
+        count = 0;
+
+        for (final KTypeCursor<KType> c : map.keys()) {
+
+            Assert.assertTrue(reference.containsKey(c.value));
+            count++;
+        }
+
+        Assert.assertEquals(map.size(), count);
+
+        count = 0;
+
+        for (final KTypeCursor<VType> c : map.values()) {
+
+            Assert.assertTrue(reference.values().contains(c.value));
+            count++;
+        }
+
+        Assert.assertEquals(map.size(), count);
+
+        Assert.assertEquals(map.size(), map.keys().toArray().length);
+        Assert.assertEquals(map.size(), map.values().toArray().length);
+        Assert.assertTrue(map.keys().contains(this.keyE));
+        Assert.assertTrue(map.values().contains(vcast(-99)));
+        Assert.assertFalse(map.values().contains(vcast(1)));
+
+        Assert.assertEquals(1, map.keys().removeAll(this.key1));
+        Assert.assertFalse(map.containsKey(this.key1));
+    }
+
+    /* */
+    @Test
+    public void testEqualsCloneAndFrom()
+    {
+        final KTypeVTypeInterleavedHashMap<KType, VType> map = KTypeVTypeInterleavedHashMap.from(
+                newArray(this.keyE, this.key1, this.key2, this.key3),
+                newvArray(this.value1, this.value2, this.value3, this.value4));
+
+        Assert.assertEquals(4, map.size());
+        TestUtils.assertEquals2(this.value1, map.get(this.keyE));
+
+        final KTypeVTypeInterleavedHashMap<KType, VType> cloned = map.clone();
+
+        Assert.assertEquals(map, cloned);
+        Assert.assertEquals(map.hashCode(), cloned.hashCode());
+        Assert.assertEquals(map, KTypeVTypeInterleavedHashMap.from(map));
+
+        cloned.put(this.key3, this.value5);
+        Assert.assertFalse(map.equals(cloned));
+
+        cloned.remove(this.keyE);
+        map.clear();
+
+        Assert.assertTrue(map.isEmpty());
+        Assert.assertEquals(3, cloned.size());
+        TestUtils.assertEquals2(map.getDefaultValue(), map.get(this.keyE));
+    }
+
+    /* */
+    @Test
+    public void testMaximumCapacity()
+    {
+        //the largest buffers for keys alone cannot hold the pairs
+        try {
+            new KTypeVTypeInterleavedHashMap<KType, VType>(HashContainers.MAX_HASH_ARRAY_LENGTH >> 1);
+            Assert.fail();
+        } catch (final BufferAllocationException e) {
+            //expected
+        }
+    }
+
+    /* */
+    @Test
+    public void testPutOrAdd()
+    {
+        final KTypeVTypeInterleavedHashMap<KType, VType> map = new KTypeVTypeInterleavedHashMap<KType, VType>();
+
+        TestUtils.assertEquals2(this.value1, map.putOrAdd(this.key1, this.value1, this.value2));
+        TestUtils.assertEquals2(this.value3, map.putOrAdd(this.key1, this.value1, this.value2));
+        TestUtils.assertEquals2(this.value4, map.addTo(this.key1, this.value1));
+        TestUtils.assertEquals2(this.value2, map.addTo(this.key2, this.value2));
+
+        Assert.assertEquals(2, map.size());
+    }
+}
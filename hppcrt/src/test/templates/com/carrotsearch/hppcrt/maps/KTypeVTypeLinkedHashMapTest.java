@@ -0,0 +1,647 @@
+package com.carrotsearch.hppcrt.maps;
+
+import java.util.*;
+
+import org.junit.*;
+
+import com.carrotsearch.hppcrt.*;
+import com.carrotsearch.hppcrt.cursors.*;
+import com.carrotsearch.hppcrt.lists.*;
+import com.carrotsearch.hppcrt.predicates.*;
+import com.carrotsearch.hppcrt.procedures.*;
+
+/*! #import("com/carrotsearch/hppcrt/Intrinsics.java") !*/
+/**
+ * Tests for {@link KTypeVTypeLinkedHashMap}.
+ */
+/*! ${TemplateOptions.generatedAnnotation} !*/
+public class KTypeVTypeLinkedHashMapTest<KType, VType> extends AbstractKTypeVTypeHashMapTest<KType, VType>
+{
+    @Override
+    protected KTypeVTypeMap<KType, VType> createNewMapInstance(final int initialCapacity, final double loadFactor) {
+
+        if (initialCapacity == 0 && loadFactor == HashContainers.DEFAULT_LOAD_FACTOR) {
+
+            return new KTypeVTypeLinkedHashMap<KType, VType>();
+
+        } else if (loadFactor == HashContainers.DEFAULT_LOAD_FACTOR) {
+
+            return new KTypeVTypeLinkedHashMap<KType, VType>(initialCapacity);
+        }
+
+        //generic case
+        return new KTypeVTypeLinkedHashMap<KType, VType>(initialCapacity, loadFactor);
+    }
+
+    @Override
+    protected KType[] getKeys(final KTypeVTypeMap<KType, VType> testMap) {
+
+        final KTypeVTypeLinkedHashMap<KType, VType> concreteClass = (KTypeVTypeLinkedHashMap<KType, VType>) (testMap);
+
+        return Intrinsics.<KType[]> cast(concreteClass.keys);
+    }
+
+    @Override
+    protected VType[] getValues(final KTypeVTypeMap<KType, VType> testMap) {
+        final KTypeVTypeLinkedHashMap<KType, VType> concreteClass = (KTypeVTypeLinkedHashMap<KType, VType>) (testMap);
+
+        return Intrinsics.<VType[]> cast(concreteClass.values);
+    }
+
+    @Override
+    protected boolean isAllocatedDefaultKey(final KTypeVTypeMap<KType, VType> testMap) {
+        final KTypeVTypeLinkedHashMap<KType, VType> concreteClass = (KTypeVTypeLinkedHashMap<KType, VType>) (testMap);
+
+        return concreteClass.allocatedDefaultKey;
+
+    }
+
+    @Override
+    protected VType getAllocatedDefaultKeyValue(final KTypeVTypeMap<KType, VType> testMap) {
+        final KTypeVTypeLinkedHashMap<KType, VType> concreteClass = (KTypeVTypeLinkedHashMap<KType, VType>) (testMap);
+
+        return concreteClass.allocatedDefaultKeyValue;
+    }
+
+    @Override
+    protected KTypeVTypeMap<KType, VType> getClone(final KTypeVTypeMap<KType, VType> testMap) {
+        final KTypeVTypeLinkedHashMap<KType, VType> concreteClass = (KTypeVTypeLinkedHashMap<KType, VType>) (testMap);
+
+        return concreteClass.clone();
+    }
+
+    @Override
+    protected KTypeVTypeMap<KType, VType> getFrom(final KTypeVTypeMap<KType, VType> testMap) {
+        final KTypeVTypeLinkedHashMap<KType, VType> concreteClass = (KTypeVTypeLinkedHashMap<KType, VType>) (testMap);
+
+        return KTypeVTypeLinkedHashMap.from(concreteClass);
+    }
+
+    @Override
+    protected KTypeVTypeMap<KType, VType> getFromArrays(final KType[] keys, final VType[] values) {
+
+        return KTypeVTypeLinkedHashMap.from(Intrinsics.<KType[]> cast(keys),
+                Intrinsics.<VType[]> cast(values));
+    }
+
+    @Override
+    protected KTypeVTypeMap<KType, VType> getCopyConstructor(final KTypeVTypeMap<KType, VType> testMap) {
+        final KTypeVTypeLinkedHashMap<KType, VType> concreteClass = (KTypeVTypeLinkedHashMap<KType, VType>) (testMap);
+
+        return new KTypeVTypeLinkedHashMap<KType, VType>(concreteClass);
+    }
+
+    @Override
+    protected int getEntryPoolSize(final KTypeVTypeMap<KType, VType> testMap) {
+        final KTypeVTypeLinkedHashMap<KType, VType> concreteClass = (KTypeVTypeLinkedHashMap<KType, VType>) (testMap);
+
+        return concreteClass.entryIteratorPool.size();
+    }
+
+    @Override
+    protected int getKeysPoolSize(final KTypeCollection<KType> keys) {
+
+        final KTypeVTypeLinkedHashMap<KType, VType>.KeysCollection concreteClass = (KTypeVTypeLinkedHashMap<KType, VType>.KeysCollection) (keys);
+
+        return concreteClass.keyIteratorPool.size();
+    }
+
+    @Override
+    protected int getValuesPoolSize(final KTypeCollection<VType> values) {
+        final KTypeVTypeLinkedHashMap<KType, VType>.ValuesCollection concreteClass = (KTypeVTypeLinkedHashMap<KType, VType>.ValuesCollection) (values);
+
+        return concreteClass.valuesIteratorPool.size();
+    }
+
+    @Override
+    protected int getEntryPoolCapacity(final KTypeVTypeMap<KType, VType> testMap) {
+        final KTypeVTypeLinkedHashMap<KType, VType> concreteClass = (KTypeVTypeLinkedHashMap<KType, VType>) (testMap);
+
+        return concreteClass.entryIteratorPool.capacity();
+    }
+
+    @Override
+    protected int getKeysPoolCapacity(final KTypeCollection<KType> keys) {
+        final KTypeVTypeLinkedHashMap<KType, VType>.KeysCollection concreteClass = (KTypeVTypeLinkedHashMap<KType, VType>.KeysCollection) (keys);
+
+        return concreteClass.keyIteratorPool.capacity();
+    }
+
+    @Override
+    protected int getValuesPoolCapacity(final KTypeCollection<VType> values) {
+        final KTypeVTypeLinkedHashMap<KType, VType>.ValuesCollection concreteClass = (KTypeVTypeLinkedHashMap<KType, VType>.ValuesCollection) (values);
+
+        return concreteClass.valuesIteratorPool.capacity();
+    }
+
+    //////////////////////////////////////
+    /// Implementation-specific tests
+    /////////////////////////////////////
+
+    /* */
+    @Test
+    public void testInsertionOrder()
+    {
+        final KTypeVTypeLinkedHashMap<KType, VType> linked = new KTypeVTypeLinkedHashMap<KType, VType>();
+
+        linked.put(this.key3, this.value3);
+        linked.put(this.keyE, this.value0);
+        linked.put(this.key1, this.value1);
+        linked.put(this.key2, this.value2);
+
+        //re-inserting a key does not change the order
+        TestUtils.assertEquals2(this.value3, linked.put(this.key3, this.value4));
+        TestUtils.assertEquals2(this.value0, linked.get(this.keyE));
+
+        assertOrder(linked, new int[] { 3, 0, 1, 2 }, new int[] { 4, 0, 1, 2 });
+
+        TestUtils.assertEquals2(this.key3, linked.eldestKey());
+        TestUtils.assertEquals2(this.value4, linked.eldestValue());
+
+        linked.remove(this.key1);
+        linked.put(this.key1, this.value5);
+
+        assertOrder(linked, new int[] { 3, 0, 2, 1 }, new int[] { 4, 0, 2, 5 });
+
+        this.map = linked;
+    }
+
+    /* */
+    @Test
+    public void testAccessOrder()
+    {
+        final KTypeVTypeLinkedHashMap<KType, VType> linked = new KTypeVTypeLinkedHashMap<KType, VType>(10,
+                HashContainers.DEFAULT_LOAD_FACTOR, true);
+
+        Assert.assertTrue(linked.isAccessOrder());
+
+        linked.put(this.key1, this.value1);
+        linked.put(this.key2, this.value2);
+        linked.put(this.keyE, this.value0);
+        linked.put(this.key3, this.value3);
+
+        assertOrder(linked, new int[] { 1, 2, 0, 3 }, new int[] { 1, 2, 0, 3 });
+
+        //get() and put() are accesses...
+        TestUtils.assertEquals2(this.value1, linked.get(this.key1));
+        assertOrder(linked, new int[] { 2, 0, 3, 1 }, new int[] { 2, 0, 3, 1 });
+
+        linked.put(this.keyE, this.value4);
+        assertOrder(linked, new int[] { 2, 3, 1, 0 }, new int[] { 2, 3, 1, 4 });
+
+        //...but not containsKey() and putIfAbsent()
+        Assert.assertTrue(linked.containsKey(this.key2));
+        Assert.assertFalse(linked.putIfAbsent(this.key2, this.value5));
+        assertOrder(linked, new int[] { 2, 3, 1, 0 }, new int[] { 2, 3, 1, 4 });
+
+        //nor a missing key
+        TestUtils.assertEquals2(linked.getDefaultValue(), linked.get(this.key9));
+        assertOrder(linked, new int[] { 2, 3, 1, 0 }, new int[] { 2, 3, 1, 4 });
+
+        //nor equals() on the other map
+        final KTypeVTypeLinkedHashMap<KType, VType> cloned = linked.clone();
+        Assert.assertTrue(cloned.isAccessOrder());
+        Assert.assertEquals(cloned, linked);
+        Assert.assertEquals(linked, cloned);
+        assertOrder(linked, new int[] { 2, 3, 1, 0 }, new int[] { 2, 3, 1, 4 });
+        assertOrder(cloned, new int[] { 2, 3, 1, 0 }, new int[] { 2, 3, 1, 4 });
+
+        this.map = linked;
+    }
+
+    /* */
+    @Test
+    public void testRemoveEldest()
+    {
+        final KTypeVTypeLinkedHashMap<KType, VType> linked = new KTypeVTypeLinkedHashMap<KType, VType>();
+
+        linked.put(this.key1, this.value1);
+        linked.put(this.keyE, this.value0);
+        linked.put(this.key2, this.value2);
+
+        TestUtils.assertEquals2(this.value1, linked.removeEldest());
+        Assert.assertFalse(linked.containsKey(this.key1));
+
+        TestUtils.assertEquals2(this.keyE, linked.eldestKey());
+        TestUtils.assertEquals2(this.value0, linked.removeEldest());
+        Assert.assertFalse(linked.containsKey(this.keyE));
+
+        TestUtils.assertEquals2(this.value2, linked.removeEldest());
+        Assert.assertTrue(linked.isEmpty());
+
+        //the list is usable again
+        linked.put(this.key3, this.value3);
+        assertOrder(linked, new int[] { 3 }, new int[] { 3 });
+
+        this.map = linked;
+    }
+
+    /* */
+    @Test
+    public void testMaxSizeEviction()
+    {
+        final KTypeVTypeLinkedHashMap<KType, VType> lru = new KTypeVTypeLinkedHashMap<KType, VType>(10,
+                HashContainers.DEFAULT_LOAD_FACTOR, true);
+
+        lru.setMaxSize(3);
+        Assert.assertEquals(3, lru.getMaxSize());
+
+        lru.put(this.key1, this.value1);
+        lru.put(this.key2, this.value2);
+        lru.put(this.key3, this.value3);
+
+        //key1 becomes the most recently used
+        lru.get(this.key1);
+
+        //so key2 is evicted
+        lru.put(this.key4, this.value4);
+
+        Assert.assertEquals(3, lru.size());
+        Assert.assertFalse(lru.containsKey(this.key2));
+        assertOrder(lru, new int[] { 3, 1, 4 }, new int[] { 3, 1, 4 });
+
+        //updating does not evict
+        lru.put(this.key3, this.value5);
+        assertOrder(lru, new int[] { 1, 4, 3 }, new int[] { 1, 4, 5 });
+
+        //shrinking evicts immediately
+        lru.setMaxSize(1);
+        assertOrder(lru, new int[] { 3 }, new int[] { 5 });
+
+        try {
+            lru.setMaxSize(0);
+            Assert.fail();
+        } catch (final IllegalArgumentException e) {
+            //expected
+        }
+
+        this.map = lru;
+    }
+
+    /* */
+    @Test
+    public void testRemoveEldestEntryOverride()
+    {
+        final KTypeVTypeHashMap<KType, VType> evicted = new KTypeVTypeHashMap<KType, VType>();
+
+        final KTypeVTypeLinkedHashMap<KType, VType> linked = new KTypeVTypeLinkedHashMap<KType, VType>() {
+
+            @Override
+            protected boolean removeEldestEntry(final KType eldestKey, final VType eldestValue) {
+
+                if (size() > 2) {
+                    evicted.put(eldestKey, eldestValue);
+                    return true;
+                }
+
+                return false;
+            }
+        };
+
+        for (int i = 1; i < 6; i++) {
+            linked.put(cast(i), vcast(i + 10));
+        }
+
+        assertOrder(linked, new int[] { 4, 5 }, new int[] { 14, 15 });
+
+        Assert.assertEquals(3, evicted.size());
+
+        for (int i = 1; i < 4; i++) {
+            Assert.assertEquals(i + 10, vcastType(evicted.get(cast(i))));
+        }
+    }
+
+    /**
+     * The base test expects the forEach() of {@link KTypeVTypeHashMap}, which iterates
+     * backwards over the buffers: here all the forEach() variants must follow the order of the iterators,
+     * itself checked in {@link #testOrderAgainstLinkedHashMap()}.
+     */
+    @Override
+    @Test
+    public void testForEachProcedure()
+    {
+        final KTypeVTypeMap<KType, VType> newMap = createForEachMap();
+
+        final KTypeArrayList<KType> keyList = new KTypeArrayList<KType>();
+        final ArrayList<Integer> valueList = new ArrayList<Integer>();
+
+        for (final KTypeVTypeCursor<KType, VType> c : newMap) {
+
+            keyList.add(c.key);
+            valueList.add(vcastType(c.value));
+        }
+
+        final KTypeArrayList<KType> keyListTest = new KTypeArrayList<KType>();
+        final ArrayList<Integer> valueListTest = new ArrayList<Integer>();
+
+        newMap.forEach(new KTypeVTypeProcedure<KType, VType>() {
+
+            @Override
+            public void apply(final KType key, final VType value)
+            {
+                keyListTest.add(key);
+                valueListTest.add(vcastType(value));
+            }
+        });
+
+        Assert.assertEquals(keyList, keyListTest);
+        Assert.assertEquals(valueList, valueListTest);
+
+        keyListTest.clear();
+
+        newMap.keys().forEach(new KTypeProcedure<KType>() {
+
+            @Override
+            public void apply(final KType key)
+            {
+                keyListTest.add(key);
+            }
+        });
+
+        Assert.assertEquals(keyList, keyListTest);
+
+        valueListTest.clear();
+
+        newMap.values().forEach(new KTypeProcedure<VType>() {
+
+            @Override
+            public void apply(final VType value)
+            {
+                valueListTest.add(vcastType(value));
+            }
+        });
+
+        Assert.assertEquals(valueList, valueListTest);
+    }
+
+    /**
+     * See {@link #testForEachProcedure()}.
+     */
+    @Override
+    @Test
+    public void testForEachPredicate()
+    {
+        final KTypeVTypeMap<KType, VType> newMap = createForEachMap();
+
+        final int size = newMap.size();
+
+        for (int i = 0; i < size; i++)
+        {
+            final int stopIndex = i;
+            final int[] count = new int[3];
+
+            newMap.forEach(new KTypeVTypePredicate<KType, VType>() {
+
+                @Override
+                public boolean apply(final KType key, final VType value)
+                {
+                    return count[0]++ < stopIndex;
+                }
+            });
+
+            newMap.keys().forEach(new KTypePredicate<KType>() {
+
+                @Override
+                public boolean apply(final KType key)
+                {
+                    return count[1]++ < stopIndex;
+                }
+            });
+
+            newMap.values().forEach(new KTypePredicate<VType>() {
+
+                @Override
+                public boolean apply(final VType value)
+                {
+                    return count[2]++ < stopIndex;
+                }
+            });
+
+            //the iteration stops exactly at the stopping pair
+            for (int k = 0; k < count.length; k++) {
+                Assert.assertEquals("i = " + i, stopIndex + 1, count[k]);
+            }
+        }
+    }
+
+    /**
+     * See {@link #testForEachProcedure()}.
+     */
+    @Override
+    @Test
+    public void testForEachProcedureWithException()
+    {
+        final KTypeVTypeMap<KType, VType> newMap = createForEachMap();
+
+        final int size = newMap.size();
+
+        for (int i = 0; i < size; i++)
+        {
+            final int stopIndex = i;
+            final int[] count = new int[1];
+
+            try
+            {
+                newMap.forEach(new KTypeVTypeProcedure<KType, VType>() {
+
+                    @Override
+                    public void apply(final KType key, final VType value)
+                    {
+                        if (count[0]++ == stopIndex) {
+                            //interrupt iteration by an exception
+                            throw new RuntimeException("Interrupted treatment by test");
+                        }
+                    }
+                });
+
+                Assert.fail();
+            } catch (final RuntimeException e)
+            {
+                if (!"Interrupted treatment by test".equals(e.getMessage()))
+                {
+                    throw e;
+                }
+            }
+
+            Assert.assertEquals("i = " + i, stopIndex + 1, count[0]);
+
+            //the map remains iterable
+            Assert.assertEquals(size, newMap.keys().toArray().length);
+        }
+    }
+
+    private KTypeVTypeMap<KType, VType> createForEachMap() {
+
+        /*! #if ($TemplateOptions.isKType("GENERIC", "int", "long", "float", "double") &&
+                $TemplateOptions.isVType("GENERIC", "int", "long", "float", "double")) !*/
+        final int NB_ELEMENTS = 2000;
+        /*!
+        #elseif($TemplateOptions.isKType("short", "char") && $TemplateOptions.isVType("short", "char"))
+             final int NB_ELEMENTS = 1000;
+            #else
+             final int NB_ELEMENTS = 126;
+        #end !*/
+
+        final KTypeVTypeMap<KType, VType> newMap = createNewMapInstance(NB_ELEMENTS,
+                HashContainers.DEFAULT_LOAD_FACTOR);
+
+        newMap.put(this.keyE, vcast(NB_ELEMENTS));
+
+        for (int i = NB_ELEMENTS - 1; i > 0; i--) {
+
+            newMap.put(cast(i), vcast(i));
+        }
+
+        return newMap;
+    }
+
+    /**
+     * Run some random insertions/ deletions/ lookups in both ordering modes
+     * and compare the content and order against <code>java.util.LinkedHashMap</code>,
+     * across expansions and removals with shifts.
+     */
+    @Test
+    public void testOrderAgainstLinkedHashMap()
+    {
+        final Random rnd = new Random(0xDEADBEEF);
+
+        for (final boolean accessOrder : new boolean[] { false, true }) {
+
+            final LinkedHashMap<Integer, Integer> other = new LinkedHashMap<Integer, Integer>(16, 0.75f, accessOrder);
+
+            final KTypeVTypeLinkedHashMap<KType, VType> linked = new KTypeVTypeLinkedHashMap<KType, VType>(0,
+                    HashContainers.MAX_LOAD_FACTOR, accessOrder);
+
+            for (int round = 0; round < 20000; round++)
+            {
+                final int k = rnd.nextInt(100);
+                final int v = rnd.nextInt(100);
+
+                final int op = rnd.nextInt(10);
+
+                if (op < 5)
+                {
+                    final Integer previous = other.put(k, v);
+
+                    Assert.assertEquals(previous == null ? vcastType(linked.getDefaultValue()) : previous.intValue(),
+                            vcastType(linked.put(cast(k), vcast(v))));
+                }
+                else if (op < 8)
+                {
+                    final Integer previous = other.remove(k);
+
+                    Assert.assertEquals(previous == null ? vcastType(linked.getDefaultValue()) : previous.intValue(),
+                            vcastType(linked.remove(cast(k))));
+                }
+                else if (op < 9)
+                {
+                    final Integer expected = other.get(k);
+
+                    Assert.assertEquals(expected == null ? vcastType(linked.getDefaultValue()) : expected.intValue(),
+                            vcastType(linked.get(cast(k))));
+                }
+                else if (!other.isEmpty())
+                {
+                    final Map.Entry<Integer, Integer> eldest = other.entrySet().iterator().next();
+                    other.remove(eldest.getKey());
+
+                    Assert.assertEquals(eldest.getKey().intValue(), castType(linked.eldestKey()));
+                    Assert.assertEquals(eldest.getValue().intValue(), vcastType(linked.removeEldest()));
+                }
+
+                Assert.assertEquals(other.size(), linked.size());
+
+                if (round % 1000 == 0) {
+                    assertSameOrder(other, linked);
+                }
+            }
+
+            assertSameOrder(other, linked);
+        }
+    }
+
+    private void assertSameOrder(final LinkedHashMap<Integer, Integer> expected, final KTypeVTypeLinkedHashMap<KType, VType> linked) {
+
+        final int[] expectedKeys = new int[expected.size()];
+        final int[] expectedValues = new int[expected.size()];
+
+        int i = 0;
+
+        for (final Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+
+            expectedKeys[i] = entry.getKey();
+            expectedValues[i] = entry.getValue();
+            i++;
+        }
+
+        assertOrder(linked, expectedKeys, expectedValues);
+    }
+
+    /**
+     * Check the order of the map through all the ways of iterating it.
+     */
+    private void assertOrder(final KTypeVTypeLinkedHashMap<KType, VType> linked, final int[] expectedKeys,
+            final int[] expectedValues) {
+
+        Assert.assertEquals(expectedKeys.length, linked.size());
+
+        //1) iterators
+        int i = 0;
+
+        for (final KTypeVTypeCursor<KType, VType> c : linked) {
+
+            Assert.assertEquals(expectedKeys[i], castType(c.key));
+            Assert.assertEquals(expectedValues[i], vcastType(c.value));
+            i++;
+        }
+
+        Assert.assertEquals(expectedKeys.length, i);
+
+        i = 0;
+
+        for (final KTypeCursor<KType> c : linked.keys()) {
+
+            Assert.assertEquals(expectedKeys[i++], castType(c.value));
+        }
+
+        i = 0;
+
+        for (final KTypeCursor<VType> c : linked.values()) {
+
+            Assert.assertEquals(expectedValues[i++], vcastType(c.value));
+        }
+
+        //2) forEach
+        final int[] count = new int[1];
+
+        linked.forEach(new KTypeVTypeProcedure<KType, VType>() {
+
+            @Override
+            public void apply(final KType key, final VType value) {
+
+                Assert.assertEquals(expectedKeys[count[0]], castType(key));
+                Assert.assertEquals(expectedValues[count[0]], vcastType(value));
+                count[0]++;
+            }
+        });
+
+        Assert.assertEquals(expectedKeys.length, count[0]);
+
+        //3) toArray
+        final KType[] keys = linked.keys().toArray(Intrinsics.<KType> newArray(linked.size()));
+        final VType[] values = linked.values().toArray(Intrinsics.<VType> newArray(linked.size()));
+
+        for (i = 0; i < expectedKeys.length; i++) {
+
+            Assert.assertEquals(expectedKeys[i], castType(keys[i]));
+            Assert.assertEquals(expectedValues[i], vcastType(values[i]));
+        }
+
+        //4) eldest
+        if (expectedKeys.length > 0) {
+
+            Assert.assertEquals(expectedKeys[0], castType(linked.eldestKey()));
+            Assert.assertEquals(expectedValues[0], vcastType(linked.eldestValue()));
+        }
+    }
+}
@@ -0,0 +1,397 @@
+package com.carrotsearch.hppcrt.maps;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.*;
+
+import com.carrotsearch.hppcrt.*;
+import com.carrotsearch.hppcrt.cursors.*;
+import com.carrotsearch.hppcrt.procedures.*;
+
+/*! #import("com/carrotsearch/hppcrt/Intrinsics.java") !*/
+/**
+ * Tests for {@link KTypeVTypeLockFreeHashMap}.
+ */
+/*! ${TemplateOptions.doNotGenerateKType("BYTE", "CHAR", "SHORT", "FLOAT", "DOUBLE", "OBJECT")} !*/
+/*! ${TemplateOptions.doNotGenerateVType("BYTE", "CHAR", "SHORT", "FLOAT", "DOUBLE", "OBJECT")} !*/
+/*! ${TemplateOptions.generatedAnnotation} !*/
+public class KTypeVTypeLockFreeHashMapTest<KType, VType> extends AbstractKTypeVTypeTest<KType, VType>
+{
+    /**
+     * Per-test fresh initialized instance.
+     */
+    protected KTypeVTypeLockFreeHashMap<KType, VType> map;
+
+    @Before
+    public void initialize() {
+
+        this.map = new KTypeVTypeLockFreeHashMap<KType, VType>(1000);
+    }
+
+    /* */
+    @Test
+    public void testPut()
+    {
+        TestUtils.assertEquals2(this.map.getDefaultValue(), this.map.put(this.key1, this.value1));
+
+        Assert.assertTrue(this.map.containsKey(this.key1));
+        TestUtils.assertEquals2(this.value1, this.map.get(this.key1));
+        Assert.assertEquals(1, this.map.size());
+        Assert.assertFalse(this.map.isEmpty());
+    }
+
+    /* */
+    @Test
+    public void testPutOverExistingKey()
+    {
+        this.map.put(this.key1, this.value1);
+        TestUtils.assertEquals2(this.value1, this.map.put(this.key1, this.value3));
+        TestUtils.assertEquals2(this.value3, this.map.get(this.key1));
+        Assert.assertEquals(1, this.map.size());
+    }
+
+    /* */
+    @Test
+    public void testPutIfAbsent()
+    {
+        Assert.assertTrue(this.map.putIfAbsent(this.key1, this.value1));
+        Assert.assertFalse(this.map.putIfAbsent(this.key1, this.value2));
+        TestUtils.assertEquals2(this.value1, this.map.get(this.key1));
+    }
+
+    /*! #if ($TemplateOptions.VTypePrimitive) !*/
+    /* */
+    @Test
+    public void testPutOrAdd()
+    {
+        TestUtils.assertEquals2(this.value1, this.map.putOrAdd(this.key1, this.value1, this.value2));
+        TestUtils.assertEquals2(this.value3, this.map.putOrAdd(this.key1, this.value1, this.value2));
+    }
+
+    /* */
+    @Test
+    public void testAddTo()
+    {
+        TestUtils.assertEquals2(this.value1, this.map.addTo(this.key1, this.value1));
+        TestUtils.assertEquals2(this.value3, this.map.addTo(this.key1, this.value2));
+    }
+
+    /*! #end !*/
+
+    /* */
+    @Test
+    public void testRemoveAndReinsert()
+    {
+        this.map.put(this.key1, this.value1);
+        this.map.put(this.key2, this.value2);
+
+        TestUtils.assertEquals2(this.value1, this.map.remove(this.key1));
+        TestUtils.assertEquals2(this.map.getDefaultValue(), this.map.remove(this.key1));
+        TestUtils.assertEquals2(this.map.getDefaultValue(), this.map.remove(this.key3));
+
+        Assert.assertFalse(this.map.containsKey(this.key1));
+        TestUtils.assertEquals2(this.map.getDefaultValue(), this.map.get(this.key1));
+        Assert.assertEquals(1, this.map.size());
+
+        //the tombstone slot of key1 is reused
+        Assert.assertTrue(this.map.putIfAbsent(this.key1, this.value4));
+        TestUtils.assertEquals2(this.value4, this.map.get(this.key1));
+        Assert.assertEquals(2, this.map.size());
+    }
+
+    /* */
+    @Test
+    public void testEmptyKey()
+    {
+        this.map.put(this.keyE, this.value1);
+
+        Assert.assertTrue(this.map.containsKey(this.keyE));
+        TestUtils.assertEquals2(this.value1, this.map.get(this.keyE));
+        Assert.assertEquals(1, this.map.size());
+
+        TestUtils.assertEquals2(this.value1, this.map.remove(this.keyE));
+        Assert.assertFalse(this.map.containsKey(this.keyE));
+        Assert.assertTrue(this.map.isEmpty());
+    }
+
+    /* */
+    @Test
+    public void testDefaultValue()
+    {
+        this.map.setDefaultValue(this.value5);
+
+        TestUtils.assertEquals2(this.value5, this.map.getDefaultValue());
+        TestUtils.assertEquals2(this.value5, this.map.get(this.key1));
+        TestUtils.assertEquals2(this.value5, this.map.remove(this.key1));
+    }
+
+    /* */
+    @Test
+    public void testInsertionOnlyMode()
+    {
+        final KTypeVTypeLockFreeHashMap<KType, VType> insertOnly = new KTypeVTypeLockFreeHashMap<KType, VType>(10,
+                HashContainers.DEFAULT_LOAD_FACTOR, false);
+
+        Assert.assertFalse(insertOnly.isRemovalMode());
+
+        insertOnly.put(this.key1, this.value1);
+        insertOnly.put(this.key1, this.value2);
+        TestUtils.assertEquals2(this.value2, insertOnly.get(this.key1));
+
+        try {
+            insertOnly.remove(this.key1);
+            Assert.fail();
+        } catch (final UnsupportedOperationException e) {
+            //expected
+        }
+
+        try {
+            insertOnly.keys().removeAll(this.key1);
+            Assert.fail();
+        } catch (final UnsupportedOperationException e) {
+            //expected
+        }
+
+        Assert.assertTrue(insertOnly.containsKey(this.key1));
+
+        insertOnly.clear();
+        Assert.assertTrue(insertOnly.isEmpty());
+    }
+
+    /* */
+    @Test
+    public void testFullMap()
+    {
+        final KTypeVTypeLockFreeHashMap<KType, VType> small = new KTypeVTypeLockFreeHashMap<KType, VType>(1);
+
+        final int length = small.keys.length();
+
+        //fill all the slots, the empty key being stored apart
+        for (int i = 1; i <= length; i++) {
+            small.put(cast(i), vcast(i));
+        }
+
+        small.put(this.keyE, this.value1);
+        Assert.assertEquals(length + 1, small.size());
+
+        try {
+            small.put(cast(length + 1), this.value1);
+            Assert.fail();
+        } catch (final BufferAllocationException e) {
+            //expected
+        }
+
+        //a full map still answers lookups of absent keys
+        Assert.assertFalse(small.containsKey(cast(length + 1)));
+
+        //clear() reclaims everything.
+        small.clear();
+        Assert.assertTrue(small.isEmpty());
+        small.put(cast(length + 1), this.value1);
+        TestUtils.assertEquals2(this.value1, small.get(cast(length + 1)));
+    }
+
+    /* */
+    @Test
+    public void testIterationAndViews()
+    {
+        final KTypeVTypeHashMap<KType, VType> reference = new KTypeVTypeHashMap<KType, VType>();
+
+        for (int i = 0; i < 500; i++) {
+
+            this.map.put(cast(i), vcast(i * 3));
+            reference.put(cast(i), vcast(i * 3));
+        }
+
+        //remove some
+        for (int i = 0; i < 500; i += 7) {
+
+            this.map.remove(cast(i));
+            reference.remove(cast(i));
+        }
+
+        Assert.assertEquals(reference.size(), this.map.size());
+
+        int count = 0;
+
+        for (final KTypeVTypeCursor<KType, VType> c : this.map) {
+
+            Assert.assertTrue(reference.containsKey(c.key));
+            TestUtils.assertEquals2(reference.get(c.key), c.value);
+            count++;
+        }
+
+        Assert.assertEquals(reference.size(), count);
+
+        final int[] forEachCount = new int[1];
+
+        this.map.forEach(new KTypeVTypeProcedure<KType, VType>() {
+
+            @Override
+            public void apply(final KType key, final VType value) {
+
+                Assert.assertTrue(reference.containsKey(key));
+                TestUtils.assertEquals2(reference.get(key), value);
+                forEachCount[0]++;
+            }
+        });
+
+        Assert.assertEquals(reference.size(), forEachCount[0]);
+
+        count = 0;
+
+        for (final KTypeCursor<KType> c : this.map.keys()) {
+
+            Assert.assertTrue(reference.containsKey(c.value));
+            count++;
+        }
+
+        Assert.assertEquals(reference.size(), count);
+
+        count = 0;
+
+        for (final KTypeCursor<VType> c : this.map.values()) {
+
+            Assert.assertTrue(reference.values().contains(c.value));
+            count++;
+        }
+
+        Assert.assertEquals(reference.size(), count);
+
+        Assert.assertTrue(this.map.values().contains(vcast(3)));
+        Assert.assertFalse(this.map.values().contains(vcast(0)));
+
+        Assert.assertEquals(reference.size(), this.map.keys().toArray().length);
+        Assert.assertEquals(reference.size(), this.map.values().toArray().length);
+
+        //bulk removal through the views
+        Assert.assertEquals(1, this.map.values().removeAll(vcast(3)));
+        Assert.assertEquals(reference.size() - 1, this.map.size());
+    }
+
+    /**
+     * Writers put and remove disjoint sets of keys, while readers
+     * concurrently check that they only ever observe expected values.
+     */
+    @Test
+    public void testConcurrentReadersAndWriters() throws Exception
+    {
+        final int nbWriters = 4;
+        final int nbReaders = 4;
+        final int nbKeys = 20000;
+
+        final KTypeVTypeLockFreeHashMap<KType, VType> shared = new KTypeVTypeLockFreeHashMap<KType, VType>(nbKeys);
+
+        final Thread[] threads = new Thread[nbWriters + nbReaders];
+        final Throwable[] errors = new Throwable[nbWriters + nbReaders];
+        final AtomicBoolean writersDone = new AtomicBoolean(false);
+
+        for (int t = 0; t < nbWriters; t++) {
+
+            final int threadId = t;
+
+            threads[t] = new Thread() {
+
+                @Override
+                public void run() {
+
+                    try {
+                        //Writer t owns the keys i = t modulo nbWriters
+                        for (int i = threadId; i < nbKeys; i += nbWriters) {
+
+                            shared.put(cast(i), vcast(i));
+                        }
+
+                        //remove one out of two
+                        for (int i = threadId; i < nbKeys; i += 2 * nbWriters) {
+
+                            TestUtils.assertEquals2(vcast(i), shared.remove(cast(i)));
+                        }
+                    } catch (final Throwable e) {
+                        errors[threadId] = e;
+                    }
+                }
+            };
+        }
+
+        for (int t = nbWriters; t < threads.length; t++) {
+
+            final int threadId = t;
+
+            threads[t] = new Thread() {
+
+                @Override
+                public void run() {
+
+                    try {
+                        //readers see either the default value, or the value of the key.
+                        while (!writersDone.get()) {
+
+                            for (int i = 0; i < nbKeys; i++) {
+
+                                final VType value = shared.get(cast(i));
+
+                                if (vcastType(value) != 0) {
+                                    Assert.assertEquals(i, vcastType(value));
+                                }
+                            }
+                        }
+                    } catch (final Throwable e) {
+                        errors[threadId] = e;
+                    }
+                }
+            };
+        }
+
+        for (final Thread thread : threads) {
+            thread.start();
+        }
+
+        for (int t = 0; t < nbWriters; t++) {
+            threads[t].join();
+        }
+
+        writersDone.set(true);
+
+        for (int t = nbWriters; t < threads.length; t++) {
+            threads[t].join();
+        }
+
+        for (final Throwable error : errors) {
+            Assert.assertNull(error);
+        }
+
+        //check final content
+        for (int i = 0; i < nbKeys; i++) {
+
+            final boolean removed = (i % (2 * nbWriters)) < nbWriters;
+
+            Assert.assertEquals(!removed, shared.containsKey(cast(i)));
+
+            if (!removed) {
+                Assert.assertEquals(i, vcastType(shared.get(cast(i))));
+            }
+        }
+
+        Assert.assertEquals(nbKeys / 2, shared.size());
+    }
+
+    /* */
+    @Test
+    public void testEqualsAndHashCode()
+    {
+        final KTypeVTypeLockFreeHashMap<KType, VType> other = new KTypeVTypeLockFreeHashMap<KType, VType>(1000);
+
+        for (int i = 0; i < 100; i++) {
+
+            this.map.put(cast(i), vcast(i));
+            other.put(cast(99 - i), vcast(99 - i));
+        }
+
+        Assert.assertEquals(this.map, other);
+        Assert.assertEquals(this.map.hashCode(), other.hashCode());
+
+        other.put(this.key1, this.value5);
+        Assert.assertFalse(this.map.equals(other));
+    }
+}
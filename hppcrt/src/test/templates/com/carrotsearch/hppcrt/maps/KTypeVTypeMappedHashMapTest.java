@@ -0,0 +1,289 @@
+package com.carrotsearch.hppcrt.maps;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.*;
+
+import com.carrotsearch.hppcrt.*;
+import com.carrotsearch.hppcrt.cursors.*;
+import com.carrotsearch.hppcrt.predicates.*;
+
+/*! #import("com/carrotsearch/hppcrt/Intrinsics.java") !*/
+/**
+ * Tests for {@link KTypeVTypeMappedHashMap}.
+ */
+/*! ${TemplateOptions.doNotGenerateKType("OBJECT")} !*/
+/*! ${TemplateOptions.doNotGenerateVType("OBJECT")} !*/
+/*! ${TemplateOptions.generatedAnnotation} !*/
+public class KTypeVTypeMappedHashMapTest<KType, VType> extends AbstractKTypeVTypeTest<KType, VType>
+{
+    /**
+     * Per-test file, deleted afterwards.
+     */
+    protected File file;
+
+    /**
+     * Per-test opened map, released afterwards.
+     */
+    protected KTypeVTypeMappedHashMap<KType, VType> mapped;
+
+    @Before
+    public void initialize() throws IOException {
+
+        /*! #if ($TemplateOptions.KTypeGeneric) !*/
+        //the template itself has no off-heap storage for generic keys and values.
+        Assume.assumeTrue(false);
+        /*! #end !*/
+
+        this.file = File.createTempFile("frozen", ".map");
+    }
+
+    @After
+    public void cleanup() {
+
+        if (this.mapped != null) {
+            this.mapped.release();
+        }
+
+        if (this.file != null) {
+            this.file.delete();
+        }
+    }
+
+    /**
+     * A map of keys 1..count (and the key 0 if withDefaultKey) to their opposite.
+     */
+    private KTypeVTypeHashMap<KType, VType> createSourceMap(final int count, final boolean withDefaultKey) {
+
+        final KTypeVTypeHashMap<KType, VType> source = new KTypeVTypeHashMap<KType, VType>();
+
+        for (int i = 1; i <= count; i++) {
+            source.put(cast(i), vcast(-i));
+        }
+
+        if (withDefaultKey) {
+            source.put(this.keyE, this.value9);
+        }
+
+        return source;
+    }
+
+    /* */
+    @Test
+    public void testFreezeAndOpen() throws IOException
+    {
+        final KTypeVTypeHashMap<KType, VType> source = createSourceMap(100, true);
+
+        KTypeVTypeMappedHashMap.freeze(source, this.file);
+
+        this.mapped = KTypeVTypeMappedHashMap.open(this.file);
+
+        Assert.assertEquals(101, this.mapped.size());
+        Assert.assertEquals(101, this.mapped.longSize());
+        Assert.assertTrue(this.mapped.allocatedDefaultKey);
+
+        assertSameMap(source, this.mapped);
+        assertSameMap(this.mapped, source);
+
+        Assert.assertFalse(this.mapped.containsKey(cast(101)));
+        TestUtils.assertEquals2(this.mapped.getDefaultValue(), this.mapped.get(cast(101)));
+
+        //iteration
+        int count = 0;
+
+        for (final KTypeVTypeCursor<KType, VType> c : this.mapped) {
+
+            TestUtils.assertEquals2(source.get(c.key), c.value);
+            count++;
+        }
+
+        Assert.assertEquals(101, count);
+        Assert.assertEquals(101, this.mapped.keys().size());
+        Assert.assertTrue(this.mapped.values().contains(this.value9));
+    }
+
+    /* */
+    @Test
+    public void testSeveralPages() throws IOException
+    {
+        final KTypeVTypeHashMap<KType, VType> source = createSourceMap(100, false);
+
+        KTypeVTypeMappedHashMap.freeze(source, this.file, 2);
+
+        this.mapped = KTypeVTypeMappedHashMap.open(this.file);
+
+        Assert.assertEquals(2, this.mapped.pageShift);
+        Assert.assertEquals((this.mapped.mask + 1) >> 2, this.mapped.keyPages.length);
+        Assert.assertFalse(this.mapped.allocatedDefaultKey);
+
+        assertSameMap(source, this.mapped);
+        assertSameMap(this.mapped, source);
+        Assert.assertFalse(this.mapped.containsKey(this.keyE));
+    }
+
+    /* */
+    @Test
+    public void testEmpty() throws IOException
+    {
+        KTypeVTypeMappedHashMap.freeze(new KTypeVTypeHashMap<KType, VType>(), this.file);
+
+        this.mapped = KTypeVTypeMappedHashMap.open(this.file);
+
+        Assert.assertTrue(this.mapped.isEmpty());
+        Assert.assertFalse(this.mapped.containsKey(this.key1));
+        Assert.assertFalse(this.mapped.containsKey(this.keyE));
+        Assert.assertFalse(this.mapped.iterator().hasNext());
+    }
+
+    /* */
+    @Test
+    public void testFreezeOverwrites() throws IOException
+    {
+        KTypeVTypeMappedHashMap.freeze(createSourceMap(100, true), this.file);
+
+        final KTypeVTypeHashMap<KType, VType> source = createSourceMap(3, false);
+
+        KTypeVTypeMappedHashMap.freeze(source, this.file);
+
+        this.mapped = KTypeVTypeMappedHashMap.open(this.file);
+
+        Assert.assertEquals(3, this.mapped.size());
+        assertSameMap(source, this.mapped);
+        Assert.assertFalse(this.mapped.containsKey(this.keyE));
+    }
+
+    /* */
+    @Test
+    public void testReadOnly() throws IOException
+    {
+        KTypeVTypeMappedHashMap.freeze(createSourceMap(10, true), this.file);
+
+        this.mapped = KTypeVTypeMappedHashMap.open(this.file);
+
+        try {
+            this.mapped.put(this.key1, this.value1);
+            Assert.fail();
+        } catch (final UnsupportedOperationException e) {
+            //expected
+        }
+
+        try {
+            this.mapped.put(this.keyE, this.value1);
+            Assert.fail();
+        } catch (final UnsupportedOperationException e) {
+            //expected
+        }
+
+        try {
+            this.mapped.remove(this.key1);
+            Assert.fail();
+        } catch (final UnsupportedOperationException e) {
+            //expected
+        }
+
+        try {
+            this.mapped.clear();
+            Assert.fail();
+        } catch (final UnsupportedOperationException e) {
+            //expected
+        }
+
+        try {
+            this.mapped.keys().removeAll(this.key2);
+            Assert.fail();
+        } catch (final UnsupportedOperationException e) {
+            //expected
+        }
+
+        try {
+            this.mapped.values().removeAll(new KTypePredicate<VType>() {
+
+                @Override
+                public boolean apply(final VType value) {
+                    return true;
+                }
+            });
+            Assert.fail();
+        } catch (final UnsupportedOperationException e) {
+            //expected
+        }
+
+        Assert.assertEquals(11, this.mapped.size());
+        Assert.assertTrue(this.mapped.containsKey(this.keyE));
+    }
+
+    /* */
+    @Test
+    public void testClone() throws IOException
+    {
+        final KTypeVTypeHashMap<KType, VType> source = createSourceMap(50, true);
+
+        KTypeVTypeMappedHashMap.freeze(source, this.file);
+
+        this.mapped = KTypeVTypeMappedHashMap.open(this.file);
+
+        final KTypeVTypeOffHeapHashMap<KType, VType> cloned = this.mapped.clone();
+
+        try {
+            Assert.assertSame(KTypeVTypeOffHeapHashMap.class, cloned.getClass());
+            assertSameMap(source, cloned);
+
+            //the clone is modifiable
+            cloned.remove(this.key1);
+            Assert.assertFalse(cloned.containsKey(this.key1));
+            Assert.assertTrue(this.mapped.containsKey(this.key1));
+
+        } finally {
+            cloned.release();
+        }
+    }
+
+    /* */
+    @Test
+    public void testRelease() throws IOException
+    {
+        KTypeVTypeMappedHashMap.freeze(createSourceMap(10, false), this.file);
+
+        this.mapped = KTypeVTypeMappedHashMap.open(this.file);
+
+        this.mapped.release();
+
+        Assert.assertTrue(this.mapped.isReleased());
+        Assert.assertTrue(this.mapped.isEmpty());
+
+        //the file can be opened again
+        this.mapped = KTypeVTypeMappedHashMap.open(this.file);
+        Assert.assertEquals(10, this.mapped.size());
+    }
+
+    /* */
+    @Test
+    public void testOpenInvalidFile() throws IOException
+    {
+        //empty file
+        try {
+            KTypeVTypeMappedHashMap.open(this.file);
+            Assert.fail();
+        } catch (final IOException e) {
+            //expected
+        }
+
+        //not a frozen map
+        final FileOutputStream out = new FileOutputStream(this.file);
+
+        try {
+            out.write(new byte[KTypeVTypeMappedHashMap.HEADER_SIZE * 2]);
+        } finally {
+            out.close();
+        }
+
+        try {
+            KTypeVTypeMappedHashMap.open(this.file);
+            Assert.fail();
+        } catch (final IOException e) {
+            //expected
+        }
+    }
+}
@@ -0,0 +1,589 @@
+package com.carrotsearch.hppcrt.maps;
+
+import java.util.*;
+
+import org.junit.*;
+
+import com.carrotsearch.hppcrt.*;
+import com.carrotsearch.hppcrt.cursors.*;
+import com.carrotsearch.hppcrt.lists.*;
+import com.carrotsearch.hppcrt.predicates.*;
+import com.carrotsearch.hppcrt.procedures.*;
+import com.carrotsearch.randomizedtesting.RandomizedTest;
+import com.carrotsearch.randomizedtesting.annotations.*;
+
+/*! #import("com/carrotsearch/hppcrt/Intrinsics.java") !*/
+/**
+ * Tests for {@link KTypeVTypeOffHeapHashMap}.
+ */
+/*! ${TemplateOptions.doNotGenerateKType("OBJECT")} !*/
+/*! ${TemplateOptions.doNotGenerateVType("OBJECT")} !*/
+/*! ${TemplateOptions.generatedAnnotation} !*/
+public class KTypeVTypeOffHeapHashMapTest<KType, VType> extends AbstractKTypeVTypeHashMapTest<KType, VType>
+{
+    /**
+     * Small pages, so that most maps of the tests span several pages.
+     */
+    private static final int TEST_PAGE_SHIFT = 4;
+
+    @Override
+    @Before
+    public void initialize() {
+
+        /*! #if ($TemplateOptions.KTypeGeneric) !*/
+        //the template itself has no off-heap storage for generic keys and values.
+        Assume.assumeTrue(false);
+        /*! #end !*/
+
+        super.initialize();
+    }
+
+    @Override
+    protected KTypeVTypeMap<KType, VType> createNewMapInstance(final int initialCapacity, final double loadFactor) {
+
+        if (initialCapacity == 0 && loadFactor == HashContainers.DEFAULT_LOAD_FACTOR) {
+
+            return new KTypeVTypeOffHeapHashMap<KType, VType>();
+
+        } else if (loadFactor == HashContainers.DEFAULT_LOAD_FACTOR) {
+
+            return new KTypeVTypeOffHeapHashMap<KType, VType>(initialCapacity);
+        }
+
+        //generic case
+        return new KTypeVTypeOffHeapHashMap<KType, VType>(initialCapacity, loadFactor, KTypeVTypeOffHeapHashMapTest.TEST_PAGE_SHIFT);
+    }
+
+    @Override
+    protected KType[] getKeys(final KTypeVTypeMap<KType, VType> testMap) {
+
+        final KTypeVTypeOffHeapHashMap<KType, VType> concreteClass = (KTypeVTypeOffHeapHashMap<KType, VType>) (testMap);
+
+        //copy of the off-heap keys
+        final KType[] keys = Intrinsics.<KType> newArray((int) (concreteClass.mask + 1));
+
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = concreteClass.keyAt(concreteClass.keyPages, i);
+        }
+
+        return keys;
+    }
+
+    @Override
+    protected VType[] getValues(final KTypeVTypeMap<KType, VType> testMap) {
+        final KTypeVTypeOffHeapHashMap<KType, VType> concreteClass = (KTypeVTypeOffHeapHashMap<KType, VType>) (testMap);
+
+        //copy of the off-heap values
+        final VType[] values = Intrinsics.<VType> newArray((int) (concreteClass.mask + 1));
+
+        for (int i = 0; i < values.length; i++) {
+            values[i] = concreteClass.valueAt(concreteClass.valuePages, i);
+        }
+
+        return values;
+    }
+
+    @Override
+    protected boolean isAllocatedDefaultKey(final KTypeVTypeMap<KType, VType> testMap) {
+        final KTypeVTypeOffHeapHashMap<KType, VType> concreteClass = (KTypeVTypeOffHeapHashMap<KType, VType>) (testMap);
+
+        return concreteClass.allocatedDefaultKey;
+
+    }
+
+    @Override
+    protected VType getAllocatedDefaultKeyValue(final KTypeVTypeMap<KType, VType> testMap) {
+        final KTypeVTypeOffHeapHashMap<KType, VType> concreteClass = (KTypeVTypeOffHeapHashMap<KType, VType>) (testMap);
+
+        return concreteClass.allocatedDefaultKeyValue;
+    }
+
+    @Override
+    protected KTypeVTypeMap<KType, VType> getClone(final KTypeVTypeMap<KType, VType> testMap) {
+        final KTypeVTypeOffHeapHashMap<KType, VType> concreteClass = (KTypeVTypeOffHeapHashMap<KType, VType>) (testMap);
+
+        return concreteClass.clone();
+    }
+
+    @Override
+    protected KTypeVTypeMap<KType, VType> getFrom(final KTypeVTypeMap<KType, VType> testMap) {
+        final KTypeVTypeOffHeapHashMap<KType, VType> concreteClass = (KTypeVTypeOffHeapHashMap<KType, VType>) (testMap);
+
+        return KTypeVTypeOffHeapHashMap.from(concreteClass);
+    }
+
+    @Override
+    protected KTypeVTypeMap<KType, VType> getFromArrays(final KType[] keys, final VType[] values) {
+
+        return KTypeVTypeOffHeapHashMap.from(Intrinsics.<KType[]> cast(keys),
+                Intrinsics.<VType[]> cast(values));
+    }
+
+    @Override
+    protected KTypeVTypeMap<KType, VType> getCopyConstructor(final KTypeVTypeMap<KType, VType> testMap) {
+        final KTypeVTypeOffHeapHashMap<KType, VType> concreteClass = (KTypeVTypeOffHeapHashMap<KType, VType>) (testMap);
+
+        return new KTypeVTypeOffHeapHashMap<KType, VType>(concreteClass);
+    }
+
+    @Override
+    protected int getEntryPoolSize(final KTypeVTypeMap<KType, VType> testMap) {
+        final KTypeVTypeOffHeapHashMap<KType, VType> concreteClass = (KTypeVTypeOffHeapHashMap<KType, VType>) (testMap);
+
+        return concreteClass.entryIteratorPool.size();
+    }
+
+    @Override
+    protected int getKeysPoolSize(final KTypeCollection<KType> keys) {
+
+        final KTypeVTypeOffHeapHashMap<KType, VType>.KeysCollection concreteClass = (KTypeVTypeOffHeapHashMap<KType, VType>.KeysCollection) (keys);
+
+        return concreteClass.keyIteratorPool.size();
+    }
+
+    @Override
+    protected int getValuesPoolSize(final KTypeCollection<VType> values) {
+        final KTypeVTypeOffHeapHashMap<KType, VType>.ValuesCollection concreteClass = (KTypeVTypeOffHeapHashMap<KType, VType>.ValuesCollection) (values);
+
+        return concreteClass.valuesIteratorPool.size();
+    }
+
+    @Override
+    protected int getEntryPoolCapacity(final KTypeVTypeMap<KType, VType> testMap) {
+        final KTypeVTypeOffHeapHashMap<KType, VType> concreteClass = (KTypeVTypeOffHeapHashMap<KType, VType>) (testMap);
+
+        return concreteClass.entryIteratorPool.capacity();
+    }
+
+    @Override
+    protected int getKeysPoolCapacity(final KTypeCollection<KType> keys) {
+        final KTypeVTypeOffHeapHashMap<KType, VType>.KeysCollection concreteClass = (KTypeVTypeOffHeapHashMap<KType, VType>.KeysCollection) (keys);
+
+        return concreteClass.keyIteratorPool.capacity();
+    }
+
+    @Override
+    protected int getValuesPoolCapacity(final KTypeCollection<VType> values) {
+        final KTypeVTypeOffHeapHashMap<KType, VType>.ValuesCollection concreteClass = (KTypeVTypeOffHeapHashMap<KType, VType>.ValuesCollection) (values);
+
+        return concreteClass.valuesIteratorPool.capacity();
+    }
+
+    /**
+     * Same checks as the base one, on a single copy of the off-heap buffers
+     * instead of a copy per slot.
+     */
+    @Override
+    @After
+    public void checkConsistency()
+    {
+        if (this.map != null)
+        {
+            final KType[] keys = getKeys(this.map);
+            final VType[] values = getValues(this.map);
+
+            int occupied = 0;
+
+            for (int i = 0; i < keys.length; i++)
+            {
+                if (!Intrinsics.<KType> isEmpty(keys[i]))
+                {
+                    //try to reach the key by contains()
+                    Assert.assertTrue(this.map.containsKey(keys[i]));
+
+                    //get() test
+                    Assert.assertEquals(vcastType(values[i]), vcastType(this.map.get(keys[i])));
+
+                    occupied++;
+                }
+            }
+
+            if (isAllocatedDefaultKey(this.map)) {
+
+                //try to reach the key by contains()
+                Assert.assertTrue(this.map.containsKey(this.keyE));
+
+                //get() test
+                Assert.assertEquals(vcastType(getAllocatedDefaultKeyValue(this.map)), vcastType(this.map.get(this.keyE)));
+
+                occupied++;
+            }
+
+            Assert.assertEquals(occupied, this.map.size());
+        }
+    }
+
+    /**
+     * Same as the base one, looking at the number of slots without copying the off-heap buffers.
+     */
+    @Override
+    @Repeat(iterations = 10)
+    @Test
+    public void testPreallocatedSize()
+    {
+        final Random randomVK = RandomizedTest.getRandom();
+        //Test that the container do not resize if less that the initial size
+
+        //1) Choose a random number of elements
+        /*! #if ($TemplateOptions.isKType("GENERIC", "INT", "LONG", "FLOAT", "DOUBLE")) !*/
+        final int PREALLOCATED_SIZE = randomVK.nextInt(10000);
+        /*!
+            #elseif ($TemplateOptions.isKType("SHORT", "CHAR"))
+             int PREALLOCATED_SIZE = randomVK.nextInt(1500);
+            #else
+              int PREALLOCATED_SIZE = randomVK.nextInt(126);
+            #end !*/
+
+        //2) Preallocate to PREALLOCATED_SIZE :
+        final KTypeVTypeOffHeapHashMap<KType, VType> newMap = (KTypeVTypeOffHeapHashMap<KType, VType>) createNewMapInstance(
+                PREALLOCATED_SIZE, HashContainers.DEFAULT_LOAD_FACTOR);
+
+        //computed real capacity
+        final int realCapacity = newMap.capacity();
+
+        //3) Add PREALLOCATED_SIZE different values. At the end, size() must be == PREALLOCATED_SIZE,
+        //and internal buffer/allocated must not have changed of size
+        final long contructorBufferSize = newMap.mask + 1;
+
+        for (int i = 0; i < 1.5 * realCapacity; i++) {
+
+            newMap.put(cast(i), vcast(randomVK.nextInt()));
+
+            //internal size has not changed until realCapacity
+            if (newMap.size() <= realCapacity) {
+
+                Assert.assertEquals(contructorBufferSize, newMap.mask + 1);
+            }
+
+            if (contructorBufferSize < newMap.mask + 1) {
+                //The container as just reallocated, its actual size must be not too far from the previous capacity:
+                Assert.assertTrue("Container as reallocated at size = " + newMap.size() + " with previous capacity = " + realCapacity,
+                        (newMap.size() - realCapacity) <= 3);
+                break;
+            }
+        }
+
+        newMap.release();
+    }
+
+    //////////////////////////////////////
+    /// Implementation-specific tests
+    /////////////////////////////////////
+
+    /* */
+    @Test
+    public void testSeveralPages()
+    {
+        final KTypeVTypeOffHeapHashMap<KType, VType> paged = new KTypeVTypeOffHeapHashMap<KType, VType>(0,
+                HashContainers.DEFAULT_LOAD_FACTOR, 2);
+
+        final int nbElements = 100;
+
+        for (int i = 1; i <= nbElements; i++) {
+            paged.put(cast(i), vcast(i));
+        }
+
+        //pages of 4 slots
+        Assert.assertEquals((paged.mask + 1) / 4, paged.keyPages.length);
+        Assert.assertEquals(paged.keyPages.length, paged.valuePages.length);
+
+        Assert.assertEquals(nbElements, paged.longSize());
+        Assert.assertEquals(paged.size(), paged.longSize());
+        Assert.assertEquals(paged.capacity(), paged.longCapacity());
+
+        for (int i = 1; i <= nbElements; i++) {
+            TestUtils.assertEquals2(vcast(i), paged.get(cast(i)));
+        }
+
+        for (int i = 1; i <= nbElements; i += 2) {
+            TestUtils.assertEquals2(vcast(i), paged.remove(cast(i)));
+        }
+
+        Assert.assertEquals(nbElements / 2, paged.size());
+
+        int count = 0;
+
+        for (final KTypeVTypeCursor<KType, VType> c : paged) {
+
+            Assert.assertEquals(0, castType(c.key) % 2);
+            TestUtils.assertEquals2(c.key, paged.keyAt(paged.keyPages, c.index));
+            count++;
+        }
+
+        Assert.assertEquals(nbElements / 2, count);
+
+        paged.release();
+    }
+
+    /* */
+    @Test
+    public void testRelease()
+    {
+        final KTypeVTypeOffHeapHashMap<KType, VType> offHeap = (KTypeVTypeOffHeapHashMap<KType, VType>) this.map;
+
+        offHeap.put(this.key1, this.value1);
+        offHeap.put(this.keyE, this.value2);
+
+        Assert.assertFalse(offHeap.isReleased());
+
+        offHeap.release();
+
+        Assert.assertTrue(offHeap.isReleased());
+        Assert.assertTrue(offHeap.isEmpty());
+
+        //releasing again is harmless
+        offHeap.release();
+        Assert.assertTrue(offHeap.isReleased());
+
+        //no consistency check for a released map
+        this.map = null;
+    }
+
+    /* */
+    @Test
+    public void testClearReusesBuffers()
+    {
+        final KTypeVTypeOffHeapHashMap<KType, VType> offHeap = (KTypeVTypeOffHeapHashMap<KType, VType>) this.map;
+
+        for (int i = 1; i <= 50; i++) {
+            offHeap.put(cast(i), vcast(i));
+        }
+
+        final long slots = offHeap.mask + 1;
+
+        offHeap.clear();
+
+        Assert.assertEquals(0, offHeap.longSize());
+        Assert.assertEquals(slots, offHeap.mask + 1);
+
+        for (int i = 1; i <= 50; i++) {
+            Assert.assertFalse(offHeap.containsKey(cast(i)));
+        }
+
+        offHeap.put(this.key2, this.value3);
+        TestUtils.assertEquals2(this.value3, offHeap.get(this.key2));
+    }
+
+    /**
+     * The iterators walk the slots backwards, the key 0 first.
+     */
+    @Test
+    public void testIterationOrder()
+    {
+        final KTypeVTypeMap<KType, VType> newMap = createForEachMap();
+
+        final KType[] keys = getKeys(newMap);
+        final VType[] values = getValues(newMap);
+
+        final KTypeArrayList<KType> keyList = new KTypeArrayList<KType>();
+        final ArrayList<Integer> valueList = new ArrayList<Integer>();
+
+        keyList.add(this.keyE);
+        valueList.add(vcastType(getAllocatedDefaultKeyValue(newMap)));
+
+        for (int k = keys.length - 1; k >= 0; k--) {
+
+            if (!Intrinsics.<KType> isEmpty(keys[k])) {
+
+                keyList.add(keys[k]);
+                valueList.add(vcastType(values[k]));
+            }
+        }
+
+        final KTypeArrayList<KType> keyListTest = new KTypeArrayList<KType>();
+        final ArrayList<Integer> valueListTest = new ArrayList<Integer>();
+
+        for (final KTypeVTypeCursor<KType, VType> c : newMap) {
+
+            keyListTest.add(c.key);
+            valueListTest.add(vcastType(c.value));
+        }
+
+        Assert.assertEquals(keyList, keyListTest);
+        Assert.assertEquals(valueList, valueListTest);
+    }
+
+    /**
+     * The base test copies the off-heap buffers again (see {@link #getKeys(KTypeVTypeMap)}) for each slot,
+     * which is quadratic here: instead all the forEach() variants must follow the order of the iterators,
+     * itself checked in {@link #testIterationOrder()}.
+     */
+    @Override
+    @Test
+    public void testForEachProcedure()
+    {
+        final KTypeVTypeMap<KType, VType> newMap = createForEachMap();
+
+        final KTypeArrayList<KType> keyList = new KTypeArrayList<KType>();
+        final ArrayList<Integer> valueList = new ArrayList<Integer>();
+
+        for (final KTypeVTypeCursor<KType, VType> c : newMap) {
+
+            keyList.add(c.key);
+            valueList.add(vcastType(c.value));
+        }
+
+        final KTypeArrayList<KType> keyListTest = new KTypeArrayList<KType>();
+        final ArrayList<Integer> valueListTest = new ArrayList<Integer>();
+
+        newMap.forEach(new KTypeVTypeProcedure<KType, VType>() {
+
+            @Override
+            public void apply(final KType key, final VType value)
+            {
+                keyListTest.add(key);
+                valueListTest.add(vcastType(value));
+            }
+        });
+
+        Assert.assertEquals(keyList, keyListTest);
+        Assert.assertEquals(valueList, valueListTest);
+
+        keyListTest.clear();
+
+        newMap.keys().forEach(new KTypeProcedure<KType>() {
+
+            @Override
+            public void apply(final KType key)
+            {
+                keyListTest.add(key);
+            }
+        });
+
+        Assert.assertEquals(keyList, keyListTest);
+
+        valueListTest.clear();
+
+        newMap.values().forEach(new KTypeProcedure<VType>() {
+
+            @Override
+            public void apply(final VType value)
+            {
+                valueListTest.add(vcastType(value));
+            }
+        });
+
+        Assert.assertEquals(valueList, valueListTest);
+    }
+
+    /**
+     * See {@link #testForEachProcedure()}.
+     */
+    @Override
+    @Test
+    public void testForEachPredicate()
+    {
+        final KTypeVTypeMap<KType, VType> newMap = createForEachMap();
+
+        final int size = newMap.size();
+
+        for (int i = 0; i < size; i++)
+        {
+            final int stopIndex = i;
+            final int[] count = new int[3];
+
+            newMap.forEach(new KTypeVTypePredicate<KType, VType>() {
+
+                @Override
+                public boolean apply(final KType key, final VType value)
+                {
+                    return count[0]++ < stopIndex;
+                }
+            });
+
+            newMap.keys().forEach(new KTypePredicate<KType>() {
+
+                @Override
+                public boolean apply(final KType key)
+                {
+                    return count[1]++ < stopIndex;
+                }
+            });
+
+            newMap.values().forEach(new KTypePredicate<VType>() {
+
+                @Override
+                public boolean apply(final VType value)
+                {
+                    return count[2]++ < stopIndex;
+                }
+            });
+
+            //the iteration stops exactly at the stopping pair
+            for (int k = 0; k < count.length; k++) {
+                Assert.assertEquals("i = " + i, stopIndex + 1, count[k]);
+            }
+        }
+    }
+
+    /**
+     * See {@link #testForEachProcedure()}.
+     */
+    @Override
+    @Test
+    public void testForEachProcedureWithException()
+    {
+        final KTypeVTypeMap<KType, VType> newMap = createForEachMap();
+
+        final int size = newMap.size();
+
+        for (int i = 0; i < size; i++)
+        {
+            final int stopIndex = i;
+            final int[] count = new int[1];
+
+            try
+            {
+                newMap.forEach(new KTypeVTypeProcedure<KType, VType>() {
+
+                    @Override
+                    public void apply(final KType key, final VType value)
+                    {
+                        if (count[0]++ == stopIndex) {
+                            //interrupt iteration by an exception
+                            throw new RuntimeException("Interrupted treatment by test");
+                        }
+                    }
+                });
+
+                Assert.fail();
+            } catch (final RuntimeException e)
+            {
+                if (!"Interrupted treatment by test".equals(e.getMessage()))
+                {
+                    throw e;
+                }
+            }
+
+            Assert.assertEquals("i = " + i, stopIndex + 1, count[0]);
+
+            //the map remains iterable
+            Assert.assertEquals(size, newMap.keys().toArray().length);
+        }
+    }
+
+    private KTypeVTypeMap<KType, VType> createForEachMap() {
+
+        /*! #if ($TemplateOptions.isKType("GENERIC", "int", "long", "float", "double") &&
+                $TemplateOptions.isVType("GENERIC", "int", "long", "float", "double")) !*/
+        final int NB_ELEMENTS = 2000;
+        /*!
+        #elseif($TemplateOptions.isKType("short", "char") && $TemplateOptions.isVType("short", "char"))
+             final int NB_ELEMENTS = 1000;
+            #else
+             final int NB_ELEMENTS = 126;
+        #end !*/
+
+        final KTypeVTypeMap<KType, VType> newMap = createNewMapInstance(NB_ELEMENTS,
+                HashContainers.DEFAULT_LOAD_FACTOR);
+
+        newMap.put(this.keyE, vcast(NB_ELEMENTS));
+
+        for (int i = NB_ELEMENTS - 1; i > 0; i--) {
+
+            newMap.put(cast(i), vcast(i));
+        }
+
+        return newMap;
+    }
+}
@@ -0,0 +1,299 @@
+package com.carrotsearch.hppcrt.maps;
+
+import java.util.*;
+
+import org.junit.*;
+
+import com.carrotsearch.hppcrt.*;
+import com.carrotsearch.hppcrt.cursors.*;
+import com.carrotsearch.hppcrt.predicates.*;
+
+/*! #import("com/carrotsearch/hppcrt/Intrinsics.java") !*/
+/**
+ * Tests for {@link KTypeVTypeRobinHoodHashMap}.
+ */
+/*! ${TemplateOptions.generatedAnnotation} !*/
+public class KTypeVTypeRobinHoodHashMapTest<KType, VType> extends AbstractKTypeVTypeHashMapTest<KType, VType>
+{
+    @Override
+    protected KTypeVTypeMap<KType, VType> createNewMapInstance(final int initialCapacity, final double loadFactor) {
+
+        if (initialCapacity == 0 && loadFactor == HashContainers.DEFAULT_LOAD_FACTOR) {
+
+            return new KTypeVTypeRobinHoodHashMap<KType, VType>();
+
+        } else if (loadFactor == HashContainers.DEFAULT_LOAD_FACTOR) {
+
+            return new KTypeVTypeRobinHoodHashMap<KType, VType>(initialCapacity);
+        }
+
+        //generic case
+        return new KTypeVTypeRobinHoodHashMap<KType, VType>(initialCapacity, loadFactor);
+    }
+
+    @Override
+    protected KType[] getKeys(final KTypeVTypeMap<KType, VType> testMap) {
+
+        final KTypeVTypeRobinHoodHashMap<KType, VType> concreteClass = (KTypeVTypeRobinHoodHashMap<KType, VType>) (testMap);
+
+        return Intrinsics.<KType[]> cast(concreteClass.keys);
+    }
+
+    @Override
+    protected VType[] getValues(final KTypeVTypeMap<KType, VType> testMap) {
+        final KTypeVTypeRobinHoodHashMap<KType, VType> concreteClass = (KTypeVTypeRobinHoodHashMap<KType, VType>) (testMap);
+
+        return Intrinsics.<VType[]> cast(concreteClass.values);
+    }
+
+    @Override
+    protected boolean isAllocatedDefaultKey(final KTypeVTypeMap<KType, VType> testMap) {
+        final KTypeVTypeRobinHoodHashMap<KType, VType> concreteClass = (KTypeVTypeRobinHoodHashMap<KType, VType>) (testMap);
+
+        return concreteClass.allocatedDefaultKey;
+
+    }
+
+    @Override
+    protected VType getAllocatedDefaultKeyValue(final KTypeVTypeMap<KType, VType> testMap) {
+        final KTypeVTypeRobinHoodHashMap<KType, VType> concreteClass = (KTypeVTypeRobinHoodHashMap<KType, VType>) (testMap);
+
+        return concreteClass.allocatedDefaultKeyValue;
+    }
+
+    @Override
+    protected KTypeVTypeMap<KType, VType> getClone(final KTypeVTypeMap<KType, VType> testMap) {
+        final KTypeVTypeRobinHoodHashMap<KType, VType> concreteClass = (KTypeVTypeRobinHoodHashMap<KType, VType>) (testMap);
+
+        return concreteClass.clone();
+    }
+
+    @Override
+    protected KTypeVTypeMap<KType, VType> getFrom(final KTypeVTypeMap<KType, VType> testMap) {
+        final KTypeVTypeRobinHoodHashMap<KType, VType> concreteClass = (KTypeVTypeRobinHoodHashMap<KType, VType>) (testMap);
+
+        return KTypeVTypeRobinHoodHashMap.from(concreteClass);
+    }
+
+    @Override
+    protected KTypeVTypeMap<KType, VType> getFromArrays(final KType[] keys, final VType[] values) {
+
+        return KTypeVTypeRobinHoodHashMap.from(Intrinsics.<KType[]> cast(keys),
+                Intrinsics.<VType[]> cast(values));
+    }
+
+    @Override
+    protected KTypeVTypeMap<KType, VType> getCopyConstructor(final KTypeVTypeMap<KType, VType> testMap) {
+        final KTypeVTypeRobinHoodHashMap<KType, VType> concreteClass = (KTypeVTypeRobinHoodHashMap<KType, VType>) (testMap);
+
+        return new KTypeVTypeRobinHoodHashMap<KType, VType>(concreteClass);
+    }
+
+    @Override
+    protected int getEntryPoolSize(final KTypeVTypeMap<KType, VType> testMap) {
+        final KTypeVTypeRobinHoodHashMap<KType, VType> concreteClass = (KTypeVTypeRobinHoodHashMap<KType, VType>) (testMap);
+
+        return concreteClass.entryIteratorPool.size();
+    }
+
+    @Override
+    protected int getKeysPoolSize(final KTypeCollection<KType> keys) {
+
+        final KTypeVTypeRobinHoodHashMap<KType, VType>.KeysCollection concreteClass = (KTypeVTypeRobinHoodHashMap<KType, VType>.KeysCollection) (keys);
+
+        return concreteClass.keyIteratorPool.size();
+    }
+
+    @Override
+    protected int getValuesPoolSize(final KTypeCollection<VType> values) {
+        final KTypeVTypeRobinHoodHashMap<KType, VType>.ValuesCollection concreteClass = (KTypeVTypeRobinHoodHashMap<KType, VType>.ValuesCollection) (values);
+
+        return concreteClass.valuesIteratorPool.size();
+    }
+
+    @Override
+    protected int getEntryPoolCapacity(final KTypeVTypeMap<KType, VType> testMap) {
+        final KTypeVTypeRobinHoodHashMap<KType, VType> concreteClass = (KTypeVTypeRobinHoodHashMap<KType, VType>) (testMap);
+
+        return concreteClass.entryIteratorPool.capacity();
+    }
+
+    @Override
+    protected int getKeysPoolCapacity(final KTypeCollection<KType> keys) {
+        final KTypeVTypeRobinHoodHashMap<KType, VType>.KeysCollection concreteClass = (KTypeVTypeRobinHoodHashMap<KType, VType>.KeysCollection) (keys);
+
+        return concreteClass.keyIteratorPool.capacity();
+    }
+
+    @Override
+    protected int getValuesPoolCapacity(final KTypeCollection<VType> values) {
+        final KTypeVTypeRobinHoodHashMap<KType, VType>.ValuesCollection concreteClass = (KTypeVTypeRobinHoodHashMap<KType, VType>.ValuesCollection) (values);
+
+        return concreteClass.valuesIteratorPool.capacity();
+    }
+
+    //////////////////////////////////////
+    /// Implementation-specific tests
+    /////////////////////////////////////
+
+    /* */
+    @Test
+    public void testAgainstHashMapAtHighLoadFactor()
+    {
+        final Random rnd = new Random(0x11223344);
+
+        for (final double loadFactor : new double[] { HashContainers.DEFAULT_LOAD_FACTOR, 0.9, HashContainers.MAX_LOAD_FACTOR }) {
+
+            final KTypeVTypeRobinHoodHashMap<KType, VType> map = new KTypeVTypeRobinHoodHashMap<KType, VType>(0, loadFactor);
+            final KTypeVTypeHashMap<KType, VType> reference = new KTypeVTypeHashMap<KType, VType>();
+
+            //a lot of collisions on a small range of keys, with the key 0
+            final int range = 2000;
+
+            for (int round = 0; round < 50000; round++) {
+
+                final KType key = cast(rnd.nextInt(range));
+                final int op = rnd.nextInt(4);
+
+                if (op == 0) {
+
+                    TestUtils.assertEquals2(reference.remove(key), map.remove(key));
+                } else if (op == 1) {
+
+                    TestUtils.assertEquals2(reference.get(key), map.get(key));
+                    Assert.assertEquals(reference.containsKey(key), map.containsKey(key));
+                } else {
+
+                    final VType value = vcast(round);
+                    TestUtils.assertEquals2(reference.put(key, value), map.put(key, value));
+                }
+
+                Assert.assertEquals(reference.size(), map.size());
+            }
+
+            for (int i = 0; i < range; i++) {
+
+                final KType key = cast(i);
+                Assert.assertEquals(reference.containsKey(key), map.containsKey(key));
+                TestUtils.assertEquals2(reference.get(key), map.get(key));
+            }
+
+            //bulk removals
+            Assert.assertEquals(reference.keys().removeAll(new KTypePredicate<KType>() {
+
+                @Override
+                public boolean apply(final KType value) {
+                    return castType(value) % 3 == 0 || castType(value) == 7;
+                }
+            }), map.keys().removeAll(new KTypePredicate<KType>() {
+
+                @Override
+                public boolean apply(final KType value) {
+                    return castType(value) % 3 == 0 || castType(value) == 7;
+                }
+            }));
+
+            for (int i = 0; i < range; i++) {
+
+                final KType key = cast(i);
+                Assert.assertEquals(reference.containsKey(key), map.containsKey(key));
+                TestUtils.assertEquals2(reference.get(key), map.get(key));
+            }
+        }
+    }
+
+    /*! #if ($TemplateOptions.KTypeGeneric) !*/
+    private static final class CountingKey
+    {
+        static int equalsCalls;
+
+        final int value;
+        final int hash;
+
+        CountingKey(final int value, final int hash) {
+            this.value = value;
+            this.hash = hash;
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            CountingKey.equalsCalls++;
+            return obj instanceof CountingKey && ((CountingKey) obj).value == this.value;
+        }
+    }
+
+    /* */
+    @Test
+    public void testFingerprintsSpareEquals()
+    {
+        final int count = 50000;
+
+        final KTypeVTypeRobinHoodHashMap<KType, VType> map = new KTypeVTypeRobinHoodHashMap<KType, VType>(0, HashContainers.MAX_LOAD_FACTOR);
+
+        for (int i = 0; i < count; i++) {
+            map.put(Intrinsics.<KType> cast(new CountingKey(i, i)), vcast(i));
+        }
+
+        CountingKey.equalsCalls = 0;
+
+        for (int i = 0; i < 2 * count; i++) {
+
+            TestUtils.assertEquals2(i < count ? vcast(i) : map.getDefaultValue(),
+                    map.get(Intrinsics.<KType> cast(new CountingKey(i, i))));
+        }
+
+        //equals() is called on the matching keys, and on 1/256 of the others
+        Assert.assertTrue("" + CountingKey.equalsCalls, CountingKey.equalsCalls < count + count / 4);
+    }
+
+    /* */
+    @Test
+    public void testSaturatedDistances()
+    {
+        //all the keys have the same hash, so the distances go far beyond a byte
+        final int count = 1000;
+
+        final KTypeVTypeRobinHoodHashMap<KType, VType> map = new KTypeVTypeRobinHoodHashMap<KType, VType>();
+
+        for (int i = 0; i < count; i++) {
+            map.put(Intrinsics.<KType> cast(new CountingKey(i, 42)), vcast(i));
+        }
+
+        Assert.assertEquals(count, map.size());
+
+        //remove one key out of three, from the start of the chain first
+        for (int i = 0; i < count; i += 3) {
+            TestUtils.assertEquals2(vcast(i), map.remove(Intrinsics.<KType> cast(new CountingKey(i, 42))));
+        }
+
+        for (int i = 0; i < count; i++) {
+
+            final KType key = Intrinsics.<KType> cast(new CountingKey(i, 42));
+
+            Assert.assertEquals(i % 3 != 0, map.containsKey(key));
+            TestUtils.assertEquals2(i % 3 != 0 ? vcast(i) : map.getDefaultValue(), map.get(key));
+        }
+
+        //put them back, with keys of other hashes interleaved
+        for (int i = 0; i < count; i += 3) {
+            map.put(Intrinsics.<KType> cast(new CountingKey(i, 42)), vcast(i));
+            map.put(Intrinsics.<KType> cast(new CountingKey(count + i, i)), vcast(i));
+        }
+
+        for (int i = 0; i < count; i++) {
+
+            TestUtils.assertEquals2(vcast(i), map.get(Intrinsics.<KType> cast(new CountingKey(i, 42))));
+        }
+
+        for (int i = 0; i < count; i += 3) {
+
+            TestUtils.assertEquals2(vcast(i), map.get(Intrinsics.<KType> cast(new CountingKey(count + i, i))));
+        }
+    }
+    /*! #end !*/
+}
@@ -0,0 +1,250 @@
+package com.carrotsearch.hppcrt.maps;
+
+import java.util.Random;
+
+import org.junit.*;
+
+import com.carrotsearch.hppcrt.*;
+import com.carrotsearch.hppcrt.cursors.*;
+import com.carrotsearch.hppcrt.predicates.*;
+
+/*! #import("com/carrotsearch/hppcrt/Intrinsics.java") !*/
+/**
+ * Tests for {@link KTypeVTypeSmallHashMap}.
+ */
+/*! ${TemplateOptions.generatedAnnotation} !*/
+public class KTypeVTypeSmallHashMapTest<KType, VType> extends AbstractKTypeVTypeTest<KType, VType>
+{
+    /* */
+    @Test
+    public void testInlineUntilFull()
+    {
+        final KTypeVTypeSmallHashMap<KType, VType> map = new KTypeVTypeSmallHashMap<KType, VType>();
+
+        Assert.assertNull(map.keys);
+        Assert.assertEquals(0, map.capacity());
+
+        for (int i = 0; i < KTypeVTypeSmallHashMap.INLINE_SIZE; i++) {
+
+            TestUtils.assertEquals2(map.getDefaultValue(), map.put(cast(i), vcast(i)));
+            Assert.assertFalse(map.isHashed());
+        }
+
+        Assert.assertEquals(KTypeVTypeSmallHashMap.INLINE_SIZE, map.keys.length);
+
+        //updating an existing key does not migrate
+        TestUtils.assertEquals2(this.value1, map.put(this.key1, this.value9));
+        Assert.assertFalse(map.isHashed());
+
+        //insertion order
+        int expected = 0;
+
+        for (final KTypeVTypeCursor<KType, VType> c : map) {
+
+            Assert.assertEquals(expected, c.index);
+            TestUtils.assertEquals2(cast(expected), c.key);
+            expected++;
+        }
+
+        Assert.assertEquals(KTypeVTypeSmallHashMap.INLINE_SIZE, expected);
+
+        map.put(cast(KTypeVTypeSmallHashMap.INLINE_SIZE), this.value2);
+
+        Assert.assertTrue(map.isHashed());
+        Assert.assertNull(map.keys);
+        Assert.assertEquals(KTypeVTypeSmallHashMap.INLINE_SIZE + 1, map.size());
+        Assert.assertTrue(map.containsKey(this.key0));
+        TestUtils.assertEquals2(this.value9, map.get(this.key1));
+        TestUtils.assertEquals2(this.value2, map.get(cast(KTypeVTypeSmallHashMap.INLINE_SIZE)));
+
+        //stays hashed
+        map.clear();
+        Assert.assertTrue(map.isHashed());
+        Assert.assertTrue(map.isEmpty());
+    }
+
+    /* */
+    @Test
+    public void testInitialCapacity()
+    {
+        Assert.assertEquals(3, new KTypeVTypeSmallHashMap<KType, VType>(3).keys.length);
+        Assert.assertTrue(new KTypeVTypeSmallHashMap<KType, VType>(KTypeVTypeSmallHashMap.INLINE_SIZE + 1).isHashed());
+    }
+
+    /* */
+    @Test
+    public void testRemoveMovesLastPair()
+    {
+        final KTypeVTypeSmallHashMap<KType, VType> map = KTypeVTypeSmallHashMap.from(
+                newArray(this.key1, this.key2, this.key3, this.key4),
+                newvArray(this.value1, this.value2, this.value3, this.value4));
+
+        TestUtils.assertEquals2(this.value2, map.remove(this.key2));
+        TestUtils.assertEquals2(map.getDefaultValue(), map.remove(this.key2));
+
+        Assert.assertEquals(3, map.size());
+        TestUtils.assertEquals2(this.key4, Intrinsics.<KType> cast(map.keys[1]));
+        TestUtils.assertEquals2(this.value4, Intrinsics.<VType> cast(map.values[1]));
+        TestUtils.assertEquals2(Intrinsics.<KType> empty(), Intrinsics.<KType> cast(map.keys[3]));
+
+        Assert.assertEquals(1, map.removeAll(new KTypePredicate<KType>() {
+
+            @Override
+            public boolean apply(final KType key) {
+                return castType(key) == 1;
+            }
+        }));
+
+        Assert.assertEquals(1, map.values().removeAll(this.value3));
+
+        Assert.assertEquals(1, map.size());
+        TestUtils.assertEquals2(this.value4, map.get(this.key4));
+    }
+
+    /* */
+    @Test
+    public void testDefaultValue()
+    {
+        final KTypeVTypeSmallHashMap<KType, VType> map = new KTypeVTypeSmallHashMap<KType, VType>();
+        map.setDefaultValue(this.value5);
+
+        TestUtils.assertEquals2(this.value5, map.get(this.key1));
+
+        for (int i = 1; i <= 2 * KTypeVTypeSmallHashMap.INLINE_SIZE; i++) {
+            map.put(cast(i), vcast(i));
+        }
+
+        Assert.assertTrue(map.isHashed());
+        TestUtils.assertEquals2(this.value5, map.get(this.keyE));
+        TestUtils.assertEquals2(this.value5, map.remove(this.keyE));
+
+        map.setDefaultValue(this.value6);
+        TestUtils.assertEquals2(this.value6, map.get(this.keyE));
+    }
+
+    /*! #if ($TemplateOptions.VTypePrimitive) !*/
+    /* */
+    @Test
+    public void testPutOrAdd()
+    {
+        final KTypeVTypeSmallHashMap<KType, VType> map = new KTypeVTypeSmallHashMap<KType, VType>();
+
+        TestUtils.assertEquals2(this.value1, map.putOrAdd(this.key1, this.value1, this.value2));
+        TestUtils.assertEquals2(this.value3, map.putOrAdd(this.key1, this.value1, this.value2));
+        TestUtils.assertEquals2(this.value4, map.addTo(this.key1, this.value1));
+        TestUtils.assertEquals2(this.value2, map.addTo(this.key2, this.value2));
+
+        Assert.assertEquals(2, map.size());
+    }
+
+    /*! #end !*/
+
+    /* */
+    @Test
+    public void testViewsFollowMigration()
+    {
+        final KTypeVTypeSmallHashMap<KType, VType> map = new KTypeVTypeSmallHashMap<KType, VType>();
+
+        final KTypeCollection<KType> keys = map.keys();
+        final KTypeCollection<VType> values = map.values();
+
+        map.put(this.key1, this.value1);
+
+        Assert.assertTrue(keys.contains(this.key1));
+        Assert.assertTrue(values.contains(this.value1));
+        Assert.assertEquals(1, keys.toArray().length);
+
+        for (int i = 2; i <= 2 * KTypeVTypeSmallHashMap.INLINE_SIZE; i++) {
+            map.put(cast(i), vcast(i));
+        }
+
+        Assert.assertTrue(map.isHashed());
+        Assert.assertEquals(map.size(), keys.size());
+        Assert.assertEquals(map.size(), keys.toArray().length);
+        Assert.assertEquals(map.size(), values.toArray().length);
+        Assert.assertTrue(values.contains(vcast(2 * KTypeVTypeSmallHashMap.INLINE_SIZE)));
+
+        Assert.assertEquals(1, keys.removeAll(this.key1));
+        Assert.assertFalse(map.containsKey(this.key1));
+
+        int count = 0;
+
+        for (final KTypeCursor<KType> c : keys) {
+
+            Assert.assertTrue(map.containsKey(c.value));
+            count++;
+        }
+
+        Assert.assertEquals(map.size(), count);
+    }
+
+    /* */
+    @Test
+    public void testEqualsAndHashCode()
+    {
+        final KTypeVTypeHashMap<KType, VType> reference = new KTypeVTypeHashMap<KType, VType>();
+
+        final KTypeVTypeSmallHashMap<KType, VType> small = new KTypeVTypeSmallHashMap<KType, VType>();
+
+        for (int i = 0; i < 2 * KTypeVTypeSmallHashMap.INLINE_SIZE; i++) {
+
+            reference.put(cast(i), vcast(i));
+            small.put(cast(i), vcast(i));
+
+            //same hashCode() as a KTypeVTypeHashMap, inline or migrated
+            Assert.assertEquals(reference.hashCode(), small.hashCode());
+
+            final KTypeVTypeSmallHashMap<KType, VType> other = new KTypeVTypeSmallHashMap<KType, VType>();
+
+            //same pairs, put in reverse order
+            for (int j = i; j >= 0; j--) {
+                other.put(cast(j), vcast(j));
+            }
+
+            Assert.assertEquals(small, other);
+            Assert.assertEquals(other, small);
+            Assert.assertEquals(small, small.clone());
+
+            other.put(this.keyE, this.value9);
+            Assert.assertFalse(small.equals(other));
+            Assert.assertFalse(other.equals(small));
+        }
+    }
+
+    /* */
+    @Test
+    public void testAgainstHashMap()
+    {
+        final Random rnd = new Random(0x11223344);
+
+        for (int round = 0; round < 100; round++) {
+
+            final KTypeVTypeHashMap<KType, VType> reference = new KTypeVTypeHashMap<KType, VType>();
+            final KTypeVTypeSmallHashMap<KType, VType> small = new KTypeVTypeSmallHashMap<KType, VType>();
+
+            //keys in a small range, so that removals hit
+            final int range = 1 + rnd.nextInt(2 * KTypeVTypeSmallHashMap.INLINE_SIZE);
+
+            for (int i = 0; i < 100; i++) {
+
+                final KType key = cast(rnd.nextInt(range));
+                final VType value = vcast(rnd.nextInt());
+
+                if (rnd.nextInt(3) == 0) {
+
+                    TestUtils.assertEquals2(reference.remove(key), small.remove(key));
+                } else {
+
+                    TestUtils.assertEquals2(reference.put(key, value), small.put(key, value));
+                }
+
+                Assert.assertEquals(reference.size(), small.size());
+                Assert.assertEquals(reference.containsKey(key), small.containsKey(key));
+                TestUtils.assertEquals2(reference.get(key), small.get(key));
+            }
+
+            assertSameMap(reference, small);
+            assertSameMap(small, reference);
+        }
+    }
+}
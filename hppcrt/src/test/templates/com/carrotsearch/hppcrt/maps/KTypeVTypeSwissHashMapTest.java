@@ -0,0 +1,293 @@
+package com.carrotsearch.hppcrt.maps;
+
+import java.util.*;
+
+import org.junit.*;
+
+import com.carrotsearch.hppcrt.*;
+import com.carrotsearch.hppcrt.cursors.*;
+import com.carrotsearch.hppcrt.predicates.*;
+
+/*! #import("com/carrotsearch/hppcrt/Intrinsics.java") !*/
+/*! ${TemplateOptions.doNotGenerateKType("BYTE", "CHAR", "SHORT", "INT", "LONG", "FLOAT", "DOUBLE")} !*/
+/**
+ * Tests for {@link KTypeVTypeSwissHashMap}.
+ */
+/*! ${TemplateOptions.generatedAnnotation} !*/
+public class KTypeVTypeSwissHashMapTest<KType, VType> extends AbstractKTypeVTypeHashMapTest<KType, VType>
+{
+    @Override
+    protected KTypeVTypeMap<KType, VType> createNewMapInstance(final int initialCapacity, final double loadFactor) {
+
+        if (initialCapacity == 0 && loadFactor == HashContainers.DEFAULT_LOAD_FACTOR) {
+
+            return new KTypeVTypeSwissHashMap<KType, VType>();
+
+        } else if (loadFactor == HashContainers.DEFAULT_LOAD_FACTOR) {
+
+            return new KTypeVTypeSwissHashMap<KType, VType>(initialCapacity);
+        }
+
+        //generic case
+        return new KTypeVTypeSwissHashMap<KType, VType>(initialCapacity, loadFactor);
+    }
+
+    @Override
+    protected KType[] getKeys(final KTypeVTypeMap<KType, VType> testMap) {
+
+        final KTypeVTypeSwissHashMap<KType, VType> concreteClass = (KTypeVTypeSwissHashMap<KType, VType>) (testMap);
+
+        return Intrinsics.<KType[]> cast(concreteClass.keys);
+    }
+
+    @Override
+    protected VType[] getValues(final KTypeVTypeMap<KType, VType> testMap) {
+        final KTypeVTypeSwissHashMap<KType, VType> concreteClass = (KTypeVTypeSwissHashMap<KType, VType>) (testMap);
+
+        return Intrinsics.<VType[]> cast(concreteClass.values);
+    }
+
+    @Override
+    protected boolean isAllocatedDefaultKey(final KTypeVTypeMap<KType, VType> testMap) {
+        final KTypeVTypeSwissHashMap<KType, VType> concreteClass = (KTypeVTypeSwissHashMap<KType, VType>) (testMap);
+
+        return concreteClass.allocatedDefaultKey;
+
+    }
+
+    @Override
+    protected VType getAllocatedDefaultKeyValue(final KTypeVTypeMap<KType, VType> testMap) {
+        final KTypeVTypeSwissHashMap<KType, VType> concreteClass = (KTypeVTypeSwissHashMap<KType, VType>) (testMap);
+
+        return concreteClass.allocatedDefaultKeyValue;
+    }
+
+    @Override
+    protected KTypeVTypeMap<KType, VType> getClone(final KTypeVTypeMap<KType, VType> testMap) {
+        final KTypeVTypeSwissHashMap<KType, VType> concreteClass = (KTypeVTypeSwissHashMap<KType, VType>) (testMap);
+
+        return concreteClass.clone();
+    }
+
+    @Override
+    protected KTypeVTypeMap<KType, VType> getFrom(final KTypeVTypeMap<KType, VType> testMap) {
+        final KTypeVTypeSwissHashMap<KType, VType> concreteClass = (KTypeVTypeSwissHashMap<KType, VType>) (testMap);
+
+        return KTypeVTypeSwissHashMap.from(concreteClass);
+    }
+
+    @Override
+    protected KTypeVTypeMap<KType, VType> getFromArrays(final KType[] keys, final VType[] values) {
+
+        return KTypeVTypeSwissHashMap.from(Intrinsics.<KType[]> cast(keys),
+                Intrinsics.<VType[]> cast(values));
+    }
+
+    @Override
+    protected KTypeVTypeMap<KType, VType> getCopyConstructor(final KTypeVTypeMap<KType, VType> testMap) {
+        final KTypeVTypeSwissHashMap<KType, VType> concreteClass = (KTypeVTypeSwissHashMap<KType, VType>) (testMap);
+
+        return new KTypeVTypeSwissHashMap<KType, VType>(concreteClass);
+    }
+
+    @Override
+    protected int getEntryPoolSize(final KTypeVTypeMap<KType, VType> testMap) {
+        final KTypeVTypeSwissHashMap<KType, VType> concreteClass = (KTypeVTypeSwissHashMap<KType, VType>) (testMap);
+
+        return concreteClass.entryIteratorPool.size();
+    }
+
+    @Override
+    protected int getKeysPoolSize(final KTypeCollection<KType> keys) {
+
+        final KTypeVTypeSwissHashMap<KType, VType>.KeysCollection concreteClass = (KTypeVTypeSwissHashMap<KType, VType>.KeysCollection) (keys);
+
+        return concreteClass.keyIteratorPool.size();
+    }
+
+    @Override
+    protected int getValuesPoolSize(final KTypeCollection<VType> values) {
+        final KTypeVTypeSwissHashMap<KType, VType>.ValuesCollection concreteClass = (KTypeVTypeSwissHashMap<KType, VType>.ValuesCollection) (values);
+
+        return concreteClass.valuesIteratorPool.size();
+    }
+
+    @Override
+    protected int getEntryPoolCapacity(final KTypeVTypeMap<KType, VType> testMap) {
+        final KTypeVTypeSwissHashMap<KType, VType> concreteClass = (KTypeVTypeSwissHashMap<KType, VType>) (testMap);
+
+        return concreteClass.entryIteratorPool.capacity();
+    }
+
+    @Override
+    protected int getKeysPoolCapacity(final KTypeCollection<KType> keys) {
+        final KTypeVTypeSwissHashMap<KType, VType>.KeysCollection concreteClass = (KTypeVTypeSwissHashMap<KType, VType>.KeysCollection) (keys);
+
+        return concreteClass.keyIteratorPool.capacity();
+    }
+
+    @Override
+    protected int getValuesPoolCapacity(final KTypeCollection<VType> values) {
+        final KTypeVTypeSwissHashMap<KType, VType>.ValuesCollection concreteClass = (KTypeVTypeSwissHashMap<KType, VType>.ValuesCollection) (values);
+
+        return concreteClass.valuesIteratorPool.capacity();
+    }
+
+    //////////////////////////////////////
+    /// Implementation-specific tests
+    /////////////////////////////////////
+
+    /* */
+    @Test
+    public void testAgainstHashMap()
+    {
+        final Random rnd = new Random(0x11223344);
+
+        for (final double loadFactor : new double[] { HashContainers.DEFAULT_LOAD_FACTOR, 0.9, HashContainers.MAX_LOAD_FACTOR }) {
+
+            final KTypeVTypeSwissHashMap<KType, VType> map = new KTypeVTypeSwissHashMap<KType, VType>(0, loadFactor);
+            final KTypeVTypeHashMap<KType, VType> reference = new KTypeVTypeHashMap<KType, VType>();
+
+            //a lot of removals and re-insertions on a small range of keys, with the key 0
+            final int range = 2000;
+
+            for (int round = 0; round < 50000; round++) {
+
+                final KType key = cast(rnd.nextInt(range));
+                final int op = rnd.nextInt(4);
+
+                if (op == 0) {
+
+                    TestUtils.assertEquals2(reference.remove(key), map.remove(key));
+                } else if (op == 1) {
+
+                    TestUtils.assertEquals2(reference.get(key), map.get(key));
+                    Assert.assertEquals(reference.containsKey(key), map.containsKey(key));
+                } else {
+
+                    final VType value = vcast(round);
+                    TestUtils.assertEquals2(reference.put(key, value), map.put(key, value));
+                }
+
+                Assert.assertEquals(reference.size(), map.size());
+            }
+
+            for (int i = 0; i < range; i++) {
+
+                final KType key = cast(i);
+                Assert.assertEquals(reference.containsKey(key), map.containsKey(key));
+                TestUtils.assertEquals2(reference.get(key), map.get(key));
+            }
+
+            //bulk removals
+            final KType removedKey = cast(7);
+
+            Assert.assertEquals(reference.keys().removeAll(new KTypePredicate<KType>() {
+
+                @Override
+                public boolean apply(final KType value) {
+                    return castType(value) % 3 == 0 || value == removedKey;
+                }
+            }), map.keys().removeAll(new KTypePredicate<KType>() {
+
+                @Override
+                public boolean apply(final KType value) {
+                    return castType(value) % 3 == 0 || value == removedKey;
+                }
+            }));
+
+            for (int i = 0; i < range; i++) {
+
+                final KType key = cast(i);
+                Assert.assertEquals(reference.containsKey(key), map.containsKey(key));
+                TestUtils.assertEquals2(reference.get(key), map.get(key));
+            }
+        }
+    }
+
+    /* */
+    @Test
+    public void testDeletedSlotsReused()
+    {
+        final KTypeVTypeSwissHashMap<KType, VType> map = new KTypeVTypeSwissHashMap<KType, VType>(10);
+
+        for (int i = 1; i <= 10; i++) {
+            map.put(cast(i), vcast(i));
+        }
+
+        int bufferLength = -1;
+
+        //the map has always 10 keys, but all of them change
+        for (int i = 1; i <= 20000; i++) {
+
+            TestUtils.assertEquals2(vcast(i), map.remove(cast(i)));
+            map.put(cast(i + 10), vcast(i + 10));
+
+            Assert.assertEquals(10, map.size());
+            Assert.assertTrue(map.assigned + map.deleted < map.keys.length);
+
+            if (i == 1000) {
+                bufferLength = map.keys.length;
+            } else if (i > 1000) {
+                //the deleted slots are purged by rehashing, without growing the buffers
+                Assert.assertEquals(bufferLength, map.keys.length);
+            }
+        }
+
+        for (int i = 20001; i <= 20010; i++) {
+            TestUtils.assertEquals2(vcast(i), map.get(cast(i)));
+        }
+    }
+
+    private static final class CountingKey
+    {
+        static int equalsCalls;
+
+        final int value;
+
+        CountingKey(final int value) {
+            this.value = value;
+        }
+
+        @Override
+        public int hashCode() {
+            return this.value;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            CountingKey.equalsCalls++;
+            return obj instanceof CountingKey && ((CountingKey) obj).value == this.value;
+        }
+    }
+
+    /* */
+    @Test
+    public void testUnsuccessfulLookupsRarelyCompareKeys()
+    {
+        final int count = 100000;
+
+        final KTypeVTypeSwissHashMap<KType, VType> map = new KTypeVTypeSwissHashMap<KType, VType>(0, HashContainers.MAX_LOAD_FACTOR);
+
+        for (int i = 0; i < count; i++) {
+            map.put(Intrinsics.<KType> cast(new CountingKey(i)), vcast(i));
+        }
+
+        CountingKey.equalsCalls = 0;
+
+        for (int i = count; i < 2 * count; i++) {
+            Assert.assertFalse(map.containsKey(Intrinsics.<KType> cast(new CountingKey(i))));
+        }
+
+        //equals() is only called on the keys whose 7-bit hash fragment matches
+        Assert.assertTrue("" + CountingKey.equalsCalls, CountingKey.equalsCalls < count / 4);
+
+        CountingKey.equalsCalls = 0;
+
+        for (int i = 0; i < count; i++) {
+            TestUtils.assertEquals2(vcast(i), map.get(Intrinsics.<KType> cast(new CountingKey(i))));
+        }
+
+        Assert.assertTrue("" + CountingKey.equalsCalls, CountingKey.equalsCalls < count + count / 4);
+    }
+}
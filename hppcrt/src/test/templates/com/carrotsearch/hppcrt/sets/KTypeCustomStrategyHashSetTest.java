@@ -0,0 +1,225 @@
+package com.carrotsearch.hppcrt.sets;
+
+import java.util.*;
+
+import org.junit.*;
+
+import com.carrotsearch.hppcrt.*;
+import com.carrotsearch.hppcrt.cursors.*;
+import com.carrotsearch.hppcrt.hash.BitMixer;
+import com.carrotsearch.hppcrt.strategies.*;
+
+import com.carrotsearch.hppcrt.TestUtils;
+
+/*! #import("com/carrotsearch/hppcrt/Intrinsics.java") !*/
+/**
+ * Unit tests for {@link KTypeCustomHashSet}.
+ */
+/*! ${TemplateOptions.generatedAnnotation} !*/
+public class KTypeCustomStrategyHashSetTest<KType> extends AbstractKTypeHashSetTest<KType>
+{
+    private static final int STRIDE = 13;
+
+    /**
+     * Same equivalence as the natural one, computed differently.
+     */
+    protected final KTypeHashingStrategy<KType> strideStrategy = new KTypeHashingStrategy<KType>() {
+
+        @Override
+        public int computeHashCode(final KType object) {
+
+            return BitMixer.mix(castType(object) + KTypeCustomStrategyHashSetTest.STRIDE);
+        }
+
+        @Override
+        public boolean equals(final KType o1, final KType o2) {
+
+            return castType(o1) + KTypeCustomStrategyHashSetTest.STRIDE == castType(o2) + KTypeCustomStrategyHashSetTest.STRIDE;
+        }
+    };
+
+    /**
+     * Keys are equivalent if they have the same last decimal digit.
+     */
+    protected final KTypeHashingStrategy<KType> lastDigitStrategy = new KTypeHashingStrategy<KType>() {
+
+        @Override
+        public int computeHashCode(final KType object) {
+
+            return Math.abs(castType(object) % 10);
+        }
+
+        @Override
+        public boolean equals(final KType o1, final KType o2) {
+
+            return Math.abs(castType(o1) % 10) == Math.abs(castType(o2) % 10);
+        }
+    };
+
+    @Override
+    protected KTypeSet<KType> createNewSetInstance(final int initialCapacity, final double loadFactor) {
+
+        if (initialCapacity == 0 && loadFactor == HashContainers.DEFAULT_LOAD_FACTOR) {
+
+            return new KTypeCustomHashSet<KType>(this.strideStrategy);
+
+        } else if (loadFactor == HashContainers.DEFAULT_LOAD_FACTOR) {
+
+            return new KTypeCustomHashSet<KType>(initialCapacity, this.strideStrategy);
+        }
+
+        //generic case
+        return new KTypeCustomHashSet<KType>(initialCapacity, loadFactor, this.strideStrategy);
+    }
+
+    @Override
+    protected KType[] getKeys(final KTypeSet<KType> testSet) {
+        final KTypeCustomHashSet<KType> concreteClass = (KTypeCustomHashSet<KType>) (testSet);
+
+        return Intrinsics.<KType[]> cast(concreteClass.keys);
+    }
+
+    @Override
+    protected boolean isAllocatedDefaultKey(final KTypeSet<KType> testSet) {
+        final KTypeCustomHashSet<KType> concreteClass = (KTypeCustomHashSet<KType>) (testSet);
+        return concreteClass.allocatedDefaultKey;
+    }
+
+    @Override
+    protected KTypeSet<KType> getClone(final KTypeSet<KType> testSet) {
+        final KTypeCustomHashSet<KType> concreteClass = (KTypeCustomHashSet<KType>) (testSet);
+        return concreteClass.clone();
+    }
+
+    @Override
+    protected KTypeSet<KType> getFrom(final KTypeContainer<KType> container) {
+
+        return KTypeCustomHashSet.from(container, this.strideStrategy);
+    }
+
+    @Override
+    protected KTypeSet<KType> getFrom(final KType... elements) {
+
+        return KTypeCustomHashSet.from(this.strideStrategy, elements);
+    }
+
+    @Override
+    protected KTypeSet<KType> getFromArray(final KType[] keys) {
+
+        return KTypeCustomHashSet.from(this.strideStrategy, keys);
+    }
+
+    @Override
+    protected void addFromArray(final KTypeSet<KType> testSet, final KType... keys) {
+        final KTypeCustomHashSet<KType> concreteClass = (KTypeCustomHashSet<KType>) (testSet);
+
+        for (final KType key : keys) {
+
+            concreteClass.add(key);
+        }
+    }
+
+    @Override
+    protected KTypeSet<KType> getCopyConstructor(final KTypeSet<KType> testSet) {
+        final KTypeCustomHashSet<KType> concreteClass = (KTypeCustomHashSet<KType>) (testSet);
+
+        return new KTypeCustomHashSet<KType>(concreteClass, this.strideStrategy);
+    }
+
+    @Override
+    protected int getEntryPoolSize(final KTypeSet<KType> testSet) {
+        final KTypeCustomHashSet<KType> concreteClass = (KTypeCustomHashSet<KType>) (testSet);
+        return concreteClass.entryIteratorPool.size();
+    }
+
+    @Override
+    protected int getEntryPoolCapacity(final KTypeSet<KType> testSet) {
+        final KTypeCustomHashSet<KType> concreteClass = (KTypeCustomHashSet<KType>) (testSet);
+        return concreteClass.entryIteratorPool.capacity();
+    }
+
+    //////////////////////////////////////
+    /// Implementation-specific tests
+    /////////////////////////////////////
+
+    /* */
+    @Test
+    public void testStrategyEquivalence()
+    {
+        final KTypeCustomHashSet<KType> set = new KTypeCustomHashSet<KType>(this.lastDigitStrategy);
+
+        Assert.assertSame(this.lastDigitStrategy, set.strategy());
+
+        Assert.assertTrue(set.add(cast(1)));
+        Assert.assertFalse(set.add(cast(11)));
+
+        //the first key is kept
+        Assert.assertEquals(1, set.size());
+        Assert.assertTrue(set.contains(cast(21)));
+        Assert.assertEquals(1, castType(set.toArray(Intrinsics.<KType> newArray(1))[0]));
+
+        //keys equivalent to 0
+        Assert.assertTrue(set.add(cast(10)));
+
+        Assert.assertEquals(2, set.size());
+        Assert.assertTrue(set.contains(cast(0)));
+        Assert.assertTrue(set.contains(cast(20)));
+        Assert.assertTrue(set.remove(cast(30)));
+        Assert.assertFalse(set.contains(cast(10)));
+
+        Assert.assertEquals(1, set.removeAll(cast(31)));
+        Assert.assertTrue(set.isEmpty());
+    }
+
+    /* */
+    @Test
+    public void testStrategyCloneEquals()
+    {
+        final KTypeCustomHashSet<KType> set = new KTypeCustomHashSet<KType>(this.strideStrategy);
+        final KTypeCustomHashSet<KType> sameStrategy = new KTypeCustomHashSet<KType>(this.strideStrategy);
+
+        for (int i = 1; i < 100; i++) {
+
+            set.add(cast(i));
+            sameStrategy.add(cast(i));
+        }
+
+        Assert.assertEquals(set, sameStrategy);
+        Assert.assertEquals(set.hashCode(), sameStrategy.hashCode());
+
+        final KTypeCustomHashSet<KType> cloned = set.clone();
+
+        Assert.assertSame(set.strategy(), cloned.strategy());
+        Assert.assertEquals(set, cloned);
+
+        //same contents, but another strategy
+        final KTypeCustomHashSet<KType> otherStrategy = KTypeCustomHashSet.from(set, new KTypeHashingStrategy<KType>() {
+
+            @Override
+            public int computeHashCode(final KType object) {
+
+                return castType(object);
+            }
+
+            @Override
+            public boolean equals(final KType o1, final KType o2) {
+
+                return castType(o1) == castType(o2);
+            }
+        });
+
+        Assert.assertEquals(set.size(), otherStrategy.size());
+        Assert.assertFalse(set.equals(otherStrategy));
+        Assert.assertFalse(otherStrategy.equals(set));
+
+        //not comparable to the plain hash set
+        Assert.assertFalse(set.equals(KTypeHashSet.from(set)));
+    }
+
+    /* */
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullStrategy()
+    {
+        new KTypeCustomHashSet<KType>(null);
+    }
+}
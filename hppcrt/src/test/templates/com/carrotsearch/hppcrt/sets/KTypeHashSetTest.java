@@ -1,8 +1,14 @@
 package com.carrotsearch.hppcrt.sets;
 
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
 import org.junit.*;
 
 import com.carrotsearch.hppcrt.*;
+import com.carrotsearch.hppcrt.cursors.*;
 
 import com.carrotsearch.hppcrt.TestUtils;
 
@@ -121,4 +127,582 @@ public class KTypeHashSetTest<KType> extends AbstractKTypeHashSetTest<KType>
         Assert.assertEquals(1, testSet.add(this.keyE, this.key1));
         Assert.assertEquals(3, testSet.size());
     }
+
+    /* */
+    @Test
+    public void testIncrementalResizeIsIncremental()
+    {
+        final KTypeHashSet<KType> incremental = new KTypeHashSet<KType>(100);
+        incremental.setIncrementalResize(true);
+
+        final int initialLength = incremental.keys.length;
+
+        int i = 1;
+
+        while (incremental.keys.length == initialLength) {
+
+            incremental.add(cast(i));
+            i++;
+        }
+
+        //the buffers have just been expanded: only some of the keys are migrated yet...
+        int migrated = 0;
+
+        for (int slot = 0; slot < incremental.keys.length; slot++) {
+
+            if (!Intrinsics.<KType> isEmpty(Intrinsics.<KType> cast(incremental.keys[slot]))) {
+                migrated++;
+            }
+        }
+
+        Assert.assertTrue(migrated < incremental.size());
+
+        //...but all of them are reachable.
+        for (int j = 1; j < i; j++) {
+
+            Assert.assertTrue(incremental.contains(cast(j)));
+        }
+
+        //completing the resize leaves a plain set
+        incremental.completeResize();
+        this.set = incremental;
+    }
+
+    /**
+     * Run some random insertions/ deletions with incremental resizing and compare the results
+     * against <code>java.util.HashSet</code>.
+     */
+    @Test
+    public void testIncrementalResizeAgainstHashSet()
+    {
+        final Random rnd = new Random(0xBADCAFE);
+        final HashSet<Integer> other = new HashSet<Integer>();
+
+        final KTypeHashSet<KType> incremental = new KTypeHashSet<KType>(0, HashContainers.MAX_LOAD_FACTOR);
+        incremental.setIncrementalResize(true);
+
+        for (int round = 0; round < 100000; round++)
+        {
+            final KType key = cast(rnd.nextInt(20000));
+
+            final int op = rnd.nextInt(10);
+
+            if (op < 6)
+            {
+                Assert.assertEquals(other.add(castType(key)), incremental.add(key));
+            }
+            else if (op < 8)
+            {
+                Assert.assertEquals(other.remove(castType(key)), incremental.remove(key));
+            }
+            else
+            {
+                Assert.assertEquals(other.contains(castType(key)), incremental.contains(key));
+            }
+
+            Assert.assertEquals(other.size(), incremental.size());
+        }
+
+        //iteration sees every key exactly once
+        int count = 0;
+
+        for (final KTypeCursor<KType> c : incremental) {
+
+            Assert.assertTrue(other.contains(castType(c.value)));
+            count++;
+        }
+
+        Assert.assertEquals(other.size(), count);
+        this.set = incremental;
+    }
+
+    /**
+     * Intersect, subtract and merge sets of various relative sizes, including the key 0/null,
+     * and compare the results against <code>java.util.HashSet</code>.
+     */
+    @Test
+    public void testSetAlgebraAgainstHashSet()
+    {
+        final Random rnd = new Random(0x11223344);
+
+        for (int round = 0; round < 100; round++)
+        {
+            final HashSet<Integer> refA = new HashSet<Integer>();
+            final HashSet<Integer> refB = new HashSet<Integer>();
+
+            final KTypeHashSet<KType> a = new KTypeHashSet<KType>();
+            final KTypeHashSet<KType> b = new KTypeHashSet<KType>();
+
+            final int sizeA = rnd.nextInt(2000);
+            final int sizeB = rnd.nextBoolean() ? rnd.nextInt(20) : rnd.nextInt(2000);
+
+            for (int i = 0; i < sizeA; i++) {
+                final KType key = cast(rnd.nextInt(3000));
+                refA.add(castType(key));
+                a.add(key);
+            }
+
+            for (int i = 0; i < sizeB; i++) {
+                final KType key = cast(rnd.nextInt(3000));
+                refB.add(castType(key));
+                b.add(key);
+            }
+
+            final HashSet<Integer> intersection = new HashSet<Integer>(refA);
+            intersection.retainAll(refB);
+
+            Assert.assertEquals(intersection.size(), a.intersectionSize(b));
+            Assert.assertEquals(intersection.size(), b.intersectionSize(a));
+            Assert.assertEquals(a.size(), a.intersectionSize(a));
+
+            KTypeHashSet<KType> result = a.clone();
+            Assert.assertEquals(refA.size() - intersection.size(), result.retainAll(b));
+            assertSameKeys(intersection, result);
+
+            final HashSet<Integer> difference = new HashSet<Integer>(refA);
+            difference.removeAll(refB);
+
+            result = a.clone();
+            Assert.assertEquals(refA.size() - difference.size(), result.removeAll(b));
+            assertSameKeys(difference, result);
+
+            final HashSet<Integer> union = new HashSet<Integer>(refA);
+            union.addAll(refB);
+
+            result = a.clone();
+            Assert.assertEquals(union.size() - refA.size(), result.addAll(b));
+            assertSameKeys(union, result);
+
+            //the operands are left untouched
+            assertSameKeys(refA, a);
+            assertSameKeys(refB, b);
+        }
+    }
+
+    private void assertSameKeys(final HashSet<Integer> expected, final KTypeHashSet<KType> actual) {
+
+        Assert.assertEquals(expected.size(), actual.size());
+
+        for (final KTypeCursor<KType> c : actual) {
+            Assert.assertTrue(expected.contains(castType(c.value)));
+        }
+    }
+
+    /* */
+    @Test
+    public void testAddAllSizesOnce()
+    {
+        final KTypeHashSet<KType> target = new KTypeHashSet<KType>();
+        final KTypeHashSet<KType> source = new KTypeHashSet<KType>();
+
+        for (int i = 0; i < 50; i++) {
+            target.add(cast(i));
+            source.add(cast(i + 50));
+        }
+
+        Assert.assertEquals(50, target.addAll(source));
+        Assert.assertEquals(100, target.size());
+
+        //no further expansion up to the requested capacity
+        target.ensureCapacity(120);
+        Assert.assertTrue(target.capacity() >= 120);
+
+        final KType[] keys = Intrinsics.<KType[]> cast(target.keys);
+
+        for (int i = 100; i < 120; i++) {
+            target.add(cast(i));
+        }
+
+        Assert.assertEquals(120, target.size());
+        Assert.assertSame(keys, Intrinsics.<KType[]> cast(target.keys));
+
+        for (int i = 0; i < 120; i++) {
+            Assert.assertTrue(target.contains(cast(i)));
+        }
+    }
+
+    /* */
+    @Test
+    public void testIndexMethods()
+    {
+        final KTypeHashSet<KType> hashSet = new KTypeHashSet<KType>();
+
+        hashSet.add(this.key1);
+
+        final int index1 = hashSet.indexOf(this.key1);
+
+        Assert.assertTrue(hashSet.indexExists(index1));
+        TestUtils.assertEquals2(this.key1, hashSet.indexGet(index1));
+        TestUtils.assertEquals2(this.key1, hashSet.indexReplace(index1, cast(1)));
+
+        final int index2 = hashSet.indexOf(this.key2);
+
+        Assert.assertFalse(hashSet.indexExists(index2));
+        hashSet.indexInsert(index2, this.key2);
+
+        Assert.assertEquals(2, hashSet.size());
+        Assert.assertTrue(hashSet.contains(this.key2));
+        TestUtils.assertEquals2(this.key2, hashSet.indexGet(hashSet.indexOf(this.key2)));
+
+        //the key 0/null has its own index
+        final int indexE = hashSet.indexOf(this.keyE);
+
+        Assert.assertFalse(hashSet.indexExists(indexE));
+        Assert.assertEquals(hashSet.keys.length, ~indexE);
+
+        hashSet.indexInsert(indexE, this.keyE);
+
+        Assert.assertEquals(3, hashSet.size());
+        Assert.assertTrue(hashSet.contains(this.keyE));
+        Assert.assertEquals(hashSet.keys.length, hashSet.indexOf(this.keyE));
+        TestUtils.assertEquals2(this.keyE, hashSet.indexGet(hashSet.indexOf(this.keyE)));
+
+        this.set = hashSet;
+    }
+
+    /**
+     * Fill a set with the index methods only, (with expansions and incremental resizes) and compare the results
+     * against <code>java.util.HashSet</code>.
+     */
+    @Test
+    public void testIndexMethodsAgainstHashSet()
+    {
+        final Random rnd = new Random(0xDEADBEEF);
+        final HashSet<Integer> other = new HashSet<Integer>();
+
+        final KTypeHashSet<KType> hashSet = new KTypeHashSet<KType>(0, HashContainers.MAX_LOAD_FACTOR);
+
+        for (int round = 0; round < 50000; round++)
+        {
+            if (round == 25000) {
+                hashSet.setIncrementalResize(true);
+            }
+
+            final KType key = cast(rnd.nextInt(10000));
+
+            final int index = hashSet.indexOf(key);
+
+            Assert.assertEquals(!other.add(castType(key)), hashSet.indexExists(index));
+
+            if (!hashSet.indexExists(index)) {
+                hashSet.indexInsert(index, key);
+            }
+
+            //some removals, not to be only adding
+            if (rnd.nextInt(4) == 0) {
+
+                final KType removed = cast(rnd.nextInt(10000));
+
+                Assert.assertEquals(other.remove(castType(removed)), hashSet.remove(removed));
+            }
+
+            Assert.assertEquals(other.size(), hashSet.size());
+        }
+
+        for (final Integer key : other) {
+
+            Assert.assertTrue(hashSet.contains(cast(key)));
+        }
+
+        hashSet.completeResize();
+        this.set = hashSet;
+    }
+
+    /* */
+    @Test
+    public void testParallelFrom() throws InterruptedException
+    {
+        final Random rnd = new Random(0x5EED5EED);
+
+        //with duplicates, and the key 0/null
+        final KType[] keys = Intrinsics.<KType> newArray(20000);
+
+        for (int i = 0; i < keys.length; i++) {
+
+            keys[i] = (rnd.nextInt(100) == 0) ? this.keyE : cast(rnd.nextInt(15000));
+        }
+
+        final KTypeHashSet<KType> expected = KTypeHashSet.from(keys);
+
+        //keep the threads of the pool, to wait for their end
+        final List<Thread> threads = Collections.synchronizedList(new ArrayList<Thread>());
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4, new ThreadFactory() {
+
+            @Override
+            public Thread newThread(final Runnable r) {
+
+                final Thread thread = new Thread(r);
+                threads.add(thread);
+                return thread;
+            }
+        });
+
+        try {
+
+            final KTypeHashSet<KType> parallel = KTypeHashSet.parallelFrom(keys, executor, 4);
+
+            Assert.assertEquals(expected, parallel);
+
+            //tiny regions, to overflow a lot of them
+            final KTypeHashSet<KType> tinyRegions = new KTypeHashSet<KType>(keys.length);
+            tinyRegions.fillParallel(keys, executor, 4, tinyRegions.keys.length >> 3);
+
+            Assert.assertEquals(expected, tinyRegions);
+
+            //the sets remain consistent afterwards
+            for (int i = 0; i < keys.length; i += 2) {
+
+                expected.remove(keys[i]);
+                parallel.remove(keys[i]);
+                tinyRegions.remove(keys[i]);
+            }
+
+            for (int i = 0; i < keys.length; i += 3) {
+
+                expected.add(keys[i]);
+                parallel.add(keys[i]);
+                tinyRegions.add(keys[i]);
+            }
+
+            Assert.assertEquals(expected, parallel);
+            Assert.assertEquals(expected, tinyRegions);
+
+            //colliding keys placed in the first of 2 regions are accounted for, and reseeded, as by add()
+            for (final int threshold : new int[] { Integer.MAX_VALUE, 2 }) {
+
+                final KTypeHashSet<KType> collisions = new KTypeHashSet<KType>(4);
+                collisions.setReseedThreshold(threshold);
+
+                final KType[] colliding = keysOfIdealSlotZero(collisions, 4);
+
+                collisions.fillParallel(colliding, executor, 4, 2);
+
+                Assert.assertEquals(KTypeHashSet.from(colliding), collisions);
+
+                if (threshold == 2) {
+
+                    Assert.assertEquals(1, collisions.getReseedCount());
+                } else {
+
+                    Assert.assertEquals(0, collisions.getReseedCount());
+                    Assert.assertEquals(3, collisions.getMaxProbeLength());
+                    Assert.assertEquals(1.5, collisions.getAverageProbeLength(), 0.0);
+                }
+            }
+
+            //small inputs are inserted sequentially
+            Assert.assertEquals(KTypeHashSet.from(this.k1, this.k2), KTypeHashSet.parallelFrom(newArray(this.k1, this.k2), executor, 4));
+
+        } finally {
+
+            executor.shutdown();
+
+            for (final Thread thread : threads) {
+                thread.join();
+            }
+        }
+    }
+
+    /* */
+    @Test
+    public void testProbeLengthStats()
+    {
+        final KTypeHashSet<KType> set = new KTypeHashSet<KType>();
+
+        Assert.assertEquals(HashContainers.defaultReseedThreshold(HashContainers.DEFAULT_LOAD_FACTOR), set.getReseedThreshold());
+        Assert.assertEquals(0, set.getMaxProbeLength());
+        Assert.assertEquals(0.0, set.getAverageProbeLength(), 0.0);
+
+        for (int i = 0; i < 200; i++) {
+            set.add(cast(i));
+        }
+
+        Assert.assertTrue(set.getAverageProbeLength() >= 0.0);
+        Assert.assertTrue(set.getMaxProbeLength() >= set.getAverageProbeLength());
+        Assert.assertTrue(set.getMaxProbeLength() < set.keys.length);
+        Assert.assertEquals(0, set.getReseedCount());
+
+        set.clear();
+
+        Assert.assertEquals(0, set.getMaxProbeLength());
+        Assert.assertEquals(0.0, set.getAverageProbeLength(), 0.0);
+    }
+
+    /* */
+    @Test
+    public void testReseed()
+    {
+        final Random rnd = new Random(0x11223344);
+
+        for (final boolean incremental : new boolean[] { false, true }) {
+
+            final KTypeHashSet<KType> set = new KTypeHashSet<KType>();
+            set.setIncrementalResize(incremental);
+
+            //reseed as soon as a key is not in its ideal slot
+            set.setReseedThreshold(0);
+
+            final KTypeHashSet<KType> reference = new KTypeHashSet<KType>();
+            reference.setReseedThreshold(Integer.MAX_VALUE);
+
+            for (int i = 0; i < 5000; i++) {
+
+                final KType key = cast(rnd.nextInt(1 << 30));
+
+                Assert.assertEquals(reference.add(key), set.add(key));
+            }
+
+            Assert.assertEquals(0, reference.getReseedCount());
+            Assert.assertTrue(set.getReseedCount() > 0);
+
+            //at most once per buffers size
+            Assert.assertTrue(set.getReseedCount() <= Integer.numberOfTrailingZeros(set.keys.length));
+
+            Assert.assertEquals(reference, set);
+
+            for (int i = 0; i < 5000; i++) {
+
+                final KType key = cast(rnd.nextInt(1 << 30));
+
+                Assert.assertEquals(reference.remove(key), set.remove(key));
+                Assert.assertEquals(reference.contains(key), set.contains(key));
+            }
+
+            Assert.assertEquals(reference, set);
+
+            Assert.assertEquals(0, set.clone().getReseedThreshold());
+        }
+    }
+
+    /* */
+    @Test
+    public void testIndexInsertReseed()
+    {
+        final KTypeHashSet<KType> set = new KTypeHashSet<KType>(4);
+
+        final KType[] colliding = keysOfIdealSlotZero(set, 4);
+
+        //reseed when the last key is added 3 slots away from its ideal slot
+        set.setReseedThreshold(2);
+
+        for (int i = 0; i < colliding.length; i++) {
+
+            final int index = set.indexOf(colliding[i]);
+
+            Assert.assertFalse(set.indexExists(index));
+            set.indexInsert(index, colliding[i]);
+
+            if (i < colliding.length - 1) {
+
+                //each key is put right after the previous one
+                Assert.assertEquals(i, set.getMaxProbeLength());
+                Assert.assertEquals(0, set.getReseedCount());
+            }
+        }
+
+        Assert.assertEquals(1, set.getReseedCount());
+        Assert.assertEquals(KTypeHashSet.from(colliding), set);
+    }
+
+    /**
+     * @return count distinct keys, whose ideal slot in the small empty set is 0.
+     */
+    private KType[] keysOfIdealSlotZero(final KTypeHashSet<KType> set, final int count) {
+
+        final KType[] keys = Intrinsics.<KType> newArray(count);
+        int found = 0;
+
+        for (int i = 1; i < 256 && found < count; i++) {
+
+            if (set.indexOf(cast(i)) == ~0) {
+                keys[found++] = cast(i);
+            }
+        }
+
+        Assert.assertEquals(count, found);
+
+        return keys;
+    }
+
+    /*! #if ($TemplateOptions.KTypeGeneric) !*/
+    /**
+     * Key counting the calls to its hashCode() and equals().
+     */
+    private static final class CountingKey
+    {
+        static int hashCodeCalls;
+        static int equalsCalls;
+
+        final int value;
+
+        CountingKey(final int value) {
+            this.value = value;
+        }
+
+        @Override
+        public int hashCode() {
+            CountingKey.hashCodeCalls++;
+            return this.value;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            CountingKey.equalsCalls++;
+            return obj instanceof CountingKey && ((CountingKey) obj).value == this.value;
+        }
+    }
+
+    @Test
+    public void testCachedHashes()
+    {
+        final int count = 10000;
+
+        //the raw template runs the debug assertions of the set, which skew the calls
+        //to hashCode() and equals(): only the generated classes have exact counts.
+        final boolean exactCounts = /*! #if (true) true #else !*/false/*! #end !*/;
+
+        for (final boolean incremental : new boolean[] { false, true }) {
+
+            final KTypeHashSet<KType> set = new KTypeHashSet<KType>();
+            set.setIncrementalResize(incremental);
+
+            CountingKey.hashCodeCalls = 0;
+            CountingKey.equalsCalls = 0;
+
+            for (int i = 0; i < count; i++) {
+                Assert.assertTrue(set.add(Intrinsics.<KType> cast(new CountingKey(i))));
+            }
+
+            //resizes use the cached hashes, and distinct hashes spare equals()
+            if (exactCounts) {
+                Assert.assertEquals(count, CountingKey.hashCodeCalls);
+                Assert.assertEquals(0, CountingKey.equalsCalls);
+            }
+
+            for (int i = 0; i < 2 * count; i++) {
+                Assert.assertEquals(i < count, set.contains(Intrinsics.<KType> cast(new CountingKey(i))));
+            }
+
+            //equals() is only called on the matching keys
+            if (exactCounts) {
+                Assert.assertEquals(3 * count, CountingKey.hashCodeCalls);
+                Assert.assertEquals(count, CountingKey.equalsCalls);
+            }
+
+            for (int i = 0; i < count; i += 2) {
+                Assert.assertTrue(set.remove(Intrinsics.<KType> cast(new CountingKey(i))));
+            }
+
+            Assert.assertEquals(count / 2, set.size());
+            if (exactCounts) {
+                Assert.assertEquals(3 * count + count / 2, CountingKey.hashCodeCalls);
+            }
+
+            for (int i = 0; i < count; i++) {
+                Assert.assertEquals(i % 2 != 0, set.contains(Intrinsics.<KType> cast(new CountingKey(i))));
+            }
+        }
+    }
+    /*! #end !*/
 }
@@ -0,0 +1,210 @@
+package com.carrotsearch.hppcrt.sets;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.*;
+
+import com.carrotsearch.hppcrt.*;
+import com.carrotsearch.hppcrt.cursors.*;
+import com.carrotsearch.hppcrt.lists.*;
+import com.carrotsearch.hppcrt.procedures.*;
+
+/*! #import("com/carrotsearch/hppcrt/Intrinsics.java") !*/
+/**
+ * Tests for {@link KTypeMappedHashSet}.
+ */
+/*! ${TemplateOptions.doNotGenerateKType("OBJECT")} !*/
+/*! ${TemplateOptions.generatedAnnotation} !*/
+public class KTypeMappedHashSetTest<KType> extends AbstractKTypeTest<KType>
+{
+    /**
+     * Per-test file, deleted afterwards.
+     */
+    protected File file;
+
+    /**
+     * Per-test opened set, released afterwards.
+     */
+    protected KTypeMappedHashSet<KType> mapped;
+
+    @Before
+    public void initialize() throws IOException {
+
+        /*! #if ($TemplateOptions.KTypeGeneric) !*/
+        //the template itself has no off-heap storage for generic keys.
+        Assume.assumeTrue(false);
+        /*! #end !*/
+
+        this.file = File.createTempFile("frozen", ".set");
+    }
+
+    @After
+    public void cleanup() {
+
+        if (this.mapped != null) {
+            this.mapped.release();
+        }
+
+        if (this.file != null) {
+            this.file.delete();
+        }
+    }
+
+    /**
+     * A set of keys 1..count, and the key 0 if withDefaultKey.
+     */
+    private KTypeHashSet<KType> createSourceSet(final int count, final boolean withDefaultKey) {
+
+        final KTypeHashSet<KType> source = new KTypeHashSet<KType>();
+
+        for (int i = 1; i <= count; i++) {
+            source.add(cast(i));
+        }
+
+        if (withDefaultKey) {
+            source.add(this.keyE);
+        }
+
+        return source;
+    }
+
+    private void assertSameSet(final KTypeHashSet<KType> expected, final KTypeMappedHashSet<KType> actual) {
+
+        Assert.assertEquals(expected.size(), actual.size());
+
+        for (final KTypeCursor<KType> c : expected) {
+            Assert.assertTrue(actual.contains(c.value));
+        }
+
+        final KTypeHashSet<KType> iterated = new KTypeHashSet<KType>();
+
+        for (final KTypeCursor<KType> c : actual) {
+            Assert.assertTrue(iterated.add(c.value));
+        }
+
+        Assert.assertEquals(expected, iterated);
+
+        final KTypeHashSet<KType> fromArray = new KTypeHashSet<KType>();
+        fromArray.add(actual.toArray(Intrinsics.<KType> newArray(actual.size())));
+
+        Assert.assertEquals(expected, fromArray);
+    }
+
+    /* */
+    @Test
+    public void testFreezeAndOpen() throws IOException
+    {
+        final KTypeHashSet<KType> source = createSourceSet(100, true);
+
+        KTypeMappedHashSet.freeze(source, this.file);
+
+        this.mapped = KTypeMappedHashSet.open(this.file);
+
+        Assert.assertEquals(101, this.mapped.longSize());
+        assertSameSet(source, this.mapped);
+
+        Assert.assertTrue(this.mapped.contains(this.keyE));
+        Assert.assertFalse(this.mapped.contains(cast(101)));
+
+        //forEach
+        final KTypeHashSet<KType> visited = new KTypeHashSet<KType>();
+
+        this.mapped.forEach(new KTypeProcedure<KType>() {
+
+            @Override
+            public void apply(final KType value) {
+                visited.add(value);
+            }
+        });
+
+        Assert.assertEquals(source, visited);
+    }
+
+    /* */
+    @Test
+    public void testSeveralPagesAndDuplicates() throws IOException
+    {
+        //a list, with duplicates
+        final KTypeArrayList<KType> source = new KTypeArrayList<KType>();
+
+        for (int i = 1; i <= 100; i++) {
+            source.add(cast(i), cast(i));
+        }
+
+        KTypeMappedHashSet.freeze(source, this.file, 2);
+
+        this.mapped = KTypeMappedHashSet.open(this.file);
+
+        Assert.assertEquals(2, this.mapped.pageShift);
+        Assert.assertEquals((this.mapped.mask + 1) >> 2, this.mapped.keyPages.length);
+
+        assertSameSet(createSourceSet(100, false), this.mapped);
+        Assert.assertFalse(this.mapped.contains(this.keyE));
+    }
+
+    /* */
+    @Test
+    public void testEmpty() throws IOException
+    {
+        KTypeMappedHashSet.freeze(new KTypeHashSet<KType>(), this.file);
+
+        this.mapped = KTypeMappedHashSet.open(this.file);
+
+        Assert.assertTrue(this.mapped.isEmpty());
+        Assert.assertFalse(this.mapped.contains(this.key1));
+        Assert.assertFalse(this.mapped.contains(this.keyE));
+        Assert.assertFalse(this.mapped.iterator().hasNext());
+        Assert.assertEquals(0, this.mapped.toArray().length);
+    }
+
+    /* */
+    @Test
+    public void testRelease() throws IOException
+    {
+        KTypeMappedHashSet.freeze(createSourceSet(10, true), this.file);
+
+        this.mapped = KTypeMappedHashSet.open(this.file);
+
+        this.mapped.release();
+
+        Assert.assertTrue(this.mapped.isReleased());
+        Assert.assertTrue(this.mapped.isEmpty());
+
+        //releasing again is harmless
+        this.mapped.release();
+
+        this.mapped = KTypeMappedHashSet.open(this.file);
+        Assert.assertEquals(11, this.mapped.size());
+    }
+
+    /* */
+    @Test
+    public void testOpenInvalidFile() throws IOException
+    {
+        //empty file
+        try {
+            KTypeMappedHashSet.open(this.file);
+            Assert.fail();
+        } catch (final IOException e) {
+            //expected
+        }
+
+        //not a frozen set
+        final FileOutputStream out = new FileOutputStream(this.file);
+
+        try {
+            out.write(new byte[KTypeMappedHashSet.HEADER_SIZE * 2]);
+        } finally {
+            out.close();
+        }
+
+        try {
+            KTypeMappedHashSet.open(this.file);
+            Assert.fail();
+        } catch (final IOException e) {
+            //expected
+        }
+    }
+}